@@ -353,6 +353,11 @@ private static void populateLlapDaemonVarsSet(Set<String> llapDaemonVarsSetLocal
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_ALLOCATOR_DIRECT.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_USE_LRFU.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_LRFU_LAMBDA.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_LRFU_SHARDS.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_LRFU_READ_BUFFER_SIZE.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_CACHE_ADMISSION_ENABLED.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_CACHE_ADMISSION_MIN_FREQUENCY.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_CACHE_PREWARM_LIST.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_USE_FILEID_PATH.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_IO_DECODING_METRICS_PERCENTILE_INTERVALS.varname);
@@ -390,6 +395,9 @@ private static void populateLlapDaemonVarsSet(Set<String> llapDaemonVarsSetLocal
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_WAIT_QUEUE_SIZE.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_WAIT_QUEUE_COMPARATOR_CLASS_NAME.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_ENABLE_PREEMPTION.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_WORK_STEALING.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_SCHEDULER_LOCALITY_GROUPS.varname);
+    llapDaemonVarsSetLocal.add(ConfVars.LLAP_MAPJOIN_SHARED_CACHE_MEMORY_FRACTION.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_TASK_PREEMPTION_METRICS_INTERVALS.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_WEB_PORT.varname);
     llapDaemonVarsSetLocal.add(ConfVars.LLAP_DAEMON_WEB_SSL.varname);
@@ -1860,6 +1868,22 @@ public static enum ConfVars {
         "padding tolerance config (hive.exec.orc.block.padding.tolerance)."),
     HIVE_ORC_CODEC_POOL("hive.use.orc.codec.pool", false,
         "Whether to use codec pool in ORC. Disable if there are bugs with codec reuse."),
+    HIVE_ORC_COALESCE_READS("hive.orc.coalesce.reads", false,
+        "Whether ORC readers (both LLAP IO and the regular ORC reader) should plan their own disk\n" +
+        "reads, merging ranges that are close to each other into a single request. This helps\n" +
+        "on object stores, where every request has a high fixed cost."),
+    HIVE_ORC_COALESCE_MAX_GAP("hive.orc.coalesce.max.gap", "1Mb", new SizeValidator(),
+        "The largest gap between two ranges that are still read in one request when\n" +
+        "hive.orc.coalesce.reads is enabled; the bytes in the gap are read and discarded."),
+    HIVE_ORC_COALESCE_MAX_READ_SIZE("hive.orc.coalesce.max.read.size", "64Mb",
+        new SizeValidator(), "The maximum size of a single coalesced read request."),
+    HIVE_ORC_READ_PARALLELISM("hive.orc.read.parallelism", 1,
+        "The number of read requests that can be in flight for one ORC file at the same time\n" +
+        "when hive.orc.coalesce.reads is enabled. Each parallel read uses its own input stream."),
+    HIVE_ORC_READ_THREADS("hive.orc.read.threads", 16,
+        "The number of threads, shared by all the ORC readers in the process, that issue the\n" +
+        "parallel and the prefetch reads when hive.orc.coalesce.reads is enabled. Reads beyond\n" +
+        "that wait for a thread. The pool is sized by the first reader that uses it."),
 
     HIVEUSEEXPLICITRCFILEHEADER("hive.exec.rcfile.use.explicit.header", true,
         "If this is set the header for RCFiles will simply be RCF.  If this is not\n" +
@@ -1963,6 +1987,11 @@ public static enum ConfVars {
     HIVEDYNAMICPARTITIONHASHJOIN("hive.optimize.dynamic.partition.hashjoin", false,
         "Whether to enable dynamically partitioned hash join optimization. \n" +
         "This setting is also dependent on enabling hive.auto.convert.join"),
+    HIVE_MAPJOIN_FULL_OUTER("hive.mapjoin.full.outer", false,
+        "Whether to allow FULL OUTER JOIN to be converted into a dynamically partitioned hash join.\n" +
+        "Only the native vectorized map join operators (with the fast hash table) can execute it, so\n" +
+        "this requires hive.optimize.dynamic.partition.hashjoin, vectorization of reduce work and\n" +
+        "hive.vectorized.execution.mapjoin.native.fast.hashtable.enabled."),
     HIVECONVERTJOIN("hive.auto.convert.join", true,
         "Whether Hive enables the optimization about converting common join into mapjoin based on the input file size"),
     HIVECONVERTJOINNOCONDITIONALTASK("hive.auto.convert.join.noconditionaltask", true,
@@ -2002,6 +2031,10 @@ public static enum ConfVars {
         "Insert queries are not restricted by this limit."),
     HIVELIMITPUSHDOWNMEMORYUSAGE("hive.limit.pushdown.memory.usage", 0.1f, new RatioValidator(),
         "The fraction of available memory to be used for buffering rows in Reducesink operator for limit pushdown optimization."),
+    HIVE_OPTIMIZE_TOPNKEY("hive.optimize.topnkey", false,
+        "Whether to enable the top n key optimization. When a Reducesink operator has a limit pushed down\n" +
+        "(hive.limit.pushdown.memory.usage), a Top N Key operator is inserted before it (or before the\n" +
+        "map-side Group By feeding it) to drop rows whose key cannot be in the top n keys as early as possible."),
 
     HIVECONVERTJOINMAXENTRIESHASHTABLE("hive.auto.convert.join.hashtable.max.entries", 21000000L,
         "If hive.auto.convert.join.noconditionaltask is off, this parameter does not take affect. \n" +
@@ -2125,6 +2158,14 @@ public static enum ConfVars {
                  "Whether to transform count distinct into two stages"),
    HIVEPARTITIONCOLUMNSEPARATOR("hive.optimize.partition.columns.separate", true,
             "Extract partition columns from IN clauses"),
+    HIVE_PARTITION_FETCH_COMPACT("hive.optimize.partition.fetch.compact", false,
+        "Whether partition pruning fetches the matching partitions from the metastore in batches\n" +
+        "of hive.metastore.batch.retrieve.max, evaluating the pruning expression on the partition\n" +
+        "names in HiveServer2, instead of getting all of them in one call. This bounds the memory\n" +
+        "used for listing on both sides, but the filter is no longer pushed down to the metastore\n" +
+        "DB, and all the partition names of the table are listed. The fetched partitions are kept\n" +
+        "in a compact form where partitions with the same columns share a single, unmodifiable,\n" +
+        "column list."),
     // Constant propagation optimizer
     HIVEOPTCONSTANTPROPAGATION("hive.optimize.constant.propagation", true, "Whether to enable constant propagation optimizer"),
     HIVEIDENTITYPROJECTREMOVER("hive.optimize.remove.identity.project", true, "Removes identity project from operator tree"),
@@ -3519,6 +3560,16 @@ public static enum ConfVars {
          "This flag should be set to true to enable use of native fast vector map join hash tables in\n" +
          "queries using MapJoin.\n" +
          "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_BLOOM_FILTER_ENABLED(
+         "hive.vectorized.execution.mapjoin.native.fast.hashtable.bloom.filter.enabled", false,
+         "This flag should be set to true to have native fast vector map join hash tables build a\n" +
+         "Bloom filter over their keys after loading, so probes for absent keys skip the slot array.\n" +
+         "The default value is false."),
+    HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_BLOOM_FILTER_MIN_KEYS(
+         "hive.vectorized.execution.mapjoin.native.fast.hashtable.bloom.filter.min.keys", 1000000,
+         "Minimum number of keys in a native fast vector map join hash table for the Bloom filter\n" +
+         "of hive.vectorized.execution.mapjoin.native.fast.hashtable.bloom.filter.enabled to be built.\n" +
+         "Smaller tables mostly stay in the CPU caches and do not benefit."),
     HIVE_VECTORIZATION_GROUPBY_CHECKINTERVAL("hive.vectorized.groupby.checkinterval", 100000,
         "Number of entries added to the group by aggregation hash before a recomputation of average entry size is performed."),
     HIVE_VECTORIZATION_GROUPBY_MAXENTRIES("hive.vectorized.groupby.maxentries", 1000000,
@@ -3526,6 +3577,14 @@ public static enum ConfVars {
         "Exceeding this will trigger a flush irrelevant of memory pressure condition."),
     HIVE_VECTORIZATION_GROUPBY_FLUSH_PERCENT("hive.vectorized.groupby.flush.percent", (float) 0.1,
         "Percent of entries in the group by aggregation hash flushed when the memory threshold is exceeded."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED("hive.vectorized.groupby.spill.enabled", false,
+        "This flag should be set to true to have the vector group by hash mode spill whole hash\n" +
+        "partitions of its aggregation hashtable to local disk under memory pressure and merge them\n" +
+        "back at close, instead of flushing partial results downstream.\n" +
+        "The default value is false."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS("hive.vectorized.groupby.spill.partitions", 16,
+        "Number of hash partitions the vector group by aggregation hashtable is split into when\n" +
+        "hive.vectorized.groupby.spill.enabled is true. One partition is spilled at a time."),
     HIVE_VECTORIZATION_REDUCESINK_NEW_ENABLED("hive.vectorized.execution.reducesink.new.enabled", true,
         "This flag should be set to true to enable the new vectorization\n" +
         "of queries using ReduceSink.\ni" +
@@ -3563,6 +3622,16 @@ public static enum ConfVars {
     HIVE_VECTORIZATION_PTF_MAX_MEMORY_BUFFERING_BATCH_COUNT("hive.vectorized.ptf.max.memory.buffering.batch.count", 25,
         "Maximum number of vectorized row batches to buffer in memory for PTF\n" +
         "The default value is 25"),
+    HIVE_VECTORIZATION_PTF_OFFSET_DISTRIBUTION_FUNCTIONS_ENABLED(
+        "hive.vectorized.ptf.offset.distribution.functions.enabled", false,
+        "This flag should be set to true to enable vectorized mode of the PTF lead, lag, ntile,\n" +
+        "percent_rank, and cume_dist functions.  The default value is false."),
+    HIVE_VECTORIZATION_PTF_SLIDING_WINDOW_ENABLED(
+        "hive.vectorized.ptf.sliding.window.enabled", false,
+        "This flag should be set to true to enable vectorized mode of the PTF sum, avg, min, max,\n" +
+        "and count functions over ROWS window frames that start at UNBOUNDED PRECEDING, n PRECEDING\n" +
+        "or CURRENT ROW and end at CURRENT ROW or n FOLLOWING (e.g. moving averages).\n" +
+        "The default value is false."),
     HIVE_VECTORIZATION_TESTING_REDUCER_BATCH_SIZE("hive.vectorized.testing.reducer.batch.size", -1,
         "internal use only, used for creating small group key vectorized row batches to exercise more logic\n" +
         "The default value is -1 which means don't restrict for testing",
@@ -3579,6 +3648,19 @@ public static enum ConfVars {
         "of aggregations that use complex types.\n",
         "For example, AVG uses a complex type (STRUCT) for partial aggregation results" +
         "The default value is true."),
+    HIVE_VECTORIZATION_GROUPBY_COLLECT_DISTINCT_ENABLED("hive.vectorized.groupby.collect.distinct.enabled", false,
+        "This flag should be set to true to enable group by vectorization of COUNT(DISTINCT),\n" +
+        "collect_set and collect_list on LONG, DOUBLE and BYTES family values.\n" +
+        "The default value is false."),
+    HIVE_VECTORIZATION_GROUPBY_NUMERIC_HISTOGRAM_ENABLED("hive.vectorized.groupby.numeric.histogram.enabled", false,
+        "This flag should be set to true to enable group by vectorization of percentile_approx\n" +
+        "and histogram_numeric on LONG and DOUBLE family values.\n" +
+        "The default value is false."),
+    HIVE_VECTORIZATION_GROUPBY_COMPUTE_STATS_ENABLED("hive.vectorized.groupby.compute.stats.enabled", false,
+        "This flag should be set to true to enable group by vectorization of the compute_stats\n" +
+        "aggregation of ANALYZE TABLE ... FOR COLUMNS and hive.stats.column.autogather for long,\n" +
+        "double, decimal, string, binary, date and timestamp columns.\n" +
+        "The default value is false."),
     HIVE_VECTORIZATION_ROW_IDENTIFIER_ENABLED("hive.vectorized.row.identifier.enabled", true,
         "This flag should be set to true to enable vectorization of ROW__ID."),
     HIVE_VECTORIZATION_USE_CHECKED_EXPRESSIONS("hive.vectorized.use.checked.expressions", false,
@@ -3804,6 +3886,12 @@ public static enum ConfVars {
     LLAP_ALLOCATOR_MAPPED_PATH("hive.llap.io.allocator.mmap.path", "/tmp",
         new WritableDirectoryValidator(),
         "The directory location for mapping NVDIMM/NVMe flash storage into the ORC low-level cache."),
+    LLAP_IO_CACHE_PERSISTENCE_ENABLED("hive.llap.io.cache.persistence.enabled", false,
+        "Whether the memory mapped LLAP cache should survive daemon restarts. When enabled (and\n" +
+        "hive.llap.io.allocator.mmap is set), the arena files are kept, the cache index (file\n" +
+        "keys, cached ranges and ORC metadata) is written next to them on shutdown, and the\n" +
+        "next daemon copies the cached data back from them on startup. Needs up to twice the\n" +
+        "cache size of space in hive.llap.io.allocator.mmap.path while restoring."),
     LLAP_ALLOCATOR_DISCARD_METHOD("hive.llap.io.allocator.discard.method", "both",
         new StringSet("freelist", "brute", "both"),
         "Which method to use to force-evict blocks to deal with fragmentation:\n" +
@@ -3823,6 +3911,30 @@ public static enum ConfVars {
         "The meaning of this parameter is the inverse of the number of time ticks (cache\n" +
         " operations, currently) that cause the combined recency-frequency of a block in cache\n" +
         " to be halved."),
+    LLAP_LRFU_SHARDS("hive.llap.io.lrfu.shards", 1,
+        "Number of independent shards the LRFU cache policy is split into. Each buffer is\n" +
+        "assigned to one shard, and each shard keeps its own heap, list and locks, so that\n" +
+        "concurrent readers do not all contend on a single policy lock. Values above 1 also\n" +
+        "enable buffered access recording (see hive.llap.io.lrfu.read.buffer.size). 1 uses\n" +
+        "the single, unbuffered LRFU policy."),
+    LLAP_LRFU_READ_BUFFER_SIZE("hive.llap.io.lrfu.read.buffer.size", 128,
+        "Number of buffer unlock notifications the sharded LRFU cache policy queues per shard\n" +
+        "before applying them to the shard in one batch. Only used when hive.llap.io.lrfu.shards\n" +
+        "is greater than 1."),
+    LLAP_IO_CACHE_ADMISSION_ENABLED("hive.llap.io.cache.admission.enabled", false,
+        "Whether ORC low-level cache should only admit data that is read often enough, once the\n" +
+        "cache is nearly full. Access frequency is estimated with a TinyLFU-style frequency\n" +
+        "sketch; data that is not admitted is still used by the query that read it, but is\n" +
+        "discarded afterwards. This prevents large one-off scans from evicting hot data."),
+    LLAP_IO_CACHE_ADMISSION_MIN_FREQUENCY("hive.llap.io.cache.admission.min.frequency", 2,
+        "The minimum estimated number of recent reads of a region of a file for its data to be\n" +
+        "admitted into a nearly full LLAP cache. Only used when\n" +
+        "hive.llap.io.cache.admission.enabled is true. Must be between 1 and 15."),
+    LLAP_IO_CACHE_PREWARM_LIST("hive.llap.io.cache.prewarm.list", "",
+        "The file listing the hot ORC data to read into LLAP cache when the daemon starts,\n" +
+        "e.g. derived from HiveServer2 query history. Each line is a path to an ORC file or to\n" +
+        "a table or partition directory, optionally followed by a tab and a comma-separated list\n" +
+        "of column names to read (all columns by default). Empty disables pre-warming."),
     LLAP_CACHE_ALLOW_SYNTHETIC_FILEID("hive.llap.cache.allow.synthetic.fileid", true,
         "Whether LLAP cache should use synthetic file ID if real one is not available. Systems\n" +
         "like HDFS, Isilon, etc. provide a unique file/inode ID. On other FSes (e.g. local\n" +
@@ -3843,6 +3955,10 @@ public static enum ConfVars {
         "Whether LLAP should use fileId (inode)-based path to ensure better consistency for the\n" +
         "cases of file overwrites. This is supported on HDFS."),
     // Restricted to text for now as this is a new feature; only text files can be sliced.
+    LLAP_IO_PARQUET_ENABLED("hive.llap.io.parquet.enabled", false,
+        "Whether vectorized Parquet reads should go thru LLAP IO elevator, with the column chunks\n" +
+        "and footers cached, and the data decoded on the IO threads. When disabled, Parquet only\n" +
+        "uses LLAP caches from the task threads."),
     LLAP_IO_ENCODE_ENABLED("hive.llap.io.encode.enabled", true,
         "Whether LLAP should try to re-encode and cache data for non-ORC formats. This is used\n" +
         "on LLAP Server side to determine if the infrastructure for that is initialized."),
@@ -3876,6 +3992,10 @@ public static enum ConfVars {
         "slower than the IO (used when determining the size from base size)."),
     LLAP_IO_SHARE_OBJECT_POOLS("hive.llap.io.share.object.pools", false,
         "Whether to used shared object pools in LLAP IO. A safety flag."),
+    LLAP_IO_PREFETCH_STRIPE_METADATA("hive.llap.io.prefetch.stripe.metadata", false,
+        "Whether LLAP IO should start reading the footer and the index of the next stripe while\n" +
+        "the current stripe is being read and decoded. Only used when hive.orc.coalesce.reads\n" +
+        "is enabled."),
     LLAP_AUTO_ALLOW_UBER("hive.llap.auto.allow.uber", false,
         "Whether or not to allow the planner to run vertices in the AM."),
     LLAP_AUTO_ENFORCE_TREE("hive.llap.auto.enforce.tree", true,
@@ -3899,6 +4019,16 @@ public static enum ConfVars {
         "Chooses whether query fragments will run in container or in llap"),
     LLAP_OBJECT_CACHE_ENABLED("hive.llap.object.cache.enabled", true,
         "Cache objects (plans, hashtables, etc) in llap"),
+    LLAP_MAPJOIN_SHARED_CACHE_ENABLED("hive.llap.mapjoin.shared.cache.enabled", false,
+        "Whether broadcast map join hash tables built from transactional tables should be shared\n" +
+        "by all queries in an LLAP daemon, rather than only by the fragments of one query. The\n" +
+        "hash table is keyed by the small table inputs (tables, partitions, write ids, filters and\n" +
+        "projections), so it is loaded once per daemon for identical build sides."),
+    LLAP_MAPJOIN_SHARED_CACHE_MEMORY_FRACTION("hive.llap.mapjoin.shared.cache.memory.fraction",
+        0.2f, new RatioValidator(),
+        "Fraction of the LLAP executor memory (hive.llap.daemon.memory.per.instance.mb) that\n" +
+        "hash tables shared between queries can use. Tables no query is using are evicted first;\n" +
+        "tables that do not fit are used by their query only."),
     LLAP_IO_DECODING_METRICS_PERCENTILE_INTERVALS("hive.llap.io.decoding.metrics.percentiles.intervals", "30",
         "Comma-delimited set of integers denoting the desired rollover intervals (in seconds)\n" +
         "for percentile latency metrics on the LLAP daemon IO decoding time.\n" +
@@ -4121,6 +4251,17 @@ public static enum ConfVars {
       "Whether non-finishable running tasks (e.g. a reducer waiting for inputs) should be\n" +
       "preempted by finishable tasks inside LLAP scheduler.",
       "llap.daemon.task.scheduler.enable.preemption"),
+    LLAP_DAEMON_TASK_SCHEDULER_WORK_STEALING(
+      "hive.llap.daemon.task.scheduler.work.stealing", false,
+      "Whether LLAP executors should run fragments from per-executor deques and steal work\n" +
+      "from each other when idle, instead of using a single direct hand-off thread pool.\n" +
+      "Executors also take the next fragment from the wait queue themselves when they finish\n" +
+      "one. Wait queue ordering and preemption behave the same either way."),
+    LLAP_DAEMON_TASK_SCHEDULER_LOCALITY_GROUPS(
+      "hive.llap.daemon.task.scheduler.locality.groups", 0,
+      "When work stealing is enabled, the number of executor groups fragments of the same\n" +
+      "query are pinned to (by query id), so they share the caches of the same cores. Idle\n" +
+      "executors steal from their own group first. 0 or 1 disables query affinity."),
     LLAP_TASK_COMMUNICATOR_CONNECTION_TIMEOUT_MS(
       "hive.llap.task.communicator.connection.timeout.ms", "16000ms",
       new TimeValidator(TimeUnit.MILLISECONDS),
@@ -4372,6 +4513,16 @@ public static enum ConfVars {
     HIVE_QUERY_REEXECUTION_STATS_CACHE_SIZE("hive.query.reexecution.stats.cache.size", 100_000,
         "Size of the runtime statistics cache. Unit is: OperatorStat entry; a query plan consist ~100."),
 
+    HIVE_QUERY_METADATA_CACHE_ENABLED("hive.query.metadata.cache.enabled", false,
+        "Whether HiveServer2 caches the tables, partitions and column statistics it fetches from\n" +
+        "the metastore while compiling a query, so that each of them is only fetched once per query."),
+    HIVE_QUERY_METADATA_CACHE_SESSION_SCOPE("hive.query.metadata.cache.session.scope", false,
+        "Whether the query metadata cache is kept for the whole session instead of a single query.\n" +
+        "Only the table objects of transactional tables are kept across queries; a later query\n" +
+        "reuses one instead of fetching the table if its ValidWriteIdList for that query is the\n" +
+        "same, which takes an extra metastore call when it is not. Partitions and column statistics\n" +
+        "are only cached for a single query."),
+
     HIVE_QUERY_RESULTS_CACHE_ENABLED("hive.query.results.cache.enabled", true,
         "If the query results cache is enabled. This will keep results of previously executed queries " +
         "to be reused if the same query is executed again."),
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hive.benchmark.vectorization.mapjoin;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.hive.ql.exec.JoinUtil;
+import org.apache.hadoop.hive.ql.exec.persistence.BytesBytesMultiHashMap;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinBytesTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.ReusableGetAdaptorDirectAccess;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastLongHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastMultiKeyHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
+import org.apache.hadoop.hive.serde2.ByteStream.RandomAccessOutput;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
+import org.apache.hadoop.io.BytesWritable;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Map join hash table load, probe and memory benchmarks.
+ *
+ * Build with "mvn clean install -DskipTests -Pdist,itests" at main hive directory.
+ *
+ * From itests/hive-jmh directory, run:
+ *     java -jar target/benchmarks.jar org.apache.hive.benchmark.vectorization.mapjoin.MapJoinHashTableBench
+ *
+ * To narrow the parameters, e.g.:
+ *     java -jar target/benchmarks.jar MapJoinHashTableBench -p keyCount=10000000 -p skew=1.2 -jvmArgs -Xmx16g
+ *
+ *  {FastLongHashMap, FastBytesHashMap, OptimizedBytesTableContainer}
+ *    X
+ *  {load, probe}
+ *    X
+ *  keyCount X valuesPerKey X skew X hitRatio
+ *
+ */
+@State(Scope.Benchmark)
+public class MapJoinHashTableBench {
+
+  /*
+   * Long keys in the native vector map join fast hash map.
+   */
+  public static class FastLongHashMapBench extends MapJoinHashTableBenchBase {
+
+    private VectorMapJoinFastLongHashMap hashMap;
+    private VectorMapJoinHashMapResult hashMapResult;
+    private long[] longProbeKeys;
+
+    @Override
+    protected void createTable(int estimatedKeyCount) {
+      hashMap =
+          new VectorMapJoinFastLongHashMap(
+              /* minMaxEnabled */ false, /* isOuterJoin */ false, HashTableKeyType.LONG,
+              estimatedKeyCount, loadFactor, writeBuffersSize, estimatedKeyCount);
+      hashMapResult = hashMap.createHashMapResult();
+    }
+
+    @Override
+    protected void addRow(long key, BytesWritable value) {
+      hashMap.add(key, value);
+    }
+
+    @Override
+    protected void prepareProbeKeys(long[] probeKeys) {
+      longProbeKeys = probeKeys;
+    }
+
+    @Override
+    protected int probe(int probeIndex) {
+      if (hashMap.lookup(longProbeKeys[probeIndex], hashMapResult) != JoinUtil.JoinResult.MATCH) {
+        return 0;
+      }
+      return readValues(hashMapResult);
+    }
+
+    @Override
+    protected long getEstimatedMemorySize() {
+      return hashMap.getEstimatedMemorySize();
+    }
+  }
+
+  /*
+   * String keys in the native vector map join fast bytes hash map.
+   */
+  public static class FastBytesHashMapBench extends MapJoinHashTableBenchBase {
+
+    private VectorMapJoinFastMultiKeyHashMap hashMap;
+    private VectorMapJoinHashMapResult hashMapResult;
+    private byte[][] bytesProbeKeys;
+
+    @Override
+    protected void createTable(int estimatedKeyCount) {
+      hashMap =
+          new VectorMapJoinFastMultiKeyHashMap(
+              /* isOuterJoin */ false,
+              estimatedKeyCount, loadFactor, writeBuffersSize, estimatedKeyCount);
+      hashMapResult = hashMap.createHashMapResult();
+    }
+
+    @Override
+    protected void addRow(long key, BytesWritable value) {
+      byte[] keyBytes = keyBytesOf(key);
+      hashMap.add(keyBytes, 0, keyBytes.length, value);
+    }
+
+    @Override
+    protected void prepareProbeKeys(long[] probeKeys) {
+      bytesProbeKeys = keyBytesOf(probeKeys);
+    }
+
+    @Override
+    protected int probe(int probeIndex) {
+      byte[] keyBytes = bytesProbeKeys[probeIndex];
+      if (hashMap.lookup(keyBytes, 0, keyBytes.length, hashMapResult) !=
+          JoinUtil.JoinResult.MATCH) {
+        return 0;
+      }
+      return readValues(hashMapResult);
+    }
+
+    @Override
+    protected long getEstimatedMemorySize() {
+      return hashMap.getEstimatedMemorySize();
+    }
+  }
+
+  /*
+   * String keys in the optimized (hive.mapjoin.optimized.hashtable) table container, probed
+   * the way the native vector map join optimized hash tables do.
+   */
+  public static class OptimizedBytesTableContainerBench extends MapJoinHashTableBenchBase {
+
+    private BytesBytesMultiHashMap hashMap;
+    private MapJoinBytesTableContainer tableContainer;
+    private ReusableGetAdaptorDirectAccess getAdaptor;
+    private BytesBytesMultiHashMap.Result hashMapResult;
+    private byte[][] bytesProbeKeys;
+
+    private final KeyValueSource keyValueSource = new KeyValueSource();
+
+    @Override
+    protected void createTable(int estimatedKeyCount) {
+      hashMap =
+          new BytesBytesMultiHashMap(
+              estimatedKeyCount, loadFactor, writeBuffersSize, /* maxProbeSize */ -1);
+      tableContainer = new MapJoinBytesTableContainer(hashMap);
+      getAdaptor = (ReusableGetAdaptorDirectAccess) tableContainer.createGetter(null);
+      hashMapResult = new BytesBytesMultiHashMap.Result();
+    }
+
+    @Override
+    protected void addRow(long key, BytesWritable value) throws SerDeException {
+      keyValueSource.keyBytes = keyBytesOf(key);
+      keyValueSource.value = value;
+      hashMap.put(keyValueSource, -1);
+    }
+
+    @Override
+    protected void prepareProbeKeys(long[] probeKeys) {
+      bytesProbeKeys = keyBytesOf(probeKeys);
+    }
+
+    @Override
+    protected int probe(int probeIndex) {
+      byte[] keyBytes = bytesProbeKeys[probeIndex];
+      if (getAdaptor.setDirect(keyBytes, 0, keyBytes.length, hashMapResult) !=
+          JoinUtil.JoinResult.MATCH) {
+        return 0;
+      }
+      int valueCount = 0;
+      ByteSegmentRef byteSegmentRef = hashMapResult.first();
+      while (byteSegmentRef != null) {
+        valueCount++;
+        byteSegmentRef = hashMapResult.next();
+      }
+      return valueCount;
+    }
+
+    @Override
+    protected long getEstimatedMemorySize() {
+      return tableContainer.getEstimatedMemorySize();
+    }
+
+    private static class KeyValueSource implements BytesBytesMultiHashMap.KvSource {
+
+      private byte[] keyBytes;
+      private BytesWritable value;
+
+      @Override
+      public void writeKey(RandomAccessOutput dest) {
+        dest.write(keyBytes, 0, keyBytes.length);
+      }
+
+      @Override
+      public void writeValue(RandomAccessOutput dest) {
+        dest.write(value.getBytes(), 0, value.getLength());
+      }
+
+      @Override
+      public byte updateStateByte(Byte previousValue) {
+        return (byte) 0xff;
+      }
+    }
+  }
+
+  //-----------------------------------------------------------------------------------------------
+
+  private static int readValues(VectorMapJoinHashMapResult hashMapResult) {
+    int valueCount = 0;
+    ByteSegmentRef byteSegmentRef = hashMapResult.first();
+    while (byteSegmentRef != null) {
+      valueCount++;
+      byteSegmentRef = hashMapResult.next();
+    }
+    return valueCount;
+  }
+
+  private static byte[] keyBytesOf(long key) {
+    return ("customer#" + key).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[][] keyBytesOf(long[] keys) {
+    byte[][] keyBytes = new byte[keys.length][];
+    for (int i = 0; i < keys.length; i++) {
+      keyBytes[i] = keyBytesOf(keys[i]);
+    }
+    return keyBytes;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + MapJoinHashTableBench.class.getSimpleName() + ".*")
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hive.benchmark.vectorization.mapjoin;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.io.BytesWritable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Common harness for benchmarking a map join hash table directly, without the operator.
+ *
+ * The small table has keyCount distinct keys with valuesPerKey values each.  The probe keys
+ * hit the table with probability hitRatio; hits are drawn from a Zipfian distribution over the
+ * keys with exponent skew (0 is uniform), which models a skewed big table foreign key.
+ *
+ * The load benchmark measures building the whole table once.  The probe benchmark measures
+ * the average time of one lookup, including reading every value of a match.  The load benchmark
+ * also reports the estimated memory of the table, in total and per small table row, as the
+ * estimatedBytes and estimatedBytesPerRow secondary results.
+ *
+ * Tables with 10,000,000 keys need a large heap, e.g. add "-jvmArgs -Xmx16g".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public abstract class MapJoinHashTableBenchBase {
+
+  protected static final int PROBE_KEY_COUNT = 64 * 1024;
+
+  protected static final int VALUE_LENGTH = 24;
+
+  private static final long SEED = 2543;
+
+  @Param({"1000000", "10000000"})
+  public int keyCount;
+
+  @Param({"1", "8"})
+  public int valuesPerKey;
+
+  @Param({"0", "0.8", "1.2"})
+  public double skew;
+
+  @Param({"1.0", "0.5", "0.05"})
+  public double hitRatio;
+
+  protected float loadFactor;
+  protected int writeBuffersSize;
+
+  private long[] probeKeys;
+
+  /*
+   * The estimated memory of the loaded table, reported by JMH as secondary results of load.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class MemoryCounters {
+
+    public long estimatedBytes;
+    public long estimatedBytesPerRow;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      estimatedBytes = 0;
+      estimatedBytesPerRow = 0;
+    }
+  }
+
+  //-----------------------------------------------------------------------------------------------
+
+  /*
+   * Creates an empty hash table sized for the expected key count.
+   */
+  protected abstract void createTable(int estimatedKeyCount) throws Exception;
+
+  /*
+   * Adds one small table row.
+   */
+  protected abstract void addRow(long key, BytesWritable value) throws Exception;
+
+  /*
+   * Converts the probe keys into the representation looked up by the table.
+   */
+  protected abstract void prepareProbeKeys(long[] probeKeys) throws Exception;
+
+  /*
+   * Looks up probe key probeIndex and returns the number of values read.
+   */
+  protected abstract int probe(int probeIndex) throws Exception;
+
+  protected abstract long getEstimatedMemorySize();
+
+  //-----------------------------------------------------------------------------------------------
+
+  /*
+   * Maps a key rank to a scattered key value.  Present keys have even ranks and absent keys
+   * have odd ranks, and the multiplication by an odd constant is a bijection.
+   */
+  protected static long keyOf(long rank) {
+    return rank * 0x9E3779B97F4A7C15L;
+  }
+
+  private int zipfianRank(double u) {
+    if (skew == 0.0) {
+      return (int) (u * keyCount);
+    }
+
+    // Inverse of the continuous approximation of the Zipfian CDF.
+    final double n = keyCount + 1.0;
+    final double oneMinusSkew = 1.0 - skew;
+    double x;
+    if (Math.abs(oneMinusSkew) < 1e-9) {
+      x = Math.exp(u * Math.log(n));
+    } else {
+      x = Math.pow((Math.pow(n, oneMinusSkew) - 1.0) * u + 1.0, 1.0 / oneMinusSkew);
+    }
+    return Math.min(keyCount - 1, Math.max(0, (int) x - 1));
+  }
+
+  protected long loadTable() throws Exception {
+    createTable(keyCount);
+
+    Random random = new Random(SEED);
+    byte[] valueBytes = new byte[VALUE_LENGTH];
+    BytesWritable value = new BytesWritable();
+    for (int v = 0; v < valuesPerKey; v++) {
+      for (int r = 0; r < keyCount; r++) {
+        random.nextBytes(valueBytes);
+        value.set(valueBytes, 0, VALUE_LENGTH);
+        addRow(keyOf(2L * r), value);
+      }
+    }
+    return getEstimatedMemorySize();
+  }
+
+  @Setup(Level.Trial)
+  public void setupTrial() throws Exception {
+    loadFactor = HiveConf.ConfVars.HIVEHASHTABLELOADFACTOR.defaultFloatVal;
+    writeBuffersSize = HiveConf.ConfVars.HIVEHASHTABLEWBSIZE.defaultIntVal;
+
+    Random random = new Random(SEED + 1);
+    probeKeys = new long[PROBE_KEY_COUNT];
+    for (int i = 0; i < PROBE_KEY_COUNT; i++) {
+      int rank = zipfianRank(random.nextDouble());
+      if (random.nextDouble() < hitRatio) {
+        probeKeys[i] = keyOf(2L * rank);
+      } else {
+        probeKeys[i] = keyOf(2L * rank + 1);
+      }
+    }
+    prepareProbeKeys(probeKeys);
+
+    loadTable();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 3)
+  public long load(MemoryCounters memoryCounters) throws Exception {
+    final long memorySize = loadTable();
+    memoryCounters.estimatedBytes = memorySize;
+    memoryCounters.estimatedBytesPerRow =
+        Math.round((double) memorySize / ((long) keyCount * valuesPerKey));
+    return memorySize;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PROBE_KEY_COUNT)
+  public long probe() throws Exception {
+    long valueCount = 0;
+    for (int i = 0; i < PROBE_KEY_COUNT; i++) {
+      valueCount += probe(i);
+    }
+    return valueCount;
+  }
+}
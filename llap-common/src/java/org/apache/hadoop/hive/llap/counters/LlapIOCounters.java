@@ -36,7 +36,10 @@ public enum LlapIOCounters {
   TOTAL_IO_TIME_NS(false),
   DECODE_TIME_NS(false),
   HDFS_TIME_NS(false),
-  CONSUMER_TIME_NS(false);
+  CONSUMER_TIME_NS(false),
+  COALESCED_READ_RANGES(false),
+  COALESCED_READ_REQUESTS(false),
+  PREFETCH_HIT_BYTES(false);
 
   // flag to indicate if these counters are subject to change across different test runs
   private boolean testSafe;
@@ -26,6 +26,7 @@
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -63,6 +64,7 @@
   private final long maxSize;
   private final boolean isDirect;
   private final boolean isMapped;
+  private final boolean isPersistent;
   private final Path cacheDir;
 
   // These are only used for tests.
@@ -73,6 +75,9 @@
   private static final int MAX_ARENA_SIZE = 1024*1024*1024;
   // Don't try to operate with less than MIN_SIZE allocator space, it will just give you grief.
   private static final int MIN_TOTAL_MEMORY_SIZE = 64*1024*1024;
+  // Directory names used for the persistent mmap cache; the previous one is kept until restored.
+  public static final String PERSISTENT_CACHE_DIR = "llap-cache",
+      PREVIOUS_PERSISTENT_CACHE_DIR = "llap-cache.previous";
   // Maximum reasonable defragmentation headroom. Mostly kicks in on very small caches.
   private static final float MAX_DEFRAG_HEADROOM_FRACTION = 0.01f;
 
@@ -99,7 +104,8 @@ public BuddyAllocator(Configuration conf, MemoryManager mm, LlapDaemonCacheMetri
         getMaxTotalMemorySize(conf),
         HiveConf.getSizeVar(conf, ConfVars.LLAP_ALLOCATOR_DEFRAG_HEADROOM),
         HiveConf.getVar(conf, ConfVars.LLAP_ALLOCATOR_MAPPED_PATH),
-        mm, metrics, HiveConf.getVar(conf, ConfVars.LLAP_ALLOCATOR_DISCARD_METHOD));
+        mm, metrics, HiveConf.getVar(conf, ConfVars.LLAP_ALLOCATOR_DISCARD_METHOD),
+        HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_CACHE_PERSISTENCE_ENABLED));
   }
 
   private static boolean areAssertsEnabled() {
@@ -123,11 +129,32 @@ private static long getMaxTotalMemorySize(Configuration conf) {
   public BuddyAllocator(boolean isDirectVal, boolean isMappedVal, int minAllocVal,
       int maxAllocVal, int arenaCount, long maxSizeVal, long defragHeadroom, String mapPath,
       MemoryManager memoryManager, LlapDaemonCacheMetrics metrics, String discardMethod) {
+    this(isDirectVal, isMappedVal, minAllocVal, maxAllocVal, arenaCount, maxSizeVal,
+        defragHeadroom, mapPath, memoryManager, metrics, discardMethod, false);
+  }
+
+  @VisibleForTesting
+  public BuddyAllocator(boolean isDirectVal, boolean isMappedVal, int minAllocVal,
+      int maxAllocVal, int arenaCount, long maxSizeVal, long defragHeadroom, String mapPath,
+      MemoryManager memoryManager, LlapDaemonCacheMetrics metrics, String discardMethod,
+      boolean isPersistentVal) {
     isDirect = isDirectVal;
     isMapped = isMappedVal;
+    if (isPersistentVal && !isMapped) {
+      LlapIoImpl.LOG.warn("Ignoring " + ConfVars.LLAP_IO_CACHE_PERSISTENCE_ENABLED.varname
+          + " because the cache is not memory mapped; set "
+          + ConfVars.LLAP_ALLOCATOR_MAPPED.varname + " to use it");
+    }
+    isPersistent = isPersistentVal && isMapped;
     minAllocation = minAllocVal;
     maxAllocation = maxAllocVal;
-    if (isMapped) {
+    if (isPersistent) {
+      try {
+        cacheDir = preparePersistentCacheDir(FileSystems.getDefault().getPath(mapPath));
+      } catch (IOException ioe) {
+        throw new AssertionError("Configured mmap directory should be writable", ioe);
+      }
+    } else if (isMapped) {
       try {
         cacheDir = Files.createTempDirectory(
             FileSystems.getDefault().getPath(mapPath), "llap-", RWX);
@@ -166,6 +193,63 @@ public BuddyAllocator(boolean isDirectVal, boolean isMappedVal, int minAllocVal,
     doUseBruteDiscard = isBoth || "brute".equalsIgnoreCase(discardMethod);
   }
 
+  /**
+   * Moves the cache directory left by the previous daemon aside (so that it can be restored
+   * from), and creates a fresh one for this daemon. Arena files are never reused in place.
+   */
+  private static Path preparePersistentCacheDir(Path mapPath) throws IOException {
+    Path dir = mapPath.resolve(PERSISTENT_CACHE_DIR),
+        previousDir = mapPath.resolve(PREVIOUS_PERSISTENT_CACHE_DIR);
+    if (Files.exists(dir)) {
+      // Anything older than the last run can no longer be restored from.
+      deleteCacheDir(previousDir);
+      Files.move(dir, previousDir);
+    }
+    return Files.createDirectory(dir, RWX);
+  }
+
+  static void deleteCacheDir(Path dir) throws IOException {
+    if (!Files.exists(dir)) return;
+    File[] files = dir.toFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        Files.delete(file.toPath());
+      }
+    }
+    Files.delete(dir);
+  }
+
+  /** @return The directory with this daemon's arena files, or null if the cache isn't persistent. */
+  public Path getPersistentCacheDir() {
+    return isPersistent ? cacheDir : null;
+  }
+
+  /** @return The directory left by the previous daemon, or null if there's none to restore from. */
+  public Path getPreviousPersistentCacheDir() {
+    if (!isPersistent) return null;
+    Path previousDir = cacheDir.resolveSibling(PREVIOUS_PERSISTENT_CACHE_DIR);
+    return Files.exists(previousDir) ? previousDir : null;
+  }
+
+  static String getArenaFileName(int arenaIx) {
+    return "arena-" + arenaIx + ".cache";
+  }
+
+  /** Flushes the memory mapped arenas to their backing files. */
+  public void forceMappedArenas() {
+    if (!isMapped) return;
+    int arenaCount = allocatedArenas.get();
+    if (arenaCount < 0) {
+      arenaCount = -arenaCount - 1;
+    }
+    for (int i = 0; i < arenaCount; ++i) {
+      ByteBuffer data = arenas[i].data;
+      if (data instanceof MappedByteBuffer) {
+        ((MappedByteBuffer)data).force();
+      }
+    }
+  }
+
   public long determineMaxMmSize(long defragHeadroom, long maxMmSize) {
     if (defragHeadroom > 0) {
       long maxHeadroom = (long) Math.floor(maxSize * MAX_DEFRAG_HEADROOM_FRACTION);
@@ -704,13 +788,14 @@ public boolean isDirectAlloc() {
     return isDirect;
   }
 
-  private ByteBuffer preallocateArenaBuffer(int arenaSize) {
+  private ByteBuffer preallocateArenaBuffer(int arenaIx, int arenaSize) {
     if (isMapped) {
       RandomAccessFile rwf = null;
       File rf = null;
       Preconditions.checkArgument(isDirect, "All memory mapped allocations have to be direct buffers");
       try {
-        rf = File.createTempFile("arena-", ".cache", cacheDir.toFile());
+        rf = isPersistent ? cacheDir.resolve(getArenaFileName(arenaIx)).toFile()
+            : File.createTempFile("arena-", ".cache", cacheDir.toFile());
         rwf = new RandomAccessFile(rf, "rw");
         rwf.setLength(arenaSize); // truncate (TODO: posix_fallocate?)
         // Use RW, not PRIVATE because the copy-on-write is irrelevant for a deleted file
@@ -723,9 +808,9 @@ private ByteBuffer preallocateArenaBuffer(int arenaSize) {
         throw new OutOfMemoryError("Failed trying to allocate memory mapped arena: " + ioe.getMessage());
       } finally {
         // A mapping, once established, is not dependent upon the file channel that was used to
-        // create it. delete file and hold onto the map
+        // create it. delete file and hold onto the map, unless the next daemon will need it.
         IOUtils.closeQuietly(rwf);
-        if (rf != null) {
+        if (rf != null && !isPersistent) {
           rf.delete();
         }
       }
@@ -749,7 +834,7 @@ private class Arena {
     void init(int arenaIx) {
       this.arenaIx = arenaIx;
       try {
-        data = preallocateArenaBuffer(arenaSize);
+        data = preallocateArenaBuffer(arenaIx, arenaSize);
       } catch (OutOfMemoryError oom) {
         throw new OutOfMemoryError("Cannot allocate " + arenaSize + " bytes: " + oom.getMessage()
             + "; make sure your xmx and process size are set correctly.");
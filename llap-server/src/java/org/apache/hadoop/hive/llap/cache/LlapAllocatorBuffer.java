@@ -57,6 +57,11 @@ public void setNewAllocLocation(int arenaIx, int headerIx) {
     }
   }
 
+  /** @return The index of the arena this buffer is currently allocated in. */
+  public int getArenaIndex() {
+    return State.getArena(state.get());
+  }
+
   @Override
   public ByteBuffer getByteBufferDup() {
     return byteBuffer.duplicate();
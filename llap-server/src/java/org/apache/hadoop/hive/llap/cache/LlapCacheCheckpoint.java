@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.hive.common.io.Allocator.AllocatorOutOfMemoryException;
+import org.apache.hadoop.hive.llap.LlapUtil;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
+import org.apache.hadoop.hive.llap.io.metadata.MetadataCache.LlapBufferOrBuffers;
+import org.apache.hadoop.hive.ql.io.SyntheticFileId;
+import org.apache.hadoop.hive.ql.io.orc.encoded.OrcBatchKey;
+
+/**
+ * Writes the index of the memory mapped cache (file keys, cached ranges and ORC metadata, with
+ * the arena locations of the data) next to the arena files on shutdown, and restores the cache
+ * from the previous daemon's arena files on startup.
+ * The allocator state is not persisted; instead, the restore copies every entry into a buffer
+ * allocated from the new arenas the usual way, so the allocator and the cache policy see the
+ * restored data exactly as if it had been read from the file system.
+ * Only HDFS file IDs and synthetic file IDs are persisted. Both identify one version of a file:
+ * HDFS never reuses file IDs, and synthetic IDs include the modification time and length, so
+ * an entry for a file that was rewritten while the daemon was down will simply never be hit.
+ * The index is only renamed into place after all of it was written and the arenas were flushed,
+ * so an index is only found after a clean shutdown.
+ */
+public final class LlapCacheCheckpoint {
+  static final String INDEX_FILE_NAME = "cache.index";
+  private static final int MAGIC = 0x4c4c4349, VERSION = 1;
+  private static final byte END = 0, DATA = 1, METADATA = 2;
+  private static final byte KEY_FILE_ID = 1, KEY_SYNTHETIC_FILE_ID = 2;
+
+  private LlapCacheCheckpoint() {
+  }
+
+  public static boolean isPersistableKey(Object fileKey) {
+    return fileKey instanceof Long || fileKey instanceof SyntheticFileId;
+  }
+
+  /**
+   * Writes the cache index into the persistent cache directory of the allocator.
+   * The buffers recorded are left locked, so that they are not moved or evicted before the
+   * daemon exits; this must therefore be the last thing done with the cache.
+   */
+  public static void write(BuddyAllocator allocator, LowLevelCacheImpl dataCache,
+      MetadataCache metadataCache) throws IOException {
+    Path dir = allocator.getPersistentCacheDir();
+    if (dir == null) return;
+    Path tmpFile = dir.resolve(INDEX_FILE_NAME + ".tmp");
+    long startTime = System.nanoTime();
+    Writer writer = new Writer(tmpFile, allocator.getArenaSize());
+    try {
+      if (dataCache != null) {
+        dataCache.writeCheckpoint(writer);
+      }
+      if (metadataCache != null) {
+        metadataCache.writeCheckpoint(writer);
+      }
+    } finally {
+      writer.close();
+    }
+    allocator.forceMappedArenas();
+    Files.move(tmpFile, dir.resolve(INDEX_FILE_NAME), StandardCopyOption.ATOMIC_MOVE);
+    LlapIoImpl.LOG.info("Wrote cache index with {} entries ({} of data) in {}ms",
+        writer.entryCount, LlapUtil.humanReadableByteCount(writer.byteCount),
+        (System.nanoTime() - startTime) / 1000000L);
+  }
+
+  /**
+   * Restores the cache from the arena files and index left by the previous daemon, if any,
+   * and deletes them afterwards.
+   * @param maxBytes The maximum amount of cache memory to restore into, so that restore doesn't
+   *                 cause evictions of the data it has just restored.
+   * @return The amount of cache memory restored into.
+   */
+  public static long restore(BuddyAllocator allocator, LowLevelCacheImpl dataCache,
+      MetadataCache metadataCache, long maxBytes) {
+    Path dir = allocator.getPreviousPersistentCacheDir();
+    if (dir == null) return 0;
+    long startTime = System.nanoTime(), restored = 0;
+    int entryCount = 0;
+    Path indexFile = dir.resolve(INDEX_FILE_NAME);
+    if (!Files.exists(indexFile)) {
+      LlapIoImpl.LOG.info("Not restoring the cache from {}; the previous daemon did not shut down"
+          + " cleanly", dir);
+    } else {
+      Reader reader = null;
+      try {
+        reader = new Reader(dir, indexFile, allocator.getArenaSize(),
+            allocator.getMinAllocation());
+        while (restored < maxBytes && reader.next()) {
+          ByteBuffer data = reader.getData();
+          if (reader.isMetadata) {
+            LlapBufferOrBuffers result = reader.stripeIx < 0
+                ? metadataCache.putFileMetadata(reader.fileKey, data, reader.tag)
+                : metadataCache.putStripeTail(
+                    new OrcBatchKey(reader.fileKey, reader.stripeIx, 0), data, reader.tag);
+            metadataCache.decRefBuffer(result);
+          } else {
+            dataCache.restoreFileData(
+                reader.fileKey, reader.offset, reader.declaredLength, data, reader.tag);
+          }
+          restored += reader.allocLength;
+          ++entryCount;
+        }
+      } catch (IOException | AllocatorOutOfMemoryException ex) {
+        LlapIoImpl.LOG.warn("Failed to restore the cache from " + dir + "; restored "
+            + entryCount + " entries so far", ex);
+      } finally {
+        IOUtils.closeQuietly(reader);
+      }
+      LlapIoImpl.LOG.info("Restored {} cache entries ({}) from {} in {}ms", entryCount,
+          LlapUtil.humanReadableByteCount(restored), dir,
+          (System.nanoTime() - startTime) / 1000000L);
+    }
+    try {
+      BuddyAllocator.deleteCacheDir(dir);
+    } catch (IOException ex) {
+      LlapIoImpl.LOG.warn("Failed to delete the previous cache directory " + dir, ex);
+    }
+    return restored;
+  }
+
+  /** Writes the index entries; used by the caches to describe their contents. */
+  public static final class Writer implements Closeable {
+    private final DataOutputStream out;
+    private int entryCount = 0;
+    private long byteCount = 0;
+
+    private Writer(Path file, int arenaSize) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(arenaSize);
+    }
+
+    /** Records a data buffer cached at the given file offset. */
+    public void writeData(Object fileKey, long offset, LlapDataBuffer buffer) throws IOException {
+      out.writeByte(DATA);
+      writeKey(fileKey);
+      out.writeLong(offset);
+      out.writeInt(buffer.declaredCachedLength);
+      writeTag(buffer.getTag());
+      out.writeInt(1);
+      writeLocation(buffer);
+      ++entryCount;
+    }
+
+    /**
+     * Records the file metadata (stripeIx < 0) or the stripe tail stored in the buffers;
+     * the metadata is the concatenation of the buffers contents.
+     */
+    public void writeMetadata(Object fileKey, int stripeIx, String tag,
+        LlapAllocatorBuffer[] buffers) throws IOException {
+      out.writeByte(METADATA);
+      writeKey(fileKey);
+      out.writeInt(stripeIx);
+      writeTag(tag);
+      out.writeInt(buffers.length);
+      for (LlapAllocatorBuffer buffer : buffers) {
+        writeLocation(buffer);
+      }
+      ++entryCount;
+    }
+
+    private void writeKey(Object fileKey) throws IOException {
+      if (fileKey instanceof Long) {
+        out.writeByte(KEY_FILE_ID);
+        out.writeLong((Long)fileKey);
+      } else if (fileKey instanceof SyntheticFileId) {
+        out.writeByte(KEY_SYNTHETIC_FILE_ID);
+        ((SyntheticFileId)fileKey).write(out);
+      } else {
+        throw new AssertionError("Unexpected file key " + fileKey.getClass());
+      }
+    }
+
+    private void writeTag(String tag) throws IOException {
+      out.writeBoolean(tag != null);
+      if (tag != null) {
+        out.writeUTF(tag);
+      }
+    }
+
+    private void writeLocation(LlapAllocatorBuffer buffer) throws IOException {
+      ByteBuffer bb = buffer.getByteBufferRaw();
+      out.writeInt(buffer.getArenaIndex());
+      out.writeInt(bb.position());
+      out.writeInt(bb.remaining());
+      byteCount += bb.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.writeByte(END);
+      out.close();
+    }
+  }
+
+  private static final class Reader implements Closeable {
+    private final Path dir;
+    private final int arenaSize, minAllocation;
+    private final DataInputStream in;
+    private ByteBuffer[] arenas = new ByteBuffer[0];
+
+    boolean isMetadata;
+    Object fileKey;
+    long offset;
+    int declaredLength, stripeIx, dataLength;
+    long allocLength;
+    String tag;
+    // Arena index, offset and length for each of the locationCount buffers of the entry.
+    private int[] locations = new int[3];
+    private int locationCount;
+
+    Reader(Path dir, Path indexFile, int arenaSize, int minAllocation) throws IOException {
+      this.dir = dir;
+      this.arenaSize = arenaSize;
+      this.minAllocation = minAllocation;
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)));
+      int magic = in.readInt(), version = in.readInt(), oldArenaSize = in.readInt();
+      if (magic != MAGIC || version != VERSION) {
+        throw new IOException("Unsupported cache index " + magic + " version " + version);
+      }
+      if (oldArenaSize != arenaSize) {
+        throw new IOException("The cache was written with arena size " + oldArenaSize
+            + "; current arena size is " + arenaSize);
+      }
+    }
+
+    boolean next() throws IOException {
+      byte type = in.readByte();
+      if (type == END) return false;
+      if (type != DATA && type != METADATA) {
+        throw new IOException("Unexpected cache index entry type " + type);
+      }
+      isMetadata = (type == METADATA);
+      fileKey = readKey();
+      if (isMetadata) {
+        stripeIx = in.readInt();
+      } else {
+        offset = in.readLong();
+        declaredLength = in.readInt();
+      }
+      tag = in.readBoolean() ? in.readUTF() : null;
+      int count = in.readInt();
+      if (locations.length < count * 3) {
+        locations = new int[count * 3];
+      }
+      dataLength = 0;
+      allocLength = 0;
+      for (int i = 0; i < count * 3; i += 3) {
+        locations[i] = in.readInt();
+        locations[i + 1] = in.readInt();
+        locations[i + 2] = in.readInt();
+        if (locations[i + 1] < 0 || locations[i + 2] < 0
+            || ((long)locations[i + 1] + locations[i + 2]) > arenaSize) {
+          throw new IOException("Invalid cache index location " + locations[i + 1] + ", "
+              + locations[i + 2] + " for " + fileKey);
+        }
+        dataLength += locations[i + 2];
+        // The allocator rounds the allocations up to a power of two.
+        int length = Math.max(minAllocation, locations[i + 2]);
+        allocLength += (Integer.bitCount(length) == 1) ? length : Integer.highestOneBit(length) << 1;
+      }
+      locationCount = count;
+      return true;
+    }
+
+    /** @return The data of the current entry, from the previous daemon's arenas. */
+    ByteBuffer getData() throws IOException {
+      if (locationCount == 1) {
+        return getLocation(0);
+      }
+      ByteBuffer result = ByteBuffer.allocate(dataLength);
+      for (int i = 0; i < locationCount; ++i) {
+        result.put(getLocation(i));
+      }
+      result.flip();
+      return result;
+    }
+
+    private ByteBuffer getLocation(int ix) throws IOException {
+      ByteBuffer arena = getArena(locations[ix * 3]).duplicate();
+      arena.position(locations[ix * 3 + 1]);
+      arena.limit(locations[ix * 3 + 1] + locations[ix * 3 + 2]);
+      return arena.slice();
+    }
+
+    private ByteBuffer getArena(int arenaIx) throws IOException {
+      if (arenaIx < 0) throw new IOException("Invalid arena " + arenaIx);
+      if (arenaIx >= arenas.length) {
+        ByteBuffer[] newArenas = new ByteBuffer[arenaIx + 1];
+        System.arraycopy(arenas, 0, newArenas, 0, arenas.length);
+        arenas = newArenas;
+      }
+      if (arenas[arenaIx] == null) {
+        Path file = dir.resolve(BuddyAllocator.getArenaFileName(arenaIx));
+        if (!Files.exists(file) || Files.size(file) != arenaSize) {
+          throw new IOException("Arena file " + file + " is missing or has the wrong size");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+          arenas[arenaIx] = channel.map(MapMode.READ_ONLY, 0, arenaSize);
+        } finally {
+          channel.close();
+        }
+      }
+      return arenas[arenaIx];
+    }
+
+    private Object readKey() throws IOException {
+      byte keyType = in.readByte();
+      switch (keyType) {
+      case KEY_FILE_ID:
+        return in.readLong();
+      case KEY_SYNTHETIC_FILE_ID:
+        SyntheticFileId key = new SyntheticFileId();
+        key.readFields(in);
+        return key;
+      default:
+        throw new IOException("Unexpected file key type " + keyType);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+      arenas = null; // The mappings go away when collected.
+    }
+  }
+}
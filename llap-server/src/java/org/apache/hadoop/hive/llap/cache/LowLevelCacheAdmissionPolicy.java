@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+/**
+ * Decides whether the data that has just been read should be put into the low-level cache.
+ * The cache reports all the ranges requested from it, cached or not, so that the policy can
+ * track how often different parts of the files are read.
+ */
+public interface LowLevelCacheAdmissionPolicy {
+  /** Records that the range [offset, end) of the file has been requested from the cache. */
+  void recordAccess(Object fileKey, long offset, long end);
+
+  /** Whether the range [offset, end) of the file, just read from disk, should be cached. */
+  boolean shouldAdmit(Object fileKey, long offset, long end);
+}
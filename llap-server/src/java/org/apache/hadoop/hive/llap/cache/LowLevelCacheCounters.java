@@ -22,5 +22,6 @@ public interface LowLevelCacheCounters {
   void recordCacheMiss(long bytesMissed);
   void recordAllocBytes(long bytesWasted, long bytesAllocated);
   void recordHdfsTime(long timeUs);
+  void recordCoalescedReads(long rangesRead, long requestsIssued, long prefetchHitBytes);
   long startTimeCounter();
 }
\ No newline at end of file
@@ -19,6 +19,7 @@
 
 import org.apache.orc.impl.RecordReaderUtils;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
@@ -56,6 +57,7 @@ public class LowLevelCacheImpl implements LowLevelCache, BufferUsageManager, Lla
   private final long cleanupInterval;
   private final LlapDaemonCacheMetrics metrics;
   private final boolean doAssumeGranularBlocks;
+  private LowLevelCacheAdmissionPolicy admissionPolicy;
 
   private static final Function<Void, ConcurrentSkipListMap<Long, LlapDataBuffer>> CACHE_CTOR =
       new Function<Void, ConcurrentSkipListMap<Long, LlapDataBuffer>>() {
@@ -81,6 +83,10 @@ public LowLevelCacheImpl(LlapDaemonCacheMetrics metrics, LowLevelCachePolicy cac
     this.doAssumeGranularBlocks = doAssumeGranularBlocks;
   }
 
+  public void setAdmissionPolicy(LowLevelCacheAdmissionPolicy admissionPolicy) {
+    this.admissionPolicy = admissionPolicy;
+  }
+
   public void startThreads() {
     if (cleanupInterval < 0) return;
     cleanupThread = new CleanupThread(cache, newEvictions, cleanupInterval);
@@ -91,6 +97,12 @@ public void startThreads() {
   public DiskRangeList getFileData(Object fileKey, DiskRangeList ranges, long baseOffset,
       DiskRangeListFactory factory, LowLevelCacheCounters qfCounters, BooleanRef gotAllData) {
     if (ranges == null) return null;
+    if (admissionPolicy != null) {
+      for (DiskRangeList current = ranges; current != null; current = current.next) {
+        admissionPolicy.recordAccess(
+            fileKey, current.getOffset() + baseOffset, current.getEnd() + baseOffset);
+      }
+    }
     DiskRangeList prev = ranges.prev;
     FileCache<ConcurrentSkipListMap<Long, LlapDataBuffer>> subCache = cache.get(fileKey);
     if (subCache == null || !subCache.incRef()) {
@@ -303,6 +315,11 @@ public long[] putFileData(Object fileKey, DiskRange[] ranges, MemoryBuffer[] buf
         assert canLock;
         long offset = ranges[i].getOffset() + baseOffset;
         assert buffer.declaredCachedLength == LlapDataBuffer.UNKNOWN_CACHED_LENGTH;
+        if (admissionPolicy != null
+            && !admissionPolicy.shouldAdmit(fileKey, offset, offset + ranges[i].getLength())) {
+          // The caller still uses the buffer; since it's not cached, the last decRef frees it.
+          continue;
+        }
         buffer.declaredCachedLength = ranges[i].getLength();
         buffer.setTag(tag);
         while (true) { // Overwhelmingly executes once, or maybe twice (replacing stale value).
@@ -355,6 +372,48 @@ public long[] putFileData(Object fileKey, DiskRange[] ranges, MemoryBuffer[] buf
     return result;
   }
 
+  /**
+   * Puts the data restored from the persistent cache into the cache, as if it were just read.
+   * @param data The cached data; the buffer is not modified.
+   */
+  public void restoreFileData(Object fileKey, long offset, int declaredLength, ByteBuffer data,
+      String tag) {
+    MemoryBuffer[] buffers = new MemoryBuffer[1];
+    allocator.allocateMultiple(buffers, data.remaining());
+    LlapDataBuffer buffer = (LlapDataBuffer)buffers[0];
+    ByteBuffer bb = buffer.getByteBufferRaw();
+    int pos = bb.position();
+    bb.limit(pos + data.remaining());
+    bb.put(data.duplicate());
+    bb.position(pos);
+    DiskRange[] ranges = new DiskRange[] { new DiskRange(offset, offset + declaredLength) };
+    long[] replaced = putFileData(fileKey, ranges, buffers, 0, Priority.NORMAL, null, tag);
+    if (replaced != null) {
+      // Someone has already cached this range again; keep theirs.
+      allocator.deallocate(buffer);
+    }
+    decRefBuffer(buffers[0]);
+  }
+
+  /**
+   * Records the cached buffers for the persistent cache index. The buffers recorded are left
+   * locked so that they cannot be moved or evicted; this is only called at shutdown.
+   */
+  public void writeCheckpoint(LlapCacheCheckpoint.Writer writer) throws IOException {
+    for (Map.Entry<Object, FileCache<ConcurrentSkipListMap<Long, LlapDataBuffer>>> e :
+      cache.entrySet()) {
+      if (!LlapCacheCheckpoint.isPersistableKey(e.getKey()) || !e.getValue().incRef()) continue;
+      try {
+        for (Map.Entry<Long, LlapDataBuffer> e2 : e.getValue().getCache().entrySet()) {
+          if (!lockBuffer(e2.getValue(), false)) continue;
+          writer.writeData(e.getKey(), e2.getKey(), e2.getValue());
+        }
+      } finally {
+        e.getValue().decRef();
+      }
+    }
+  }
+
   private static int align64(int number) {
     return ((number + 63) & ~63);
   }
@@ -146,6 +146,11 @@ public void updateMaxSize(long maxSize) {
     this.maxSize = maxSize;
   }
 
+  /** Whether the memory in use is at least the given fraction of the maximum size. */
+  public boolean isUsageAbove(double fraction) {
+    return usedMemory.get() >= maxSize * fraction;
+  }
+
   public long purge() {
     if (evictor == null) return 0;
     long evicted = evictor.purge();
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.LlapUtil;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * LRFU cache policy split into independent shards, each of them a {@link LowLevelLrfuCachePolicy}
+ * responsible for a fixed subset of the buffers. Since every shard has its own heap, list and
+ * locks, readers touching different buffers mostly do not contend with each other.
+ * Additionally, unlock notifications (the only frequent operation that needs the heap lock) are
+ * not applied right away; they are queued in a per-shard read buffer and applied in batches by
+ * whichever thread manages to take the shard drain lock. Until its notification is applied, the
+ * buffer is simply not evictable, which is the same state the base policy keeps locked buffers
+ * in; the read buffers are always drained before evicting or purging.
+ */
+public class LowLevelShardedLrfuCachePolicy implements LowLevelCachePolicy {
+  private static final class Shard {
+    final LowLevelLrfuCachePolicy policy;
+    final ReentrantLock drainLock = new ReentrantLock();
+    final ConcurrentLinkedQueue<LlapCacheableBuffer> readBuffer =
+        new ConcurrentLinkedQueue<LlapCacheableBuffer>();
+    final AtomicInteger readBufferSize = new AtomicInteger(0);
+
+    Shard(LowLevelLrfuCachePolicy policy) {
+      this.policy = policy;
+    }
+  }
+
+  private final Shard[] shards;
+  private final int readBufferThreshold;
+  private final AtomicInteger nextEvictionShard = new AtomicInteger(0);
+  private final LlapDaemonCacheMetrics metrics;
+  private LlapOomDebugDump parentDebugDump;
+
+  public LowLevelShardedLrfuCachePolicy(int minBufferSize, long maxSize, Configuration conf,
+      LlapDaemonCacheMetrics metrics) {
+    this(minBufferSize, maxSize, conf, HiveConf.getIntVar(conf, HiveConf.ConfVars.LLAP_LRFU_SHARDS),
+        HiveConf.getIntVar(conf, HiveConf.ConfVars.LLAP_LRFU_READ_BUFFER_SIZE), metrics);
+  }
+
+  @VisibleForTesting
+  LowLevelShardedLrfuCachePolicy(int minBufferSize, long maxSize, Configuration conf,
+      int shardCount, int readBufferThreshold, LlapDaemonCacheMetrics metrics) {
+    shardCount = Math.max(1, shardCount);
+    this.readBufferThreshold = Math.max(1, readBufferThreshold);
+    this.metrics = metrics;
+    long shardSize = Math.max(minBufferSize, (maxSize + shardCount - 1) / shardCount);
+    shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; ++i) {
+      shards[i] = new Shard(new LowLevelLrfuCachePolicy(minBufferSize, shardSize, conf));
+    }
+    LlapIoImpl.LOG.info("Sharded LRFU cache policy with {} shards of {} and read buffer size {}",
+        shardCount, LlapUtil.humanReadableByteCount(shardSize), this.readBufferThreshold);
+  }
+
+  private Shard getShard(LlapCacheableBuffer buffer) {
+    int hash = System.identityHashCode(buffer);
+    hash ^= (hash >>> 16);
+    return shards[(hash & Integer.MAX_VALUE) % shards.length];
+  }
+
+  @Override
+  public void cache(LlapCacheableBuffer buffer, Priority priority) {
+    // Only sets the initial priority; the buffer is locked and not placed in the heap yet.
+    getShard(buffer).policy.cache(buffer, priority);
+  }
+
+  @Override
+  public void notifyLock(LlapCacheableBuffer buffer) {
+    // Opportunistic list removal only; the shard policy never blocks here.
+    getShard(buffer).policy.notifyLock(buffer);
+  }
+
+  @Override
+  public void notifyUnlock(LlapCacheableBuffer buffer) {
+    Shard shard = getShard(buffer);
+    shard.readBuffer.offer(buffer);
+    int pending = shard.readBufferSize.incrementAndGet();
+    if (pending < readBufferThreshold) return;
+    if (shard.drainLock.tryLock()) {
+      try {
+        drainUnderLock(shard);
+      } finally {
+        shard.drainLock.unlock();
+      }
+    } else if (pending >= readBufferThreshold * 2) {
+      // Someone is draining but cannot keep up; wait rather than let the buffer grow unbounded.
+      // The notifications cannot be dropped, since they are what makes the buffers evictable.
+      drainWithLock(shard);
+    }
+  }
+
+  private void drainWithLock(Shard shard) {
+    lockShard(shard);
+    try {
+      drainUnderLock(shard);
+    } finally {
+      shard.drainLock.unlock();
+    }
+  }
+
+  private void lockShard(Shard shard) {
+    if (shard.drainLock.tryLock()) return;
+    long startTime = System.nanoTime();
+    shard.drainLock.lock();
+    if (metrics != null) {
+      metrics.incrCachePolicyLockWait(System.nanoTime() - startTime);
+    }
+  }
+
+  private void drainUnderLock(Shard shard) {
+    // Only drain what was there when we started, so that the concurrent producers cannot keep us
+    // here forever; whatever they add will be picked up by the next drain.
+    int toDrain = shard.readBufferSize.get();
+    for (int i = 0; i < toDrain; ++i) {
+      LlapCacheableBuffer buffer = shard.readBuffer.poll();
+      if (buffer == null) break;
+      shard.readBufferSize.decrementAndGet();
+      shard.policy.notifyUnlock(buffer);
+    }
+  }
+
+  @Override
+  public long evictSomeBlocks(long memoryToReserve) {
+    // Start from a different shard every time so that the evictions are spread evenly.
+    int start = (nextEvictionShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+    long evicted = 0;
+    for (int i = 0; i < shards.length && evicted < memoryToReserve; ++i) {
+      Shard shard = shards[(start + i) % shards.length];
+      drainWithLock(shard);
+      evicted += shard.policy.evictSomeBlocks(memoryToReserve - evicted);
+    }
+    return evicted;
+  }
+
+  @Override
+  public void setEvictionListener(EvictionListener listener) {
+    for (Shard shard : shards) {
+      shard.policy.setEvictionListener(listener);
+    }
+  }
+
+  @Override
+  public void setParentDebugDumper(LlapOomDebugDump dumper) {
+    this.parentDebugDump = dumper;
+  }
+
+  @Override
+  public long purge() {
+    long evicted = 0;
+    for (Shard shard : shards) {
+      drainWithLock(shard);
+      evicted += shard.policy.purge();
+    }
+    LlapIoImpl.LOG.info("PURGE: evicted {} from sharded LRFU policy",
+        LlapUtil.humanReadableByteCount(evicted));
+    return evicted;
+  }
+
+  @Override
+  public String debugDumpForOom() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < shards.length; ++i) {
+      sb.append("LRFU shard ").append(i).append(" (")
+          .append(shards[i].readBufferSize.get()).append(" pending unlocks): ")
+          .append(shards[i].policy.debugDumpForOom()).append("\n");
+    }
+    if (parentDebugDump != null) {
+      sb.append(parentDebugDump.debugDumpForOom());
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void debugDumpShort(StringBuilder sb) {
+    for (int i = 0; i < shards.length; ++i) {
+      sb.append("\nLRFU shard ").append(i).append(": ")
+          .append(shards[i].readBufferSize.get()).append(" pending unlocks");
+      shards[i].policy.debugDumpShort(sb);
+    }
+    if (parentDebugDump != null) {
+      parentDebugDump.debugDumpShort(sb);
+    }
+  }
+}
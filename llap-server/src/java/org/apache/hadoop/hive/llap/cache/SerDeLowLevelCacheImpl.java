@@ -146,6 +146,8 @@ public static final class StripeData {
     private final long rowCount;
     private final OrcProto.ColumnEncoding[] encodings;
     private LlapSerDeDataBuffer[][][] data; // column index, stream type, buffers
+    // Statistics for the values in the slice, by column index; used to skip slices via SARG.
+    private OrcProto.ColumnStatistics[] colStats;
 
     public StripeData(long knownTornStart, long firstStart, long lastStart, long lastEnd,
         long rowCount, ColumnEncoding[] encodings) {
@@ -192,14 +194,25 @@ public LlapSerDeDataBuffer[][][] getData() {
       return data;
     }
 
+    /** The statistics by column index; can be null, and so can the individual elements. */
+    public OrcProto.ColumnStatistics[] getColumnStatistics() {
+      return colStats;
+    }
+
+    public void setColumnStatistics(OrcProto.ColumnStatistics[] colStats) {
+      this.colStats = colStats;
+    }
+
     public String toCoordinateString() {
       return "stripe kts " + knownTornStart + " from "
           + firstStart + " to [" + lastStart + ", " + lastEnd + ")";
     }
 
     public static StripeData duplicateStructure(StripeData s) {
-      return new StripeData(s.knownTornStart, s.firstStart, s.lastStart, s.lastEnd,
+      StripeData result = new StripeData(s.knownTornStart, s.firstStart, s.lastStart, s.lastEnd,
           s.rowCount, new OrcProto.ColumnEncoding[s.encodings.length]);
+      result.colStats = s.colStats == null ? null : s.colStats.clone();
+      return result;
     }
 
     public void setKnownTornStart(long value) {
@@ -630,6 +643,18 @@ private void mergeStripeInfos(StripeData to, StripeData from) {
         to.data[colIx] = fromColData;
       }
     } 
+    if (from.colStats != null) {
+      // The rows are the same, so the statistics can only be missing, not different.
+      if (to.colStats == null) {
+        to.colStats = from.colStats;
+      } else {
+        for (int colIx = 0; colIx < from.colStats.length && colIx < to.colStats.length; ++colIx) {
+          if (to.colStats[colIx] == null) {
+            to.colStats[colIx] = from.colStats[colIx];
+          }
+        }
+      }
+    }
   }
 
   @Override
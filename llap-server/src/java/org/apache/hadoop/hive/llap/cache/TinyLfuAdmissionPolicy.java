@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Admission policy in the spirit of TinyLFU. The access frequency of each region of each file is
+ * estimated using a count-min sketch of 4-bit counters; the counters are halved periodically, so
+ * the estimate reflects recent reads. While the cache has free space, everything is admitted;
+ * once it is nearly full, only the data that has been read at least minFrequency times recently
+ * is, so that a large scan that reads the data once does not push out the frequently read data.
+ */
+public final class TinyLfuAdmissionPolicy implements LowLevelCacheAdmissionPolicy {
+  /** The frequency is tracked per 1Mb region, since the cache buffers and reads don't line up. */
+  private static final int REGION_SHIFT = 20;
+  private static final double ADMIT_ALL_USAGE = 0.9;
+  private static final int DEPTH = 4, COUNTERS_PER_LONG = 16, MAX_COUNT = 15;
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private final AtomicLongArray table;
+  private final int widthMask;
+  private final int sampleSize;
+  private final AtomicInteger additions = new AtomicInteger(0);
+  private final int minFrequency;
+  private final LowLevelCacheMemoryManager memoryManager;
+
+  public TinyLfuAdmissionPolicy(
+      long maxCacheSize, int minFrequency, LowLevelCacheMemoryManager memoryManager) {
+    if (minFrequency < 1 || minFrequency > MAX_COUNT) {
+      throw new IllegalArgumentException("Invalid minimum frequency " + minFrequency);
+    }
+    // Track several times more regions than the cache can hold, to see what is not cached.
+    long regions = Math.max(1024, (maxCacheSize >>> REGION_SHIFT) * 4);
+    int width = Integer.highestOneBit((int)Math.min(1 << 24, regions - 1)) << 1;
+    this.widthMask = width - 1;
+    this.table = new AtomicLongArray((width * DEPTH) / COUNTERS_PER_LONG);
+    this.sampleSize = width * 10;
+    this.minFrequency = minFrequency;
+    this.memoryManager = memoryManager;
+    LlapIoImpl.LOG.info("TinyLFU cache admission with sketch width {}, minimum frequency {}",
+        width, minFrequency);
+  }
+
+  @Override
+  public void recordAccess(Object fileKey, long offset, long end) {
+    long lastRegion = lastRegion(offset, end);
+    for (long region = offset >>> REGION_SHIFT; region <= lastRegion; ++region) {
+      long hash = hash(fileKey, region);
+      boolean wasAdded = false;
+      for (int i = 0; i < DEPTH; ++i) {
+        wasAdded |= incrementAt(indexOf(hash, i));
+      }
+      if (wasAdded && additions.incrementAndGet() >= sampleSize) {
+        reset();
+      }
+    }
+  }
+
+  @Override
+  public boolean shouldAdmit(Object fileKey, long offset, long end) {
+    if (memoryManager != null && !memoryManager.isUsageAbove(ADMIT_ALL_USAGE)) return true;
+    long lastRegion = lastRegion(offset, end);
+    for (long region = offset >>> REGION_SHIFT; region <= lastRegion; ++region) {
+      if (estimateFrequency(hash(fileKey, region)) >= minFrequency) return true;
+    }
+    if (LlapIoImpl.CACHE_LOGGER.isTraceEnabled()) {
+      LlapIoImpl.CACHE_LOGGER.trace("Not admitting {}@[{}, {}) into cache", fileKey, offset, end);
+    }
+    return false;
+  }
+
+  @VisibleForTesting
+  int estimateFrequency(Object fileKey, long offset) {
+    return estimateFrequency(hash(fileKey, offset >>> REGION_SHIFT));
+  }
+
+  private int estimateFrequency(long hash) {
+    int result = MAX_COUNT;
+    for (int i = 0; i < DEPTH; ++i) {
+      int ix = indexOf(hash, i);
+      int count = (int)((table.get(ix / COUNTERS_PER_LONG) >>> shiftOf(ix)) & MAX_COUNT);
+      result = Math.min(result, count);
+    }
+    return result;
+  }
+
+  private boolean incrementAt(int ix) {
+    int longIx = ix / COUNTERS_PER_LONG, shift = shiftOf(ix);
+    while (true) {
+      long oldValue = table.get(longIx);
+      if (((oldValue >>> shift) & MAX_COUNT) == MAX_COUNT) return false;
+      if (table.compareAndSet(longIx, oldValue, oldValue + (1L << shift))) return true;
+    }
+  }
+
+  /** Halves all the counters, so that the old accesses are gradually forgotten. */
+  private synchronized void reset() {
+    if (additions.get() < sampleSize) return; // Another thread has already reset the sketch.
+    for (int i = 0; i < table.length(); ++i) {
+      while (true) {
+        long oldValue = table.get(i);
+        if (table.compareAndSet(i, oldValue, (oldValue >>> 1) & RESET_MASK)) break;
+      }
+    }
+    additions.set(sampleSize / 2);
+  }
+
+  private int indexOf(long hash, int row) {
+    int h1 = (int)hash, h2 = (int)(hash >>> 32);
+    return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+  }
+
+  private static long lastRegion(long offset, long end) {
+    return (Math.max(end, offset + 1) - 1) >>> REGION_SHIFT;
+  }
+
+  private static int shiftOf(int ix) {
+    return (ix % COUNTERS_PER_LONG) << 2;
+  }
+
+  private static long hash(Object fileKey, long region) {
+    // Murmur3 finalizer, to spread the bits of the key hash and the region.
+    long h = fileKey.hashCode() * 0x9E3779B97F4A7C15L + region;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
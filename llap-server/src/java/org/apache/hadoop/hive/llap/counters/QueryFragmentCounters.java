@@ -112,6 +112,13 @@ public void recordHdfsTime(long startTime) {
     incrTimeCounter(LlapIOCounters.HDFS_TIME_NS, startTime);
   }
 
+  @Override
+  public void recordCoalescedReads(long rangesRead, long requestsIssued, long prefetchHitBytes) {
+    incrCounter(LlapIOCounters.COALESCED_READ_RANGES, rangesRead);
+    incrCounter(LlapIOCounters.COALESCED_READ_REQUESTS, requestsIssued);
+    incrCounter(LlapIOCounters.PREFETCH_HIT_BYTES, prefetchHitBytes);
+  }
+
   @Override
   public String toString() {
     // We rely on NDC information in the logs to map counters to attempt.
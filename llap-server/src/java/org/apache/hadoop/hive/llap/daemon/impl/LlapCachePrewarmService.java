@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hive.llap.io.api.LlapIo;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.service.AbstractService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the hot data listed in a file (see hive.llap.io.cache.prewarm.list) into LLAP cache in
+ * the background when the daemon starts, so that a new daemon doesn't serve the hot tables and
+ * partitions from disk until queries happen to read them. Queries can run in the meantime.
+ */
+public class LlapCachePrewarmService extends AbstractService {
+  private static final Logger LOG = LoggerFactory.getLogger(LlapCachePrewarmService.class);
+
+  private final String listPath;
+  private Configuration conf;
+  private Thread prewarmThread;
+
+  public LlapCachePrewarmService(String listPath) {
+    super("LlapCachePrewarmService");
+    this.listPath = listPath;
+  }
+
+  @Override
+  public void serviceInit(Configuration conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public void serviceStart() {
+    LlapIo<?> llapIo = LlapProxy.getIo();
+    if (!(llapIo instanceof LlapIoImpl)) {
+      LOG.warn("LLAP IO is not initialized; not pre-warming the cache");
+      return;
+    }
+    final LlapIoImpl io = (LlapIoImpl)llapIo;
+    prewarmThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        prewarm(io);
+      }
+    }, "LlapCachePrewarm");
+    prewarmThread.setDaemon(true);
+    prewarmThread.start();
+  }
+
+  @Override
+  public void serviceStop() {
+    if (prewarmThread != null) {
+      prewarmThread.interrupt();
+    }
+  }
+
+  private void prewarm(LlapIoImpl io) {
+    long startTime = System.nanoTime();
+    int fileCount = 0;
+    Path path = new Path(listPath);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        path.getFileSystem(conf).open(path), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        String[] parts = line.split("\t", 2);
+        List<String> columnNames = (parts.length < 2 || parts[1].trim().isEmpty())
+            ? null : Arrays.asList(parts[1].trim().split("\\s*,\\s*"));
+        for (Path file : listFiles(new Path(parts[0]))) {
+          if (Thread.currentThread().isInterrupted()) {
+            LOG.info("Cache pre-warming was interrupted after {} files", fileCount);
+            return;
+          }
+          try {
+            io.prewarmOrcFile(file, columnNames);
+            ++fileCount;
+          } catch (IOException ex) {
+            LOG.warn("Failed to pre-warm the cache with " + file + "; skipping", ex);
+          }
+        }
+      }
+    } catch (IOException ex) {
+      LOG.error("Failed to read the cache pre-warm list " + listPath, ex);
+      return;
+    }
+    LOG.info("Pre-warmed the cache with {} files in {}ms", fileCount,
+        (System.nanoTime() - startTime) / 1000000L);
+  }
+
+  private List<Path> listFiles(Path path) {
+    List<Path> result = new ArrayList<>();
+    try {
+      FileSystem fs = path.getFileSystem(conf);
+      Path root = fs.makeQualified(path);
+      RemoteIterator<LocatedFileStatus> iter = fs.listFiles(root, true);
+      while (iter.hasNext()) {
+        Path file = iter.next().getPath();
+        if (!isHidden(file, root)) {
+          result.add(file);
+        }
+      }
+    } catch (IOException ex) {
+      LOG.warn("Failed to list " + path + " for cache pre-warming; skipping", ex);
+    }
+    return result;
+  }
+
+  /** Skips the files, and the directories (e.g. staging) under the root, named like _x or .x. */
+  private static boolean isHidden(Path file, Path root) {
+    int rootDepth = root.depth();
+    for (Path p = file; p != null && p.depth() > rootDepth; p = p.getParent()) {
+      String name = p.getName();
+      if (name.startsWith("_") || name.startsWith(".")) return true;
+    }
+    return false;
+  }
+}
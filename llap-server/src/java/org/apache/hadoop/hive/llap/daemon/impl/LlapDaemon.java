@@ -305,6 +305,11 @@ public LlapDaemon(Configuration daemonConf, int numExecutors, long executorMemor
       this.webServices = new LlapWebServices(webPort, this, registry);
       addIfService(webServices);
     }
+    String prewarmList = HiveConf.getVar(daemonConf, ConfVars.LLAP_IO_CACHE_PREWARM_LIST);
+    if (ioEnabled && !prewarmList.isEmpty()) {
+      // Started after LLAP IO is initialized in serviceInit.
+      addIfService(new LlapCachePrewarmService(prewarmList));
+    }
     // Bring up the server only after all other components have started.
     addIfService(server);
     // AMReporter after the server so that it gets the correct address. It knows how to deal with
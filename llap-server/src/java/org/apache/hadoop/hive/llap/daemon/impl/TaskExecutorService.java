@@ -112,6 +112,8 @@ public class TaskExecutorService extends AbstractService
   final BlockingQueue<TaskWrapper> preemptionQueue;
   private final boolean enablePreemption;
   private final ThreadPoolExecutor threadPoolExecutor;
+  // Used instead of threadPoolExecutor when work stealing is enabled; null otherwise.
+  private final WorkStealingExecutorService workStealingExecutor;
   private final AtomicInteger numSlotsAvailable;
   private final int maxParallelExecutors;
   private final Clock clock;
@@ -138,23 +140,42 @@ public class TaskExecutorService extends AbstractService
   public TaskExecutorService(int numExecutors, int waitQueueSize,
       String waitQueueComparatorClassName, boolean enablePreemption,
       ClassLoader classLoader, final LlapDaemonExecutorMetrics metrics, Clock clock) {
+    this(numExecutors, waitQueueSize, waitQueueComparatorClassName, enablePreemption,
+        classLoader, metrics, clock, false, 0);
+  }
+
+  public TaskExecutorService(int numExecutors, int waitQueueSize,
+      String waitQueueComparatorClassName, boolean enablePreemption,
+      ClassLoader classLoader, final LlapDaemonExecutorMetrics metrics, Clock clock,
+      boolean enableWorkStealing, int localityGroups) {
     super(TaskExecutorService.class.getSimpleName());
     LOG.info("TaskExecutorService is being setup with parameters: "
         + "numExecutors=" + numExecutors
         + ", waitQueueSize=" + waitQueueSize
         + ", waitQueueComparatorClassName=" + waitQueueComparatorClassName
-        + ", enablePreemption=" + enablePreemption);
+        + ", enablePreemption=" + enablePreemption
+        + ", enableWorkStealing=" + enableWorkStealing
+        + ", localityGroups=" + localityGroups);
 
     final LlapQueueComparatorBase waitQueueComparator = createComparator(
         waitQueueComparatorClassName);
     this.maxParallelExecutors = numExecutors;
     this.waitQueue = new EvictingPriorityBlockingQueue<>(waitQueueComparator, waitQueueSize);
     this.clock = clock == null ? new MonotonicClock() : clock;
-    this.threadPoolExecutor = new ThreadPoolExecutor(numExecutors, // core pool size
-        numExecutors, // max pool size
-        1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), // direct hand-off
-        new ExecutorThreadFactory(classLoader));
-    this.executorService = MoreExecutors.listeningDecorator(threadPoolExecutor);
+    if (enableWorkStealing) {
+      // Per-executor deques; like the direct hand-off below, rejects work when all are busy.
+      this.threadPoolExecutor = null;
+      this.workStealingExecutor = new WorkStealingExecutorService(numExecutors, localityGroups,
+          new ExecutorThreadFactory(classLoader), this::scheduleOnSlotReleased);
+      this.executorService = MoreExecutors.listeningDecorator(workStealingExecutor);
+    } else {
+      this.workStealingExecutor = null;
+      this.threadPoolExecutor = new ThreadPoolExecutor(numExecutors, // core pool size
+          numExecutors, // max pool size
+          1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), // direct hand-off
+          new ExecutorThreadFactory(classLoader));
+      this.executorService = MoreExecutors.listeningDecorator(threadPoolExecutor);
+    }
     this.preemptionQueue = new PriorityBlockingQueue<>(numExecutors,
         new PreemptionQueueComparator());
     this.enablePreemption = enablePreemption;
@@ -681,7 +702,15 @@ void tryScheduleUnderLock(final TaskWrapper taskWrapper) throws RejectedExecutio
     }
     TaskRunnerCallable task = taskWrapper.getTaskRunnerCallable();
     task.setWmCountersRunning();
-    ListenableFuture<TaskRunner2Result> future = executorService.submit(task);
+    ListenableFuture<TaskRunner2Result> future;
+    if (workStealingExecutor != null) {
+      // Keep fragments of the same query on the same locality group of executors. The future
+      // completes after the slot is released, so the completion callback making the slot
+      // available cannot race with the executor and cause a false rejection (and preemption).
+      future = workStealingExecutor.submit(task, task.getQueryId());
+    } else {
+      future = executorService.submit(task);
+    }
     runningFragmentCount.incrementAndGet();
     taskWrapper.setIsInWaitQueue(false);
 
@@ -714,6 +743,31 @@ void tryScheduleUnderLock(final TaskWrapper taskWrapper) throws RejectedExecutio
     }
   }
 
+  /**
+   * Called by the work stealing executor threads after they finish a fragment. Schedules the
+   * next fragment from the wait queue right away on the released slot, so that the dispatch of
+   * short fragments is not limited by the single wait queue worker. The wait queue worker still
+   * handles the cases that need waiting or preemption.
+   */
+  private void scheduleOnSlotReleased() {
+    if (isShutdown.get()) return;
+    synchronized (lock) {
+      TaskWrapper task = waitQueue.peek();
+      if (task == null) return;
+      try {
+        tryScheduleUnderLock(task);
+      } catch (RejectedExecutionException e) {
+        // Another thread has already taken the slot; nothing to do.
+        return;
+      }
+      if (waitQueue.remove(task)) {
+        if (metrics != null) {
+          metrics.setExecutorNumQueuedRequests(waitQueue.size());
+        }
+      }
+    }
+  }
+
   private boolean handleScheduleAttemptedRejection(TaskWrapper rejected) {
     // TODO: is this check even needed given what the caller checks?
     if (!enablePreemption || preemptionQueue.isEmpty()) {
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Executor for LLAP fragments where each executor thread has its own deque, and idle threads
+ * steal work from the others. Like the direct hand-off pool used by default, it never accepts
+ * more work than there are executors, so the wait queue in {@link TaskExecutorService} still
+ * decides what runs next and a rejection still triggers preemption.
+ * Executors can be split into locality groups; work submitted with an affinity key (the query
+ * id) goes to the same group, and idle executors steal from their own group before the others.
+ * Each executor calls back when it has released its slot, so that it can take the next task
+ * from the wait queue itself instead of waiting for the single wait queue worker.
+ */
+class WorkStealingExecutorService extends AbstractExecutorService {
+  private static final Logger LOG = LoggerFactory.getLogger(WorkStealingExecutorService.class);
+  // Safety net for missed wake-ups; submissions unpark the target thread explicitly.
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Worker[] workers;
+  private final int numGroups, groupSize;
+  /** Work that has been accepted and has not finished yet, either queued or running. */
+  private final AtomicInteger outstanding = new AtomicInteger(0);
+  private final AtomicInteger nextWorker = new AtomicInteger(0);
+  private final AtomicLong stealCount = new AtomicLong(0);
+  private final CountDownLatch terminated;
+  // Called on the executor thread after it has released its slot; can be null.
+  private final Runnable slotReleasedCallback;
+  private volatile boolean isShutdown = false;
+
+  public WorkStealingExecutorService(
+      int numExecutors, int localityGroups, ThreadFactory threadFactory) {
+    this(numExecutors, localityGroups, threadFactory, null);
+  }
+
+  public WorkStealingExecutorService(int numExecutors, int localityGroups,
+      ThreadFactory threadFactory, Runnable slotReleasedCallback) {
+    this.slotReleasedCallback = slotReleasedCallback;
+    this.workers = new Worker[numExecutors];
+    this.numGroups = Math.max(1, Math.min(localityGroups, numExecutors));
+    this.groupSize = (numExecutors + numGroups - 1) / numGroups;
+    this.terminated = new CountDownLatch(numExecutors);
+    for (int i = 0; i < numExecutors; ++i) {
+      workers[i] = new Worker(i);
+    }
+    for (Worker worker : workers) {
+      worker.thread = threadFactory.newThread(worker);
+      worker.thread.start();
+    }
+    LOG.info("Created work stealing executor with {} executors in {} locality groups",
+        numExecutors, numGroups);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    execute(command, null);
+  }
+
+  /**
+   * Runs the command, preferring the locality group of the affinity key if there is one.
+   * @throws RejectedExecutionException if all the executors are busy, or after shutdown.
+   */
+  public void execute(Runnable command, Object affinityKey) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    if (isShutdown) {
+      throw new RejectedExecutionException("Executor has been shut down");
+    }
+    int val;
+    do {
+      val = outstanding.get();
+      if (val >= workers.length) {
+        throw new RejectedExecutionException("All " + workers.length + " executors are busy");
+      }
+    } while (!outstanding.compareAndSet(val, val + 1));
+
+    Worker target = pickWorker(affinityKey);
+    target.deque.addLast(command);
+    LockSupport.unpark(target.thread);
+    if (!target.isIdle) {
+      // The preferred executor is busy; make sure someone idle comes to steal the work.
+      Worker thief = findIdle(target.index);
+      if (thief != null) {
+        LockSupport.unpark(thief.thread);
+      }
+    }
+  }
+
+  /**
+   * Like {@link #execute(Runnable, Object)}, but the returned future only completes after the
+   * executor slot has been released. Completion callbacks that account for the free slot and
+   * schedule more work therefore never see the executor as busy because of this task.
+   */
+  public <T> ListenableFuture<T> submit(Callable<T> callable, Object affinityKey) {
+    SlotReleasingTask<T> task = new SlotReleasingTask<>(callable);
+    execute(task, affinityKey);
+    return task.future;
+  }
+
+  private final class SlotReleasingTask<T> implements Runnable {
+    private final Callable<T> callable;
+    private final SettableFuture<T> future = SettableFuture.create();
+
+    private SlotReleasingTask(Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    @Override
+    public void run() {
+      T result = null;
+      Throwable error = null;
+      try {
+        result = callable.call();
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        outstanding.decrementAndGet();
+      }
+      if (error == null) {
+        future.set(result);
+      } else {
+        future.setException(error);
+      }
+    }
+  }
+
+  private Worker pickWorker(Object affinityKey) {
+    if (affinityKey == null || numGroups == 1) {
+      int start = Math.floorMod(nextWorker.getAndIncrement(), workers.length);
+      Worker idle = findIdle(start);
+      return idle != null ? idle : workers[start];
+    }
+    int groupStart = Math.floorMod(affinityKey.hashCode(), numGroups) * groupSize;
+    int groupEnd = Math.min(groupStart + groupSize, workers.length);
+    for (int i = groupStart; i < groupEnd; ++i) {
+      if (workers[i].isIdle && workers[i].deque.isEmpty()) {
+        return workers[i];
+      }
+    }
+    return workers[groupStart + Math.floorMod(nextWorker.getAndIncrement(), groupEnd - groupStart)];
+  }
+
+  /** Finds an idle executor with nothing queued, starting from the given index. */
+  private Worker findIdle(int start) {
+    for (int i = 0; i < workers.length; ++i) {
+      Worker worker = workers[(start + i) % workers.length];
+      if (worker.isIdle && worker.deque.isEmpty()) {
+        return worker;
+      }
+    }
+    return null;
+  }
+
+  /** Takes work from the tail of another executor's deque, own locality group first. */
+  private Runnable steal(Worker thief) {
+    int groupStart = (thief.index / groupSize) * groupSize;
+    int localSize = Math.min(groupStart + groupSize, workers.length) - groupStart;
+    for (int i = 1; i < localSize; ++i) {
+      Runnable task = stealFrom(groupStart + (thief.index - groupStart + i) % localSize);
+      if (task != null) {
+        return task;
+      }
+    }
+    for (int i = 0; i < workers.length - localSize; ++i) {
+      Runnable task = stealFrom((groupStart + localSize + i) % workers.length);
+      if (task != null) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  private Runnable stealFrom(int victimIx) {
+    Runnable task = workers[victimIx].deque.pollLast();
+    if (task != null) {
+      stealCount.incrementAndGet();
+    }
+    return task;
+  }
+
+  @VisibleForTesting
+  long getStealCount() {
+    return stealCount.get();
+  }
+
+  private final class Worker implements Runnable {
+    private final int index;
+    private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+    private volatile boolean isIdle = true;
+    private Thread thread;
+
+    private Worker(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          isIdle = false;
+          Runnable task = deque.pollFirst();
+          if (task == null) {
+            task = steal(this);
+          }
+          if (task != null) {
+            runTask(task);
+            if (slotReleasedCallback != null && !isShutdown) {
+              isIdle = true; // Let the work scheduled by the callback come to this executor.
+              notifySlotReleased();
+            }
+            continue;
+          }
+          if (isShutdown) {
+            break;
+          }
+          // A submit that sees the idle flag also unparks us, so it cannot be missed here.
+          isIdle = true;
+          if (deque.isEmpty()) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+          }
+        }
+      } finally {
+        isIdle = true;
+        terminated.countDown();
+      }
+    }
+
+    private void runTask(Runnable task) {
+      try {
+        task.run();
+      } catch (Throwable t) {
+        LOG.error("Executor task failed", t);
+      } finally {
+        if (!(task instanceof SlotReleasingTask)) {
+          outstanding.decrementAndGet(); // Otherwise, already released by the task itself.
+        }
+        if (!isShutdown) {
+          Thread.interrupted(); // Don't let a kill of the previous task affect the next one.
+        }
+      }
+    }
+
+    private void notifySlotReleased() {
+      try {
+        slotReleasedCallback.run();
+      } catch (Throwable t) {
+        LOG.error("Slot release callback failed", t);
+      }
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    isShutdown = true;
+    for (Worker worker : workers) {
+      LockSupport.unpark(worker.thread);
+    }
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    isShutdown = true;
+    List<Runnable> result = new ArrayList<>();
+    for (Worker worker : workers) {
+      Runnable task;
+      while ((task = worker.deque.pollFirst()) != null) {
+        result.add(task);
+      }
+    }
+    for (Worker worker : workers) {
+      worker.thread.interrupt();
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return isShutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+}
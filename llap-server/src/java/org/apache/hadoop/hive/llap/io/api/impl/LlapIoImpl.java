@@ -32,6 +32,9 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.common.io.Allocator;
 import org.apache.hadoop.hive.common.io.DataCache;
 import org.apache.hadoop.hive.common.io.DiskRange;
@@ -45,6 +48,7 @@
 import org.apache.hadoop.hive.llap.cache.BufferUsageManager;
 import org.apache.hadoop.hive.llap.cache.CacheContentsTracker;
 import org.apache.hadoop.hive.llap.cache.EvictionDispatcher;
+import org.apache.hadoop.hive.llap.cache.LlapCacheCheckpoint;
 import org.apache.hadoop.hive.llap.cache.LlapDataBuffer;
 import org.apache.hadoop.hive.llap.cache.LlapOomDebugDump;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache;
@@ -53,31 +57,47 @@
 import org.apache.hadoop.hive.llap.cache.LowLevelCachePolicy;
 import org.apache.hadoop.hive.llap.cache.LowLevelFifoCachePolicy;
 import org.apache.hadoop.hive.llap.cache.LowLevelLrfuCachePolicy;
+import org.apache.hadoop.hive.llap.cache.LowLevelShardedLrfuCachePolicy;
 import org.apache.hadoop.hive.llap.cache.SerDeLowLevelCacheImpl;
 import org.apache.hadoop.hive.llap.cache.SimpleAllocator;
 import org.apache.hadoop.hive.llap.cache.SimpleBufferManager;
 import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.cache.TinyLfuAdmissionPolicy;
+import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
 import org.apache.hadoop.hive.llap.io.api.LlapIo;
 import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer;
 import org.apache.hadoop.hive.llap.io.decode.GenericColumnVectorProducer;
 import org.apache.hadoop.hive.llap.io.decode.OrcColumnVectorProducer;
+import org.apache.hadoop.hive.llap.io.decode.ParquetColumnVectorProducer;
+import org.apache.hadoop.hive.llap.io.decode.ReadPipeline;
 import org.apache.hadoop.hive.llap.io.metadata.MetadataCache;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
 import org.apache.hadoop.hive.llap.metrics.LlapDaemonIOMetrics;
 import org.apache.hadoop.hive.llap.metrics.MetricsUtils;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.io.LlapCacheOnlyInputFormatInterface;
+import org.apache.hadoop.hive.ql.io.orc.encoded.Consumer;
 import org.apache.hadoop.hive.ql.io.orc.encoded.IoTrace;
 import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
+import org.apache.hadoop.hive.ql.io.parquet.MapredParquetInputFormat;
+import org.apache.hadoop.hive.ql.io.parquet.VectorizedParquetInputFormat;
 import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.metrics2.util.MBeans;
 import org.apache.hive.common.util.FixedSizedObjectPool;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.impl.SchemaEvolution;
 
 
 
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -89,7 +109,7 @@ public class LlapIoImpl implements LlapIo<VectorizedRowBatch> {
   private static final String MODE_CACHE = "cache";
 
   // TODO: later, we may have a map
-  private final ColumnVectorProducer orcCvp, genericCvp;
+  private final ColumnVectorProducer orcCvp, genericCvp, parquetCvp;
   private final ExecutorService executor;
   private final LlapDaemonCacheMetrics cacheMetrics;
   private final LlapDaemonIOMetrics ioMetrics;
@@ -103,7 +123,8 @@ public class LlapIoImpl implements LlapIo<VectorizedRowBatch> {
   private final LowLevelCacheMemoryManager memoryManager;
 
 
-  private LlapIoImpl(Configuration conf) throws IOException {
+  @VisibleForTesting
+  LlapIoImpl(Configuration conf) throws IOException {
     this.daemonConf = conf;
     String ioMode = HiveConf.getVar(conf, HiveConf.ConfVars.LLAP_IO_MEMORY_MODE);
     boolean useLowLevelCache = LlapIoImpl.MODE_CACHE.equalsIgnoreCase(ioMode);
@@ -141,8 +162,16 @@ private LlapIoImpl(Configuration conf) throws IOException {
       boolean useLrfu = HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_USE_LRFU);
       long totalMemorySize = HiveConf.getSizeVar(conf, ConfVars.LLAP_IO_MEMORY_MAX_SIZE);
       int minAllocSize = (int)HiveConf.getSizeVar(conf, ConfVars.LLAP_ALLOCATOR_MIN_ALLOC);
-      LowLevelCachePolicy cp = useLrfu ? new LowLevelLrfuCachePolicy(
-          minAllocSize, totalMemorySize, conf) : new LowLevelFifoCachePolicy();
+      int lrfuShards = HiveConf.getIntVar(conf, ConfVars.LLAP_LRFU_SHARDS);
+      LowLevelCachePolicy cp;
+      if (!useLrfu) {
+        cp = new LowLevelFifoCachePolicy();
+      } else if (lrfuShards > 1) {
+        cp = new LowLevelShardedLrfuCachePolicy(
+            minAllocSize, totalMemorySize, conf, cacheMetrics);
+      } else {
+        cp = new LowLevelLrfuCachePolicy(minAllocSize, totalMemorySize, conf);
+      }
       boolean trackUsage = HiveConf.getBoolVar(conf, HiveConf.ConfVars.LLAP_TRACK_CACHE_USAGE);
       LowLevelCachePolicy cachePolicyWrapper;
       if (trackUsage) {
@@ -161,6 +190,11 @@ private LlapIoImpl(Configuration conf) throws IOException {
       LowLevelCacheImpl cacheImpl = new LowLevelCacheImpl(
           cacheMetrics, cachePolicyWrapper, allocator, true);
       dataCache = cacheImpl;
+      if (HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_CACHE_ADMISSION_ENABLED)) {
+        cacheImpl.setAdmissionPolicy(new TinyLfuAdmissionPolicy(totalMemorySize,
+            HiveConf.getIntVar(conf, ConfVars.LLAP_IO_CACHE_ADMISSION_MIN_FREQUENCY),
+            memoryManager));
+      }
       if (isEncodeEnabled) {
         SerDeLowLevelCacheImpl serdeCacheImpl = new SerDeLowLevelCacheImpl(
             cacheMetrics, cachePolicyWrapper, allocator);
@@ -194,12 +228,29 @@ private LlapIoImpl(Configuration conf) throws IOException {
     executor = new StatsRecordingThreadPool(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
         new LinkedBlockingQueue<Runnable>(),
         new ThreadFactoryBuilder().setNameFormat("IO-Elevator-Thread-%d").setDaemon(true).build());
+    if (allocator instanceof BuddyAllocator
+        && ((BuddyAllocator)allocator).getPreviousPersistentCacheDir() != null) {
+      // Copy the previous daemon's cache back in the background; queries can run meanwhile.
+      final BuddyAllocator buddyAllocator = (BuddyAllocator)allocator;
+      final LowLevelCacheImpl cacheImpl = (LowLevelCacheImpl)dataCache;
+      final MetadataCache restoreMetadataCache = metadataCache;
+      final long maxRestoreSize = buddyAllocator.getMaxCacheSize();
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          LlapCacheCheckpoint.restore(
+              buddyAllocator, cacheImpl, restoreMetadataCache, maxRestoreSize);
+        }
+      });
+    }
     FixedSizedObjectPool<IoTrace> tracePool = IoTrace.createTracePool(conf);
     // TODO: this should depends on input format and be in a map, or something.
     this.orcCvp = new OrcColumnVectorProducer(
         metadataCache, dataCache, bufferManagerOrc, conf, cacheMetrics, ioMetrics, tracePool);
     this.genericCvp = isEncodeEnabled ? new GenericColumnVectorProducer(
         serdeCache, bufferManagerGeneric, conf, cacheMetrics, ioMetrics, tracePool) : null;
+    this.parquetCvp = new ParquetColumnVectorProducer(fileMetadataCache,
+        new GenericDataCache(dataCache, bufferManager), conf, cacheMetrics);
     LOG.info("LLAP IO initialized");
 
     registerMXBeans();
@@ -231,6 +282,11 @@ public InputFormat<NullWritable, VectorizedRowBatch> getInputFormat(
     ColumnVectorProducer cvp = genericCvp;
     if (sourceInputFormat instanceof OrcInputFormat) {
       cvp = orcCvp; // Special-case for ORC.
+    } else if (sourceInputFormat instanceof MapredParquetInputFormat
+        || sourceInputFormat instanceof VectorizedParquetInputFormat) {
+      cvp = parquetCvp;
+      // The source format is still used when LLAP IO bails out on a split.
+      initCacheOnlyInputFormat(sourceInputFormat);
     } else if (cvp == null) {
       LOG.warn("LLAP encode is disabled; cannot use for " + sourceInputFormat.getClass());
       return null;
@@ -246,6 +302,15 @@ public void close() {
       buddyAllocatorMXBean = null;
     }
     executor.shutdownNow();
+    if (allocator instanceof BuddyAllocator
+        && ((BuddyAllocator)allocator).getPersistentCacheDir() != null) {
+      try {
+        LlapCacheCheckpoint.write((BuddyAllocator)allocator, (LowLevelCacheImpl)dataCache,
+            (MetadataCache)fileMetadataCache);
+      } catch (IOException e) {
+        LOG.warn("Failed to write the cache index; the cache will not be restored", e);
+      }
+    }
   }
 
 
@@ -256,6 +321,123 @@ public void initCacheOnlyInputFormat(InputFormat<?, ?> inputFormat) {
         new GenericDataCache(dataCache, bufferManager), daemonConf);
   }
 
+  @VisibleForTesting
+  LowLevelCache getDataCache() {
+    return dataCache;
+  }
+
+  @VisibleForTesting
+  FileMetadataCache getFileMetadataCache() {
+    return fileMetadataCache;
+  }
+
+  @VisibleForTesting
+  LlapDaemonCacheMetrics getCacheMetrics() {
+    return cacheMetrics;
+  }
+
+  /**
+   * Reads the given columns (all columns if null) of an ORC file thru the IO elevator on the
+   * calling thread, discarding the data; this puts the file metadata and data into the cache.
+   */
+  public void prewarmOrcFile(Path path, List<String> columnNames) throws IOException {
+    JobConf job = new JobConf(daemonConf);
+    FileSystem fs = path.getFileSystem(job);
+    FileStatus fileStatus = fs.getFileStatus(path);
+    TypeDescription schema = OrcFile.createReader(
+        path, OrcFile.readerOptions(job).filesystem(fs)).getSchema();
+    List<String> fieldNames = schema.getFieldNames();
+    List<Integer> columnIds = new ArrayList<>(fieldNames.size());
+    for (int i = 0; i < fieldNames.size(); ++i) {
+      if (columnNames == null || columnNames.contains(fieldNames.get(i))) {
+        columnIds.add(i);
+      }
+    }
+    if (columnIds.isEmpty()) {
+      LOG.warn("None of the columns {} are present in {}; not pre-warming", columnNames, path);
+      return;
+    }
+    FileSplit split = new FileSplit(path, 0, fileStatus.getLen(), (String[])null);
+    PrewarmIncludes includes = new PrewarmIncludes(columnIds, job);
+    PrewarmConsumer consumer = new PrewarmConsumer();
+    ReadPipeline rp = orcCvp.createReadPipeline(consumer, split, includes, null,
+        new QueryFragmentCounters(job, null), includes, null, null, Reporter.NULL, job, null);
+    consumer.init(rp);
+    try {
+      rp.getReadCallable().call();
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException(ex);
+    }
+    if (consumer.error != null) {
+      throw new IOException("Failed to read " + path, consumer.error);
+    }
+  }
+
+  /** Includes the top-level columns of the file, without any schema evolution. */
+  private static final class PrewarmIncludes
+      implements ColumnVectorProducer.Includes, ColumnVectorProducer.SchemaEvolutionFactory {
+    private final List<Integer> columnIds;
+    private final JobConf job;
+
+    public PrewarmIncludes(List<Integer> columnIds, JobConf job) {
+      this.columnIds = columnIds;
+      this.job = job;
+    }
+
+    @Override
+    public SchemaEvolution createSchemaEvolution(TypeDescription fileSchema) {
+      Reader.Options options = new Reader.Options(job).include(
+          generateFileIncludes(fileSchema));
+      return new SchemaEvolution(fileSchema, fileSchema, options);
+    }
+
+    @Override
+    public boolean[] generateFileIncludes(TypeDescription fileSchema) {
+      return OrcInputFormat.genIncludedColumns(fileSchema, columnIds);
+    }
+
+    @Override
+    public List<Integer> getPhysicalColumnIds() {
+      return columnIds;
+    }
+
+    @Override
+    public List<Integer> getReaderLogicalColumnIds() {
+      return columnIds;
+    }
+
+    @Override
+    public TypeDescription[] getBatchReaderTypes(TypeDescription fileSchema) {
+      return OrcInputFormat.genIncludedTypes(fileSchema, columnIds, null);
+    }
+  }
+
+  /** Returns the batches right away; only the side effect of reading the data is needed. */
+  private static final class PrewarmConsumer implements Consumer<ColumnVectorBatch> {
+    private ReadPipeline rp;
+    private volatile Throwable error;
+
+    public void init(ReadPipeline rp) {
+      this.rp = rp;
+    }
+
+    @Override
+    public void consumeData(ColumnVectorBatch data) {
+      rp.returnData(data);
+    }
+
+    @Override
+    public void setDone() {
+    }
+
+    @Override
+    public void setError(Throwable t) {
+      error = t;
+    }
+  }
+
   private class GenericDataCache implements DataCache, BufferObjectFactory {
     private final LowLevelCache lowLevelCache;
     private final BufferUsageManager bufferManager;
@@ -97,7 +97,7 @@ public ReadPipeline createReadPipeline(Consumer<ColumnVectorBatch> consumer, Fil
     // TODO: add tracing to serde reader
     SerDeEncodedDataReader reader = new SerDeEncodedDataReader(cache, bufferManager, conf,
         split, includes.getPhysicalColumnIds(), edc, job, reporter, sourceInputFormat,
-        sourceSerDe, counters, fm.getSchema(), parts);
+        sourceSerDe, counters, fm.getSchema(), parts, sarg);
     edc.init(reader, reader, new IoTrace(0, false));
     return edc;
   }
@@ -60,6 +60,7 @@
 import org.apache.hadoop.hive.ql.io.orc.OrcFile.ReaderOptions;
 import org.apache.hadoop.hive.ql.io.orc.OrcSplit;
 import org.apache.hadoop.hive.ql.io.orc.RecordReaderImpl;
+import org.apache.hadoop.hive.ql.io.orc.encoded.CoalescingDataReader;
 import org.apache.hadoop.hive.ql.io.orc.encoded.EncodedOrcFile;
 import org.apache.hadoop.hive.ql.io.orc.encoded.EncodedReader;
 import org.apache.hadoop.hive.ql.io.orc.encoded.IoTrace;
@@ -80,7 +81,6 @@
 import org.apache.orc.OrcProto.FileTail;
 import org.apache.orc.OrcProto.RowIndex;
 import org.apache.orc.OrcProto.Stream;
-import org.apache.orc.OrcProto.StripeStatistics;
 import org.apache.orc.StripeInformation;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.impl.BufferChunk;
@@ -161,6 +161,8 @@ public Pool<OrcEncodedColumnBatch> createEncodedColumnBatchPool() {
   private Path path;
   private Reader orcReader;
   private DataReader rawDataReader;
+  /** Set when the raw data reader coalesces reads; the same object as rawDataReader. */
+  private CoalescingDataReader coalescingReader;
   private boolean isRawDataReaderOpen = false;
   private EncodedReader stripeReader;
   private CompressionCodec codec;
@@ -394,6 +396,11 @@ protected Void performDataRead() throws IOException, InterruptedException {
         return null;
       }
 
+      if (stripeMetadatas == null && coalescingReader != null && HiveConf.getBoolVar(
+          jobConf, ConfVars.LLAP_IO_PREFETCH_STRIPE_METADATA)) {
+        prefetchStripeMetadata(stripeIxMod + 1);
+      }
+
       // 5.2. Finally, hand off to the stripe reader to produce the data.
       //      This is a sync call that will feed data to the consumer.
       try {
@@ -421,6 +428,34 @@ protected Void performDataRead() throws IOException, InterruptedException {
     return null;
   }
 
+  /**
+   * Starts reading the index and, unless it is cached, the footer of the stripe in the
+   * background, so that they are ready by the time the current stripe has been read.
+   */
+  private void prefetchStripeMetadata(int stripeIxMod) {
+    if (stripeIxMod >= stripeRgs.length
+        || stripeRgs[stripeIxMod] == RecordReaderImpl.SargApplier.READ_NO_RGS) {
+      return;
+    }
+    int stripeIx = stripeIxFrom + stripeIxMod;
+    StripeInformation si = fileMetadata.getStripes().get(stripeIx);
+    DiskRangeList ranges = new DiskRangeList(si.getOffset(), si.getOffset() + si.getIndexLength());
+    boolean isFooterCached = false;
+    if (fileKey != null && metadataCache != null) {
+      LlapBufferOrBuffers footerBuffers =
+          metadataCache.getStripeTail(new OrcBatchKey(fileKey, stripeIx, 0));
+      if (footerBuffers != null) {
+        metadataCache.decRefBuffer(footerBuffers);
+        isFooterCached = true;
+      }
+    }
+    if (!isFooterCached) {
+      long footerOffset = si.getOffset() + si.getIndexLength() + si.getDataLength();
+      ranges.insertAfter(new DiskRangeList(footerOffset, footerOffset + si.getFooterLength()));
+    }
+    coalescingReader.prefetch(ranges);
+  }
+
   private void handleReaderError(long startTime, Throwable t) throws InterruptedException {
     recordReaderTime(startTime);
     consumer.setError(t);
@@ -484,7 +519,14 @@ private void cleanupReaders() {
         // Ignore.
       }
     }
-    if (rawDataReader != null && isRawDataReaderOpen) {
+    boolean isCoalescing = coalescingReader != null;
+    if (isCoalescing) {
+      counters.recordCoalescedReads(coalescingReader.getRangesRead(),
+          coalescingReader.getRequestsIssued(), coalescingReader.getPrefetchHitBytes());
+      coalescingReader = null;
+    }
+    // The coalescing reader opens its own streams, so it needs closing even if not opened.
+    if (rawDataReader != null && (isRawDataReaderOpen || isCoalescing)) {
       try {
         rawDataReader.close();
         rawDataReader = null;
@@ -532,46 +574,22 @@ private void ensureCodecFromFileMetadata() {
    */
   private OrcFileMetadata getFileFooterFromCacheOrDisk() throws IOException {
     LlapBufferOrBuffers tailBuffers = null;
-    List<StripeStatistics> stats = null;
     List<StripeInformation> stripes = null;
     boolean hasCache = fileKey != null && metadataCache != null;
     if (hasCache) {
       tailBuffers = metadataCache.getFileMetadata(fileKey);
       if (tailBuffers != null) {
         try {
-          MemoryBuffer tailBuffer = tailBuffers.getSingleBuffer();
-          ByteBuffer bb = null;
-          if (tailBuffer != null) {
-            bb = tailBuffer.getByteBufferDup();
-            // TODO: remove the copy after ORC-158 and ORC-197
-            // if (bb.isDirect()) {
-              ByteBuffer dupBb = tailBuffer.getByteBufferDup(); // Don't mess with the cached object.
-              bb = ByteBuffer.allocate(dupBb.remaining());
-              bb.put(dupBb);
-              bb.flip();
-            // }
-          } else {
-            // TODO: add the ability to extractFileTail to read from multiple buffers?
-            MemoryBuffer[] tailBufferArray = tailBuffers.getMultipleBuffers();
-            int totalSize = 0;
-            for (MemoryBuffer buf : tailBufferArray) {
-              totalSize += buf.getByteBufferRaw().remaining();
-            }
-            bb = ByteBuffer.allocate(totalSize);
-            for (MemoryBuffer buf : tailBufferArray) {
-              bb.put(buf.getByteBufferDup());
-            }
-            bb.flip();
-          }
-          OrcTail orcTail = ReaderImpl.extractFileTail(bb);
-          FileTail tail = orcTail.getFileTail();
-          stats = orcTail.getStripeStatisticsProto();
+          FileTail tail = ReaderImpl.extractFileTail(copyTail(tailBuffers)).getFileTail();
           stripes = new ArrayList<>(tail.getFooter().getStripesCount());
           for (OrcProto.StripeInformation stripeProto : tail.getFooter().getStripesList()) {
             stripes.add(new ReaderImpl.StripeInformationImpl(stripeProto));
           }
+          // Don't keep the copy of the tail around for the stripe statistics; they are rarely
+          // needed, and can be decoded from the cache again.
           return new OrcFileMetadata(
-              fileKey, tail.getFooter(), tail.getPostscript(), stats, stripes,
+              fileKey, tail.getFooter(), tail.getPostscript(),
+              this::getStripeStatsFromCacheOrDisk, stripes,
             ReaderImpl.getFileVersion(tail.getPostscript().getVersionList()));
         } finally {
           // We don't need the buffer anymore.
@@ -589,7 +607,52 @@ private OrcFileMetadata getFileFooterFromCacheOrDisk() throws IOException {
     }
     FileTail ft = orcReader.getFileTail();
     return new OrcFileMetadata(fileKey, ft.getFooter(), ft.getPostscript(),
-        orcReader.getOrcProtoStripeStatistics(), orcReader.getStripes(), orcReader.getFileVersion());
+        orcReader::getOrcProtoStripeStatistics, orcReader.getStripes(),
+        orcReader.getFileVersion());
+  }
+
+  private List<OrcProto.StripeStatistics> getStripeStatsFromCacheOrDisk() throws IOException {
+    if (fileKey != null && metadataCache != null) {
+      LlapBufferOrBuffers tailBuffers = metadataCache.getFileMetadata(fileKey);
+      if (tailBuffers != null) {
+        try {
+          return ReaderImpl.extractFileTail(copyTail(tailBuffers)).getStripeStatisticsProto();
+        } finally {
+          metadataCache.decRefBuffer(tailBuffers);
+        }
+      }
+    }
+    // The tail has been evicted since we read the footer.
+    ensureOrcReader();
+    return orcReader.getOrcProtoStripeStatistics();
+  }
+
+  private static ByteBuffer copyTail(LlapBufferOrBuffers tailBuffers) {
+    MemoryBuffer tailBuffer = tailBuffers.getSingleBuffer();
+    ByteBuffer bb = null;
+    if (tailBuffer != null) {
+      bb = tailBuffer.getByteBufferDup();
+      // TODO: remove the copy after ORC-158 and ORC-197
+      // if (bb.isDirect()) {
+        ByteBuffer dupBb = tailBuffer.getByteBufferDup(); // Don't mess with the cached object.
+        bb = ByteBuffer.allocate(dupBb.remaining());
+        bb.put(dupBb);
+        bb.flip();
+      // }
+    } else {
+      // TODO: add the ability to extractFileTail to read from multiple buffers?
+      MemoryBuffer[] tailBufferArray = tailBuffers.getMultipleBuffers();
+      int totalSize = 0;
+      for (MemoryBuffer buf : tailBufferArray) {
+        totalSize += buf.getByteBufferRaw().remaining();
+      }
+      bb = ByteBuffer.allocate(totalSize);
+      for (MemoryBuffer buf : tailBufferArray) {
+        bb.put(buf.getByteBufferDup());
+      }
+      bb.flip();
+    }
+    return bb;
   }
 
   private OrcProto.StripeFooter buildStripeFooter(
@@ -725,6 +788,10 @@ private void ensureRawDataReader(boolean isOpen) throws IOException {
         .withTypeCount(orcReader.getSchema().getMaximumId() + 1)
         .withZeroCopy(useZeroCopy)
         .build());
+    if (!useZeroCopy && CoalescingDataReader.isEnabled(jobConf)) {
+      coalescingReader = new CoalescingDataReader(rawDataReader, fs, path, jobConf);
+      rawDataReader = coalescingReader;
+    }
 
     if (isOpen) {
       rawDataReader.open();
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.io.encoded;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.io.DataCache;
+import org.apache.hadoop.hive.common.io.FileMetadataCache;
+import org.apache.hadoop.hive.llap.LlapUtil;
+import org.apache.hadoop.hive.llap.counters.LlapIOCounters;
+import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
+import org.apache.hadoop.hive.llap.io.api.impl.ColumnVectorBatch;
+import org.apache.hadoop.hive.llap.io.api.impl.LlapIoImpl;
+import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer.Includes;
+import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer.SchemaEvolutionFactory;
+import org.apache.hadoop.hive.llap.io.decode.ReadPipeline;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
+import org.apache.hadoop.hive.ql.io.orc.encoded.Consumer;
+import org.apache.hadoop.hive.ql.io.parquet.vector.VectorizedParquetRecordReader;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.impl.SchemaEvolution;
+import org.apache.tez.common.CallableWithNdc;
+import org.apache.tez.common.counters.TezCounters;
+
+/**
+ * Reads Parquet files on the LLAP IO threads. The footers are cached in the file metadata
+ * cache, and the column chunks are cached in the allocator-backed data cache; both are read
+ * through the cache by the vectorized Parquet reader. The decoded batches are handed to the
+ * consumer as column vector batches, and the vectors are reused once the consumer returns them.
+ */
+public class ParquetEncodedDataReader extends CallableWithNdc<Void>
+    implements ReadPipeline, TezCounterSource {
+  private final FileMetadataCache metadataCache;
+  private final DataCache dataCache;
+  private final Configuration daemonConf;
+  private final FileSplit split;
+  private final JobConf jobConf;
+  private final Consumer<ColumnVectorBatch> consumer;
+  private final QueryFragmentCounters counters;
+  private final UserGroupInformation ugi;
+  private final SchemaEvolution evolution;
+  private final int[] physicalColumnIds;
+  private final ConcurrentLinkedQueue<ColumnVectorBatch> returnedBatches =
+      new ConcurrentLinkedQueue<>();
+  private volatile boolean isStopped = false;
+  private volatile boolean isPaused = false;
+  private final Object pauseLock = new Object();
+
+  public ParquetEncodedDataReader(FileMetadataCache metadataCache, DataCache dataCache,
+      Configuration daemonConf, FileSplit split, Includes includes, SchemaEvolutionFactory sef,
+      Consumer<ColumnVectorBatch> consumer, QueryFragmentCounters counters, JobConf jobConf)
+          throws IOException {
+    this.metadataCache = metadataCache;
+    this.dataCache = dataCache;
+    this.daemonConf = daemonConf;
+    this.split = split;
+    this.jobConf = jobConf;
+    this.consumer = consumer;
+    this.counters = counters;
+    this.ugi = UserGroupInformation.getCurrentUser();
+    // The vectorized Parquet reader converts the file schema to the table schema itself, so the
+    // schema evolution seen by the record reader is always the identity one.
+    TypeDescription schema = OrcInputFormat.getDesiredRowTypeDescr(
+        jobConf, false, Integer.MAX_VALUE);
+    if (schema == null) {
+      throw new IOException("Cannot determine the table schema for " + split.getPath());
+    }
+    this.evolution = sef.createSchemaEvolution(schema);
+    List<Integer> columnIds = includes.getPhysicalColumnIds();
+    this.physicalColumnIds = new int[columnIds.size()];
+    for (int i = 0; i < physicalColumnIds.length; ++i) {
+      physicalColumnIds[i] = columnIds.get(i);
+    }
+  }
+
+  @Override
+  public Callable<Void> getReadCallable() {
+    return this;
+  }
+
+  @Override
+  public SchemaEvolution getSchemaEvolution() {
+    return evolution;
+  }
+
+  @Override
+  public void stop() {
+    LlapIoImpl.LOG.debug("Parquet reader is being stopped");
+    isStopped = true;
+    synchronized (pauseLock) {
+      pauseLock.notifyAll();
+    }
+  }
+
+  @Override
+  public void pause() {
+    isPaused = true;
+  }
+
+  @Override
+  public void unpause() {
+    isPaused = false;
+    synchronized (pauseLock) {
+      pauseLock.notifyAll();
+    }
+  }
+
+  /**
+   * Waits between batches while the consumer has paused the reads; stop ends the wait too.
+   */
+  private void waitWhilePaused() throws InterruptedException {
+    if (!isPaused) return;
+    LlapIoImpl.LOG.debug("Parquet reader for {} is paused", split.getPath());
+    synchronized (pauseLock) {
+      while (isPaused && !isStopped) {
+        pauseLock.wait();
+      }
+    }
+  }
+
+  @Override
+  public void returnData(ColumnVectorBatch data) {
+    returnedBatches.offer(data);
+  }
+
+  @Override
+  public TezCounters getTezCounters() {
+    return counters.getTezCounters();
+  }
+
+  @Override
+  protected Void callInternal() throws IOException, InterruptedException {
+    return ugi.doAs(new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        return performDataRead();
+      }
+    });
+  }
+
+  protected Void performDataRead() throws IOException, InterruptedException {
+    long startTime = counters.startTimeCounter();
+    LlapIoImpl.LOG.info("Processing Parquet data for file {}", split.getPath());
+    counters.setDesc(QueryFragmentCounters.Desc.TABLE,
+        LlapUtil.getDbAndTableNameForMetrics(split.getPath(), false));
+    counters.setDesc(QueryFragmentCounters.Desc.FILE, split.getPath().toString());
+    VectorizedParquetRecordReader reader = null;
+    try {
+      try {
+        reader = new VectorizedParquetRecordReader(
+            split, jobConf, metadataCache, dataCache, daemonConf);
+      } catch (RuntimeException ex) {
+        throw (ex.getCause() instanceof IOException) ? (IOException) ex.getCause() : ex;
+      }
+      // The batch is only used as the target for the reader; its vectors are swapped in and out.
+      VectorizedRowBatch vrb = reader.createValue();
+      NullWritable key = reader.createKey();
+      long decodeTime = 0;
+      while (!isStopped) {
+        waitWhilePaused();
+        if (isStopped) break;
+        ColumnVectorBatch cvb = returnedBatches.poll();
+        if (cvb == null) {
+          cvb = new ColumnVectorBatch(physicalColumnIds.length);
+          VectorizedRowBatch template = reader.createValue();
+          for (int i = 0; i < physicalColumnIds.length; ++i) {
+            cvb.cols[i] = template.cols[physicalColumnIds[i]];
+          }
+        }
+        for (int i = 0; i < physicalColumnIds.length; ++i) {
+          cvb.swapColumnVector(i, vrb.cols, physicalColumnIds[i]);
+        }
+        long decodeStart = System.nanoTime();
+        boolean hasData = reader.next(key, vrb);
+        decodeTime += System.nanoTime() - decodeStart;
+        for (int i = 0; i < physicalColumnIds.length; ++i) {
+          cvb.swapColumnVector(i, vrb.cols, physicalColumnIds[i]);
+        }
+        if (!hasData) {
+          returnedBatches.offer(cvb);
+          break;
+        }
+        cvb.size = vrb.size;
+        counters.incrCounter(LlapIOCounters.ROWS_EMITTED, cvb.size);
+        counters.incrCounter(LlapIOCounters.NUM_VECTOR_BATCHES);
+        consumer.consumeData(cvb);
+      }
+      counters.incrCounter(LlapIOCounters.DECODE_TIME_NS, decodeTime);
+      if (isStopped) {
+        LlapIoImpl.LOG.info("Parquet reader for {} was stopped", split.getPath());
+      } else {
+        consumer.setDone();
+      }
+    } catch (Throwable t) {
+      LlapIoImpl.LOG.error("Failed to read Parquet file " + split.getPath(), t);
+      consumer.setError(t);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException ex) {
+          LlapIoImpl.LOG.error("Failed to close the Parquet reader", ex);
+        }
+      }
+      counters.incrTimeCounter(LlapIOCounters.TOTAL_IO_TIME_NS, startTime);
+      returnedBatches.clear();
+    }
+    return null;
+  }
+}
@@ -68,6 +68,7 @@
 import org.apache.hadoop.hive.ql.io.orc.Writer;
 import org.apache.hadoop.hive.ql.io.orc.encoded.CacheChunk;
 import org.apache.hadoop.hive.ql.io.orc.encoded.Reader.OrcEncodedColumnBatch;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
 import org.apache.hadoop.hive.ql.plan.PartitionDesc;
 import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDeException;
@@ -94,12 +95,14 @@
 import org.apache.orc.OrcProto.ColumnEncoding;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.PhysicalWriter;
+import org.apache.orc.StripeStatistics;
 import org.apache.orc.PhysicalWriter.OutputReceiver;
 import org.apache.orc.impl.SchemaEvolution;
 import org.apache.orc.impl.StreamName;
 import org.apache.tez.common.CallableWithNdc;
 import org.apache.tez.common.counters.TezCounters;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
@@ -162,6 +165,8 @@ public DiskRangeList createCacheChunk(MemoryBuffer buffer, long offset, long end
   private final boolean useObjectPools;
 
   private final boolean[] writerIncludes;
+  private final SearchArgument sarg;
+  private final SchemaEvolution evolution;
   private FileReaderYieldReturn currentFileRead = null;
 
   /**
@@ -176,8 +181,8 @@ public SerDeEncodedDataReader(SerDeLowLevelCacheImpl cache,
       BufferUsageManager bufferManager, Configuration daemonConf, FileSplit split,
       List<Integer> columnIds, OrcEncodedDataConsumer consumer, JobConf jobConf, Reporter reporter,
       InputFormat<?, ?> sourceInputFormat, Deserializer sourceSerDe,
-      QueryFragmentCounters counters, TypeDescription schema, Map<Path, PartitionDesc> parts)
-          throws IOException {
+      QueryFragmentCounters counters, TypeDescription schema, Map<Path, PartitionDesc> parts,
+      SearchArgument sarg) throws IOException {
     assert cache != null;
     this.cache = cache;
     this.bufferManager = bufferManager;
@@ -226,9 +231,10 @@ public MemoryBuffer create() {
     consumer.setUseDecimal64ColumnVectors(useDecimal64ColumnVectors);
     this.schema = schema;
     this.writerIncludes = OrcInputFormat.genIncludedColumns(schema, columnIds);
-    SchemaEvolution evolution = new SchemaEvolution(schema, null,
+    this.evolution = new SchemaEvolution(schema, null,
         new Reader.Options(jobConf).include(writerIncludes));
     consumer.setSchemaEvolution(evolution);
+    this.sarg = sarg;
   }
 
   private static int determineAllocSize(BufferUsageManager bufferManager, Configuration conf) {
@@ -316,6 +322,7 @@ private static class CacheStripeData {
       private long rowCount = -1;
       private long knownTornStart, firstRowStart, lastRowStart, lastRowEnd;
       private Map<Integer, List<CacheStreamData>> colStreams = new HashMap<>();
+      private OrcProto.ColumnStatistics[] colStats;
       @Override
       public String toString() {
         return ("{disk data knownTornStart=" + knownTornStart
@@ -362,6 +369,7 @@ private void startStripe() {
         stripes.add(currentStripe);
       }
       currentStripe = new CacheStripeData();
+      currentStripe.colStats = new OrcProto.ColumnStatistics[writerIncludes.length];
     }
 
     @Override
@@ -465,8 +473,16 @@ public void writeHeader() throws IOException {
     @Override
     public void writeIndex(StreamName name, OrcProto.RowIndex.Builder index,
         CompressionCodec codec) throws IOException {
-      // TODO: right now we treat each slice as a stripe with a single RG and never bother
-      //       with indexes. In phase 4, we need to add indexing and filtering.
+      // We treat each slice as a stripe with a single RG, so the only index entry has the
+      // statistics for the entire slice. Keep them to filter the cached slices via SARG.
+      if (index.getEntryCount() != 1) return;
+      int colIx = name.getColumn();
+      if (doesSourceHaveIncludes && colIx > 0) {
+        colIx = getSparseOrcIndexFromDenseDest(colIx);
+      }
+      if (colIx < currentStripe.colStats.length) {
+        currentStripe.colStats[colIx] = index.getEntry(0).getStatistics();
+      }
     }
 
     @Override
@@ -811,6 +827,12 @@ public Boolean readFileWithCache(long startTime) throws IOException, Interrupted
     }
     while (!slices.isEmpty()) {
       StripeData slice = slices.get(0);
+      if (!isSliceNeeded(slice, sarg, split.getPath(), evolution)) {
+        // No rows in the slice can match the SARG; skip it, both in cache and on disk.
+        slices.remove(0);
+        unlockAllBuffers(slice);
+        continue;
+      }
       long start = slice.getKnownTornStart();
       long len = slice.getLastStart() - start; // Will also read the last row.
       FileSplit sliceSplit = new FileSplit(split.getPath(), start, len, hosts, inMemoryHosts);
@@ -844,6 +866,31 @@ public Boolean readFileWithCache(long startTime) throws IOException, Interrupted
     return true;
   }
 
+  /**
+   * Determines whether a slice may contain rows matching the SARG, based on its statistics.
+   * Columns that have no statistics in the slice (e.g. because they were not included when the
+   * slice was cached) are assumed to contain any values.
+   */
+  @VisibleForTesting
+  static boolean isSliceNeeded(StripeData slice, SearchArgument sarg, Path path,
+      SchemaEvolution evolution) {
+    OrcProto.ColumnStatistics[] colStats = slice.getColumnStatistics();
+    if (sarg == null || colStats == null) return true;
+    List<OrcProto.ColumnStatistics> statsList = new ArrayList<>(colStats.length);
+    for (OrcProto.ColumnStatistics stats : colStats) {
+      // Empty statistics are treated as missing, i.e. any value may be present.
+      statsList.add(stats == null ? OrcProto.ColumnStatistics.getDefaultInstance() : stats);
+    }
+    boolean[] isNeeded = OrcInputFormat.pickStripes(sarg, OrcFile.CURRENT_WRITER,
+        Lists.newArrayList(new StripeStatistics(statsList)), 1, path, evolution);
+    if (isNeeded == null || isNeeded[0]) return true;
+    if (LlapIoImpl.CACHE_LOGGER.isTraceEnabled()) {
+      LlapIoImpl.CACHE_LOGGER.trace("Skipping the cached slice " + slice.toCoordinateString()
+          + " that doesn't match " + sarg);
+    }
+    return false;
+  }
+
   public boolean processOneFileSplit(FileSplit split, long startTime,
       Ref<Integer> stripeIxRef, StripeData slice) throws IOException, InterruptedException {
     LlapIoImpl.LOG.info("Processing one split {" + split.getPath() + ", "
@@ -1087,6 +1134,7 @@ private void processAsyncCacheData(CacheWriter.CacheStripeData diskData,
     StripeData sliceToCache = new StripeData(diskData.knownTornStart, diskData.firstRowStart,
         diskData.lastRowStart, diskData.lastRowEnd, diskData.rowCount,
         diskData.encodings.toArray(new ColumnEncoding[diskData.encodings.size()]));
+    sliceToCache.setColumnStatistics(diskData.colStats);
     for (int colIx = 0; colIx < splitIncludes.length; ++colIx) {
       if (!splitIncludes[colIx]) continue;
       // The column has been read from disk.
@@ -1121,9 +1169,11 @@ private StripeData createSliceToCache(
       CacheWriter.CacheStripeData diskData, StripeData cacheData) throws IOException {
     assert diskData != null;
     if (cacheData == null) {
-      return new StripeData(diskData.knownTornStart, diskData.firstRowStart,
+      StripeData sliceToCache = new StripeData(diskData.knownTornStart, diskData.firstRowStart,
           diskData.lastRowStart, diskData.lastRowEnd, diskData.rowCount,
           diskData.encodings.toArray(new ColumnEncoding[diskData.encodings.size()]));
+      sliceToCache.setColumnStatistics(diskData.colStats);
+      return sliceToCache;
     } else {
       long rowCount = diskData.rowCount, encodingCount = diskData.encodings.size();
       validateCacheAndDisk(cacheData, rowCount, encodingCount, diskData);
@@ -1138,6 +1188,7 @@ private StripeData createSliceToCache(
       for (int i = 0; i < diskData.encodings.size(); ++i) {
         sliceToCache.getEncodings()[i] = diskData.encodings.get(i);
       }
+      mergeColumnStatistics(sliceToCache, diskData.colStats);
       sliceToCache.setKnownTornStart(Math.min(
           diskData.knownTornStart, sliceToCache.getKnownTornStart()));
       return sliceToCache;
@@ -1145,6 +1196,25 @@ private StripeData createSliceToCache(
   }
 
 
+  /**
+   * Adds the statistics for the columns that were just read from disk to the cached slice; the
+   * statistics for the columns that were not read from disk are retained.
+   */
+  @VisibleForTesting
+  static void mergeColumnStatistics(StripeData slice, OrcProto.ColumnStatistics[] diskStats) {
+    if (diskStats == null) return;
+    OrcProto.ColumnStatistics[] colStats = slice.getColumnStatistics();
+    if (colStats == null) {
+      slice.setColumnStatistics(diskStats);
+      return;
+    }
+    for (int i = 0; i < diskStats.length && i < colStats.length; ++i) {
+      if (diskStats[i] != null) {
+        colStats[i] = diskStats[i];
+      }
+    }
+  }
+
   private static LlapSerDeDataBuffer[][] createArrayToCache(
       StripeData sliceToCache, int colIx, List<CacheWriter.CacheStreamData> streams) {
     if (LlapIoImpl.LOG.isTraceEnabled()) {
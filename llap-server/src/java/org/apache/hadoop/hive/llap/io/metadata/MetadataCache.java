@@ -27,6 +27,7 @@
 import org.apache.hadoop.hive.common.io.encoded.MemoryBufferOrBuffers;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.hive.common.io.DiskRange;
@@ -36,6 +37,7 @@
 import org.apache.hadoop.hive.llap.cache.EvictionAwareAllocator;
 import org.apache.hadoop.hive.llap.cache.EvictionDispatcher;
 import org.apache.hadoop.hive.llap.cache.LlapAllocatorBuffer;
+import org.apache.hadoop.hive.llap.cache.LlapCacheCheckpoint;
 import org.apache.hadoop.hive.llap.cache.LlapOomDebugDump;
 import org.apache.hadoop.hive.llap.cache.LowLevelCachePolicy;
 import org.apache.hadoop.hive.llap.cache.MemoryManager;
@@ -446,6 +448,29 @@ private void unlockSingleBuffer(LlapAllocatorBuffer buffer, boolean isCached) {
     metrics.decrCacheNumLockedBuffers();
   }
 
+  /**
+   * Records the cached metadata for the persistent cache index. The buffers recorded are left
+   * locked so that they cannot be moved or evicted; this is only called at shutdown.
+   */
+  public void writeCheckpoint(LlapCacheCheckpoint.Writer writer) throws IOException {
+    for (Map.Entry<Object, LlapBufferOrBuffers> e : metadata.entrySet()) {
+      Object fileKey = e.getKey();
+      int stripeIx = -1;
+      if (fileKey instanceof StripeKey) {
+        stripeIx = ((StripeKey)fileKey).stripeIx;
+        fileKey = ((StripeKey)fileKey).fileKey;
+      }
+      if (!LlapCacheCheckpoint.isPersistableKey(fileKey)) continue;
+      LlapBufferOrBuffers value = e.getValue();
+      if (!lockBuffer(value, false)) continue;
+      LlapAllocatorBuffer singleBuffer = value.getSingleLlapBuffer();
+      LlapAllocatorBuffer[] buffers = (singleBuffer != null)
+          ? new LlapAllocatorBuffer[] { singleBuffer } : value.getMultipleLlapBuffers();
+      String tag = ((LlapMetadataBuffer<?>)buffers[0]).getTag();
+      writer.writeMetadata(fileKey, stripeIx, tag, buffers);
+    }
+  }
+
   private final static class StripeKey {
     private final Object fileKey;
     private final int stripeIx;
@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hive.llap.io.metadata;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
@@ -36,9 +37,18 @@
  * or instead use protobuf structs everywhere instead of the mix of things like now.
  */
 public final class OrcFileMetadata implements FileMetadata, ConsumerFileMetadata {
+  /**
+   * Decodes the stripe statistics. The cache only keeps the serialized file tail, and the
+   * statistics are not needed to read the data, so they are only decoded if requested.
+   */
+  public interface StripeStatsSupplier {
+    List<StripeStatistics> get() throws IOException;
+  }
+
   private final List<StripeInformation> stripes;
   private final List<Integer> versionList;
-  private final List<OrcProto.StripeStatistics> stripeStats;
+  private final StripeStatsSupplier stripeStatsSupplier;
+  private List<OrcProto.StripeStatistics> stripeStats;
   private final List<OrcProto.Type> types;
   private final List<OrcProto.ColumnStatistics> fileStats;
   private final Object fileKey;
@@ -53,8 +63,8 @@ public final class OrcFileMetadata implements FileMetadata, ConsumerFileMetadata
   private final OrcFile.Version fileVersion;
 
   public OrcFileMetadata(Object fileKey, OrcProto.Footer footer, OrcProto.PostScript ps,
-    List<StripeStatistics> stats, List<StripeInformation> stripes, final OrcFile.Version fileVersion) {
-    this.stripeStats = stats;
+    StripeStatsSupplier stats, List<StripeInformation> stripes, final OrcFile.Version fileVersion) {
+    this.stripeStatsSupplier = stats;
     this.compressionKind = CompressionKind.valueOf(ps.getCompression().name());
     this.compressionBufferSize = (int)ps.getCompressionBlockSize();
     this.stripes = stripes;
@@ -138,7 +148,14 @@ public int getWriterVersionNum() {
   }
 
   @Override
-  public List<OrcProto.StripeStatistics> getStripeStats() {
+  public synchronized List<OrcProto.StripeStatistics> getStripeStats() {
+    if (stripeStats == null && stripeStatsSupplier != null) {
+      try {
+        stripeStats = stripeStatsSupplier.get();
+      } catch (IOException e) {
+        throw new RuntimeException("Cannot read stripe statistics for " + fileKey, e);
+      }
+    }
     return stripeStats;
   }
 
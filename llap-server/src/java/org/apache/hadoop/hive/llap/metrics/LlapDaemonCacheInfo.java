@@ -36,7 +36,9 @@ public enum LlapDaemonCacheInfo implements MetricsInfo {
   CacheHitRatio("Ratio of disk ranges cached vs requested"),
   CacheReadRequests("Number of disk range requests to cache"),
   CacheAllocatedArena("Number of arenas allocated"),
-  CacheNumLockedBuffers("Number of locked buffers in cache");
+  CacheNumLockedBuffers("Number of locked buffers in cache"),
+  CachePolicyLockWaitTimeNs("Time spent waiting for cache policy locks in nanoseconds"),
+  CachePolicyLockContended("Number of times a cache policy lock was not immediately available");
 
   private final String desc;
 
@@ -26,6 +26,8 @@
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheHitRatio;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheMetrics;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheNumLockedBuffers;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CachePolicyLockContended;
+import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CachePolicyLockWaitTimeNs;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheReadRequests;
 import static org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheInfo.CacheRequestedBytes;
 import static org.apache.hadoop.metrics2.impl.MsInfo.ProcessName;
@@ -66,6 +68,10 @@ public class LlapDaemonCacheMetrics implements MetricsSource {
   MutableCounterLong cacheAllocatedArena;
   @Metric
   MutableCounterLong cacheNumLockedBuffers;
+  @Metric
+  MutableCounterLong cachePolicyLockWaitTimeNs;
+  @Metric
+  MutableCounterLong cachePolicyLockContended;
 
   private LlapDaemonCacheMetrics(String name, String sessionId) {
     this.name = name;
@@ -111,6 +117,11 @@ public void decrCacheNumLockedBuffers() {
     cacheNumLockedBuffers.incr(-1);
   }
 
+  public void incrCachePolicyLockWait(long waitTimeNs) {
+    cachePolicyLockContended.incr();
+    cachePolicyLockWaitTimeNs.incr(waitTimeNs);
+  }
+
   public String getName() {
     return name;
   }
@@ -125,6 +136,11 @@ public long getCacheHitBytes() {
     return cacheHitBytes.value();
   }
 
+  @VisibleForTesting
+  public long getCachePolicyLockContended() {
+    return cachePolicyLockContended.value();
+  }
+
   @Override
   public void getMetrics(MetricsCollector collector, boolean b) {
     MetricsRecordBuilder rb = collector.addRecord(CacheMetrics)
@@ -150,6 +166,8 @@ private void getCacheStats(MetricsRecordBuilder rb) {
         .addCounter(CacheHitBytes, cacheHitBytes.value())
         .addCounter(CacheAllocatedArena, cacheAllocatedArena.value())
         .addCounter(CacheNumLockedBuffers, cacheNumLockedBuffers.value())
+        .addCounter(CachePolicyLockWaitTimeNs, cachePolicyLockWaitTimeNs.value())
+        .addCounter(CachePolicyLockContended, cachePolicyLockContended.value())
         .addGauge(CacheHitRatio, cacheHitRatio);
   }
 
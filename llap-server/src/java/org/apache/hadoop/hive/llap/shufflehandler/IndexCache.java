@@ -18,9 +18,12 @@
 package org.apache.hadoop.hive.llap.shufflehandler;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,12 +33,31 @@
 import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
 import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
 
+import com.google.common.annotations.VisibleForTesting;
+
+import sun.misc.Cleaner;
+
 class IndexCache {
 
   private final Configuration conf;
   private final int totalMemoryAllowed;
+  private final boolean isOffHeap;
   private AtomicInteger totalMemoryUsed = new AtomicInteger();
+  // Direct memory held by the off-heap indexes; also counted in totalMemoryUsed.
+  private final AtomicLong offHeapMemoryUsed = new AtomicLong();
   private static final Logger LOG = LoggerFactory.getLogger(IndexCache.class);
+  private static Field cleanerField;
+  static {
+    try {
+      // TODO: To make it work for JDK9 use CleanerUtil from https://issues.apache.org/jira/browse/HADOOP-12760
+      final Class<?> dbClazz = Class.forName("java.nio.DirectByteBuffer");
+      cleanerField = dbClazz.getDeclaredField("cleaner");
+      cleanerField.setAccessible(true);
+    } catch (Throwable t) {
+      LOG.warn("Cannot initialize DirectByteBuffer cleaner", t);
+      cleanerField = null;
+    }
+  }
 
   private final ConcurrentHashMap<String,IndexInformation> cache =
       new ConcurrentHashMap<String,IndexInformation>();
@@ -45,8 +67,12 @@ class IndexCache {
 
   public IndexCache(Configuration conf) {
     this.conf = conf;
-    totalMemoryAllowed = 10 * 1024 * 1024;
-    LOG.info("IndexCache created with max memory = " + totalMemoryAllowed);
+    totalMemoryAllowed = conf.getInt(ShuffleHandler.SHUFFLE_INDEX_CACHE_SIZE,
+        ShuffleHandler.DEFAULT_SHUFFLE_INDEX_CACHE_SIZE);
+    isOffHeap = conf.getBoolean(ShuffleHandler.SHUFFLE_INDEX_CACHE_OFF_HEAP,
+        ShuffleHandler.DEFAULT_SHUFFLE_INDEX_CACHE_OFF_HEAP);
+    LOG.info("IndexCache created with max memory = " + totalMemoryAllowed
+        + ", offHeap = " + isOffHeap);
   }
 
   /**
@@ -64,41 +90,63 @@ public TezIndexRecord getIndexInformation(String mapId, int reduce,
                                          Path fileName, String expectedIndexOwner)
       throws IOException {
 
-    IndexInformation info = cache.get(mapId);
+    while (true) {
+      IndexInformation info = cache.get(mapId);
+      TezIndexRecord record;
 
-    if (info == null) {
-      info = readIndexFileToCache(fileName, mapId, expectedIndexOwner);
-    } else {
-      synchronized(info) {
-        while (isUnderConstruction(info)) {
-          try {
-            info.wait();
-          } catch (InterruptedException e) {
-            throw new IOException("Interrupted waiting for construction", e);
+      if (info == null) {
+        record = readIndexFileToCache(fileName, mapId, reduce, expectedIndexOwner);
+      } else {
+        synchronized(info) {
+          while (isUnderConstruction(info)) {
+            try {
+              info.wait();
+            } catch (InterruptedException e) {
+              throw new IOException("Interrupted waiting for construction", e);
+            }
           }
         }
+        LOG.debug("IndexCache HIT: MapId " + mapId + " found");
+        record = getIndex(info, mapId, reduce);
       }
-      LOG.debug("IndexCache HIT: MapId " + mapId + " found");
+      if (record != null) {
+        return record;
+      }
+      // The off-heap index has been evicted and freed after the lookup; read it again.
+      LOG.debug("IndexCache: MapId " + mapId + " was evicted during the lookup");
     }
+  }
 
-    if (info.mapSpillRecord.size() == 0 ||
-        info.mapSpillRecord.size() <= reduce) {
-      throw new IOException("Invalid request " +
-          " Map Id = " + mapId + " Reducer = " + reduce +
-          " Index Info Length = " + info.mapSpillRecord.size());
+  /**
+   * Gets the index record for the reducer.
+   * @return The index record; null if the index has been freed.
+   */
+  private TezIndexRecord getIndex(IndexInformation info, String mapId, int reduce)
+      throws IOException {
+    synchronized (info) {
+      if (info.isFreed) {
+        return null;
+      }
+      if (info.getNumPartitions() == 0 ||
+          info.getNumPartitions() <= reduce) {
+        throw new IOException("Invalid request " +
+            " Map Id = " + mapId + " Reducer = " + reduce +
+            " Index Info Length = " + info.getNumPartitions());
+      }
+      return info.getIndex(reduce);
     }
-    return info.mapSpillRecord.getIndex(reduce);
   }
 
   private boolean isUnderConstruction(IndexInformation info) {
     synchronized(info) {
-      return (null == info.mapSpillRecord);
+      return info.isUnderConstruction();
     }
   }
 
-  private IndexInformation readIndexFileToCache(Path indexFileName,
-                                                String mapId,
-                                                String expectedIndexOwner)
+  private TezIndexRecord readIndexFileToCache(Path indexFileName,
+                                              String mapId,
+                                              int reduce,
+                                              String expectedIndexOwner)
       throws IOException {
     IndexInformation info;
     IndexInformation newInd = new IndexInformation();
@@ -113,7 +161,7 @@ private IndexInformation readIndexFileToCache(Path indexFileName,
         }
       }
       LOG.debug("IndexCache HIT: MapId " + mapId + " found");
-      return info;
+      return getIndex(info, mapId, reduce);
     }
     LOG.debug("IndexCache MISS: MapId " + mapId + " not found") ;
     TezSpillRecord tmp = null;
@@ -125,16 +173,25 @@ private IndexInformation readIndexFileToCache(Path indexFileName,
       throw new IOException("Error Reading IndexFile", e);
     } finally {
       synchronized (newInd) {
-        newInd.mapSpillRecord = tmp;
+        if (isOffHeap && tmp.size() > 0) {
+          newInd.offHeapRecords = IndexInformation.copyToDirect(tmp);
+          offHeapMemoryUsed.addAndGet(newInd.offHeapRecords.capacity());
+        } else {
+          newInd.mapSpillRecord = tmp;
+        }
         newInd.notifyAll();
       }
     }
     queue.add(mapId);
 
-    if (totalMemoryUsed.addAndGet(newInd.getSize()) > totalMemoryAllowed) {
-      freeIndexInformation();
+    // Get the record before making room in the cache, which may free this index.
+    try {
+      return getIndex(newInd, mapId, reduce);
+    } finally {
+      if (totalMemoryUsed.addAndGet(newInd.getSize()) > totalMemoryAllowed) {
+        freeIndexInformation();
+      }
     }
-    return newInd;
   }
 
   /**
@@ -153,6 +210,7 @@ public void removeMap(String mapId) {
     info = cache.remove(mapId);
     if (info != null) {
       totalMemoryUsed.addAndGet(-info.getSize());
+      free(info);
       if (!queue.remove(mapId)) {
         LOG.warn("Map ID" + mapId + " not found in queue!!");
       }
@@ -183,17 +241,87 @@ private synchronized void freeIndexInformation() {
       IndexInformation info = cache.remove(s);
       if (info != null) {
         totalMemoryUsed.addAndGet(-info.getSize());
+        free(info);
+      }
+    }
+  }
+
+  /**
+   * Releases the direct memory of an index removed from the cache, instead of waiting for GC.
+   * Lookups that still reference the index will see that it is freed, and read it again.
+   */
+  private void free(IndexInformation info) {
+    ByteBuffer offHeapRecords;
+    synchronized (info) {
+      offHeapRecords = info.offHeapRecords;
+      if (offHeapRecords == null) {
+        return; // On-heap, or still being constructed.
+      }
+      info.offHeapRecords = null;
+      info.isFreed = true;
+      offHeapMemoryUsed.addAndGet(-offHeapRecords.capacity());
+      Field field = cleanerField;
+      if (field == null) {
+        return;
+      }
+      try {
+        ((Cleaner) field.get(offHeapRecords)).clean();
+      } catch (Throwable t) {
+        LOG.warn("Error using DirectByteBuffer cleaner; stopping its use", t);
+        cleanerField = null;
       }
     }
   }
 
+  @VisibleForTesting
+  long getOffHeapMemoryUsed() {
+    return offHeapMemoryUsed.get();
+  }
+
   private static class IndexInformation {
     TezSpillRecord mapSpillRecord;
+    // Used instead of mapSpillRecord when the cache is off-heap; one record per partition.
+    ByteBuffer offHeapRecords;
+    // Set when offHeapRecords have been released after the eviction.
+    boolean isFreed;
+
+    static ByteBuffer copyToDirect(TezSpillRecord spillRecord) {
+      ByteBuffer result = ByteBuffer.allocateDirect(
+          spillRecord.size() * Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH);
+      for (int i = 0; i < spillRecord.size(); ++i) {
+        TezIndexRecord record = spillRecord.getIndex(i);
+        result.putLong(record.getStartOffset());
+        result.putLong(record.getRawLength());
+        result.putLong(record.getPartLength());
+      }
+      result.clear();
+      return result;
+    }
+
+    int getNumPartitions() {
+      if (offHeapRecords != null) {
+        return offHeapRecords.capacity() / Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH;
+      }
+      return mapSpillRecord.size();
+    }
+
+    TezIndexRecord getIndex(int partition) {
+      if (offHeapRecords == null) {
+        return mapSpillRecord.getIndex(partition);
+      }
+      int pos = partition * Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH;
+      return new TezIndexRecord(offHeapRecords.getLong(pos),
+          offHeapRecords.getLong(pos + 8), offHeapRecords.getLong(pos + 16));
+    }
 
     int getSize() {
-      return mapSpillRecord == null
+      return (isUnderConstruction() || isFreed)
           ? 0
-          : mapSpillRecord.size() * Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH;
+          : getNumPartitions() * Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH;
+    }
+
+    private boolean isUnderConstruction() {
+      return !isFreed && mapSpillRecord == null && offHeapRecords == null;
     }
   }
 }
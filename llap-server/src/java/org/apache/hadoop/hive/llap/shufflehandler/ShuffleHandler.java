@@ -49,6 +49,7 @@
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
@@ -165,6 +166,7 @@ public class ShuffleHandler implements AttemptRegistrationListener {
   private final int maxShuffleConnections;
   private final int shuffleBufferSize;
   private final boolean shuffleTransferToAllowed;
+  private final int maxPartitionsPerRequest;
   private final ReadaheadPool readaheadPool = ReadaheadPool.getInstance();
 
   /* List of registered applications */
@@ -211,6 +213,20 @@ public class ShuffleHandler implements AttemptRegistrationListener {
       "llap.shuffle.transferTo.allowed";
   public static final boolean DEFAULT_SHUFFLE_TRANSFERTO_ALLOWED = true;
 
+  // Bounds the memory used by the cached spill indexes, on-heap or off-heap.
+  public static final String SHUFFLE_INDEX_CACHE_SIZE = "llap.shuffle.index.cache.size";
+  public static final int DEFAULT_SHUFFLE_INDEX_CACHE_SIZE = 10 * 1024 * 1024;
+
+  // Keeps the cached spill indexes in direct buffers instead of the heap; the buffers are
+  // released as soon as the indexes are evicted from the cache.
+  public static final String SHUFFLE_INDEX_CACHE_OFF_HEAP = "llap.shuffle.index.cache.off-heap";
+  public static final boolean DEFAULT_SHUFFLE_INDEX_CACHE_OFF_HEAP = false;
+
+  // Upper bound on the partitions a single request can ask for with reduce=first-last.
+  public static final String SHUFFLE_MAX_PARTITIONS_PER_REQUEST =
+      "llap.shuffle.max.partitions.per.request";
+  public static final int DEFAULT_SHUFFLE_MAX_PARTITIONS_PER_REQUEST = 1000;
+
   static final String DATA_FILE_NAME = "file.out";
   static final String INDEX_FILE_NAME = "file.out.index";
   private static final AtomicBoolean started = new AtomicBoolean(false);
@@ -256,7 +272,8 @@ public void operationComplete(ChannelFuture future) throws Exception {
     }
   }
 
-  private ShuffleHandler(Configuration conf) {
+  @VisibleForTesting
+  ShuffleHandler(Configuration conf) {
     this.conf = conf;
     manageOsCache = conf.getBoolean(SHUFFLE_MANAGE_OS_CACHE,
         DEFAULT_SHUFFLE_MANAGE_OS_CACHE);
@@ -283,6 +300,9 @@ private ShuffleHandler(Configuration conf) {
     shuffleTransferToAllowed = conf.getBoolean(SHUFFLE_TRANSFERTO_ALLOWED,
         DEFAULT_SHUFFLE_TRANSFERTO_ALLOWED);
 
+    maxPartitionsPerRequest = Math.max(1, conf.getInt(SHUFFLE_MAX_PARTITIONS_PER_REQUEST,
+        DEFAULT_SHUFFLE_MAX_PARTITIONS_PER_REQUEST));
+
     ThreadFactory bossFactory = new ThreadFactoryBuilder()
         .setNameFormat("ShuffleHandler Netty Boss #%d")
         .build();
@@ -327,10 +347,11 @@ private ShuffleHandler(Configuration conf) {
         + ", maxShuffleConnections:{}, localDirs:{}"
         + ", shuffleBufferSize:{}, shuffleTransferToAllowed:{}"
         + ", connectionKeepAliveEnabled:{}, connectionKeepAliveTimeOut:{}"
-        + ", mapOutputMetaInfoCacheSize:{}, sslFileBufferSize:{}",
+        + ", mapOutputMetaInfoCacheSize:{}, sslFileBufferSize:{}, maxPartitionsPerRequest:{}",
         manageOsCache, shouldAlwaysEvictOsCache,readaheadLength, maxShuffleConnections, localDirs,
         shuffleBufferSize, shuffleTransferToAllowed, connectionKeepAliveEnabled,
-        connectionKeepAliveTimeOut, mapOutputMetaInfoCacheSize, sslFileBufferSize);
+        connectionKeepAliveTimeOut, mapOutputMetaInfoCacheSize, sslFileBufferSize,
+        maxPartitionsPerRequest);
   }
 
 
@@ -539,7 +560,8 @@ private void removeJobShuffleInfo(String appIdString) {
     userRsrc.remove(appIdString);
   }
 
-  private static class TimeoutHandler extends IdleStateAwareChannelHandler {
+  @VisibleForTesting
+  static class TimeoutHandler extends IdleStateAwareChannelHandler {
 
     private boolean enabledTimeout;
 
@@ -735,11 +757,20 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
         sendError(ctx, "Too many job/reduce parameters", BAD_REQUEST);
         return;
       }
-      int reduceId;
+      // Either a single partition, or an inclusive range (first-last) of partitions served
+      // in one response, to avoid a round-trip per partition for many small partitions.
+      int firstReduceId, lastReduceId;
       String jobId;
       int dagId;
       try {
-        reduceId = Integer.parseInt(reduceQ.get(0));
+        String reduceParam = reduceQ.get(0);
+        int rangeIx = reduceParam.indexOf('-');
+        if (rangeIx > 0) {
+          firstReduceId = Integer.parseInt(reduceParam.substring(0, rangeIx));
+          lastReduceId = Integer.parseInt(reduceParam.substring(rangeIx + 1));
+        } else {
+          firstReduceId = lastReduceId = Integer.parseInt(reduceParam);
+        }
         jobId = jobQ.get(0);
         dagId = Integer.parseInt(dagIdQ.get(0));
       } catch (NumberFormatException e) {
@@ -749,6 +780,11 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
         sendError(ctx, "Bad job parameter", BAD_REQUEST);
         return;
       }
+      if (firstReduceId < 0 || lastReduceId < firstReduceId
+          || lastReduceId - firstReduceId >= maxPartitionsPerRequest) {
+        sendError(ctx, "Bad reduce range " + reduceQ.get(0), BAD_REQUEST);
+        return;
+      }
       final String reqUri = request.getUri();
       if (null == reqUri) {
         // TODO? add upstream?
@@ -778,7 +814,7 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
       String user = userRsrc.get(jobId);
 
       try {
-        populateHeaders(mapIds, jobId, dagId, user, reduceId,
+        populateHeaders(mapIds, jobId, dagId, user, firstReduceId, lastReduceId,
             response, keepAliveParam, mapOutputInfoMap);
       } catch(IOException e) {
         ch.write(response);
@@ -791,25 +827,27 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
       // TODO refactor the following into the pipeline
       ChannelFuture lastMap = null;
       for (String mapId : mapIds) {
-        try {
-          MapOutputInfo info = mapOutputInfoMap.get(mapId);
-          // This will be hit if there's a large number of mapIds in a single request
-          // (Determined by the cache size further up), in which case we go to disk again.
-          if (info == null) {
-            info = getMapOutputInfo(jobId, dagId, mapId, reduceId, user);
-          }
-          lastMap =
-              sendMapOutput(ctx, ch, user, mapId,
-                reduceId, info);
-          if (null == lastMap) {
-            sendError(ctx, NOT_FOUND);
+        for (int reduceId = firstReduceId; reduceId <= lastReduceId; ++reduceId) {
+          try {
+            MapOutputInfo info = mapOutputInfoMap.get(getMapOutputInfoKey(mapId, reduceId));
+            // This will be hit if there's a large number of mapIds in a single request
+            // (Determined by the cache size further up), in which case we go to disk again.
+            if (info == null) {
+              info = getMapOutputInfo(jobId, dagId, mapId, reduceId, user);
+            }
+            lastMap =
+                sendMapOutput(ctx, ch, user, mapId,
+                  reduceId, info);
+            if (null == lastMap) {
+              sendError(ctx, NOT_FOUND);
+              return;
+            }
+          } catch (IOException e) {
+            LOG.error("Shuffle error :", e);
+            String errorMessage = getErrorMessage(e);
+            sendError(ctx,errorMessage , INTERNAL_SERVER_ERROR);
             return;
           }
-        } catch (IOException e) {
-          LOG.error("Shuffle error :", e);
-          String errorMessage = getErrorMessage(e);
-          sendError(ctx,errorMessage , INTERNAL_SERVER_ERROR);
-          return;
         }
       }
       // If Keep alive is enabled, do not close the connection.
@@ -873,27 +911,30 @@ protected MapOutputInfo getMapOutputInfo(String jobId, int dagId, String mapId,
     }
 
     protected void populateHeaders(List<String> mapIds, String jobId, int dagId,
-        String user, int reduce, HttpResponse response,
+        String user, int firstReduce, int lastReduce, HttpResponse response,
         boolean keepAliveParam, Map<String, MapOutputInfo> mapOutputInfoMap)
         throws IOException {
       // Reads the index file for each requested mapId, and figures out the overall
       // length of the response - which is populated into the response header.
 
       long contentLength = 0;
+      DataOutputBuffer dob = new DataOutputBuffer();
       for (String mapId : mapIds) {
-        MapOutputInfo outputInfo = getMapOutputInfo(jobId, dagId, mapId, reduce, user);
-        // mapOutputInfoMap is used to share the lookups with the caller
-        if (mapOutputInfoMap.size() < mapOutputMetaInfoCacheSize) {
-          mapOutputInfoMap.put(mapId, outputInfo);
+        for (int reduce = firstReduce; reduce <= lastReduce; ++reduce) {
+          MapOutputInfo outputInfo = getMapOutputInfo(jobId, dagId, mapId, reduce, user);
+          // mapOutputInfoMap is used to share the lookups with the caller
+          if (mapOutputInfoMap.size() < mapOutputMetaInfoCacheSize) {
+            mapOutputInfoMap.put(getMapOutputInfoKey(mapId, reduce), outputInfo);
+          }
+          ShuffleHeader header =
+              new ShuffleHeader(mapId, outputInfo.indexRecord.getPartLength(),
+                  outputInfo.indexRecord.getRawLength(), reduce);
+          dob.reset();
+          header.write(dob);
+
+          contentLength += outputInfo.indexRecord.getPartLength();
+          contentLength += dob.getLength();
         }
-        ShuffleHeader header =
-            new ShuffleHeader(mapId, outputInfo.indexRecord.getPartLength(),
-                outputInfo.indexRecord.getRawLength(), reduce);
-        DataOutputBuffer dob = new DataOutputBuffer();
-        header.write(dob);
-
-        contentLength += outputInfo.indexRecord.getPartLength();
-        contentLength += dob.getLength();
       }
 
       // Now set the response headers.
@@ -915,6 +956,10 @@ protected void setResponseHeaders(HttpResponse response,
       }
     }
 
+    private String getMapOutputInfoKey(String mapId, int reduce) {
+      return mapId + "_" + reduce;
+    }
+
     class MapOutputInfo {
       final Path mapOutputFileName; // 100-200 byte string. Maybe replace with a local-dir-id, and construct on the fly.
       final TezIndexRecord indexRecord; // 3 longs + reference overheads.
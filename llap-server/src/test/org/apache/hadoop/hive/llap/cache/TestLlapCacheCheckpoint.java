@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.DataCache.DiskRangeListFactory;
+import org.apache.hadoop.hive.common.io.DiskRange;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.apache.hadoop.hive.ql.io.SyntheticFileId;
+import org.apache.hadoop.hive.ql.io.orc.encoded.CacheChunk;
+import org.junit.Test;
+
+public class TestLlapCacheCheckpoint {
+  private static final DiskRangeListFactory testFactory = new DiskRangeListFactory() {
+    public DiskRangeList createCacheChunk(MemoryBuffer buffer, long offset, long end) {
+      return new CacheChunk(buffer, offset, end);
+    }
+  };
+  private static final int MIN_ALLOC = 8, MAX_ALLOC = 256, CACHE_SIZE = 4096;
+
+  @Test
+  public void testRestoreAfterRestart() throws Exception {
+    java.nio.file.Path dir = Files.createTempDirectory("llap-checkpoint-test");
+    LlapDaemonCacheMetrics metrics = LlapDaemonCacheMetrics.create("test", "1");
+    try {
+      SyntheticFileId syntheticKey = new SyntheticFileId(new Path("/tmp/file"), 1000, 12345);
+      BuddyAllocator allocator = createAllocator(dir, metrics);
+      LowLevelCacheImpl cache = new LowLevelCacheImpl(
+          metrics, new LowLevelFifoCachePolicy(), allocator, true, -1);
+      putData(cache, allocator, 1L, 0, 100, (byte)1);
+      putData(cache, allocator, 1L, 100, 60, (byte)2);
+      putData(cache, allocator, syntheticKey, 500, 200, (byte)3);
+      putData(cache, allocator, "unsupported key", 0, 10, (byte)4);
+      LlapCacheCheckpoint.write(allocator, cache, null);
+
+      // A new daemon starts with an empty cache, and restores it from the previous arenas.
+      allocator = createAllocator(dir, metrics);
+      cache = new LowLevelCacheImpl(metrics, new LowLevelFifoCachePolicy(), allocator, true, -1);
+      assertTrue(LlapCacheCheckpoint.restore(allocator, cache, null, CACHE_SIZE) > 0);
+      assertNull(allocator.getPreviousPersistentCacheDir());
+      verifyData(cache, 1L, 0, 100, (byte)1);
+      verifyData(cache, 1L, 100, 60, (byte)2);
+      verifyData(cache, syntheticKey, 500, 200, (byte)3);
+      DiskRangeList result = cache.getFileData("unsupported key",
+          new DiskRangeList(0, 10), 0, testFactory, null, null);
+      assertFalse(result instanceof CacheChunk);
+
+      // The same file with a different modification time is a different file.
+      SyntheticFileId modifiedKey = new SyntheticFileId(new Path("/tmp/file"), 1000, 12346);
+      result = cache.getFileData(modifiedKey, new DiskRangeList(500, 700), 0, testFactory,
+          null, null);
+      assertFalse(result instanceof CacheChunk);
+
+      // Without a clean shutdown, nothing is restored.
+      allocator = createAllocator(dir, metrics);
+      cache = new LowLevelCacheImpl(metrics, new LowLevelFifoCachePolicy(), allocator, true, -1);
+      assertEquals(0, LlapCacheCheckpoint.restore(allocator, cache, null, CACHE_SIZE));
+    } finally {
+      BuddyAllocator.deleteCacheDir(dir.resolve(BuddyAllocator.PREVIOUS_PERSISTENT_CACHE_DIR));
+      BuddyAllocator.deleteCacheDir(dir.resolve(BuddyAllocator.PERSISTENT_CACHE_DIR));
+      Files.delete(dir);
+    }
+  }
+
+  private static BuddyAllocator createAllocator(
+      java.nio.file.Path dir, LlapDaemonCacheMetrics metrics) {
+    return new BuddyAllocator(true, true, MIN_ALLOC, MAX_ALLOC, 1, CACHE_SIZE, 0, dir.toString(),
+        new TestBuddyAllocator.DummyMemoryManager(), metrics, null, true);
+  }
+
+  private static void putData(LowLevelCacheImpl cache, BuddyAllocator allocator,
+      Object fileKey, long offset, int length, byte value) {
+    MemoryBuffer[] buffers = new MemoryBuffer[1];
+    allocator.allocateMultiple(buffers, length);
+    ByteBuffer bb = buffers[0].getByteBufferRaw();
+    int pos = bb.position();
+    bb.limit(pos + length);
+    for (int i = 0; i < length; ++i) {
+      bb.put(pos + i, value);
+    }
+    assertNull(cache.putFileData(fileKey, new DiskRange[] { new DiskRange(offset, offset + length) },
+        buffers, 0, Priority.NORMAL, null, null));
+    cache.decRefBuffer(buffers[0]);
+  }
+
+  private static void verifyData(LowLevelCacheImpl cache, Object fileKey, long offset,
+      int length, byte value) {
+    DiskRangeList result = cache.getFileData(fileKey, new DiskRangeList(offset, offset + length),
+        0, testFactory, null, null);
+    assertTrue(result instanceof CacheChunk);
+    MemoryBuffer buffer = ((CacheChunk)result).getBuffer();
+    ByteBuffer bb = buffer.getByteBufferDup();
+    assertEquals(length, bb.remaining());
+    while (bb.hasRemaining()) {
+      assertEquals(value, bb.get());
+    }
+    cache.decRefBuffer(buffer);
+  }
+}
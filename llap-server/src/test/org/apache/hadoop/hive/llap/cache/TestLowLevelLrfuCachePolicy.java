@@ -245,6 +245,44 @@ public void testDeadlockResolution() {
     unlock(lrfu, locked);
   }
 
+  @Test
+  public void testShardedPolicy() {
+    final int HEAP_SIZE = 32;
+    Configuration conf = new Configuration();
+    conf.setFloat(HiveConf.ConfVars.LLAP_LRFU_LAMBDA.varname, 0.2f);
+    EvictionTracker et = new EvictionTracker();
+    LowLevelShardedLrfuCachePolicy lrfu = new LowLevelShardedLrfuCachePolicy(
+        1, HEAP_SIZE, conf, 4, 4, null);
+    LowLevelCacheMemoryManager mm = new LowLevelCacheMemoryManager(
+        HEAP_SIZE, lrfu, createMetricsMock().metricsMock);
+    lrfu.setEvictionListener(et);
+    ArrayList<LlapDataBuffer> locked = new ArrayList<LlapDataBuffer>(),
+        unlocked = new ArrayList<LlapDataBuffer>();
+    for (int i = 0; i < HEAP_SIZE; ++i) {
+      LlapDataBuffer buffer = LowLevelCacheImpl.allocateFake();
+      assertTrue(mm.reserveMemory(1, false));
+      buffer.incRef();
+      lrfu.cache(buffer, Priority.NORMAL);
+      if (i % 4 == 0) {
+        locked.add(buffer);
+      } else {
+        buffer.decRef();
+        lrfu.notifyUnlock(buffer);
+        unlocked.add(buffer);
+      }
+    }
+    // Some unlock notifications are still in the read buffers; eviction must still see them.
+    for (int i = 0; i < unlocked.size(); ++i) {
+      assertTrue(mm.reserveMemory(1, false));
+    }
+    assertFalse(mm.reserveMemory(1, false));
+    assertEquals(unlocked.size(), et.evicted.size());
+    assertTrue(et.evicted.containsAll(unlocked));
+    for (LlapDataBuffer buffer : locked) {
+      assertFalse(buffer.isInvalid());
+    }
+  }
+
   // Buffers in test are fakes not linked to cache; notify cache policy explicitly.
   public boolean cache(LowLevelCacheMemoryManager mm,
       LowLevelLrfuCachePolicy lrfu, EvictionTracker et, LlapDataBuffer buffer) {
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import org.apache.hadoop.hive.common.io.Allocator;
+import org.apache.hadoop.hive.common.io.DataCache.BooleanRef;
+import org.apache.hadoop.hive.llap.cache.LowLevelCache.Priority;
+import org.apache.hadoop.hive.llap.cache.SerDeLowLevelCacheImpl.FileData;
+import org.apache.hadoop.hive.llap.cache.SerDeLowLevelCacheImpl.StripeData;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.apache.orc.OrcProto;
+import org.junit.Test;
+
+public class TestSerDeLowLevelCacheImpl {
+
+  @Test
+  public void testMergeColumnStatistics() throws Exception {
+    SerDeLowLevelCacheImpl cache = new SerDeLowLevelCacheImpl(
+        LlapDaemonCacheMetrics.create("test", "1"), mock(LowLevelCachePolicy.class),
+        mock(Allocator.class));
+    final Object fileKey = 1L;
+    OrcProto.ColumnStatistics root = createStats(10), a = createStats(9), b = createStats(8);
+
+    // Two queries cache the same slice, each with a different column.
+    cache.putFileData(createFileData(fileKey, root, a, null), Priority.NORMAL, null, null);
+    cache.putFileData(createFileData(fileKey, root, null, b), Priority.NORMAL, null, null);
+
+    BooleanRef gotAllData = new BooleanRef();
+    FileData result = cache.getFileData(fileKey, 0, 100,
+        new boolean[] { true, true, true }, null, null, gotAllData);
+    assertFalse(gotAllData.value); // There are no buffers in the slice.
+    assertEquals(1, result.getData().size());
+    assertArrayEquals(new OrcProto.ColumnStatistics[] { root, a, b },
+        result.getData().get(0).getColumnStatistics());
+
+    // The statistics of the cached slice are not affected by the changes to the result.
+    result.getData().get(0).getColumnStatistics()[1] = null;
+    result = cache.getFileData(fileKey, 0, 100,
+        new boolean[] { true, true, true }, null, null, gotAllData);
+    assertArrayEquals(new OrcProto.ColumnStatistics[] { root, a, b },
+        result.getData().get(0).getColumnStatistics());
+  }
+
+  private static FileData createFileData(Object fileKey, OrcProto.ColumnStatistics... colStats) {
+    FileData fd = new FileData(fileKey, colStats.length);
+    StripeData slice = new StripeData(
+        0, 0, 90, 100, 10, new OrcProto.ColumnEncoding[colStats.length]);
+    slice.setColumnStatistics(colStats);
+    fd.addStripe(slice);
+    return fd;
+  }
+
+  private static OrcProto.ColumnStatistics createStats(long numberOfValues) {
+    return OrcProto.ColumnStatistics.newBuilder().setNumberOfValues(numberOfValues).build();
+  }
+}
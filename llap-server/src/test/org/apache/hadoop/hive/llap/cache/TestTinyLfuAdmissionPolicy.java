@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.junit.Test;
+
+public class TestTinyLfuAdmissionPolicy {
+  private static final long MB = 1L << 20;
+
+  @Test
+  public void testAdmitsOnlyFrequentDataWhenFull() {
+    LowLevelCacheMemoryManager mm = new LowLevelCacheMemoryManager(
+        100, null, LlapDaemonCacheMetrics.create("test", "1"));
+    TinyLfuAdmissionPolicy policy = new TinyLfuAdmissionPolicy(64 * MB, 2, mm);
+    Long hotFile = 1L, coldFile = 2L;
+    policy.recordAccess(hotFile, 0, MB);
+    policy.recordAccess(coldFile, 0, MB);
+    // The cache is empty; everything is admitted.
+    assertTrue(policy.shouldAdmit(coldFile, 0, MB));
+    assertTrue(mm.reserveMemory(100, false));
+    assertFalse(policy.shouldAdmit(hotFile, 0, 100));
+    assertFalse(policy.shouldAdmit(coldFile, 0, 100));
+    policy.recordAccess(hotFile, 0, MB);
+    assertTrue(policy.shouldAdmit(hotFile, 0, 100));
+    assertTrue(policy.shouldAdmit(hotFile, 100, 200));
+    // A different region of the same file has not been read before.
+    assertFalse(policy.shouldAdmit(hotFile, 2 * MB, 2 * MB + 100));
+    assertFalse(policy.shouldAdmit(coldFile, 0, 100));
+  }
+
+  @Test
+  public void testCountersAreAgedAndCapped() {
+    TinyLfuAdmissionPolicy policy = new TinyLfuAdmissionPolicy(0, 2, null);
+    for (int i = 0; i < 100; ++i) {
+      policy.recordAccess(1L, 0, 1);
+    }
+    assertEquals(15, policy.estimateFrequency(1L, 0));
+    // Touch enough other regions to trigger the reset of the sketch.
+    for (long i = 1; i < 1024 * 20; ++i) {
+      policy.recordAccess(1L, i * MB, i * MB + 1);
+    }
+    assertTrue(policy.estimateFrequency(1L, 0) < 15);
+  }
+}
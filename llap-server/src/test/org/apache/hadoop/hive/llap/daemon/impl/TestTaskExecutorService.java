@@ -385,6 +385,46 @@ public void testDoKillMultiple() throws InterruptedException {
     assertTrue(victim2.wasPreempted());
   }
 
+  @Test(timeout = 10000)
+  public void testWorkStealingSchedulesOnReleasedSlot() throws InterruptedException {
+    TaskExecutorServiceForTest taskExecutorService = new TaskExecutorServiceForTest(
+        1, 2, ShortestJobFirstComparator.class.getName(), true, null, true);
+    // None of these can preempt each other, so they have to wait for the executor.
+    MockRequest r1 = createMockRequest(1, 1, 100, 200, true, 20000l, false);
+    MockRequest r2 = createMockRequest(2, 1, 1, 200, 330, true, 20000l, false);
+    MockRequest r3 = createMockRequest(3, 1, 2, 300, 420, true, 20000l, false);
+
+    taskExecutorService.init(new Configuration());
+    taskExecutorService.start();
+    try {
+      taskExecutorService.schedule(r1);
+      awaitStartAndSchedulerRun(r1, taskExecutorService);
+      taskExecutorService.schedule(r2);
+      taskExecutorService.schedule(r3);
+
+      r1.complete();
+      r1.awaitEnd();
+      awaitStartAndSchedulerRun(r2, taskExecutorService);
+      assertFalse(r3.hasStarted());
+      r2.complete();
+      r2.awaitEnd();
+      awaitStartAndSchedulerRun(r3, taskExecutorService);
+      r3.complete();
+      r3.awaitEnd();
+
+      TaskExecutorServiceForTest.InternalCompletionListenerForTest icl3 =
+          taskExecutorService.getInternalCompletionListenerForTest(r3.getRequestId());
+      icl3.awaitCompletion();
+      assertFalse(r1.wasPreempted());
+      assertFalse(r2.wasPreempted());
+      assertFalse(r3.wasPreempted());
+      assertEquals(0, taskExecutorService.knownTasks.size());
+      assertEquals(0, taskExecutorService.waitQueue.size());
+    } finally {
+      taskExecutorService.shutDown(false);
+    }
+  }
+
   private void runPreemptionGraceTest(
       MockRequest victim1, MockRequest victim2, int time) throws InterruptedException {
     MockRequest preemptor = createMockRequest(3, 1, 100, 100, true, 20000l, false);
@@ -445,8 +485,15 @@ public TaskExecutorServiceForTest(int numExecutors, int waitQueueSize,
 
     public TaskExecutorServiceForTest(int numExecutors, int waitQueueSize,
         String waitQueueComparatorClassName, boolean enablePreemption, Clock clock) {
+      this(numExecutors, waitQueueSize, waitQueueComparatorClassName, enablePreemption, clock,
+          false);
+    }
+
+    public TaskExecutorServiceForTest(int numExecutors, int waitQueueSize,
+        String waitQueueComparatorClassName, boolean enablePreemption, Clock clock,
+        boolean enableWorkStealing) {
       super(numExecutors, waitQueueSize, waitQueueComparatorClassName, enablePreemption,
-          Thread.currentThread().getContextClassLoader(), null, clock);
+          Thread.currentThread().getContextClassLoader(), null, clock, enableWorkStealing, 0);
     }
 
     private ConcurrentMap<String, InternalCompletionListenerForTest> completionListeners =
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.daemon.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class TestWorkStealingExecutorService {
+
+  @Test(timeout = 10000)
+  public void testIdleExecutorStealsPinnedWork() throws InterruptedException {
+    // Two locality groups of one executor each; both tasks are pinned to the first one.
+    WorkStealingExecutorService executor =
+        new WorkStealingExecutorService(2, 2, Executors.defaultThreadFactory());
+    try {
+      CountDownLatch blockerStarted = new CountDownLatch(1), release = new CountDownLatch(1);
+      executor.execute(new BlockingTask(blockerStarted, release), 0);
+      blockerStarted.await();
+
+      CountDownLatch secondDone = new CountDownLatch(1);
+      executor.execute(secondDone::countDown, 0);
+      assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+      assertEquals(1, executor.getStealCount());
+      release.countDown();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testRejectWhenAllExecutorsBusy() throws InterruptedException {
+    WorkStealingExecutorService executor =
+        new WorkStealingExecutorService(2, 0, Executors.defaultThreadFactory());
+    try {
+      CountDownLatch started = new CountDownLatch(2), release = new CountDownLatch(1);
+      executor.execute(new BlockingTask(started, release));
+      executor.execute(new BlockingTask(started, release));
+      started.await();
+      try {
+        executor.execute(() -> { });
+        fail("Expected a rejection with all the executors busy");
+      } catch (RejectedExecutionException e) {
+        // Expected; the wait queue keeps the work and may preempt something.
+      }
+      release.countDown();
+
+      CountDownLatch done = new CountDownLatch(1);
+      while (true) {
+        try {
+          executor.execute(done::countDown);
+          break;
+        } catch (RejectedExecutionException e) {
+          Thread.sleep(10); // The blocked tasks are still finishing.
+        }
+      }
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSlotReleasedBeforeFutureCompletes() throws Exception {
+    WorkStealingExecutorService executor =
+        new WorkStealingExecutorService(1, 0, Executors.defaultThreadFactory());
+    try {
+      for (int i = 0; i < 100; ++i) {
+        final AtomicBoolean wasRejected = new AtomicBoolean(false);
+        final CountDownLatch nextDone = new CountDownLatch(1);
+        ListenableFuture<Integer> future = executor.submit(() -> 1, null);
+        // Like the completion callback in TaskExecutorService, schedule more work right away.
+        future.addListener(() -> {
+          try {
+            executor.execute(nextDone::countDown);
+          } catch (RejectedExecutionException e) {
+            wasRejected.set(true);
+            nextDone.countDown();
+          }
+        }, MoreExecutors.directExecutor());
+        assertEquals(1, (int) future.get());
+        assertTrue(nextDone.await(5, TimeUnit.SECONDS));
+        assertFalse("Rejected at iteration " + i, wasRejected.get());
+      }
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSlotReleasedCallback() throws Exception {
+    final AtomicInteger callbackCount = new AtomicInteger(0);
+    final CountDownLatch nextDone = new CountDownLatch(1);
+    final WorkStealingExecutorService[] executorRef = new WorkStealingExecutorService[1];
+    // The callback schedules the next task on the slot that was just released.
+    WorkStealingExecutorService executor = new WorkStealingExecutorService(
+        1, 0, Executors.defaultThreadFactory(), () -> {
+          if (callbackCount.incrementAndGet() == 1) {
+            executorRef[0].execute(nextDone::countDown);
+          }
+        });
+    executorRef[0] = executor;
+    try {
+      CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+      ListenableFuture<Integer> future = executor.submit(() -> {
+        new BlockingTask(started, release).run();
+        return 1;
+      }, "query");
+      started.await();
+      assertEquals(0, callbackCount.get());
+      release.countDown();
+      assertEquals(1, (int) future.get());
+      assertTrue(nextDone.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+
+  private static final class BlockingTask implements Runnable {
+    private final CountDownLatch started, release;
+
+    private BlockingTask(CountDownLatch started, CountDownLatch release) {
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public void run() {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
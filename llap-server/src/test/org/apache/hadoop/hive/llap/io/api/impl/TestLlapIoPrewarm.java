@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap.io.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBufferOrBuffers;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.cache.LowLevelCacheAdmissionPolicy;
+import org.apache.hadoop.hive.llap.cache.LowLevelCacheImpl;
+import org.apache.hadoop.hive.llap.metrics.LlapDaemonCacheMetrics;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.SyntheticFileId;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that pre-warming puts the metadata and the data of an ORC file into LLAP cache, and that
+ * the cache admission policy applies to the pre-warmed data like to any other.
+ */
+public class TestLlapIoPrewarm {
+  private static final int ROW_COUNT = 10000;
+
+  private static HiveConf conf;
+  private static Path file;
+
+  private LlapIoImpl io;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    conf = new HiveConf();
+    HiveConf.setVar(conf, ConfVars.LLAP_IO_MEMORY_MODE, "cache");
+    HiveConf.setVar(conf, ConfVars.LLAP_IO_MEMORY_MAX_SIZE, "16Mb");
+    HiveConf.setVar(conf, ConfVars.LLAP_ALLOCATOR_MAX_ALLOC, "1Mb");
+    HiveConf.setBoolVar(conf, ConfVars.LLAP_CACHE_ALLOW_SYNTHETIC_FILEID, true);
+    FileSystem fs = FileSystem.getLocal(conf);
+    file = fs.makeQualified(new Path(System.getProperty("test.tmp.dir", "target/tmp"),
+        "TestLlapIoPrewarm/data.orc"));
+    fs.delete(file, false);
+
+    TypeDescription schema = TypeDescription.fromString("struct<a:bigint,b:string>");
+    Writer writer = OrcFile.createWriter(file, OrcFile.writerOptions(conf).setSchema(schema));
+    VectorizedRowBatch batch = schema.createRowBatch();
+    LongColumnVector a = (LongColumnVector) batch.cols[0];
+    BytesColumnVector b = (BytesColumnVector) batch.cols[1];
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      int row = batch.size++;
+      a.vector[row] = i;
+      b.setVal(row, ("value" + (i % 100)).getBytes());
+      if (batch.size == batch.getMaxSize()) {
+        writer.addRowBatch(batch);
+        batch.reset();
+      }
+    }
+    if (batch.size != 0) {
+      writer.addRowBatch(batch);
+    }
+    writer.close();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    io = new LlapIoImpl(conf);
+  }
+
+  @After
+  public void tearDown() {
+    io.close();
+  }
+
+  @Test
+  public void testPrewarm() throws Exception {
+    LlapDaemonCacheMetrics metrics = io.getCacheMetrics();
+    io.prewarmOrcFile(file, null);
+    assertMetadataCached();
+    long requestedBytes = metrics.getCacheRequestedBytes();
+    assertTrue(requestedBytes > 0);
+    assertEquals(0, metrics.getCacheHitBytes());
+
+    // All the data read by the second pass comes from the cache.
+    io.prewarmOrcFile(file, null);
+    assertTrue(metrics.getCacheHitBytes() > 0);
+    assertEquals(metrics.getCacheRequestedBytes() - requestedBytes, metrics.getCacheHitBytes());
+  }
+
+  @Test
+  public void testPrewarmColumns() throws Exception {
+    LlapDaemonCacheMetrics metrics = io.getCacheMetrics();
+    io.prewarmOrcFile(file, Arrays.asList("b"));
+    assertMetadataCached();
+    long requestedBytes = metrics.getCacheRequestedBytes();
+
+    // Only column b is cached; a is read from disk.
+    io.prewarmOrcFile(file, null);
+    long hitBytes = metrics.getCacheHitBytes();
+    assertTrue(hitBytes > 0);
+    assertTrue(hitBytes < metrics.getCacheRequestedBytes() - requestedBytes);
+
+    // Prewarming unknown columns does nothing.
+    long allRequestedBytes = metrics.getCacheRequestedBytes();
+    io.prewarmOrcFile(file, Arrays.asList("x"));
+    assertEquals(allRequestedBytes, metrics.getCacheRequestedBytes());
+  }
+
+  @Test
+  public void testPrewarmIsSubjectToAdmission() throws Exception {
+    final AtomicLong accessCount = new AtomicLong(0), rejectCount = new AtomicLong(0);
+    ((LowLevelCacheImpl) io.getDataCache()).setAdmissionPolicy(
+        new LowLevelCacheAdmissionPolicy() {
+          @Override
+          public void recordAccess(Object fileKey, long offset, long end) {
+            accessCount.incrementAndGet();
+          }
+
+          @Override
+          public boolean shouldAdmit(Object fileKey, long offset, long end) {
+            rejectCount.incrementAndGet();
+            return false;
+          }
+        });
+    LlapDaemonCacheMetrics metrics = io.getCacheMetrics();
+    io.prewarmOrcFile(file, null);
+    assertTrue(accessCount.get() > 0);
+    assertTrue(rejectCount.get() > 0);
+    // The admission policy only applies to the data; the metadata is still cached.
+    assertMetadataCached();
+
+    // Nothing was admitted, so the second pass reads everything from disk again.
+    io.prewarmOrcFile(file, null);
+    assertTrue(metrics.getCacheRequestedBytes() > 0);
+    assertEquals(0, metrics.getCacheHitBytes());
+  }
+
+  private void assertMetadataCached() throws IOException {
+    FileStatus status = file.getFileSystem(conf).getFileStatus(file);
+    Object fileKey = new SyntheticFileId(file, status.getLen(), status.getModificationTime());
+    MemoryBufferOrBuffers metadata = io.getFileMetadataCache().getFileMetadata(fileKey);
+    assertNotNull(metadata);
+    io.getFileMetadataCache().decRefBuffer(metadata);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.llap.io.encoded;
+
+import static org.apache.parquet.column.ParquetProperties.WriterVersion.PARQUET_1_0;
+import static org.apache.parquet.hadoop.api.ReadSupport.PARQUET_READ_SCHEMA;
+import static org.apache.parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.counters.QueryFragmentCounters;
+import org.apache.hadoop.hive.llap.io.api.impl.ColumnVectorBatch;
+import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer.Includes;
+import org.apache.hadoop.hive.llap.io.decode.ColumnVectorProducer.SchemaEvolutionFactory;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.io.IOConstants;
+import org.apache.hadoop.hive.ql.io.orc.encoded.Consumer;
+import org.apache.hadoop.hive.ql.io.parquet.serde.ArrayWritableObjectInspector;
+import org.apache.hadoop.hive.ql.plan.MapWork;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.impl.SchemaEvolution;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.GroupWriteSupport;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.apache.tez.common.counters.TezCounters;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestParquetEncodedDataReader {
+  private static final String SCHEMA = "message test { required int32 a; }";
+  private static final int ROW_COUNT = 5 * VectorizedRowBatch.DEFAULT_SIZE + 17;
+  private static final int BATCH_COUNT = 6;
+
+  private static JobConf conf;
+  private static Path file;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    conf = new JobConf();
+    file = new Path(System.getProperty("test.tmp.dir", "target/tmp"),
+        "TestParquetEncodedDataReader/data.parquet");
+    FileSystem fs = file.getFileSystem(conf);
+    fs.delete(file, false);
+
+    MessageType schema = MessageTypeParser.parseMessageType(SCHEMA);
+    GroupWriteSupport.setSchema(schema, conf);
+    ParquetWriter<Group> writer = new ParquetWriter<>(file, new GroupWriteSupport(),
+        UNCOMPRESSED, 1024 * 1024, 1024, 1024 * 1024, true, false, PARQUET_1_0, conf);
+    SimpleGroupFactory groupFactory = new SimpleGroupFactory(schema);
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      writer.write(groupFactory.newGroup().append("a", i));
+    }
+    writer.close();
+
+    conf.set(IOConstants.COLUMNS, "a");
+    conf.set(IOConstants.COLUMNS_TYPES, "int");
+    conf.set(PARQUET_READ_SCHEMA, SCHEMA);
+    conf.setBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, false);
+    conf.set(ColumnProjectionUtils.READ_COLUMN_IDS_CONF_STR, "0");
+    HiveConf.setBoolVar(conf, HiveConf.ConfVars.HIVE_VECTORIZATION_ENABLED, true);
+    HiveConf.setVar(conf, HiveConf.ConfVars.PLAN, "//tmp");
+    MapWork mapWork = new MapWork();
+    VectorizedRowBatchCtx rbCtx = new VectorizedRowBatchCtx();
+    rbCtx.init(new ArrayWritableObjectInspector((StructTypeInfo) TypeInfoFactory.getStructTypeInfo(
+        Arrays.asList("a"), Arrays.<TypeInfo>asList(TypeInfoFactory.intTypeInfo))), new String[0]);
+    mapWork.setVectorMode(true);
+    mapWork.setVectorizedRowBatchCtx(rbCtx);
+    Utilities.setMapWork(conf, mapWork);
+  }
+
+  @AfterClass
+  public static void tearDown() throws IOException {
+    file.getFileSystem(conf).delete(file, false);
+  }
+
+  /** Collects the values of the batches; optionally pauses the reader after some batches. */
+  private static class CollectingConsumer implements Consumer<ColumnVectorBatch> {
+    private final int pauseAfterBatchCount;
+    private final List<Long> values = new ArrayList<>();
+    private final CountDownLatch pausedLatch = new CountDownLatch(1);
+    private final CountDownLatch finishedLatch = new CountDownLatch(1);
+    private ParquetEncodedDataReader reader;
+    private volatile int batchCount = 0;
+    private volatile boolean isDone = false;
+    private volatile Throwable error = null;
+
+    CollectingConsumer(int pauseAfterBatchCount) {
+      this.pauseAfterBatchCount = pauseAfterBatchCount;
+    }
+
+    @Override
+    public void consumeData(ColumnVectorBatch data) {
+      LongColumnVector cv = (LongColumnVector) data.cols[0];
+      synchronized (values) {
+        for (int i = 0; i < data.size; ++i) {
+          values.add(cv.vector[cv.isRepeating ? 0 : i]);
+        }
+      }
+      if (++batchCount == pauseAfterBatchCount) {
+        reader.pause();
+        pausedLatch.countDown();
+      }
+      reader.returnData(data);
+    }
+
+    @Override
+    public void setDone() {
+      isDone = true;
+      finishedLatch.countDown();
+    }
+
+    @Override
+    public void setError(Throwable t) {
+      error = t;
+      finishedLatch.countDown();
+    }
+
+    void verifyAllRows() {
+      assertNull(error);
+      assertTrue(isDone);
+      assertEquals(BATCH_COUNT, batchCount);
+      synchronized (values) {
+        assertEquals(ROW_COUNT, values.size());
+        for (int i = 0; i < ROW_COUNT; ++i) {
+          assertEquals(i, values.get(i).longValue());
+        }
+      }
+    }
+  }
+
+  private static ParquetEncodedDataReader createReader(CollectingConsumer consumer)
+      throws IOException {
+    Includes includes = Mockito.mock(Includes.class);
+    Mockito.when(includes.getPhysicalColumnIds()).thenReturn(Arrays.asList(0));
+    SchemaEvolutionFactory sef = new SchemaEvolutionFactory() {
+      @Override
+      public SchemaEvolution createSchemaEvolution(TypeDescription fileSchema) {
+        return null;
+      }
+    };
+    long length = file.getFileSystem(conf).getFileStatus(file).getLen();
+    FileSplit split = new FileSplit(file, 0, length, (String[]) null);
+    ParquetEncodedDataReader reader = new ParquetEncodedDataReader(null, null, conf, split,
+        includes, sef, consumer, new QueryFragmentCounters(conf, new TezCounters()), conf);
+    consumer.reader = reader;
+    return reader;
+  }
+
+  private static Thread startReader(final ParquetEncodedDataReader reader) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          reader.getReadCallable().call();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }, "TestParquetEncodedDataReader");
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void testReadAllRows() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer(-1);
+    createReader(consumer).getReadCallable().call();
+    consumer.verifyAllRows();
+  }
+
+  @Test(timeout = 60000)
+  public void testPauseAndUnpause() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer(2);
+    ParquetEncodedDataReader reader = createReader(consumer);
+    Thread thread = startReader(reader);
+    consumer.pausedLatch.await();
+    // The reader must not produce more batches until it is unpaused.
+    assertFalse(consumer.finishedLatch.await(500, TimeUnit.MILLISECONDS));
+    assertEquals(2, consumer.batchCount);
+    reader.unpause();
+    consumer.finishedLatch.await();
+    thread.join();
+    consumer.verifyAllRows();
+  }
+
+  @Test(timeout = 60000)
+  public void testStopWhilePaused() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer(1);
+    ParquetEncodedDataReader reader = createReader(consumer);
+    Thread thread = startReader(reader);
+    consumer.pausedLatch.await();
+    reader.stop();
+    thread.join();
+    assertEquals(1, consumer.batchCount);
+    assertFalse(consumer.isDone);
+    assertNull(consumer.error);
+  }
+}
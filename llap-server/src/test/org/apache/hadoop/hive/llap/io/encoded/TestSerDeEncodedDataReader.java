@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io.encoded;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.llap.cache.SerDeLowLevelCacheImpl.StripeData;
+import org.apache.hadoop.hive.ql.io.orc.Reader;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgumentFactory;
+import org.apache.orc.OrcProto;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.impl.SchemaEvolution;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the SARG filtering of the slices cached by the SerDe reader.
+ */
+public class TestSerDeEncodedDataReader {
+  private static final Path PATH = new Path("/tmp/test.txt");
+
+  private SchemaEvolution evolution;
+
+  @Before
+  public void setUp() {
+    TypeDescription schema = TypeDescription.fromString("struct<a:int,b:string>");
+    evolution = new SchemaEvolution(schema, null, new Reader.Options(new Configuration()));
+  }
+
+  @Test
+  public void testSkipSlice() {
+    StripeData slice = createSlice(rootStats(), intStats(10, 20), stringStats("k", "p"));
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(5), PATH, evolution));
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(21), PATH, evolution));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(10), PATH, evolution));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(15), PATH, evolution));
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsB("z"), PATH, evolution));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, equalsB("m"), PATH, evolution));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, null, PATH, evolution));
+  }
+
+  @Test
+  public void testSliceWithoutSargColumn() {
+    // The slice was cached by a query that only read b; a can have any values.
+    StripeData slice = createSlice(rootStats(), null, stringStats("k", "p"));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(5), PATH, evolution));
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsB("z"), PATH, evolution));
+
+    // The slice was cached without any statistics.
+    StripeData noStats = new StripeData(0, 0, 90, 100, 10, new OrcProto.ColumnEncoding[3]);
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(noStats, equalsA(5), PATH, evolution));
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(noStats, equalsB("z"), PATH, evolution));
+  }
+
+  @Test
+  public void testMergeStatisticsForAddedColumns() {
+    OrcProto.ColumnStatistics root = rootStats(), a = intStats(10, 20),
+        b = stringStats("k", "p");
+    StripeData slice = createSlice(root, a, null);
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(slice, equalsB("z"), PATH, evolution));
+
+    // Column b is read from disk and added to the slice that only had a.
+    SerDeEncodedDataReader.mergeColumnStatistics(slice,
+        new OrcProto.ColumnStatistics[] { root, null, b });
+    assertArrayEquals(new OrcProto.ColumnStatistics[] { root, a, b },
+        slice.getColumnStatistics());
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsA(5), PATH, evolution));
+    assertFalse(SerDeEncodedDataReader.isSliceNeeded(slice, equalsB("z"), PATH, evolution));
+
+    // The slice was cached without statistics; they are taken from disk as is.
+    StripeData noStats = new StripeData(0, 0, 90, 100, 10, new OrcProto.ColumnEncoding[3]);
+    OrcProto.ColumnStatistics[] diskStats = new OrcProto.ColumnStatistics[] { root, null, b };
+    SerDeEncodedDataReader.mergeColumnStatistics(noStats, diskStats);
+    assertSame(diskStats, noStats.getColumnStatistics());
+    assertTrue(SerDeEncodedDataReader.isSliceNeeded(noStats, equalsA(5), PATH, evolution));
+  }
+
+  private static StripeData createSlice(OrcProto.ColumnStatistics... colStats) {
+    StripeData slice = new StripeData(0, 0, 90, 100, 10, new OrcProto.ColumnEncoding[3]);
+    slice.setColumnStatistics(colStats);
+    return slice;
+  }
+
+  private static OrcProto.ColumnStatistics rootStats() {
+    return OrcProto.ColumnStatistics.newBuilder().setNumberOfValues(10).build();
+  }
+
+  private static OrcProto.ColumnStatistics intStats(long min, long max) {
+    return OrcProto.ColumnStatistics.newBuilder().setNumberOfValues(10).setHasNull(false)
+        .setIntStatistics(OrcProto.IntegerStatistics.newBuilder()
+            .setMinimum(min).setMaximum(max).setSum(min + max)).build();
+  }
+
+  private static OrcProto.ColumnStatistics stringStats(String min, String max) {
+    return OrcProto.ColumnStatistics.newBuilder().setNumberOfValues(10).setHasNull(false)
+        .setStringStatistics(OrcProto.StringStatistics.newBuilder()
+            .setMinimum(min).setMaximum(max).setSum(10)).build();
+  }
+
+  private static SearchArgument equalsA(long value) {
+    return SearchArgumentFactory.newBuilder().startAnd()
+        .equals("a", PredicateLeaf.Type.LONG, value).end().build();
+  }
+
+  private static SearchArgument equalsB(String value) {
+    return SearchArgumentFactory.newBuilder().startAnd()
+        .equals("b", PredicateLeaf.Type.STRING, value).end().build();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.io.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.OrcProto;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.orc.impl.ReaderImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the lazy decoding of the stripe statistics in OrcFileMetadata.
+ */
+public class TestOrcFileMetadata {
+  private static final int STRIPE_COUNT = 3;
+
+  private File file;
+  private ReaderImpl reader;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    file = File.createTempFile("TestOrcFileMetadata", ".orc");
+    file.delete();
+    Path path = new Path(file.toURI());
+    TypeDescription schema = TypeDescription.fromString("struct<a:bigint>");
+    Writer writer = OrcFile.createWriter(path, OrcFile.writerOptions(conf).setSchema(schema));
+    VectorizedRowBatch batch = schema.createRowBatch();
+    LongColumnVector a = (LongColumnVector) batch.cols[0];
+    // Each stripe has the values [100 * stripe, 100 * stripe + 9]
+    for (int stripe = 0; stripe < STRIPE_COUNT; ++stripe) {
+      batch.reset();
+      for (int i = 0; i < 10; ++i) {
+        a.vector[batch.size++] = 100 * stripe + i;
+      }
+      writer.addRowBatch(batch);
+      writer.writeIntermediateFooter();
+    }
+    writer.close();
+    reader = (ReaderImpl) OrcFile.createReader(path, OrcFile.readerOptions(conf));
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testLazyStripeStatsMatchEager() throws Exception {
+    final List<OrcProto.StripeStatistics> eagerStats = reader.getOrcProtoStripeStatistics();
+    OrcFileMetadata eager = createMetadata(() -> eagerStats);
+
+    // Decodes the statistics from the serialized tail, the way the metadata cache stores it
+    final AtomicInteger decodeCount = new AtomicInteger();
+    OrcFileMetadata lazy = createMetadata(() -> {
+      decodeCount.incrementAndGet();
+      return ReaderImpl.extractFileTail(reader.getSerializedFileFooter())
+          .getStripeStatisticsProto();
+    });
+    assertEquals(0, decodeCount.get());
+
+    List<OrcProto.StripeStatistics> lazyStats = lazy.getStripeStats();
+    assertEquals(eager.getStripeStats(), lazyStats);
+    assertEquals(STRIPE_COUNT, lazyStats.size());
+    for (int stripe = 0; stripe < STRIPE_COUNT; ++stripe) {
+      OrcProto.IntegerStatistics stats = lazyStats.get(stripe).getColStats(1).getIntStatistics();
+      assertEquals(100 * stripe, stats.getMinimum());
+      assertEquals(100 * stripe + 9, stats.getMaximum());
+    }
+    // The statistics are only decoded once
+    assertSame(lazyStats, lazy.getStripeStats());
+    assertEquals(1, decodeCount.get());
+  }
+
+  @Test
+  public void testStripeStatsReadFailure() throws Exception {
+    final IOException error = new IOException("Cannot read the file tail");
+    OrcFileMetadata metadata = createMetadata(() -> {
+      throw error;
+    });
+    try {
+      metadata.getStripeStats();
+      fail("Expected the read failure to be rethrown");
+    } catch (RuntimeException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  private OrcFileMetadata createMetadata(OrcFileMetadata.StripeStatsSupplier stats) {
+    OrcProto.FileTail tail = reader.getFileTail();
+    return new OrcFileMetadata(file.getPath(), tail.getFooter(), tail.getPostscript(), stats,
+        reader.getStripes(), reader.getFileVersion());
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.shufflehandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.tez.runtime.library.common.Constants;
+import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
+import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIndexCache {
+  private static final int NUM_PARTITIONS = 10;
+  private static final int INDEX_SIZE = NUM_PARTITIONS * Constants.MAP_OUTPUT_INDEX_RECORD_LENGTH;
+
+  private Configuration conf;
+  private File testDir;
+  private String user;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    testDir = new File(System.getProperty("test.tmp.dir",
+        System.getProperty("java.io.tmpdir")), "TestIndexCache-" + System.nanoTime());
+    assertTrue(testDir.mkdirs());
+    user = UserGroupInformation.getCurrentUser().getShortUserName();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(testDir);
+  }
+
+  @Test
+  public void testOffHeapIndexFreedOnEviction() throws IOException {
+    conf.setBoolean(ShuffleHandler.SHUFFLE_INDEX_CACHE_OFF_HEAP, true);
+    // Room for two indexes.
+    conf.setInt(ShuffleHandler.SHUFFLE_INDEX_CACHE_SIZE, 2 * INDEX_SIZE + 1);
+    IndexCache cache = new IndexCache(conf);
+
+    for (int map = 0; map < 5; ++map) {
+      Path indexFile = writeIndexFile("map" + map, map);
+      for (int reduce = 0; reduce < NUM_PARTITIONS; ++reduce) {
+        verifyRecord(cache.getIndexInformation("map" + map, reduce, indexFile, user), map, reduce);
+      }
+      assertTrue(cache.checkTotalMemoryUsed());
+      assertEquals(Math.min(map + 1, 2) * INDEX_SIZE, cache.getOffHeapMemoryUsed());
+    }
+
+    // The evicted index is read again.
+    verifyRecord(cache.getIndexInformation("map0", 3, new Path(testDir.getPath(), "map0"), user),
+        0, 3);
+    assertEquals(2 * INDEX_SIZE, cache.getOffHeapMemoryUsed());
+
+    cache.removeMap("map0");
+    assertTrue(cache.checkTotalMemoryUsed());
+    assertEquals(INDEX_SIZE, cache.getOffHeapMemoryUsed());
+  }
+
+  @Test
+  public void testOffHeapIndexLargerThanCache() throws IOException {
+    conf.setBoolean(ShuffleHandler.SHUFFLE_INDEX_CACHE_OFF_HEAP, true);
+    conf.setInt(ShuffleHandler.SHUFFLE_INDEX_CACHE_SIZE, INDEX_SIZE - 1);
+    IndexCache cache = new IndexCache(conf);
+
+    // The index is freed right away, but the record is still returned.
+    Path indexFile = writeIndexFile("map0", 0);
+    verifyRecord(cache.getIndexInformation("map0", 5, indexFile, user), 0, 5);
+    assertEquals(0, cache.getOffHeapMemoryUsed());
+    assertTrue(cache.checkTotalMemoryUsed());
+  }
+
+  @Test
+  public void testInvalidReducer() throws IOException {
+    conf.setBoolean(ShuffleHandler.SHUFFLE_INDEX_CACHE_OFF_HEAP, true);
+    IndexCache cache = new IndexCache(conf);
+    Path indexFile = writeIndexFile("map0", 0);
+    try {
+      cache.getIndexInformation("map0", NUM_PARTITIONS, indexFile, user);
+      fail("Expected an invalid request");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Invalid request"));
+    }
+    // The index is cached anyway.
+    assertTrue(cache.checkTotalMemoryUsed());
+    assertEquals(INDEX_SIZE, cache.getOffHeapMemoryUsed());
+    verifyRecord(cache.getIndexInformation("map0", 1, indexFile, user), 0, 1);
+  }
+
+  private Path writeIndexFile(String name, int map) throws IOException {
+    TezSpillRecord spillRecord = new TezSpillRecord(NUM_PARTITIONS);
+    for (int reduce = 0; reduce < NUM_PARTITIONS; ++reduce) {
+      spillRecord.putIndex(new TezIndexRecord(
+          startOffset(map, reduce), rawLength(map, reduce), partLength(map, reduce)), reduce);
+    }
+    Path path = new Path(testDir.getPath(), name);
+    spillRecord.writeToFile(path, conf);
+    return path;
+  }
+
+  private static void verifyRecord(TezIndexRecord record, int map, int reduce) {
+    assertEquals(startOffset(map, reduce), record.getStartOffset());
+    assertEquals(rawLength(map, reduce), record.getRawLength());
+    assertEquals(partLength(map, reduce), record.getPartLength());
+  }
+
+  private static long startOffset(int map, int reduce) {
+    return map * 100000L + reduce * 1000L;
+  }
+
+  private static long rawLength(int map, int reduce) {
+    return 2 * partLength(map, reduce);
+  }
+
+  private static long partLength(int map, int reduce) {
+    return map * 100L + reduce + 1;
+  }
+}
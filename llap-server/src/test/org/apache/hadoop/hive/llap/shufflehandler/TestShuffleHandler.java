@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.llap.shufflehandler;
+
+import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.tez.runtime.library.common.shuffle.orderedgrouped.ShuffleHeader;
+import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests the parsing of the reduce parameter, including partition ranges, in ShuffleHandler.
+ */
+public class TestShuffleHandler {
+  private static final List<String> MAP_IDS = Arrays.asList("attempt_1_1_0", "attempt_1_1_1");
+
+  private ShuffleHandler shuffleHandler;
+
+  @After
+  public void tearDown() throws Exception {
+    if (shuffleHandler != null) {
+      shuffleHandler.stop();
+      shuffleHandler = null;
+    }
+  }
+
+  @Test
+  public void testSingleReducer() throws Exception {
+    TestShuffle shuffle = createShuffle(new Configuration());
+    Channel ch = shuffle.request("3");
+    assertEquals(0, shuffle.errors.size());
+    assertEquals(Arrays.asList("attempt_1_1_0/3", "attempt_1_1_1/3"), shuffle.sentOutputs);
+    assertEquals(getContentLength(3, 3), getResponseContentLength(ch));
+  }
+
+  @Test
+  public void testReducerRange() throws Exception {
+    TestShuffle shuffle = createShuffle(new Configuration());
+    Channel ch = shuffle.request("2-4");
+    assertEquals(0, shuffle.errors.size());
+    assertEquals(Arrays.asList("attempt_1_1_0/2", "attempt_1_1_0/3", "attempt_1_1_0/4",
+        "attempt_1_1_1/2", "attempt_1_1_1/3", "attempt_1_1_1/4"), shuffle.sentOutputs);
+    assertEquals(getContentLength(2, 4), getResponseContentLength(ch));
+
+    // A range of one partition is the same as a single reducer.
+    shuffle = createShuffle(new Configuration());
+    shuffle.request("0-0");
+    assertEquals(0, shuffle.errors.size());
+    assertEquals(Arrays.asList("attempt_1_1_0/0", "attempt_1_1_1/0"), shuffle.sentOutputs);
+  }
+
+  @Test
+  public void testMalformedRanges() throws Exception {
+    for (String reduce : new String[] { "", "-1", "-", "1-", "a", "a-b", "1-b", "1-2-3",
+        "4-2", "0-1000", "2147483647-2147483648" }) {
+      TestShuffle shuffle = createShuffle(new Configuration());
+      shuffle.request(reduce);
+      assertEquals(reduce, Arrays.asList(BAD_REQUEST), shuffle.errors);
+      assertEquals(reduce, 0, shuffle.sentOutputs.size());
+    }
+  }
+
+  @Test
+  public void testMaxPartitionsPerRequest() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(ShuffleHandler.SHUFFLE_MAX_PARTITIONS_PER_REQUEST, 3);
+    TestShuffle shuffle = createShuffle(conf);
+    shuffle.request("5-7");
+    assertEquals(0, shuffle.errors.size());
+    assertEquals(6, shuffle.sentOutputs.size());
+
+    shuffle = createShuffle(conf);
+    shuffle.request("5-8");
+    assertEquals(Arrays.asList(BAD_REQUEST), shuffle.errors);
+    assertEquals(0, shuffle.sentOutputs.size());
+  }
+
+  private TestShuffle createShuffle(Configuration conf) throws Exception {
+    tearDown();
+    shuffleHandler = new ShuffleHandler(conf);
+    return new TestShuffle(shuffleHandler, conf);
+  }
+
+  private static TezIndexRecord createIndexRecord(String mapId, int reduce) {
+    long partLength = 100 * reduce + mapId.length();
+    return new TezIndexRecord(1000 * reduce, 2 * partLength, partLength);
+  }
+
+  private static long getContentLength(int firstReduce, int lastReduce) throws IOException {
+    long result = 0;
+    DataOutputBuffer dob = new DataOutputBuffer();
+    for (String mapId : MAP_IDS) {
+      for (int reduce = firstReduce; reduce <= lastReduce; ++reduce) {
+        TezIndexRecord record = createIndexRecord(mapId, reduce);
+        dob.reset();
+        new ShuffleHeader(mapId, record.getPartLength(), record.getRawLength(), reduce).write(dob);
+        result += dob.getLength() + record.getPartLength();
+      }
+    }
+    return result;
+  }
+
+  private static long getResponseContentLength(Channel ch) {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    verify(ch, atLeastOnce()).write(captor.capture());
+    for (Object message : captor.getAllValues()) {
+      if (message instanceof HttpResponse) {
+        return Long.parseLong(
+            ((HttpResponse) message).headers().get(HttpHeaders.Names.CONTENT_LENGTH));
+      }
+    }
+    throw new AssertionError("No response was written");
+  }
+
+  /** Shuffle that serves made up index records, and records the outputs instead of sending. */
+  private static class TestShuffle extends ShuffleHandler.Shuffle {
+    private final List<String> sentOutputs = new ArrayList<>();
+    private final List<HttpResponseStatus> errors = new ArrayList<>();
+
+    TestShuffle(ShuffleHandler shuffleHandler, Configuration conf) {
+      shuffleHandler.super(conf);
+    }
+
+    Channel request(String reduce) throws Exception {
+      HttpRequest request = new DefaultHttpRequest(HTTP_1_1, GET, "/mapOutput?job=job_1_1&dag=1"
+          + "&map=" + String.join(",", MAP_IDS) + "&reduce=" + reduce + "&keepAlive=true");
+      request.headers().set(ShuffleHeader.HTTP_HEADER_NAME, ShuffleHeader.DEFAULT_HTTP_HEADER_NAME);
+      request.headers().set(ShuffleHeader.HTTP_HEADER_VERSION,
+          ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION);
+      ChannelPipeline pipeline = mock(ChannelPipeline.class);
+      when(pipeline.get("timeout")).thenReturn(new ShuffleHandler.TimeoutHandler());
+      Channel ch = mock(Channel.class);
+      when(ch.getPipeline()).thenReturn(pipeline);
+      MessageEvent evt = mock(MessageEvent.class);
+      when(evt.getMessage()).thenReturn(request);
+      when(evt.getChannel()).thenReturn(ch);
+      messageReceived(mock(ChannelHandlerContext.class), evt);
+      return ch;
+    }
+
+    @Override
+    protected void verifyRequest(String appid, ChannelHandlerContext ctx, HttpRequest request,
+        HttpResponse response, URL requestUri) {
+    }
+
+    @Override
+    protected MapOutputInfo getMapOutputInfo(String jobId, int dagId, String mapId, int reduce,
+        String user) {
+      return new MapOutputInfo(new Path("/tmp/" + mapId), createIndexRecord(mapId, reduce));
+    }
+
+    @Override
+    protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx, Channel ch, String user,
+        String mapId, int reduce, MapOutputInfo mapOutputInfo) {
+      assertEquals(createIndexRecord(mapId, reduce).getPartLength(),
+          mapOutputInfo.indexRecord.getPartLength());
+      sentOutputs.add(mapId + "/" + reduce);
+      return mock(ChannelFuture.class);
+    }
+
+    @Override
+    protected void sendError(ChannelHandlerContext ctx, String message,
+        HttpResponseStatus status) {
+      errors.add(status);
+    }
+  }
+}
@@ -59,7 +59,8 @@ int _kOperatorTypeValues[] = {
   OperatorType::ORCFILEMERGE,
   OperatorType::RCFILEMERGE,
   OperatorType::MERGEJOIN,
-  OperatorType::SPARKPRUNINGSINK
+  OperatorType::SPARKPRUNINGSINK,
+  OperatorType::TOPNKEY
 };
 const char* _kOperatorTypeNames[] = {
   "JOIN",
@@ -87,9 +88,10 @@ const char* _kOperatorTypeNames[] = {
   "ORCFILEMERGE",
   "RCFILEMERGE",
   "MERGEJOIN",
-  "SPARKPRUNINGSINK"
+  "SPARKPRUNINGSINK",
+  "TOPNKEY"
 };
-const std::map<int, const char*> _OperatorType_VALUES_TO_NAMES(::apache::thrift::TEnumIterator(26, _kOperatorTypeValues, _kOperatorTypeNames), ::apache::thrift::TEnumIterator(-1, NULL, NULL));
+const std::map<int, const char*> _OperatorType_VALUES_TO_NAMES(::apache::thrift::TEnumIterator(27, _kOperatorTypeValues, _kOperatorTypeNames), ::apache::thrift::TEnumIterator(-1, NULL, NULL));
 
 int _kTaskTypeValues[] = {
   TaskType::MAP,
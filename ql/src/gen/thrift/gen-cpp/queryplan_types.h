@@ -64,7 +64,8 @@ struct OperatorType {
     ORCFILEMERGE = 22,
     RCFILEMERGE = 23,
     MERGEJOIN = 24,
-    SPARKPRUNINGSINK = 25
+    SPARKPRUNINGSINK = 25,
+    TOPNKEY = 26
   };
 };
 
@@ -37,7 +37,8 @@ public enum OperatorType implements org.apache.thrift.TEnum {
   ORCFILEMERGE(22),
   RCFILEMERGE(23),
   MERGEJOIN(24),
-  SPARKPRUNINGSINK(25);
+  SPARKPRUNINGSINK(25),
+  TOPNKEY(26);
 
   private final int value;
 
@@ -110,6 +111,8 @@ public static OperatorType findByValue(int value) {
         return MERGEJOIN;
       case 25:
         return SPARKPRUNINGSINK;
+      case 26:
+        return TOPNKEY;
       default:
         return null;
     }
@@ -60,6 +60,7 @@ final class OperatorType {
   const RCFILEMERGE = 23;
   const MERGEJOIN = 24;
   const SPARKPRUNINGSINK = 25;
+  const TOPNKEY = 26;
   static public $__names = array(
     0 => 'JOIN',
     1 => 'MAPJOIN',
@@ -87,6 +88,7 @@ final class OperatorType {
     23 => 'RCFILEMERGE',
     24 => 'MERGEJOIN',
     25 => 'SPARKPRUNINGSINK',
+    26 => 'TOPNKEY',
   );
 }
 
@@ -633,6 +633,9 @@ public void run() {
       // analyzer (this is when the connection to the metastore is made) but before we analyze,
       // because at that point we need access to the objects.
       Hive.get().getMSC().flushCache();
+      if (conf.getBoolVar(HiveConf.ConfVars.HIVE_QUERY_METADATA_CACHE_ENABLED)) {
+        Hive.get().startQueryMetadataCache();
+      }
 
       backupContext = new Context(ctx);
       boolean executeHooks = hookRunner.hasPreAnalyzeHooks();
@@ -759,6 +762,7 @@ public void run() {
         }
       }
 
+      endQueryMetadataCacheWithoutEx();
       double duration = perfLogger.PerfLogEnd(CLASS_NAME, PerfLogger.COMPILE)/1000.00;
       ImmutableMap<String, Long> compileHMSTimings = dumpMetaCallTimingWithoutEx("compilation");
       queryDisplay.setHmsTimings(QueryDisplay.Phase.COMPILATION, compileHMSTimings);
@@ -990,6 +994,14 @@ private ImmutableMap<String, Long> dumpMetaCallTimingWithoutEx(String phase) {
     return null;
   }
 
+  private void endQueryMetadataCacheWithoutEx() {
+    try {
+      Hive.get().endQueryMetadataCache();
+    } catch (HiveException he) {
+      LOG.warn("Caught exception attempting to end the query metadata cache " + he, he);
+    }
+  }
+
   /**
    * Returns EXPLAIN EXTENDED output for a semantically
    * analyzed query.
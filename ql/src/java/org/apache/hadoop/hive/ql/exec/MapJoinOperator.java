@@ -29,6 +29,8 @@
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.ObjectPair;
+import org.apache.hadoop.hive.common.ValidTxnWriteIdList;
+import org.apache.hadoop.hive.common.ValidWriteIdList;
 import org.apache.hadoop.hive.conf.Constants;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
@@ -52,6 +54,7 @@
 import org.apache.hadoop.hive.ql.exec.spark.SparkUtilities;
 import org.apache.hadoop.hive.ql.exec.tez.LlapObjectCache;
 import org.apache.hadoop.hive.ql.exec.tez.LlapObjectSubCache;
+import org.apache.hadoop.hive.ql.exec.tez.LlapSharedHashTableCache;
 import org.apache.hadoop.hive.ql.io.HiveKey;
 import org.apache.hadoop.hive.ql.log.PerfLogger;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -154,6 +157,13 @@ protected void initializeOp(Configuration hconf) throws HiveException {
 
     super.initializeOp(hconf);
 
+    if (isFullOuterJoin() && !supportsFullOuterJoin()) {
+      // The non-matching small table rows of a FULL OUTER JOIN are only generated by the
+      // native vector map join FULL OUTER operators.
+      throw new HiveException(getClass().getSimpleName() + " does not support FULL OUTER JOIN" +
+          " (requires native vector map join with the fast hash table)");
+    }
+
     int tagLen = conf.getTagLength();
 
     // On Tez only: The hash map might already be cached in the container we run
@@ -201,9 +211,17 @@ protected void initializeOp(Configuration hconf) throws HiveException {
         LOG.debug("This is not bucket map join, so cache");
       }
 
-      Future<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> future =
-          cache.retrieveAsync(
-              cacheKey, () ->loadHashTable(mapContext, mrContext));
+      final String sharedCacheKey = getSharedHashTableKey(hconf);
+      Future<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> future;
+      if (sharedCacheKey == null) {
+        future = cache.retrieveAsync(
+            cacheKey, () ->loadHashTable(mapContext, mrContext));
+      } else {
+        // Identical small tables of other queries in this daemon can be reused, too.
+        future = cache.retrieveAsync(
+            cacheKey, () -> LlapSharedHashTableCache.getInstance(hconf).retrieve(
+                sharedCacheKey, queryId, () -> loadHashTable(mapContext, mrContext)));
+      }
       asyncInitOperations.add(future);
     } else if (!isInputFileChangeSensitive(mapContext)) {
       loadHashTable(mapContext, mrContext);
@@ -211,6 +229,58 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     }
   }
 
+  /**
+   * @return The key of the hash tables in the daemon-wide cache, including the write ids of the
+   *         small tables this query reads; null if they should not be shared across queries.
+   */
+  private String getSharedHashTableKey(Configuration hconf) {
+    String planKey = conf.getSharedHashTableKey();
+    if (planKey == null || !(cache instanceof LlapObjectCache)
+        || !HiveConf.getBoolVar(hconf, ConfVars.LLAP_MAPJOIN_SHARED_CACHE_ENABLED)) {
+      return null;
+    }
+    String txnWriteIds = hconf.get(ValidTxnWriteIdList.VALID_TABLES_WRITEIDS_KEY);
+    if (txnWriteIds == null) {
+      return null;
+    }
+    // The container type depends on the operator and on the hash table settings.
+    StringBuilder sb = new StringBuilder(planKey).append('_').append(getClass().getName())
+        .append('_').append(conf.isHybridHashJoin())
+        .append('_').append(HiveConf.getBoolVar(hconf, ConfVars.HIVEMAPJOINUSEOPTIMIZEDTABLE))
+        .append('_').append(HiveConf.getBoolVar(hconf,
+            ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_ENABLED));
+    ValidTxnWriteIdList validWriteIds = new ValidTxnWriteIdList(txnWriteIds);
+    for (String table : conf.getSharedHashTableSources()) {
+      ValidWriteIdList tableWriteIds = validWriteIds.getTableValidWriteIdList(table);
+      if (tableWriteIds == null) {
+        return null;
+      }
+      sb.append('_').append(tableWriteIds.writeToString());
+    }
+    return sb.toString();
+  }
+
+  protected boolean isFullOuterJoin() {
+    JoinCondDesc[] conds = conf.getConds();
+    if (conds == null) {
+      return false;
+    }
+    for (JoinCondDesc cond : conds) {
+      if (cond.getType() == JoinDesc.FULL_OUTER_JOIN) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Whether this operator generates the non-matching small table rows of a
+   *         FULL OUTER JOIN.
+   */
+  protected boolean supportsFullOuterJoin() {
+    return false;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   protected void completeInitializationOp(Object[] os) throws HiveException {
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+
+/**
+ * Keeps the n best distinct keys seen so far, ordered by the Reducesink sort order.
+ *
+ * A row can be dropped when its key is worse than all the n kept keys: n other keys that come
+ * before it exist, so it can never make it through the LIMIT.  The kept keys are a subset of the
+ * keys seen by the whole query, so this holds per task.
+ */
+public final class TopNKeyFilter {
+
+  private final int topN;
+  private final ObjectInspector[] keyObjectInspectors;
+  private final TreeSet<Object[]> topKeys;
+
+  /**
+   * @param topN the number of distinct keys to keep
+   * @param keyObjectInspectors the (standard) object inspectors of the keys passed in
+   * @param columnSortOrder "+" (ascending) or "-" (descending) for each key column
+   * @param nullOrder "a" (nulls first) or "z" (nulls last) for each key column; may be null for
+   *        the default (nulls first for ascending, nulls last for descending)
+   */
+  public TopNKeyFilter(int topN, ObjectInspector[] keyObjectInspectors, String columnSortOrder,
+      String nullOrder) {
+    this.topN = topN;
+    this.keyObjectInspectors = keyObjectInspectors;
+    this.topKeys = new TreeSet<>(
+        new KeyComparator(keyObjectInspectors, columnSortOrder, nullOrder));
+  }
+
+  /**
+   * Decide whether the row with this key can be part of the top n.  When it can, the key is
+   * remembered (copied, so callers may reuse the key objects).
+   */
+  public boolean canForward(Object[] key) {
+    if (topKeys.size() < topN) {
+      if (!topKeys.contains(key)) {
+        topKeys.add(copyKey(key));
+      }
+      return true;
+    }
+
+    int result = topKeys.comparator().compare(key, topKeys.last());
+    if (result > 0) {
+      // Worse than the n-th best key.
+      return false;
+    }
+    if (result < 0 && !topKeys.contains(key)) {
+      topKeys.add(copyKey(key));
+      topKeys.pollLast();
+    }
+    return true;
+  }
+
+  public int size() {
+    return topKeys.size();
+  }
+
+  public void clear() {
+    topKeys.clear();
+  }
+
+  private Object[] copyKey(Object[] key) {
+    Object[] copy = new Object[key.length];
+    for (int i = 0; i < key.length; i++) {
+      copy[i] = ObjectInspectorUtils.copyToStandardObject(
+          key[i], keyObjectInspectors[i], ObjectInspectorCopyOption.WRITABLE);
+    }
+    return copy;
+  }
+
+  private static final class KeyComparator implements Comparator<Object[]> {
+
+    private final ObjectInspector[] objectInspectors;
+    private final boolean[] isAscending;
+    private final boolean[] isNullFirst;
+
+    KeyComparator(ObjectInspector[] objectInspectors, String columnSortOrder, String nullOrder) {
+      this.objectInspectors = objectInspectors;
+      int count = objectInspectors.length;
+      isAscending = new boolean[count];
+      isNullFirst = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        isAscending[i] = (columnSortOrder == null || columnSortOrder.length() <= i ||
+            columnSortOrder.charAt(i) != '-');
+        if (nullOrder != null && nullOrder.length() > i) {
+          isNullFirst[i] = (nullOrder.charAt(i) == 'a');
+        } else {
+          isNullFirst[i] = isAscending[i];
+        }
+      }
+    }
+
+    @Override
+    public int compare(Object[] o1, Object[] o2) {
+      for (int i = 0; i < objectInspectors.length; i++) {
+        Object key1 = o1[i];
+        Object key2 = o2[i];
+        int result;
+        if (key1 == null || key2 == null) {
+          if (key1 == key2) {
+            continue;
+          }
+          // The null order does not depend on the sort direction.
+          result = ((key1 == null) == isNullFirst[i]) ? -1 : 1;
+          return result;
+        }
+        result = ObjectInspectorUtils.compare(
+            key1, objectInspectors[i], key2, objectInspectors[i]);
+        if (result != 0) {
+          return isAscending[i] ? result : -result;
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
+import org.apache.hadoop.hive.ql.plan.api.OperatorType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+
+/**
+ * TopNKeyOperator passes through the rows whose key can still be among the first n keys
+ * of a following ordered Reducesink with a LIMIT.  Other rows are filtered out early.
+ */
+public class TopNKeyOperator extends Operator<TopNKeyDesc> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  protected transient ExprNodeEvaluator[] keyEvaluators;
+  protected transient ObjectInspector[] keyObjectInspectors;
+  protected transient ObjectInspector[] standardKeyObjectInspectors;
+  protected transient TopNKeyFilter topNKeyFilter;
+  protected transient Object[] keyObjects;
+
+  /** Kryo ctor. */
+  protected TopNKeyOperator() {
+    super();
+  }
+
+  public TopNKeyOperator(CompilationOpContext ctx) {
+    super(ctx);
+  }
+
+  @Override
+  protected void initializeOp(Configuration hconf) throws HiveException {
+    super.initializeOp(hconf);
+
+    List<ExprNodeDesc> keyColumns = conf.getKeyColumns();
+    int numKeys = keyColumns.size();
+    keyEvaluators = new ExprNodeEvaluator[numKeys];
+    keyObjectInspectors = new ObjectInspector[numKeys];
+    standardKeyObjectInspectors = new ObjectInspector[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keyEvaluators[i] = ExprNodeEvaluatorFactory.get(keyColumns.get(i), hconf);
+      keyObjectInspectors[i] = keyEvaluators[i].initialize(inputObjInspectors[0]);
+      standardKeyObjectInspectors[i] = ObjectInspectorUtils.getStandardObjectInspector(
+          keyObjectInspectors[i], ObjectInspectorCopyOption.WRITABLE);
+    }
+    keyObjects = new Object[numKeys];
+
+    topNKeyFilter = new TopNKeyFilter(conf.getTopN(), standardKeyObjectInspectors,
+        conf.getColumnSortOrder(), conf.getNullOrder());
+  }
+
+  @Override
+  public void process(Object row, int tag) throws HiveException {
+    for (int i = 0; i < keyEvaluators.length; i++) {
+      keyObjects[i] = ObjectInspectorUtils.copyToStandardObject(
+          keyEvaluators[i].evaluate(row), keyObjectInspectors[i],
+          ObjectInspectorCopyOption.WRITABLE);
+    }
+    if (topNKeyFilter.canForward(keyObjects)) {
+      forward(row, inputObjInspectors[tag]);
+    }
+  }
+
+  @Override
+  protected void closeOp(boolean abort) throws HiveException {
+    topNKeyFilter.clear();
+    super.closeOp(abort);
+  }
+
+  @Override
+  public String getName() {
+    return TopNKeyOperator.getOperatorName();
+  }
+
+  static public String getOperatorName() {
+    return "TNK";
+  }
+
+  @Override
+  public OperatorType getType() {
+    return OperatorType.TOPNKEY;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainerSerDe;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Daemon-wide cache of broadcast map join hash tables, shared by all the queries that build
+ * the same small table side (see MapJoinDesc.getSharedHashTableKey). Unlike LlapObjectCache,
+ * which is per query, entries are reference counted by the queries using them, and their
+ * estimated size is accounted against a fraction of the executor memory. Entries that are
+ * not used by any query are evicted, least recently released first, to make room for new
+ * ones; a hash table that does not fit is handed to its query without being cached.
+ */
+public class LlapSharedHashTableCache {
+  private static final Logger LOG = LoggerFactory.getLogger(LlapSharedHashTableCache.class);
+
+  private static volatile LlapSharedHashTableCache instance;
+
+  private final long maxMemory;
+  // Guarded by this.
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, Set<String>> queryToKeys = new HashMap<>();
+  private long usedMemory = 0;
+  private long releaseCounter = 0;
+
+  private static final class Entry {
+    final CompletableFuture<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> value =
+        new CompletableFuture<>();
+    final Set<String> queries = new HashSet<>();
+    long memoryUsage = -1; // Set once the entry is loaded and accounted for.
+    long lastRelease;
+  }
+
+  /** Thrown to the waiters of a load whose result is not cached; they load their own. */
+  private static final class NotCachedException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+
+  @VisibleForTesting
+  LlapSharedHashTableCache(long maxMemory) {
+    this.maxMemory = maxMemory;
+  }
+
+  public static LlapSharedHashTableCache getInstance(Configuration conf) {
+    LlapSharedHashTableCache result = instance;
+    if (result != null) {
+      return result;
+    }
+    synchronized (LlapSharedHashTableCache.class) {
+      if (instance == null) {
+        long executorMemory = HiveConf.getIntVar(
+            conf, HiveConf.ConfVars.LLAP_DAEMON_MEMORY_PER_INSTANCE_MB) * 1024L * 1024L;
+        long maxMemory = (long) (executorMemory * HiveConf.getFloatVar(
+            conf, HiveConf.ConfVars.LLAP_MAPJOIN_SHARED_CACHE_MEMORY_FRACTION));
+        LOG.info("Creating shared hash table cache with max memory {}", maxMemory);
+        instance = new LlapSharedHashTableCache(maxMemory);
+      }
+      return instance;
+    }
+  }
+
+  /** Drops the references of a query; called when the query completes in this daemon. */
+  public static void releaseQuery(String queryId) {
+    LlapSharedHashTableCache cache = instance;
+    if (cache != null) {
+      cache.release(queryId);
+    }
+  }
+
+  /**
+   * Returns the hash tables for the key, loading them with the loader if no other query has
+   * (or is). The query holds a reference to the cached tables until it is released.
+   */
+  public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> retrieve(String key,
+      String queryId, Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> loader)
+      throws HiveException {
+    Entry entry;
+    boolean isLoader = false;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(key, entry);
+        isLoader = true;
+      }
+      addReference(entry, key, queryId);
+    }
+    if (!isLoader) {
+      try {
+        Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value = entry.value.get();
+        if (LOG.isInfoEnabled()) {
+          LOG.info("Using shared hash table for {} in query {}", key, queryId);
+        }
+        return value;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HiveException(e);
+      } catch (ExecutionException e) {
+        // The other load failed or was not cached; load a private copy.
+        LOG.debug("Shared hash table for {} is not available; loading it", key);
+        return callLoader(loader);
+      }
+    }
+
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value;
+    try {
+      value = callLoader(loader);
+    } catch (HiveException | RuntimeException e) {
+      synchronized (this) {
+        removeEntry(key, entry);
+      }
+      entry.value.completeExceptionally(e);
+      throw e;
+    }
+    long memoryUsage = estimateMemoryUsage(value);
+    boolean isCached;
+    synchronized (this) {
+      isCached = memoryUsage >= 0 && reserve(memoryUsage);
+      if (isCached) {
+        entry.memoryUsage = memoryUsage;
+      } else {
+        removeEntry(key, entry);
+      }
+    }
+    if (isCached) {
+      LOG.info("Cached shared hash table for {} ({} bytes)", key, memoryUsage);
+      entry.value.complete(value);
+    } else {
+      LOG.info("Not caching shared hash table for {} ({} bytes)", key, memoryUsage);
+      entry.value.completeExceptionally(new NotCachedException());
+    }
+    return value;
+  }
+
+  private static Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> callLoader(
+      Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> loader)
+      throws HiveException {
+    try {
+      return loader.call();
+    } catch (HiveException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HiveException(e);
+    }
+  }
+
+  /** @return the estimated size, or -1 if the tables cannot be shared (e.g. they spilled). */
+  private static long estimateMemoryUsage(
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value) {
+    long result = 0;
+    for (MapJoinTableContainer container : value.getLeft()) {
+      if (container == null) {
+        continue;
+      }
+      if (container.hasSpill()) {
+        return -1;
+      }
+      result += container.getEstimatedMemorySize();
+    }
+    return result;
+  }
+
+  private void addReference(Entry entry, String key, String queryId) {
+    entry.queries.add(queryId);
+    Set<String> keys = queryToKeys.get(queryId);
+    if (keys == null) {
+      keys = new HashSet<>();
+      queryToKeys.put(queryId, keys);
+    }
+    keys.add(key);
+  }
+
+  private void removeEntry(String key, Entry entry) {
+    if (entries.get(key) == entry) {
+      entries.remove(key);
+    }
+    for (String queryId : entry.queries) {
+      Set<String> keys = queryToKeys.get(queryId);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          queryToKeys.remove(queryId);
+        }
+      }
+    }
+    if (entry.memoryUsage > 0) {
+      usedMemory -= entry.memoryUsage;
+    }
+  }
+
+  /** Accounts for the memory, evicting unreferenced entries if needed. */
+  private boolean reserve(long memoryUsage) {
+    if (memoryUsage > maxMemory) {
+      return false;
+    }
+    while (usedMemory + memoryUsage > maxMemory) {
+      String victimKey = null;
+      Entry victim = null;
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        Entry candidate = e.getValue();
+        if (candidate.queries.isEmpty() && candidate.memoryUsage >= 0
+            && (victim == null || candidate.lastRelease < victim.lastRelease)) {
+          victimKey = e.getKey();
+          victim = candidate;
+        }
+      }
+      if (victim == null) {
+        return false; // Everything is in use.
+      }
+      LOG.info("Evicting shared hash table for {} ({} bytes)", victimKey, victim.memoryUsage);
+      removeEntry(victimKey, victim);
+    }
+    usedMemory += memoryUsage;
+    return true;
+  }
+
+  @VisibleForTesting
+  synchronized void release(String queryId) {
+    Set<String> keys = queryToKeys.remove(queryId);
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.queries.remove(queryId) && entry.queries.isEmpty()) {
+        entry.lastRelease = ++releaseCounter;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getUsedMemory() {
+    return usedMemory;
+  }
+
+  @VisibleForTesting
+  synchronized int getReferenceCount(String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? 0 : entry.queries.size();
+  }
+}
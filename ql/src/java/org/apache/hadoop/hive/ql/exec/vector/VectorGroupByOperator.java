@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hive.ql.exec.vector;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.ref.SoftReference;
@@ -44,7 +45,9 @@
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriter;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriterFactory;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression;
+import org.apache.hadoop.hive.ql.exec.vector.rowbytescontainer.VectorRowBytesContainer;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.HiveUtils;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.GroupByDesc;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
@@ -52,7 +55,11 @@
 import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
 import org.apache.hadoop.hive.ql.plan.api.OperatorType;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinaryDeserializeRead;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinarySerializeWrite;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
@@ -349,6 +356,47 @@ private class ProcessingModeHashAggregate extends ProcessingModeBase {
      */
     private long numRowsCompareHashAggr;
 
+    /**
+     * When true, memory pressure spills whole hash partitions of the hashtable to local disk
+     * instead of flushing a percentage of the entries downstream.  The rows of a spilled
+     * partition are re-aggregated at close, so each key is emitted at most a few times.
+     */
+    private boolean isSpillEnabled;
+
+    /**
+     * Number of hash partitions the keys are divided into for spilling.
+     */
+    private int spillPartitionCount;
+
+    /**
+     * Number of hashtable entries currently held for each hash partition.
+     */
+    private int[] partitionEntryCounts;
+
+    /**
+     * The input rows of each spilled partition.  Null for partitions that are in memory.
+     */
+    private VectorRowBytesContainer[] spillRowBytesContainers;
+
+    private int spilledPartitionCount;
+
+    private String spillLocalDirs;
+
+    private VectorSerializeRow<LazyBinarySerializeWrite> spillVectorSerializeRow;
+    private VectorDeserializeRow<LazyBinaryDeserializeRead> spillVectorDeserializeRow;
+
+    private VectorizedRowBatch spillReplayBatch;
+
+    /**
+     * The selected rows of an input batch that belong to partitions that are in memory.
+     */
+    private int[] keepSelected;
+
+    /**
+     * True while the rows of a spilled partition are fed back through the hashtable.
+     */
+    private boolean isReplaying;
+
     @Override
     public void initialize(Configuration hconf) throws HiveException {
       // hconf is null in unit testing
@@ -377,6 +425,20 @@ public void initialize(Configuration hconf) throws HiveException {
             HiveConf.ConfVars.HIVEGROUPBYMAPINTERVAL.defaultIntVal;
       }
 
+      // Spilling re-evaluates the keys of the kept rows, which grouping sets do not allow.
+      isSpillEnabled = (null != hconf) &&
+          HiveConf.getBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED) &&
+          !groupingSetsPresent && keyExpressions.length > 0;
+      if (isSpillEnabled) {
+        spillPartitionCount = Math.max(2, HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS));
+        partitionEntryCounts = new int[spillPartitionCount];
+        spillRowBytesContainers = new VectorRowBytesContainer[spillPartitionCount];
+        spilledPartitionCount = 0;
+        spillLocalDirs = HiveUtils.getLocalDirList(hconf);
+        keepSelected = new int[VectorizedRowBatch.DEFAULT_SIZE];
+      }
+
       sumBatchSize = 0;
 
       mapKeysAggregationBuffers = new HashMap<KeyWrapper, VectorAggregationBufferRow>();
@@ -404,17 +466,25 @@ public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
         keyWrappersBatch.evaluateBatchGroupingSets(batch, currentGroupingSetsOverrideIsNulls);
       }
 
-      // Next we locate the aggregation buffer set for each key
-      prepareBatchAggregationBufferSets(batch);
+      if (spilledPartitionCount > 0 && !isReplaying) {
+        // Divert the rows of spilled partitions to disk and aggregate the rest.
+        spillOrProcessBatch(batch);
+      } else {
 
-      // Finally, evaluate the aggregators
-      processAggregators(batch);
+        // Next we locate the aggregation buffer set for each key
+        prepareBatchAggregationBufferSets(batch);
+
+        // Finally, evaluate the aggregators
+        processAggregators(batch);
+      }
 
       //Flush if memory limits were reached
       // We keep flushing until the memory is under threshold
       int preFlushEntriesCount = numEntriesHashTable;
       while (shouldFlush(batch)) {
-        flush(false);
+        if (!isSpillEnabled || isReplaying || !spillLargestPartition(batch)) {
+          flush(false);
+        }
 
         if(gcCanary.get() == null) {
           gcCanaryFlushes++;
@@ -433,6 +503,10 @@ public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
         preFlushEntriesCount = numEntriesHashTable;
       }
 
+      if (isReplaying) {
+        return;
+      }
+
       if (sumBatchSize == 0 && 0 != batch.size) {
         // Sample the first batch processed for variable sizes.
         updateAvgVariableSize(batch);
@@ -449,6 +523,9 @@ public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
     public void close(boolean aborted) throws HiveException {
       if (!aborted) {
         flush(true);
+        processSpilledPartitions();
+      } else {
+        clearSpilledPartitions();
       }
       if (!aborted && sumBatchSize == 0 && GroupByOperator.shouldEmitSummaryRow(conf)) {
         // in case the empty grouping set is preset; but no output has done
@@ -498,6 +575,9 @@ private void prepareBatchAggregationBufferSets(VectorizedRowBatch batch) throws
           mapKeysAggregationBuffers.put(kw.copyKey(), aggregationBuffer);
           numEntriesHashTable++;
           numEntriesSinceCheck++;
+          if (isSpillEnabled) {
+            partitionEntryCounts[getSpillPartition(kw)]++;
+          }
         }
         aggregationBatchInfo.mapAggregationBufferSet(aggregationBuffer, i);
       }
@@ -569,6 +649,9 @@ private void flush(boolean all) throws HiveException {
         if (!all) {
           iter.remove();
           --numEntriesHashTable;
+          if (isSpillEnabled) {
+            partitionEntryCounts[getSpillPartition(pair.getKey())]--;
+          }
           if (++entriesFlushed >= entriesToFlush) {
             break;
           }
@@ -578,6 +661,9 @@ private void flush(boolean all) throws HiveException {
       if (all) {
         mapKeysAggregationBuffers.clear();
         numEntriesHashTable = 0;
+        if (isSpillEnabled) {
+          Arrays.fill(partitionEntryCounts, 0);
+        }
       }
 
       if (all && LOG.isDebugEnabled()) {
@@ -638,11 +724,225 @@ private void checkHashModeEfficiency() throws HiveException {
         }
         if (numEntriesHashTable > sumBatchSize * minReductionHashAggr) {
           flush(true);
+          processSpilledPartitions();
 
           changeToStreamingMode();
         }
       }
     }
+
+    private int getSpillPartition(KeyWrapper kw) {
+      return (kw.hashCode() & Integer.MAX_VALUE) % spillPartitionCount;
+    }
+
+    /**
+     * Sets up the row serialization used to spill input rows.  Only the projected input
+     * columns are written; the key and aggregation input expressions are evaluated again
+     * when the rows are replayed.
+     * @return false when the input has columns that cannot be spilled.
+     */
+    private boolean setupSpillSerDe(VectorizedRowBatch batch) throws HiveException {
+
+      List<Integer> projectedColumns = vContext.getProjectedColumns();
+      final int projectionSize = projectedColumns.size();
+
+      List<TypeInfo> typeInfoList = new ArrayList<TypeInfo>();
+      List<Integer> projectionList = new ArrayList<Integer>();
+      for (int i = 0; i < projectionSize; i++) {
+        int projectedColumn = projectedColumns.get(i);
+        ColumnVector colVector = batch.cols[projectedColumn];
+        if (colVector == null) {
+          continue;
+        }
+        TypeInfo typeInfo = vContext.getTypeInfo(projectedColumn);
+        if (typeInfo.getCategory() != Category.PRIMITIVE ||
+            colVector instanceof Decimal64ColumnVector) {
+          return false;
+        }
+        typeInfoList.add(typeInfo);
+        projectionList.add(projectedColumn);
+      }
+
+      int[] projection = ArrayUtils.toPrimitive(projectionList.toArray(new Integer[0]));
+      TypeInfo[] typeInfos = typeInfoList.toArray(new TypeInfo[0]);
+
+      spillVectorSerializeRow =
+          new VectorSerializeRow<LazyBinarySerializeWrite>(
+              new LazyBinarySerializeWrite(projection.length));
+      spillVectorSerializeRow.init(typeInfos, projection);
+
+      spillVectorDeserializeRow =
+          new VectorDeserializeRow<LazyBinaryDeserializeRead>(
+              new LazyBinaryDeserializeRead(
+                  typeInfos,
+                  /* useExternalBuffer */ true));
+      spillVectorDeserializeRow.init(projection);
+
+      spillReplayBatch = VectorizedBatchUtil.makeLike(batch);
+      return true;
+    }
+
+    /**
+     * Spills the in-memory partition with the most entries: its entries are emitted
+     * and its future input rows are written to local disk.
+     * @return false when no partition could be spilled.
+     */
+    private boolean spillLargestPartition(VectorizedRowBatch batch) throws HiveException {
+
+      int partition = -1;
+      for (int p = 0; p < spillPartitionCount; p++) {
+        if (spillRowBytesContainers[p] == null && partitionEntryCounts[p] > 0 &&
+            (partition == -1 || partitionEntryCounts[p] > partitionEntryCounts[partition])) {
+          partition = p;
+        }
+      }
+      if (partition == -1) {
+        return false;
+      }
+
+      if (spillVectorSerializeRow == null && !setupSpillSerDe(batch)) {
+        LOG.info("Input has columns that cannot be spilled; disabling group by spilling");
+        isSpillEnabled = false;
+        return false;
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Spill partition %d with %d of %d entries",
+            partition, partitionEntryCounts[partition], numEntriesHashTable));
+      }
+
+      spillRowBytesContainers[partition] = new VectorRowBytesContainer(spillLocalDirs);
+      spilledPartitionCount++;
+
+      Iterator<Map.Entry<KeyWrapper, VectorAggregationBufferRow>> iter =
+          mapKeysAggregationBuffers.entrySet().iterator();
+      while(iter.hasNext()) {
+        Map.Entry<KeyWrapper, VectorAggregationBufferRow> pair = iter.next();
+        if (getSpillPartition(pair.getKey()) == partition) {
+          writeSingleRow((VectorHashKeyWrapper) pair.getKey(), pair.getValue());
+          iter.remove();
+          --numEntriesHashTable;
+        }
+      }
+      partitionEntryCounts[partition] = 0;
+      return true;
+    }
+
+    /**
+     * Writes the rows of the batch that belong to spilled partitions to disk and aggregates
+     * the others.  The keyWrappersBatch must have evaluated the current batch first.
+     */
+    private void spillOrProcessBatch(VectorizedRowBatch batch) throws HiveException {
+
+      VectorHashKeyWrapper[] keyWrappers = keyWrappersBatch.getVectorHashKeyWrappers();
+
+      final int[] selected = batch.selected;
+      final boolean selectedInUse = batch.selectedInUse;
+      final int size = batch.size;
+
+      int keepCount = 0;
+      try {
+        for (int logical = 0; logical < size; logical++) {
+          int batchIndex = (selectedInUse ? selected[logical] : logical);
+          VectorRowBytesContainer rowBytesContainer =
+              spillRowBytesContainers[getSpillPartition(keyWrappers[logical])];
+          if (rowBytesContainer == null) {
+            keepSelected[keepCount++] = batchIndex;
+          } else {
+            Output output = rowBytesContainer.getOuputForRowBytes();
+            spillVectorSerializeRow.setOutputAppend(output);
+            spillVectorSerializeRow.serializeWrite(batch, batchIndex);
+            rowBytesContainer.finishRow();
+          }
+        }
+      } catch (IOException e) {
+        throw new HiveException(e);
+      }
+
+      if (keepCount == 0) {
+        return;
+      }
+
+      // Aggregate the kept rows through a temporary selection of the batch.
+      batch.selected = keepSelected;
+      batch.selectedInUse = true;
+      batch.size = keepCount;
+      try {
+        keyWrappersBatch.evaluateBatch(batch);
+        prepareBatchAggregationBufferSets(batch);
+        processAggregators(batch);
+      } finally {
+        batch.selected = selected;
+        batch.selectedInUse = selectedInUse;
+        batch.size = size;
+      }
+    }
+
+    /**
+     * Aggregates the rows of each spilled partition in turn and emits the results.
+     * The hashtable must have been flushed first.
+     */
+    private void processSpilledPartitions() throws HiveException {
+      if (spilledPartitionCount == 0) {
+        return;
+      }
+
+      isReplaying = true;
+      try {
+        for (int p = 0; p < spillPartitionCount; p++) {
+          VectorRowBytesContainer rowBytesContainer = spillRowBytesContainers[p];
+          if (rowBytesContainer == null) {
+            continue;
+          }
+          rowBytesContainer.prepareForReading();
+          while (rowBytesContainer.readNext()) {
+            spillVectorDeserializeRow.setBytes(
+                rowBytesContainer.currentBytes(),
+                rowBytesContainer.currentOffset(),
+                rowBytesContainer.currentLength());
+            try {
+              spillVectorDeserializeRow.deserialize(spillReplayBatch, spillReplayBatch.size);
+            } catch (Exception e) {
+              throw new HiveException(
+                  "\nDeserializeRead detail: " +
+                      spillVectorDeserializeRow.getDetailedReadPositionString(),
+                  e);
+            }
+            spillReplayBatch.size++;
+
+            if (spillReplayBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
+              doProcessBatch(spillReplayBatch, false, null);
+              spillReplayBatch.reset();
+            }
+          }
+          if (spillReplayBatch.size > 0) {
+            doProcessBatch(spillReplayBatch, false, null);
+            spillReplayBatch.reset();
+          }
+          rowBytesContainer.clear();
+          spillRowBytesContainers[p] = null;
+          flush(true);
+        }
+      } catch (IOException e) {
+        throw new HiveException(e);
+      } finally {
+        isReplaying = false;
+      }
+      spilledPartitionCount = 0;
+    }
+
+    private void clearSpilledPartitions() {
+      if (spilledPartitionCount == 0) {
+        return;
+      }
+      for (int p = 0; p < spillPartitionCount; p++) {
+        if (spillRowBytesContainers[p] != null) {
+          spillRowBytesContainers[p].clear();
+          spillRowBytesContainers[p] = null;
+        }
+      }
+      spilledPartitionCount = 0;
+    }
   }
 
   /**
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.TopNKeyFilter;
+import org.apache.hadoop.hive.ql.exec.TopNKeyOperator;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
+import org.apache.hadoop.hive.ql.plan.VectorDesc;
+import org.apache.hadoop.hive.ql.plan.VectorTopNKeyDesc;
+import org.apache.hadoop.hive.ql.plan.api.OperatorType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * VectorTopNKeyOperator passes through the rows of a batch whose key can still be among the
+ * first n keys of the following ordered Reducesink.  The batch is narrowed with the selected
+ * array, like the vectorized filter does.
+ */
+public class VectorTopNKeyOperator extends Operator<TopNKeyDesc> implements VectorizationOperator {
+
+  private static final long serialVersionUID = 1L;
+
+  private VectorizationContext vContext;
+  private VectorTopNKeyDesc vectorDesc;
+
+  private VectorExpression[] keyExpressions;
+
+  private transient VectorExtractRow keyVectorExtractRow;
+  private transient Object[] keyObjects;
+  private transient TopNKeyFilter topNKeyFilter;
+  private transient int[] temporarySelected;
+
+  /** Kryo ctor. */
+  @VisibleForTesting
+  public VectorTopNKeyOperator() {
+    super();
+  }
+
+  public VectorTopNKeyOperator(CompilationOpContext ctx) {
+    super(ctx);
+  }
+
+  public VectorTopNKeyOperator(CompilationOpContext ctx, OperatorDesc conf,
+      VectorizationContext vContext, VectorDesc vectorDesc) {
+    this(ctx);
+    this.conf = (TopNKeyDesc) conf;
+    this.vContext = vContext;
+    this.vectorDesc = (VectorTopNKeyDesc) vectorDesc;
+    keyExpressions = this.vectorDesc.getKeyExpressions();
+  }
+
+  @Override
+  public VectorizationContext getInputVectorizationContext() {
+    return vContext;
+  }
+
+  @Override
+  protected void initializeOp(Configuration hconf) throws HiveException {
+    super.initializeOp(hconf);
+
+    VectorExpression.doTransientInit(keyExpressions);
+    for (VectorExpression keyExpression : keyExpressions) {
+      keyExpression.init(hconf);
+    }
+
+    final int numKeys = keyExpressions.length;
+    TypeInfo[] keyTypeInfos = new TypeInfo[numKeys];
+    int[] keyColumnNums = new int[numKeys];
+    ObjectInspector[] standardKeyObjectInspectors = new ObjectInspector[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keyTypeInfos[i] = keyExpressions[i].getOutputTypeInfo();
+      keyColumnNums[i] = keyExpressions[i].getOutputColumnNum();
+      standardKeyObjectInspectors[i] =
+          TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(keyTypeInfos[i]);
+    }
+    keyVectorExtractRow = new VectorExtractRow();
+    keyVectorExtractRow.init(keyTypeInfos, keyColumnNums);
+    keyObjects = new Object[numKeys];
+
+    topNKeyFilter = new TopNKeyFilter(conf.getTopN(), standardKeyObjectInspectors,
+        conf.getColumnSortOrder(), conf.getNullOrder());
+
+    temporarySelected = new int[VectorizedRowBatch.DEFAULT_SIZE];
+  }
+
+  @Override
+  public void process(Object data, int tag) throws HiveException {
+    VectorizedRowBatch batch = (VectorizedRowBatch) data;
+    if (batch.size == 0) {
+      return;
+    }
+
+    for (VectorExpression keyExpression : keyExpressions) {
+      keyExpression.evaluate(batch);
+    }
+
+    // Keep a copy of the selected rows so the batch can be restored for other operators.
+    int[] selectedBackup = batch.selected;
+    int sizeBackup = batch.size;
+    boolean selectedInUseBackup = batch.selectedInUse;
+
+    if (isAllKeysRepeating(batch)) {
+
+      // One key for the whole batch.
+      keyVectorExtractRow.extractRow(batch, 0, keyObjects);
+      if (topNKeyFilter.canForward(keyObjects)) {
+        forward(batch, null, true);
+      }
+      return;
+    }
+
+    int newSize = 0;
+    if (batch.selectedInUse) {
+      for (int logical = 0; logical < sizeBackup; logical++) {
+        final int batchIndex = selectedBackup[logical];
+        keyVectorExtractRow.extractRow(batch, batchIndex, keyObjects);
+        if (topNKeyFilter.canForward(keyObjects)) {
+          temporarySelected[newSize++] = batchIndex;
+        }
+      }
+    } else {
+      for (int batchIndex = 0; batchIndex < sizeBackup; batchIndex++) {
+        keyVectorExtractRow.extractRow(batch, batchIndex, keyObjects);
+        if (topNKeyFilter.canForward(keyObjects)) {
+          temporarySelected[newSize++] = batchIndex;
+        }
+      }
+    }
+
+    if (newSize > 0) {
+      batch.selected = temporarySelected;
+      batch.size = newSize;
+      batch.selectedInUse = true;
+      forward(batch, null, true);
+    }
+
+    // Restore the original selected vector
+    batch.selected = selectedBackup;
+    batch.size = sizeBackup;
+    batch.selectedInUse = selectedInUseBackup;
+  }
+
+  private boolean isAllKeysRepeating(VectorizedRowBatch batch) {
+    for (VectorExpression keyExpression : keyExpressions) {
+      if (!batch.cols[keyExpression.getOutputColumnNum()].isRepeating) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public VectorExpression[] getKeyExpressions() {
+    return keyExpressions;
+  }
+
+  public void setKeyExpressions(VectorExpression[] keyExpressions) {
+    this.keyExpressions = keyExpressions;
+  }
+
+  @Override
+  protected void closeOp(boolean abort) throws HiveException {
+    topNKeyFilter.clear();
+    super.closeOp(abort);
+  }
+
+  @Override
+  public String getName() {
+    return TopNKeyOperator.getOperatorName();
+  }
+
+  @Override
+  public OperatorType getType() {
+    return OperatorType.TOPNKEY;
+  }
+
+  @Override
+  public VectorDesc getVectorDesc() {
+    return vectorDesc;
+  }
+}
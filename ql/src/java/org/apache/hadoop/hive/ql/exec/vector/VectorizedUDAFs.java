@@ -28,4 +28,9 @@
 
   Class<? extends VectorAggregateExpression>[] value();
 
+  /**
+   * The vectorized classes for the DISTINCT variant of the aggregation, e.g. COUNT(DISTINCT).
+   */
+  Class<? extends VectorAggregateExpression>[] distinct() default {};
+
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.exec.vector.expressions.StringExpr;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hive.common.util.HashCodeUtil;
+
+/**
+ * An insertion ordered collection of byte string values used as a vector aggregation buffer.
+ *
+ * The values are copied back to back into one byte buffer.  When distinct, duplicate values are
+ * eliminated with an open addressing (linear probing) hash index over the value positions.
+ */
+public class VectorBytesValueCollection implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int INITIAL_CAPACITY = 8;
+  private static final int INITIAL_BUFFER_SIZE = 128;
+
+  private final boolean isDistinct;
+
+  private byte[] buffer;
+  private int bufferUsed;
+
+  private int[] starts;
+  private int[] lengths;
+  private int[] hashCodes;
+  private int count;
+
+  // The hash index: value position + 1 per slot, 0 means an empty slot.
+  private int[] slots;
+  private int slotMask;
+
+  public VectorBytesValueCollection(boolean isDistinct) {
+    this.isDistinct = isDistinct;
+    allocate();
+  }
+
+  private void allocate() {
+    buffer = new byte[INITIAL_BUFFER_SIZE];
+    bufferUsed = 0;
+    starts = new int[INITIAL_CAPACITY];
+    lengths = new int[INITIAL_CAPACITY];
+    count = 0;
+    if (isDistinct) {
+      hashCodes = new int[INITIAL_CAPACITY];
+      slots = new int[INITIAL_CAPACITY * 2];
+      slotMask = slots.length - 1;
+    }
+  }
+
+  /**
+   * Add a copy of a value.
+   *
+   * @return false when the collection is distinct and already has the value.
+   */
+  public boolean add(byte[] bytes, int start, int length) {
+    if (count == starts.length) {
+      final int newCapacity = count * 2;
+      starts = Arrays.copyOf(starts, newCapacity);
+      lengths = Arrays.copyOf(lengths, newCapacity);
+      if (isDistinct) {
+        hashCodes = Arrays.copyOf(hashCodes, newCapacity);
+        rehash(slots.length * 2);
+      }
+    }
+    int hashCode = 0;
+    int slot = -1;
+    if (isDistinct) {
+      hashCode = HashCodeUtil.calculateBytesHashCode(bytes, start, length);
+      slot = hashCode & slotMask;
+      while (true) {
+        final int entry = slots[slot];
+        if (entry == 0) {
+          break;
+        }
+        final int index = entry - 1;
+        if (hashCodes[index] == hashCode &&
+            StringExpr.equal(buffer, starts[index], lengths[index], bytes, start, length)) {
+          return false;
+        }
+        slot = (slot + 1) & slotMask;
+      }
+    }
+    if (bufferUsed + length > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferUsed + length));
+    }
+    System.arraycopy(bytes, start, buffer, bufferUsed, length);
+    starts[count] = bufferUsed;
+    lengths[count] = length;
+    bufferUsed += length;
+    if (isDistinct) {
+      hashCodes[count] = hashCode;
+      slots[slot] = count + 1;
+    }
+    count++;
+    return true;
+  }
+
+  private void rehash(int newSlotCount) {
+    slots = new int[newSlotCount];
+    slotMask = newSlotCount - 1;
+    for (int i = 0; i < count; i++) {
+      int slot = hashCodes[i] & slotMask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & slotMask;
+      }
+      slots[slot] = i + 1;
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  public int getLength(int index) {
+    return lengths[index];
+  }
+
+  public void clear() {
+    if (starts.length > INITIAL_CAPACITY || buffer.length > INITIAL_BUFFER_SIZE) {
+
+      // Give back the memory of a large group.
+      allocate();
+    } else {
+      count = 0;
+      bufferUsed = 0;
+      if (isDistinct) {
+        Arrays.fill(slots, 0);
+      }
+    }
+  }
+
+  public int getEstimatedMemorySize() {
+    JavaDataModel model = JavaDataModel.get();
+    long size =
+        model.lengthForByteArrayOfSize(buffer.length) +
+        2 * model.lengthForIntArrayOfSize(starts.length);
+    if (isDistinct) {
+      size +=
+          model.lengthForIntArrayOfSize(hashCodes.length) +
+          model.lengthForIntArrayOfSize(slots.length);
+    }
+    return (int) size;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hive.common.util.HashCodeUtil;
+
+/**
+ * An insertion ordered collection of long values used as a vector aggregation buffer.
+ *
+ * When distinct, duplicate values are eliminated with an open addressing (linear probing) hash
+ * index over the value positions, so no value is ever boxed.  DOUBLE values are kept by their
+ * raw long bits.
+ */
+public class VectorLongValueCollection implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final boolean isDistinct;
+
+  private long[] values;
+  private int count;
+
+  // The hash index: value position + 1 per slot, 0 means an empty slot.
+  private int[] slots;
+  private int slotMask;
+
+  public VectorLongValueCollection(boolean isDistinct) {
+    this.isDistinct = isDistinct;
+    allocate();
+  }
+
+  private void allocate() {
+    values = new long[INITIAL_CAPACITY];
+    count = 0;
+    if (isDistinct) {
+      slots = new int[INITIAL_CAPACITY * 2];
+      slotMask = slots.length - 1;
+    }
+  }
+
+  /**
+   * Add a value.
+   *
+   * @return false when the collection is distinct and already has the value.
+   */
+  public boolean add(long value) {
+    if (count == values.length) {
+      values = Arrays.copyOf(values, count * 2);
+      if (isDistinct) {
+        rehash(slots.length * 2);
+      }
+    }
+    if (isDistinct) {
+      int slot = HashCodeUtil.calculateLongHashCode(value) & slotMask;
+      while (true) {
+        final int entry = slots[slot];
+        if (entry == 0) {
+          break;
+        }
+        if (values[entry - 1] == value) {
+          return false;
+        }
+        slot = (slot + 1) & slotMask;
+      }
+      slots[slot] = count + 1;
+    }
+    values[count++] = value;
+    return true;
+  }
+
+  private void rehash(int newSlotCount) {
+    slots = new int[newSlotCount];
+    slotMask = newSlotCount - 1;
+    for (int i = 0; i < count; i++) {
+      int slot = HashCodeUtil.calculateLongHashCode(values[i]) & slotMask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & slotMask;
+      }
+      slots[slot] = i + 1;
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public long get(int index) {
+    return values[index];
+  }
+
+  public void clear() {
+    if (values.length > INITIAL_CAPACITY) {
+
+      // Give back the memory of a large group.
+      allocate();
+    } else {
+      count = 0;
+      if (isDistinct) {
+        Arrays.fill(slots, 0);
+      }
+    }
+  }
+
+  public int getEstimatedMemorySize() {
+    JavaDataModel model = JavaDataModel.get();
+    long size = model.lengthForLongArrayOfSize(values.length);
+    if (isDistinct) {
+      size += model.lengthForIntArrayOfSize(slots.length);
+    }
+    return (int) size;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
+
+/**
+ * Merge the partial LIST results of collect_set or collect_list of LONG, DOUBLE or BYTES values.
+ * Used for the PARTIAL2 and FINAL modes.
+ */
+@Description(name = "collect_set, collect_list",
+    value = "_FUNC_(expr) - Returns the merged set or list of the values of expr (vectorized)")
+public class VectorUDAFCollectMerge extends VectorUDAFValueCollectionBase {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFCollectMerge() {
+    super();
+  }
+
+  public VectorUDAFCollectMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    ListTypeInfo listTypeInfo = (ListTypeInfo) vecAggrDesc.getInputTypeInfo();
+    final ColumnVector.Type elementColVectorType;
+    try {
+      elementColVectorType =
+          VectorizationContext.getColumnVectorTypeFromTypeInfo(
+              listTypeInfo.getListElementTypeInfo());
+    } catch (HiveException e) {
+      throw new RuntimeException(e);
+    }
+    initList(
+        elementColVectorType,
+        vecAggrDesc.getAggrDesc().getGenericUDAFName().equalsIgnoreCase("collect_set"));
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex) {
+    ListColumnVector listColumn = (ListColumnVector) inputColumn;
+    final int offset = (int) listColumn.offsets[batchIndex];
+    final int length = (int) listColumn.lengths[batchIndex];
+    ColumnVector child = listColumn.child;
+    for (int i = offset; i < offset + length; i++) {
+      final int childIndex = (child.isRepeating ? 0 : i);
+      if (child.noNulls || !child.isNull[childIndex]) {
+        addValue(myagg, child, childIndex);
+      }
+    }
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Merge input LIST into output LIST.
+     *
+     * The Vectorizer only lets LIST of LONG, DOUBLE or BYTES element types through.
+     *
+     * Just modes (PARTIAL2, FINAL).
+     */
+    return
+        (name.equals("collect_set") || name.equals("collect_list")) &&
+        inputColVectorType == ColumnVector.Type.LIST &&
+        outputColVectorType == ColumnVector.Type.LIST &&
+        (mode == Mode.PARTIAL2 || mode == Mode.FINAL);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    assignListColumn((ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg);
+  }
+}
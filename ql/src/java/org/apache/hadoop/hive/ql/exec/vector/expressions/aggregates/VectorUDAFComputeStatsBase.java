@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimator;
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimatorFactory;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+
+/**
+ * Base class for the vectorized compute_stats aggregations.  Used for the PARTIAL1 and COMPLETE
+ * modes.
+ *
+ * The aggregations produce the same STRUCT as the row mode GenericUDAFComputeStats evaluators,
+ * including the serialized NDV estimator (HyperLogLog or FM sketch), so the partial results are
+ * merged by the row mode evaluators and the final results are read by ColStatsProcessor as
+ * before.  Like in row mode, the NDV estimator is created on the first row of a group and the
+ * null values are counted.
+ */
+public abstract class VectorUDAFComputeStatsBase extends VectorAggregateExpression {
+
+  private static final long serialVersionUID = 1L;
+
+  protected static final int MAX_BIT_VECTORS = 1024;
+
+  protected static final byte[] EMPTY_BYTES = new byte[0];
+
+  /**
+   * The null count and NDV estimator common to the compute_stats aggregations.
+   */
+  protected abstract static class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    long countNulls;
+    NumDistinctValueEstimator numDV;
+    boolean isStarted;
+
+    @Override
+    public int getVariableSize() {
+      return (numDV == null ? 0 : numDV.lengthFor(JavaDataModel.get()));
+    }
+
+    @Override
+    public void reset() {
+      countNulls = 0;
+      numDV = null;
+      isStarted = false;
+    }
+  }
+
+  // The NDV estimator: "hll" or "fm", and the number of FM bit vectors.
+  protected String func;
+  protected int numBitVectors;
+
+  protected byte[] columnTypeBytes;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsBase() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsBase(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    List<ExprNodeDesc> parameters = vecAggrDesc.getAggrDesc().getParameters();
+    func = String.valueOf(((ExprNodeConstantDesc) parameters.get(1)).getValue());
+    if (parameters.size() > 2) {
+      numBitVectors = ((Number) ((ExprNodeConstantDesc) parameters.get(2)).getValue()).intValue();
+    }
+  }
+
+  protected void init(String columnType) {
+    columnTypeBytes = columnType.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Whether the aggregation keeps an NDV estimator.  Binary columns do not.
+   */
+  protected boolean hasNumDistinctValues() {
+    return true;
+  }
+
+  /**
+   * Add the (non-null) input column value at batchIndex to the aggregation repeatCount times.
+   */
+  protected abstract void processValue(Aggregation myagg, ColumnVector inputColumn,
+      int batchIndex, int repeatCount);
+
+  private void start(Aggregation myagg) throws HiveException {
+    if (hasNumDistinctValues()) {
+      if (numBitVectors > MAX_BIT_VECTORS) {
+        throw new HiveException("The maximum allowed value for number of bit vectors " + " is "
+            + MAX_BIT_VECTORS + ", but was passed " + numBitVectors + " bit vectors");
+      }
+      myagg.numDV =
+          NumDistinctValueEstimatorFactory.getEmptyNumDistinctValueEstimator(func, numBitVectors);
+    }
+    myagg.isStarted = true;
+  }
+
+  @Override
+  public void aggregateInput(AggregationBuffer agg, VectorizedRowBatch batch)
+      throws HiveException {
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    Aggregation myagg = (Aggregation) agg;
+    if (!myagg.isStarted) {
+      start(myagg);
+    }
+
+    if (inputColumn.isRepeating) {
+      if (inputColumn.noNulls || !inputColumn.isNull[0]) {
+        processValue(myagg, inputColumn, 0, batchSize);
+      } else {
+        myagg.countNulls += batchSize;
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      if (inputColumn.noNulls) {
+        for (int j = 0; j < batchSize; j++) {
+          processValue(myagg, inputColumn, selected[j], 1);
+        }
+      } else {
+        for (int j = 0; j < batchSize; j++) {
+          final int i = selected[j];
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i, 1);
+          } else {
+            myagg.countNulls++;
+          }
+        }
+      }
+    } else {
+      if (inputColumn.noNulls) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(myagg, inputColumn, i, 1);
+        }
+      } else {
+        for (int i = 0; i < batchSize; i++) {
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i, 1);
+          } else {
+            myagg.countNulls++;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateInputSelection(
+      VectorAggregationBufferRow[] aggregationBufferSets, int aggregateIndex,
+      VectorizedRowBatch batch) throws HiveException {
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    if (inputColumn.isRepeating) {
+      final boolean isNull = !inputColumn.noNulls && inputColumn.isNull[0];
+      for (int i = 0; i < batchSize; i++) {
+        processRow(
+            getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+            inputColumn, 0, isNull);
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      for (int i = 0; i < batchSize; i++) {
+        final int row = selected[i];
+        processRow(
+            getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+            inputColumn, row, !inputColumn.noNulls && inputColumn.isNull[row]);
+      }
+    } else {
+      for (int i = 0; i < batchSize; i++) {
+        processRow(
+            getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+            inputColumn, i, !inputColumn.noNulls && inputColumn.isNull[i]);
+      }
+    }
+  }
+
+  private void processRow(Aggregation myagg, ColumnVector inputColumn, int batchIndex,
+      boolean isNull) throws HiveException {
+    if (!myagg.isStarted) {
+      start(myagg);
+    }
+    if (isNull) {
+      myagg.countNulls++;
+    } else {
+      processValue(myagg, inputColumn, batchIndex, 1);
+    }
+  }
+
+  private Aggregation getCurrentAggregationBuffer(
+      VectorAggregationBufferRow[] aggregationBufferSets,
+      int aggregrateIndex,
+      int row) {
+    VectorAggregationBufferRow mySet = aggregationBufferSets[row];
+    Aggregation myagg = (Aggregation) mySet.getAggregationBuffer(aggregrateIndex);
+    return myagg;
+  }
+
+  @Override
+  public void reset(AggregationBuffer agg) throws HiveException {
+    agg.reset();
+  }
+
+  @Override
+  public boolean hasVariableSize() {
+    return true;
+  }
+
+  /*
+   * Helpers to fill in the fields of the STRUCT result.
+   */
+
+  protected static void setNullField(StructColumnVector outputColVector, int fieldIndex,
+      int batchIndex) {
+    ColumnVector field = outputColVector.fields[fieldIndex];
+    field.isNull[batchIndex] = true;
+    field.noNulls = false;
+  }
+
+  protected static void setLongField(StructColumnVector outputColVector, int fieldIndex,
+      int batchIndex, long value) {
+    LongColumnVector field = (LongColumnVector) outputColVector.fields[fieldIndex];
+    field.isNull[batchIndex] = false;
+    field.vector[batchIndex] = value;
+  }
+
+  protected static void setDoubleField(StructColumnVector outputColVector, int fieldIndex,
+      int batchIndex, double value) {
+    DoubleColumnVector field = (DoubleColumnVector) outputColVector.fields[fieldIndex];
+    field.isNull[batchIndex] = false;
+    field.vector[batchIndex] = value;
+  }
+
+  protected static void setBytesField(StructColumnVector outputColVector, int fieldIndex,
+      int batchIndex, byte[] value) {
+    BytesColumnVector field = (BytesColumnVector) outputColVector.fields[fieldIndex];
+    field.isNull[batchIndex] = false;
+    field.setVal(batchIndex, value, 0, value.length);
+  }
+
+  /**
+   * Set the STRUCT at batchIndex as not null, and its column type field (always field 0).
+   */
+  protected final StructColumnVector startStruct(VectorizedRowBatch batch, int batchIndex,
+      int columnNum) {
+    StructColumnVector outputColVector = (StructColumnVector) batch.cols[columnNum];
+    outputColVector.isNull[batchIndex] = false;
+    setBytesField(outputColVector, 0, batchIndex, columnTypeBytes);
+    return outputColVector;
+  }
+
+  /**
+   * Set the serialized NDV estimator field, and for COMPLETE the estimated number of distinct
+   * values field before it.
+   */
+  protected final void setNumDistinctValuesFields(StructColumnVector outputColVector,
+      int bitVectorFieldIndex, int batchIndex, Aggregation myagg) {
+    NumDistinctValueEstimator numDV = myagg.numDV;
+    if (mode == Mode.COMPLETE) {
+      setLongField(
+          outputColVector, bitVectorFieldIndex - 1, batchIndex,
+          (numDV == null ? 0 : numDV.estimateNumDistinctValues()));
+    }
+    setBytesField(
+        outputColVector, bitVectorFieldIndex, batchIndex,
+        (numDV == null ? EMPTY_BYTES : numDV.serialize()));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+
+/**
+ * compute_stats of binary columns.  Like in row mode there is no NDV estimator.
+ */
+@Description(name = "compute_stats",
+    value = "_FUNC_(x) - Returns the statistical summary of a set of binary values (vectorized)")
+public class VectorUDAFComputeStatsBinary extends VectorUDAFComputeStatsBase {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final class BinaryStatsAggregation extends Aggregation {
+
+    private static final long serialVersionUID = 1L;
+
+    long maxLength;
+    long sumLength;
+    long count;
+
+    @Override
+    public void reset() {
+      super.reset();
+      maxLength = 0;
+      sumLength = 0;
+      count = 0;
+    }
+  }
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsBinary() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsBinary(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init("Binary");
+  }
+
+  @Override
+  protected boolean hasNumDistinctValues() {
+    return false;
+  }
+
+  @Override
+  protected void processValue(Aggregation agg, ColumnVector inputColumn, int batchIndex,
+      int repeatCount) {
+    BinaryStatsAggregation myagg = (BinaryStatsAggregation) agg;
+    final int length = ((BytesColumnVector) inputColumn).length[batchIndex];
+    if (length > myagg.maxLength) {
+      myagg.maxLength = length;
+    }
+    myagg.sumLength += (long) length * repeatCount;
+    myagg.count += repeatCount;
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new BinaryStatsAggregation();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive2() * 4 + model.primitive1() + model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Summarize input BYTES into output STRUCT.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("compute_stats") &&
+        inputColVectorType == ColumnVector.Type.BYTES &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    BinaryStatsAggregation myagg = (BinaryStatsAggregation) agg;
+    StructColumnVector outputColVector = startStruct(batch, batchIndex, columnNum);
+    setLongField(outputColVector, 1, batchIndex, myagg.maxLength);
+    if (mode == Mode.PARTIAL1) {
+      setLongField(outputColVector, 2, batchIndex, myagg.sumLength);
+      setLongField(outputColVector, 3, batchIndex, myagg.count);
+      setLongField(outputColVector, 4, batchIndex, myagg.countNulls);
+    } else {
+      final long total = myagg.count + myagg.countNulls;
+      setDoubleField(
+          outputColVector, 2, batchIndex,
+          (total == 0 ? 0.0 : myagg.sumLength / (1.0 * total)));
+      setLongField(outputColVector, 3, batchIndex, myagg.countNulls);
+    }
+  }
+}
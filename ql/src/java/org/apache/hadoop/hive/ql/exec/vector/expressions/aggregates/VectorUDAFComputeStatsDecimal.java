@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+/**
+ * compute_stats of decimal columns.
+ */
+@Description(name = "compute_stats",
+    value = "_FUNC_(x) - Returns the statistical summary of a set of decimal values (vectorized)")
+public class VectorUDAFComputeStatsDecimal extends VectorUDAFComputeStatsBase {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final class DecimalStatsAggregation extends Aggregation {
+
+    private static final long serialVersionUID = 1L;
+
+    boolean hasValue;
+    final HiveDecimalWritable min = new HiveDecimalWritable();
+    final HiveDecimalWritable max = new HiveDecimalWritable();
+
+    @Override
+    public void reset() {
+      super.reset();
+      hasValue = false;
+    }
+  }
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsDecimal() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsDecimal(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init("Decimal");
+  }
+
+  @Override
+  protected void processValue(Aggregation agg, ColumnVector inputColumn, int batchIndex,
+      int repeatCount) {
+    DecimalStatsAggregation myagg = (DecimalStatsAggregation) agg;
+    HiveDecimalWritable value = ((DecimalColumnVector) inputColumn).vector[batchIndex];
+    if (!myagg.hasValue) {
+      myagg.hasValue = true;
+      myagg.min.set(value);
+      myagg.max.set(value);
+    } else if (value.compareTo(myagg.min) < 0) {
+      myagg.min.set(value);
+    } else if (value.compareTo(myagg.max) > 0) {
+      myagg.max.set(value);
+    }
+    myagg.numDV.addToEstimator(value.getHiveDecimal());
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new DecimalStatsAggregation();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive2() + model.primitive1() * 2 + model.ref() * 3 +
+            model.lengthOfDecimal() * 2,
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Summarize input DECIMAL into output STRUCT.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("compute_stats") &&
+        inputColVectorType == ColumnVector.Type.DECIMAL &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    DecimalStatsAggregation myagg = (DecimalStatsAggregation) agg;
+    StructColumnVector outputColVector = startStruct(batch, batchIndex, columnNum);
+    if (myagg.hasValue) {
+      DecimalColumnVector minColVector = (DecimalColumnVector) outputColVector.fields[1];
+      minColVector.isNull[batchIndex] = false;
+      minColVector.set(batchIndex, myagg.min);
+      DecimalColumnVector maxColVector = (DecimalColumnVector) outputColVector.fields[2];
+      maxColVector.isNull[batchIndex] = false;
+      maxColVector.set(batchIndex, myagg.max);
+    } else {
+      setNullField(outputColVector, 1, batchIndex);
+      setNullField(outputColVector, 2, batchIndex);
+    }
+    setLongField(outputColVector, 3, batchIndex, myagg.countNulls);
+    setNumDistinctValuesFields(
+        outputColVector, (mode == Mode.COMPLETE ? 5 : 4), batchIndex, myagg);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+
+/**
+ * compute_stats of float and double columns.
+ */
+@Description(name = "compute_stats",
+    value = "_FUNC_(x) - Returns the statistical summary of a set of double values (vectorized)")
+public class VectorUDAFComputeStatsDouble extends VectorUDAFComputeStatsBase {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final class DoubleStatsAggregation extends Aggregation {
+
+    private static final long serialVersionUID = 1L;
+
+    boolean hasValue;
+    double min;
+    double max;
+
+    @Override
+    public void reset() {
+      super.reset();
+      hasValue = false;
+    }
+  }
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsDouble() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsDouble(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init("Double");
+  }
+
+  @Override
+  protected void processValue(Aggregation agg, ColumnVector inputColumn, int batchIndex,
+      int repeatCount) {
+    DoubleStatsAggregation myagg = (DoubleStatsAggregation) agg;
+    final double value = ((DoubleColumnVector) inputColumn).vector[batchIndex];
+    if (!myagg.hasValue) {
+      myagg.hasValue = true;
+      myagg.min = value;
+      myagg.max = value;
+    } else if (value < myagg.min) {
+      myagg.min = value;
+    } else if (value > myagg.max) {
+      myagg.max = value;
+    }
+    myagg.numDV.addToEstimator(value);
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new DoubleStatsAggregation();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive2() * 3 + model.primitive1() * 2 + model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Summarize input DOUBLE into output STRUCT.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("compute_stats") &&
+        inputColVectorType == ColumnVector.Type.DOUBLE &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    DoubleStatsAggregation myagg = (DoubleStatsAggregation) agg;
+    StructColumnVector outputColVector = startStruct(batch, batchIndex, columnNum);
+    if (myagg.hasValue) {
+      setDoubleField(outputColVector, 1, batchIndex, myagg.min);
+      setDoubleField(outputColVector, 2, batchIndex, myagg.max);
+    } else {
+      setNullField(outputColVector, 1, batchIndex);
+      setNullField(outputColVector, 2, batchIndex);
+    }
+    setLongField(outputColVector, 3, batchIndex, myagg.countNulls);
+    setNumDistinctValuesFields(
+        outputColVector, (mode == Mode.COMPLETE ? 5 : 4), batchIndex, myagg);
+  }
+}
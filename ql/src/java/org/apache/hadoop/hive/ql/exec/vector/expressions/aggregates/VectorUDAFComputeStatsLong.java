@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+
+/**
+ * compute_stats of integer family, date and timestamp columns.
+ *
+ * Like in row mode, dates are kept as days since epoch and timestamps as seconds since epoch.
+ */
+@Description(name = "compute_stats",
+    value = "_FUNC_(x) - Returns the statistical summary of a set of long, date or timestamp " +
+        "values (vectorized)")
+public class VectorUDAFComputeStatsLong extends VectorUDAFComputeStatsBase {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final class LongStatsAggregation extends Aggregation {
+
+    private static final long serialVersionUID = 1L;
+
+    boolean hasValue;
+    long min;
+    long max;
+
+    @Override
+    public void reset() {
+      super.reset();
+      hasValue = false;
+    }
+  }
+
+  private boolean isTimestamp;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsLong() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsLong(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    isTimestamp = (vecAggrDesc.getInputColVectorType() == ColumnVector.Type.TIMESTAMP);
+    final boolean isDate =
+        (((PrimitiveTypeInfo) inputTypeInfo).getPrimitiveCategory() == PrimitiveCategory.DATE);
+    init(isDate ? "Date" : "Long");
+  }
+
+  @Override
+  protected void processValue(Aggregation agg, ColumnVector inputColumn, int batchIndex,
+      int repeatCount) {
+    LongStatsAggregation myagg = (LongStatsAggregation) agg;
+    final long value =
+        (isTimestamp ?
+            ((TimestampColumnVector) inputColumn).getTimestampAsLong(batchIndex) :
+            ((LongColumnVector) inputColumn).vector[batchIndex]);
+    if (!myagg.hasValue) {
+      myagg.hasValue = true;
+      myagg.min = value;
+      myagg.max = value;
+    } else if (value < myagg.min) {
+      myagg.min = value;
+    } else if (value > myagg.max) {
+      myagg.max = value;
+    }
+    myagg.numDV.addToEstimator(value);
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new LongStatsAggregation();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive2() * 3 + model.primitive1() * 2 + model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Summarize input LONG or TIMESTAMP into output STRUCT.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("compute_stats") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+            inputColVectorType == ColumnVector.Type.TIMESTAMP) &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    LongStatsAggregation myagg = (LongStatsAggregation) agg;
+    StructColumnVector outputColVector = startStruct(batch, batchIndex, columnNum);
+    if (myagg.hasValue) {
+      setLongField(outputColVector, 1, batchIndex, myagg.min);
+      setLongField(outputColVector, 2, batchIndex, myagg.max);
+    } else {
+      setNullField(outputColVector, 1, batchIndex);
+      setNullField(outputColVector, 2, batchIndex);
+    }
+    setLongField(outputColVector, 3, batchIndex, myagg.countNulls);
+    setNumDistinctValuesFields(
+        outputColVector, (mode == Mode.COMPLETE ? 5 : 4), batchIndex, myagg);
+  }
+}
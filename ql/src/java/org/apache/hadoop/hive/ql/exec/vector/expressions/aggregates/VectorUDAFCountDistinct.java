@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * COUNT(DISTINCT) of LONG, DOUBLE or BYTES values, with a hash set of the values per group.
+ * Used for the PARTIAL1 and COMPLETE modes.
+ */
+@Description(name = "count",
+    value = "_FUNC_(DISTINCT expr) - Returns the count of distinct non-null values (vectorized)")
+public class VectorUDAFCountDistinct extends VectorUDAFValueCollectionBase {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFCountDistinct() {
+    super();
+  }
+
+  public VectorUDAFCountDistinct(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init(vecAggrDesc.getInputColVectorType(), /* isDistinct */ true);
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex) {
+    addValue(myagg, inputColumn, batchIndex);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Count distinct input LONG, DECIMAL_64, DOUBLE or BYTES into output LONG.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("count") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+         inputColVectorType == ColumnVector.Type.DECIMAL_64 ||
+         inputColVectorType == ColumnVector.Type.DOUBLE ||
+         inputColVectorType == ColumnVector.Type.BYTES) &&
+        outputColVectorType == ColumnVector.Type.LONG &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+
+    LongColumnVector outputColVector = (LongColumnVector) batch.cols[columnNum];
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.vector[batchIndex] = ((Aggregation) agg).size();
+  }
+}
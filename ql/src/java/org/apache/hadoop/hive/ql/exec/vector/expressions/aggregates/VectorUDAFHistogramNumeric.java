@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Add LONG or DOUBLE values to the histogram of histogram_numeric.  Used for the PARTIAL1 and
+ * COMPLETE modes.
+ *
+ * The number of bins is the constant second parameter.  Like in row mode, the histogram is
+ * allocated (and the number of bins checked) on the first value of a group.
+ */
+@Description(name = "histogram_numeric",
+    value = "_FUNC_(expr, nb) - Returns the approximate histogram of expr (vectorized)")
+public class VectorUDAFHistogramNumeric extends VectorUDAFNumericHistogramBase {
+
+  private static final long serialVersionUID = 1L;
+
+  private int numBins;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFHistogramNumeric() {
+    super();
+  }
+
+  public VectorUDAFHistogramNumeric(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    ExprNodeConstantDesc numBinsDesc =
+        (ExprNodeConstantDesc) vecAggrDesc.getAggrDesc().getParameters().get(1);
+    numBins = ((Number) numBinsDesc.getValue()).intValue();
+    init(/* allocateNumBins */ 0, /* quantiles */ null);
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex)
+      throws HiveException {
+    if (!myagg.histogram.isReady()) {
+      if (numBins < 2) {
+        throw new HiveException(getClass().getSimpleName() + " needs nbins to be at least 2,"
+                                + " but you supplied " + numBins + ".");
+      }
+      myagg.histogram.allocate(numBins);
+    }
+    addValue(myagg, inputColumn, batchIndex);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Add input LONG or DOUBLE into the histogram.
+     *
+     * PARTIAL1 outputs the LIST of doubles partial.  COMPLETE outputs the LIST of STRUCT (x, y)
+     * bins.
+     */
+    return
+        name.equals("histogram_numeric") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+            inputColVectorType == ColumnVector.Type.DOUBLE) &&
+        outputColVectorType == ColumnVector.Type.LIST &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    if (mode == Mode.PARTIAL1) {
+      assignPartialColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg,
+          /* hasQuantiles */ false);
+    } else {
+      assignHistogramColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Merge the partial LIST of doubles results of histogram_numeric.  Used for the PARTIAL2 and
+ * FINAL modes.
+ */
+@Description(name = "histogram_numeric",
+    value = "_FUNC_(expr, nb) - Returns the merged approximate histogram of expr (vectorized)")
+public class VectorUDAFHistogramNumericMerge extends VectorUDAFNumericHistogramBase {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFHistogramNumericMerge() {
+    super();
+  }
+
+  public VectorUDAFHistogramNumericMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init(/* allocateNumBins */ 0, /* quantiles */ null);
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex) {
+    mergePartial(myagg, (ListColumnVector) inputColumn, batchIndex, /* hasQuantiles */ false);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Merge input LIST of doubles partials.
+     *
+     * PARTIAL2 outputs the LIST of doubles partial.  FINAL outputs the LIST of STRUCT (x, y)
+     * bins.
+     */
+    return
+        name.equals("histogram_numeric") &&
+        inputColVectorType == ColumnVector.Type.LIST &&
+        outputColVectorType == ColumnVector.Type.LIST &&
+        (mode == Mode.PARTIAL2 || mode == Mode.FINAL);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    if (mode == Mode.PARTIAL2) {
+      assignPartialColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg,
+          /* hasQuantiles */ false);
+    } else {
+      assignHistogramColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg);
+    }
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.NumericHistogram;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+
+/**
+ * Base class for the aggregations whose buffer is a NumericHistogram: percentile_approx and
+ * histogram_numeric.
+ *
+ * The histogram is the mergeable sketch of the Ben-Haim and Tom-Tov streaming algorithm that the
+ * row mode evaluators use.  The partial results are the same LIST of doubles as in row mode, so
+ * vectorized and row mode GROUP BY operators can feed each other, and the values are added in
+ * the same order so the results are the same.  Null input values are ignored.
+ */
+public abstract class VectorUDAFNumericHistogramBase extends VectorAggregateExpression {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The histogram of a group, and for percentile_approx the requested quantiles.
+   */
+  protected static final class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    // When not 0, the number of bins to allocate the histogram with on reset.
+    private final int allocateNumBins;
+    private final double[] initialQuantiles;
+
+    NumericHistogram histogram;
+    double[] quantiles;
+
+    Aggregation(int allocateNumBins, double[] initialQuantiles) {
+      this.allocateNumBins = allocateNumBins;
+      this.initialQuantiles = initialQuantiles;
+      reset();
+    }
+
+    @Override
+    public int getVariableSize() {
+      JavaDataModel model = JavaDataModel.get();
+      return histogram.lengthFor(model) +
+          (quantiles == null ? 0 : (int) model.lengthForDoubleArrayOfSize(quantiles.length));
+    }
+
+    @Override
+    public void reset() {
+      histogram = new NumericHistogram();
+      if (allocateNumBins > 0) {
+        histogram.allocate(allocateNumBins);
+      }
+      quantiles = initialQuantiles;
+    }
+  }
+
+  // The column vector type of the input values for PARTIAL1 and COMPLETE: LONG or DOUBLE.
+  protected ColumnVector.Type inputColVectorType;
+
+  protected int allocateNumBins;
+  protected double[] quantiles;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFNumericHistogramBase() {
+    super();
+  }
+
+  public VectorUDAFNumericHistogramBase(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    inputColVectorType = vecAggrDesc.getInputColVectorType();
+  }
+
+  protected void init(int allocateNumBins, double[] quantiles) {
+    this.allocateNumBins = allocateNumBins;
+    this.quantiles = quantiles;
+  }
+
+  /**
+   * Add the (non-null) input column value at batchIndex to the aggregation.
+   */
+  protected abstract void processValue(Aggregation myagg, ColumnVector inputColumn,
+      int batchIndex) throws HiveException;
+
+  /**
+   * Add a (non-null) LONG or DOUBLE value to the histogram.
+   */
+  protected final void addValue(Aggregation myagg, ColumnVector inputColumn, int index) {
+    switch (inputColVectorType) {
+    case LONG:
+      myagg.histogram.add(((LongColumnVector) inputColumn).vector[index]);
+      break;
+    case DOUBLE:
+      myagg.histogram.add(((DoubleColumnVector) inputColumn).vector[index]);
+      break;
+    default:
+      throw new RuntimeException("Unexpected input column vector type " + inputColVectorType);
+    }
+  }
+
+  /**
+   * Merge the partial LIST of doubles at index into the aggregation.  A percentile_approx partial
+   * starts with the count of the requested quantiles followed by the quantiles.
+   */
+  protected final void mergePartial(Aggregation myagg, ListColumnVector listColumn, int index,
+      boolean hasQuantiles) {
+
+    int offset = (int) listColumn.offsets[index];
+    int length = (int) listColumn.lengths[index];
+    double[] vector = ((DoubleColumnVector) listColumn.child).vector;
+    if (hasQuantiles) {
+      final int quantileCount = (int) vector[offset];
+      if (quantileCount > 0) {
+        double[] partialQuantiles = new double[quantileCount];
+        System.arraycopy(vector, offset + 1, partialQuantiles, 0, quantileCount);
+        myagg.quantiles = partialQuantiles;
+      }
+      offset += quantileCount + 1;
+      length -= quantileCount + 1;
+    }
+    myagg.histogram.merge(vector, offset, length);
+  }
+
+  /**
+   * Write the histogram of the aggregation as a partial LIST of doubles at batchIndex.
+   */
+  protected final void assignPartialColumn(ListColumnVector outputColVector, int batchIndex,
+      Aggregation myagg, boolean hasQuantiles) {
+
+    final int quantileCount = (myagg.quantiles == null ? 0 : myagg.quantiles.length);
+    final int quantilesLength = (hasQuantiles ? quantileCount + 1 : 0);
+    final int size = quantilesLength + myagg.histogram.getSerializedLength();
+    final int offset = outputColVector.childCount;
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.offsets[batchIndex] = offset;
+    outputColVector.lengths[batchIndex] = size;
+    outputColVector.childCount += size;
+
+    DoubleColumnVector child = (DoubleColumnVector) outputColVector.child;
+    child.ensureSize(outputColVector.childCount, true);
+    for (int i = 0; i < size; i++) {
+      child.isNull[offset + i] = false;
+    }
+    double[] vector = child.vector;
+    if (hasQuantiles) {
+      vector[offset] = quantileCount;
+      if (quantileCount > 0) {
+        System.arraycopy(myagg.quantiles, 0, vector, offset + 1, quantileCount);
+      }
+    }
+    myagg.histogram.serialize(vector, offset + quantilesLength);
+  }
+
+  /**
+   * Write the approximate quantile(s) of the aggregation at batchIndex: a DOUBLE for a single
+   * requested quantile, or a LIST of doubles.  Null when no values were aggregated.
+   */
+  protected final void assignQuantileColumn(ColumnVector outputColVector, int batchIndex,
+      Aggregation myagg) {
+
+    if (myagg.histogram.getUsedBins() < 1) {
+      outputColVector.isNull[batchIndex] = true;
+      outputColVector.noNulls = false;
+      return;
+    }
+    outputColVector.isNull[batchIndex] = false;
+    if (outputColVector instanceof DoubleColumnVector) {
+      ((DoubleColumnVector) outputColVector).vector[batchIndex] =
+          myagg.histogram.quantile(myagg.quantiles[0]);
+      return;
+    }
+    ListColumnVector listColVector = (ListColumnVector) outputColVector;
+    final int size = myagg.quantiles.length;
+    final int offset = listColVector.childCount;
+    listColVector.offsets[batchIndex] = offset;
+    listColVector.lengths[batchIndex] = size;
+    listColVector.childCount += size;
+
+    DoubleColumnVector child = (DoubleColumnVector) listColVector.child;
+    child.ensureSize(listColVector.childCount, true);
+    for (int i = 0; i < size; i++) {
+      child.isNull[offset + i] = false;
+      child.vector[offset + i] = myagg.histogram.quantile(myagg.quantiles[i]);
+    }
+  }
+
+  /**
+   * Write the histogram of the aggregation at batchIndex as a LIST of STRUCT (x, y) bins.  Null
+   * when no values were aggregated.
+   */
+  protected final void assignHistogramColumn(ListColumnVector outputColVector, int batchIndex,
+      Aggregation myagg) {
+
+    NumericHistogram histogram = myagg.histogram;
+    final int size = histogram.getUsedBins();
+    if (size < 1) {
+      outputColVector.isNull[batchIndex] = true;
+      outputColVector.noNulls = false;
+      return;
+    }
+    final int offset = outputColVector.childCount;
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.offsets[batchIndex] = offset;
+    outputColVector.lengths[batchIndex] = size;
+    outputColVector.childCount += size;
+
+    StructColumnVector child = (StructColumnVector) outputColVector.child;
+    child.ensureSize(outputColVector.childCount, true);
+    DoubleColumnVector xColVector = (DoubleColumnVector) child.fields[0];
+    DoubleColumnVector yColVector = (DoubleColumnVector) child.fields[1];
+    for (int i = 0; i < size; i++) {
+      child.isNull[offset + i] = false;
+      xColVector.isNull[offset + i] = false;
+      xColVector.vector[offset + i] = histogram.getBinX(i);
+      yColVector.isNull[offset + i] = false;
+      yColVector.vector[offset + i] = histogram.getBinY(i);
+    }
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new Aggregation(allocateNumBins, quantiles);
+  }
+
+  @Override
+  public void aggregateInput(AggregationBuffer agg, VectorizedRowBatch batch)
+      throws HiveException {
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    Aggregation myagg = (Aggregation) agg;
+
+    if (inputColumn.isRepeating) {
+      if (inputColumn.noNulls || !inputColumn.isNull[0]) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(myagg, inputColumn, 0);
+        }
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      if (inputColumn.noNulls) {
+        for (int j = 0; j < batchSize; j++) {
+          processValue(myagg, inputColumn, selected[j]);
+        }
+      } else {
+        for (int j = 0; j < batchSize; j++) {
+          final int i = selected[j];
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i);
+          }
+        }
+      }
+    } else {
+      if (inputColumn.noNulls) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(myagg, inputColumn, i);
+        }
+      } else {
+        for (int i = 0; i < batchSize; i++) {
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateInputSelection(
+      VectorAggregationBufferRow[] aggregationBufferSets, int aggregateIndex,
+      VectorizedRowBatch batch) throws HiveException {
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    if (inputColumn.isRepeating) {
+      if (inputColumn.noNulls || !inputColumn.isNull[0]) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, 0);
+        }
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      for (int i = 0; i < batchSize; i++) {
+        final int row = selected[i];
+        if (inputColumn.noNulls || !inputColumn.isNull[row]) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, row);
+        }
+      }
+    } else {
+      for (int i = 0; i < batchSize; i++) {
+        if (inputColumn.noNulls || !inputColumn.isNull[i]) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, i);
+        }
+      }
+    }
+  }
+
+  private Aggregation getCurrentAggregationBuffer(
+      VectorAggregationBufferRow[] aggregationBufferSets,
+      int aggregrateIndex,
+      int row) {
+    VectorAggregationBufferRow mySet = aggregationBufferSets[row];
+    Aggregation myagg = (Aggregation) mySet.getAggregationBuffer(aggregrateIndex);
+    return myagg;
+  }
+
+  @Override
+  public void reset(AggregationBuffer agg) throws HiveException {
+    agg.reset();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive1() + 3 * model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean hasVariableSize() {
+    return true;
+  }
+}
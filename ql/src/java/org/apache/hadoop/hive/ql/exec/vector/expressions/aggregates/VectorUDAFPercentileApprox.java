@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFPercentileApprox.GenericUDAFPercentileApproxEvaluator;
+
+/**
+ * Add LONG or DOUBLE values to the histogram of percentile_approx.  Used for the PARTIAL1 and
+ * COMPLETE modes.
+ *
+ * The requested quantiles and the number of bins are the constant parameters the evaluator was
+ * initialized with.
+ */
+@Description(name = "percentile_approx",
+    value = "_FUNC_(expr, pc, [nb]) - Returns the approximate percentile(s) of expr (vectorized)")
+public class VectorUDAFPercentileApprox extends VectorUDAFNumericHistogramBase {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFPercentileApprox() {
+    super();
+  }
+
+  public VectorUDAFPercentileApprox(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    GenericUDAFPercentileApproxEvaluator evaluator =
+        (GenericUDAFPercentileApproxEvaluator) vecAggrDesc.getEvaluator();
+    init(evaluator.getNumBins(), evaluator.getQuantiles());
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex) {
+    addValue(myagg, inputColumn, batchIndex);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Add input LONG or DOUBLE into the histogram.
+     *
+     * PARTIAL1 outputs the LIST of doubles partial.  COMPLETE outputs a DOUBLE for a single
+     * percentile or a LIST of doubles.
+     */
+    return
+        name.equals("percentile_approx") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+            inputColVectorType == ColumnVector.Type.DOUBLE) &&
+        ((mode == Mode.PARTIAL1 && outputColVectorType == ColumnVector.Type.LIST) ||
+            (mode == Mode.COMPLETE &&
+                (outputColVectorType == ColumnVector.Type.DOUBLE ||
+                    outputColVectorType == ColumnVector.Type.LIST)));
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    if (mode == Mode.PARTIAL1) {
+      assignPartialColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg,
+          /* hasQuantiles */ true);
+    } else {
+      assignQuantileColumn(batch.cols[columnNum], batchIndex, (Aggregation) agg);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Merge the partial LIST of doubles results of percentile_approx.  Used for the PARTIAL2 and
+ * FINAL modes.
+ *
+ * Like in row mode, the requested quantiles come from the head of the partial results.
+ */
+@Description(name = "percentile_approx",
+    value = "_FUNC_(expr, pc, [nb]) - Returns the merged approximate percentile(s) of expr (vectorized)")
+public class VectorUDAFPercentileApproxMerge extends VectorUDAFNumericHistogramBase {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFPercentileApproxMerge() {
+    super();
+  }
+
+  public VectorUDAFPercentileApproxMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init(/* allocateNumBins */ 0, /* quantiles */ null);
+  }
+
+  @Override
+  protected void processValue(Aggregation myagg, ColumnVector inputColumn, int batchIndex) {
+    mergePartial(myagg, (ListColumnVector) inputColumn, batchIndex, /* hasQuantiles */ true);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Merge input LIST of doubles partials.
+     *
+     * PARTIAL2 outputs the LIST of doubles partial.  FINAL outputs a DOUBLE for a single
+     * percentile or a LIST of doubles.
+     */
+    return
+        name.equals("percentile_approx") &&
+        inputColVectorType == ColumnVector.Type.LIST &&
+        ((mode == Mode.PARTIAL2 && outputColVectorType == ColumnVector.Type.LIST) ||
+            (mode == Mode.FINAL &&
+                (outputColVectorType == ColumnVector.Type.DOUBLE ||
+                    outputColVectorType == ColumnVector.Type.LIST)));
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+    if (mode == Mode.PARTIAL2) {
+      assignPartialColumn(
+          (ListColumnVector) batch.cols[columnNum], batchIndex, (Aggregation) agg,
+          /* hasQuantiles */ true);
+    } else {
+      assignQuantileColumn(batch.cols[columnNum], batchIndex, (Aggregation) agg);
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+
+/**
+ * Base class for the aggregations whose buffer is a collection of LONG, DOUBLE or BYTES values:
+ * COUNT(DISTINCT), collect_set and collect_list.
+ *
+ * DOUBLE values are kept by their raw long bits in a long collection.  Null input values are
+ * ignored, like the row mode evaluators do.
+ */
+public abstract class VectorUDAFValueCollectionBase extends VectorAggregateExpression {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The collection of values of a group.
+   */
+  protected static final class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    final VectorLongValueCollection longValues;
+    final VectorBytesValueCollection bytesValues;
+
+    Aggregation(ColumnVector.Type valueColumnVectorType, boolean isDistinct) {
+      if (valueColumnVectorType == ColumnVector.Type.BYTES) {
+        longValues = null;
+        bytesValues = new VectorBytesValueCollection(isDistinct);
+      } else {
+        longValues = new VectorLongValueCollection(isDistinct);
+        bytesValues = null;
+      }
+    }
+
+    int size() {
+      return (longValues != null ? longValues.size() : bytesValues.size());
+    }
+
+    @Override
+    public int getVariableSize() {
+      return (longValues != null ?
+          longValues.getEstimatedMemorySize() : bytesValues.getEstimatedMemorySize());
+    }
+
+    @Override
+    public void reset() {
+      if (longValues != null) {
+        longValues.clear();
+      } else {
+        bytesValues.clear();
+      }
+    }
+  }
+
+  // The column vector type of the collected values: LONG, DECIMAL_64, DOUBLE or BYTES.
+  protected ColumnVector.Type valueColumnVectorType;
+  protected boolean isDistinct;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFValueCollectionBase() {
+    super();
+  }
+
+  public VectorUDAFValueCollectionBase(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+  }
+
+  protected void init(ColumnVector.Type valueColumnVectorType, boolean isDistinct) {
+    switch (valueColumnVectorType) {
+    case LONG:
+    case DECIMAL_64:
+    case DOUBLE:
+    case BYTES:
+      break;
+    default:
+      throw new RuntimeException("Unexpected value column vector type " + valueColumnVectorType);
+    }
+    this.valueColumnVectorType = valueColumnVectorType;
+    this.isDistinct = isDistinct;
+  }
+
+  /**
+   * Initialize an aggregation whose collected values are written out as a LIST.
+   *
+   * The list child column is a regular DECIMAL column that a DECIMAL_64 value cannot be written
+   * to without its scale, so DECIMAL_64 values are not collected into a list.  The Vectorizer
+   * only lets collect_set and collect_list of LONG, DOUBLE or BYTES values through.
+   */
+  protected void initList(ColumnVector.Type valueColumnVectorType, boolean isDistinct) {
+    if (valueColumnVectorType == ColumnVector.Type.DECIMAL_64) {
+      throw new RuntimeException(
+          "Unexpected list value column vector type " + valueColumnVectorType);
+    }
+    init(valueColumnVectorType, isDistinct);
+  }
+
+  /**
+   * Add the (non-null) input column value at batchIndex to the aggregation.
+   */
+  protected abstract void processValue(Aggregation myagg, ColumnVector inputColumn,
+      int batchIndex);
+
+  /**
+   * Add a (non-null) LONG, DOUBLE or BYTES value to the aggregation.
+   */
+  protected final void addValue(Aggregation myagg, ColumnVector valueColumn, int index) {
+    switch (valueColumnVectorType) {
+    case LONG:
+    case DECIMAL_64:
+      myagg.longValues.add(((LongColumnVector) valueColumn).vector[index]);
+      break;
+    case DOUBLE:
+      myagg.longValues.add(
+          Double.doubleToLongBits(((DoubleColumnVector) valueColumn).vector[index]));
+      break;
+    case BYTES:
+      {
+        BytesColumnVector bytesColumn = (BytesColumnVector) valueColumn;
+        myagg.bytesValues.add(
+            bytesColumn.vector[index], bytesColumn.start[index], bytesColumn.length[index]);
+      }
+      break;
+    default:
+      throw new RuntimeException("Unexpected value column vector type " + valueColumnVectorType);
+    }
+  }
+
+  /**
+   * Write the collected values of the aggregation as the list at batchIndex.
+   */
+  protected final void assignListColumn(ListColumnVector outputColVector, int batchIndex,
+      Aggregation myagg) {
+
+    final int size = myagg.size();
+    final int offset = outputColVector.childCount;
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.offsets[batchIndex] = offset;
+    outputColVector.lengths[batchIndex] = size;
+    outputColVector.childCount += size;
+
+    ColumnVector child = outputColVector.child;
+    child.ensureSize(outputColVector.childCount, true);
+    switch (valueColumnVectorType) {
+    case LONG:
+      {
+        long[] vector = ((LongColumnVector) child).vector;
+        for (int i = 0; i < size; i++) {
+          child.isNull[offset + i] = false;
+          vector[offset + i] = myagg.longValues.get(i);
+        }
+      }
+      break;
+    case DOUBLE:
+      {
+        double[] vector = ((DoubleColumnVector) child).vector;
+        for (int i = 0; i < size; i++) {
+          child.isNull[offset + i] = false;
+          vector[offset + i] = Double.longBitsToDouble(myagg.longValues.get(i));
+        }
+      }
+      break;
+    case BYTES:
+      {
+        BytesColumnVector bytesChild = (BytesColumnVector) child;
+        VectorBytesValueCollection bytesValues = myagg.bytesValues;
+        byte[] buffer = bytesValues.getBuffer();
+        for (int i = 0; i < size; i++) {
+          bytesChild.isNull[offset + i] = false;
+          bytesChild.setVal(
+              offset + i, buffer, bytesValues.getStart(i), bytesValues.getLength(i));
+        }
+      }
+      break;
+    default:
+      throw new RuntimeException("Unexpected value column vector type " + valueColumnVectorType);
+    }
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new Aggregation(valueColumnVectorType, isDistinct);
+  }
+
+  @Override
+  public void aggregateInput(AggregationBuffer agg, VectorizedRowBatch batch)
+      throws HiveException {
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    Aggregation myagg = (Aggregation) agg;
+
+    if (inputColumn.isRepeating) {
+      if (inputColumn.noNulls || !inputColumn.isNull[0]) {
+
+        // Adding the same value again does not change a distinct collection.
+        final int count = (isDistinct ? 1 : batchSize);
+        for (int i = 0; i < count; i++) {
+          processValue(myagg, inputColumn, 0);
+        }
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      if (inputColumn.noNulls) {
+        for (int j = 0; j < batchSize; j++) {
+          processValue(myagg, inputColumn, selected[j]);
+        }
+      } else {
+        for (int j = 0; j < batchSize; j++) {
+          final int i = selected[j];
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i);
+          }
+        }
+      }
+    } else {
+      if (inputColumn.noNulls) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(myagg, inputColumn, i);
+        }
+      } else {
+        for (int i = 0; i < batchSize; i++) {
+          if (!inputColumn.isNull[i]) {
+            processValue(myagg, inputColumn, i);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateInputSelection(
+      VectorAggregationBufferRow[] aggregationBufferSets, int aggregateIndex,
+      VectorizedRowBatch batch) throws HiveException {
+
+    final int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColumn = batch.cols[inputExpression.getOutputColumnNum()];
+
+    if (inputColumn.isRepeating) {
+      if (inputColumn.noNulls || !inputColumn.isNull[0]) {
+        for (int i = 0; i < batchSize; i++) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, 0);
+        }
+      }
+      return;
+    }
+
+    if (batch.selectedInUse) {
+      int[] selected = batch.selected;
+      for (int i = 0; i < batchSize; i++) {
+        final int row = selected[i];
+        if (inputColumn.noNulls || !inputColumn.isNull[row]) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, row);
+        }
+      }
+    } else {
+      for (int i = 0; i < batchSize; i++) {
+        if (inputColumn.noNulls || !inputColumn.isNull[i]) {
+          processValue(
+              getCurrentAggregationBuffer(aggregationBufferSets, aggregateIndex, i),
+              inputColumn, i);
+        }
+      }
+    }
+  }
+
+  private Aggregation getCurrentAggregationBuffer(
+      VectorAggregationBufferRow[] aggregationBufferSets,
+      int aggregrateIndex,
+      int row) {
+    VectorAggregationBufferRow mySet = aggregationBufferSets[row];
+    Aggregation myagg = (Aggregation) mySet.getAggregationBuffer(aggregrateIndex);
+    return myagg;
+  }
+
+  @Override
+  public void reset(AggregationBuffer agg) throws HiveException {
+    agg.reset();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + 2 * model.ref() + model.object() + model.primitive1() + model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean hasVariableSize() {
+    return true;
+  }
+}
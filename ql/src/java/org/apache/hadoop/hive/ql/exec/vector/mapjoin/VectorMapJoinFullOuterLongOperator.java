@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin;
+
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedLongIterator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.VectorDesc;
+
+/*
+ * Specialized class for doing a vectorized map join that is a FULL OUTER join on a Single-Column
+ * Long using a hash map.
+ *
+ * The big table rows are processed as for a (left) outer join while tracking which small table
+ * keys matched.  At close, the small table rows whose key never matched are generated with
+ * NULLs for the big table columns.
+ */
+public class VectorMapJoinFullOuterLongOperator extends VectorMapJoinOuterLongOperator {
+
+  private static final long serialVersionUID = 1L;
+
+  //------------------------------------------------------------------------------------------------
+
+  private static final String CLASS_NAME = VectorMapJoinFullOuterLongOperator.class.getName();
+
+  protected String getLoggingPrefix() {
+    return super.getLoggingPrefix(CLASS_NAME);
+  }
+
+  //---------------------------------------------------------------------------
+  // Pass-thru constructors.
+  //
+
+  /** Kryo ctor. */
+  protected VectorMapJoinFullOuterLongOperator() {
+    super();
+  }
+
+  public VectorMapJoinFullOuterLongOperator(CompilationOpContext ctx) {
+    super(ctx);
+  }
+
+  public VectorMapJoinFullOuterLongOperator(CompilationOpContext ctx, OperatorDesc conf,
+      VectorizationContext vContext, VectorDesc vectorDesc) throws HiveException {
+    super(ctx, conf, vContext, vectorDesc);
+  }
+
+  @Override
+  protected boolean supportsFullOuterJoin() {
+    return true;
+  }
+
+  @Override
+  protected void writeNonMatchedSmallTableKey(VectorMapJoinNonMatchedIterator nonMatchedIterator,
+      int batchIndex) throws HiveException {
+
+    final boolean isKeyNull = nonMatchedIterator.isNonMatchedKeyNull();
+    final long key = (isKeyNull ? 0 :
+        ((VectorMapJoinNonMatchedLongIterator) nonMatchedIterator).readNonMatchedLongKey());
+    for (int column : bigTableOuterKeyOutputVectorColumns) {
+      LongColumnVector colVector = (LongColumnVector) overflowBatch.cols[column];
+      if (isKeyNull) {
+        colVector.noNulls = false;
+        colVector.isNull[batchIndex] = true;
+      } else {
+        colVector.isNull[batchIndex] = false;
+        colVector.vector[batchIndex] = key;
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorDeserializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedBytesIterator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.VectorDesc;
+import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableDeserializeRead;
+
+/*
+ * Specialized class for doing a vectorized map join that is a FULL OUTER join on Multi-Key
+ * using a hash map.
+ *
+ * The big table rows are processed as for a (left) outer join while tracking which small table
+ * keys matched.  At close, the small table rows whose key never matched are generated with
+ * NULLs for the big table columns.
+ */
+public class VectorMapJoinFullOuterMultiKeyOperator extends VectorMapJoinOuterMultiKeyOperator {
+
+  private static final long serialVersionUID = 1L;
+
+  //------------------------------------------------------------------------------------------------
+
+  private static final String CLASS_NAME = VectorMapJoinFullOuterMultiKeyOperator.class.getName();
+
+  protected String getLoggingPrefix() {
+    return super.getLoggingPrefix(CLASS_NAME);
+  }
+
+  //---------------------------------------------------------------------------
+
+  // Deserializes the BinarySortable small table key into the small table key output columns.
+  private transient VectorDeserializeRow<BinarySortableDeserializeRead> keyVectorDeserializeRow;
+
+  //---------------------------------------------------------------------------
+  // Pass-thru constructors.
+  //
+
+  /** Kryo ctor. */
+  protected VectorMapJoinFullOuterMultiKeyOperator() {
+    super();
+  }
+
+  public VectorMapJoinFullOuterMultiKeyOperator(CompilationOpContext ctx) {
+    super(ctx);
+  }
+
+  public VectorMapJoinFullOuterMultiKeyOperator(CompilationOpContext ctx, OperatorDesc conf,
+      VectorizationContext vContext, VectorDesc vectorDesc) throws HiveException {
+    super(ctx, conf, vContext, vectorDesc);
+  }
+
+  @Override
+  protected boolean supportsFullOuterJoin() {
+    return true;
+  }
+
+  @Override
+  protected void commonSetup(VectorizedRowBatch batch) throws HiveException {
+    super.commonSetup(batch);
+
+    /*
+     * Only the key columns that are output as small table key columns are deserialized; the
+     * others are skipped.
+     */
+    int[] keyOutputColumns = new int[bigTableKeyColumnMap.length];
+    Arrays.fill(keyOutputColumns, -1);
+    int[] outerKeyInputColumns = bigTableOuterKeyMapping.getInputColumns();
+    for (int i = 0; i < bigTableKeyColumnMap.length; i++) {
+      for (int j = 0; j < outerKeyInputColumns.length; j++) {
+        if (outerKeyInputColumns[j] == bigTableKeyColumnMap[i]) {
+          keyOutputColumns[i] = bigTableOuterKeyOutputVectorColumns[j];
+          break;
+        }
+      }
+    }
+
+    keyVectorDeserializeRow =
+        new VectorDeserializeRow<BinarySortableDeserializeRead>(
+            new BinarySortableDeserializeRead(
+                bigTableKeyTypeInfos,
+                /* useExternalBuffer */ true));
+    keyVectorDeserializeRow.init(keyOutputColumns);
+  }
+
+  @Override
+  protected void writeNonMatchedSmallTableKey(VectorMapJoinNonMatchedIterator nonMatchedIterator,
+      int batchIndex) throws HiveException {
+
+    ByteSegmentRef keyByteSegmentRef =
+        ((VectorMapJoinNonMatchedBytesIterator) nonMatchedIterator).readNonMatchedBytesKey();
+    keyVectorDeserializeRow.setBytes(
+        keyByteSegmentRef.getBytes(),
+        (int) keyByteSegmentRef.getOffset(),
+        keyByteSegmentRef.getLength());
+
+    try {
+      // Copy by value since BinarySortable may need to decode escaped bytes.
+      keyVectorDeserializeRow.deserialize(overflowBatch, batchIndex);
+    } catch (Exception e) {
+      throw new HiveException(
+          "\nDeserializeRead detail: " +
+              keyVectorDeserializeRow.getDetailedReadPositionString(),
+          e);
+    }
+  }
+}
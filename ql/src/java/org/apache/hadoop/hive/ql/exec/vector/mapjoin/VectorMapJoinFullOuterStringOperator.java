@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin;
+
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedBytesIterator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.VectorDesc;
+import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
+
+/*
+ * Specialized class for doing a vectorized map join that is a FULL OUTER join on a Single-Column
+ * String using a hash map.
+ *
+ * The big table rows are processed as for a (left) outer join while tracking which small table
+ * keys matched.  At close, the small table rows whose key never matched are generated with
+ * NULLs for the big table columns.
+ */
+public class VectorMapJoinFullOuterStringOperator extends VectorMapJoinOuterStringOperator {
+
+  private static final long serialVersionUID = 1L;
+
+  //------------------------------------------------------------------------------------------------
+
+  private static final String CLASS_NAME = VectorMapJoinFullOuterStringOperator.class.getName();
+
+  protected String getLoggingPrefix() {
+    return super.getLoggingPrefix(CLASS_NAME);
+  }
+
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  //---------------------------------------------------------------------------
+  // Pass-thru constructors.
+  //
+
+  /** Kryo ctor. */
+  protected VectorMapJoinFullOuterStringOperator() {
+    super();
+  }
+
+  public VectorMapJoinFullOuterStringOperator(CompilationOpContext ctx) {
+    super(ctx);
+  }
+
+  public VectorMapJoinFullOuterStringOperator(CompilationOpContext ctx, OperatorDesc conf,
+      VectorizationContext vContext, VectorDesc vectorDesc) throws HiveException {
+    super(ctx, conf, vContext, vectorDesc);
+  }
+
+  @Override
+  protected boolean supportsFullOuterJoin() {
+    return true;
+  }
+
+  @Override
+  protected void writeNonMatchedSmallTableKey(VectorMapJoinNonMatchedIterator nonMatchedIterator,
+      int batchIndex) throws HiveException {
+
+    if (nonMatchedIterator.isNonMatchedKeyNull()) {
+      for (int column : bigTableOuterKeyOutputVectorColumns) {
+        BytesColumnVector colVector = (BytesColumnVector) overflowBatch.cols[column];
+        colVector.noNulls = false;
+        colVector.isNull[batchIndex] = true;
+      }
+      return;
+    }
+
+    ByteSegmentRef keyByteSegmentRef =
+        ((VectorMapJoinNonMatchedBytesIterator) nonMatchedIterator).readNonMatchedBytesKey();
+    final int keyLength = keyByteSegmentRef.getLength();
+
+    // The key store does not fill in the bytes for an empty key.
+    final byte[] keyBytes = (keyLength == 0 ? EMPTY_BYTES : keyByteSegmentRef.getBytes());
+    final int keyStart = (keyLength == 0 ? 0 : (int) keyByteSegmentRef.getOffset());
+
+    for (int column : bigTableOuterKeyOutputVectorColumns) {
+      BytesColumnVector colVector = (BytesColumnVector) overflowBatch.cols[column];
+
+      // Our hash tables are immutable.  We can safely do by reference.
+      colVector.isNull[batchIndex] = false;
+      colVector.setRef(batchIndex, keyBytes, keyStart, keyLength);
+    }
+  }
+}
@@ -28,9 +28,11 @@
 import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMap;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTableResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
 import org.apache.hadoop.hive.ql.plan.VectorDesc;
@@ -114,6 +116,10 @@
   protected transient int[] noMatchs;
   protected transient int[] merged;
 
+  // For FULL OUTER join, remembers which small table keys were matched by big table rows so the
+  // non-matched small table rows can be generated at close.  Null for LEFT/RIGHT OUTER join.
+  protected transient MatchTracker matchTracker;
+
   /** Kryo ctor. */
   protected VectorMapJoinOuterGenerateResultOperator() {
     super();
@@ -158,6 +164,23 @@ protected void commonSetup(VectorizedRowBatch batch) throws HiveException {
     noMatchs = new int[batch.DEFAULT_SIZE];
     merged = new int[batch.DEFAULT_SIZE];
 
+    if (isFullOuterJoin()) {
+      matchTracker = baseHashMap.createMatchTracker();
+    }
+  }
+
+  @Override
+  public void closeOp(boolean aborted) throws HiveException {
+    if (!aborted && isFullOuterJoin() && vectorMapJoinHashTable != null) {
+      if (needCommonSetup) {
+        // No big table batches were processed, so none of the small table keys matched.  Do the
+        // one time setup against the overflow batch we are about to fill.
+        commonSetup(overflowBatch);
+        needCommonSetup = false;
+      }
+      generateFullOuterSmallTableNoMatches();
+    }
+    super.closeOp(aborted);
   }
 
   //-----------------------------------------------------------------------------------------------
@@ -750,4 +773,72 @@ protected void generateOuterNullsRepeatedAll(VectorizedRowBatch batch) throws Hi
       colVector.isRepeating = true;
     }
   }
+
+  //-----------------------------------------------------------------------------------------------
+
+  /*
+   * FULL OUTER join small table non-match results.
+   */
+
+  /**
+   * Write the current non-matched small table key into the small table key output columns of
+   * the overflow batch.  Those columns were just set to NULL along with the big table retained
+   * columns, so a non-NULL key must clear isNull.  Only called for FULL OUTER join.
+   *
+   * @param nonMatchedIterator
+   *          The iterator positioned at a non-matched small table key.
+   * @param batchIndex
+   *          The overflow batch row to write.
+   */
+  protected void writeNonMatchedSmallTableKey(VectorMapJoinNonMatchedIterator nonMatchedIterator,
+      int batchIndex) throws HiveException {
+    throw new HiveException("Not a FULL OUTER join operator");
+  }
+
+  /**
+   * Generate the FULL OUTER join results for the small table keys that were never matched by
+   * a big table row.
+   *
+   * Each row gets nulls for all big table values, the small table key and the small table
+   * values.  Results go into the overflow batch.
+   */
+  protected void generateFullOuterSmallTableNoMatches() throws HiveException {
+
+    VectorMapJoinNonMatchedIterator nonMatchedIterator =
+        ((VectorMapJoinHashMap) vectorMapJoinHashTable).createNonMatchedIterator(matchTracker);
+    nonMatchedIterator.init();
+
+    int[] bigTableRetainedOutputColumns = bigTableRetainedMapping.getOutputColumns();
+
+    while (nonMatchedIterator.findNextNonMatched()) {
+
+      VectorMapJoinHashMapResult hashMapResult =
+          nonMatchedIterator.getNonMatchedHashMapResult();
+
+      ByteSegmentRef byteSegmentRef = hashMapResult.first();
+      while (byteSegmentRef != null) {
+
+        int batchIndex = overflowBatch.size;
+
+        for (int column : bigTableRetainedOutputColumns) {
+          ColumnVector colVector = overflowBatch.cols[column];
+          colVector.noNulls = false;
+          colVector.isNull[batchIndex] = true;
+        }
+
+        writeNonMatchedSmallTableKey(nonMatchedIterator, batchIndex);
+
+        if (smallTableVectorDeserializeRow != null) {
+          doSmallTableDeserializeRow(overflowBatch, batchIndex,
+              byteSegmentRef, hashMapResult);
+        }
+
+        overflowBatch.size++;
+        if (overflowBatch.size == overflowBatch.DEFAULT_SIZE) {
+          forwardOverflow();
+        }
+        byteSegmentRef = hashMapResult.next();
+      }
+    }
+  }
 }
@@ -239,7 +239,7 @@ public void process(Object row, int tag) throws HiveException {
             // Out of range for whole batch.
             joinResult = JoinUtil.JoinResult.NOMATCH;
           } else {
-            joinResult = hashMap.lookup(key, hashMapResults[0]);
+            joinResult = hashMap.lookup(key, hashMapResults[0], matchTracker);
           }
         }
 
@@ -354,7 +354,7 @@ public void process(Object row, int tag) throws HiveException {
                 // Key out of range for whole hash table.
                 saveJoinResult = JoinUtil.JoinResult.NOMATCH;
               } else {
-                saveJoinResult = hashMap.lookup(currentKey, hashMapResults[hashMapResultCount]);
+                saveJoinResult = hashMap.lookup(currentKey, hashMapResults[hashMapResultCount], matchTracker);
               }
 
               // LOG.debug(CLASS_NAME + " logical " + logical + " batchIndex " + batchIndex + " New Key " + currentKey + " " + saveJoinResult.name());
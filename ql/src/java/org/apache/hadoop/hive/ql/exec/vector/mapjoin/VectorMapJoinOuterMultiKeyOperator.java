@@ -259,7 +259,7 @@ public void process(Object row, int tag) throws HiveException {
           keyVectorSerializeWrite.serializeWrite(batch, 0);
           byte[] keyBytes = currentKeyOutput.getData();
           int keyLength = currentKeyOutput.getLength();
-          joinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[0]);
+          joinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[0], matchTracker);
         }
 
         /*
@@ -375,7 +375,7 @@ public void process(Object row, int tag) throws HiveException {
 
               byte[] keyBytes = saveKeyOutput.getData();
               int keyLength = saveKeyOutput.getLength();
-              saveJoinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[hashMapResultCount]);
+              saveJoinResult = hashMap.lookup(keyBytes, 0, keyLength, hashMapResults[hashMapResultCount], matchTracker);
 
               /*
                * Common outer join result processing.
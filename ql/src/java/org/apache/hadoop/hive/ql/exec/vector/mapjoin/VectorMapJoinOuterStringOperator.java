@@ -228,7 +228,7 @@ public void process(Object row, int tag) throws HiveException {
           byte[] keyBytes = vector[0];
           int keyStart = start[0];
           int keyLength = length[0];
-          joinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[0]);
+          joinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[0], matchTracker);
         }
 
         /*
@@ -343,7 +343,7 @@ public void process(Object row, int tag) throws HiveException {
               byte[] keyBytes = vector[batchIndex];
               int keyStart = start[batchIndex];
               int keyLength = length[batchIndex];
-              saveJoinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[hashMapResultCount]);
+              saveJoinResult = hashMap.lookup(keyBytes, keyStart, keyLength, hashMapResults[hashMapResultCount], matchTracker);
 
               /*
                * Common outer join result processing.
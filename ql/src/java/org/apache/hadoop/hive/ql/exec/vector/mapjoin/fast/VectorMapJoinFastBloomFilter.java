@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
+
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hive.common.util.BloomKFilter;
+
+/*
+ * A blocked Bloom filter over the hash codes of the keys of a fast hash table.
+ *
+ * A probe for a key that is not in the small table normally walks the slot array until it
+ * finds an empty slot, which for a large table is a cache miss or more.  Testing the filter
+ * touches a single 64 byte block, so most probes for absent keys return after one cache line.
+ *
+ * The bits are sized and block aligned by BloomKFilter for the key count.  Unlike BloomKFilter,
+ * the filter is indexed by the 32 bit hash code the hash table already computes for the key
+ * (so no second hash of the key bytes), and testing keeps no state so a filter that is shared
+ * by several tasks can be tested concurrently.  It is built once after the table is loaded.
+ */
+public class VectorMapJoinFastBloomFilter {
+
+  // 8 longs per block, as in BloomKFilter.
+  private static final int BLOCK_SIZE_BITS = 3;
+  private static final int BLOCK_OFFSET_MASK = (1 << BLOCK_SIZE_BITS) - 1;
+  private static final int BIT_OFFSET_MASK = Long.SIZE - 1;
+
+  // Spreads the 32 hash code bits over 64 bits for the two Kirsch-Mitzenmacher hashes.
+  private static final long SPREAD_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private final long[] bits;
+  private final int numHashFunctions;
+  private final int blockCount;
+
+  public VectorMapJoinFastBloomFilter(long expectedKeyCount) {
+    BloomKFilter bloomKFilter = new BloomKFilter(Math.max(1, expectedKeyCount));
+    bits = bloomKFilter.getBitSet();
+    numHashFunctions = bloomKFilter.getNumHashFunctions();
+    blockCount = bits.length >>> BLOCK_SIZE_BITS;
+  }
+
+  public void add(long hashCode) {
+    final long hash64 = (hashCode & 0xFFFFFFFFL) * SPREAD_MULTIPLIER;
+    final int hash1 = (int) hash64;
+    final int hash2 = (int) (hash64 >>> 32);
+    final int blockBaseOffset = blockBaseOffset(hash1, hash2);
+    for (int i = 1; i <= numHashFunctions; i++) {
+      int combinedHash = hash1 + ((i + 1) * hash2);
+      if (combinedHash < 0) {
+        combinedHash = ~combinedHash;
+      }
+      bits[blockBaseOffset + (combinedHash & BLOCK_OFFSET_MASK)] |=
+          (1L << ((combinedHash >>> BLOCK_SIZE_BITS) & BIT_OFFSET_MASK));
+    }
+  }
+
+  /*
+   * @return false when no key with this hash code was added; true when one may have been.
+   */
+  public boolean mightContain(long hashCode) {
+    final long hash64 = (hashCode & 0xFFFFFFFFL) * SPREAD_MULTIPLIER;
+    final int hash1 = (int) hash64;
+    final int hash2 = (int) (hash64 >>> 32);
+    final int blockBaseOffset = blockBaseOffset(hash1, hash2);
+    for (int i = 1; i <= numHashFunctions; i++) {
+      int combinedHash = hash1 + ((i + 1) * hash2);
+      if (combinedHash < 0) {
+        combinedHash = ~combinedHash;
+      }
+      if ((bits[blockBaseOffset + (combinedHash & BLOCK_OFFSET_MASK)] &
+          (1L << ((combinedHash >>> BLOCK_SIZE_BITS) & BIT_OFFSET_MASK))) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int blockBaseOffset(int hash1, int hash2) {
+    int firstHash = hash1 + hash2;
+    if (firstHash < 0) {
+      firstHash = ~firstHash;
+    }
+    return (firstHash % blockCount) << BLOCK_SIZE_BITS;
+  }
+
+  public long getEstimatedMemorySize() {
+    JavaDataModel jdm = JavaDataModel.get();
+    return jdm.object() + jdm.lengthForLongArrayOfSize(bits.length) + 2 * jdm.primitive1();
+  }
+}
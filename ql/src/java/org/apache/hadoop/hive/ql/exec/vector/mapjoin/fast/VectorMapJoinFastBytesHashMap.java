@@ -23,9 +23,14 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMap;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedBytesIterator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hive.common.util.HashCodeUtil;
 
@@ -44,6 +49,9 @@
 
   private VectorMapJoinFastValueStore valueStore;
 
+  // The values of the rows with a NULL key, when saved.  0 when there are none.
+  private long nullKeyValueRef;
+
   protected BytesWritable testValueBytesWritable;
 
   @Override
@@ -51,6 +59,99 @@ public VectorMapJoinHashMapResult createHashMapResult() {
     return new VectorMapJoinFastValueStore.HashMapResult();
   }
 
+  @Override
+  public MatchTracker createMatchTracker() {
+    return new MatchTracker(logicalHashBucketCount);
+  }
+
+  @Override
+  public VectorMapJoinNonMatchedIterator createNonMatchedIterator(MatchTracker matchTracker) {
+    return new NonMatchedBytesHashMapIterator(matchTracker, this);
+  }
+
+  /*
+   * Iterates over the slots of the hash map whose keys were never matched.
+   */
+  private static class NonMatchedBytesHashMapIterator
+      extends VectorMapJoinNonMatchedBytesIterator {
+
+    private final VectorMapJoinFastBytesHashMap hashMap;
+    private final VectorMapJoinFastValueStore.HashMapResult nonMatchedHashMapResult;
+
+    private final ByteSegmentRef keyByteSegmentRef;
+    private final WriteBuffers.Position readPos;
+
+    private boolean isNonMatchedKeyNull;
+
+    NonMatchedBytesHashMapIterator(MatchTracker matchTracker,
+        VectorMapJoinFastBytesHashMap hashMap) {
+      super(matchTracker);
+      this.hashMap = hashMap;
+      nonMatchedHashMapResult = new VectorMapJoinFastValueStore.HashMapResult();
+      keyByteSegmentRef = new ByteSegmentRef();
+      readPos = new WriteBuffers.Position();
+    }
+
+    @Override
+    public boolean findNextNonMatched() {
+      final long[] slotTriples = hashMap.slotTriples;
+      final int logicalHashBucketCount = hashMap.logicalHashBucketCount;
+      for (nonMatchedLogicalSlotNum++;
+          nonMatchedLogicalSlotNum < logicalHashBucketCount;
+          nonMatchedLogicalSlotNum++) {
+        int tripleIndex = 3 * nonMatchedLogicalSlotNum;
+        long keyRefWord = slotTriples[tripleIndex];
+        if (keyRefWord != 0 && !matchTracker.wasMatched(nonMatchedLogicalSlotNum)) {
+          hashMap.keyStore.getKey(keyRefWord, keyByteSegmentRef, readPos);
+          nonMatchedHashMapResult.set(hashMap.valueStore, slotTriples[tripleIndex + 2]);
+          nonMatchedHashMapResult.setJoinResult(JoinUtil.JoinResult.MATCH);
+          return true;
+        }
+      }
+
+      // The NULL key values (if any) come last.
+      if (nonMatchedLogicalSlotNum == logicalHashBucketCount) {
+        nonMatchedLogicalSlotNum++;
+        if (hashMap.nullKeyValueRef != 0) {
+          isNonMatchedKeyNull = true;
+          nonMatchedHashMapResult.set(hashMap.valueStore, hashMap.nullKeyValueRef);
+          nonMatchedHashMapResult.setJoinResult(JoinUtil.JoinResult.MATCH);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isNonMatchedKeyNull() {
+      return isNonMatchedKeyNull;
+    }
+
+    @Override
+    public ByteSegmentRef readNonMatchedBytesKey() {
+      return keyByteSegmentRef;
+    }
+
+    @Override
+    public VectorMapJoinHashMapResult getNonMatchedHashMapResult() {
+      return nonMatchedHashMapResult;
+    }
+  }
+
+  @Override
+  public void addNullKeyValue(BytesWritable currentValue) {
+    if (!isSaveNullKeyValues) {
+      return;
+    }
+    byte[] valueBytes = currentValue.getBytes();
+    int valueLength = currentValue.getLength();
+    if (nullKeyValueRef == 0) {
+      nullKeyValueRef = valueStore.addFirst(valueBytes, 0, valueLength);
+    } else {
+      nullKeyValueRef = valueStore.addMore(nullKeyValueRef, valueBytes, 0, valueLength);
+    }
+  }
+
   @Override
   public void assignSlot(int slot, byte[] keyBytes, int keyStart, int keyLength,
           long hashCode, boolean isNewKey, BytesWritable currentValue) {
@@ -98,6 +199,35 @@ public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
     return joinResult;
   }
 
+  @Override
+  public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
+      VectorMapJoinHashMapResult hashMapResult, MatchTracker matchTracker) {
+    if (matchTracker == null) {
+      return lookup(keyBytes, keyStart, keyLength, hashMapResult);
+    }
+
+    VectorMapJoinFastValueStore.HashMapResult optimizedHashMapResult =
+        (VectorMapJoinFastValueStore.HashMapResult) hashMapResult;
+
+    optimizedHashMapResult.forget();
+
+    long hashCode = HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength);
+    int slot = findReadSlotIndex(keyBytes, keyStart, keyLength, hashCode, hashMapResult.getReadPos());
+    JoinUtil.JoinResult joinResult;
+    if (slot == -1) {
+      joinResult = JoinUtil.JoinResult.NOMATCH;
+    } else {
+      matchTracker.trackMatch(slot);
+      optimizedHashMapResult.set(valueStore, slotTriples[3 * slot + 2]);
+
+      joinResult = JoinUtil.JoinResult.MATCH;
+    }
+
+    optimizedHashMapResult.setJoinResult(joinResult);
+
+    return joinResult;
+  }
+
   public VectorMapJoinFastBytesHashMap(
       int initialCapacity, float loadFactor, int writeBuffersSize, long estimatedKeyCount) {
     super(initialCapacity, loadFactor, writeBuffersSize, estimatedKeyCount);
@@ -170,6 +170,22 @@ private void expandAndRehash() {
 
   protected final long findReadSlot(
       byte[] keyBytes, int keyStart, int keyLength, long hashCode, WriteBuffers.Position readPos) {
+    int slot = findReadSlotIndex(keyBytes, keyStart, keyLength, hashCode, readPos);
+    if (slot == -1) {
+      return -1;
+    }
+    return slotTriples[slot * 3 + 2];
+  }
+
+  /*
+   * @return The logical slot number of the key, or -1 when the key is not present.
+   */
+  protected final int findReadSlotIndex(
+      byte[] keyBytes, int keyStart, int keyLength, long hashCode, WriteBuffers.Position readPos) {
+
+    if (bloomFilter != null && !bloomFilter.mightContain(hashCode)) {
+      return -1;
+    }
 
     int intHashCode = (int) hashCode;
     int slot = (intHashCode & logicalHashBucketMask);
@@ -185,7 +201,7 @@ protected final long findReadSlot(
         // Finally, verify the key bytes match.
 
         if (keyStore.equalKey(slotTriples[tripleIndex], keyBytes, keyStart, keyLength, readPos)) {
-          return slotTriples[tripleIndex + 2];
+          return slot;
         }
       }
       // Some other key (collision) - keep probing.
@@ -198,6 +214,18 @@ protected final long findReadSlot(
     }
   }
 
+  @Override
+  public void buildBloomFilter() {
+    VectorMapJoinFastBloomFilter newBloomFilter = new VectorMapJoinFastBloomFilter(keysAssigned);
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      int tripleIndex = slot * 3;
+      if (slotTriples[tripleIndex] != 0) {
+        newBloomFilter.add(slotTriples[tripleIndex + 1]);
+      }
+    }
+    bloomFilter = newBloomFilter;
+  }
+
   /*
    * The hash table slots.  For a bytes key hash table, each slot is 3 longs and the array is
    * 3X sized.
@@ -23,6 +23,7 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.mapjoin.MapJoinMemoryExhaustionError;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTable;
+import org.apache.hadoop.io.BytesWritable;
 
 public abstract class VectorMapJoinFastHashTable implements VectorMapJoinHashTable {
   public static final Logger LOG = LoggerFactory.getLogger(VectorMapJoinFastHashTable.class);
@@ -41,6 +42,12 @@ public abstract class VectorMapJoinFastHashTable implements VectorMapJoinHashTab
   protected int resizeThreshold;
   protected int metricExpands;
 
+  // Whether values of rows with a NULL key are kept (FULL OUTER join needs them).
+  protected boolean isSaveNullKeyValues;
+
+  // When not null, probes for hash codes the filter rules out skip the slot array.
+  protected VectorMapJoinFastBloomFilter bloomFilter;
+
   // 2^30 (we cannot use Integer.MAX_VALUE which is 2^31-1).
   public static final int HIGHEST_INT_POWER_OF_2 = 1073741824;
 
@@ -86,6 +93,26 @@ public VectorMapJoinFastHashTable(
     this.writeBuffersSize = writeBuffersSize;
   }
 
+  public void setSaveNullKeyValues(boolean isSaveNullKeyValues) {
+    this.isSaveNullKeyValues = isSaveNullKeyValues;
+  }
+
+  /*
+   * Called for rows whose key is NULL.  Those rows can never match, so by default they are
+   * dropped.
+   */
+  public void addNullKeyValue(BytesWritable currentValue) {
+    // Do nothing.
+  }
+
+  /*
+   * Builds the Bloom filter over the keys after the hash table has been loaded.  Tables that
+   * do not support one ignore this.
+   */
+  public void buildBloomFilter() {
+    // Do nothing.
+  }
+
   @Override
   public int size() {
     return keysAssigned;
@@ -94,6 +121,8 @@ public int size() {
   @Override
   public long getEstimatedMemorySize() {
     JavaDataModel jdm = JavaDataModel.get();
-    return JavaDataModel.alignUp(10L * jdm.primitive1() + jdm.primitive2(), jdm.memoryAlign());
+    long size = JavaDataModel.alignUp(10L * jdm.primitive1() + jdm.primitive2(), jdm.memoryAlign());
+    size += bloomFilter == null ? 0 : bloomFilter.getEstimatedMemorySize();
+    return size;
   }
 }
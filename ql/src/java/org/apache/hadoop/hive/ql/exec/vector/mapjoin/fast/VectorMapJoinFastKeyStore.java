@@ -156,6 +156,28 @@ public boolean equalKey(long keyRefWord, byte[] keyBytes, int keyStart, int keyL
     return true;
   }
 
+  /**
+   * Get a reference to the key bytes of a key reference word (e.g. to generate the small table
+   * key for a FULL OUTER non-match).
+   */
+  public void getKey(long keyRefWord, WriteBuffers.ByteSegmentRef keyByteSegmentRef,
+      WriteBuffers.Position readPos) {
+
+    int storedKeyLength =
+        (int) ((keyRefWord & SmallKeyLength.bitMask) >> SmallKeyLength.bitShift);
+    boolean isKeyLengthSmall = (storedKeyLength != SmallKeyLength.allBitsOn);
+
+    long absoluteKeyOffset =
+        (keyRefWord & AbsoluteKeyOffset.bitMask);
+
+    writeBuffers.setReadPoint(absoluteKeyOffset, readPos);
+    if (!isKeyLengthSmall) {
+      // Read big key length we wrote with the key.
+      storedKeyLength = writeBuffers.readVInt(readPos);
+    }
+    writeBuffers.getByteSegmentRefToCurrent(keyByteSegmentRef, storedKeyLength, readPos);
+  }
+
   public VectorMapJoinFastKeyStore(int writeBuffersSize) {
     writeBuffers = new WriteBuffers(writeBuffersSize, AbsoluteKeyOffset.maxSize);
     unsafeReadPos = new WriteBuffers.Position();
@@ -25,8 +25,11 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedLongIterator;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
 import org.apache.hadoop.io.BytesWritable;
@@ -45,6 +48,9 @@
 
   protected VectorMapJoinFastValueStore valueStore;
 
+  // The values of the rows with a NULL key, when saved.  0 when there are none.
+  private long nullKeyValueRef;
+
   private BytesWritable testValueBytesWritable;
 
   @Override
@@ -52,6 +58,81 @@ public VectorMapJoinHashMapResult createHashMapResult() {
     return new VectorMapJoinFastValueStore.HashMapResult();
   }
 
+  @Override
+  public MatchTracker createMatchTracker() {
+    return new MatchTracker(logicalHashBucketCount);
+  }
+
+  @Override
+  public VectorMapJoinNonMatchedIterator createNonMatchedIterator(MatchTracker matchTracker) {
+    return new NonMatchedLongHashMapIterator(matchTracker, this);
+  }
+
+  /*
+   * Iterates over the slots of the hash map whose keys were never matched.
+   */
+  private static class NonMatchedLongHashMapIterator
+      extends VectorMapJoinNonMatchedLongIterator {
+
+    private final VectorMapJoinFastLongHashMap hashMap;
+    private final VectorMapJoinFastValueStore.HashMapResult nonMatchedHashMapResult;
+
+    private long nonMatchedKey;
+    private boolean isNonMatchedKeyNull;
+
+    NonMatchedLongHashMapIterator(MatchTracker matchTracker,
+        VectorMapJoinFastLongHashMap hashMap) {
+      super(matchTracker);
+      this.hashMap = hashMap;
+      nonMatchedHashMapResult = new VectorMapJoinFastValueStore.HashMapResult();
+    }
+
+    @Override
+    public boolean findNextNonMatched() {
+      final long[] slotPairs = hashMap.slotPairs;
+      final int logicalHashBucketCount = hashMap.logicalHashBucketCount;
+      for (nonMatchedLogicalSlotNum++;
+          nonMatchedLogicalSlotNum < logicalHashBucketCount;
+          nonMatchedLogicalSlotNum++) {
+        int pairIndex = 2 * nonMatchedLogicalSlotNum;
+        long valueRef = slotPairs[pairIndex];
+        if (valueRef != 0 && !matchTracker.wasMatched(nonMatchedLogicalSlotNum)) {
+          nonMatchedKey = slotPairs[pairIndex + 1];
+          nonMatchedHashMapResult.set(hashMap.valueStore, valueRef);
+          nonMatchedHashMapResult.setJoinResult(JoinUtil.JoinResult.MATCH);
+          return true;
+        }
+      }
+
+      // The NULL key values (if any) come last.
+      if (nonMatchedLogicalSlotNum == logicalHashBucketCount) {
+        nonMatchedLogicalSlotNum++;
+        if (hashMap.nullKeyValueRef != 0) {
+          isNonMatchedKeyNull = true;
+          nonMatchedHashMapResult.set(hashMap.valueStore, hashMap.nullKeyValueRef);
+          nonMatchedHashMapResult.setJoinResult(JoinUtil.JoinResult.MATCH);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isNonMatchedKeyNull() {
+      return isNonMatchedKeyNull;
+    }
+
+    @Override
+    public long readNonMatchedLongKey() {
+      return nonMatchedKey;
+    }
+
+    @Override
+    public VectorMapJoinHashMapResult getNonMatchedHashMapResult() {
+      return nonMatchedHashMapResult;
+    }
+  }
+
   /*
    * A Unit Test convenience method for putting key and value into the hash table using the
    * actual types.
@@ -65,6 +146,20 @@ public void testPutRow(long currentKey, byte[] currentValue) throws HiveExceptio
     add(currentKey, testValueBytesWritable);
   }
 
+  @Override
+  public void addNullKeyValue(BytesWritable currentValue) {
+    if (!isSaveNullKeyValues) {
+      return;
+    }
+    byte[] valueBytes = currentValue.getBytes();
+    int valueLength = currentValue.getLength();
+    if (nullKeyValueRef == 0) {
+      nullKeyValueRef = valueStore.addFirst(valueBytes, 0, valueLength);
+    } else {
+      nullKeyValueRef = valueStore.addMore(nullKeyValueRef, valueBytes, 0, valueLength);
+    }
+  }
+
   @Override
   public void assignSlot(int slot, long key, boolean isNewKey, BytesWritable currentValue) {
 
@@ -107,6 +202,35 @@ public JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapRe
     return joinResult;
   }
 
+  @Override
+  public JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult,
+      MatchTracker matchTracker) {
+    if (matchTracker == null) {
+      return lookup(key, hashMapResult);
+    }
+
+    VectorMapJoinFastValueStore.HashMapResult optimizedHashMapResult =
+        (VectorMapJoinFastValueStore.HashMapResult) hashMapResult;
+
+    optimizedHashMapResult.forget();
+
+    long hashCode = HashCodeUtil.calculateLongHashCode(key);
+    int slot = findReadSlotIndex(key, hashCode);
+    JoinUtil.JoinResult joinResult;
+    if (slot == -1) {
+      joinResult = JoinUtil.JoinResult.NOMATCH;
+    } else {
+      matchTracker.trackMatch(slot);
+      optimizedHashMapResult.set(valueStore, slotPairs[2 * slot]);
+
+      joinResult = JoinUtil.JoinResult.MATCH;
+    }
+
+    optimizedHashMapResult.setJoinResult(joinResult);
+
+    return joinResult;
+  }
+
   public VectorMapJoinFastLongHashMap(
       boolean minMaxEnabled, boolean isOuterJoin, HashTableKeyType hashTableKeyType,
       int initialCapacity, float loadFactor, int writeBuffersSize, long estimatedKeyCount) {
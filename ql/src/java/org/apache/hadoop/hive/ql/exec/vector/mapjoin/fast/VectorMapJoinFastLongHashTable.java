@@ -79,6 +79,7 @@ public void putRow(BytesWritable currentKey, BytesWritable currentValue) throws
     keyBinarySortableDeserializeRead.set(keyBytes, 0, keyLength);
     try {
       if (!keyBinarySortableDeserializeRead.readNextField()) {
+        addNullKeyValue(currentValue);
         return;
       }
     } catch (Exception e) {
@@ -219,6 +220,21 @@ private void expandAndRehash() {
   }
 
   protected long findReadSlot(long key, long hashCode) {
+    int slot = findReadSlotIndex(key, hashCode);
+    if (slot == -1) {
+      return -1;
+    }
+    return slotPairs[2 * slot];
+  }
+
+  /*
+   * @return The logical slot number of the key, or -1 when the key is not present.
+   */
+  protected int findReadSlotIndex(long key, long hashCode) {
+
+    if (bloomFilter != null && !bloomFilter.mightContain(hashCode)) {
+      return -1;
+    }
 
     int intHashCode = (int) hashCode;
     int slot = intHashCode & logicalHashBucketMask;
@@ -236,7 +252,7 @@ protected long findReadSlot(long key, long hashCode) {
       long tableKey = slotPairs[pairIndex + 1];
       if (key == tableKey) {
         // LOG.debug("VectorMapJoinFastLongHashTable findReadSlot key " + key + " slot " + slot + " pairIndex " + pairIndex + " found key (i = " + i + ")");
-        return slotPairs[pairIndex];
+        return slot;
       }
       // Some other key (collision) - keep probing.
       probeSlot += (++i);
@@ -250,6 +266,18 @@ protected long findReadSlot(long key, long hashCode) {
     }
   }
 
+  @Override
+  public void buildBloomFilter() {
+    VectorMapJoinFastBloomFilter newBloomFilter = new VectorMapJoinFastBloomFilter(keysAssigned);
+    for (int slot = 0; slot < logicalHashBucketCount; slot++) {
+      int pairIndex = 2 * slot;
+      if (slotPairs[pairIndex] != 0) {
+        newBloomFilter.add(HashCodeUtil.calculateLongHashCode(slotPairs[pairIndex + 1]));
+      }
+    }
+    bloomFilter = newBloomFilter;
+  }
+
   /*
    * The hash table slots.  For a long key hash table, each slot is 2 longs and the array is
    * 2X sized.
@@ -47,6 +47,7 @@ public void adaptPutRow(VectorMapJoinFastBytesHashTable hashTable,
     keyBinarySortableDeserializeRead.set(keyBytes, 0, keyLength);
     try {
       if (!keyBinarySortableDeserializeRead.readNextField()) {
+        hashTable.addNullKeyValue(currentValue);
         return;
       }
     } catch (Exception e) {
@@ -172,6 +172,11 @@ private VectorMapJoinFastHashTable createHashTable(int newThreshold) {
       break;
     }
 
+    if (hashTable != null && vectorDesc.getIsFullOuter()) {
+      // FULL OUTER join outputs the small table rows with a NULL key, too.
+      hashTable.setSaveNullKeyValues(true);
+    }
+
     return hashTable;
   }
 
@@ -186,7 +191,13 @@ public MapJoinKey putRow(Writable currentKey, Writable currentValue)
 
   @Override
   public void seal() {
-    // Do nothing
+    if (HiveConf.getBoolVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_BLOOM_FILTER_ENABLED) &&
+        vectorMapJoinFastHashTable.size() >= HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_BLOOM_FILTER_MIN_KEYS)) {
+      vectorMapJoinFastHashTable.buildBloomFilter();
+      LOG.info("Built Bloom filter for {} keys", vectorMapJoinFastHashTable.size());
+    }
   }
 
   @Override
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable;
+
+/*
+ * Records which hash table slots were matched by big table keys during a FULL OUTER map join.
+ *
+ * The hash table is read-only (and may be shared by several tasks in one process) once it is
+ * loaded, so matches are tracked per operator in this separate bit set which is indexed by the
+ * hash table's logical slot number.
+ */
+public class MatchTracker {
+
+  private final long[] longWords;
+  private final int logicalHashBucketCount;
+
+  private int matchCount;
+
+  public MatchTracker(int logicalHashBucketCount) {
+    this.logicalHashBucketCount = logicalHashBucketCount;
+    longWords = new long[(logicalHashBucketCount + Long.SIZE - 1) / Long.SIZE];
+    matchCount = 0;
+  }
+
+  /**
+   * Remember that the key in a slot was matched.
+   */
+  public void trackMatch(int slot) {
+    final int wordIndex = slot >>> 6;
+    final long bit = 1L << slot;
+    final long word = longWords[wordIndex];
+    if ((word & bit) == 0) {
+      longWords[wordIndex] = word | bit;
+      matchCount++;
+    }
+  }
+
+  /**
+   * @return Whether the key in the slot was matched at least once.
+   */
+  public boolean wasMatched(int slot) {
+    return (longWords[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  /**
+   * @return The number of distinct slots matched so far.
+   */
+  public int getMatchCount() {
+    return matchCount;
+  }
+
+  public int getLogicalHashBucketCount() {
+    return logicalHashBucketCount;
+  }
+
+  @Override
+  public String toString() {
+    return "matchCount " + matchCount + " logicalHashBucketCount " + logicalHashBucketCount;
+  }
+}
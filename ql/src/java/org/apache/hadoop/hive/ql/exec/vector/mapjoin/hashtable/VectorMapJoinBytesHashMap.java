@@ -48,4 +48,11 @@
   JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
           VectorMapJoinHashMapResult hashMapResult) throws IOException;
 
+  /*
+   * Lookup a byte array key in the hash map and, on a MATCH, record the match in the match
+   * tracker (when it is not null).
+   */
+  JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
+          VectorMapJoinHashMapResult hashMapResult, MatchTracker matchTracker) throws IOException;
+
 }
\ No newline at end of file
@@ -31,4 +31,16 @@ public interface VectorMapJoinHashMap extends VectorMapJoinHashTable {
    */
   VectorMapJoinHashMapResult createHashMapResult();
 
+  /*
+   * @return A new match tracker sized for this hash map's slots.  Used by FULL OUTER map join
+   *         to remember which keys were matched.
+   */
+  MatchTracker createMatchTracker();
+
+  /*
+   * @return A new iterator over the keys (and values) NOT recorded as matched in the match
+   *         tracker.
+   */
+  VectorMapJoinNonMatchedIterator createNonMatchedIterator(MatchTracker matchTracker);
+
 }
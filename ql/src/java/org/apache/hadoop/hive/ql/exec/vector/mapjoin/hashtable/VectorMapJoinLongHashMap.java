@@ -43,4 +43,11 @@
    */
   JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult) throws IOException;
 
+  /*
+   * Lookup an long in the hash map and, on a MATCH, record the match in the match tracker
+   * (when it is not null).
+   */
+  JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult,
+      MatchTracker matchTracker) throws IOException;
+
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable;
+
+/*
+ * Abstract class for iterating over the hash map keys that were NOT matched, as recorded by a
+ * MatchTracker.  Used by FULL OUTER map join to generate the small table only results after all
+ * big table rows have been processed.
+ *
+ * The current key is read through the key type specific subclasses.
+ */
+public abstract class VectorMapJoinNonMatchedIterator {
+
+  protected final MatchTracker matchTracker;
+
+  protected int nonMatchedLogicalSlotNum;
+
+  public VectorMapJoinNonMatchedIterator(MatchTracker matchTracker) {
+    this.matchTracker = matchTracker;
+  }
+
+  /**
+   * Position the iterator before the first hash table slot.
+   */
+  public void init() {
+    nonMatchedLogicalSlotNum = -1;
+  }
+
+  /**
+   * Advance to the next key that has no match.
+   *
+   * @return false when there are no more non-matched keys.
+   */
+  public abstract boolean findNextNonMatched();
+
+  /**
+   * @return Whether the current non-matched key is NULL.  Rows with a NULL key never match.
+   */
+  public abstract boolean isNonMatchedKeyNull();
+
+  /**
+   * @return A hash map result positioned at the values for the current non-matched key.
+   */
+  public abstract VectorMapJoinHashMapResult getNonMatchedHashMapResult();
+}
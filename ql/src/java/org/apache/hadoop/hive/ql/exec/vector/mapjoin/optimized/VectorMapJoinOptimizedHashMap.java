@@ -24,9 +24,11 @@
 import org.apache.hadoop.hive.ql.exec.persistence.BytesBytesMultiHashMap;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer.ReusableGetAdaptor;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMap;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTableResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedIterator;
 import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
 
 public class VectorMapJoinOptimizedHashMap
@@ -122,6 +124,25 @@ public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyOffset, int keyLength,
     return joinResult;
   }
 
+  @Override
+  public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyOffset, int keyLength,
+      VectorMapJoinHashMapResult hashMapResult, MatchTracker matchTracker) throws IOException {
+    if (matchTracker != null) {
+      throw new RuntimeException("Match tracking (FULL OUTER) not supported for optimized hash table");
+    }
+    return lookup(keyBytes, keyOffset, keyLength, hashMapResult);
+  }
+
+  @Override
+  public MatchTracker createMatchTracker() {
+    throw new RuntimeException("Match tracking (FULL OUTER) not supported for optimized hash table");
+  }
+
+  @Override
+  public VectorMapJoinNonMatchedIterator createNonMatchedIterator(MatchTracker matchTracker) {
+    throw new RuntimeException("Match tracking (FULL OUTER) not supported for optimized hash table");
+  }
+
   public VectorMapJoinOptimizedHashMap(
       MapJoinTableContainer originalTableContainer, ReusableGetAdaptor hashMapRowGetter) {
     super(originalTableContainer, hashMapRowGetter);
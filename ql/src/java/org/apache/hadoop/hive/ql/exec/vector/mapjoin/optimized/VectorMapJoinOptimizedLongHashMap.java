@@ -23,6 +23,7 @@
 import org.apache.hadoop.hive.ql.exec.JoinUtil.JoinResult;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer.ReusableGetAdaptor;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashMap;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
@@ -73,6 +74,15 @@ public JoinResult lookup(long key,
             hashMapResult);
   }
 
+  @Override
+  public JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult,
+      MatchTracker matchTracker) throws IOException {
+    if (matchTracker != null) {
+      throw new RuntimeException("Match tracking (FULL OUTER) not supported for optimized hash table");
+    }
+    return lookup(key, hashMapResult);
+  }
+
   public VectorMapJoinOptimizedLongHashMap(
         boolean minMaxEnabled, boolean isOuterJoin, HashTableKeyType hashTableKeyType,
         MapJoinTableContainer originalTableContainer, ReusableGetAdaptor hashMapRowGetter) {
@@ -43,6 +43,12 @@
  * getDoubleGroupResult | getDecimalGroupResult, and getOutputColumnNum methods to get aggregation
  * result information necessary to write it into the output column (as a repeated column) of all
  * the group batches.
+ *
+ * Partition evaluators (e.g. lead, ntile, percent_rank, cume_dist) need every row of the PTF
+ * partition before their results are final.  They stream a partial result into their output column
+ * during evaluateGroupBatch and the VectorPTFGroupBatches class buffers the whole partition.  When
+ * the partition is forwarded, finishPartitionBatch is called for each batch to write the final
+ * result.
  */
 public abstract class VectorPTFEvaluatorBase {
 
@@ -88,10 +94,43 @@ public boolean streamsResult() {
     return false;
   }
 
+  public int getInputColumnNum() {
+    return inputColumnNum;
+  }
+
   public int getOutputColumnNum() {
     return outputColumnNum;
   }
 
+  // Returns true if the evaluator needs all the rows of the PTF partition before its results are
+  // final.
+  public boolean isPartitionEvaluator() {
+    return false;
+  }
+
+  // For a partition evaluator, the number of rows after the current row whose input values are
+  // needed (e.g. the lead amount).  The values of the look ahead column vector are copied into the
+  // output column of the earlier buffered rows by the VectorPTFGroupBatches class.
+  public int getLookAheadRowCount() {
+    return 0;
+  }
+
+  // After evaluateGroupBatch, element i holds the final output value of the partition row that is
+  // getLookAheadRowCount rows before batch row i.  By default, it is the input column (e.g. lead).
+  public ColumnVector getLookAheadColumnVector(VectorizedRowBatch batch) {
+    return batch.cols[inputColumnNum];
+  }
+
+  /*
+   * For a partition evaluator, after all the partition's batches have been evaluated, write the
+   * final result into the output column of one of the partition batches being forwarded.
+   * partitionRowNum is the (0 based) partition row number of the batch's first row.
+   */
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+    throw new RuntimeException("No finish partition batch evaluator implementation " + this.getClass().getName());
+  }
+
   // After processing all the group's batches with evaluateGroupBatch, is the non-streaming
   // aggregation result null?
   public boolean isGroupResultNull() {
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates cume_dist() for a PTF partition.
+ *
+ * The cume_dist of a row is the number of partition rows up to and including its peer group
+ * divided by the partition row count.
+ *
+ * Like percent_rank, the number of partition rows before the row's peer group is streamed to the
+ * output column as repeated.  When the partition is forwarded, the end of a peer group is the
+ * start of the next peer group in the same batch.  For the last peer group of a forwarded batch we
+ * remember the end of the peer group containing the last row of each VectorizedRowBatch.DEFAULT_SIZE
+ * block of partition rows, since the VectorPTFGroupBatches class forwards a buffered partition in
+ * full batches.
+ */
+public class VectorPTFEvaluatorCumeDist extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorCumeDist.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private long precedingRowCount;
+  private long groupCount;
+
+  private long[] blockGroupEnds;
+  private int blockGroupEndCount;
+
+  public VectorPTFEvaluatorCumeDist(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    blockGroupEnds = new long[16];
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    DoubleColumnVector doubleColVector = (DoubleColumnVector) batch.cols[outputColumnNum];
+    doubleColVector.isRepeating = true;
+    doubleColVector.isNull[0] = false;
+    doubleColVector.vector[0] = precedingRowCount;
+    groupCount += batch.size;
+
+    if (isLastGroupBatch) {
+      final long groupEnd = precedingRowCount + groupCount;
+
+      // Remember the group end for each block whose last row is in this group.
+      final long blockSize = VectorizedRowBatch.DEFAULT_SIZE;
+      long blockLastRowNum = (precedingRowCount / blockSize) * blockSize + blockSize - 1;
+      while (blockLastRowNum < groupEnd) {
+        final int blockNum = (int) (blockLastRowNum / blockSize);
+        if (blockNum >= blockGroupEnds.length) {
+          blockGroupEnds = Arrays.copyOf(blockGroupEnds, blockGroupEnds.length * 2);
+        }
+        blockGroupEnds[blockNum] = groupEnd;
+        blockGroupEndCount = blockNum + 1;
+        blockLastRowNum += blockSize;
+      }
+
+      precedingRowCount = groupEnd;
+      groupCount = 0;
+    }
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public boolean isPartitionEvaluator() {
+    return true;
+  }
+
+  @Override
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    final double rowCount = partitionRowCount;
+
+    // Determine the end of the peer group of the batch's last row.
+    final long lastRowNum = partitionRowNum + size - 1;
+    final int blockNum = (int) (lastRowNum / VectorizedRowBatch.DEFAULT_SIZE);
+    long groupEnd =
+        (lastRowNum < partitionRowCount - 1 && blockNum < blockGroupEndCount ?
+            blockGroupEnds[blockNum] : partitionRowCount);
+
+    DoubleColumnVector doubleColVector = (DoubleColumnVector) batch.cols[outputColumnNum];
+    double[] vector = doubleColVector.vector;
+    if (doubleColVector.isRepeating) {
+      vector[0] = groupEnd / rowCount;
+      return;
+    }
+
+    // Work backwards; a change in the streamed group start is the end of the earlier group.
+    double nextGroupStart = vector[size - 1];
+    for (int i = size - 1; i >= 0; i--) {
+      final double groupStart = vector[i];
+      if (groupStart != nextGroupStart) {
+        groupEnd = (long) nextGroupStart;
+        nextGroupStart = groupStart;
+      }
+      vector[i] = groupEnd / rowCount;
+    }
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DOUBLE;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    precedingRowCount = 0;
+    groupCount = 0;
+    blockGroupEndCount = 0;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class evaluates HiveDecimal lag() for a PTF partition.
+ *
+ * The last lag amount input values of the partition are kept in a ring so the output can be
+ * streamed even when the partition spans many batches.  Rows without a preceding row at the lag
+ * amount get the default value (or NULL).
+ */
+public class VectorPTFEvaluatorDecimalLag extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDecimalLag.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final int amount;
+  private final HiveDecimalWritable defaultValue;
+
+  private final HiveDecimalWritable[] ringValues;
+  private final boolean[] ringIsNull;
+  private long partitionRowCount;
+
+  public VectorPTFEvaluatorDecimalLag(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum, int amount, Object defaultValue) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.amount = amount;
+    this.defaultValue =
+        (defaultValue == null ? null : new HiveDecimalWritable((HiveDecimal) defaultValue));
+    ringValues = new HiveDecimalWritable[amount];
+    for (int i = 0; i < amount; i++) {
+      ringValues[i] = new HiveDecimalWritable();
+    }
+    ringIsNull = new boolean[amount];
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    // We do not filter when PTF is in reducer.
+    Preconditions.checkState(!batch.selectedInUse);
+
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    DecimalColumnVector decimalColVector = ((DecimalColumnVector) batch.cols[inputColumnNum]);
+    final boolean isRepeating = decimalColVector.isRepeating;
+    final boolean noNulls = decimalColVector.noNulls;
+    HiveDecimalWritable[] vector = decimalColVector.vector;
+    boolean[] isNull = decimalColVector.isNull;
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    DecimalColumnVector outputColVector = (DecimalColumnVector) batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    boolean[] outputIsNull = outputColVector.isNull;
+
+    for (int i = 0; i < size; i++) {
+      final int inputIndex = (isRepeating ? 0 : i);
+      final boolean isInputNull = (!noNulls && isNull[inputIndex]);
+      if (amount == 0) {
+        if (isInputNull) {
+          outputIsNull[i] = true;
+          outputColVector.noNulls = false;
+        } else {
+          outputIsNull[i] = false;
+          outputColVector.set(i, vector[inputIndex]);
+        }
+        continue;
+      }
+
+      // The ring slot holds the input value from lag amount rows back.
+      final int ringIndex = (int) (partitionRowCount % amount);
+      if (partitionRowCount < amount) {
+        if (defaultValue == null) {
+          outputIsNull[i] = true;
+          outputColVector.noNulls = false;
+        } else {
+          outputIsNull[i] = false;
+          outputColVector.set(i, defaultValue);
+        }
+      } else if (ringIsNull[ringIndex]) {
+        outputIsNull[i] = true;
+        outputColVector.noNulls = false;
+      } else {
+        outputIsNull[i] = false;
+        outputColVector.set(i, ringValues[ringIndex]);
+      }
+      ringIsNull[ringIndex] = isInputNull;
+      if (!isInputNull) {
+        ringValues[ringIndex].set(vector[inputIndex]);
+      }
+      partitionRowCount++;
+    }
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DECIMAL;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    partitionRowCount = 0;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+/**
+ * This class evaluates HiveDecimal avg() over a ROWS sliding window frame.
+ *
+ * The frame sum is maintained like VectorPTFEvaluatorDecimalSlidingSum; the result is
+ * sum / non-null count.
+ */
+public class VectorPTFEvaluatorDecimalSlidingAvg extends VectorPTFEvaluatorDecimalSlidingSum {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDecimalSlidingAvg.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private HiveDecimalWritable temp;
+  private HiveDecimalWritable avg;
+
+  public VectorPTFEvaluatorDecimalSlidingAvg(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    temp = new HiveDecimalWritable();
+    avg = new HiveDecimalWritable();
+  }
+
+  @Override
+  protected void writeResult(ColumnVector outputColVector, int index) {
+    if (nonNullCount == 0) {
+      outputColVector.isNull[index] = true;
+      outputColVector.noNulls = false;
+    } else {
+      avg.set(sum);
+      temp.setFromLong(nonNullCount);
+      avg.mutateDivide(temp);
+      outputColVector.isNull[index] = false;
+      ((DecimalColumnVector) outputColVector).set(index, avg);
+    }
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DECIMAL;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+/**
+ * This class evaluates HiveDecimal min() or max() over a ROWS sliding window frame.
+ *
+ * The window is a monotonic deque of the candidate rows; see VectorPTFEvaluatorLongSlidingMinMax.
+ */
+public class VectorPTFEvaluatorDecimalSlidingMinMax extends VectorPTFEvaluatorSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDecimalSlidingMinMax.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final boolean isMax;
+  private HiveDecimalWritable[] windowValues;
+
+  private boolean isRunningResultNull;
+  private HiveDecimalWritable runningResult;
+
+  public VectorPTFEvaluatorDecimalSlidingMinMax(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum, boolean isMax) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.isMax = isMax;
+    windowValues = (isStartUnbounded ? null : newDecimals(windowRowNums.length));
+    runningResult = new HiveDecimalWritable();
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addRow(long rowNum, ColumnVector inputColVector, int index) {
+    final int inputIndex = (inputColVector.isRepeating ? 0 : index);
+    if (!inputColVector.noNulls && inputColVector.isNull[inputIndex]) {
+      return;
+    }
+    HiveDecimalWritable value = ((DecimalColumnVector) inputColVector).vector[inputIndex];
+    if (isStartUnbounded) {
+      if (isRunningResultNull) {
+        runningResult.set(value);
+        isRunningResultNull = false;
+      } else {
+        final int compare = value.compareTo(runningResult);
+        if (isMax ? compare > 0 : compare < 0) {
+          runningResult.set(value);
+        }
+      }
+      return;
+    }
+    while (!isWindowEmpty()) {
+      final int compare = windowValues[windowTail - 1].compareTo(value);
+      if (isMax ? compare > 0 : compare < 0) {
+        break;
+      }
+      removeLastWindowRow();
+    }
+    final int windowIndex = appendWindowRow(rowNum);
+    windowValues[windowIndex].set(value);
+  }
+
+  @Override
+  protected void writeResult(ColumnVector outputColVector, int index) {
+    if (isStartUnbounded ? isRunningResultNull : isWindowEmpty()) {
+      outputColVector.isNull[index] = true;
+      outputColVector.noNulls = false;
+    } else {
+      outputColVector.isNull[index] = false;
+      ((DecimalColumnVector) outputColVector).set(
+          index, (isStartUnbounded ? runningResult : windowValues[windowHead]));
+    }
+  }
+
+  @Override
+  protected void moveWindowValues(int fromIndex, int count, int newCapacity) {
+    windowValues = moveDecimals(windowValues, fromIndex, count, newCapacity);
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DECIMAL;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    isRunningResultNull = true;
+  }
+}
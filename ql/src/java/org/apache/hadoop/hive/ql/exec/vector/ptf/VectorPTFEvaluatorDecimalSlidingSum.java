@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+/**
+ * This class evaluates HiveDecimal sum() over a ROWS sliding window frame.
+ *
+ * Non-null values are added to the sum when they enter the frame and subtracted when they leave;
+ * the result is NULL when the frame has no non-null values.
+ */
+public class VectorPTFEvaluatorDecimalSlidingSum extends VectorPTFEvaluatorSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDecimalSlidingSum.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  protected HiveDecimalWritable sum;
+  protected long nonNullCount;
+  private HiveDecimalWritable[] windowValues;
+
+  public VectorPTFEvaluatorDecimalSlidingSum(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    sum = new HiveDecimalWritable();
+    windowValues = (isStartUnbounded ? null : newDecimals(windowRowNums.length));
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addRow(long rowNum, ColumnVector inputColVector, int index) {
+    final int inputIndex = (inputColVector.isRepeating ? 0 : index);
+    if (!inputColVector.noNulls && inputColVector.isNull[inputIndex]) {
+      return;
+    }
+    HiveDecimalWritable value = ((DecimalColumnVector) inputColVector).vector[inputIndex];
+    sum.mutateAdd(value);
+    nonNullCount++;
+    if (!isStartUnbounded) {
+      final int windowIndex = appendWindowRow(rowNum);
+      windowValues[windowIndex].set(value);
+    }
+  }
+
+  @Override
+  protected void removeWindowRow(int windowIndex) {
+    sum.mutateSubtract(windowValues[windowIndex]);
+    nonNullCount--;
+  }
+
+  @Override
+  protected void writeResult(ColumnVector outputColVector, int index) {
+    if (nonNullCount == 0) {
+      outputColVector.isNull[index] = true;
+      outputColVector.noNulls = false;
+    } else {
+      outputColVector.isNull[index] = false;
+      ((DecimalColumnVector) outputColVector).set(index, sum);
+    }
+  }
+
+  @Override
+  protected void moveWindowValues(int fromIndex, int count, int newCapacity) {
+    windowValues = moveDecimals(windowValues, fromIndex, count, newCapacity);
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DECIMAL;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    sum.set(HiveDecimal.ZERO);
+    nonNullCount = 0;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class evaluates double lag() for a PTF partition.
+ *
+ * The last lag amount input values of the partition are kept in a ring so the output can be
+ * streamed even when the partition spans many batches.  Rows without a preceding row at the lag
+ * amount get the default value (or NULL).
+ */
+public class VectorPTFEvaluatorDoubleLag extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDoubleLag.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final int amount;
+  private final boolean isDefaultNull;
+  private final double defaultValue;
+
+  private final double[] ringValues;
+  private final boolean[] ringIsNull;
+  private long partitionRowCount;
+
+  public VectorPTFEvaluatorDoubleLag(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum, int amount, Object defaultValue) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.amount = amount;
+    isDefaultNull = (defaultValue == null);
+    this.defaultValue = (isDefaultNull ? 0 : ((Number) defaultValue).doubleValue());
+    ringValues = new double[amount];
+    ringIsNull = new boolean[amount];
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    // We do not filter when PTF is in reducer.
+    Preconditions.checkState(!batch.selectedInUse);
+
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    DoubleColumnVector doubleColVector = ((DoubleColumnVector) batch.cols[inputColumnNum]);
+    final boolean isRepeating = doubleColVector.isRepeating;
+    final boolean noNulls = doubleColVector.noNulls;
+    double[] vector = doubleColVector.vector;
+    boolean[] isNull = doubleColVector.isNull;
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    DoubleColumnVector outputColVector = (DoubleColumnVector) batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    double[] outputVector = outputColVector.vector;
+    boolean[] outputIsNull = outputColVector.isNull;
+
+    for (int i = 0; i < size; i++) {
+      final int inputIndex = (isRepeating ? 0 : i);
+      final boolean isInputNull = (!noNulls && isNull[inputIndex]);
+      if (amount == 0) {
+        if (isInputNull) {
+          outputIsNull[i] = true;
+          outputColVector.noNulls = false;
+        } else {
+          outputIsNull[i] = false;
+          outputVector[i] = vector[inputIndex];
+        }
+        continue;
+      }
+
+      // The ring slot holds the input value from lag amount rows back.
+      final int ringIndex = (int) (partitionRowCount % amount);
+      if (partitionRowCount < amount) {
+        if (isDefaultNull) {
+          outputIsNull[i] = true;
+          outputColVector.noNulls = false;
+        } else {
+          outputIsNull[i] = false;
+          outputVector[i] = defaultValue;
+        }
+      } else if (ringIsNull[ringIndex]) {
+        outputIsNull[i] = true;
+        outputColVector.noNulls = false;
+      } else {
+        outputIsNull[i] = false;
+        outputVector[i] = ringValues[ringIndex];
+      }
+      ringIsNull[ringIndex] = isInputNull;
+      if (!isInputNull) {
+        ringValues[ringIndex] = vector[inputIndex];
+      }
+      partitionRowCount++;
+    }
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DOUBLE;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    partitionRowCount = 0;
+  }
+}
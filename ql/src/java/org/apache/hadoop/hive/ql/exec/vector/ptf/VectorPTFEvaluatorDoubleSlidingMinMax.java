@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates double min() or max() over a ROWS sliding window frame.
+ *
+ * The window is a monotonic deque of the candidate rows: a new row removes the rows at the end
+ * that are not better than it (they leave the frame first and can never be the result again), so
+ * the result is always the first window row and each row is added and removed at most once.
+ * When the start is unbounded, no row ever leaves the frame and we keep the running min / max.
+ */
+public class VectorPTFEvaluatorDoubleSlidingMinMax extends VectorPTFEvaluatorSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDoubleSlidingMinMax.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final boolean isMax;
+  private double[] windowValues;
+
+  private boolean isRunningResultNull;
+  private double runningResult;
+
+  public VectorPTFEvaluatorDoubleSlidingMinMax(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum, boolean isMax) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.isMax = isMax;
+    windowValues = new double[windowRowNums.length];
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addRow(long rowNum, ColumnVector inputColVector, int index) {
+    final int inputIndex = (inputColVector.isRepeating ? 0 : index);
+    if (!inputColVector.noNulls && inputColVector.isNull[inputIndex]) {
+      return;
+    }
+    final double value = ((DoubleColumnVector) inputColVector).vector[inputIndex];
+    if (isStartUnbounded) {
+      if (isRunningResultNull ||
+          (isMax ? value > runningResult : value < runningResult)) {
+        runningResult = value;
+        isRunningResultNull = false;
+      }
+      return;
+    }
+    while (!isWindowEmpty() &&
+        (isMax ?
+            windowValues[windowTail - 1] <= value : windowValues[windowTail - 1] >= value)) {
+      removeLastWindowRow();
+    }
+    final int windowIndex = appendWindowRow(rowNum);
+    windowValues[windowIndex] = value;
+  }
+
+  @Override
+  protected void writeResult(ColumnVector outputColVector, int index) {
+    if (isStartUnbounded ? isRunningResultNull : isWindowEmpty()) {
+      outputColVector.isNull[index] = true;
+      outputColVector.noNulls = false;
+    } else {
+      outputColVector.isNull[index] = false;
+      ((DoubleColumnVector) outputColVector).vector[index] =
+          (isStartUnbounded ? runningResult : windowValues[windowHead]);
+    }
+  }
+
+  @Override
+  protected void moveWindowValues(int fromIndex, int count, int newCapacity) {
+    windowValues = moveDoubles(windowValues, fromIndex, count, newCapacity);
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DOUBLE;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    isRunningResultNull = true;
+    runningResult = 0;
+  }
+}
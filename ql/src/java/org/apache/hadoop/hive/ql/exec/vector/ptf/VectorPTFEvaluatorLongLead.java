@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class evaluates long lead() for a PTF partition.
+ *
+ * Rows whose lead row is in the same batch are filled in immediately.  The other rows get the
+ * default value (or NULL) and, when the lead row arrives in a later batch of the partition, the
+ * VectorPTFGroupBatches class copies its input value into the buffered row's output column.
+ */
+public class VectorPTFEvaluatorLongLead extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorLongLead.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final int amount;
+  private final boolean isDefaultNull;
+  private final long defaultValue;
+
+  public VectorPTFEvaluatorLongLead(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum, int amount, Object defaultValue) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.amount = amount;
+    isDefaultNull = (defaultValue == null);
+    this.defaultValue = (isDefaultNull ? 0 : ((Number) defaultValue).longValue());
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    // We do not filter when PTF is in reducer.
+    Preconditions.checkState(!batch.selectedInUse);
+
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    LongColumnVector longColVector = ((LongColumnVector) batch.cols[inputColumnNum]);
+    final boolean isRepeating = longColVector.isRepeating;
+    final boolean noNulls = longColVector.noNulls;
+    long[] vector = longColVector.vector;
+    boolean[] isNull = longColVector.isNull;
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    LongColumnVector outputColVector = (LongColumnVector) batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    long[] outputVector = outputColVector.vector;
+    boolean[] outputIsNull = outputColVector.isNull;
+
+    final int inBatchCount = Math.max(0, size - amount);
+    for (int i = 0; i < inBatchCount; i++) {
+      final int inputIndex = (isRepeating ? 0 : i + amount);
+      if (!noNulls && isNull[inputIndex]) {
+        outputIsNull[i] = true;
+        outputColVector.noNulls = false;
+      } else {
+        outputIsNull[i] = false;
+        outputVector[i] = vector[inputIndex];
+      }
+    }
+    for (int i = inBatchCount; i < size; i++) {
+      if (isDefaultNull) {
+        outputIsNull[i] = true;
+        outputColVector.noNulls = false;
+      } else {
+        outputIsNull[i] = false;
+        outputVector[i] = defaultValue;
+      }
+    }
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public boolean isPartitionEvaluator() {
+    return true;
+  }
+
+  @Override
+  public int getLookAheadRowCount() {
+    return amount;
+  }
+
+  @Override
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+    // The output column is complete once the whole partition has been evaluated.
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.LONG;
+  }
+
+  @Override
+  public void resetEvaluator() {
+  }
+}
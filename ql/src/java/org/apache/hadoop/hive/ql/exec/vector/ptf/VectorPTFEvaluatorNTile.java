@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates ntile() for a PTF partition.
+ *
+ * The bucket of a row only depends on its partition row number and the partition row count, so
+ * nothing is streamed; the buckets are written when the partition is forwarded.  Like the row mode
+ * GenericUDAFNTile, when the rows do not divide evenly the first (row count % buckets) buckets get
+ * one extra row.
+ */
+public class VectorPTFEvaluatorNTile extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorNTile.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final int buckets;
+
+  public VectorPTFEvaluatorNTile(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum, int buckets) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    this.buckets = buckets;
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    // The bucket count is a constant so there is no input expression to evaluate.
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public boolean isPartitionEvaluator() {
+    return true;
+  }
+
+  @Override
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+
+    final long bucketSize = partitionRowCount / buckets;
+    final long remainder = partitionRowCount % buckets;
+
+    // The first remainder buckets have (bucketSize + 1) rows.
+    final long largeBucketRowCount = remainder * (bucketSize + 1);
+
+    LongColumnVector outputColVector = (LongColumnVector) batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    long[] outputVector = outputColVector.vector;
+    boolean[] outputIsNull = outputColVector.isNull;
+
+    final int size = batch.size;
+    for (int i = 0; i < size; i++) {
+      final long rowNum = partitionRowNum + i;
+      outputIsNull[i] = false;
+      if (rowNum < largeBucketRowCount) {
+        outputVector[i] = rowNum / (bucketSize + 1) + 1;
+      } else {
+        outputVector[i] = remainder + (rowNum - largeBucketRowCount) / bucketSize + 1;
+      }
+    }
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.LONG;
+  }
+
+  @Override
+  public void resetEvaluator() {
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates percent_rank() for a PTF partition.
+ *
+ * Like rank, the number of partition rows before the row's peer group (i.e. rank - 1) is streamed
+ * to the output column as repeated.  When the partition is forwarded it is divided by the
+ * partition row count - 1.
+ */
+public class VectorPTFEvaluatorPercentRank extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorPercentRank.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private long precedingRowCount;
+  private long groupCount;
+
+  public VectorPTFEvaluatorPercentRank(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    resetEvaluator();
+  }
+
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    DoubleColumnVector doubleColVector = (DoubleColumnVector) batch.cols[outputColumnNum];
+    doubleColVector.isRepeating = true;
+    doubleColVector.isNull[0] = false;
+    doubleColVector.vector[0] = precedingRowCount;
+    groupCount += batch.size;
+
+    if (isLastGroupBatch) {
+      precedingRowCount += groupCount;
+      groupCount = 0;
+    }
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public boolean isPartitionEvaluator() {
+    return true;
+  }
+
+  @Override
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+
+    final double denominator = (partitionRowCount > 1 ? partitionRowCount - 1 : 1);
+
+    DoubleColumnVector doubleColVector = (DoubleColumnVector) batch.cols[outputColumnNum];
+    double[] vector = doubleColVector.vector;
+    final int count = (doubleColVector.isRepeating ? 1 : batch.size);
+    for (int i = 0; i < count; i++) {
+      vector[i] = vector[i] / denominator;
+    }
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DOUBLE;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    precedingRowCount = 0;
+    groupCount = 0;
+  }
+}
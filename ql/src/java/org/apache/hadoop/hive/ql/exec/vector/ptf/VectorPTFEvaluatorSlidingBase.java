@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This is the base class for evaluators of an aggregation over a ROWS sliding window frame
+ * (e.g. ROWS BETWEEN 6 PRECEDING AND CURRENT ROW, or ROWS BETWEEN 2 PRECEDING AND 2 FOLLOWING).
+ *
+ * The aggregation is maintained incrementally as the rows of the partition arrive: each row is
+ * added once when it enters the frame and removed once when it leaves, so a partition is evaluated
+ * in O(n) instead of recomputing the aggregation over the whole frame for each row.
+ *
+ * The rows that may still be needed to remove a value (e.g. the non-NULL rows for sum, the
+ * min / max candidate rows) are kept in arrival order in a window: windowRowNums holds their
+ * partition row numbers in [windowHead, windowTail) and the subclass keeps their values in arrays
+ * with the same indices.
+ *
+ * When the frame ends at CURRENT ROW the result is streamed.  When it ends n FOLLOWING, the
+ * evaluator is a partition evaluator: a row's result is known n rows later, so the results of the
+ * last n rows of a batch are written by the VectorPTFGroupBatches class into the buffered rows from
+ * the look ahead column vector, and the results of the last n rows of the partition are written by
+ * finishPartitionBatch.
+ */
+public abstract class VectorPTFEvaluatorSlidingBase extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorSlidingBase.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  protected final boolean isStartUnbounded;
+
+  // The frame of row r is rows [r + startOffset, r + endOffset] where startOffset <= 0 (unless the
+  // start is unbounded) and endOffset >= 0.
+  protected final int startOffset;
+  protected final int endOffset;
+
+  // The number of partition rows evaluated so far.
+  private long evaluatedRowCount;
+
+  // The first and last partition row numbers of the current frame.
+  protected long windowStartRowNum;
+  protected long windowEndRowNum;
+
+  protected long[] windowRowNums;
+  protected int windowHead;
+  protected int windowTail;
+
+  private ColumnVector lookAheadColVector;
+  private ColumnVector tailColVector;
+  private boolean isTailEvaluated;
+
+  public VectorPTFEvaluatorSlidingBase(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    isStartUnbounded = windowFrameDef.isStartUnbounded();
+    startOffset = (isStartUnbounded ? 0 : windowFrameDef.getStart().getRelativeOffset());
+    endOffset = windowFrameDef.getEnd().getRelativeOffset();
+    Preconditions.checkState(startOffset <= 0 && endOffset >= 0);
+    final long frameRowCount = (long) endOffset - startOffset + 1;
+    windowRowNums =
+        new long[(int) Math.min(frameRowCount, VectorizedRowBatch.DEFAULT_SIZE)];
+  }
+
+  /*
+   * Add a row that has entered the frame.  inputColVector is null for count(*).
+   */
+  protected abstract void addRow(long rowNum, ColumnVector inputColVector, int index);
+
+  /*
+   * Remove the window row at windowIndex (always windowHead) that has left the frame.
+   */
+  protected void removeWindowRow(int windowIndex) {
+  }
+
+  /*
+   * Write the aggregation result of the current frame, including the isNull entry.
+   */
+  protected abstract void writeResult(ColumnVector outputColVector, int index);
+
+  /*
+   * Move the count window values starting at fromIndex to index 0 of value arrays with
+   * newCapacity entries.
+   */
+  protected abstract void moveWindowValues(int fromIndex, int count, int newCapacity);
+
+  protected int appendWindowRow(long rowNum) {
+    if (windowTail == windowRowNums.length) {
+      makeWindowRoom();
+    }
+    windowRowNums[windowTail] = rowNum;
+    return windowTail++;
+  }
+
+  protected boolean isWindowEmpty() {
+    return windowHead == windowTail;
+  }
+
+  protected void removeLastWindowRow() {
+    windowTail--;
+  }
+
+  /*
+   * Make room at the end of the window by moving it down to index 0 when at least half of the
+   * arrays are free, otherwise by doubling the arrays.
+   */
+  private void makeWindowRoom() {
+    final int count = windowTail - windowHead;
+    final int capacity = windowRowNums.length;
+    final int newCapacity = (count <= capacity / 2 ? capacity : capacity * 2);
+    windowRowNums = moveLongs(windowRowNums, windowHead, count, newCapacity);
+    moveWindowValues(windowHead, count, newCapacity);
+    windowHead = 0;
+    windowTail = count;
+  }
+
+  protected static long[] moveLongs(long[] array, int fromIndex, int count, int newCapacity) {
+    long[] result = (newCapacity == array.length ? array : new long[newCapacity]);
+    System.arraycopy(array, fromIndex, result, 0, count);
+    return result;
+  }
+
+  protected static double[] moveDoubles(double[] array, int fromIndex, int count,
+      int newCapacity) {
+    double[] result = (newCapacity == array.length ? array : new double[newCapacity]);
+    System.arraycopy(array, fromIndex, result, 0, count);
+    return result;
+  }
+
+  protected static HiveDecimalWritable[] newDecimals(int capacity) {
+    HiveDecimalWritable[] result = new HiveDecimalWritable[capacity];
+    for (int i = 0; i < capacity; i++) {
+      result[i] = new HiveDecimalWritable();
+    }
+    return result;
+  }
+
+  /*
+   * Like moveLongs, but each entry must keep its own writable so we swap instead of copy when
+   * moving down within the same array.  The ranges do not overlap since the window is only moved
+   * down when at least half of the array is free.
+   */
+  protected static HiveDecimalWritable[] moveDecimals(HiveDecimalWritable[] array, int fromIndex,
+      int count, int newCapacity) {
+    if (newCapacity == array.length) {
+      for (int i = 0; i < count; i++) {
+        HiveDecimalWritable temp = array[i];
+        array[i] = array[fromIndex + i];
+        array[fromIndex + i] = temp;
+      }
+      return array;
+    }
+    HiveDecimalWritable[] result = new HiveDecimalWritable[newCapacity];
+    System.arraycopy(array, fromIndex, result, 0, count);
+    for (int i = count; i < newCapacity; i++) {
+      result[i] = new HiveDecimalWritable();
+    }
+    return result;
+  }
+
+  /*
+   * Slide the start of the frame to startRowNum.
+   */
+  private void removeRowsBefore(long startRowNum) {
+    if (isStartUnbounded || startRowNum <= windowStartRowNum) {
+      return;
+    }
+    windowStartRowNum = startRowNum;
+    while (windowHead < windowTail && windowRowNums[windowHead] < startRowNum) {
+      removeWindowRow(windowHead);
+      windowHead++;
+    }
+  }
+
+  @Override
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
+      throws HiveException {
+
+    evaluateInputExpr(batch);
+
+    // We do not filter when PTF is in reducer.
+    Preconditions.checkState(!batch.selectedInUse);
+
+    final int size = batch.size;
+    if (size == 0) {
+      return;
+    }
+    ColumnVector inputColVector = (inputColumnNum == -1 ? null : batch.cols[inputColumnNum]);
+
+    /*
+     * Do careful maintenance of the outputColVector.noNulls flag.
+     */
+
+    ColumnVector outputColVector = batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    if (endOffset > 0 && lookAheadColVector == null) {
+      lookAheadColVector = VectorizedBatchUtil.makeLikeColumnVector(outputColVector);
+    }
+
+    final long batchRowNum = evaluatedRowCount;
+    for (int i = 0; i < size; i++) {
+      final long rowNum = batchRowNum + i;
+      addRow(rowNum, inputColVector, i);
+      windowEndRowNum = rowNum;
+
+      // The frame of this row has just become complete.
+      final long resultRowNum = rowNum - endOffset;
+      if (resultRowNum < 0) {
+        continue;
+      }
+      removeRowsBefore(resultRowNum + startOffset);
+      if (resultRowNum >= batchRowNum) {
+        writeResult(outputColVector, (int) (resultRowNum - batchRowNum));
+      } else {
+
+        // The row is in an earlier batch.
+        writeResult(lookAheadColVector, i);
+      }
+    }
+
+    // The frames of the last rows are not complete yet.
+    for (int i = Math.max(0, size - endOffset); i < size; i++) {
+      outputColVector.isNull[i] = true;
+      outputColVector.noNulls = false;
+    }
+    evaluatedRowCount += size;
+  }
+
+  public boolean streamsResult() {
+    // No group value.
+    return true;
+  }
+
+  @Override
+  public boolean isPartitionEvaluator() {
+    return endOffset > 0;
+  }
+
+  @Override
+  public int getLookAheadRowCount() {
+    return endOffset;
+  }
+
+  /*
+   * Batch row i holds the result of the partition row endOffset rows before it.
+   */
+  @Override
+  public ColumnVector getLookAheadColumnVector(VectorizedRowBatch batch) {
+    return lookAheadColVector;
+  }
+
+  /*
+   * The frames of the last endOffset rows of the partition end at the last row.
+   */
+  @Override
+  public void finishPartitionBatch(VectorizedRowBatch batch, long partitionRowNum,
+      long partitionRowCount) {
+    Preconditions.checkState(partitionRowCount == evaluatedRowCount);
+    final long tailRowNum = Math.max(0, partitionRowCount - endOffset);
+    final int size = batch.size;
+    if (partitionRowNum + size <= tailRowNum) {
+      return;
+    }
+    if (!isTailEvaluated) {
+      if (tailColVector == null) {
+        try {
+          tailColVector = VectorizedBatchUtil.makeLikeColumnVector(batch.cols[outputColumnNum]);
+        } catch (HiveException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      tailColVector.reset();
+      for (long resultRowNum = tailRowNum; resultRowNum < partitionRowCount; resultRowNum++) {
+        removeRowsBefore(resultRowNum + startOffset);
+        writeResult(tailColVector, (int) (resultRowNum - tailRowNum));
+      }
+      isTailEvaluated = true;
+    }
+
+    ColumnVector outputColVector = batch.cols[outputColumnNum];
+    if (outputColVector.isRepeating) {
+      outputColVector.flatten(false, null, size);
+    }
+    for (int i = (int) Math.max(0, tailRowNum - partitionRowNum); i < size; i++) {
+      outputColVector.isNull[i] = false;
+      outputColVector.setElement(i, (int) (partitionRowNum + i - tailRowNum), tailColVector);
+    }
+  }
+
+  @Override
+  public void resetEvaluator() {
+    evaluatedRowCount = 0;
+    windowStartRowNum = 0;
+    windowEndRowNum = -1;
+    windowHead = 0;
+    windowTail = 0;
+    isTailEvaluated = false;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates count(column) or count(*) over a ROWS sliding window frame.
+ *
+ * For count(column), the window holds the non-null rows of the frame.  For count(*), which has
+ * no input expression, the result is just the number of rows in the frame.
+ */
+public class VectorPTFEvaluatorSlidingCount extends VectorPTFEvaluatorSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorSlidingCount.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private final boolean isCountStar;
+  private long nonNullCount;
+
+  public VectorPTFEvaluatorSlidingCount(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    isCountStar = (inputVecExpr == null);
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addRow(long rowNum, ColumnVector inputColVector, int index) {
+    if (isCountStar) {
+      return;
+    }
+    final int inputIndex = (inputColVector.isRepeating ? 0 : index);
+    if (!inputColVector.noNulls && inputColVector.isNull[inputIndex]) {
+      return;
+    }
+    nonNullCount++;
+    if (!isStartUnbounded) {
+      appendWindowRow(rowNum);
+    }
+  }
+
+  @Override
+  protected void removeWindowRow(int windowIndex) {
+    nonNullCount--;
+  }
+
+  @Override
+  protected void writeResult(ColumnVector outputColVector, int index) {
+    outputColVector.isNull[index] = false;
+    ((LongColumnVector) outputColVector).vector[index] =
+        (isCountStar ? windowEndRowNum - windowStartRowNum + 1 : nonNullCount);
+  }
+
+  @Override
+  protected void moveWindowValues(int fromIndex, int count, int newCapacity) {
+    // Only the row numbers are kept.
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.LONG;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    nonNullCount = 0;
+  }
+}
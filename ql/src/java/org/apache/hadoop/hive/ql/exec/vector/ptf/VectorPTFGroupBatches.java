@@ -44,6 +44,10 @@
 
 /**
  * This class is encapsulates one or more VectorizedRowBatch of a PTF group.
+ *
+ * When there are partition evaluators (e.g. lead, ntile), the whole PTF partition is buffered.
+ * When one of them looks ahead (lead), buffered rows are packed so every buffered batch except
+ * the last is full, which lets it find earlier buffered rows by partition row number.
  */
 public class VectorPTFGroupBatches {
 
@@ -54,6 +58,8 @@ public class VectorPTFGroupBatches {
   private Configuration hconf;
 
   private VectorPTFEvaluatorBase[] evaluators;
+  private VectorPTFEvaluatorBase[] partitionEvaluators;
+  private int[] lookAheadBufferedColumnNums;
   private int[] outputProjectionColumnMap;
   private int[] keyInputColumnMap;
 
@@ -67,6 +73,18 @@ public class VectorPTFGroupBatches {
 
   private int allocatedBufferedBatchCount;
   private int currentBufferedBatchCount;
+  private long bufferedRowCount;
+
+  // Only look ahead evaluators need every buffered batch but the last to be full.
+  private boolean packBufferedRows;
+
+  // The partition key columns saved when the partition's last batch is not available at forward
+  // time.
+  private VectorizedRowBatch partitionKeyBatch;
+
+  // Position while forwarding a partition for the partition evaluators.
+  private long partitionRowNum;
+  private long partitionRowCount;
 
   private int spillLimitBufferedBatchCount;
   private boolean didSpillToDisk;
@@ -81,6 +99,7 @@ public VectorPTFGroupBatches(Configuration hconf, int vectorizedPTFMaxMemoryBuff
     this.hconf = hconf;
     allocatedBufferedBatchCount = 0;
     currentBufferedBatchCount = 0;
+    bufferedRowCount = 0;
 
     spillLocalDirs = HiveUtils.getLocalDirList(hconf);
 
@@ -130,6 +149,50 @@ public void init(
     }
     this.overflowBatch = overflowBatch;
     bufferedBatches = new ArrayList<VectorizedRowBatch>(0);
+
+    /*
+     * Partition evaluators stream their partial results, so their output columns are buffered.
+     * For those that look ahead, remember the buffered column and keep enough buffered batches
+     * in memory so the rows they fill in have not been spilled yet.
+     */
+    final int evaluatorCount = evaluators.length;
+    ArrayList<VectorPTFEvaluatorBase> partitionEvaluatorList =
+        new ArrayList<VectorPTFEvaluatorBase>();
+    lookAheadBufferedColumnNums = new int[evaluatorCount];
+    int maxLookAheadRowCount = 0;
+    for (int i = 0; i < evaluatorCount; i++) {
+      VectorPTFEvaluatorBase evaluator = evaluators[i];
+      lookAheadBufferedColumnNums[i] = -1;
+      if (!evaluator.isPartitionEvaluator()) {
+        continue;
+      }
+      partitionEvaluatorList.add(evaluator);
+      final int lookAheadRowCount = evaluator.getLookAheadRowCount();
+      if (lookAheadRowCount > 0) {
+        for (int s = 0; s < streamingEvaluatorCount; s++) {
+          if (streamingEvaluatorNums[s] == i) {
+            lookAheadBufferedColumnNums[i] = nonKeyInputColumnCount + s;
+            break;
+          }
+        }
+        Preconditions.checkState(lookAheadBufferedColumnNums[i] != -1);
+        maxLookAheadRowCount = Math.max(maxLookAheadRowCount, lookAheadRowCount);
+      }
+    }
+    partitionEvaluators =
+        partitionEvaluatorList.toArray(new VectorPTFEvaluatorBase[0]);
+    packBufferedRows = (maxLookAheadRowCount > 0);
+    if (packBufferedRows) {
+      final int lookAheadBatchCount =
+          (maxLookAheadRowCount + VectorizedRowBatch.DEFAULT_SIZE - 1) /
+              VectorizedRowBatch.DEFAULT_SIZE;
+      spillLimitBufferedBatchCount =
+          Math.max(spillLimitBufferedBatchCount, lookAheadBatchCount + 1);
+    }
+  }
+
+  public boolean hasPartitionEvaluators() {
+    return partitionEvaluators.length > 0;
   }
 
   private VectorRowBytesContainer getSpillRowBytesContainer() throws HiveException {
@@ -175,9 +238,61 @@ public void evaluateStreamingGroupBatch(VectorizedRowBatch batch, boolean isLast
   public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch)
       throws HiveException {
 
-    for (VectorPTFEvaluatorBase evaluator : evaluators) {
+    final int evaluatorCount = evaluators.length;
+    for (int i = 0; i < evaluatorCount; i++) {
+      VectorPTFEvaluatorBase evaluator = evaluators[i];
       evaluator.evaluateGroupBatch(batch, isLastGroupBatch);
+      if (lookAheadBufferedColumnNums[i] != -1) {
+        fillLookAheadRows(evaluator, lookAheadBufferedColumnNums[i], batch);
+      }
+    }
+  }
+
+  private long getStoredRowCount() {
+    return (didSpillToDisk ? spillRowCount : 0) + bufferedRowCount;
+  }
+
+  /*
+   * The look ahead values of the first rows of this batch are the output values of the last rows
+   * already buffered for a look ahead evaluator (e.g. lead, or a sliding window frame that ends
+   * n FOLLOWING).  Those rows are still in memory since we keep at least the look ahead row count
+   * in the buffered batches.
+   */
+  private void fillLookAheadRows(VectorPTFEvaluatorBase evaluator, int bufferedColumnNum,
+      VectorizedRowBatch batch) {
+
+    final long storedRowCount = getStoredRowCount();
+    final long spilledRowCount = storedRowCount - bufferedRowCount;
+    final int lookAheadRowCount = evaluator.getLookAheadRowCount();
+    ColumnVector inputColVector = evaluator.getLookAheadColumnVector(batch);
+
+    // Batch row i is the look ahead row of partition row (storedRowCount - lookAheadRowCount + i).
+    final int firstBatchIndex = (int) Math.max(0, lookAheadRowCount - storedRowCount);
+    final int endBatchIndex = Math.min(lookAheadRowCount, batch.size);
+    for (int batchIndex = firstBatchIndex; batchIndex < endBatchIndex; batchIndex++) {
+      final long rowNum = storedRowCount - lookAheadRowCount + batchIndex;
+      Preconditions.checkState(rowNum >= spilledRowCount);
+      final long bufferedRowNum = rowNum - spilledRowCount;
+      VectorizedRowBatch bufferedBatch =
+          bufferedBatches.get((int) (bufferedRowNum / VectorizedRowBatch.DEFAULT_SIZE));
+      final int bufferedIndex = (int) (bufferedRowNum % VectorizedRowBatch.DEFAULT_SIZE);
+      ColumnVector outputColVector = bufferedBatch.cols[bufferedColumnNum];
+      if (outputColVector.isRepeating) {
+        outputColVector.flatten(false, null, bufferedBatch.size);
+      }
+      outputColVector.isNull[bufferedIndex] = false;
+      outputColVector.setElement(bufferedIndex, batchIndex, inputColVector);
+    }
+  }
+
+  private void finishPartitionBatch(VectorizedRowBatch batch) {
+    if (partitionEvaluators.length == 0) {
+      return;
+    }
+    for (VectorPTFEvaluatorBase evaluator : partitionEvaluators) {
+      evaluator.finishPartitionBatch(batch, partitionRowNum, partitionRowCount);
     }
+    partitionRowNum += batch.size;
   }
 
   private void fillGroupResults(VectorizedRowBatch batch) {
@@ -230,6 +345,7 @@ private void forwardBufferedBatches(VectorPTFOperator vecPTFOperator, int index)
     }
     overflowBatch.size = size;
     fillGroupResults(overflowBatch);
+    finishPartitionBatch(overflowBatch);
     vecPTFOperator.forward(overflowBatch, null);
   }
 
@@ -265,6 +381,7 @@ private void forwardSpilledBatches(VectorPTFOperator vecPTFOperator, VectorizedR
         if (overflowBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
 
           fillGroupResults(overflowBatch);
+          finishPartitionBatch(overflowBatch);
           vecPTFOperator.forward(overflowBatch, null);
 
           overflowBatch.reset();
@@ -275,6 +392,7 @@ private void forwardSpilledBatches(VectorPTFOperator vecPTFOperator, VectorizedR
       if (overflowBatch.size > 0) {
 
         fillGroupResults(overflowBatch);
+        finishPartitionBatch(overflowBatch);
         vecPTFOperator.forward(overflowBatch, null);
 
         overflowBatch.reset();
@@ -303,24 +421,35 @@ private void copyPartitionAndOrderColumnsToOverflow(VectorizedRowBatch lastBatch
     }
   }
 
-  public void fillGroupResultsAndForward(VectorPTFOperator vecPTFOperator,
-      VectorizedRowBatch lastBatch) throws HiveException {
+  private void forwardStoredBatches(VectorPTFOperator vecPTFOperator,
+      VectorizedRowBatch keyBatch) throws HiveException {
 
     if (didSpillToDisk) {
-      forwardSpilledBatches(vecPTFOperator, lastBatch);
+      forwardSpilledBatches(vecPTFOperator, keyBatch);
       didSpillToDisk = false;
     }
 
     if (currentBufferedBatchCount > 0) {
       overflowBatch.reset();
-      copyPartitionAndOrderColumnsToOverflow(lastBatch);
+      copyPartitionAndOrderColumnsToOverflow(keyBatch);
       for (int i = 0; i < currentBufferedBatchCount; i++) {
         forwardBufferedBatches(vecPTFOperator, i);
       }
       currentBufferedBatchCount = 0;
     }
+    bufferedRowCount = 0;
+  }
+
+  public void fillGroupResultsAndForward(VectorPTFOperator vecPTFOperator,
+      VectorizedRowBatch lastBatch) throws HiveException {
+
+    partitionRowNum = 0;
+    partitionRowCount = getStoredRowCount() + lastBatch.size;
+
+    forwardStoredBatches(vecPTFOperator, lastBatch);
 
     fillGroupResults(lastBatch);
+    finishPartitionBatch(lastBatch);
 
     // Save original projection.
     int[] originalProjections = lastBatch.projectedColumns;
@@ -338,6 +467,44 @@ public void fillGroupResultsAndForward(VectorPTFOperator vecPTFOperator,
 
   }
 
+  /*
+   * When there is a PARTITION BY and ORDER BY and partition evaluators, every batch of the
+   * partition is buffered and we only know the partition has ended when a batch of the next
+   * partition arrives (or the operator is closed).  So, we save the partition key columns by value
+   * when the partition starts.
+   */
+  public void savePartitionKeyColumns(VectorizedRowBatch batch) throws HiveException {
+    if (partitionKeyBatch == null) {
+      partitionKeyBatch = new VectorizedRowBatch(batch.numCols);
+      for (int keyColumnNum : keyInputColumnMap) {
+        partitionKeyBatch.cols[keyColumnNum] =
+            VectorizedBatchUtil.makeLikeColumnVector(batch.cols[keyColumnNum]);
+        partitionKeyBatch.cols[keyColumnNum].init();
+      }
+    }
+    for (int keyColumnNum : keyInputColumnMap) {
+      partitionKeyBatch.cols[keyColumnNum].reset();
+      VectorizedBatchUtil.copyRepeatingColumn(
+          batch, keyColumnNum, partitionKeyBatch, keyColumnNum, /* setByValue */ true);
+    }
+  }
+
+  public boolean hasBufferedPartition() {
+    return getStoredRowCount() > 0;
+  }
+
+  /*
+   * Take all the buffered batches of the partition, finish the partition evaluator results, and
+   * forward them to the next operator.
+   */
+  public void forwardPartition(VectorPTFOperator vecPTFOperator) throws HiveException {
+
+    partitionRowNum = 0;
+    partitionRowCount = getStoredRowCount();
+
+    forwardStoredBatches(vecPTFOperator, partitionKeyBatch);
+  }
+
   public void resetEvaluators() {
     for (VectorPTFEvaluatorBase evaluator : evaluators) {
       evaluator.resetEvaluator();
@@ -355,60 +522,133 @@ private VectorizedRowBatch newBufferedBatch(VectorizedRowBatch batch) throws Hiv
     return newBatch;
   }
 
-  public void bufferGroupBatch(VectorizedRowBatch batch) throws HiveException {
+  private void spillOldestBufferedBatch() throws HiveException, IOException {
 
-    try {
-      // When we've buffered the max allowed, spill the oldest one to make space.
-      if (currentBufferedBatchCount >= spillLimitBufferedBatchCount) {
+    VectorRowBytesContainer rowBytesContainer = getSpillRowBytesContainer();
+
+    if (!didSpillToDisk) {
+      // UNDONE: Don't reuse for now.
+      // rowBytesContainer.resetWrite();
+      didSpillToDisk = true;
+      spillRowCount = 0;
+    }
 
-        VectorRowBytesContainer rowBytesContainer = getSpillRowBytesContainer();
+    // Grab the oldest in-memory buffered batch and dump it to disk.
+    VectorizedRowBatch oldestBufferedBatch = bufferedBatches.remove(0);
 
-        if (!didSpillToDisk) {
-          // UNDONE: Don't reuse for now.
-          // rowBytesContainer.resetWrite();
-          didSpillToDisk = true;
-          spillRowCount = 0;
-        }
+    final boolean selectedInUse = oldestBufferedBatch.selectedInUse;
+    int[] selected = oldestBufferedBatch.selected;
+    final int size = oldestBufferedBatch.size;
+    for (int logicalIndex = 0; logicalIndex < size; logicalIndex++) {
+      final int batchIndex = (selectedInUse ? selected[logicalIndex] : logicalIndex);
 
-        // Grab the oldest in-memory buffered batch and dump it to disk.
-        VectorizedRowBatch oldestBufferedBatch = bufferedBatches.remove(0);
+      Output output = rowBytesContainer.getOuputForRowBytes();
+      bufferedBatchVectorSerializeRow.setOutputAppend(output);
+      bufferedBatchVectorSerializeRow.serializeWrite(oldestBufferedBatch, batchIndex);
+      rowBytesContainer.finishRow();
+      spillRowCount++;
+    }
+    bufferedRowCount -= size;
 
-        final boolean selectedInUse = oldestBufferedBatch.selectedInUse;
-        int[] selected = oldestBufferedBatch.selected;
-        final int size = oldestBufferedBatch.size;
-        for (int logicalIndex = 0; logicalIndex < size; logicalIndex++) {
-          final int batchIndex = (selectedInUse ? selected[logicalIndex] : logicalIndex);
+    // Put now available buffered batch at end.
+    oldestBufferedBatch.reset();
+    bufferedBatches.add(oldestBufferedBatch);
+    currentBufferedBatchCount--;
+  }
 
-          Output output = rowBytesContainer.getOuputForRowBytes();
-          bufferedBatchVectorSerializeRow.setOutputAppend(output);
-          bufferedBatchVectorSerializeRow.serializeWrite(oldestBufferedBatch, batchIndex);
-          rowBytesContainer.finishRow();
-          spillRowCount++;
-        }
+  private VectorizedRowBatch startBufferedBatch(VectorizedRowBatch batch)
+      throws HiveException, IOException {
 
-        // Put now available buffered batch at end.
-        oldestBufferedBatch.reset();
-        bufferedBatches.add(oldestBufferedBatch);
-        currentBufferedBatchCount--;
-      }
+    // When we've buffered the max allowed, spill the oldest one to make space.
+    if (currentBufferedBatchCount >= spillLimitBufferedBatchCount) {
+      spillOldestBufferedBatch();
+    }
 
-      final int bufferedColumnCount = bufferedColumnMap.length;
-      if (allocatedBufferedBatchCount <= currentBufferedBatchCount) {
-        VectorizedRowBatch newBatch = newBufferedBatch(batch);
-        bufferedBatches.add(newBatch);
-        allocatedBufferedBatchCount++;
-      }
+    if (allocatedBufferedBatchCount <= currentBufferedBatchCount) {
+      VectorizedRowBatch newBatch = newBufferedBatch(batch);
+      bufferedBatches.add(newBatch);
+      allocatedBufferedBatchCount++;
+    }
 
-      VectorizedRowBatch bufferedBatch = bufferedBatches.get(currentBufferedBatchCount++);
+    VectorizedRowBatch bufferedBatch = bufferedBatches.get(currentBufferedBatchCount++);
+    bufferedBatch.size = 0;
+    return bufferedBatch;
+  }
+
+  /*
+   * Append rows of a column to a partially filled buffered batch column.
+   */
+  private static void appendColumnVector(ColumnVector sourceColVector, int sourceIndex,
+      ColumnVector targetColVector, int targetIndex, int count) {
+
+    if (targetIndex == 0) {
+      targetColVector.reset();
+    } else if (targetColVector.isRepeating) {
+      targetColVector.flatten(false, null, targetIndex);
+    }
+    for (int i = 0; i < count; i++) {
+      targetColVector.isNull[targetIndex + i] = false;
+      targetColVector.setElement(targetIndex + i, sourceIndex + i, sourceColVector);
+    }
+  }
+
+  public void bufferGroupBatch(VectorizedRowBatch batch) throws HiveException {
 
-      // Copy critical columns.
+    try {
+      final int bufferedColumnCount = bufferedColumnMap.length;
       final int size = batch.size;
-      for (int i = 0; i < bufferedColumnCount; i++) {
-        VectorizedBatchUtil.copyNonSelectedColumnVector(
-            batch, bufferedColumnMap[i], bufferedBatch, i, size);
+
+      if (!packBufferedRows) {
+
+        // Buffer the batch as is.
+        VectorizedRowBatch bufferedBatch = startBufferedBatch(batch);
+
+        // Copy critical columns.
+        for (int i = 0; i < bufferedColumnCount; i++) {
+          VectorizedBatchUtil.copyNonSelectedColumnVector(
+              batch, bufferedColumnMap[i], bufferedBatch, i, size);
+        }
+
+        bufferedBatch.size = size;
+        bufferedRowCount += size;
+        return;
       }
 
-      bufferedBatch.size = size;
+      int batchIndex = 0;
+      while (batchIndex < size) {
+
+        // Fill up the last buffered batch before starting another one.
+        VectorizedRowBatch bufferedBatch;
+        if (currentBufferedBatchCount == 0 ||
+            bufferedBatches.get(currentBufferedBatchCount - 1).size ==
+                VectorizedRowBatch.DEFAULT_SIZE) {
+          bufferedBatch = startBufferedBatch(batch);
+        } else {
+          bufferedBatch = bufferedBatches.get(currentBufferedBatchCount - 1);
+        }
+
+        final int bufferedSize = bufferedBatch.size;
+        final int count =
+            Math.min(size - batchIndex, VectorizedRowBatch.DEFAULT_SIZE - bufferedSize);
+        if (bufferedSize == 0 && count == size) {
+
+          // Copy critical columns.
+          for (int i = 0; i < bufferedColumnCount; i++) {
+            VectorizedBatchUtil.copyNonSelectedColumnVector(
+                batch, bufferedColumnMap[i], bufferedBatch, i, size);
+          }
+        } else {
+          for (int i = 0; i < bufferedColumnCount; i++) {
+            appendColumnVector(
+                batch.cols[bufferedColumnMap[i]], batchIndex,
+                bufferedBatch.cols[i], bufferedSize, count);
+          }
+        }
+
+        bufferedBatch.size = bufferedSize + count;
+        bufferedRowCount += count;
+        batchIndex += count;
+      }
     } catch (IOException e) {
       throw new HiveException(e);
     }
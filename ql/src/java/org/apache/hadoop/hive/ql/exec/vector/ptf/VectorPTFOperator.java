@@ -139,6 +139,12 @@ public class VectorPTFOperator extends Operator<PTFDesc>
 
   private transient boolean allEvaluatorsAreStreaming;
 
+  // True when there are partition evaluators (e.g. lead, ntile) and a PARTITION BY and ORDER BY,
+  // so all the group batches of a partition are buffered until the partition ends.
+  private transient boolean isBufferingPartition;
+
+  private transient boolean lastBatchWasLastGroupBatch;
+
   private transient boolean isFirstPartition;
 
   private transient boolean[] currentPartitionIsNull;
@@ -315,8 +321,6 @@ protected void initializeOp(Configuration hconf) throws HiveException {
 
     streamingEvaluatorNums = VectorPTFDesc.getStreamingEvaluatorNums(evaluators);
 
-    allEvaluatorsAreStreaming = (streamingEvaluatorNums.length == evaluatorCount);
-
     /*
      * Setup the overflow batch.
      */
@@ -334,6 +338,14 @@ protected void initializeOp(Configuration hconf) throws HiveException {
         streamingEvaluatorNums,
         overflowBatch);
 
+    // Partition evaluators stream partial results, but the results are not final until the
+    // partition has ended.
+    allEvaluatorsAreStreaming =
+        (streamingEvaluatorNums.length == evaluatorCount && !groupBatches.hasPartitionEvaluators());
+
+    isBufferingPartition = (isPartitionOrderBy && groupBatches.hasPartitionEvaluators());
+    lastBatchWasLastGroupBatch = false;
+
     isFirstPartition = true;
 
     batchCounter = 0;
@@ -378,12 +390,31 @@ public void process(Object row, int tag) throws HiveException {
       if (isFirstPartition) {
         isFirstPartition = false;
         setCurrentPartition(batch);
+        if (isBufferingPartition) {
+          groupBatches.savePartitionKeyColumns(batch);
+        }
       } else if (isPartitionChanged(batch)) {
+        if (isBufferingPartition) {
+
+          // The previous partition is complete.
+          groupBatches.forwardPartition(this);
+          groupBatches.savePartitionKeyColumns(batch);
+        }
         setCurrentPartition(batch);
         groupBatches.resetEvaluators();
       }
     }
 
+    if (isBufferingPartition) {
+
+      // Evaluate the group batch and buffer it; the group batches of the partition are forwarded
+      // when the partition ends.
+      groupBatches.evaluateGroupBatch(batch, isLastGroupBatch);
+      groupBatches.bufferGroupBatch(batch);
+      lastBatchWasLastGroupBatch = isLastGroupBatch;
+      return;
+    }
+
     if (allEvaluatorsAreStreaming) {
 
       // We can process this batch immediately.
@@ -551,6 +582,14 @@ public void forward(Object row, ObjectInspector rowInspector) throws HiveExcepti
 
   @Override
   protected void closeOp(boolean abort) throws HiveException {
+
+    // When buffering partitions, the last partition is complete if we saw the last batch of its
+    // last group.
+    if (!abort && isBufferingPartition && lastBatchWasLastGroupBatch &&
+        groupBatches.hasBufferedPartition()) {
+      groupBatches.forwardPartition(this);
+    }
+
     super.closeOp(abort);
 
     // We do not try to finish and flush an in-progress group because correct values require the
@@ -54,6 +54,8 @@
 import org.apache.hadoop.hive.ql.exec.Utilities;
 import org.apache.hadoop.hive.ql.exec.spark.SparkDynamicPartitionPruner;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.parquet.MapredParquetInputFormat;
+import org.apache.hadoop.hive.ql.io.parquet.VectorizedParquetInputFormat;
 import org.apache.hadoop.hive.ql.log.PerfLogger;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
@@ -247,6 +249,12 @@ public static InputFormat<WritableComparable, Writable> wrapForLlap(
       isVectorized = HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_NONVECTOR_WRAPPER_ENABLED)
           && (Utilities.getPlanPath(conf) != null);
     }
+    if (!isSupported && isCacheOnly && Utilities.getIsVectorized(conf)
+        && HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_PARQUET_ENABLED)) {
+      // Parquet can be decoded on the IO threads; otherwise it only uses the caches.
+      isSupported = inputFormat instanceof MapredParquetInputFormat
+          || inputFormat instanceof VectorizedParquetInputFormat;
+    }
     boolean isSerdeBased = false;
     if (isVectorized && !isSupported
         && HiveConf.getBoolVar(conf, ConfVars.LLAP_IO_ENCODE_ENABLED)) {
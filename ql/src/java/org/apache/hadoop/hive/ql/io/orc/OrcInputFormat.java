@@ -2189,7 +2189,11 @@ public static boolean[] pickStripesViaTranslatedSarg(SearchArgument sarg,
     return pickStripesInternal(sarg, filterColumns, stripeStats, stripeCount, null, evolution);
   }
 
-  private static boolean[] pickStripes(SearchArgument sarg,
+  /**
+   * Determines which stripes may contain rows matching the SARG, based on stripe statistics.
+   * @return Whether each stripe is needed; null if the statistics cannot be used.
+   */
+  public static boolean[] pickStripes(SearchArgument sarg,
                                        OrcFile.WriterVersion writerVersion,
                                        List<StripeStatistics> stripeStats,
       int stripeCount, Path filePath, final SchemaEvolution evolution) {
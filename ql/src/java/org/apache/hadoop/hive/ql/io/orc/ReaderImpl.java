@@ -22,9 +22,15 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.orc.encoded.CoalescingDataReader;
 import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.orc.DataReader;
+import org.apache.orc.OrcConf;
+import org.apache.orc.impl.DataReaderProperties;
+import org.apache.orc.impl.RecordReaderUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +86,21 @@ public RecordReader rowsOptions(Options options) throws IOException {
   @Override
   public RecordReader rowsOptions(Options options, Configuration conf) throws IOException {
     LOG.info("Reading ORC rows from " + path + " with " + options);
+    if (options.getDataReader() == null && CoalescingDataReader.isEnabled(conf)) {
+      boolean useZeroCopy = options.getUseZeroCopy() != null
+          ? options.getUseZeroCopy() : OrcConf.USE_ZEROCOPY.getBoolean(conf);
+      if (!useZeroCopy) {
+        FileSystem fs = path.getFileSystem(conf);
+        DataReader dataReader = RecordReaderUtils.createDefaultDataReader(
+            DataReaderProperties.builder().withBufferSize(getCompressionSize())
+            .withCompression(compressionKind)
+            .withFileSystem(fs).withPath(path)
+            .withTypeCount(getSchema().getMaximumId() + 1)
+            .withZeroCopy(false)
+            .build());
+        options = options.clone().dataReader(new CoalescingDataReader(dataReader, fs, path, conf));
+      }
+    }
     return new RecordReaderImpl(this, options, conf);
   }
 
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.io.orc.encoded;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.common.io.DiskRangeList.MutateHelper;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.orc.CompressionCodec;
+import org.apache.orc.DataReader;
+import org.apache.orc.OrcFile;
+import org.apache.orc.OrcProto;
+import org.apache.orc.StripeInformation;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.impl.BufferChunk;
+import org.apache.orc.impl.OrcIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A DataReader that plans the disk reads itself instead of issuing one read per range. Ranges
+ * that are close to each other are read in one request, since on object stores the fixed cost
+ * of a request is much higher than the cost of reading a small gap; the resulting requests for
+ * a file can be issued in parallel, each on its own input stream. Ranges can also be prefetched
+ * in the background, and are then served from memory when they are requested.
+ * Zero-copy reads, stripe footers and row indexes are handled by the wrapped reader.
+ */
+public class CoalescingDataReader implements DataReader {
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescingDataReader.class);
+
+  private static ExecutorService readPool;
+
+  private final DataReader baseReader;
+  private final FileSystem fs;
+  private final Path path;
+  private final long maxGap, maxReadSize;
+  private final int parallelism, readThreads;
+  /** Streams that are not currently in use; a stream is opened for each concurrent read. */
+  private final ConcurrentLinkedQueue<FSDataInputStream> freeStreams =
+      new ConcurrentLinkedQueue<>();
+  private final List<FSDataInputStream> allStreams = new ArrayList<>();
+  private final List<Prefetch> prefetches = new ArrayList<>();
+  private long rangesRead = 0, requestsIssued = 0, prefetchHitBytes = 0;
+
+  public CoalescingDataReader(
+      DataReader baseReader, FileSystem fs, Path path, Configuration conf) {
+    this(baseReader, fs, path, HiveConf.getSizeVar(conf, ConfVars.HIVE_ORC_COALESCE_MAX_GAP),
+        HiveConf.getSizeVar(conf, ConfVars.HIVE_ORC_COALESCE_MAX_READ_SIZE),
+        HiveConf.getIntVar(conf, ConfVars.HIVE_ORC_READ_PARALLELISM),
+        HiveConf.getIntVar(conf, ConfVars.HIVE_ORC_READ_THREADS));
+  }
+
+  @VisibleForTesting
+  CoalescingDataReader(DataReader baseReader, FileSystem fs, Path path,
+      long maxGap, long maxReadSize, int parallelism, int readThreads) {
+    this.baseReader = baseReader;
+    this.fs = fs;
+    this.path = path;
+    this.maxGap = maxGap;
+    // The buffers for a single request are allocated as one array.
+    this.maxReadSize = Math.min(maxReadSize, Integer.MAX_VALUE);
+    this.parallelism = Math.max(1, parallelism);
+    this.readThreads = Math.max(1, readThreads);
+  }
+
+  public static boolean isEnabled(Configuration conf) {
+    return conf != null && HiveConf.getBoolVar(conf, ConfVars.HIVE_ORC_COALESCE_READS);
+  }
+
+  /**
+   * The pool is shared by all the readers, so the number of reads in flight in the process is
+   * bounded no matter how many files are read at once; idle threads exit after a minute.
+   */
+  private static synchronized ExecutorService getReadPool(int readThreads) {
+    if (readPool == null) {
+      ThreadFactory threadFactory = new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("ORC-Coalesced-Read-%d").build();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(readThreads, readThreads,
+          60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+      pool.allowCoreThreadTimeOut(true);
+      readPool = pool;
+    }
+    return readPool;
+  }
+
+  /** A set of ranges that are read with a single request. */
+  @VisibleForTesting
+  static final class ReadGroup {
+    final List<DiskRangeList> ranges = new ArrayList<>();
+    final long offset;
+    long end;
+
+    ReadGroup(DiskRangeList first) {
+      this.offset = first.getOffset();
+      this.end = first.getEnd();
+      ranges.add(first);
+    }
+
+    void add(DiskRangeList range) {
+      end = Math.max(end, range.getEnd());
+      ranges.add(range);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + offset + ", " + end + "): " + ranges.size() + " ranges";
+    }
+  }
+
+  private static final class Prefetch {
+    final long offset, end;
+    final Future<ByteBuffer> data;
+
+    Prefetch(long offset, long end, Future<ByteBuffer> data) {
+      this.offset = offset;
+      this.end = end;
+      this.data = data;
+    }
+  }
+
+  /**
+   * Groups the ranges that have no data yet into read requests. A range joins the previous
+   * request if the gap between them is at most maxGap, and the request does not grow over
+   * maxReadSize; ranges that are out of order always start a new request.
+   */
+  @VisibleForTesting
+  static List<ReadGroup> planReads(DiskRangeList range, long maxGap, long maxReadSize) {
+    List<ReadGroup> groups = new ArrayList<>();
+    ReadGroup current = null;
+    for (DiskRangeList r = range; r != null; r = r.next) {
+      if (r.hasData()) continue;
+      if (current != null && r.getOffset() >= current.offset
+          && r.getOffset() - current.end <= maxGap
+          && Math.max(current.end, r.getEnd()) - current.offset <= maxReadSize) {
+        current.add(r);
+      } else {
+        current = new ReadGroup(r);
+        groups.add(current);
+      }
+    }
+    return groups;
+  }
+
+  @Override
+  public DiskRangeList readFileData(
+      DiskRangeList range, long baseOffset, boolean doForceDirect) throws IOException {
+    if (baseReader.isTrackingDiskRanges()) {
+      // Zero-copy reads return the buffers of the underlying file; nothing to coalesce.
+      return baseReader.readFileData(range, baseOffset, doForceDirect);
+    }
+    List<ReadGroup> groups = planReads(range, maxGap, maxReadSize);
+    if (groups.isEmpty()) return range;
+    ByteBuffer[] buffers = new ByteBuffer[groups.size()];
+    List<Integer> toRead = new ArrayList<>(groups.size());
+    for (int i = 0; i < buffers.length; ++i) {
+      ReadGroup group = groups.get(i);
+      buffers[i] = getPrefetched(baseOffset + group.offset, baseOffset + group.end);
+      if (buffers[i] == null) {
+        toRead.add(i);
+      } else {
+        prefetchHitBytes += buffers[i].remaining();
+      }
+    }
+    readGroups(groups, toRead, baseOffset, buffers);
+
+    DiskRangeList prev = range.prev;
+    if (prev == null) {
+      prev = new MutateHelper(range);
+    }
+    for (int i = 0; i < buffers.length; ++i) {
+      ReadGroup group = groups.get(i);
+      for (DiskRangeList r : group.ranges) {
+        ByteBuffer bb = slice(buffers[i], r.getOffset() - group.offset, r.getLength());
+        if (doForceDirect) {
+          ByteBuffer direct = ByteBuffer.allocateDirect(bb.remaining());
+          direct.put(bb);
+          direct.flip();
+          bb = direct;
+        }
+        r.replaceSelfWith(new BufferChunk(bb, r.getOffset()));
+      }
+      rangesRead += group.ranges.size();
+    }
+    requestsIssued += toRead.size();
+    return prev.next;
+  }
+
+  /** Reads the groups, splitting them between up to parallelism streams. */
+  private void readGroups(final List<ReadGroup> groups, List<Integer> toRead,
+      final long baseOffset, final ByteBuffer[] buffers) throws IOException {
+    int taskCount = Math.min(parallelism, toRead.size());
+    if (taskCount <= 1) {
+      for (int ix : toRead) {
+        ReadGroup group = groups.get(ix);
+        buffers[ix] = readRange(baseOffset + group.offset, baseOffset + group.end);
+      }
+      return;
+    }
+    List<Future<Void>> futures = new ArrayList<>(taskCount);
+    for (int task = 0; task < taskCount; ++task) {
+      final List<Integer> taskGroups = new ArrayList<>();
+      for (int i = task; i < toRead.size(); i += taskCount) {
+        taskGroups.add(toRead.get(i));
+      }
+      futures.add(getReadPool(readThreads).submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          for (int ix : taskGroups) {
+            ReadGroup group = groups.get(ix);
+            buffers[ix] = readRange(baseOffset + group.offset, baseOffset + group.end);
+          }
+          return null;
+        }
+      }));
+    }
+    IOException error = null;
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading " + path, e);
+      } catch (ExecutionException e) {
+        if (error == null) {
+          error = (e.getCause() instanceof IOException) ? (IOException) e.getCause()
+              : new IOException("Failed to read " + path, e.getCause());
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private ByteBuffer readRange(long offset, long end) throws IOException {
+    byte[] data = new byte[(int) (end - offset)];
+    FSDataInputStream stream = freeStreams.poll();
+    if (stream == null) {
+      stream = openStream();
+    }
+    try {
+      stream.readFully(offset, data, 0, data.length);
+    } finally {
+      freeStreams.offer(stream);
+    }
+    return ByteBuffer.wrap(data);
+  }
+
+  private FSDataInputStream openStream() throws IOException {
+    FSDataInputStream stream = fs.open(path);
+    synchronized (allStreams) {
+      allStreams.add(stream);
+    }
+    return stream;
+  }
+
+  private static ByteBuffer slice(ByteBuffer bb, long offset, long length) {
+    ByteBuffer result = bb.duplicate();
+    result.position(bb.position() + (int) offset);
+    result.limit(result.position() + (int) length);
+    return result.slice();
+  }
+
+  /**
+   * Starts reading the given ranges (offsets in the file) in the background. Any reads that
+   * fall within a prefetched range are then served from memory. Replaces the ranges prefetched
+   * by the previous call, whether they have been used or not.
+   */
+  public void prefetch(DiskRangeList ranges) {
+    clearPrefetches();
+    for (DiskRangeList r = ranges; r != null; r = r.next) {
+      if (r.getLength() > maxReadSize) continue;
+      final long offset = r.getOffset(), end = r.getEnd();
+      Future<ByteBuffer> data = getReadPool(readThreads).submit(new Callable<ByteBuffer>() {
+        @Override
+        public ByteBuffer call() throws IOException {
+          return readRange(offset, end);
+        }
+      });
+      prefetches.add(new Prefetch(offset, end, data));
+    }
+  }
+
+  private ByteBuffer getPrefetched(long offset, long end) throws IOException {
+    for (Prefetch prefetch : prefetches) {
+      if (prefetch.offset > offset || prefetch.end < end) continue;
+      try {
+        return slice(prefetch.data.get(), offset - prefetch.offset, end - offset);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading " + path, e);
+      } catch (ExecutionException e) {
+        // Not fatal; the range will be read again.
+        LOG.info("Failed to prefetch [{}, {}) from {}", prefetch.offset, prefetch.end, path,
+            e.getCause());
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private void clearPrefetches() {
+    for (Prefetch prefetch : prefetches) {
+      prefetch.data.cancel(false);
+    }
+    prefetches.clear();
+  }
+
+  /** The number of ranges that were read from disk by this reader. */
+  public long getRangesRead() {
+    return rangesRead;
+  }
+
+  /** The number of disk read requests this reader has issued, not including prefetches. */
+  public long getRequestsIssued() {
+    return requestsIssued;
+  }
+
+  /** The number of bytes that were served from prefetched data. */
+  public long getPrefetchHitBytes() {
+    return prefetchHitBytes;
+  }
+
+  @Override
+  public void open() throws IOException {
+    baseReader.open();
+  }
+
+  @Override
+  public OrcIndex readRowIndex(StripeInformation stripe, TypeDescription fileSchema,
+      OrcProto.StripeFooter footer, boolean ignoreNonUtf8BloomFilter, boolean[] included,
+      OrcProto.RowIndex[] indexes, boolean[] sargColumns, OrcFile.WriterVersion version,
+      OrcProto.Stream.Kind[] bloomFilterKinds,
+      OrcProto.BloomFilterIndex[] bloomFilterIndices) throws IOException {
+    return baseReader.readRowIndex(stripe, fileSchema, footer, ignoreNonUtf8BloomFilter,
+        included, indexes, sargColumns, version, bloomFilterKinds, bloomFilterIndices);
+  }
+
+  @Override
+  public OrcProto.StripeFooter readStripeFooter(StripeInformation stripe) throws IOException {
+    return baseReader.readStripeFooter(stripe);
+  }
+
+  @Override
+  public boolean isTrackingDiskRanges() {
+    return baseReader.isTrackingDiskRanges();
+  }
+
+  @Override
+  public void releaseBuffer(ByteBuffer buffer) {
+    baseReader.releaseBuffer(buffer);
+  }
+
+  @Override
+  public CompressionCodec getCompressionCodec() {
+    return baseReader.getCompressionCodec();
+  }
+
+  @Override
+  public CoalescingDataReader clone() {
+    return new CoalescingDataReader(
+        baseReader.clone(), fs, path, maxGap, maxReadSize, parallelism, readThreads);
+  }
+
+  @Override
+  public void close() throws IOException {
+    clearPrefetches();
+    IOException error = null;
+    synchronized (allStreams) {
+      for (FSDataInputStream stream : allStreams) {
+        try {
+          stream.close();
+        } catch (IOException e) {
+          error = e;
+        }
+      }
+      allStreams.clear();
+    }
+    freeStreams.clear();
+    try {
+      baseReader.close();
+    } catch (IOException e) {
+      error = e;
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+}
@@ -84,6 +84,7 @@
 import org.apache.hadoop.hive.common.HiveStatsUtils;
 import org.apache.hadoop.hive.common.ObjectPair;
 import org.apache.hadoop.hive.common.StatsSetupConst;
+import org.apache.hadoop.hive.common.StringInternUtils;
 import org.apache.hadoop.hive.common.ValidTxnList;
 import org.apache.hadoop.hive.common.ValidTxnWriteIdList;
 import org.apache.hadoop.hive.common.ValidWriteIdList;
@@ -111,6 +112,7 @@
 import org.apache.hadoop.hive.metastore.api.AlreadyExistsException;
 import org.apache.hadoop.hive.metastore.api.CheckConstraintsRequest;
 import org.apache.hadoop.hive.metastore.api.CmRecycleRequest;
+import org.apache.hadoop.hive.metastore.api.ColumnStatistics;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
 import org.apache.hadoop.hive.metastore.api.CompactionResponse;
 import org.apache.hadoop.hive.metastore.api.CompactionType;
@@ -151,6 +153,8 @@
 import org.apache.hadoop.hive.metastore.api.SetPartitionsStatsRequest;
 import org.apache.hadoop.hive.metastore.api.ShowCompactResponse;
 import org.apache.hadoop.hive.metastore.api.SkewedInfo;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.TableValidWriteIds;
 import org.apache.hadoop.hive.metastore.api.UniqueConstraintsRequest;
 import org.apache.hadoop.hive.metastore.api.WMFullResourcePlan;
 import org.apache.hadoop.hive.metastore.api.WMMapping;
@@ -161,6 +165,7 @@
 import org.apache.hadoop.hive.metastore.api.WMTrigger;
 import org.apache.hadoop.hive.metastore.api.WMValidateResourcePlanResponse;
 import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
+import org.apache.hadoop.hive.metastore.txn.TxnUtils;
 import org.apache.hadoop.hive.metastore.utils.MetaStoreUtils;
 import org.apache.hadoop.hive.ql.ErrorMsg;
 import org.apache.hadoop.hive.ql.exec.AbstractFileMergeOperator;
@@ -220,6 +225,8 @@ public class Hive {
 
   // metastore calls timing information
   private final ConcurrentHashMap<String, Long> metaCallTimeMap = new ConcurrentHashMap<>();
+  // metadata fetched while compiling the current query; null if the cache is disabled
+  private QueryMetadataCache metadataCache;
 
   private static ThreadLocal<Hive> hiveDB = new ThreadLocal<Hive>() {
     @Override
@@ -682,6 +689,7 @@ public void alterTable(String dbName, String tblName, Table newTbl, boolean casc
       if (cascade) {
         environmentContext.putToProperties(StatsSetupConst.CASCADE, StatsSetupConst.TRUE);
       }
+      invalidateMetadataCache(dbName, tblName);
       getMSC().alter_table_with_environmentContext(dbName, tblName, newTbl.getTTable(), environmentContext);
     } catch (MetaException e) {
       throw new HiveException("Unable to alter table. " + e.getMessage(), e);
@@ -784,6 +792,7 @@ public void alterPartitions(String tblName, List<Partition> newParts, Environmen
         }
         newTParts.add(tmpPart.getTPartition());
       }
+      invalidateMetadataCache(names[0], names[1]);
       getMSC().alter_partitions(names[0], names[1], newTParts, environmentContext);
     } catch (MetaException e) {
       throw new HiveException("Unable to alter partition. " + e.getMessage(), e);
@@ -826,6 +835,7 @@ public void renamePartition(Table tbl, Map<String, String> oldPartSpec, Partitio
           pvals.add(val);
         }
       }
+      invalidateMetadataCache(tbl.getDbName(), tbl.getTableName());
       getMSC().renamePartition(tbl.getDbName(), tbl.getTableName(), pvals,
           newPart.getTPartition());
 
@@ -915,6 +925,7 @@ public void createTable(Table tbl, boolean ifNotExists,
           tTbl.setPrivileges(principalPrivs);
         }
       }
+      invalidateMetadataCache(tTbl.getDbName(), tTbl.getTableName());
       if (primaryKeys == null && foreignKeys == null
               && uniqueConstraints == null && notNullConstraints == null && defaultConstraints == null
           && checkConstraints == null) {
@@ -1025,6 +1036,7 @@ public void dropTable(String dbName, String tableName, boolean deleteData,
   public void dropTable(String dbName, String tableName, boolean deleteData,
       boolean ignoreUnknownTab, boolean ifPurge) throws HiveException {
     try {
+      invalidateMetadataCache(dbName, tableName);
       getMSC().dropTable(dbName, tableName, deleteData, ignoreUnknownTab, ifPurge);
     } catch (NoSuchObjectException e) {
       if (!ignoreUnknownTab) {
@@ -1050,6 +1062,7 @@ public void truncateTable(String dbDotTableName, Map<String, String> partSpec) t
 
       List<String> partNames = ((null == partSpec)
                        ? null : getPartitionNames(table.getDbName(), table.getTableName(), partSpec, (short) -1));
+      invalidateMetadataCache(table.getDbName(), table.getTableName());
       getMSC().truncateTable(table.getDbName(), table.getTableName(), partNames);
     } catch (Exception e) {
       throw new HiveException(e);
@@ -1125,8 +1138,27 @@ public Table getTable(final String dbName, final String tableName,
 
     // Get the table from metastore
     org.apache.hadoop.hive.metastore.api.Table tTable = null;
-    try {
-      tTable = getMSC().getTable(dbName, tableName);
+    String validWriteIds = null;
+    try {
+      if (metadataCache != null) {
+        tTable = metadataCache.getTable(dbName, tableName);
+        if (tTable == null && metadataCache.isTableKept(dbName, tableName)) {
+          // A transactional table kept from an earlier query is reused if it wasn't written to.
+          validWriteIds = getValidWriteIdsForCache(dbName, tableName);
+          tTable = metadataCache.revalidateTable(dbName, tableName, validWriteIds);
+        }
+      }
+      if (tTable == null) {
+        tTable = getMSC().getTable(dbName, tableName);
+        if (metadataCache != null) {
+          if (!metadataCache.isSessionScope() || !AcidUtils.isTransactionalTable(tTable)) {
+            validWriteIds = null;
+          } else if (validWriteIds == null) {
+            validWriteIds = getValidWriteIdsForCache(dbName, tableName);
+          }
+          metadataCache.putTable(dbName, tableName, tTable, validWriteIds);
+        }
+      }
     } catch (NoSuchObjectException e) {
       if (throwException) {
         LOG.error("Table " + dbName + "." + tableName + " not found: " + e.getMessage());
@@ -2442,6 +2474,7 @@ public void loadTable(Path loadPath, String tableName, LoadFileType loadFileType
    */
   public Partition createPartition(Table tbl, Map<String, String> partSpec) throws HiveException {
     try {
+      invalidateMetadataCache(tbl.getDbName(), tbl.getTableName());
       return new Partition(tbl, getMSC().add_partition(
           Partition.createMetaPartitionObject(tbl, partSpec, null)));
     } catch (Exception e) {
@@ -2460,6 +2493,7 @@ public List<Partition> createPartitions(AddPartitionDesc addPartitionDesc) throw
     }
     List<Partition> out = new ArrayList<Partition>();
     try {
+      invalidateMetadataCache(addPartitionDesc.getDbName(), addPartitionDesc.getTableName());
       if (!addPartitionDesc.getReplicationSpec().isInReplicationScope()){
         // TODO: normally, the result is not necessary; might make sense to pass false
         for (org.apache.hadoop.hive.metastore.api.Partition outPart
@@ -2779,6 +2813,7 @@ public boolean dropPartition(String db_name, String tbl_name,
   public boolean dropPartition(String dbName, String tableName, List<String> partVals, PartitionDropOptions options)
       throws HiveException {
     try {
+      invalidateMetadataCache(dbName, tableName);
       return getMSC().dropPartition(dbName, tableName, partVals, options);
     } catch (NoSuchObjectException e) {
       throw new HiveException("Partition or table doesn't exist.", e);
@@ -2893,6 +2928,7 @@ public List<Partition> dropPartitions(String dbName, String tblName,
         partExprs.add(new org.apache.hadoop.hive.metastore.utils.ObjectPair<>(partSpec.getPrefixLength(),
             SerializationUtilities.serializeExpressionToKryo(partSpec.getPartSpec())));
       }
+      invalidateMetadataCache(dbName, tblName);
       List<org.apache.hadoop.hive.metastore.api.Partition> tParts = getMSC().dropPartitions(
           dbName, tblName, partExprs, dropOptions);
       return convertFromMetastore(tbl, tParts);
@@ -3080,45 +3116,104 @@ public List<Partition> getPartitionsByNames(Table tbl,
    */
   public List<Partition> getPartitionsByNames(Table tbl, List<String> partNames)
       throws HiveException {
+    return getPartitionsByNames(tbl, partNames, false);
+  }
+
+  /**
+   * Get all partitions of the table that matches the list of given partition names.
+   *
+   * @param tbl
+   *          object for which partition is needed. Must be partitioned.
+   * @param partNames
+   *          list of partition names
+   * @param compact
+   *          whether to return the partitions in compact form (see {@link PartitionCompactor});
+   *          their column lists are then shared and cannot be modified.
+   * @return list of partition objects; in the order of partNames when the query metadata cache
+   *         is in use
+   * @throws HiveException
+   */
+  public List<Partition> getPartitionsByNames(Table tbl, List<String> partNames,
+      boolean compact) throws HiveException {
 
     if (!tbl.isPartitioned()) {
       throw new HiveException(ErrorMsg.TABLE_NOT_PARTITIONED, tbl.getTableName());
     }
     List<Partition> partitions = new ArrayList<Partition>(partNames.size());
+    List<String> namesToFetch = partNames;
+    Map<String, org.apache.hadoop.hive.metastore.api.Partition> byName = null;
+    if (metadataCache != null) {
+      Map<String, org.apache.hadoop.hive.metastore.api.Partition> cached =
+          metadataCache.getPartitions(tbl.getDbName(), tbl.getTableName(), partNames);
+      if (!cached.isEmpty()) {
+        namesToFetch = new ArrayList<String>(partNames.size() - cached.size());
+        for (String partName : partNames) {
+          if (!cached.containsKey(partName)) {
+            namesToFetch.add(partName);
+          }
+        }
+      }
+      // The fetched partitions are added to the cached ones, to put them all in partNames order
+      byName = new HashMap<String, org.apache.hadoop.hive.metastore.api.Partition>(cached);
+    }
 
     int batchSize = HiveConf.getIntVar(conf, HiveConf.ConfVars.METASTORE_BATCH_RETRIEVE_MAX);
     // TODO: might want to increase the default batch size. 1024 is viable; MS gets OOM if too high.
-    int nParts = partNames.size();
+    int nParts = namesToFetch.size();
     int nBatches = nParts / batchSize;
+    PartitionCompactor compactor = compact ? new PartitionCompactor() : null;
 
     try {
       for (int i = 0; i < nBatches; ++i) {
-        List<org.apache.hadoop.hive.metastore.api.Partition> tParts =
-          getMSC().getPartitionsByNames(tbl.getDbName(), tbl.getTableName(),
-          partNames.subList(i*batchSize, (i+1)*batchSize));
-        if (tParts != null) {
-          for (org.apache.hadoop.hive.metastore.api.Partition tpart: tParts) {
-            partitions.add(new Partition(tbl, tpart));
-          }
-        }
+        addFetchedPartitions(tbl, getMSC().getPartitionsByNames(tbl.getDbName(),
+            tbl.getTableName(), namesToFetch.subList(i*batchSize, (i+1)*batchSize)),
+            compactor, byName, partitions);
       }
 
       if (nParts > nBatches * batchSize) {
-        List<org.apache.hadoop.hive.metastore.api.Partition> tParts =
-          getMSC().getPartitionsByNames(tbl.getDbName(), tbl.getTableName(),
-          partNames.subList(nBatches*batchSize, nParts));
-        if (tParts != null) {
-          for (org.apache.hadoop.hive.metastore.api.Partition tpart: tParts) {
-            partitions.add(new Partition(tbl, tpart));
-          }
-        }
+        addFetchedPartitions(tbl, getMSC().getPartitionsByNames(tbl.getDbName(),
+            tbl.getTableName(), namesToFetch.subList(nBatches*batchSize, nParts)),
+            compactor, byName, partitions);
       }
     } catch (Exception e) {
       throw new HiveException(e);
     }
+    if (byName != null) {
+      for (String partName : partNames) {
+        org.apache.hadoop.hive.metastore.api.Partition tpart = byName.get(partName);
+        if (tpart != null) {
+          partitions.add(new Partition(tbl, tpart));
+        }
+      }
+    }
     return partitions;
   }
 
+  /**
+   * Adds the partitions fetched from the metastore to byName and the metadata cache when byName
+   * isn't null, or else to partitions.
+   */
+  private void addFetchedPartitions(Table tbl,
+      List<org.apache.hadoop.hive.metastore.api.Partition> tParts, PartitionCompactor compactor,
+      Map<String, org.apache.hadoop.hive.metastore.api.Partition> byName,
+      List<Partition> partitions) throws HiveException, MetaException {
+    if (tParts == null) {
+      return;
+    }
+    for (org.apache.hadoop.hive.metastore.api.Partition tpart : tParts) {
+      if (compactor != null) {
+        compactor.compact(tpart);
+      }
+      if (byName != null) {
+        String partName = Warehouse.makePartName(tbl.getPartitionKeys(), tpart.getValues());
+        metadataCache.putPartition(tbl.getDbName(), tbl.getTableName(), partName, tpart);
+        byName.put(partName, tpart);
+      } else {
+        partitions.add(new Partition(tbl, tpart));
+      }
+    }
+  }
+
   /**
    * Get a list of Partitions by filter.
    * @param tbl The table containing the partitions.
@@ -3175,6 +3270,37 @@ public boolean getPartitionsByExpr(Table tbl, ExprNodeGenericFuncDesc expr, Hive
     return hasUnknownParts;
   }
 
+  /**
+   * Reduces the footprint of partitions fetched from the metastore. Partitions with the same
+   * columns share one column list, which for wide tables is most of the memory a partition
+   * takes, and the storage format class names are interned.
+   * The shared column lists are unmodifiable; callers have to replace them instead.
+   */
+  private static class PartitionCompactor {
+    private final Map<List<FieldSchema>, List<FieldSchema>> sharedCols = new HashMap<>();
+
+    void compact(org.apache.hadoop.hive.metastore.api.Partition tPart) {
+      StorageDescriptor sd = tPart.getSd();
+      if (sd == null) {
+        return;
+      }
+      if (sd.getCols() != null) {
+        List<FieldSchema> cols = sharedCols.get(sd.getCols());
+        if (cols == null) {
+          cols = Collections.unmodifiableList(sd.getCols());
+          sharedCols.put(cols, cols);
+        }
+        sd.setCols(cols);
+      }
+      sd.setInputFormat(StringInternUtils.internIfNotNull(sd.getInputFormat()));
+      sd.setOutputFormat(StringInternUtils.internIfNotNull(sd.getOutputFormat()));
+      if (sd.getSerdeInfo() != null) {
+        sd.getSerdeInfo().setSerializationLib(
+            StringInternUtils.internIfNotNull(sd.getSerdeInfo().getSerializationLib()));
+      }
+    }
+  }
+
   /**
    * Get a number of Partitions by filter.
    * @param tbl The table containing the partitions.
@@ -4262,6 +4388,8 @@ public List<Partition> exchangeTablePartitions(Map<String, String> partitionSpec
       String sourceDb, String sourceTable, String destDb,
       String destinationTableName) throws HiveException {
     try {
+      invalidateMetadataCache(sourceDb, sourceTable);
+      invalidateMetadataCache(destDb, destinationTableName);
       List<org.apache.hadoop.hive.metastore.api.Partition> partitions =
         getMSC().exchange_partitions(partitionSpecs, sourceDb, sourceTable, destDb,
         destinationTableName);
@@ -4417,6 +4545,12 @@ public static List<FieldSchema> getFieldsFromDeserializer(String name,
 
   public boolean setPartitionColumnStatistics(SetPartitionsStatsRequest request) throws HiveException {
     try {
+      if (metadataCache != null) {
+        for (ColumnStatistics colStats : request.getColStats()) {
+          invalidateMetadataCache(colStats.getStatsDesc().getDbName(),
+              colStats.getStatsDesc().getTableName());
+        }
+      }
       return getMSC().setPartitionColumnStatistics(request);
     } catch (Exception e) {
       LOG.debug(StringUtils.stringifyException(e));
@@ -4427,7 +4561,16 @@ public boolean setPartitionColumnStatistics(SetPartitionsStatsRequest request) t
   public List<ColumnStatisticsObj> getTableColumnStatistics(
       String dbName, String tableName, List<String> colNames) throws HiveException {
     try {
-      return getMSC().getTableColumnStatistics(dbName, tableName, colNames);
+      if (metadataCache == null) {
+        return getMSC().getTableColumnStatistics(dbName, tableName, colNames);
+      }
+      List<ColumnStatisticsObj> colStats =
+          metadataCache.getTableColumnStatistics(dbName, tableName, colNames);
+      if (colStats == null) {
+        colStats = getMSC().getTableColumnStatistics(dbName, tableName, colNames);
+        metadataCache.putTableColumnStatistics(dbName, tableName, colNames, colStats);
+      }
+      return colStats;
     } catch (Exception e) {
       LOG.debug(StringUtils.stringifyException(e));
       throw new HiveException(e);
@@ -4447,7 +4590,15 @@ public Map<String, List<ColumnStatisticsObj>> getPartitionColumnStatistics(Strin
   public AggrStats getAggrColStatsFor(String dbName, String tblName,
     List<String> colNames, List<String> partName) {
     try {
-      return getMSC().getAggrColStatsFor(dbName, tblName, colNames, partName);
+      if (metadataCache == null) {
+        return getMSC().getAggrColStatsFor(dbName, tblName, colNames, partName);
+      }
+      AggrStats aggrStats = metadataCache.getAggrColStats(dbName, tblName, colNames, partName);
+      if (aggrStats == null) {
+        aggrStats = getMSC().getAggrColStatsFor(dbName, tblName, colNames, partName);
+        metadataCache.putAggrColStats(dbName, tblName, colNames, partName, aggrStats);
+      }
+      return aggrStats;
     } catch (Exception e) {
       LOG.debug(StringUtils.stringifyException(e));
       return new AggrStats(new ArrayList<ColumnStatisticsObj>(),0);
@@ -4457,6 +4608,7 @@ public AggrStats getAggrColStatsFor(String dbName, String tblName,
   public boolean deleteTableColumnStatistics(String dbName, String tableName, String colName)
     throws HiveException {
     try {
+      invalidateMetadataCache(dbName, tableName);
       return getMSC().deleteTableColumnStatistics(dbName, tableName, colName);
     } catch(Exception e) {
       LOG.debug(StringUtils.stringifyException(e));
@@ -4467,6 +4619,7 @@ public boolean deleteTableColumnStatistics(String dbName, String tableName, Stri
   public boolean deletePartitionColumnStatistics(String dbName, String tableName, String partName,
     String colName) throws HiveException {
       try {
+        invalidateMetadataCache(dbName, tableName);
         return getMSC().deletePartitionColumnStatistics(dbName, tableName, partName, colName);
       } catch(Exception e) {
         LOG.debug(StringUtils.stringifyException(e));
@@ -4635,6 +4788,60 @@ public void clearMetaCallTiming() {
     metaCallTimeMap.clear();
   }
 
+  /**
+   * Starts caching the metadata fetched through this object until
+   * {@link #endQueryMetadataCache()} is called. Tables, partitions and column statistics read
+   * more than once while compiling a query are then only fetched from the metastore once.
+   */
+  public void startQueryMetadataCache() {
+    if (metadataCache == null) {
+      metadataCache = new QueryMetadataCache(
+          HiveConf.getBoolVar(conf, ConfVars.HIVE_QUERY_METADATA_CACHE_SESSION_SCOPE));
+    }
+    metadataCache.startQuery();
+  }
+
+  /**
+   * Ends the current query in the metadata cache. Unless the cache is session scoped, this
+   * drops everything that was cached; a session scoped cache keeps the table objects of the
+   * transactional tables, to be revalidated against their ValidWriteIdList by the next query.
+   */
+  public void endQueryMetadataCache() {
+    if (metadataCache != null) {
+      metadataCache.endQuery();
+      if (!metadataCache.isSessionScope()) {
+        metadataCache = null;
+      }
+    }
+  }
+
+  private void invalidateMetadataCache(String dbName, String tableName) {
+    if (metadataCache != null) {
+      metadataCache.invalidate(dbName, tableName);
+    }
+  }
+
+  /**
+   * Returns the write id list of a transactional table for the current transaction, which a
+   * session scoped cache keeps the table with; null if it isn't known.
+   */
+  private String getValidWriteIdsForCache(String dbName, String tableName) {
+    String validTxns = conf.get(ValidTxnList.VALID_TXNS_KEY);
+    if (validTxns == null) {
+      return null;
+    }
+    String fullTableName = (dbName + "." + tableName).toLowerCase();
+    try {
+      List<TableValidWriteIds> writeIds =
+          getMSC().getValidWriteIds(Collections.singletonList(fullTableName), validTxns);
+      return writeIds.isEmpty() ? null
+          : TxnUtils.createValidReaderWriteIdList(writeIds.get(0)).toString();
+    } catch (Exception e) {
+      LOG.debug("Could not get the valid write ids of " + fullTableName, e);
+      return null;
+    }
+  }
+
   public ImmutableMap<String, Long> dumpAndClearMetaCallTiming(String phase) {
     boolean phaseInfoLogged = false;
     if (LOG.isDebugEnabled()) {
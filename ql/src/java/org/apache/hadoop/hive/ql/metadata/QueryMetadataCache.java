@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.hadoop.hive.metastore.api.AggrStats;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+
+/**
+ * Metastore objects fetched by {@link Hive} while a query is compiled, so that semantic
+ * analysis, the optimizer, stats annotation and authorization don't each go back to the
+ * metastore for the same table, partitions and column statistics.
+ * Objects are copied on the way in and out, since callers modify the objects they get.
+ * Entries are normally dropped when the query ends. Optionally, the table objects of
+ * transactional tables are kept for the rest of the session; a later query reuses one only if
+ * the table's valid write id list is the same (see {@link #revalidateTable}). Partitions and
+ * column statistics can change without a new write id, so they are never kept.
+ */
+class QueryMetadataCache {
+  private static final class TableEntry {
+    /** The table; null if only other objects of the table were fetched so far. */
+    private Table table;
+    /** The write ids the entry is valid for; null if the entry can't outlive the query. */
+    private String validWriteIds;
+    /** Whether the entry may be used by the current query. */
+    private boolean isValid = true;
+    private final Map<String, Partition> partitions = new HashMap<>();
+    private final Map<String, ColumnStatisticsObj> colStats = new HashMap<>();
+    /** Columns we asked the metastore about, including those that have no stats. */
+    private final Set<String> colStatsFetched = new HashSet<>();
+    private final Map<List<List<String>>, AggrStats> aggrStats = new HashMap<>();
+
+    private TableEntry(Table table, String validWriteIds) {
+      this.table = table;
+      this.validWriteIds = validWriteIds;
+    }
+  }
+
+  private final boolean isSessionScope;
+  private final Map<String, TableEntry> tables = new HashMap<>();
+  private boolean isQueryActive = false;
+
+  QueryMetadataCache(boolean isSessionScope) {
+    this.isSessionScope = isSessionScope;
+  }
+
+  boolean isSessionScope() {
+    return isSessionScope;
+  }
+
+  synchronized void startQuery() {
+    endQuery();
+    isQueryActive = true;
+  }
+
+  synchronized void endQuery() {
+    isQueryActive = false;
+    Iterator<Entry<String, TableEntry>> iter = tables.entrySet().iterator();
+    while (iter.hasNext()) {
+      Entry<String, TableEntry> mapEntry = iter.next();
+      TableEntry entry = mapEntry.getValue();
+      if (!isSessionScope || entry.validWriteIds == null || entry.table == null) {
+        iter.remove();
+      } else {
+        // Only keep the table, which the next query has to revalidate before using it.
+        TableEntry tableOnly = new TableEntry(entry.table, entry.validWriteIds);
+        tableOnly.isValid = false;
+        mapEntry.setValue(tableOnly);
+      }
+    }
+  }
+
+  synchronized boolean isQueryActive() {
+    return isQueryActive;
+  }
+
+  synchronized Table getTable(String dbName, String tableName) {
+    TableEntry entry = getValidEntry(dbName, tableName);
+    return entry == null || entry.table == null ? null : entry.table.deepCopy();
+  }
+
+  /**
+   * @return whether a table kept from an earlier query has to be revalidated before this query
+   *         can use it
+   */
+  synchronized boolean isTableKept(String dbName, String tableName) {
+    if (!isQueryActive) {
+      return false;
+    }
+    TableEntry entry = tables.get(makeKey(dbName, tableName));
+    return entry != null && !entry.isValid;
+  }
+
+  /**
+   * Makes a table kept from an earlier query valid for this query, if the table's write ids are
+   * unchanged; otherwise the table is dropped.
+   * @param validWriteIds the table's valid write id list for this query
+   * @return a copy of the table, or null if it has to be fetched from the metastore
+   */
+  synchronized Table revalidateTable(String dbName, String tableName, String validWriteIds) {
+    if (!isTableKept(dbName, tableName)) {
+      return null;
+    }
+    String key = makeKey(dbName, tableName);
+    TableEntry entry = tables.get(key);
+    if (validWriteIds == null || !validWriteIds.equals(entry.validWriteIds)) {
+      tables.remove(key);
+      return null;
+    }
+    entry.isValid = true;
+    return entry.table.deepCopy();
+  }
+
+  /**
+   * Records a table fetched from the metastore.
+   * @param validWriteIds the table's valid write id list for this query; null if the table
+   *        can't be kept after the query
+   */
+  synchronized void putTable(String dbName, String tableName, Table table, String validWriteIds) {
+    if (!isQueryActive) {
+      return;
+    }
+    String key = makeKey(dbName, tableName);
+    TableEntry entry = tables.get(key);
+    if (entry != null && entry.isValid && entry.table == null) {
+      // The rest of the entry was fetched by this query, so it has the same write ids.
+      entry.table = table.deepCopy();
+      entry.validWriteIds = validWriteIds;
+      return;
+    }
+    tables.put(key, new TableEntry(table.deepCopy(), validWriteIds));
+  }
+
+  /**
+   * Returns copies of the cached partitions with the given names, keyed by name. Partitions
+   * that are not cached are left out.
+   */
+  synchronized Map<String, Partition> getPartitions(String dbName, String tableName,
+      List<String> partNames) {
+    Map<String, Partition> result = new HashMap<>();
+    TableEntry entry = getValidEntry(dbName, tableName);
+    if (entry != null && !entry.partitions.isEmpty()) {
+      for (String partName : partNames) {
+        Partition part = entry.partitions.get(partName);
+        if (part != null) {
+          result.put(partName, part.deepCopy());
+        }
+      }
+    }
+    return result;
+  }
+
+  synchronized void putPartition(String dbName, String tableName, String partName,
+      Partition part) {
+    TableEntry entry = getEntryForUpdate(dbName, tableName);
+    if (entry != null) {
+      entry.partitions.put(partName, part.deepCopy());
+    }
+  }
+
+  /**
+   * @return copies of the cached stats of the columns, or null if the metastore hasn't been
+   *         asked about some of them yet
+   */
+  synchronized List<ColumnStatisticsObj> getTableColumnStatistics(String dbName,
+      String tableName, List<String> colNames) {
+    TableEntry entry = getValidEntry(dbName, tableName);
+    if (entry == null || !entry.colStatsFetched.containsAll(colNames)) {
+      return null;
+    }
+    List<ColumnStatisticsObj> result = new ArrayList<>(colNames.size());
+    for (String colName : colNames) {
+      ColumnStatisticsObj colStats = entry.colStats.get(colName);
+      if (colStats != null) {
+        result.add(colStats.deepCopy());
+      }
+    }
+    return result;
+  }
+
+  synchronized void putTableColumnStatistics(String dbName, String tableName,
+      List<String> colNames, List<ColumnStatisticsObj> colStats) {
+    TableEntry entry = getEntryForUpdate(dbName, tableName);
+    if (entry == null) {
+      return;
+    }
+    for (ColumnStatisticsObj colStat : colStats) {
+      entry.colStats.put(colStat.getColName(), colStat.deepCopy());
+    }
+    entry.colStatsFetched.addAll(colNames);
+  }
+
+  synchronized AggrStats getAggrColStats(String dbName, String tableName, List<String> colNames,
+      List<String> partNames) {
+    TableEntry entry = getValidEntry(dbName, tableName);
+    if (entry == null) {
+      return null;
+    }
+    AggrStats aggrStats = entry.aggrStats.get(Arrays.asList(colNames, partNames));
+    return aggrStats == null ? null : new AggrStats(aggrStats);
+  }
+
+  synchronized void putAggrColStats(String dbName, String tableName, List<String> colNames,
+      List<String> partNames, AggrStats aggrStats) {
+    TableEntry entry = getEntryForUpdate(dbName, tableName);
+    if (entry != null) {
+      entry.aggrStats.put(Arrays.asList(new ArrayList<>(colNames), new ArrayList<>(partNames)),
+          new AggrStats(aggrStats));
+    }
+  }
+
+  /** Forgets everything about the table, e.g. after it was modified. */
+  synchronized void invalidate(String dbName, String tableName) {
+    if (dbName != null && tableName != null) {
+      tables.remove(makeKey(dbName, tableName));
+    }
+  }
+
+  private TableEntry getValidEntry(String dbName, String tableName) {
+    if (!isQueryActive) {
+      return null;
+    }
+    TableEntry entry = tables.get(makeKey(dbName, tableName));
+    return entry == null || !entry.isValid ? null : entry;
+  }
+
+  /**
+   * Gets the entry that objects of the table fetched by this query are added to. A table kept
+   * from an earlier query that wasn't revalidated by this query can't be trusted, so its entry
+   * is started over.
+   */
+  private TableEntry getEntryForUpdate(String dbName, String tableName) {
+    if (!isQueryActive) {
+      return null;
+    }
+    TableEntry entry = getValidEntry(dbName, tableName);
+    if (entry == null) {
+      // Without the table we don't know the write ids, so this entry ends with the query.
+      entry = new TableEntry(null, null);
+      tables.put(makeKey(dbName, tableName), entry);
+    }
+    return entry;
+  }
+
+  private static String makeKey(String dbName, String tableName) {
+    return (dbName + "." + tableName).toLowerCase();
+  }
+}
@@ -26,6 +26,9 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
+
+import org.apache.commons.codec.digest.DigestUtils;
 
 import org.apache.hadoop.hive.common.JavaUtils;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -36,6 +39,7 @@
 import org.apache.hadoop.hive.ql.exec.CommonMergeJoinOperator;
 import org.apache.hadoop.hive.ql.exec.DummyStoreOperator;
 import org.apache.hadoop.hive.ql.exec.FileSinkOperator;
+import org.apache.hadoop.hive.ql.exec.FilterOperator;
 import org.apache.hadoop.hive.ql.exec.GroupByOperator;
 import org.apache.hadoop.hive.ql.exec.JoinOperator;
 import org.apache.hadoop.hive.ql.exec.MapJoinOperator;
@@ -48,19 +52,26 @@
 import org.apache.hadoop.hive.ql.exec.SelectOperator;
 import org.apache.hadoop.hive.ql.exec.TableScanOperator;
 import org.apache.hadoop.hive.ql.exec.TezDummyStoreOperator;
+import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.lib.Node;
 import org.apache.hadoop.hive.ql.lib.NodeProcessor;
 import org.apache.hadoop.hive.ql.lib.NodeProcessorCtx;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
 import org.apache.hadoop.hive.ql.optimizer.physical.LlapClusterStateForCompile;
+import org.apache.hadoop.hive.ql.optimizer.signature.OpSignature;
 import org.apache.hadoop.hive.ql.parse.GenTezUtils;
 import org.apache.hadoop.hive.ql.parse.OptimizeTezProcContext;
 import org.apache.hadoop.hive.ql.parse.ParseContext;
+import org.apache.hadoop.hive.ql.parse.PrunedPartitionList;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.plan.ColStatistics;
 import org.apache.hadoop.hive.ql.plan.CommonMergeJoinDesc;
 import org.apache.hadoop.hive.ql.plan.DynamicPruningEventDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDynamicListDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDynamicValueDesc;
 import org.apache.hadoop.hive.ql.plan.JoinCondDesc;
 import org.apache.hadoop.hive.ql.plan.JoinDesc;
 import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
@@ -859,6 +870,19 @@ private boolean isCrossProduct(JoinOperator joinOp) {
   public int getMapJoinConversionPos(JoinOperator joinOp, OptimizeTezProcContext context,
       int buckets, boolean skipJoinTypeChecks, long maxSize, boolean checkMapJoinThresholds)
               throws SemanticException {
+    return getMapJoinConversionPos(joinOp, context, buckets, skipJoinTypeChecks, maxSize,
+        checkMapJoinThresholds, false);
+  }
+
+  /**
+   * Obtain big table position for join.
+   *
+   * @param isSupportFullOuter whether a FULL OUTER JOIN may be converted (only for dynamically
+   * partitioned hash join executed by the native vector map join)
+   */
+  private int getMapJoinConversionPos(JoinOperator joinOp, OptimizeTezProcContext context,
+      int buckets, boolean skipJoinTypeChecks, long maxSize, boolean checkMapJoinThresholds,
+      boolean isSupportFullOuter) throws SemanticException {
     if (!skipJoinTypeChecks) {
       /*
        * HIVE-9038: Join tests fail in tez when we have more than 1 join on the same key and there is
@@ -874,7 +898,7 @@ public int getMapJoinConversionPos(JoinOperator joinOp, OptimizeTezProcContext c
       }
     }
     Set<Integer> bigTableCandidateSet =
-        MapJoinProcessor.getBigTableCandidates(joinOp.getConf().getConds());
+        MapJoinProcessor.getBigTableCandidates(joinOp.getConf().getConds(), isSupportFullOuter);
     int bigTablePosition = -1;
     // big input cumulative row count
     long bigInputCumulativeCardinality = -1L;
@@ -1121,9 +1145,105 @@ public MapJoinOperator convertJoinMapJoin(JoinOperator joinOp, OptimizeTezProcCo
       }
     }
 
+    if (HiveConf.getBoolVar(context.conf, ConfVars.LLAP_MAPJOIN_SHARED_CACHE_ENABLED)) {
+      setSharedHashTableKey(mapJoinOp, bigTablePosition, context.parseContext);
+    }
+
     return mapJoinOp;
   }
 
+  /**
+   * Computes the key under which LLAP can share the hash tables of this map join with other
+   * queries. The small table sides must be simple scans (table scan, filter, select, reduce
+   * sink) of transactional tables with no runtime filters, so that the tables, partitions,
+   * filters and projections captured here plus the write ids known at runtime identify the
+   * contents of the hash tables.
+   */
+  private static void setSharedHashTableKey(MapJoinOperator mapJoinOp, int bigTablePosition,
+      ParseContext parseContext) {
+    StringBuilder sb = new StringBuilder();
+    Set<String> sources = new TreeSet<>();
+    List<Operator<? extends OperatorDesc>> parents = mapJoinOp.getParentOperators();
+    for (int pos = 0; pos < parents.size(); pos++) {
+      if (pos == bigTablePosition) {
+        continue;
+      }
+      sb.append(pos).append(':');
+      if (!appendSmallTableSignature(parents.get(pos), parseContext, sources, sb)) {
+        LOG.debug("Hash table of {} cannot be shared", mapJoinOp);
+        return;
+      }
+    }
+    MapJoinDesc desc = mapJoinOp.getConf();
+    sb.append("keys=").append(desc.getKeysString())
+        .append(",filters=").append(desc.getFiltersStringMap())
+        .append(",outputs=").append(desc.getOutputColumnNames())
+        .append(",nullSafes=").append(desc.getNullSafeString());
+    for (JoinCondDesc cond : desc.getConds()) {
+      sb.append(',').append(cond.getJoinCondString());
+    }
+    desc.setSharedHashTableKey(DigestUtils.sha256Hex(sb.toString()), new ArrayList<>(sources));
+  }
+
+  private static boolean appendSmallTableSignature(Operator<? extends OperatorDesc> op,
+      ParseContext parseContext, Set<String> sources, StringBuilder sb) {
+    sb.append('(').append(op.getClass().getSimpleName()).append(' ');
+    if (op instanceof TableScanOperator) {
+      TableScanOperator ts = (TableScanOperator) op;
+      Table table = ts.getConf().getTableMetadata();
+      if (table == null || !AcidUtils.isTransactionalTable(table)
+          || ts.getConf().getTableSample() != null
+          || parseContext.getNameToSplitSample().containsKey(ts.getConf().getAlias())
+          || hasRuntimeValues(ts.getConf().getFilterExpr())) {
+        return false;
+      }
+      sources.add(AcidUtils.getFullTableName(table.getDbName(), table.getTableName()));
+      if (table.isPartitioned()) {
+        PrunedPartitionList partitions = parseContext.getOpToPartList().get(ts);
+        if (partitions == null) {
+          return false;
+        }
+        Set<String> names = new TreeSet<>();
+        for (Partition partition : partitions.getPartitions()) {
+          names.add(partition.getName());
+        }
+        sb.append(names);
+      }
+      sb.append(ts.getConf().getNeededColumns());
+    } else if (op instanceof FilterOperator) {
+      if (hasRuntimeValues(((FilterOperator) op).getConf().getPredicate())) {
+        return false;
+      }
+    } else if (!(op instanceof SelectOperator) && !(op instanceof ReduceSinkOperator)) {
+      return false;
+    }
+    sb.append(OpSignature.of(op));
+    for (Operator<? extends OperatorDesc> parent : op.getParentOperators()) {
+      if (!appendSmallTableSignature(parent, parseContext, sources, sb)) {
+        return false;
+      }
+    }
+    sb.append(')');
+    return true;
+  }
+
+  private static boolean hasRuntimeValues(ExprNodeDesc expr) {
+    if (expr == null) {
+      return false;
+    }
+    if (expr instanceof ExprNodeDynamicValueDesc || expr instanceof ExprNodeDynamicListDesc) {
+      return true;
+    }
+    if (expr.getChildren() != null) {
+      for (ExprNodeDesc child : expr.getChildren()) {
+        if (hasRuntimeValues(child)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   // Remove any semijoin branch associated with hashjoin's parent's operator
   // pipeline which can cause a cycle after hashjoin optimization.
   private void removeCycleCreatingSemiJoinOps(MapJoinOperator mapjoinOp,
@@ -1269,7 +1389,9 @@ private boolean convertJoinDynamicPartitionedHashJoin(JoinOperator joinOp, Optim
     // Since we don't have big table index yet, must start with estimate of numReducers
     int numReducers = estimateNumBuckets(joinOp, false);
     LOG.info("Try dynamic partitioned hash join with estimated " + numReducers + " reducers");
-    int bigTablePos = getMapJoinConversionPos(joinOp, context, numReducers, false, maxSize,false);
+    boolean isFullOuter = isFullOuterJoinSupportedForDynamicPartitionHashJoin(joinOp, context);
+    int bigTablePos = getMapJoinConversionPos(joinOp, context, numReducers, false, maxSize, false,
+        isFullOuter);
     if (bigTablePos >= 0) {
       // Now that we have the big table index, get real numReducers value based on big table RS
       ReduceSinkOperator bigTableParentRS =
@@ -1281,6 +1403,11 @@ private boolean convertJoinDynamicPartitionedHashJoin(JoinOperator joinOp, Optim
       if (mapJoinOp != null) {
         LOG.info("Selected dynamic partitioned hash join");
         mapJoinOp.getConf().setDynamicPartitionHashJoin(true);
+        if (isFullOuter) {
+          // The native vector map join fast hash table does not support Hybrid Grace, and
+          // the non-matched small table rows must be generated from the whole hash table.
+          mapJoinOp.getConf().setHybridHashJoin(false);
+        }
         // Set OpTraits for dynamically partitioned hash join:
         // bucketColNames: Re-use previous joinOp's bucketColNames. Parent operators should be
         //   reduce sink, which should have bucket columns based on the join keys.
@@ -1305,6 +1432,43 @@ private boolean convertJoinDynamicPartitionedHashJoin(JoinOperator joinOp, Optim
     return false;
   }
 
+  /**
+   * A FULL OUTER JOIN can only be a map join when it is dynamically partitioned (each small
+   * table key lives in exactly one task, so the non-matching small table rows are generated once)
+   * and it will be executed by a native vector map join operator with the fast hash table.
+   */
+  private boolean isFullOuterJoinSupportedForDynamicPartitionHashJoin(JoinOperator joinOp,
+      OptimizeTezProcContext context) {
+    JoinDesc joinDesc = joinOp.getConf();
+    JoinCondDesc[] conds = joinDesc.getConds();
+    if (conds.length != 1 || conds[0].getType() != JoinDesc.FULL_OUTER_JOIN) {
+      return false;
+    }
+    HiveConf conf = context.conf;
+    if (!conf.getBoolVar(HiveConf.ConfVars.HIVE_MAPJOIN_FULL_OUTER) ||
+        !conf.getBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_ENABLED) ||
+        !conf.getBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_REDUCE_ENABLED) ||
+        !conf.getBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_ENABLED) ||
+        !conf.getBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_MAPJOIN_NATIVE_FAST_HASHTABLE_ENABLED)) {
+      return false;
+    }
+    if (isCrossProduct(joinOp)) {
+      return false;
+    }
+    // ON clause filters and residual filters are not supported by the native FULL OUTER join.
+    if (joinDesc.getResidualFilterExprs() != null && !joinDesc.getResidualFilterExprs().isEmpty()) {
+      return false;
+    }
+    if (joinDesc.getFilters() != null) {
+      for (List<ExprNodeDesc> filters : joinDesc.getFilters().values()) {
+        if (filters != null && !filters.isEmpty()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private void fallbackToReduceSideJoin(JoinOperator joinOp, OptimizeTezProcContext context, final long maxSize)
       throws SemanticException {
     if (context.conf.getBoolVar(HiveConf.ConfVars.HIVECONVERTJOIN) &&
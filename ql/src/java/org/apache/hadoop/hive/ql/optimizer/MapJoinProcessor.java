@@ -502,8 +502,26 @@ public MapJoinOperator generateMapJoinOperator(ParseContext pctx, JoinOperator o
    * @return set of big table candidates
    */
   public static Set<Integer> getBigTableCandidates(JoinCondDesc[] condns) {
+    return getBigTableCandidates(condns, /* isSupportFullOuter */ false);
+  }
+
+  /**
+   * Same as {@link #getBigTableCandidates(JoinCondDesc[])}, but when isSupportFullOuter is true a
+   * single FULL OUTER JOIN condition allows either side to be the big table.  The caller must
+   * make sure the map join will be executed by an operator that generates the non-matching
+   * small table rows (i.e. a dynamically partitioned, native vectorized map join).
+   */
+  public static Set<Integer> getBigTableCandidates(JoinCondDesc[] condns,
+      boolean isSupportFullOuter) {
     Set<Integer> bigTableCandidates = new HashSet<Integer>();
 
+    if (isSupportFullOuter && condns.length == 1 &&
+        condns[0].getType() == JoinDesc.FULL_OUTER_JOIN) {
+      bigTableCandidates.add(condns[0].getLeft());
+      bigTableCandidates.add(condns[0].getRight());
+      return bigTableCandidates;
+    }
+
     boolean seenOuterJoin = false;
     Set<Integer> seenPostitions = new HashSet<Integer>();
     Set<Integer> leftPosListOfLastRightOuterJoin = new HashSet<Integer>();
@@ -50,6 +50,7 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.common.type.DataTypePhysicalVariation;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.llap.io.api.LlapProxy;
@@ -69,6 +70,9 @@
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinLeftSemiLongOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinLeftSemiMultiKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinLeftSemiStringOperator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinFullOuterLongOperator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinFullOuterMultiKeyOperator;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinFullOuterStringOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterLongOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterMultiKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterStringOperator;
@@ -95,6 +99,7 @@
 import org.apache.hadoop.hive.ql.io.OneNullRowInputFormat;
 import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.lib.Dispatcher;
 import org.apache.hadoop.hive.ql.lib.Node;
 import org.apache.hadoop.hive.ql.lib.NodeProcessor;
@@ -110,6 +115,7 @@
 import org.apache.hadoop.hive.ql.plan.BaseWork;
 import org.apache.hadoop.hive.ql.plan.Explain;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc.ExprNodeDescEqualityWrapper;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
@@ -148,6 +154,7 @@
 import org.apache.hadoop.hive.ql.plan.TableDesc;
 import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.hive.ql.plan.TezWork;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
 import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableImplementationType;
@@ -159,11 +166,13 @@
 import org.apache.hadoop.hive.ql.plan.VectorReduceSinkInfo;
 import org.apache.hadoop.hive.ql.plan.VectorPartitionDesc;
 import org.apache.hadoop.hive.ql.plan.VectorSelectDesc;
+import org.apache.hadoop.hive.ql.plan.VectorTopNKeyDesc;
 import org.apache.hadoop.hive.ql.plan.api.OperatorType;
 import org.apache.hadoop.hive.ql.plan.mapper.PlanMapper;
 import org.apache.hadoop.hive.ql.plan.ptf.OrderExpressionDef;
 import org.apache.hadoop.hive.ql.plan.ptf.PTFExpressionDef;
 import org.apache.hadoop.hive.ql.plan.ptf.PartitionedTableFunctionDef;
+import org.apache.hadoop.hive.ql.plan.ptf.BoundaryDef;
 import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
 import org.apache.hadoop.hive.ql.plan.ptf.WindowFunctionDef;
 import org.apache.hadoop.hive.ql.plan.ptf.WindowTableFunctionDef;
@@ -310,11 +319,19 @@ public static enum VectorizationEnabledOverride {
   private boolean useRowDeserialize;
   private boolean isReduceVectorizationEnabled;
   private boolean isPtfVectorizationEnabled;
+  private boolean isPtfOffsetDistributionFunctionsEnabled;
+  private boolean isPtfSlidingWindowEnabled;
   private boolean isVectorizationComplexTypesEnabled;
 
   // Now deprecated.
   private boolean isVectorizationGroupByComplexTypesEnabled;
 
+  private boolean isVectorizationGroupByCollectDistinctEnabled;
+
+  private boolean isVectorizationGroupByNumericHistogramEnabled;
+
+  private boolean isVectorizationGroupByComputeStatsEnabled;
+
   private boolean isVectorizedRowIdentifierEnabled;
   private String vectorizedInputFormatSupportEnabled;
   private boolean isLlapIoEnabled;
@@ -511,6 +528,11 @@ public Vectorizer() {
     supportedAggregationUdfs.add("stddev_pop");
     supportedAggregationUdfs.add("stddev_samp");
     supportedAggregationUdfs.add("bloom_filter");
+    supportedAggregationUdfs.add("collect_set");
+    supportedAggregationUdfs.add("collect_list");
+    supportedAggregationUdfs.add("percentile_approx");
+    supportedAggregationUdfs.add("histogram_numeric");
+    supportedAggregationUdfs.add("compute_stats");
   }
 
   private class VectorTaskColumnInfo {
@@ -2374,6 +2396,12 @@ public PhysicalContext resolve(PhysicalContext physicalContext) throws SemanticE
     isPtfVectorizationEnabled =
         HiveConf.getBoolVar(hiveConf,
             HiveConf.ConfVars.HIVE_VECTORIZATION_PTF_ENABLED);
+    isPtfOffsetDistributionFunctionsEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_PTF_OFFSET_DISTRIBUTION_FUNCTIONS_ENABLED);
+    isPtfSlidingWindowEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_PTF_SLIDING_WINDOW_ENABLED);
 
     isVectorizationComplexTypesEnabled =
         HiveConf.getBoolVar(hiveConf,
@@ -2381,6 +2409,15 @@ public PhysicalContext resolve(PhysicalContext physicalContext) throws SemanticE
     isVectorizationGroupByComplexTypesEnabled =
         HiveConf.getBoolVar(hiveConf,
             HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COMPLEX_TYPES_ENABLED);
+    isVectorizationGroupByCollectDistinctEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COLLECT_DISTINCT_ENABLED);
+    isVectorizationGroupByNumericHistogramEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_NUMERIC_HISTOGRAM_ENABLED);
+    isVectorizationGroupByComputeStatsEnabled =
+        HiveConf.getBoolVar(hiveConf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COMPUTE_STATS_ENABLED);
 
     isVectorizedRowIdentifierEnabled =
         HiveConf.getBoolVar(hiveConf,
@@ -2556,6 +2593,11 @@ private boolean validateFilterOperator(FilterOperator op) {
   }
 
 
+  private boolean validateTopNKeyOperator(TopNKeyOperator op) {
+    List<ExprNodeDesc> keyColumns = op.getConf().getKeyColumns();
+    return validateExprNodeDescNoComplex(keyColumns, "Key columns");
+  }
+
   private boolean validateGroupByOperator(GroupByOperator op, boolean isReduce,
       boolean isTezOrSpark, VectorGroupByDesc vectorGroupByDesc) {
 
@@ -2722,6 +2764,124 @@ private boolean containsLeadLag(List<ExprNodeDesc> exprNodeDescList) {
     return false;
   }
 
+  private static boolean isIntegerConstant(ExprNodeDesc exprNodeDesc) {
+    return (exprNodeDesc instanceof ExprNodeConstantDesc &&
+        ((ExprNodeConstantDesc) exprNodeDesc).getValue() instanceof Integer);
+  }
+
+  /*
+   * A ROWS sliding window frame starts at UNBOUNDED PRECEDING, n PRECEDING, or CURRENT ROW and
+   * ends at CURRENT ROW or n FOLLOWING.  The FOLLOWING rows are limited to one batch since the
+   * results of the last rows of the partition are kept in a scratch column vector.
+   */
+  private boolean validatePTFSlidingWindowFrame(String functionName,
+      SupportedFunctionType supportedFunctionType, WindowFrameDef windowFrameDef) {
+    switch (supportedFunctionType) {
+    case SUM:
+    case AVG:
+    case MIN:
+    case MAX:
+    case COUNT:
+      break;
+    default:
+      setOperatorIssue(functionName + " sliding window frame is only supported for sum, avg, min, max, and count");
+      return false;
+    }
+    BoundaryDef start = windowFrameDef.getStart();
+    if (!start.isPreceding() && !start.isCurrentRow()) {
+      setOperatorIssue(functionName + " only PRECEDING or CURRENT ROW start is supported for a ROWS sliding window frame");
+      return false;
+    }
+    BoundaryDef end = windowFrameDef.getEnd();
+    if (windowFrameDef.isEndUnbounded() ||
+        !(end.isCurrentRow() ||
+            (end.isFollowing() && end.getAmt() <= VectorizedRowBatch.DEFAULT_SIZE))) {
+      setOperatorIssue(functionName + " only CURRENT ROW or up to " + VectorizedRowBatch.DEFAULT_SIZE + " FOLLOWING end is supported for a ROWS sliding window frame");
+      return false;
+    }
+    return true;
+  }
+
+  boolean validatePTFFunctionArguments(String functionName,
+      SupportedFunctionType supportedFunctionType, List<ExprNodeDesc> exprNodeDescList) {
+
+    final int argumentCount = (exprNodeDescList == null ? 0 : exprNodeDescList.size());
+    switch (supportedFunctionType) {
+    case LAG:
+    case LEAD:
+      {
+        // The amount and default arguments must be constants.
+        if (argumentCount < 1 || argumentCount > 3) {
+          setOperatorIssue("Expected 1 to 3 argument expressions of function " + functionName);
+          return false;
+        }
+        if (argumentCount > 1 && !isIntegerConstant(exprNodeDescList.get(1))) {
+          setOperatorIssue("Only a constant amount is supported for function " + functionName);
+          return false;
+        }
+
+        // Like a FOLLOWING window frame end, lead looks ahead at most one batch.  The buffered
+        // batches needed for a larger amount would exceed the PTF spill limit.
+        if (supportedFunctionType == SupportedFunctionType.LEAD && argumentCount > 1 &&
+            (Integer) ((ExprNodeConstantDesc) exprNodeDescList.get(1)).getValue() >
+                VectorizedRowBatch.DEFAULT_SIZE) {
+          setOperatorIssue("Only an amount up to " + VectorizedRowBatch.DEFAULT_SIZE + " is supported for function " + functionName);
+          return false;
+        }
+        if (argumentCount > 2) {
+          ExprNodeDesc defaultExprNodeDesc = exprNodeDescList.get(2);
+          if (!(defaultExprNodeDesc instanceof ExprNodeConstantDesc)) {
+            setOperatorIssue("Only a constant default is supported for function " + functionName);
+            return false;
+          }
+          Object defaultValue = ((ExprNodeConstantDesc) defaultExprNodeDesc).getValue();
+          TypeInfo typeInfo = exprNodeDescList.get(0).getTypeInfo();
+          boolean isNumeric = false;
+          if (typeInfo.getCategory() == Category.PRIMITIVE) {
+            switch (((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory()) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case DECIMAL:
+              isNumeric = true;
+              break;
+            default:
+              break;
+            }
+          }
+          if (defaultValue != null &&
+              (!isNumeric ||
+                  !(defaultValue instanceof Number || defaultValue instanceof HiveDecimal))) {
+            setOperatorIssue("Only a numeric constant default is supported for function " + functionName);
+            return false;
+          }
+        }
+      }
+      break;
+    case NTILE:
+      if (argumentCount != 1 || !isIntegerConstant(exprNodeDescList.get(0)) ||
+          (Integer) ((ExprNodeConstantDesc) exprNodeDescList.get(0)).getValue() <= 0) {
+        setOperatorIssue("Only a positive constant number of buckets is supported for function " + functionName);
+        return false;
+      }
+      break;
+    case PERCENT_RANK:
+    case CUME_DIST:
+      // Like RANK, the arguments are the ORDER BY expressions which are only used to determine
+      // the peer groups the reduce-shuffle has already formed.
+      break;
+    default:
+      if (argumentCount > 1) {
+        setOperatorIssue("More than 1 argument expression of aggregation function " + functionName);
+        return false;
+      }
+    }
+    return true;
+  }
+
   private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContext,
       VectorPTFDesc vectorPTFDesc)
       throws HiveException {
@@ -2805,37 +2965,49 @@ private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContex
     WindowFrameDef[] evaluatorWindowFrameDefs = vectorPTFDesc.getEvaluatorWindowFrameDefs();
     List<ExprNodeDesc>[] evaluatorInputExprNodeDescLists = vectorPTFDesc.getEvaluatorInputExprNodeDescLists();
 
+    boolean hasPartitionFunction = false;
     for (int i = 0; i < count; i++) {
       String functionName = evaluatorFunctionNames[i];
       SupportedFunctionType supportedFunctionType = VectorPTFDesc.supportedFunctionsMap.get(functionName);
+      if (supportedFunctionType == null && isPtfOffsetDistributionFunctionsEnabled) {
+        supportedFunctionType = VectorPTFDesc.offsetDistributionFunctionsMap.get(functionName);
+      }
       if (supportedFunctionType == null) {
         setOperatorIssue(functionName + " not in supported functions " + VectorPTFDesc.supportedFunctionNames);
         return false;
       }
       WindowFrameDef windowFrameDef = evaluatorWindowFrameDefs[i];
-      if (!windowFrameDef.isStartUnbounded()) {
-        setOperatorIssue(functionName + " only UNBOUNDED start frame is supported");
-        return false;
-      }
-      switch (windowFrameDef.getWindowType()) {
-      case RANGE:
-        if (!windowFrameDef.getEnd().isCurrentRow()) {
-          setOperatorIssue(functionName + " only CURRENT ROW end frame is supported for RANGE");
+      if (isPtfSlidingWindowEnabled && VectorPTFDesc.isSlidingWindowFrame(windowFrameDef)) {
+        if (!validatePTFSlidingWindowFrame(functionName, supportedFunctionType, windowFrameDef)) {
           return false;
         }
-        break;
-      case ROWS:
-        if (!windowFrameDef.isEndUnbounded()) {
-          setOperatorIssue(functionName + " UNBOUNDED end frame is not supported for ROWS window type");
+      } else {
+        if (!windowFrameDef.isStartUnbounded()) {
+          setOperatorIssue(functionName + " only UNBOUNDED start frame is supported");
           return false;
         }
-        break;
-      default:
-        throw new RuntimeException("Unexpected window type " + windowFrameDef.getWindowType());
+        switch (windowFrameDef.getWindowType()) {
+        case RANGE:
+          if (!windowFrameDef.getEnd().isCurrentRow()) {
+            setOperatorIssue(functionName + " only CURRENT ROW end frame is supported for RANGE");
+            return false;
+          }
+          break;
+        case ROWS:
+          if (!windowFrameDef.isEndUnbounded()) {
+            setOperatorIssue(functionName + " UNBOUNDED end frame is not supported for ROWS window type");
+            return false;
+          }
+          break;
+        default:
+          throw new RuntimeException("Unexpected window type " + windowFrameDef.getWindowType());
+        }
+      }
+      if (VectorPTFDesc.isPartitionFunction(supportedFunctionType, windowFrameDef)) {
+        hasPartitionFunction = true;
       }
       List<ExprNodeDesc> exprNodeDescList = evaluatorInputExprNodeDescLists[i];
-      if (exprNodeDescList != null && exprNodeDescList.size() > 1) {
-        setOperatorIssue("More than 1 argument expression of aggregation function " + functionName);
+      if (!validatePTFFunctionArguments(functionName, supportedFunctionType, exprNodeDescList)) {
         return false;
       }
       if (exprNodeDescList != null) {
@@ -2848,9 +3020,13 @@ private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContex
 
         if (supportedFunctionType != SupportedFunctionType.COUNT &&
             supportedFunctionType != SupportedFunctionType.DENSE_RANK &&
-            supportedFunctionType != SupportedFunctionType.RANK) {
+            supportedFunctionType != SupportedFunctionType.RANK &&
+            supportedFunctionType != SupportedFunctionType.NTILE &&
+            supportedFunctionType != SupportedFunctionType.PERCENT_RANK &&
+            supportedFunctionType != SupportedFunctionType.CUME_DIST) {
 
-          // COUNT, DENSE_RANK, and RANK do not care about column types.  The rest do.
+          // COUNT, DENSE_RANK, RANK, and the distribution functions do not care about column
+          // types.  The rest do.
           TypeInfo typeInfo = exprNodeDesc.getTypeInfo();
           Category category = typeInfo.getCategory();
           boolean isSupportedType;
@@ -2877,6 +3053,20 @@ private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContex
         }
       }
     }
+    if (hasPartitionFunction && isPartitionOrderBy) {
+
+      // The whole partition is buffered, so the other functions must stream their results.
+      for (int i = 0; i < count; i++) {
+        String functionName = evaluatorFunctionNames[i];
+        SupportedFunctionType supportedFunctionType =
+            VectorPTFDesc.getSupportedFunctionType(functionName);
+        if (!VectorPTFDesc.isStreamingFunction(
+            supportedFunctionType, evaluatorWindowFrameDefs[i])) {
+          setOperatorIssue(functionName + " not supported with lead, ntile, percent_rank, cume_dist, or a FOLLOWING window frame when there is a PARTITION BY and ORDER BY");
+          return false;
+        }
+      }
+    }
     return true;
   }
 
@@ -3072,19 +3262,120 @@ private boolean validateAggregationDesc(AggregationDesc aggDesc, GroupByDesc.Mod
       return false;
     }
 
+    final boolean isCollect = (udfName.equals("collect_set") || udfName.equals("collect_list"));
+    if (isCollect && !isVectorizationGroupByCollectDistinctEnabled) {
+      setExpressionIssue("Aggregation Function", "UDF " + udfName + " not enabled (" +
+          HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COLLECT_DISTINCT_ENABLED.varname + ")");
+      return false;
+    }
+
+    final boolean isNumericHistogram = isNumericHistogramAggregation(udfName);
+    if (isNumericHistogram && !isVectorizationGroupByNumericHistogramEnabled) {
+      setExpressionIssue("Aggregation Function", "UDF " + udfName + " not enabled (" +
+          HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_NUMERIC_HISTOGRAM_ENABLED.varname + ")");
+      return false;
+    }
+
+    if (udfName.equals("compute_stats") && !isVectorizationGroupByComputeStatsEnabled) {
+      setExpressionIssue("Aggregation Function", "UDF " + udfName + " not enabled (" +
+          HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_COMPUTE_STATS_ENABLED.varname + ")");
+      return false;
+    }
+
     // The planner seems to pull this one out.
     if (aggDesc.getDistinct()) {
-      setExpressionIssue("Aggregation Function", "DISTINCT not supported");
-      return false;
+
+      /*
+       * The map side HASH GROUP BY has the DISTINCT column(s) in its keys, so a set of the values
+       * per group gives the row mode result.  The other modes get the DISTINCT values inside a
+       * UNION reduce key.
+       */
+      if (!isVectorizationGroupByCollectDistinctEnabled ||
+          groupByMode != GroupByDesc.Mode.HASH ||
+          !udfName.equals("count")) {
+        setExpressionIssue("Aggregation Function", "DISTINCT not supported");
+        return false;
+      }
     }
 
 
     ArrayList<ExprNodeDesc> parameters = aggDesc.getParameters();
 
+    if (isConstantParameterAggregation(udfName) && parameters != null && parameters.size() > 1) {
+
+      // Only the first parameter is an input column; the others must be constants.
+      if (!hasConstantTrailingParameters(parameters)) {
+        setExpressionIssue("Aggregation Function",
+            "UDF " + udfName + " with non-constant parameters not supported");
+        return false;
+      }
+      parameters = new ArrayList<ExprNodeDesc>(parameters.subList(0, 1));
+    }
+
     if (parameters != null && !validateExprNodeDesc(parameters, "Aggregation Function UDF " + udfName + " parameter")) {
       return false;
     }
 
+    if (isCollect && !validateCollectParameter(parameters, udfName)) {
+      return false;
+    }
+
+    return true;
+  }
+
+  private static boolean isNumericHistogramAggregation(String udfName) {
+    return udfName.equalsIgnoreCase("percentile_approx") ||
+        udfName.equalsIgnoreCase("histogram_numeric");
+  }
+
+  private static boolean isConstantParameterAggregation(String udfName) {
+    return isNumericHistogramAggregation(udfName) || udfName.equalsIgnoreCase("compute_stats");
+  }
+
+  /*
+   * The percentile approximation and the number of bins of percentile_approx / histogram_numeric,
+   * and the NDV estimator (and its number of bit vectors) of compute_stats are given as
+   * (non-null) constant parameters after the input column.
+   */
+  private static boolean hasConstantTrailingParameters(List<ExprNodeDesc> parameters) {
+    for (int i = 1; i < parameters.size(); i++) {
+      ExprNodeDesc parameter = parameters.get(i);
+      if (!(parameter instanceof ExprNodeConstantDesc) ||
+          ((ExprNodeConstantDesc) parameter).getValue() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * The vectorized collect_set / collect_list only keep LONG, DOUBLE and BYTES values.  DECIMAL
+   * values, including the ones read as DECIMAL_64, stay in row mode.  For the PARTIAL2 and FINAL
+   * modes the parameter is the LIST of values.
+   */
+  private boolean validateCollectParameter(List<ExprNodeDesc> parameters, String udfName) {
+    if (parameters == null || parameters.size() != 1) {
+      return true;
+    }
+    TypeInfo valueTypeInfo = parameters.get(0).getTypeInfo();
+    if (valueTypeInfo != null && valueTypeInfo.getCategory() == Category.LIST) {
+      valueTypeInfo = ((ListTypeInfo) valueTypeInfo).getListElementTypeInfo();
+    }
+    ColumnVector.Type valueColVectorType = null;
+    if (valueTypeInfo != null && valueTypeInfo.getCategory() == Category.PRIMITIVE) {
+      try {
+        valueColVectorType = VectorizationContext.getColumnVectorTypeFromTypeInfo(valueTypeInfo);
+      } catch (HiveException e) {
+        valueColVectorType = null;
+      }
+    }
+    if (valueColVectorType != ColumnVector.Type.LONG &&
+        valueColVectorType != ColumnVector.Type.DOUBLE &&
+        valueColVectorType != ColumnVector.Type.BYTES) {
+      setExpressionIssue("Aggregation Function",
+          "UDF " + udfName + " of " + valueTypeInfo + " values not supported");
+      return false;
+    }
     return true;
   }
 
@@ -3304,6 +3595,10 @@ Operator<? extends OperatorDesc> specializeMapJoinOperator(Operator<? extends Op
       vectorMapJoinVariation = VectorMapJoinVariation.LEFT_SEMI;
       hashTableKind = HashTableKind.HASH_SET;
       break;
+    case JoinDesc.FULL_OUTER_JOIN:
+      vectorMapJoinVariation = VectorMapJoinVariation.FULL_OUTER;
+      hashTableKind = HashTableKind.HASH_MAP;
+      break;
     default:
       throw new HiveException("Unknown join type " + joinType);
     }
@@ -3329,6 +3624,9 @@ Operator<? extends OperatorDesc> specializeMapJoinOperator(Operator<? extends Op
       case OUTER:
         opClass = VectorMapJoinOuterLongOperator.class;
         break;
+      case FULL_OUTER:
+        opClass = VectorMapJoinFullOuterLongOperator.class;
+        break;
       default:
         throw new HiveException("Unknown operator variation " + vectorMapJoinVariation);
       }
@@ -3347,6 +3645,9 @@ Operator<? extends OperatorDesc> specializeMapJoinOperator(Operator<? extends Op
       case OUTER:
         opClass = VectorMapJoinOuterStringOperator.class;
         break;
+      case FULL_OUTER:
+        opClass = VectorMapJoinFullOuterStringOperator.class;
+        break;
       default:
         throw new HiveException("Unknown operator variation " + vectorMapJoinVariation);
       }
@@ -3365,6 +3666,9 @@ Operator<? extends OperatorDesc> specializeMapJoinOperator(Operator<? extends Op
       case OUTER:
         opClass = VectorMapJoinOuterMultiKeyOperator.class;
         break;
+      case FULL_OUTER:
+        opClass = VectorMapJoinFullOuterMultiKeyOperator.class;
+        break;
       default:
         throw new HiveException("Unknown operator variation " + vectorMapJoinVariation);
       }
@@ -3429,6 +3733,19 @@ private boolean canSpecializeMapJoin(Operator<? extends OperatorDesc> op, MapJoi
 
     boolean outerJoinHasNoKeys = (!desc.isNoOuterJoin() && keyDesc.size() == 0);
 
+    // FULL OUTER is only supported by the native operators (with the fast hash table).  The small
+    // table ON clause filters are not evaluated by the native operators.
+    boolean isFullOuter = (desc.getConds()[0].getType() == JoinDesc.FULL_OUTER_JOIN);
+    boolean fullOuterHasNoSmallTableFilters = true;
+    if (isFullOuter && desc.getFilters() != null) {
+      for (Map.Entry<Byte, List<ExprNodeDesc>> entry : desc.getFilters().entrySet()) {
+        if (entry.getKey() != posBigTable && entry.getValue() != null &&
+            !entry.getValue().isEmpty()) {
+          fullOuterHasNoSmallTableFilters = false;
+        }
+      }
+    }
+
     // For now, we don't support joins on or using DECIMAL_64.
     VectorExpression[] allBigTableKeyExpressions =
         vContext.getVectorExpressionsUpConvertDecimal64(keyDesc);
@@ -3732,6 +4049,8 @@ private boolean canSpecializeMapJoin(Operator<? extends OperatorDesc> op, MapJoi
     vectorDesc.setHasNullSafes(hasNullSafes);
     vectorDesc.setSmallTableExprVectorizes(smallTableExprVectorizes);
     vectorDesc.setOuterJoinHasNoKeys(outerJoinHasNoKeys);
+    vectorDesc.setIsFullOuter(isFullOuter);
+    vectorDesc.setFullOuterHasNoSmallTableFilters(fullOuterHasNoSmallTableFilters);
 
     vectorDesc.setIsFastHashTableEnabled(isFastHashTableEnabled);
     vectorDesc.setIsHybridHashJoin(isHybridHashJoin);
@@ -3772,6 +4091,11 @@ private boolean canSpecializeMapJoin(Operator<? extends OperatorDesc> op, MapJoi
       }
     }
 
+    if (isFullOuter &&
+        (!isFastHashTableEnabled || !fullOuterHasNoSmallTableFilters)) {
+      result = false;
+    }
+
     // Convert dynamic arrays and maps to simple arrays.
 
     bigTableRetainedMapping.finalize();
@@ -4155,6 +4479,22 @@ public static Operator<? extends OperatorDesc> vectorizeFilterOperator(
         vContext, vectorFilterDesc);
   }
 
+  public static Operator<? extends OperatorDesc> vectorizeTopNKeyOperator(
+      Operator<? extends OperatorDesc> topNKeyOperator, VectorizationContext vContext,
+      VectorTopNKeyDesc vectorTopNKeyDesc)
+          throws HiveException {
+
+    TopNKeyDesc topNKeyDesc = (TopNKeyDesc) topNKeyOperator.getConf();
+
+    List<ExprNodeDesc> keyColumns = topNKeyDesc.getKeyColumns();
+    VectorExpression[] keyExpressions =
+        vContext.getVectorExpressionsUpConvertDecimal64(keyColumns);
+    vectorTopNKeyDesc.setKeyExpressions(keyExpressions);
+    return OperatorFactory.getVectorOperator(
+        topNKeyOperator.getCompilationOpContext(), topNKeyDesc,
+        vContext, vectorTopNKeyDesc);
+  }
+
   private static Class<? extends VectorAggregateExpression> findVecAggrClass(
       Class<? extends VectorAggregateExpression>[] vecAggrClasses,
       String aggregateName, ColumnVector.Type inputColVectorType,
@@ -4195,7 +4535,15 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
     ArrayList<ExprNodeDesc> parameters = aggrDesc.getParameters();
     ObjectInspector[] parameterObjectInspectors = new ObjectInspector[parameterCount];
     for (int i = 0; i < parameterCount; i++) {
-      TypeInfo typeInfo = parameters.get(i).getTypeInfo();
+      ExprNodeDesc parameter = parameters.get(i);
+      if (i > 0 && parameter instanceof ExprNodeConstantDesc &&
+          isConstantParameterAggregation(aggregateName)) {
+
+        // The percentile_approx evaluator reads its constant parameters during init.
+        parameterObjectInspectors[i] = parameter.getWritableObjectInspector();
+        continue;
+      }
+      TypeInfo typeInfo = parameter.getTypeInfo();
       parameterObjectInspectors[i] = TypeInfoUtils
           .getStandardWritableObjectInspectorFromTypeInfo(typeInfo);
     }
@@ -4216,7 +4564,8 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
           "Vectorization not supported";
       return new ImmutablePair<VectorAggregationDesc,String>(null, issue);
     }
-    final Class<? extends VectorAggregateExpression>[] vecAggrClasses = annotation.value();
+    final Class<? extends VectorAggregateExpression>[] vecAggrClasses =
+        (aggrDesc.getDistinct() ? annotation.distinct() : annotation.value());
 
     final TypeInfo outputTypeInfo = TypeInfoUtils.getTypeInfoFromTypeString(returnOI.getTypeName());
 
@@ -4240,8 +4589,12 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
       inputColVectorType = null;
       inputExpression = null;
 
-    } else if (parameterCount == 1) {
+    } else if (parameterCount == 1 ||
+        (isConstantParameterAggregation(aggregateName) &&
+            hasConstantTrailingParameters(parameterList))) {
 
+      // The constant parameters of percentile_approx, histogram_numeric and compute_stats are
+      // taken from the evaluator or the AggregationDesc by the vectorized aggregation itself.
       ExprNodeDesc exprNodeDesc = parameterList.get(0);
       inputTypeInfo = exprNodeDesc.getTypeInfo();
       if (inputTypeInfo == null) {
@@ -4688,12 +5041,14 @@ private static void createVectorPTFDesc(Operator<? extends OperatorDesc> ptfOp,
   }
 
   private static void determineKeyAndNonKeyInputColumnMap(int[] outputColumnProjectionMap,
-      boolean isPartitionOrderBy, int[] orderColumnMap, int[] partitionColumnMap,
-      int evaluatorCount, ArrayList<Integer> keyInputColumns,
+      boolean isPartitionOrderBy, boolean isBufferingPartition, int[] orderColumnMap,
+      int[] partitionColumnMap, int evaluatorCount, ArrayList<Integer> keyInputColumns,
       ArrayList<Integer> nonKeyInputColumns) {
 
     final int outputSize = outputColumnProjectionMap.length;
-    final int orderKeyCount = orderColumnMap.length;
+
+    // When the whole partition is buffered, the ORDER BY columns vary across the buffered batches.
+    final int orderKeyCount = (isBufferingPartition ? 0 : orderColumnMap.length);
     final int partitionKeyCount = (isPartitionOrderBy ? partitionColumnMap.length : 0);
     for (int i = evaluatorCount; i < outputSize; i++) {
       final int nonEvalColumnNum = outputColumnProjectionMap[i];
@@ -4803,10 +5158,22 @@ private static VectorPTFInfo createVectorPTFInfo(Operator<? extends OperatorDesc
       orderExpressions[i] = orderExpression;
     }
 
+    boolean hasPartitionFunction = false;
+    for (int i = 0; i < evaluatorCount; i++) {
+      if (VectorPTFDesc.isPartitionFunction(
+          VectorPTFDesc.getSupportedFunctionType(evaluatorFunctionNames[i]),
+          evaluatorWindowFrameDefs[i])) {
+        hasPartitionFunction = true;
+        break;
+      }
+    }
+    final boolean isBufferingPartition = (isPartitionOrderBy && hasPartitionFunction);
+
     ArrayList<Integer> keyInputColumns = new ArrayList<Integer>();
     ArrayList<Integer> nonKeyInputColumns = new ArrayList<Integer>();
-    determineKeyAndNonKeyInputColumnMap(outputColumnProjectionMap, isPartitionOrderBy, orderColumnMap,
-        partitionColumnMap, evaluatorCount, keyInputColumns, nonKeyInputColumns);
+    determineKeyAndNonKeyInputColumnMap(outputColumnProjectionMap, isPartitionOrderBy,
+        isBufferingPartition, orderColumnMap, partitionColumnMap, evaluatorCount, keyInputColumns,
+        nonKeyInputColumns);
     int[] keyInputColumnMap = ArrayUtils.toPrimitive(keyInputColumns.toArray(new Integer[0]));
     int[] nonKeyInputColumnMap = ArrayUtils.toPrimitive(nonKeyInputColumns.toArray(new Integer[0]));
 
@@ -4815,7 +5182,7 @@ private static VectorPTFInfo createVectorPTFInfo(Operator<? extends OperatorDesc
     for (int i = 0; i < evaluatorCount; i++) {
       String functionName = evaluatorFunctionNames[i];
       WindowFrameDef windowFrameDef = evaluatorWindowFrameDefs[i];
-      SupportedFunctionType functionType = VectorPTFDesc.supportedFunctionsMap.get(functionName);
+      SupportedFunctionType functionType = VectorPTFDesc.getSupportedFunctionType(functionName);
 
       List<ExprNodeDesc> exprNodeDescList = evaluatorInputExprNodeDescLists[i];
       VectorExpression inputVectorExpression;
@@ -5110,6 +5477,23 @@ public Operator<? extends OperatorDesc> validateAndVectorizeOperator(Operator<?
             isNative = true;
           }
           break;
+        case TOPNKEY:
+          {
+            if (!validateTopNKeyOperator((TopNKeyOperator) op)) {
+              throw new VectorizerCannotVectorizeException();
+            }
+
+            VectorTopNKeyDesc vectorTopNKeyDesc = new VectorTopNKeyDesc();
+            vectorOp = vectorizeTopNKeyOperator(op, vContext, vectorTopNKeyDesc);
+            isNative = true;
+            if (vectorTaskColumnInfo != null) {
+              VectorExpression[] keyExpressions = vectorTopNKeyDesc.getKeyExpressions();
+              if (usesVectorUDFAdaptor(keyExpressions)) {
+                vectorTaskColumnInfo.setUsesVectorUDFAdaptor(true);
+              }
+            }
+          }
+          break;
         case EVENT:
           {
             // No validation.
@@ -439,12 +439,15 @@ private static PrunedPartitionList getPartitionsFromServer(Table tab, final Stri
       // Finally, check the filter for non-built-in UDFs. If these are present, we cannot
       // do filtering on the server, and have to fall back to client path.
       boolean doEvalClientSide = hasUserFunctions(compactExpr);
+      // The metastore returns all the partitions matching the filter in a single response. To
+      // bound the memory this takes, filter the names here and fetch the partitions in batches.
+      boolean fetchInBatches = conf.getBoolVar(HiveConf.ConfVars.HIVE_PARTITION_FETCH_COMPACT);
 
       // Now filter.
       List<Partition> partitions = new ArrayList<Partition>();
       boolean hasUnknownPartitions = false;
       PerfLogger perfLogger = SessionState.getPerfLogger();
-      if (!doEvalClientSide) {
+      if (!doEvalClientSide && !fetchInBatches) {
         perfLogger.PerfLogBegin(CLASS_NAME, PerfLogger.PARTITION_RETRIEVING);
         try {
           hasUnknownPartitions = Hive.get().getPartitionsByExpr(
@@ -457,8 +460,9 @@ private static PrunedPartitionList getPartitionsFromServer(Table tab, final Stri
           perfLogger.PerfLogEnd(CLASS_NAME, PerfLogger.PARTITION_RETRIEVING);
         }
       }
-      if (doEvalClientSide) {
-        // Either we have user functions, or metastore is old version - filter names locally.
+      if (doEvalClientSide || fetchInBatches) {
+        // Either we have user functions, or metastore is old version, or we fetch the partitions
+        // in batches - filter names locally.
         hasUnknownPartitions = pruneBySequentialScan(tab, partitions, compactExpr, conf);
       }
       // The partitions are "unknown" if the call says so due to the expression
@@ -510,7 +514,8 @@ static private boolean pruneBySequentialScan(Table tab, List<Partition> partitio
 
     perfLogger.PerfLogBegin(CLASS_NAME, PerfLogger.PARTITION_RETRIEVING);
     if (!partNames.isEmpty()) {
-      partitions.addAll(Hive.get().getPartitionsByNames(tab, partNames));
+      partitions.addAll(Hive.get().getPartitionsByNames(tab, partNames,
+          conf.getBoolVar(HiveConf.ConfVars.HIVE_PARTITION_FETCH_COMPACT)));
     }
     perfLogger.PerfLogEnd(CLASS_NAME, PerfLogger.PARTITION_RETRIEVING);
     return hasUnknownPartitions;
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.optimizer.topnkey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import org.apache.hadoop.hive.ql.exec.GroupByOperator;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorFactory;
+import org.apache.hadoop.hive.ql.exec.ReduceSinkOperator;
+import org.apache.hadoop.hive.ql.exec.RowSchema;
+import org.apache.hadoop.hive.ql.exec.TopNKeyOperator;
+import org.apache.hadoop.hive.ql.lib.Node;
+import org.apache.hadoop.hive.ql.lib.NodeProcessor;
+import org.apache.hadoop.hive.ql.lib.NodeProcessorCtx;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDescUtils;
+import org.apache.hadoop.hive.ql.plan.GroupByDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.ReduceSinkDesc;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TopNKeyProcessor is a processor for pushing the LIMIT of an ordered ReduceSinkOperator
+ * further down as a TopNKeyOperator.
+ *
+ * The TopNKeyOperator is inserted right before the ReduceSinkOperator.  If the ReduceSinkOperator
+ * follows a map side (hash mode) GroupByOperator and sorts on its grouping keys, it is inserted
+ * before the GroupByOperator instead, so rows are dropped before they are aggregated.
+ */
+public class TopNKeyProcessor implements NodeProcessor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TopNKeyProcessor.class);
+
+  public TopNKeyProcessor() {
+  }
+
+  @Override
+  public Object process(Node nd, Stack<Node> stack, NodeProcessorCtx procCtx,
+      Object... nodeOutputs) throws SemanticException {
+
+    // Get ReduceSinkOperator
+    ReduceSinkOperator reduceSinkOperator = (ReduceSinkOperator) nd;
+    ReduceSinkDesc reduceSinkDesc = reduceSinkOperator.getConf();
+
+    // Check whether the reduce sink operator contains top n
+    if (reduceSinkDesc.getTopN() <= 0 || !reduceSinkDesc.isOrdering()) {
+      return null;
+    }
+
+    // Windowing functions may look at all the rows of a partition
+    if (reduceSinkDesc.isPTFReduceSink()) {
+      return null;
+    }
+
+    // Distinct keys are added to the key columns
+    if (reduceSinkDesc.getDistinctColumnIndices() != null &&
+        !reduceSinkDesc.getDistinctColumnIndices().isEmpty()) {
+      return null;
+    }
+
+    List<ExprNodeDesc> keyColumns = reduceSinkDesc.getKeyCols();
+    if (keyColumns == null || keyColumns.isEmpty()) {
+      return null;
+    }
+
+    // Check whether there is a single parent that is not already a TopNKeyOperator
+    if (reduceSinkOperator.getNumParent() != 1) {
+      return null;
+    }
+    Operator<? extends OperatorDesc> parentOperator =
+        reduceSinkOperator.getParentOperators().get(0);
+    if (parentOperator instanceof TopNKeyOperator) {
+      return null;
+    }
+
+    int topN = reduceSinkDesc.getTopN();
+    String columnSortOrder = reduceSinkDesc.getOrder();
+    String nullOrder = reduceSinkDesc.getNullOrder();
+
+    // Try to go below the map side aggregation
+    if (parentOperator instanceof GroupByOperator) {
+      GroupByOperator groupByOperator = (GroupByOperator) parentOperator;
+      List<ExprNodeDesc> groupByKeyColumns = mapToGroupByKeys(groupByOperator, keyColumns);
+      if (groupByKeyColumns != null) {
+        TopNKeyDesc topNKeyDesc =
+            new TopNKeyDesc(topN, columnSortOrder, nullOrder, groupByKeyColumns);
+        insertBefore(groupByOperator, topNKeyDesc);
+        LOG.debug("Pushed top n key with limit {} below {}", topN, groupByOperator);
+        return null;
+      }
+    }
+
+    TopNKeyDesc topNKeyDesc = new TopNKeyDesc(topN, columnSortOrder, nullOrder,
+        new ArrayList<>(keyColumns));
+    insertBefore(reduceSinkOperator, topNKeyDesc);
+    LOG.debug("Pushed top n key with limit {} above {}", topN, reduceSinkOperator);
+    return null;
+  }
+
+  /**
+   * Resolves the reduce sink keys to the grouping keys of a hash mode group by operator.
+   *
+   * @return the grouping key expressions, or null when a key is not a grouping key or the group
+   *         by cannot be skipped
+   */
+  private static List<ExprNodeDesc> mapToGroupByKeys(GroupByOperator groupByOperator,
+      List<ExprNodeDesc> keyColumns) {
+    GroupByDesc groupByDesc = groupByOperator.getConf();
+    if (groupByDesc.getMode() != GroupByDesc.Mode.HASH || groupByDesc.isDistinct() ||
+        groupByDesc.isGroupingSetsPresent() || groupByOperator.getNumParent() != 1) {
+      return null;
+    }
+    Map<String, ExprNodeDesc> columnExprMap = groupByOperator.getColumnExprMap();
+    List<ExprNodeDesc> groupByKeys = groupByDesc.getKeys();
+    if (columnExprMap == null || groupByKeys == null || groupByKeys.isEmpty()) {
+      return null;
+    }
+
+    List<ExprNodeDesc> mappedColumns = new ArrayList<>(keyColumns.size());
+    for (ExprNodeDesc keyColumn : keyColumns) {
+      if (!(keyColumn instanceof ExprNodeColumnDesc)) {
+        return null;
+      }
+      ExprNodeDesc mappedColumn =
+          columnExprMap.get(((ExprNodeColumnDesc) keyColumn).getColumn());
+      if (mappedColumn == null || ExprNodeDescUtils.indexOf(mappedColumn, groupByKeys) < 0) {
+        return null;
+      }
+      mappedColumns.add(mappedColumn);
+    }
+    return mappedColumns;
+  }
+
+  private static void insertBefore(Operator<? extends OperatorDesc> operator,
+      TopNKeyDesc topNKeyDesc) {
+    Operator<? extends OperatorDesc> parentOperator = operator.getParentOperators().get(0);
+
+    Operator<? extends OperatorDesc> topNKeyOperator = OperatorFactory.get(
+        operator.getCompilationOpContext(), topNKeyDesc,
+        new RowSchema(parentOperator.getSchema()));
+
+    parentOperator.replaceChild(operator, topNKeyOperator);
+    topNKeyOperator.setParentOperators(
+        new ArrayList<Operator<? extends OperatorDesc>>(Collections.singletonList(parentOperator)));
+    topNKeyOperator.setChildOperators(
+        new ArrayList<Operator<? extends OperatorDesc>>(Collections.singletonList(operator)));
+    operator.replaceParent(parentOperator, topNKeyOperator);
+  }
+}
@@ -82,6 +82,12 @@ public class MapJoinDesc extends JoinDesc implements Serializable {
   private boolean isHybridHashJoin;
   private boolean isDynamicPartitionHashJoin = false;
 
+  // for llap. identifies the small table inputs, so identical hash tables can be shared by
+  // queries in the same daemon. null if the hash table must not be shared.
+  private String sharedHashTableKey;
+  // transactional tables the small table inputs read; their write ids complete the key.
+  private List<String> sharedHashTableSources;
+
   public MapJoinDesc() {
     bigTableBucketNumMapping = new LinkedHashMap<String, Integer>();
   }
@@ -104,6 +110,8 @@ public MapJoinDesc(MapJoinDesc clone) {
     this.parentDataSizes = clone.parentDataSizes;
     this.isBucketMapJoin = clone.isBucketMapJoin;
     this.isHybridHashJoin = clone.isHybridHashJoin;
+    this.sharedHashTableKey = clone.sharedHashTableKey;
+    this.sharedHashTableSources = clone.sharedHashTableSources;
   }
 
   public MapJoinDesc(final Map<Byte, List<ExprNodeDesc>> keys,
@@ -386,6 +394,19 @@ public void setDynamicPartitionHashJoin(boolean isDistributedHashJoin) {
     this.isDynamicPartitionHashJoin = isDistributedHashJoin;
   }
 
+  public String getSharedHashTableKey() {
+    return sharedHashTableKey;
+  }
+
+  public List<String> getSharedHashTableSources() {
+    return sharedHashTableSources;
+  }
+
+  public void setSharedHashTableKey(String sharedHashTableKey, List<String> sources) {
+    this.sharedHashTableKey = sharedHashTableKey;
+    this.sharedHashTableSources = sources;
+  }
+
   // Use LinkedHashSet to give predictable display order.
   private static final Set<String> vectorizableMapJoinNativeEngines =
       new LinkedHashSet<String>(Arrays.asList("tez", "spark"));
@@ -451,6 +472,17 @@ private VectorizationCondition[] createNativeConditions() {
                 "Outer Join has keys"));
       }
 
+      if (vectorMapJoinDesc.getIsFullOuter()) {
+        conditionList.add(
+            new VectorizationCondition(
+                isFastHashTableEnabled,
+                "Full Outer Join uses Fast Hash Table"));
+        conditionList.add(
+            new VectorizationCondition(
+                vectorMapJoinDesc.getFullOuterHasNoSmallTableFilters(),
+                "Full Outer Join has no Small Table filters"));
+      }
+
       if (isFastHashTableEnabled) {
         conditionList.add(
             new VectorizationCondition(
@@ -543,7 +575,9 @@ public String getProjectedOutputColumnNums() {
 
     @Explain(vectorization = Vectorization.DETAIL, displayName = "bigTableOuterKeyMapping", explainLevels = { Level.DEFAULT, Level.EXTENDED })
     public List<String> getBigTableOuterKey() {
-      if (!isNative || vectorMapJoinDesc.getVectorMapJoinVariation() != VectorMapJoinVariation.OUTER) {
+      if (!isNative ||
+          (vectorMapJoinDesc.getVectorMapJoinVariation() != VectorMapJoinVariation.OUTER &&
+           vectorMapJoinDesc.getVectorMapJoinVariation() != VectorMapJoinVariation.FULL_OUTER)) {
         return null;
       }
       return columnMappingToStringList(vectorMapJoinInfo.getBigTableOuterKeyMapping());
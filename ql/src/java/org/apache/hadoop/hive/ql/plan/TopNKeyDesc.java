@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.hadoop.hive.ql.optimizer.signature.Signature;
+import org.apache.hadoop.hive.ql.plan.Explain.Level;
+import org.apache.hadoop.hive.ql.plan.Explain.Vectorization;
+
+/**
+ * TopNKeyDesc.
+ *
+ * Keeps the rows whose key is among the top n keys seen so far; the remaining rows cannot be
+ * part of the result of the LIMIT pushed down into the downstream Reducesink operator.
+ */
+@Explain(displayName = "Top N Key Operator", explainLevels = { Level.USER, Level.DEFAULT, Level.EXTENDED })
+public class TopNKeyDesc extends AbstractOperatorDesc {
+
+  private static final long serialVersionUID = 1L;
+
+  private int topN;
+  private String columnSortOrder;
+  private String nullOrder;
+  private List<ExprNodeDesc> keyColumns;
+
+  public TopNKeyDesc() {
+  }
+
+  public TopNKeyDesc(
+      final int topN,
+      final String columnSortOrder,
+      final String nullOrder,
+      final List<ExprNodeDesc> keyColumns) {
+
+    this.topN = topN;
+    this.columnSortOrder = columnSortOrder;
+    this.nullOrder = nullOrder;
+    this.keyColumns = keyColumns;
+  }
+
+  @Signature
+  @Explain(displayName = "top n", explainLevels = { Level.USER, Level.DEFAULT, Level.EXTENDED })
+  public int getTopN() {
+    return topN;
+  }
+
+  public void setTopN(int topN) {
+    this.topN = topN;
+  }
+
+  /**
+   * Returns the sort order of the key columns.
+   *
+   * @return a String of the same length as the key columns, that consists of only "+"
+   *         (ascending order) and "-" (descending order).
+   */
+  @Signature
+  @Explain(displayName = "sort order", explainLevels = { Level.DEFAULT, Level.EXTENDED })
+  public String getColumnSortOrder() {
+    return columnSortOrder;
+  }
+
+  public void setColumnSortOrder(String columnSortOrder) {
+    this.columnSortOrder = columnSortOrder;
+  }
+
+  /**
+   * Returns the null order of the key columns.
+   *
+   * @return null, which means default for all key columns, or a String of the same length as
+   *         the key columns, that consists of only "a" (null first) and "z" (null last).
+   */
+  @Explain(displayName = "null sort order", explainLevels = { Level.EXTENDED })
+  public String getNullOrder() {
+    return nullOrder;
+  }
+
+  public void setNullOrder(String nullOrder) {
+    this.nullOrder = nullOrder;
+  }
+
+  @Signature
+  @Explain(displayName = "keys")
+  public String getKeyString() {
+    return PlanUtils.getExprListString(keyColumns);
+  }
+
+  @Explain(displayName = "keys", explainLevels = { Level.USER })
+  public String getUserLevelExplainKeyString() {
+    return PlanUtils.getExprListString(keyColumns, true);
+  }
+
+  public List<ExprNodeDesc> getKeyColumns() {
+    return keyColumns;
+  }
+
+  public void setKeyColumns(List<ExprNodeDesc> keyColumns) {
+    this.keyColumns = keyColumns;
+  }
+
+  public List<String> getKeyColumnNames() {
+    List<String> ret = new ArrayList<>();
+    for (ExprNodeDesc keyColumn : keyColumns) {
+      ret.add(keyColumn.getExprString());
+    }
+    return ret;
+  }
+
+  @Override
+  public boolean isSame(OperatorDesc other) {
+    if (getClass().getName().equals(other.getClass().getName())) {
+      TopNKeyDesc otherDesc = (TopNKeyDesc) other;
+      return getTopN() == otherDesc.getTopN() &&
+          Objects.equals(columnSortOrder, otherDesc.columnSortOrder) &&
+          Objects.equals(nullOrder, otherDesc.nullOrder) &&
+          ExprNodeDescUtils.isSame(keyColumns, otherDesc.keyColumns);
+    }
+    return false;
+  }
+
+  @Override
+  public Object clone() {
+    TopNKeyDesc ret = new TopNKeyDesc();
+    ret.setTopN(topN);
+    ret.setColumnSortOrder(columnSortOrder);
+    ret.setNullOrder(nullOrder);
+    ret.setKeyColumns(keyColumns == null ? null : new ArrayList<>(keyColumns));
+    return ret;
+  }
+
+  public class TopNKeyOperatorExplainVectorization extends OperatorExplainVectorization {
+
+    private final TopNKeyDesc topNKeyDesc;
+    private final VectorTopNKeyDesc vectorTopNKeyDesc;
+
+    public TopNKeyOperatorExplainVectorization(TopNKeyDesc topNKeyDesc,
+        VectorTopNKeyDesc vectorTopNKeyDesc) {
+      // Native vectorization supported.
+      super(vectorTopNKeyDesc, true);
+      this.topNKeyDesc = topNKeyDesc;
+      this.vectorTopNKeyDesc = vectorTopNKeyDesc;
+    }
+
+    @Explain(vectorization = Vectorization.EXPRESSION, displayName = "keyExpressions", explainLevels = { Level.DEFAULT, Level.EXTENDED })
+    public List<String> getKeyExpressions() {
+      return vectorExpressionsToStringList(vectorTopNKeyDesc.getKeyExpressions());
+    }
+  }
+
+  @Explain(vectorization = Vectorization.OPERATOR, displayName = "Top N Key Vectorization", explainLevels = { Level.DEFAULT, Level.EXTENDED })
+  public TopNKeyOperatorExplainVectorization getTopNKeyVectorization() {
+    VectorTopNKeyDesc vectorTopNKeyDesc = (VectorTopNKeyDesc) getVectorDesc();
+    if (vectorTopNKeyDesc == null) {
+      return null;
+    }
+    return new TopNKeyOperatorExplainVectorization(this, vectorTopNKeyDesc);
+  }
+}
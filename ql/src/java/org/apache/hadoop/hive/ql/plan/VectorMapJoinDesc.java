@@ -89,7 +89,8 @@ public static enum VectorMapJoinVariation {
     INNER_BIG_ONLY,
     INNER,
     LEFT_SEMI,
-    OUTER
+    OUTER,
+    FULL_OUTER
   }
 
   private HashTableImplementationType hashTableImplementationType;
@@ -206,6 +207,8 @@ public VectorMapJoinInfo getVectorMapJoinInfo() {
   private List<String> notSupportedKeyTypes;
   private boolean smallTableExprVectorizes;
   private boolean outerJoinHasNoKeys;
+  private boolean isFullOuter;
+  private boolean fullOuterHasNoSmallTableFilters;
 
   public void setUseOptimizedTable(boolean useOptimizedTable) {
     this.useOptimizedTable = useOptimizedTable;
@@ -261,6 +264,18 @@ public void setOuterJoinHasNoKeys(boolean outerJoinHasNoKeys) {
   public boolean getOuterJoinHasNoKeys() {
     return outerJoinHasNoKeys;
   }
+  public void setIsFullOuter(boolean isFullOuter) {
+    this.isFullOuter = isFullOuter;
+  }
+  public boolean getIsFullOuter() {
+    return isFullOuter;
+  }
+  public void setFullOuterHasNoSmallTableFilters(boolean fullOuterHasNoSmallTableFilters) {
+    this.fullOuterHasNoSmallTableFilters = fullOuterHasNoSmallTableFilters;
+  }
+  public boolean getFullOuterHasNoSmallTableFilters() {
+    return fullOuterHasNoSmallTableFilters;
+  }
 
   public void setIsFastHashTableEnabled(boolean isFastHashTableEnabled) {
     this.isFastHashTableEnabled = isFastHashTableEnabled;
@@ -24,32 +24,53 @@
 import java.util.TreeSet;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorBase;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorCount;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorCountStar;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorCumeDist;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalAvg;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalFirstValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalLag;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalLastValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalLead;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalMax;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingMinMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDenseRank;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleAvg;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleFirstValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleLag;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleLastValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleLead;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleMax;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingMinMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongAvg;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongFirstValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongLag;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongLastValue;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongLead;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongMax;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingMinMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSum;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorNTile;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorPercentRank;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorRank;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorRowNumber;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorSlidingCount;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.WindowType;
 import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 
@@ -75,7 +96,12 @@ public static enum SupportedFunctionType {
     AVG,
     FIRST_VALUE,
     LAST_VALUE,
-    COUNT
+    COUNT,
+    LAG,
+    LEAD,
+    NTILE,
+    PERCENT_RANK,
+    CUME_DIST
   }
 
   public static HashMap<String, SupportedFunctionType> supportedFunctionsMap =
@@ -99,6 +125,78 @@ public static enum SupportedFunctionType {
     supportedFunctionNames.addAll(treeSet);
   }
 
+  // The offset (lead, lag) and distribution (ntile, percent_rank, cume_dist) functions are only
+  // supported when hive.vectorized.ptf.offset.distribution.functions.enabled is true.
+  public static HashMap<String, SupportedFunctionType> offsetDistributionFunctionsMap =
+      new HashMap<String, SupportedFunctionType>();
+  static {
+    offsetDistributionFunctionsMap.put("lag", SupportedFunctionType.LAG);
+    offsetDistributionFunctionsMap.put("lead", SupportedFunctionType.LEAD);
+    offsetDistributionFunctionsMap.put("ntile", SupportedFunctionType.NTILE);
+    offsetDistributionFunctionsMap.put("percent_rank", SupportedFunctionType.PERCENT_RANK);
+    offsetDistributionFunctionsMap.put("cume_dist", SupportedFunctionType.CUME_DIST);
+  }
+
+  public static SupportedFunctionType getSupportedFunctionType(String functionName) {
+    SupportedFunctionType functionType = supportedFunctionsMap.get(functionName);
+    if (functionType == null) {
+      functionType = offsetDistributionFunctionsMap.get(functionName);
+    }
+    return functionType;
+  }
+
+  // A ROWS window frame other than the whole partition; evaluated incrementally by the sliding
+  // window evaluators when hive.vectorized.ptf.sliding.window.enabled is true.
+  public static boolean isSlidingWindowFrame(WindowFrameDef windowFrameDef) {
+    return
+        windowFrameDef.getWindowType() == WindowType.ROWS &&
+        !(windowFrameDef.isStartUnbounded() && windowFrameDef.isEndUnbounded());
+  }
+
+  // A sliding window frame that ends n FOLLOWING needs later rows of the PTF partition, which may
+  // be in later batches.
+  public static boolean isPartitionFunction(SupportedFunctionType functionType,
+      WindowFrameDef windowFrameDef) {
+    if (isSlidingWindowFrame(windowFrameDef)) {
+      return windowFrameDef.getEnd().isFollowing();
+    }
+    return isPartitionFunction(functionType);
+  }
+
+  // The sliding window evaluators always stream their results.
+  public static boolean isStreamingFunction(SupportedFunctionType functionType,
+      WindowFrameDef windowFrameDef) {
+    return isSlidingWindowFrame(windowFrameDef) || isStreamingFunction(functionType);
+  }
+
+  // Partition functions need all the rows of the PTF partition before their results are final.
+  public static boolean isPartitionFunction(SupportedFunctionType functionType) {
+    switch (functionType) {
+    case LEAD:
+    case NTILE:
+    case PERCENT_RANK:
+    case CUME_DIST:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  // Functions whose evaluators stream their results, so they can be mixed with partition functions
+  // when the whole partition is buffered.
+  public static boolean isStreamingFunction(SupportedFunctionType functionType) {
+    switch (functionType) {
+    case ROW_NUMBER:
+    case RANK:
+    case DENSE_RANK:
+    case FIRST_VALUE:
+    case LAG:
+      return true;
+    default:
+      return isPartitionFunction(functionType);
+    }
+  }
+
   private TypeInfo[] reducerBatchTypeInfos;
 
   private boolean isPartitionOrderBy;
@@ -136,7 +234,12 @@ public VectorPTFDesc() {
   // We provide this public method to help EXPLAIN VECTORIZATION show the evaluator classes.
   public static VectorPTFEvaluatorBase getEvaluator(SupportedFunctionType functionType,
       WindowFrameDef windowFrameDef, Type columnVectorType, VectorExpression inputVectorExpression,
-      int outputColumnNum) {
+      List<ExprNodeDesc> inputExprNodeDescList, int outputColumnNum) {
+
+    if (isSlidingWindowFrame(windowFrameDef)) {
+      return getSlidingEvaluator(
+          functionType, windowFrameDef, columnVectorType, inputVectorExpression, outputColumnNum);
+    }
 
     VectorPTFEvaluatorBase evaluator;
     switch (functionType) {
@@ -246,16 +349,160 @@ public static VectorPTFEvaluatorBase getEvaluator(SupportedFunctionType function
         evaluator = new VectorPTFEvaluatorCount(windowFrameDef, inputVectorExpression, outputColumnNum);
       }
       break;
+    case LAG:
+    case LEAD:
+      {
+        // Validation has limited the amount and default arguments to constants.
+        final int amount = (inputExprNodeDescList.size() > 1 ?
+            (Integer) ((ExprNodeConstantDesc) inputExprNodeDescList.get(1)).getValue() : 1);
+        final Object defaultValue = (inputExprNodeDescList.size() > 2 ?
+            getDefaultValue(
+                columnVectorType, ((ExprNodeConstantDesc) inputExprNodeDescList.get(2)).getValue()) :
+            null);
+        final boolean isLag = (functionType == SupportedFunctionType.LAG);
+        switch (columnVectorType) {
+        case LONG:
+          evaluator = (isLag ?
+              new VectorPTFEvaluatorLongLag(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue) :
+              new VectorPTFEvaluatorLongLead(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue));
+          break;
+        case DOUBLE:
+          evaluator = (isLag ?
+              new VectorPTFEvaluatorDoubleLag(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue) :
+              new VectorPTFEvaluatorDoubleLead(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue));
+          break;
+        case DECIMAL:
+          evaluator = (isLag ?
+              new VectorPTFEvaluatorDecimalLag(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue) :
+              new VectorPTFEvaluatorDecimalLead(
+                  windowFrameDef, inputVectorExpression, outputColumnNum, amount, defaultValue));
+          break;
+        default:
+          throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+        }
+      }
+      break;
+    case NTILE:
+      {
+        // Validation has limited the bucket count argument to a constant.
+        final int buckets =
+            (Integer) ((ExprNodeConstantDesc) inputExprNodeDescList.get(0)).getValue();
+        evaluator = new VectorPTFEvaluatorNTile(windowFrameDef, null, outputColumnNum, buckets);
+      }
+      break;
+    case PERCENT_RANK:
+      evaluator = new VectorPTFEvaluatorPercentRank(windowFrameDef, inputVectorExpression, outputColumnNum);
+      break;
+    case CUME_DIST:
+      evaluator = new VectorPTFEvaluatorCumeDist(windowFrameDef, inputVectorExpression, outputColumnNum);
+      break;
     default:
       throw new RuntimeException("Unexpected function type " + functionType);
     }
     return evaluator;
   }
 
+  private static VectorPTFEvaluatorBase getSlidingEvaluator(SupportedFunctionType functionType,
+      WindowFrameDef windowFrameDef, Type columnVectorType, VectorExpression inputVectorExpression,
+      int outputColumnNum) {
+
+    VectorPTFEvaluatorBase evaluator;
+    switch (functionType) {
+    case MIN:
+    case MAX:
+      {
+        final boolean isMax = (functionType == SupportedFunctionType.MAX);
+        switch (columnVectorType) {
+        case LONG:
+          evaluator = new VectorPTFEvaluatorLongSlidingMinMax(
+              windowFrameDef, inputVectorExpression, outputColumnNum, isMax);
+          break;
+        case DOUBLE:
+          evaluator = new VectorPTFEvaluatorDoubleSlidingMinMax(
+              windowFrameDef, inputVectorExpression, outputColumnNum, isMax);
+          break;
+        case DECIMAL:
+          evaluator = new VectorPTFEvaluatorDecimalSlidingMinMax(
+              windowFrameDef, inputVectorExpression, outputColumnNum, isMax);
+          break;
+        default:
+          throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+        }
+      }
+      break;
+    case SUM:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    case AVG:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    case COUNT:
+      evaluator = new VectorPTFEvaluatorSlidingCount(windowFrameDef, inputVectorExpression, outputColumnNum);
+      break;
+    default:
+      throw new RuntimeException("Unexpected sliding window frame function type " + functionType);
+    }
+    return evaluator;
+  }
+
+  /*
+   * Convert a lead / lag constant default value to the domain of the input column vector type:
+   * a Number for LONG and DOUBLE, and a HiveDecimal for DECIMAL.
+   */
+  private static Object getDefaultValue(Type columnVectorType, Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (columnVectorType) {
+    case LONG:
+      return (value instanceof HiveDecimal ?
+          Long.valueOf(((HiveDecimal) value).longValue()) : value);
+    case DOUBLE:
+      return (value instanceof HiveDecimal ?
+          Double.valueOf(((HiveDecimal) value).doubleValue()) : value);
+    case DECIMAL:
+      return (value instanceof HiveDecimal ?
+          value : HiveDecimal.create(value.toString()));
+    default:
+      throw new RuntimeException("Unexpected column vector type " + columnVectorType);
+    }
+  }
+
   public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc, VectorPTFInfo vectorPTFInfo) {
     String[] evaluatorFunctionNames = vectorPTFDesc.getEvaluatorFunctionNames();
     int evaluatorCount = evaluatorFunctionNames.length;
     WindowFrameDef[] evaluatorWindowFrameDefs = vectorPTFDesc.getEvaluatorWindowFrameDefs();
+    List<ExprNodeDesc>[] evaluatorInputExprNodeDescLists =
+        vectorPTFDesc.getEvaluatorInputExprNodeDescLists();
     VectorExpression[] evaluatorInputExpressions = vectorPTFInfo.getEvaluatorInputExpressions();
     Type[] evaluatorInputColumnVectorTypes = vectorPTFInfo.getEvaluatorInputColumnVectorTypes();
 
@@ -265,7 +512,7 @@ public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc
     for (int i = 0; i < evaluatorCount; i++) {
       String functionName = evaluatorFunctionNames[i];
       WindowFrameDef windowFrameDef = evaluatorWindowFrameDefs[i];
-      SupportedFunctionType functionType = VectorPTFDesc.supportedFunctionsMap.get(functionName);
+      SupportedFunctionType functionType = VectorPTFDesc.getSupportedFunctionType(functionName);
       VectorExpression inputVectorExpression = evaluatorInputExpressions[i];
       final Type columnVectorType = evaluatorInputColumnVectorTypes[i];
 
@@ -274,7 +521,8 @@ public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc
 
       VectorPTFEvaluatorBase evaluator =
           VectorPTFDesc.getEvaluator(
-              functionType, windowFrameDef, columnVectorType, inputVectorExpression, outputColumnNum);
+              functionType, windowFrameDef, columnVectorType, inputVectorExpression,
+              evaluatorInputExprNodeDescLists[i], outputColumnNum);
 
       evaluators[i] = evaluator;
     }
@@ -26,6 +26,12 @@
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsBinary;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsDouble;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsLong;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsString;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
@@ -560,6 +566,7 @@ public void merge(AggregationBuffer agg, Object partial) throws HiveException {
    * GenericUDAFLongStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({VectorUDAFComputeStatsLong.class})
   public static class GenericUDAFLongStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<Long, LongObjectInspector> {
 
@@ -628,6 +635,7 @@ public void reset(AggregationBuffer agg) throws HiveException {
    * GenericUDAFDoubleStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({VectorUDAFComputeStatsDouble.class})
   public static class GenericUDAFDoubleStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<Double, DoubleObjectInspector> {
 
@@ -696,6 +704,7 @@ public void reset(AggregationBuffer agg) throws HiveException {
    * GenericUDAFStringStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({VectorUDAFComputeStatsString.class})
   public static class GenericUDAFStringStatsEvaluator extends GenericUDAFEvaluator {
 
     /* Object Inspector corresponding to the input parameter.
@@ -998,6 +1007,7 @@ public Object terminate(AggregationBuffer agg) throws HiveException {
    * GenericUDAFBinaryStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({VectorUDAFComputeStatsBinary.class})
   public static class GenericUDAFBinaryStatsEvaluator extends GenericUDAFEvaluator {
 
     /* Object Inspector corresponding to the input parameter.
@@ -1226,6 +1236,7 @@ public Object terminate(AggregationBuffer agg) throws HiveException {
     }
   }
 
+  @VectorizedUDAFs({VectorUDAFComputeStatsDecimal.class})
   public static class GenericUDAFDecimalStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<HiveDecimal, HiveDecimalObjectInspector> {
 
@@ -1296,6 +1307,7 @@ public void reset(AggregationBuffer agg) throws HiveException {
    * GenericUDAFDateStatsEvaluator
    * High/low value will be saved in stats DB as long value representing days since epoch.
    */
+  @VectorizedUDAFs({VectorUDAFComputeStatsLong.class})
   public static class GenericUDAFDateStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<DateWritableV2, DateObjectInspector> {
 
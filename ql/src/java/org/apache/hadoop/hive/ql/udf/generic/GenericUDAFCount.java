@@ -86,10 +86,13 @@ public GenericUDAFEvaluator getEvaluator(GenericUDAFParameterInfo paramInfo)
    * GenericUDAFCountEvaluator.
    *
    */
-  @VectorizedUDAFs({
-    VectorUDAFCount.class,
-    VectorUDAFCountMerge.class,
-    VectorUDAFCountStar.class})
+  @VectorizedUDAFs(
+    value = {
+      VectorUDAFCount.class,
+      VectorUDAFCountMerge.class,
+      VectorUDAFCountStar.class},
+    distinct = {
+      VectorUDAFCountDistinct.class})
   public static class GenericUDAFCountEvaluator extends GenericUDAFEvaluator {
     private boolean isWindowing = false;
     private boolean countAllColumns = false;
@@ -24,6 +24,9 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFHistogramNumeric;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFHistogramNumericMerge;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
@@ -118,6 +121,9 @@ public GenericUDAFEvaluator getEvaluator(TypeInfo[] parameters) throws SemanticE
    * guarantees, it appears to work well with adequate data and a large (e.g., 20-80) number
    * of histogram bins.
    */
+  @VectorizedUDAFs({
+    VectorUDAFHistogramNumeric.class,
+    VectorUDAFHistogramNumericMerge.class})
   public static class GenericUDAFHistogramNumericEvaluator extends GenericUDAFEvaluator {
 
     // For PARTIAL1 and COMPLETE: ObjectInspectors for original data
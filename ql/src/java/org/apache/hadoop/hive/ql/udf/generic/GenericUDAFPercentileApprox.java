@@ -24,6 +24,9 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFPercentileApprox;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFPercentileApproxMerge;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
@@ -180,6 +183,9 @@ public GenericUDAFEvaluator getEvaluator(GenericUDAFParameterInfo info) throws S
     }
   }
 
+  @VectorizedUDAFs({
+    VectorUDAFPercentileApprox.class,
+    VectorUDAFPercentileApproxMerge.class})
   public static class GenericUDAFSinglePercentileApproxEvaluator extends
     GenericUDAFPercentileApproxEvaluator {
 
@@ -230,6 +236,9 @@ public Object terminate(AggregationBuffer agg) throws HiveException {
   }
 
 
+  @VectorizedUDAFs({
+    VectorUDAFPercentileApprox.class,
+    VectorUDAFPercentileApproxMerge.class})
   public static class GenericUDAFMultiplePercentileApproxEvaluator extends
     GenericUDAFPercentileApproxEvaluator {
 
@@ -292,6 +301,17 @@ public abstract static class GenericUDAFPercentileApproxEvaluator extends Generi
     // For PARTIAL2 and FINAL: ObjectInspectors for partial aggregations (list of doubles)
     protected transient StandardListObjectInspector loi;
 
+    /**
+     * The requested quantiles; only known for PARTIAL1 and COMPLETE.
+     */
+    public double[] getQuantiles() {
+      return quantiles;
+    }
+
+    public int getNumBins() {
+      return nbins;
+    }
+
     @Override
     public void merge(AggregationBuffer agg, Object partial) throws HiveException {
       if(partial == null) {
@@ -123,41 +123,58 @@ public void merge(List other, DoubleObjectInspector doi) {
       return;
     }
 
+    // Deserialize the ArrayList of (x,y) pairs into an array of Coord objects
+    ArrayList<Coord> otherBins = new ArrayList<Coord>((other.size()-1)/2);
+    for (int i = 1; i < other.size(); i+=2) {
+      Coord bin = new Coord();
+      bin.x = doi.get(other.get(i));
+      bin.y = doi.get(other.get(i+1));
+      otherBins.add(bin);
+    }
+    merge((int) doi.get(other.get(0)), otherBins);
+  }
+
+  /**
+   * Takes a histogram serialized into a double array by the serialize(double[], int) method
+   * and merges it with the current histogram object.
+   *
+   * @param other The array holding the serialized histogram
+   * @param offset The position of the serialized histogram in the array
+   * @param length The length of the serialized histogram
+   * @see #serialize(double[], int)
+   */
+  public void merge(double[] other, int offset, int length) {
+    ArrayList<Coord> otherBins = new ArrayList<Coord>((length-1)/2);
+    for (int i = offset + 1; i < offset + length; i+=2) {
+      Coord bin = new Coord();
+      bin.x = other[i];
+      bin.y = other[i+1];
+      otherBins.add(bin);
+    }
+    merge((int) other[offset], otherBins);
+  }
+
+  private void merge(int otherNBins, ArrayList<Coord> otherBins) {
     if(nbins == 0 || nusedbins == 0)  {
-      // Our aggregation buffer has nothing in it, so just copy over 'other'
-      // by deserializing the ArrayList of (x,y) pairs into an array of Coord objects
-      nbins = (int) doi.get(other.get(0));
-      nusedbins = (other.size()-1)/2;
-      bins = new ArrayList<Coord>(nusedbins);
-      for (int i = 1; i < other.size(); i+=2) {
-        Coord bin = new Coord();
-        bin.x = doi.get(other.get(i));
-        bin.y = doi.get(other.get(i+1));
-        bins.add(bin);
-      }
+      // Our aggregation buffer has nothing in it, so just take over the other bins
+      nbins = otherNBins;
+      nusedbins = otherBins.size();
+      bins = otherBins;
     } else {
       // The aggregation buffer already contains a partial histogram. Therefore, we need
       // to merge histograms using Algorithm #2 from the Ben-Haim and Tom-Tov paper.
 
-      ArrayList<Coord> tmp_bins = new ArrayList<Coord>(nusedbins + (other.size()-1)/2);
+      ArrayList<Coord> tmp_bins = new ArrayList<Coord>(nusedbins + otherBins.size());
       // Copy all the histogram bins from us and 'other' into an overstuffed histogram
       for (int i = 0; i < nusedbins; i++) {
-        Coord bin = new Coord();
-        bin.x = bins.get(i).x;
-        bin.y = bins.get(i).y;
-        tmp_bins.add(bin);
-      }
-      for (int j = 1; j < other.size(); j += 2) {
-        Coord bin = new Coord();
-        bin.x = doi.get(other.get(j));
-        bin.y = doi.get(other.get(j+1));
-        tmp_bins.add(bin);
+        tmp_bins.add(bins.get(i));
       }
+      tmp_bins.addAll(otherBins);
       Collections.sort(tmp_bins);
 
       // Now trim the overstuffed histogram down to the correct number of bins
       bins = tmp_bins;
-      nusedbins += (other.size()-1)/2;
+      nusedbins += otherBins.size();
       trim();
     }
   }
@@ -309,6 +326,46 @@ public ArrayList<DoubleWritable> serialize() {
     return result;
   }
 
+  /**
+   * Returns the number of doubles needed by the serialize(double[], int) method.
+   */
+  public int getSerializedLength() {
+    return 1 + (bins == null ? 0 : 2 * nusedbins);
+  }
+
+  /**
+   * Serializes the current histogram object into a double array, in the same layout as the
+   * serialize() method: the number of bins followed by the bins (x,y) pairs.
+   *
+   * @param result The array to serialize into, at least getSerializedLength() long
+   * @param offset The position in the array to start at
+   * @see #merge(double[], int, int)
+   */
+  public void serialize(double[] result, int offset) {
+    result[offset++] = nbins;
+    if(bins != null) {
+      for(int i = 0; i < nusedbins; i++) {
+        Coord bin = bins.get(i);
+        result[offset++] = bin.x;
+        result[offset++] = bin.y;
+      }
+    }
+  }
+
+  /**
+   * Returns the center of a particular histogram bin.
+   */
+  public double getBinX(int b) {
+    return bins.get(b).x;
+  }
+
+  /**
+   * Returns the height of a particular histogram bin.
+   */
+  public double getBinY(int b) {
+    return bins.get(b).y;
+  }
+
   public int getNumBins() {
     return bins == null ? 0 : bins.size();
   }
@@ -492,6 +492,58 @@ public void testLockSamePartition() throws Exception {
     assertTrue(res.getState() == LockState.WAITING);
   }
 
+  @Test
+  public void testLockManyPartitions() throws Exception {
+    // Test that a request for many partitions only conflicts with the partitions it overlaps
+    List<LockComponent> components = new ArrayList<LockComponent>();
+    for (int i = 0; i < 100; i++) {
+      LockComponent comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "mydb");
+      comp.setTablename("mytable");
+      comp.setPartitionname("mypartition=" + i);
+      comp.setOperationType(DataOperationType.NO_TXN);
+      components.add(comp);
+    }
+    LockRequest req = new LockRequest(components, "me", "localhost");
+    LockResponse res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.ACQUIRED);
+
+    components = new ArrayList<LockComponent>();
+    for (int i = 100; i < 200; i++) {
+      LockComponent comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "mydb");
+      comp.setTablename("mytable");
+      comp.setPartitionname("mypartition=" + i);
+      comp.setOperationType(DataOperationType.NO_TXN);
+      components.add(comp);
+    }
+    req = new LockRequest(components, "me", "localhost");
+    res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.ACQUIRED);
+
+    LockComponent comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "mydb");
+    comp.setTablename("mytable");
+    comp.setPartitionname("mypartition=150");
+    comp.setOperationType(DataOperationType.NO_TXN);
+    components = new ArrayList<LockComponent>();
+    components.add(comp);
+    comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "mydb");
+    comp.setTablename("mytable");
+    comp.setPartitionname("mypartition=200");
+    comp.setOperationType(DataOperationType.NO_TXN);
+    components.add(comp);
+    req = new LockRequest(components, "me", "localhost");
+    res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.WAITING);
+
+    comp = new LockComponent(LockType.SHARED_READ, LockLevel.DB, "mydb");
+    comp.setTablename("mytable");
+    comp.setOperationType(DataOperationType.NO_TXN);
+    components = new ArrayList<LockComponent>();
+    components.add(comp);
+    req = new LockRequest(components, "me", "localhost");
+    res = txnHandler.lock(req);
+    assertTrue(res.getState() == LockState.WAITING);
+  }
+
   @Test
   public void testLockSRSR() throws Exception {
     // Test that two shared read locks can share a partition
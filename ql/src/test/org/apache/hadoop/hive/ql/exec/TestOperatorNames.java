@@ -31,6 +31,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.VectorSelectOperator;
 import org.apache.hadoop.hive.ql.exec.vector.VectorSparkHashTableSinkOperator;
 import org.apache.hadoop.hive.ql.exec.vector.VectorSparkPartitionPruningSinkOperator;
+import org.apache.hadoop.hive.ql.exec.vector.VectorTopNKeyOperator;
 import org.apache.hadoop.hive.ql.parse.spark.SparkPartitionPruningSinkOperator;
 import org.junit.Test;
 
@@ -85,6 +86,9 @@ public void testOperatorNames() throws Exception {
     assertEquals(LimitOperator.getOperatorName(), new LimitOperator().getName());
     assertEquals(LimitOperator.getOperatorName(), new VectorLimitOperator().getName());
 
+    assertEquals(TopNKeyOperator.getOperatorName(), new TopNKeyOperator().getName());
+    assertEquals(TopNKeyOperator.getOperatorName(), new VectorTopNKeyOperator().getName());
+
     assertEquals(MapOperator.getOperatorName(), new MapOperator().getName());
     assertEquals(MapOperator.getOperatorName(), new VectorMapOperator().getName());
 
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+/**
+ * Unit tests for TopNKeyFilter.
+ */
+public class TestTopNKeyFilter {
+
+  private static TopNKeyFilter intFilter(int topN, String order, String nullOrder) {
+    return new TopNKeyFilter(topN,
+        new ObjectInspector[] { PrimitiveObjectInspectorFactory.writableIntObjectInspector },
+        order, nullOrder);
+  }
+
+  private static Object[] key(Integer value) {
+    return new Object[] { value == null ? null : new IntWritable(value) };
+  }
+
+  @Test
+  public void testAscending() {
+    TopNKeyFilter filter = intFilter(2, "+", "a");
+    assertTrue(filter.canForward(key(5)));
+    assertTrue(filter.canForward(key(3)));
+    // Worse than both kept keys.
+    assertFalse(filter.canForward(key(7)));
+    // Equal to a kept key.
+    assertTrue(filter.canForward(key(5)));
+    // Better key replaces 5.
+    assertTrue(filter.canForward(key(1)));
+    assertFalse(filter.canForward(key(5)));
+    assertTrue(filter.canForward(key(3)));
+    assertEquals(2, filter.size());
+  }
+
+  @Test
+  public void testDescending() {
+    TopNKeyFilter filter = intFilter(1, "-", "z");
+    assertTrue(filter.canForward(key(5)));
+    assertFalse(filter.canForward(key(3)));
+    assertTrue(filter.canForward(key(8)));
+    assertFalse(filter.canForward(key(5)));
+    // Nulls last.
+    assertFalse(filter.canForward(key(null)));
+  }
+
+  @Test
+  public void testNullsFirst() {
+    TopNKeyFilter filter = intFilter(1, "+", "a");
+    assertTrue(filter.canForward(key(5)));
+    assertTrue(filter.canForward(key(null)));
+    assertFalse(filter.canForward(key(1)));
+    assertTrue(filter.canForward(key(null)));
+  }
+
+  @Test
+  public void testDuplicateKeys() {
+    TopNKeyFilter filter = intFilter(2, "+", null);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(filter.canForward(key(4)));
+    }
+    assertEquals(1, filter.size());
+    assertTrue(filter.canForward(key(9)));
+    assertFalse(filter.canForward(key(10)));
+  }
+
+  @Test
+  public void testKeyIsCopied() {
+    TopNKeyFilter filter = intFilter(1, "+", null);
+    IntWritable reused = new IntWritable(2);
+    Object[] key = new Object[] { reused };
+    assertTrue(filter.canForward(key));
+    reused.set(10);
+    assertFalse(filter.canForward(key));
+  }
+
+  @Test
+  public void testMultipleColumns() {
+    TopNKeyFilter filter = new TopNKeyFilter(2,
+        new ObjectInspector[] {
+            PrimitiveObjectInspectorFactory.writableStringObjectInspector,
+            PrimitiveObjectInspectorFactory.writableIntObjectInspector },
+        "+-", "az");
+    assertTrue(filter.canForward(new Object[] { new Text("b"), new IntWritable(1) }));
+    assertTrue(filter.canForward(new Object[] { new Text("a"), new IntWritable(1) }));
+    assertFalse(filter.canForward(new Object[] { new Text("b"), new IntWritable(0) }));
+    assertTrue(filter.canForward(new Object[] { new Text("a"), new IntWritable(2) }));
+    assertTrue(filter.canForward(new Object[] { new Text("a"), new IntWritable(1) }));
+    assertFalse(filter.canForward(new Object[] { new Text("b"), new IntWritable(1) }));
+  }
+}
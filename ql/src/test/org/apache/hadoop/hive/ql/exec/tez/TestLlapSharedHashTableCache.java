@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainerSerDe;
+import org.junit.Test;
+
+public class TestLlapSharedHashTableCache {
+
+  @Test
+  public void testLoadOncePerDaemon() throws Exception {
+    LlapSharedHashTableCache cache = new LlapSharedHashTableCache(1000);
+    AtomicInteger loads = new AtomicInteger(0);
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> first =
+        cache.retrieve("k", "q1", createLoader(100, false, loads));
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> second =
+        cache.retrieve("k", "q2", createLoader(100, false, loads));
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertEquals(2, cache.getReferenceCount("k"));
+    assertEquals(100, cache.getUsedMemory());
+
+    cache.release("q1");
+    assertEquals(1, cache.getReferenceCount("k"));
+    cache.release("q2");
+    // Still cached for the next query, but no longer referenced.
+    assertSame(first, cache.retrieve("k", "q3", createLoader(100, false, loads)));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testEvictUnreferencedOnly() throws Exception {
+    LlapSharedHashTableCache cache = new LlapSharedHashTableCache(250);
+    AtomicInteger loads = new AtomicInteger(0);
+    cache.retrieve("a", "q1", createLoader(100, false, loads));
+    cache.retrieve("b", "q2", createLoader(100, false, loads));
+    // Does not fit while both are in use; used by its query without being cached.
+    cache.retrieve("c", "q3", createLoader(100, false, loads));
+    assertEquals(200, cache.getUsedMemory());
+    assertEquals(0, cache.getReferenceCount("c"));
+
+    cache.release("q1");
+    cache.retrieve("c", "q3", createLoader(100, false, loads));
+    assertEquals(200, cache.getUsedMemory());
+    assertEquals(0, cache.getReferenceCount("a"));
+    assertEquals(1, cache.getReferenceCount("b"));
+    assertEquals(1, cache.getReferenceCount("c"));
+    assertEquals(4, loads.get());
+  }
+
+  @Test
+  public void testSpilledNotShared() throws Exception {
+    LlapSharedHashTableCache cache = new LlapSharedHashTableCache(1000);
+    AtomicInteger loads = new AtomicInteger(0);
+    cache.retrieve("k", "q1", createLoader(100, true, loads));
+    cache.retrieve("k", "q2", createLoader(100, true, loads));
+    assertEquals(2, loads.get());
+    assertEquals(0, cache.getUsedMemory());
+  }
+
+  private static Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>>
+      createLoader(long size, boolean hasSpill, AtomicInteger loads) {
+    return () -> {
+      loads.incrementAndGet();
+      MapJoinTableContainer container = mock(MapJoinTableContainer.class);
+      when(container.getEstimatedMemorySize()).thenReturn(size);
+      when(container.hasSpill()).thenReturn(hasSpill);
+      return new ImmutablePair<>(new MapJoinTableContainer[] { null, container },
+          new MapJoinTableContainerSerDe[2]);
+    };
+  }
+}
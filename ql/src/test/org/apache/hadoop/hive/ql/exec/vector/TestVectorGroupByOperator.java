@@ -341,6 +341,86 @@ public void remove() {
     assertTrue(0 < outputRowCount);
   }
 
+  @Test
+  public void testSpillPartitionsUnderMemoryPressure() throws HiveException {
+
+    List<String> mapColumnNames = new ArrayList<String>();
+    mapColumnNames.add("Key");
+    mapColumnNames.add("Value");
+    List<TypeInfo> mapTypeInfos = new ArrayList<TypeInfo>();
+    mapTypeInfos.add(TypeInfoFactory.longTypeInfo);
+    mapTypeInfos.add(TypeInfoFactory.longTypeInfo);
+    VectorizationContext ctx = new VectorizationContext("name", mapColumnNames, mapTypeInfos,
+        null, null);
+
+    Pair<GroupByDesc,VectorGroupByDesc> pair = buildKeyGroupByDesc (ctx, "sum",
+        "Value", TypeInfoFactory.longTypeInfo,
+        "Key", TypeInfoFactory.longTypeInfo);
+    GroupByDesc desc = pair.fst;
+    VectorGroupByDesc vectorDesc = pair.snd;
+
+    // Only 100 entries fit in the hashtable, the input has 1000 distinct keys.
+    HiveConf spillConf = new HiveConf(hconf);
+    spillConf.setIntVar(HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_MAXENTRIES, 100);
+    spillConf.setBoolVar(HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED, true);
+    spillConf.setIntVar(HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS, 16);
+
+    CompilationOpContext cCtx = new CompilationOpContext();
+
+    Operator<? extends OperatorDesc> groupByOp = OperatorFactory.get(cCtx, desc);
+
+    VectorGroupByOperator vgo =
+        (VectorGroupByOperator) Vectorizer.vectorizeGroupByOperator(groupByOp, ctx, vectorDesc);
+
+    FakeCaptureVectorToRowOutputOperator out = FakeCaptureVectorToRowOutputOperator.addCaptureOutputChild(cCtx, vgo);
+    vgo.initialize(spillConf, null);
+
+    final Map<Long, Long> sums = new HashMap<Long, Long>();
+    this.outputRowCount = 0;
+    out.setOutputInspector(new FakeCaptureVectorToRowOutputOperator.OutputInspector() {
+      @Override
+      public void inspectRow(Object row, int tag) throws HiveException {
+        ++outputRowCount;
+        Object[] fields = (Object[]) row;
+        long key = ((LongWritable) fields[0]).get();
+        long sum = ((LongWritable) fields[1]).get();
+        Long previous = sums.get(key);
+        sums.put(key, previous == null ? sum : previous + sum);
+      }
+    });
+
+    final int keyCount = 1000;
+    final int rounds = 20;
+    List<Object> keys = new ArrayList<Object>();
+    List<Object> values = new ArrayList<Object>();
+    for (int r = 0; r < rounds; r++) {
+      for (long k = 0; k < keyCount; k++) {
+        keys.add(k);
+        values.add(1L);
+      }
+    }
+
+    FakeVectorRowBatchFromObjectIterables data = new FakeVectorRowBatchFromObjectIterables(
+        100,
+        new String[] {"long", "long"},
+        keys,
+        values);
+
+    for (VectorizedRowBatch unit: data) {
+      vgo.process(unit,  0);
+    }
+    vgo.close(false);
+
+    assertEquals(keyCount, sums.size());
+    for (long k = 0; k < keyCount; k++) {
+      assertEquals(Long.valueOf(rounds), sums.get(k));
+    }
+
+    // A key is normally emitted once when its partition spills and once at close, where
+    // flushing would have emitted it about once per round.
+    assertTrue(outputRowCount < 3 * keyCount);
+  }
+
   @Test
   public void testMultiKeyIntStringInt() throws HiveException {
     testMultiKey(
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hive.common.type.DataTypePhysicalVariation;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorFactory;
+import org.apache.hadoop.hive.ql.exec.TopNKeyOperator;
+import org.apache.hadoop.hive.ql.exec.util.collectoroperator.RowCollectorTestOperator;
+import org.apache.hadoop.hive.ql.exec.util.collectoroperator.RowVectorCollectorTestOperator;
+import org.apache.hadoop.hive.ql.exec.util.rowobjects.RowTestObjects;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.optimizer.physical.Vectorizer;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
+import org.apache.hadoop.hive.ql.plan.VectorTopNKeyDesc;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+/**
+ * Test the vectorized top n key operator forwards the same rows as the row mode one, and never
+ * drops a row whose key is among the first n keys.
+ */
+public class TestVectorTopNKeyOperator {
+
+  private static final int BATCH_COUNT = 40;
+
+  // col0 bigint key, col1 bigint row number, col2 string key.
+  private static final List<String> COLUMN_NAMES = Arrays.asList("col0", "col1", "col2");
+  private static final TypeInfo[] TYPE_INFOS = new TypeInfo[] {
+      TypeInfoFactory.longTypeInfo, TypeInfoFactory.longTypeInfo, TypeInfoFactory.stringTypeInfo };
+  private static final ObjectInspector[] OBJECT_INSPECTORS = new ObjectInspector[] {
+      PrimitiveObjectInspectorFactory.writableLongObjectInspector,
+      PrimitiveObjectInspectorFactory.writableLongObjectInspector,
+      PrimitiveObjectInspectorFactory.writableStringObjectInspector };
+
+  private final HiveConf hconf = new HiveConf();
+
+  @Test
+  public void testAscending() throws Exception {
+    doTopNKeyTest(new Random(6531), 10, "+", "a", false);
+  }
+
+  @Test
+  public void testDescendingNullsFirst() throws Exception {
+    doTopNKeyTest(new Random(1189), 25, "-", "a", false);
+  }
+
+  @Test
+  public void testTopOne() throws Exception {
+    doTopNKeyTest(new Random(40412), 1, "+", "z", false);
+  }
+
+  @Test
+  public void testMultipleKeys() throws Exception {
+    doTopNKeyTest(new Random(773), 12, "-+", "za", true);
+  }
+
+  private static class ListCollectorOperator extends RowCollectorTestOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<RowTestObjects> rows = new ArrayList<RowTestObjects>();
+
+    ListCollectorOperator() {
+      super(OBJECT_INSPECTORS);
+    }
+
+    @Override
+    public void nextTestRow(RowTestObjects testRow) {
+      rows.add(testRow);
+    }
+  }
+
+  private static class ListVectorCollectorOperator extends RowVectorCollectorTestOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<RowTestObjects> rows = new ArrayList<RowTestObjects>();
+
+    ListVectorCollectorOperator() throws HiveException {
+      super(TYPE_INFOS, OBJECT_INSPECTORS);
+    }
+
+    @Override
+    public void nextTestRow(RowTestObjects testRow) {
+      rows.add(testRow);
+    }
+  }
+
+  private void connect(Operator<? extends OperatorDesc> operator,
+      Operator<? extends OperatorDesc> collectorOperator) throws HiveException {
+    collectorOperator.setParentOperators(
+        new ArrayList<Operator<? extends OperatorDesc>>(Arrays.asList(operator)));
+    operator.setChildOperators(
+        new ArrayList<Operator<? extends OperatorDesc>>(Arrays.asList(collectorOperator)));
+    operator.initialize(hconf, new ObjectInspector[] {
+        ObjectInspectorFactory.getStandardStructObjectInspector(
+            COLUMN_NAMES, Arrays.asList(OBJECT_INSPECTORS)) });
+  }
+
+  private static Object[] randomRow(Random random, long rowNum) {
+    return new Object[] {
+        (random.nextInt(20) == 0 ? null : new LongWritable(random.nextInt(200))),
+        new LongWritable(rowNum),
+        (random.nextInt(20) == 0 ? null : new Text("v" + random.nextInt(5))) };
+  }
+
+  private void doTopNKeyTest(Random random, int topN, String columnSortOrder, String nullOrder,
+      boolean isMultiKey) throws Exception {
+
+    List<ExprNodeDesc> keyColumns = new ArrayList<ExprNodeDesc>();
+    keyColumns.add(new ExprNodeColumnDesc(TypeInfoFactory.longTypeInfo, "col0", "t", false));
+    if (isMultiKey) {
+      keyColumns.add(new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "col2", "t", false));
+    }
+    TopNKeyDesc topNKeyDesc = new TopNKeyDesc(topN, columnSortOrder, nullOrder, keyColumns);
+
+    /*
+     * Generate the batches of rows.  Some have repeating keys and some select every other row.
+     */
+    VectorAssignRow vectorAssignRow = new VectorAssignRow();
+    vectorAssignRow.init(Arrays.asList("bigint", "bigint", "string"));
+    VectorizedRowBatchCtx batchContext =
+        new VectorizedRowBatchCtx(
+            COLUMN_NAMES.toArray(new String[0]),
+            TYPE_INFOS,
+            new DataTypePhysicalVariation[] {
+                DataTypePhysicalVariation.NONE, DataTypePhysicalVariation.NONE,
+                DataTypePhysicalVariation.NONE },
+            /* dataColumnNums */ null,
+            /* partitionColumnCount */ 0,
+            /* virtualColumnCount */ 0,
+            /* neededVirtualColumns */ null,
+            new String[0],
+            new DataTypePhysicalVariation[0]);
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    List<VectorizedRowBatch> batches = new ArrayList<VectorizedRowBatch>();
+    for (int b = 0; b < BATCH_COUNT; b++) {
+      VectorizedRowBatch batch = batchContext.createVectorizedRowBatch();
+      batch.size = 1 + random.nextInt(VectorizedRowBatch.DEFAULT_SIZE / 2);
+      batch.selectedInUse = (b % 3 == 1);
+      final boolean isRepeating = (b % 4 == 2);
+      Object[] repeatedRow = randomRow(random, -1);
+      for (int i = 0; i < batch.size; i++) {
+        Object[] row = randomRow(random, rows.size());
+        if (isRepeating) {
+          row[0] = repeatedRow[0];
+          row[2] = repeatedRow[2];
+        }
+        rows.add(row);
+        final int batchIndex = (batch.selectedInUse ? 2 * i : i);
+        if (batch.selectedInUse) {
+          batch.selected[i] = batchIndex;
+        }
+        vectorAssignRow.assignRow(batch, batchIndex, row);
+      }
+      if (isRepeating) {
+        vectorAssignRow.assignRow(batch, 0, repeatedRow);
+        batch.cols[0].isRepeating = true;
+        batch.cols[2].isRepeating = true;
+      }
+      batches.add(batch);
+    }
+
+    /*
+     * Row mode.
+     */
+    Operator<? extends OperatorDesc> rowOperator =
+        OperatorFactory.get(new CompilationOpContext(), topNKeyDesc);
+    assertTrue(rowOperator instanceof TopNKeyOperator);
+    ListCollectorOperator rowCollector = new ListCollectorOperator();
+    connect(rowOperator, rowCollector);
+    for (Object[] row : rows) {
+      rowOperator.process(row, 0);
+    }
+    rowOperator.close(false);
+
+    /*
+     * Vector mode.
+     */
+    VectorizationContext vContext =
+        new VectorizationContext(
+            "name",
+            COLUMN_NAMES,
+            Arrays.asList(TYPE_INFOS),
+            Arrays.asList(batchContext.getRowdataTypePhysicalVariations()),
+            hconf);
+    Operator<? extends OperatorDesc> vectorOperator =
+        Vectorizer.vectorizeTopNKeyOperator(
+            OperatorFactory.get(new CompilationOpContext(), topNKeyDesc), vContext,
+            new VectorTopNKeyDesc());
+    assertTrue(vectorOperator instanceof VectorTopNKeyOperator);
+    ListVectorCollectorOperator vectorCollector = new ListVectorCollectorOperator();
+    connect(vectorOperator, vectorCollector);
+    for (VectorizedRowBatch batch : batches) {
+      final int size = batch.size;
+      final boolean selectedInUse = batch.selectedInUse;
+      final int[] selected = batch.selected;
+      vectorOperator.process(batch, 0);
+
+      // The batch is restored for the other operators.
+      assertEquals(size, batch.size);
+      assertEquals(selectedInUse, batch.selectedInUse);
+      assertTrue(selected == batch.selected);
+    }
+    vectorOperator.close(false);
+
+    // Row by row, both modes decide the same with the same kept keys.
+    assertEquals(rowCollector.rows, vectorCollector.rows);
+    assertTrue(vectorCollector.rows.size() < rows.size());
+
+    /*
+     * Every row with one of the first n distinct keys of all the rows is forwarded.
+     */
+    Comparator<Object[]> keyComparator = new KeyComparator(columnSortOrder, nullOrder, isMultiKey);
+    TreeSet<Object[]> topKeys = new TreeSet<Object[]>(keyComparator);
+    for (Object[] row : rows) {
+      topKeys.add(row);
+      if (topKeys.size() > topN) {
+        topKeys.pollLast();
+      }
+    }
+    Set<Long> forwardedRowNums = new HashSet<Long>();
+    for (RowTestObjects row : vectorCollector.rows) {
+      forwardedRowNums.add(((LongWritable) row.getRow()[1]).get());
+    }
+    for (Object[] row : rows) {
+      if (topKeys.contains(row)) {
+        assertTrue(forwardedRowNums.contains(((LongWritable) row[1]).get()));
+      }
+    }
+  }
+
+  /**
+   * Compares the key columns of two rows by the sort and null order.
+   */
+  private static class KeyComparator implements Comparator<Object[]> {
+
+    private final String columnSortOrder;
+    private final String nullOrder;
+    private final int[] keyColumnNums;
+
+    KeyComparator(String columnSortOrder, String nullOrder, boolean isMultiKey) {
+      this.columnSortOrder = columnSortOrder;
+      this.nullOrder = nullOrder;
+      keyColumnNums = (isMultiKey ? new int[] { 0, 2 } : new int[] { 0 });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compare(Object[] row1, Object[] row2) {
+      for (int k = 0; k < keyColumnNums.length; k++) {
+        Comparable<Object> key1 = (Comparable<Object>) row1[keyColumnNums[k]];
+        Object key2 = row2[keyColumnNums[k]];
+        if (key1 == null || key2 == null) {
+          if (key1 == key2) {
+            continue;
+          }
+          return ((key1 == null) == (nullOrder.charAt(k) == 'a')) ? -1 : 1;
+        }
+        int result = key1.compareTo(key2);
+        if (result != 0) {
+          return (columnSortOrder.charAt(k) == '+' ? result : -result);
+        }
+      }
+      return 0;
+    }
+  }
+}
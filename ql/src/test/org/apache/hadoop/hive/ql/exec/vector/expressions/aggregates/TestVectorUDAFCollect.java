@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.hadoop.hive.common.type.DataTypePhysicalVariation;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.Decimal64ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAssignRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorExtractRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorRandomBatchSource;
+import org.apache.hadoop.hive.ql.exec.vector.VectorRandomRowSource;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression.AggregationBuffer;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCollectList;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCollectSet;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCount;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.DecimalTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Test;
+
+/**
+ * Test the vectorized collect_set, collect_list and COUNT(DISTINCT) aggregations produce the
+ * same results as the row mode evaluators, for random rows in interesting batches.
+ */
+public class TestVectorUDAFCollect {
+
+  private static final int ROW_COUNT = 10000;
+
+  // Rows are aggregated round robin into this many groups, and all together in one more group.
+  private static final int GROUP_COUNT = 7;
+
+  // The number of rows aggregated into each partial LIST that is merged.
+  private static final int PARTIAL_ROW_COUNT = 37;
+
+  private static final String[] TYPE_NAMES = new String[] {
+      "boolean", "tinyint", "smallint", "int", "bigint", "date", "float", "double", "string",
+      "binary" };
+
+  @Test
+  public void testCollectSet() throws Exception {
+    Random random = new Random(7743);
+    for (String typeName : TYPE_NAMES) {
+      doValueTest(random, typeName, "collect_set", Mode.PARTIAL1);
+      doValueTest(random, typeName, "collect_set", Mode.COMPLETE);
+    }
+  }
+
+  @Test
+  public void testCollectList() throws Exception {
+    Random random = new Random(2209);
+    for (String typeName : TYPE_NAMES) {
+      doValueTest(random, typeName, "collect_list", Mode.PARTIAL1);
+      doValueTest(random, typeName, "collect_list", Mode.COMPLETE);
+    }
+  }
+
+  @Test
+  public void testCountDistinct() throws Exception {
+    Random random = new Random(5120);
+    for (String typeName : TYPE_NAMES) {
+      doValueTest(random, typeName, "count", Mode.PARTIAL1);
+      doValueTest(random, typeName, "count", Mode.COMPLETE);
+    }
+  }
+
+  @Test
+  public void testCollectSetMerge() throws Exception {
+    Random random = new Random(361);
+    for (String typeName : TYPE_NAMES) {
+      doMergeTest(random, typeName, "collect_set", Mode.PARTIAL2);
+      doMergeTest(random, typeName, "collect_set", Mode.FINAL);
+    }
+  }
+
+  @Test
+  public void testCollectListMerge() throws Exception {
+    Random random = new Random(8004);
+    for (String typeName : TYPE_NAMES) {
+      doMergeTest(random, typeName, "collect_list", Mode.PARTIAL2);
+      doMergeTest(random, typeName, "collect_list", Mode.FINAL);
+    }
+  }
+
+  @Test
+  public void testCountDistinctDecimal64() throws Exception {
+    Random random = new Random(3301);
+    DecimalTypeInfo typeInfo = new DecimalTypeInfo(10, 2);
+    GenericUDAFEvaluator evaluator = getEvaluator("count", typeInfo);
+    ObjectInspector returnOI = evaluator.init(Mode.COMPLETE, getWritableOIs(typeInfo));
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFCountDistinct.class, "count", evaluator, typeInfo,
+            ColumnVector.Type.DECIMAL_64, TypeInfoUtils.getTypeInfoFromObjectInspector(returnOI),
+            /* isDistinct */ true, Mode.COMPLETE);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    VectorizedRowBatch batch = new VectorizedRowBatch(1);
+    Decimal64ColumnVector decimal64ColVector =
+        new Decimal64ColumnVector(VectorizedRowBatch.DEFAULT_SIZE, 10, 2);
+    batch.cols[0] = decimal64ColVector;
+
+    // The row mode GROUP BY only passes the first occurrence of each DISTINCT value.
+    Set<HiveDecimalWritable> distinctValues = new HashSet<HiveDecimalWritable>();
+    for (int b = 0; b < 20; b++) {
+      batch.reset();
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+      decimal64ColVector.noNulls = false;
+      for (int i = 0; i < batch.size; i++) {
+        if (random.nextInt(10) == 0) {
+          decimal64ColVector.isNull[i] = true;
+          continue;
+        }
+        decimal64ColVector.vector[i] = random.nextInt(20000) - 10000;
+        HiveDecimalWritable value = new HiveDecimalWritable();
+        value.deserialize64(decimal64ColVector.vector[i], 2);
+        if (distinctValues.add(value)) {
+          evaluator.iterate(rowAgg, new Object[] { value });
+        }
+      }
+      vecAggrExpr.aggregateInput(vecAgg, batch);
+    }
+
+    LongColumnVector output = new LongColumnVector(1);
+    VectorizedRowBatch outputBatch = new VectorizedRowBatch(1, 1);
+    outputBatch.cols[0] = output;
+    vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+    assertEquals(distinctValues.size(), output.vector[0]);
+    assertEquals(((LongWritable) evaluator.terminate(rowAgg)).get(), output.vector[0]);
+  }
+
+  @Test
+  public void testCollectDecimal64() throws Exception {
+
+    // A DECIMAL_64 value cannot be written to the DECIMAL list child.
+    assertFalse(new VectorUDAFCollect().matches(
+        "collect_set", ColumnVector.Type.DECIMAL_64, ColumnVector.Type.LIST, Mode.PARTIAL1));
+
+    DecimalTypeInfo typeInfo = new DecimalTypeInfo(10, 2);
+    GenericUDAFEvaluator evaluator = getEvaluator("collect_set", typeInfo);
+    ObjectInspector returnOI = evaluator.init(Mode.PARTIAL1, getWritableOIs(typeInfo));
+    VectorAggregationDesc vecAggrDesc =
+        createVectorAggregationDesc(
+            VectorUDAFCollect.class, "collect_set", evaluator, typeInfo,
+            ColumnVector.Type.DECIMAL_64, TypeInfoUtils.getTypeInfoFromObjectInspector(returnOI),
+            /* isDistinct */ false, Mode.PARTIAL1);
+    try {
+      new VectorUDAFCollect(vecAggrDesc);
+      fail("Expected DECIMAL_64 to be rejected");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("DECIMAL_64"));
+    }
+  }
+
+  private void doValueTest(Random random, String typeName, String aggregationName, Mode mode)
+      throws Exception {
+
+    VectorRandomRowSource rowSource = new VectorRandomRowSource();
+    rowSource.initExplicitSchema(
+        random, Arrays.asList(typeName), /* maxComplexDepth */ 0, /* allowNull */ true,
+        Arrays.asList(DataTypePhysicalVariation.NONE));
+    TypeInfo typeInfo = rowSource.typeInfos()[0];
+
+    Object[][] randomRows = rowSource.randomRows(ROW_COUNT);
+
+    // Choosing the batch patterns also fills some row ranges with repeated values.
+    VectorRandomBatchSource batchSource =
+        VectorRandomBatchSource.createInterestingBatches(random, rowSource, randomRows, null);
+
+    final boolean isCount = aggregationName.equals("count");
+
+    /*
+     * Row mode.
+     */
+    GenericUDAFEvaluator evaluator = getEvaluator(aggregationName, typeInfo);
+    ObjectInspector returnOI = evaluator.init(mode, getWritableOIs(typeInfo));
+    GenericUDAFEvaluator.AggregationBuffer[] rowAggs =
+        new GenericUDAFEvaluator.AggregationBuffer[GROUP_COUNT + 1];
+    List<Set<Object>> distinctValuesList = new ArrayList<Set<Object>>();
+    for (int g = 0; g <= GROUP_COUNT; g++) {
+      rowAggs[g] = evaluator.getNewAggregationBuffer();
+      distinctValuesList.add(new HashSet<Object>());
+    }
+    for (int r = 0; r < ROW_COUNT; r++) {
+      Object value = randomRows[r][0];
+      for (int g : new int[] { r % GROUP_COUNT, GROUP_COUNT }) {
+
+        // The row mode GROUP BY only passes the first occurrence of each DISTINCT value.
+        if (!isCount || distinctValuesList.get(g).add(value)) {
+          evaluator.iterate(rowAggs[g], new Object[] { value });
+        }
+      }
+    }
+
+    /*
+     * Vector mode, with aggregateInputSelection for the round robin groups and aggregateInput
+     * for the one with all rows.
+     */
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            (isCount ? VectorUDAFCountDistinct.class : VectorUDAFCollect.class),
+            aggregationName, evaluator, typeInfo,
+            VectorizationContext.getColumnVectorTypeFromTypeInfo(typeInfo),
+            TypeInfoUtils.getTypeInfoFromObjectInspector(returnOI), isCount, mode);
+    AggregationBuffer[] vecAggs = new AggregationBuffer[GROUP_COUNT + 1];
+    VectorAggregationBufferRow[] groupBufferRows = new VectorAggregationBufferRow[GROUP_COUNT];
+    for (int g = 0; g <= GROUP_COUNT; g++) {
+      vecAggs[g] = vecAggrExpr.getNewAggregationBuffer();
+      if (g < GROUP_COUNT) {
+        groupBufferRows[g] = new VectorAggregationBufferRow(new AggregationBuffer[] { vecAggs[g] });
+      }
+    }
+
+    VectorizedRowBatchCtx batchContext =
+        new VectorizedRowBatchCtx(
+            new String[] { "col0" },
+            rowSource.typeInfos(),
+            rowSource.dataTypePhysicalVariations(),
+            /* dataColumnNums */ null,
+            /* partitionColumnCount */ 0,
+            /* virtualColumnCount */ 0,
+            /* neededVirtualColumns */ null,
+            new String[0],
+            new DataTypePhysicalVariation[0]);
+    VectorizedRowBatch batch = batchContext.createVectorizedRowBatch();
+    VectorAggregationBufferRow[] aggregationBufferSets =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+
+    batchSource.resetBatchIteration();
+    int rowIndex = 0;
+    while (batchSource.fillNextBatch(batch)) {
+      for (int i = 0; i < batch.size; i++) {
+        aggregationBufferSets[i] = groupBufferRows[(rowIndex + i) % GROUP_COUNT];
+      }
+      vecAggrExpr.aggregateInputSelection(aggregationBufferSets, 0, batch);
+      vecAggrExpr.aggregateInput(vecAggs[GROUP_COUNT], batch);
+      rowIndex += batch.size;
+    }
+    assertEquals(ROW_COUNT, rowIndex);
+
+    verifyResults(
+        evaluator, rowAggs, vecAggrExpr, vecAggs, mode,
+        typeName + " " + aggregationName + " " + mode);
+  }
+
+  private void doMergeTest(Random random, String typeName, String aggregationName, Mode mode)
+      throws Exception {
+
+    VectorRandomRowSource rowSource = new VectorRandomRowSource();
+    rowSource.initExplicitSchema(
+        random, Arrays.asList(typeName), /* maxComplexDepth */ 0, /* allowNull */ true,
+        Arrays.asList(DataTypePhysicalVariation.NONE));
+    TypeInfo typeInfo = rowSource.typeInfos()[0];
+    TypeInfo listTypeInfo = TypeInfoFactory.getListTypeInfo(typeInfo);
+
+    Object[][] randomRows = rowSource.randomRows(ROW_COUNT);
+
+    // The row mode partial LISTs to merge.  Some are NULL.
+    GenericUDAFEvaluator partialEvaluator = getEvaluator(aggregationName, typeInfo);
+    partialEvaluator.init(Mode.PARTIAL1, getWritableOIs(typeInfo));
+    final int partialCount = (ROW_COUNT + PARTIAL_ROW_COUNT - 1) / PARTIAL_ROW_COUNT;
+    Object[] partials = new Object[partialCount];
+    for (int p = 0; p < partialCount; p++) {
+      if (random.nextInt(10) == 0) {
+        continue;
+      }
+      GenericUDAFEvaluator.AggregationBuffer partialAgg =
+          partialEvaluator.getNewAggregationBuffer();
+      final int end = Math.min(ROW_COUNT, (p + 1) * PARTIAL_ROW_COUNT);
+      for (int r = p * PARTIAL_ROW_COUNT; r < end; r++) {
+        partialEvaluator.iterate(partialAgg, new Object[] { randomRows[r][0] });
+      }
+      partials[p] = partialEvaluator.terminatePartial(partialAgg);
+    }
+
+    /*
+     * Row mode.
+     */
+    GenericUDAFEvaluator evaluator = getEvaluator(aggregationName, typeInfo);
+    ObjectInspector returnOI = evaluator.init(mode, getWritableOIs(listTypeInfo));
+    GenericUDAFEvaluator.AggregationBuffer[] rowAggs =
+        new GenericUDAFEvaluator.AggregationBuffer[GROUP_COUNT + 1];
+    for (int g = 0; g <= GROUP_COUNT; g++) {
+      rowAggs[g] = evaluator.getNewAggregationBuffer();
+    }
+    for (int p = 0; p < partialCount; p++) {
+      evaluator.merge(rowAggs[p % GROUP_COUNT], partials[p]);
+      evaluator.merge(rowAggs[GROUP_COUNT], partials[p]);
+    }
+
+    /*
+     * Vector mode, with random batch sizes and row selection.
+     */
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFCollectMerge.class, aggregationName, evaluator, listTypeInfo,
+            ColumnVector.Type.LIST, TypeInfoUtils.getTypeInfoFromObjectInspector(returnOI),
+            /* isDistinct */ false, mode);
+    AggregationBuffer[] vecAggs = new AggregationBuffer[GROUP_COUNT + 1];
+    VectorAggregationBufferRow[] groupBufferRows = new VectorAggregationBufferRow[GROUP_COUNT];
+    for (int g = 0; g <= GROUP_COUNT; g++) {
+      vecAggs[g] = vecAggrExpr.getNewAggregationBuffer();
+      if (g < GROUP_COUNT) {
+        groupBufferRows[g] = new VectorAggregationBufferRow(new AggregationBuffer[] { vecAggs[g] });
+      }
+    }
+
+    VectorAssignRow vectorAssignRow = new VectorAssignRow();
+    vectorAssignRow.init(Arrays.asList(listTypeInfo.getTypeName()));
+    VectorizedRowBatch batch = new VectorizedRowBatch(1);
+    batch.cols[0] = VectorizedBatchUtil.createColumnVector(listTypeInfo);
+    VectorAggregationBufferRow[] aggregationBufferSets =
+        new VectorAggregationBufferRow[VectorizedRowBatch.DEFAULT_SIZE];
+
+    int p = 0;
+    while (p < partialCount) {
+      batch.reset();
+      batch.size = Math.min(partialCount - p, 1 + random.nextInt(64));
+      batch.selectedInUse = random.nextBoolean();
+      for (int i = 0; i < batch.size; i++) {
+
+        // Every other row when selected.
+        final int batchIndex = (batch.selectedInUse ? 2 * i : i);
+        if (batch.selectedInUse) {
+          batch.selected[i] = batchIndex;
+        }
+        vectorAssignRow.assignRowColumn(batch, batchIndex, 0, partials[p + i]);
+        aggregationBufferSets[i] = groupBufferRows[(p + i) % GROUP_COUNT];
+      }
+      vecAggrExpr.aggregateInputSelection(aggregationBufferSets, 0, batch);
+      vecAggrExpr.aggregateInput(vecAggs[GROUP_COUNT], batch);
+      p += batch.size;
+    }
+
+    verifyResults(
+        evaluator, rowAggs, vecAggrExpr, vecAggs, mode,
+        typeName + " " + aggregationName + " " + mode);
+  }
+
+  private static void verifyResults(GenericUDAFEvaluator evaluator,
+      GenericUDAFEvaluator.AggregationBuffer[] rowAggs, VectorAggregateExpression vecAggrExpr,
+      AggregationBuffer[] vecAggs, Mode mode, String title) throws Exception {
+
+    TypeInfo outputTypeInfo = vecAggrExpr.getOutputTypeInfo();
+    VectorizedRowBatch outputBatch = new VectorizedRowBatch(1, vecAggs.length);
+    outputBatch.cols[0] = VectorizedBatchUtil.createColumnVector(outputTypeInfo);
+    outputBatch.reset();
+    for (int g = 0; g < vecAggs.length; g++) {
+      vecAggrExpr.assignRowColumn(outputBatch, g, 0, vecAggs[g]);
+    }
+    outputBatch.size = vecAggs.length;
+
+    VectorExtractRow vectorExtractRow = new VectorExtractRow();
+    vectorExtractRow.init(new TypeInfo[] { outputTypeInfo });
+    Object[] resultRow = new Object[1];
+    for (int g = 0; g < vecAggs.length; g++) {
+      Object expected =
+          (mode == Mode.PARTIAL1 || mode == Mode.PARTIAL2 ?
+              evaluator.terminatePartial(rowAggs[g]) : evaluator.terminate(rowAggs[g]));
+      vectorExtractRow.extractRow(outputBatch, g, resultRow);
+      assertEquals(title + " group " + g, expected, resultRow[0]);
+    }
+  }
+
+  private static GenericUDAFEvaluator getEvaluator(String aggregationName, TypeInfo typeInfo)
+      throws Exception {
+    TypeInfo[] parameters = new TypeInfo[] { typeInfo };
+    switch (aggregationName) {
+    case "collect_set":
+      return new GenericUDAFCollectSet().getEvaluator(parameters);
+    case "collect_list":
+      return new GenericUDAFCollectList().getEvaluator(parameters);
+    case "count":
+      return new GenericUDAFCount().getEvaluator(parameters);
+    default:
+      throw new RuntimeException("Unexpected aggregation " + aggregationName);
+    }
+  }
+
+  private static ObjectInspector[] getWritableOIs(TypeInfo typeInfo) {
+    return new ObjectInspector[] {
+        TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(typeInfo) };
+  }
+
+  private static VectorAggregationDesc createVectorAggregationDesc(
+      Class<? extends VectorAggregateExpression> vecAggrClass, String aggregationName,
+      GenericUDAFEvaluator evaluator, TypeInfo inputTypeInfo,
+      ColumnVector.Type inputColVectorType, TypeInfo outputTypeInfo, boolean isDistinct,
+      Mode mode) throws Exception {
+
+    ArrayList<ExprNodeDesc> parameters = new ArrayList<ExprNodeDesc>();
+    parameters.add(new ExprNodeColumnDesc(inputTypeInfo, "col0", "t", false));
+    AggregationDesc aggrDesc =
+        new AggregationDesc(aggregationName, evaluator, parameters, isDistinct, mode);
+
+    IdentityExpression inputExpression = new IdentityExpression(0);
+    inputExpression.setOutputTypeInfo(inputTypeInfo);
+
+    return
+        new VectorAggregationDesc(
+            aggrDesc, evaluator, inputTypeInfo, inputColVectorType, inputExpression,
+            outputTypeInfo, VectorizationContext.getColumnVectorTypeFromTypeInfo(outputTypeInfo),
+            vecAggrClass);
+  }
+
+  private static VectorAggregateExpression createVectorAggregation(
+      Class<? extends VectorAggregateExpression> vecAggrClass, String aggregationName,
+      GenericUDAFEvaluator evaluator, TypeInfo inputTypeInfo,
+      ColumnVector.Type inputColVectorType, TypeInfo outputTypeInfo, boolean isDistinct,
+      Mode mode) throws Exception {
+
+    VectorAggregationDesc vecAggrDesc =
+        createVectorAggregationDesc(
+            vecAggrClass, aggregationName, evaluator, inputTypeInfo, inputColVectorType,
+            outputTypeInfo, isDistinct, mode);
+    VectorAggregateExpression vecAggrExpr =
+        vecAggrClass.getConstructor(VectorAggregationDesc.class).newInstance(vecAggrDesc);
+    assertTrue(vecAggrExpr.matches(
+        aggregationName, inputColVectorType, vecAggrDesc.getOutputColVectorType(), mode));
+    return vecAggrExpr;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression.AggregationBuffer;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFComputeStats;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+/**
+ * Test the vectorized compute_stats aggregations produce the same STRUCT as the row mode
+ * evaluators.
+ */
+public class TestVectorUDAFComputeStats {
+
+  private static final int BATCH_SIZE = 100;
+
+  private GenericUDAFEvaluator createEvaluator(TypeInfo typeInfo, Mode mode) throws Exception {
+    GenericUDAFEvaluator evaluator =
+        new GenericUDAFComputeStats().getEvaluator(
+            new TypeInfo[] { typeInfo, TypeInfoFactory.stringTypeInfo });
+    evaluator.init(mode,
+        new ObjectInspector[] {
+            TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(typeInfo),
+            PrimitiveObjectInspectorFactory.writableStringObjectInspector });
+    return evaluator;
+  }
+
+  private VectorAggregateExpression createVectorAggregation(
+      Class<? extends VectorAggregateExpression> vecAggrClass, TypeInfo typeInfo,
+      ColumnVector.Type colVectorType, String func, Mode mode) throws Exception {
+
+    GenericUDAFEvaluator evaluator =
+        new GenericUDAFComputeStats().getEvaluator(
+            new TypeInfo[] { typeInfo, TypeInfoFactory.stringTypeInfo });
+    ObjectInspector returnOI = evaluator.init(mode,
+        new ObjectInspector[] {
+            TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(typeInfo),
+            PrimitiveObjectInspectorFactory.writableStringObjectInspector });
+    TypeInfo outputTypeInfo = TypeInfoUtils.getTypeInfoFromTypeString(returnOI.getTypeName());
+
+    ArrayList<ExprNodeDesc> parameters = new ArrayList<ExprNodeDesc>();
+    parameters.add(new ExprNodeColumnDesc(typeInfo, "col", "t", false));
+    parameters.add(new ExprNodeConstantDesc(func));
+    AggregationDesc aggrDesc =
+        new AggregationDesc("compute_stats", evaluator, parameters, false, mode);
+
+    IdentityExpression inputExpression = new IdentityExpression(0);
+    inputExpression.setOutputTypeInfo(typeInfo);
+
+    VectorAggregationDesc vecAggrDesc =
+        new VectorAggregationDesc(
+            aggrDesc, evaluator, typeInfo, colVectorType, inputExpression,
+            outputTypeInfo, ColumnVector.Type.STRUCT, vecAggrClass);
+    VectorAggregateExpression vecAggrExpr =
+        vecAggrClass.getConstructor(VectorAggregationDesc.class).newInstance(vecAggrDesc);
+    assertTrue(vecAggrExpr.matches(
+        "compute_stats", colVectorType, ColumnVector.Type.STRUCT, mode));
+    return vecAggrExpr;
+  }
+
+  @Test
+  public void testLongPartial() throws Exception {
+    Random random = new Random(4412);
+    final String func = "hll";
+    GenericUDAFEvaluator evaluator = createEvaluator(TypeInfoFactory.longTypeInfo, Mode.PARTIAL1);
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFComputeStatsLong.class, TypeInfoFactory.longTypeInfo,
+            ColumnVector.Type.LONG, func, Mode.PARTIAL1);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, BATCH_SIZE);
+    LongColumnVector longColVector = new LongColumnVector(BATCH_SIZE);
+    batch.cols[0] = longColVector;
+    for (int b = 0; b < 20; b++) {
+      batch.reset();
+      batch.size = BATCH_SIZE;
+      longColVector.noNulls = (b % 3 != 0);
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        longColVector.vector[i] = random.nextInt(5000) - 2500;
+        longColVector.isNull[i] = !longColVector.noNulls && random.nextInt(10) == 0;
+      }
+      if (b % 4 == 1) {
+        // Every other row.
+        batch.selectedInUse = true;
+        batch.size = BATCH_SIZE / 2;
+        for (int j = 0; j < batch.size; j++) {
+          batch.selected[j] = j * 2;
+        }
+      }
+      for (int j = 0; j < batch.size; j++) {
+        final int i = (batch.selectedInUse ? batch.selected[j] : j);
+        evaluator.iterate(rowAgg,
+            new Object[] {
+                (longColVector.isNull[i] ? null : new LongWritable(longColVector.vector[i])),
+                new Text(func) });
+      }
+      vecAggrExpr.aggregateInput(vecAgg, batch);
+    }
+
+    Object[] expected = (Object[]) evaluator.terminatePartial(rowAgg);
+    StructColumnVector output = assignOutput(vecAggrExpr, vecAgg, 5);
+    assertEquals(expected[0].toString(), bytesField(output, 0));
+    assertEquals(((Long) expected[1]).longValue(),
+        ((LongColumnVector) output.fields[1]).vector[0]);
+    assertEquals(((Long) expected[2]).longValue(),
+        ((LongColumnVector) output.fields[2]).vector[0]);
+    assertEquals(((LongWritable) expected[3]).get(),
+        ((LongColumnVector) output.fields[3]).vector[0]);
+    BytesWritable expectedBitVector = (BytesWritable) expected[4];
+    assertArrayEquals(
+        Arrays.copyOf(expectedBitVector.getBytes(), expectedBitVector.getLength()),
+        bytesFieldBytes(output, 4));
+  }
+
+  @Test
+  public void testStringComplete() throws Exception {
+    Random random = new Random(90210);
+    GenericUDAFEvaluator evaluator = createEvaluator(TypeInfoFactory.stringTypeInfo, Mode.COMPLETE);
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFComputeStatsString.class, TypeInfoFactory.stringTypeInfo,
+            ColumnVector.Type.BYTES, "hll", Mode.COMPLETE);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, BATCH_SIZE);
+    BytesColumnVector bytesColVector = new BytesColumnVector(BATCH_SIZE);
+    batch.cols[0] = bytesColVector;
+    for (int b = 0; b < 10; b++) {
+      batch.reset();
+      batch.size = BATCH_SIZE;
+      bytesColVector.noNulls = false;
+      final int count = (b == 3 ? 1 : BATCH_SIZE);
+      for (int i = 0; i < count; i++) {
+        if (random.nextInt(8) == 0) {
+          bytesColVector.isNull[i] = true;
+        } else {
+          byte[] bytes =
+              ("vé" + random.nextInt(300)).getBytes(StandardCharsets.UTF_8);
+          bytesColVector.setVal(i, bytes, 0, bytes.length);
+        }
+      }
+      if (b == 3) {
+        // A repeating value.
+        bytesColVector.isNull[0] = false;
+        bytesColVector.setVal(0, "repeat".getBytes(StandardCharsets.UTF_8));
+        bytesColVector.isRepeating = true;
+      }
+      for (int j = 0; j < batch.size; j++) {
+        final int i = (bytesColVector.isRepeating ? 0 : j);
+        evaluator.iterate(rowAgg,
+            new Object[] {
+                (bytesColVector.isNull[i] ? null :
+                    new Text(new String(bytesColVector.vector[i], bytesColVector.start[i],
+                        bytesColVector.length[i], StandardCharsets.UTF_8))),
+                new Text("hll") });
+      }
+      vecAggrExpr.aggregateInput(vecAgg, batch);
+    }
+
+    Object[] expected = (Object[]) evaluator.terminate(rowAgg);
+    StructColumnVector output = assignOutput(vecAggrExpr, vecAgg, 6);
+    assertEquals(expected[0].toString(), bytesField(output, 0));
+    assertEquals(((LongWritable) expected[1]).get(),
+        ((LongColumnVector) output.fields[1]).vector[0]);
+    assertEquals(((DoubleWritable) expected[2]).get(),
+        ((DoubleColumnVector) output.fields[2]).vector[0], 0.0);
+    assertEquals(((LongWritable) expected[3]).get(),
+        ((LongColumnVector) output.fields[3]).vector[0]);
+    assertEquals(((LongWritable) expected[4]).get(),
+        ((LongColumnVector) output.fields[4]).vector[0]);
+    BytesWritable expectedBitVector = (BytesWritable) expected[5];
+    assertArrayEquals(
+        Arrays.copyOf(expectedBitVector.getBytes(), expectedBitVector.getLength()),
+        bytesFieldBytes(output, 5));
+  }
+
+  private static StructColumnVector assignOutput(VectorAggregateExpression vecAggrExpr,
+      AggregationBuffer vecAgg, int fieldCount) throws Exception {
+    ColumnVector[] fields = new ColumnVector[fieldCount];
+    TypeInfo outputTypeInfo = vecAggrExpr.getOutputTypeInfo();
+    ArrayList<TypeInfo> fieldTypeInfos =
+        ((StructTypeInfo) outputTypeInfo).getAllStructFieldTypeInfos();
+    for (int i = 0; i < fieldCount; i++) {
+      String typeName = fieldTypeInfos.get(i).getTypeName();
+      if (typeName.equals("string") || typeName.equals("binary")) {
+        fields[i] = new BytesColumnVector(1);
+      } else if (typeName.equals("double")) {
+        fields[i] = new DoubleColumnVector(1);
+      } else {
+        fields[i] = new LongColumnVector(1);
+      }
+    }
+    VectorizedRowBatch outputBatch = new VectorizedRowBatch(1, 1);
+    StructColumnVector output = new StructColumnVector(1, fields);
+    outputBatch.cols[0] = output;
+    outputBatch.reset();
+    vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+    assertFalse(output.isNull[0]);
+    return output;
+  }
+
+  private static byte[] bytesFieldBytes(StructColumnVector output, int fieldIndex) {
+    BytesColumnVector field = (BytesColumnVector) output.fields[fieldIndex];
+    return Arrays.copyOfRange(field.vector[0], field.start[0], field.start[0] + field.length[0]);
+  }
+
+  private static String bytesField(StructColumnVector output, int fieldIndex) {
+    return new String(bytesFieldBytes(output, fieldIndex), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression.AggregationBuffer;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFHistogramNumeric;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFPercentileApprox;
+import org.apache.hadoop.hive.ql.udf.generic.SimpleGenericUDAFParameterInfo;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Test;
+
+/**
+ * Test the vectorized percentile_approx and histogram_numeric aggregations produce the same
+ * partial and final results as the row mode evaluators.
+ */
+public class TestVectorUDAFNumericHistogram {
+
+  private static final int BATCH_SIZE = 100;
+  private static final int NUM_BINS = 20;
+
+  private static final TypeInfo PARTIAL_TYPE_INFO =
+      TypeInfoFactory.getListTypeInfo(TypeInfoFactory.doubleTypeInfo);
+  private static final ObjectInspector PARTIAL_OI =
+      ObjectInspectorFactory.getStandardListObjectInspector(
+          PrimitiveObjectInspectorFactory.writableDoubleObjectInspector);
+
+  private static ObjectInspector getQuantilesOI(double[] quantiles) {
+    if (quantiles.length == 1) {
+      return PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+          TypeInfoFactory.doubleTypeInfo, new DoubleWritable(quantiles[0]));
+    }
+    List<DoubleWritable> value = new ArrayList<DoubleWritable>();
+    for (double quantile : quantiles) {
+      value.add(new DoubleWritable(quantile));
+    }
+    return ObjectInspectorFactory.getStandardConstantListObjectInspector(
+        PrimitiveObjectInspectorFactory.writableDoubleObjectInspector, value);
+  }
+
+  private static GenericUDAFEvaluator createPercentileEvaluator(TypeInfo inputTypeInfo,
+      double[] quantiles, Mode mode) throws Exception {
+    ObjectInspector[] inputOIs = new ObjectInspector[] {
+        TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(inputTypeInfo),
+        getQuantilesOI(quantiles),
+        PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+            TypeInfoFactory.intTypeInfo, new IntWritable(NUM_BINS)) };
+    GenericUDAFEvaluator evaluator =
+        new GenericUDAFPercentileApprox().getEvaluator(
+            new SimpleGenericUDAFParameterInfo(inputOIs, false, false, false));
+    if (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE) {
+      evaluator.init(mode, inputOIs);
+    } else {
+      evaluator.init(mode, new ObjectInspector[] { PARTIAL_OI });
+    }
+    return evaluator;
+  }
+
+  private static GenericUDAFEvaluator createHistogramEvaluator(TypeInfo inputTypeInfo, Mode mode)
+      throws Exception {
+    GenericUDAFEvaluator evaluator =
+        new GenericUDAFHistogramNumeric().getEvaluator(
+            new TypeInfo[] { inputTypeInfo, TypeInfoFactory.intTypeInfo });
+    if (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE) {
+      evaluator.init(mode,
+          new ObjectInspector[] {
+              TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(inputTypeInfo),
+              PrimitiveObjectInspectorFactory.writableIntObjectInspector });
+    } else {
+      evaluator.init(mode, new ObjectInspector[] { PARTIAL_OI });
+    }
+    return evaluator;
+  }
+
+  private static VectorAggregateExpression createVectorAggregation(
+      Class<? extends VectorAggregateExpression> vecAggrClass, String name,
+      GenericUDAFEvaluator evaluator, ObjectInspector returnOI, TypeInfo inputTypeInfo,
+      ColumnVector.Type inputColVectorType, ArrayList<ExprNodeDesc> constantParameters,
+      Mode mode) throws Exception {
+
+    TypeInfo outputTypeInfo = TypeInfoUtils.getTypeInfoFromTypeString(returnOI.getTypeName());
+    ColumnVector.Type outputColVectorType =
+        (outputTypeInfo.equals(TypeInfoFactory.doubleTypeInfo) ?
+            ColumnVector.Type.DOUBLE : ColumnVector.Type.LIST);
+
+    ArrayList<ExprNodeDesc> parameters = new ArrayList<ExprNodeDesc>();
+    parameters.add(new ExprNodeColumnDesc(inputTypeInfo, "col", "t", false));
+    parameters.addAll(constantParameters);
+    AggregationDesc aggrDesc = new AggregationDesc(name, evaluator, parameters, false, mode);
+
+    IdentityExpression inputExpression = new IdentityExpression(0);
+    inputExpression.setOutputTypeInfo(inputTypeInfo);
+
+    VectorAggregationDesc vecAggrDesc =
+        new VectorAggregationDesc(
+            aggrDesc, evaluator, inputTypeInfo, inputColVectorType, inputExpression,
+            outputTypeInfo, outputColVectorType, vecAggrClass);
+    VectorAggregateExpression vecAggrExpr =
+        vecAggrClass.getConstructor(VectorAggregationDesc.class).newInstance(vecAggrDesc);
+    assertTrue(vecAggrExpr.matches(name, inputColVectorType, outputColVectorType, mode));
+    return vecAggrExpr;
+  }
+
+  /**
+   * Aggregate random values, some null, in row and in vector mode.  The batches alternate
+   * between no nulls, nulls, a selected row subset and a repeating value.
+   */
+  private static void aggregateRandomValues(Random random, boolean isLong,
+      GenericUDAFEvaluator evaluator, GenericUDAFEvaluator.AggregationBuffer rowAgg,
+      Object constantParameter, VectorAggregateExpression vecAggrExpr,
+      AggregationBuffer vecAgg) throws Exception {
+
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, BATCH_SIZE);
+    ColumnVector colVector =
+        (isLong ? new LongColumnVector(BATCH_SIZE) : new DoubleColumnVector(BATCH_SIZE));
+    batch.cols[0] = colVector;
+    for (int b = 0; b < 20; b++) {
+      batch.reset();
+      batch.size = BATCH_SIZE;
+      colVector.noNulls = (b % 3 != 0);
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        if (isLong) {
+          ((LongColumnVector) colVector).vector[i] = random.nextInt(1000);
+        } else {
+          ((DoubleColumnVector) colVector).vector[i] = random.nextGaussian() * 100;
+        }
+        colVector.isNull[i] = !colVector.noNulls && random.nextInt(10) == 0;
+      }
+      if (b % 4 == 1) {
+        // Every other row.
+        batch.selectedInUse = true;
+        batch.size = BATCH_SIZE / 2;
+        for (int j = 0; j < batch.size; j++) {
+          batch.selected[j] = j * 2;
+        }
+      } else if (b == 6) {
+        colVector.isNull[0] = false;
+        colVector.isRepeating = true;
+      }
+      for (int j = 0; j < batch.size; j++) {
+        final int i =
+            (colVector.isRepeating ? 0 : (batch.selectedInUse ? batch.selected[j] : j));
+        Object value = null;
+        if (!colVector.isNull[i]) {
+          value = (isLong ?
+              new LongWritable(((LongColumnVector) colVector).vector[i]) :
+              new DoubleWritable(((DoubleColumnVector) colVector).vector[i]));
+        }
+        evaluator.iterate(rowAgg, new Object[] { value, constantParameter });
+      }
+      vecAggrExpr.aggregateInput(vecAgg, batch);
+    }
+  }
+
+  private static double[] toArray(Object partial) {
+    List<?> list = (List<?>) partial;
+    double[] result = new double[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ((DoubleWritable) list.get(i)).get();
+    }
+    return result;
+  }
+
+  private static List<DoubleWritable> toList(double[] values) {
+    List<DoubleWritable> result = new ArrayList<DoubleWritable>(values.length);
+    for (double value : values) {
+      result.add(new DoubleWritable(value));
+    }
+    return result;
+  }
+
+  /**
+   * Build a batch with a LIST of doubles column of the given partials, and a null row.
+   */
+  private static VectorizedRowBatch createPartialBatch(List<double[]> partials) {
+    int childCount = 0;
+    for (double[] partial : partials) {
+      childCount += partial.length;
+    }
+    ListColumnVector listColVector =
+        new ListColumnVector(BATCH_SIZE, new DoubleColumnVector(childCount));
+    DoubleColumnVector child = (DoubleColumnVector) listColVector.child;
+    int row = 0;
+    for (double[] partial : partials) {
+      if (row == 1) {
+        listColVector.noNulls = false;
+        listColVector.isNull[row++] = true;
+      }
+      listColVector.offsets[row] = listColVector.childCount;
+      listColVector.lengths[row] = partial.length;
+      System.arraycopy(partial, 0, child.vector, listColVector.childCount, partial.length);
+      listColVector.childCount += partial.length;
+      row++;
+    }
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, BATCH_SIZE);
+    batch.cols[0] = listColVector;
+    batch.size = row;
+    return batch;
+  }
+
+  private static VectorizedRowBatch createOutputBatch(ColumnVector.Type outputColVectorType,
+      boolean isHistogram) {
+    ColumnVector output;
+    if (outputColVectorType == ColumnVector.Type.DOUBLE) {
+      output = new DoubleColumnVector(1);
+    } else if (isHistogram) {
+      output = new ListColumnVector(1,
+          new StructColumnVector(1, new DoubleColumnVector(1), new DoubleColumnVector(1)));
+    } else {
+      output = new ListColumnVector(1, new DoubleColumnVector(1));
+    }
+    VectorizedRowBatch outputBatch = new VectorizedRowBatch(1, 1);
+    outputBatch.cols[0] = output;
+    outputBatch.reset();
+    return outputBatch;
+  }
+
+  private static double[] assignListOutput(VectorAggregateExpression vecAggrExpr,
+      AggregationBuffer vecAgg) throws Exception {
+    VectorizedRowBatch outputBatch = createOutputBatch(ColumnVector.Type.LIST, false);
+    vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+    ListColumnVector output = (ListColumnVector) outputBatch.cols[0];
+    assertFalse(output.isNull[0]);
+    int offset = (int) output.offsets[0];
+    return Arrays.copyOfRange(((DoubleColumnVector) output.child).vector,
+        offset, offset + (int) output.lengths[0]);
+  }
+
+  private void testPercentileApproxPartial1(boolean isLong, double[] quantiles, int seed)
+      throws Exception {
+    TypeInfo inputTypeInfo =
+        (isLong ? TypeInfoFactory.longTypeInfo : TypeInfoFactory.doubleTypeInfo);
+    GenericUDAFEvaluator evaluator =
+        createPercentileEvaluator(inputTypeInfo, quantiles, Mode.PARTIAL1);
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    ArrayList<ExprNodeDesc> constantParameters = new ArrayList<ExprNodeDesc>();
+    constantParameters.add(new ExprNodeConstantDesc(quantiles[0]));
+    constantParameters.add(new ExprNodeConstantDesc(NUM_BINS));
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFPercentileApprox.class, "percentile_approx", evaluator, PARTIAL_OI,
+            inputTypeInfo, (isLong ? ColumnVector.Type.LONG : ColumnVector.Type.DOUBLE),
+            constantParameters, Mode.PARTIAL1);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    aggregateRandomValues(new Random(seed), isLong, evaluator, rowAgg,
+        new DoubleWritable(quantiles[0]), vecAggrExpr, vecAgg);
+
+    assertArrayEquals(
+        toArray(evaluator.terminatePartial(rowAgg)), assignListOutput(vecAggrExpr, vecAgg), 0.0);
+  }
+
+  @Test
+  public void testPercentileApproxLongPartial1() throws Exception {
+    testPercentileApproxPartial1(true, new double[] { 0.5 }, 7731);
+  }
+
+  @Test
+  public void testPercentileApproxDoublePartial1() throws Exception {
+    testPercentileApproxPartial1(false, new double[] { 0.25, 0.5, 0.99 }, 2231);
+  }
+
+  /**
+   * Merge partials made by PARTIAL1 row mode evaluators in row and in vector mode, both with
+   * PARTIAL2 and FINAL.
+   */
+  private void testPercentileApproxMerge(double[] quantiles, int seed) throws Exception {
+    Random random = new Random(seed);
+    GenericUDAFEvaluator partial1Evaluator =
+        createPercentileEvaluator(TypeInfoFactory.doubleTypeInfo, quantiles, Mode.PARTIAL1);
+    List<double[]> partials = new ArrayList<double[]>();
+    for (int p = 0; p < 5; p++) {
+      GenericUDAFEvaluator.AggregationBuffer agg = partial1Evaluator.getNewAggregationBuffer();
+      // The last partial is empty, like the one of a task without rows for the group.
+      final int count = (p == 4 ? 0 : 1 + random.nextInt(500));
+      for (int i = 0; i < count; i++) {
+        partial1Evaluator.iterate(agg,
+            new Object[] {
+                new DoubleWritable(random.nextInt(300)), new DoubleWritable(quantiles[0]) });
+      }
+      partials.add(toArray(partial1Evaluator.terminatePartial(agg)));
+    }
+
+    for (Mode mode : new Mode[] { Mode.PARTIAL2, Mode.FINAL }) {
+      GenericUDAFEvaluator evaluator =
+          createPercentileEvaluator(TypeInfoFactory.doubleTypeInfo, quantiles, mode);
+      GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+      for (double[] partial : partials) {
+        evaluator.merge(rowAgg, toList(partial));
+      }
+
+      ObjectInspector returnOI = evaluator.init(mode, new ObjectInspector[] { PARTIAL_OI });
+      VectorAggregateExpression vecAggrExpr =
+          createVectorAggregation(
+              VectorUDAFPercentileApproxMerge.class, "percentile_approx", evaluator, returnOI,
+              PARTIAL_TYPE_INFO, ColumnVector.Type.LIST, new ArrayList<ExprNodeDesc>(), mode);
+      AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+      vecAggrExpr.aggregateInput(vecAgg, createPartialBatch(partials));
+
+      if (mode == Mode.PARTIAL2) {
+        assertArrayEquals(toArray(evaluator.terminatePartial(rowAgg)),
+            assignListOutput(vecAggrExpr, vecAgg), 0.0);
+      } else if (quantiles.length == 1) {
+        VectorizedRowBatch outputBatch = createOutputBatch(ColumnVector.Type.DOUBLE, false);
+        vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+        DoubleColumnVector output = (DoubleColumnVector) outputBatch.cols[0];
+        assertFalse(output.isNull[0]);
+        assertEquals(((DoubleWritable) evaluator.terminate(rowAgg)).get(),
+            output.vector[0], 0.0);
+      } else {
+        assertArrayEquals(toArray(evaluator.terminate(rowAgg)),
+            assignListOutput(vecAggrExpr, vecAgg), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testPercentileApproxSingleMerge() throws Exception {
+    testPercentileApproxMerge(new double[] { 0.75 }, 5150);
+  }
+
+  @Test
+  public void testPercentileApproxMultipleMerge() throws Exception {
+    testPercentileApproxMerge(new double[] { 0.1, 0.5, 0.9 }, 3319);
+  }
+
+  @Test
+  public void testPercentileApproxNoValues() throws Exception {
+    double[] quantiles = new double[] { 0.5 };
+    GenericUDAFEvaluator evaluator =
+        createPercentileEvaluator(TypeInfoFactory.doubleTypeInfo, quantiles, Mode.COMPLETE);
+    ArrayList<ExprNodeDesc> constantParameters = new ArrayList<ExprNodeDesc>();
+    constantParameters.add(new ExprNodeConstantDesc(quantiles[0]));
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFPercentileApprox.class, "percentile_approx", evaluator,
+            PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+            TypeInfoFactory.doubleTypeInfo, ColumnVector.Type.DOUBLE, constantParameters,
+            Mode.COMPLETE);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    // Only null values, like in row mode the result is null.
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, BATCH_SIZE);
+    DoubleColumnVector colVector = new DoubleColumnVector(BATCH_SIZE);
+    batch.cols[0] = colVector;
+    batch.size = BATCH_SIZE;
+    colVector.noNulls = false;
+    colVector.isNull[0] = true;
+    colVector.isRepeating = true;
+    vecAggrExpr.aggregateInput(vecAgg, batch);
+
+    VectorizedRowBatch outputBatch = createOutputBatch(ColumnVector.Type.DOUBLE, false);
+    vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+    assertTrue(outputBatch.cols[0].isNull[0]);
+    assertNull(evaluator.terminate(evaluator.getNewAggregationBuffer()));
+  }
+
+  private static void assertHistogramEquals(Object expected, VectorAggregateExpression vecAggrExpr,
+      AggregationBuffer vecAgg) throws Exception {
+    VectorizedRowBatch outputBatch = createOutputBatch(ColumnVector.Type.LIST, true);
+    vecAggrExpr.assignRowColumn(outputBatch, 0, 0, vecAgg);
+    ListColumnVector output = (ListColumnVector) outputBatch.cols[0];
+    assertFalse(output.isNull[0]);
+    StructColumnVector bins = (StructColumnVector) output.child;
+    List<?> expectedBins = (List<?>) expected;
+    assertEquals(expectedBins.size(), output.lengths[0]);
+    for (int i = 0; i < expectedBins.size(); i++) {
+      DoubleWritable[] bin = (DoubleWritable[]) expectedBins.get(i);
+      int index = (int) output.offsets[0] + i;
+      assertEquals(bin[0].get(), ((DoubleColumnVector) bins.fields[0]).vector[index], 0.0);
+      assertEquals(bin[1].get(), ((DoubleColumnVector) bins.fields[1]).vector[index], 0.0);
+    }
+  }
+
+  private ArrayList<ExprNodeDesc> numBinsParameter() {
+    ArrayList<ExprNodeDesc> constantParameters = new ArrayList<ExprNodeDesc>();
+    constantParameters.add(new ExprNodeConstantDesc(NUM_BINS));
+    return constantParameters;
+  }
+
+  @Test
+  public void testHistogramNumericPartial1() throws Exception {
+    GenericUDAFEvaluator evaluator =
+        createHistogramEvaluator(TypeInfoFactory.longTypeInfo, Mode.PARTIAL1);
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFHistogramNumeric.class, "histogram_numeric", evaluator, PARTIAL_OI,
+            TypeInfoFactory.longTypeInfo, ColumnVector.Type.LONG, numBinsParameter(),
+            Mode.PARTIAL1);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    aggregateRandomValues(new Random(1234), true, evaluator, rowAgg,
+        new IntWritable(NUM_BINS), vecAggrExpr, vecAgg);
+
+    assertArrayEquals(
+        toArray(evaluator.terminatePartial(rowAgg)), assignListOutput(vecAggrExpr, vecAgg), 0.0);
+  }
+
+  @Test
+  public void testHistogramNumericComplete() throws Exception {
+    GenericUDAFEvaluator evaluator =
+        createHistogramEvaluator(TypeInfoFactory.doubleTypeInfo, Mode.COMPLETE);
+    GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+    ObjectInspector returnOI =
+        evaluator.init(Mode.COMPLETE,
+            new ObjectInspector[] {
+                PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+                PrimitiveObjectInspectorFactory.writableIntObjectInspector });
+    VectorAggregateExpression vecAggrExpr =
+        createVectorAggregation(
+            VectorUDAFHistogramNumeric.class, "histogram_numeric", evaluator, returnOI,
+            TypeInfoFactory.doubleTypeInfo, ColumnVector.Type.DOUBLE, numBinsParameter(),
+            Mode.COMPLETE);
+    AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+
+    aggregateRandomValues(new Random(8080), false, evaluator, rowAgg,
+        new IntWritable(NUM_BINS), vecAggrExpr, vecAgg);
+
+    assertHistogramEquals(evaluator.terminate(rowAgg), vecAggrExpr, vecAgg);
+  }
+
+  @Test
+  public void testHistogramNumericMerge() throws Exception {
+    Random random = new Random(4242);
+    GenericUDAFEvaluator partial1Evaluator =
+        createHistogramEvaluator(TypeInfoFactory.doubleTypeInfo, Mode.PARTIAL1);
+    List<double[]> partials = new ArrayList<double[]>();
+    for (int p = 0; p < 4; p++) {
+      GenericUDAFEvaluator.AggregationBuffer agg = partial1Evaluator.getNewAggregationBuffer();
+      final int count = 1 + random.nextInt(500);
+      for (int i = 0; i < count; i++) {
+        partial1Evaluator.iterate(agg,
+            new Object[] { new DoubleWritable(random.nextInt(300)), new IntWritable(NUM_BINS) });
+      }
+      partials.add(toArray(partial1Evaluator.terminatePartial(agg)));
+    }
+
+    for (Mode mode : new Mode[] { Mode.PARTIAL2, Mode.FINAL }) {
+      GenericUDAFEvaluator evaluator =
+          createHistogramEvaluator(TypeInfoFactory.doubleTypeInfo, mode);
+      GenericUDAFEvaluator.AggregationBuffer rowAgg = evaluator.getNewAggregationBuffer();
+      for (double[] partial : partials) {
+        evaluator.merge(rowAgg, toList(partial));
+      }
+
+      ObjectInspector returnOI = evaluator.init(mode, new ObjectInspector[] { PARTIAL_OI });
+      VectorAggregateExpression vecAggrExpr =
+          createVectorAggregation(
+              VectorUDAFHistogramNumericMerge.class, "histogram_numeric", evaluator, returnOI,
+              PARTIAL_TYPE_INFO, ColumnVector.Type.LIST, new ArrayList<ExprNodeDesc>(), mode);
+      AggregationBuffer vecAgg = vecAggrExpr.getNewAggregationBuffer();
+      vecAggrExpr.aggregateInput(vecAgg, createPartialBatch(partials));
+
+      if (mode == Mode.PARTIAL2) {
+        assertArrayEquals(toArray(evaluator.terminatePartial(rowAgg)),
+            assignListOutput(vecAggrExpr, vecAgg), 0.0);
+      } else {
+        assertHistogramEquals(evaluator.terminate(rowAgg), vecAggrExpr, vecAgg);
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the value collections of the vectorized COUNT(DISTINCT), collect_set and collect_list.
+ */
+public class TestVectorValueCollection {
+
+  @Test
+  public void testLongDistinct() {
+    Random random = new Random(8763);
+    VectorLongValueCollection collection = new VectorLongValueCollection(/* isDistinct */ true);
+    LinkedHashSet<Long> expected = new LinkedHashSet<Long>();
+    for (int i = 0; i < 10000; i++) {
+      long value = random.nextInt(2000) - 1000;
+      assertEquals(expected.add(value), collection.add(value));
+    }
+    verifyLong(collection, new ArrayList<Long>(expected));
+
+    collection.clear();
+    assertEquals(0, collection.size());
+    assertTrue(collection.add(5));
+    assertFalse(collection.add(5));
+    assertEquals(1, collection.size());
+  }
+
+  @Test
+  public void testLongList() {
+    Random random = new Random(2241);
+    VectorLongValueCollection collection = new VectorLongValueCollection(/* isDistinct */ false);
+    List<Long> expected = new ArrayList<Long>();
+    for (int i = 0; i < 1000; i++) {
+      long value = random.nextInt(10);
+      assertTrue(collection.add(value));
+      expected.add(value);
+    }
+    verifyLong(collection, expected);
+  }
+
+  @Test
+  public void testBytesDistinct() {
+    Random random = new Random(5514);
+    VectorBytesValueCollection collection = new VectorBytesValueCollection(/* isDistinct */ true);
+    LinkedHashSet<String> expected = new LinkedHashSet<String>();
+    for (int i = 0; i < 10000; i++) {
+      String value = "value" + random.nextInt(3000);
+      byte[] bytes = ("xx" + value + "yy").getBytes(StandardCharsets.UTF_8);
+      assertEquals(expected.add(value),
+          collection.add(bytes, 2, bytes.length - 4));
+    }
+    verifyBytes(collection, new ArrayList<String>(expected));
+
+    // The empty string is a value too.
+    collection.clear();
+    assertTrue(collection.add(new byte[0], 0, 0));
+    assertFalse(collection.add(new byte[] { 1 }, 0, 0));
+    assertEquals(1, collection.size());
+  }
+
+  @Test
+  public void testBytesList() {
+    VectorBytesValueCollection collection = new VectorBytesValueCollection(/* isDistinct */ false);
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 300; i++) {
+      String value = (i % 3 == 0 ? "a" : "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      assertTrue(collection.add(bytes, 0, bytes.length));
+      expected.add(value);
+    }
+    verifyBytes(collection, expected);
+  }
+
+  private static void verifyLong(VectorLongValueCollection collection, List<Long> expected) {
+    assertEquals(expected.size(), collection.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals((long) expected.get(i), collection.get(i));
+    }
+  }
+
+  private static void verifyBytes(VectorBytesValueCollection collection, List<String> expected) {
+    assertEquals(expected.size(), collection.size());
+    for (int i = 0; i < expected.size(); i++) {
+      byte[] actual = Arrays.copyOfRange(collection.getBuffer(),
+          collection.getStart(i), collection.getStart(i) + collection.getLength(i));
+      assertEquals(expected.get(i), new String(actual, StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -113,7 +113,9 @@ public static MapJoinDesc createMapJoinDesc(MapJoinTestDescription testDesc) {
 
     Byte[] order = new Byte[] {(byte) 0, (byte) 1};
     mapJoinDesc.setTagOrder(order);
-    mapJoinDesc.setNoOuterJoin(testDesc.vectorMapJoinVariation != VectorMapJoinVariation.OUTER);
+    mapJoinDesc.setNoOuterJoin(
+        testDesc.vectorMapJoinVariation != VectorMapJoinVariation.OUTER &&
+        testDesc.vectorMapJoinVariation != VectorMapJoinVariation.FULL_OUTER);
 
     Map<Byte, List<ExprNodeDesc>> filterMap = new HashMap<Byte, List<ExprNodeDesc>>();
     filterMap.put((byte) 0, new ArrayList<ExprNodeDesc>());  // None.
@@ -141,6 +143,9 @@ public static MapJoinDesc createMapJoinDesc(MapJoinTestDescription testDesc) {
     case OUTER:
       joinDescType = JoinDesc.LEFT_OUTER_JOIN;
       break;
+    case FULL_OUTER:
+      joinDescType = JoinDesc.FULL_OUTER_JOIN;
+      break;
     default:
       throw new RuntimeException("unknown operator variation " + testDesc.vectorMapJoinVariation);
     }
@@ -180,12 +185,15 @@ public static VectorMapJoinDesc createVectorMapJoinDesc(MapJoinTestDescription t
       hashTableKind = HashTableKind.HASH_SET;
       break;
     case OUTER:
+    case FULL_OUTER:
       hashTableKind = HashTableKind.HASH_MAP;
       break;
     default:
       throw new RuntimeException("unknown operator variation " + testDesc.vectorMapJoinVariation);
     }
     vectorDesc.setHashTableKind(hashTableKind);
+    vectorDesc.setIsFullOuter(
+        testDesc.vectorMapJoinVariation == VectorMapJoinVariation.FULL_OUTER);
     HashTableKeyType hashTableKeyType = HashTableKeyType.MULTI_KEY;   // Assume.
     if (testDesc.bigTableKeyTypeInfos.length == 1) {
       switch (((PrimitiveTypeInfo) testDesc.bigTableKeyTypeInfos[0]).getPrimitiveCategory()) {
@@ -306,6 +314,11 @@ public static VectorMapJoinCommonOperator createNativeVectorMapJoinOperator(
             new VectorMapJoinOuterLongOperator(new CompilationOpContext(),
                 mapJoinDesc, vContext, vectorDesc);
         break;
+      case FULL_OUTER:
+        operator =
+            new VectorMapJoinFullOuterLongOperator(new CompilationOpContext(),
+                mapJoinDesc, vContext, vectorDesc);
+        break;
       default:
         throw new RuntimeException("unknown operator variation " + VectorMapJoinVariation);
       }
@@ -332,6 +345,11 @@ public static VectorMapJoinCommonOperator createNativeVectorMapJoinOperator(
             new VectorMapJoinOuterStringOperator(new CompilationOpContext(),
                 mapJoinDesc, vContext, vectorDesc);
         break;
+      case FULL_OUTER:
+        operator =
+            new VectorMapJoinFullOuterStringOperator(new CompilationOpContext(),
+                mapJoinDesc, vContext, vectorDesc);
+        break;
       default:
         throw new RuntimeException("unknown operator variation " + VectorMapJoinVariation);
       }
@@ -358,6 +376,11 @@ public static VectorMapJoinCommonOperator createNativeVectorMapJoinOperator(
             new VectorMapJoinOuterMultiKeyOperator(new CompilationOpContext(),
                 mapJoinDesc, vContext, vectorDesc);
         break;
+      case FULL_OUTER:
+        operator =
+            new VectorMapJoinFullOuterMultiKeyOperator(new CompilationOpContext(),
+                mapJoinDesc, vContext, vectorDesc);
+        break;
       default:
         throw new RuntimeException("unknown operator variation " + VectorMapJoinVariation);
       }
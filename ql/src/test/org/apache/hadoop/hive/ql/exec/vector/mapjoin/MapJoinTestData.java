@@ -37,6 +37,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.MapJoinTestDescription.SmallTableGenerationParameters;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.MapJoinTestDescription.SmallTableGenerationParameters.ValueOption;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.VectorMapJoinVariation;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
@@ -146,6 +147,10 @@ public MapJoinTestData(int rowCount, MapJoinTestDescription testDesc,
     }
     */
 
+    if (testDesc.vectorMapJoinVariation == VectorMapJoinVariation.FULL_OUTER) {
+      addSmallTableOnlyKeys(testDesc, rowCount, vectorExtractRow);
+    }
+
     // Number the test rows with collection order.
     int addCount = 0;
     for (Entry<RowTestObjects, Integer> testRowEntry : smallTableKeyHashMap.entrySet()) {
@@ -155,6 +160,36 @@ public MapJoinTestData(int rowCount, MapJoinTestDescription testDesc,
     generateVariationData(this, testDesc, smallTableRandom);
   }
 
+  /*
+   * FULL OUTER join also outputs the small table rows whose key is not in the big table.  Add
+   * keys generated with another seed (most of which won't match) and the NULL key (which never
+   * matches).
+   */
+  private void addSmallTableOnlyKeys(MapJoinTestDescription testDesc, int rowCount,
+      VectorExtractRow vectorExtractRow) throws HiveException {
+
+    VectorizedRowBatch batch = generator.createBatch();
+    VectorBatchGenerateStream batchStream = new VectorBatchGenerateStream(
+        smallTableRandomSeed, generator, rowCount / 10);
+    Random random = new Random(smallTableRandomSeed);
+    final int keyOutOfAThousand = smallTableGenerationParameters.getKeyOutOfAThousand();
+    while (batchStream.isNext()) {
+      batch.reset();
+      batchStream.fillNext(batch);
+      for (int i = 0; i < batch.size; i++) {
+        if (random.nextInt(1000) <= keyOutOfAThousand) {
+          RowTestObjects testKey = getTestKey(batch, i, vectorExtractRow,
+              testDesc.bigTableKeyTypeInfos.length,
+              testDesc.bigTableObjectInspectors);
+          smallTableKeyHashMap.put(testKey, -1);
+        }
+      }
+    }
+
+    smallTableKeyHashMap.put(
+        new RowTestObjects(new Object[testDesc.bigTableKeyTypeInfos.length]), -1);
+  }
+
   public VectorBatchGenerateStream getBigTableBatchStream() {
     return bigTableBatchStream;
   }
@@ -219,6 +254,7 @@ public static void generateVariationData(MapJoinTestData testData,
       break;
     case INNER:
     case OUTER:
+    case FULL_OUTER:
       testData.generateRandomSmallTableCounts(testDesc, random);
       testData.generateRandomSmallTableValues(testDesc, random);
       break;
@@ -142,6 +142,7 @@ public MapJoinTestDescription (
       break;
     case INNER:
     case OUTER:
+    case FULL_OUTER:
       break;
     default:
       throw new RuntimeException("Unknown operator variation " + vectorMapJoinVariation);
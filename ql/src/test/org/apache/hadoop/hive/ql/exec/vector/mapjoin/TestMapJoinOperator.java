@@ -385,6 +385,9 @@ private RowTestObjectsMultiSet createExpectedTestRowMultiSet(MapJoinTestDescript
     final int bigTableKeyColumnCount = testDesc.bigTableKeyTypeInfos.length;
     Object[] bigTableKeyObjects = new Object[bigTableKeyColumnCount];
 
+    // For FULL OUTER, the small table keys matched by some big table row.
+    HashSet<Integer> matchedSmallTableKeyIndices = new HashSet<Integer>();
+
     VectorBatchGenerateStream bigTableBatchStream = testData.getBigTableBatchStream();
     VectorizedRowBatch batch = testData.getBigTableBatch();
     bigTableBatchStream.reset();
@@ -407,10 +410,12 @@ private RowTestObjectsMultiSet createExpectedTestRowMultiSet(MapJoinTestDescript
         if (testData.smallTableKeyHashMap.containsKey(testKey)) {
 
           int smallTableKeyIndex = testData.smallTableKeyHashMap.get(testKey);
+          matchedSmallTableKeyIndices.add(smallTableKeyIndex);
 
           switch (testDesc.vectorMapJoinVariation) {
           case INNER:
           case OUTER:
+          case FULL_OUTER:
             {
               // One row per value.
               ArrayList<RowTestObjects> valueList = testData.smallTableValues.get(smallTableKeyIndex);
@@ -460,7 +465,8 @@ private RowTestObjectsMultiSet createExpectedTestRowMultiSet(MapJoinTestDescript
 
           // No match.
 
-          if (testDesc.vectorMapJoinVariation == VectorMapJoinVariation.OUTER) {
+          if (testDesc.vectorMapJoinVariation == VectorMapJoinVariation.OUTER ||
+              testDesc.vectorMapJoinVariation == VectorMapJoinVariation.FULL_OUTER) {
 
             // We need to add a non-match row with nulls for small table values.
 
@@ -480,6 +486,30 @@ private RowTestObjectsMultiSet createExpectedTestRowMultiSet(MapJoinTestDescript
       }
     }
 
+    if (testDesc.vectorMapJoinVariation == VectorMapJoinVariation.FULL_OUTER) {
+
+      // Add the small table rows whose key was never matched (including the NULL key) with
+      // nulls for the big table values.
+      for (Entry<RowTestObjects, Integer> testKeyEntry : testData.smallTableKeyHashMap.entrySet()) {
+        final int smallTableKeyIndex = testKeyEntry.getValue();
+        if (matchedSmallTableKeyIndices.contains(smallTableKeyIndex)) {
+          continue;
+        }
+        for (RowTestObjects valueRow : testData.smallTableValues.get(smallTableKeyIndex)) {
+          Object[] outputObjects = new Object[testDesc.outputColumnNames.length];
+
+          final int bigTableRetainColumnNumsLength = testDesc.bigTableRetainColumnNums.length;
+          final int smallTableRetainValueColumnNumsLength = testDesc.smallTableRetainValueColumnNums.length;
+          for (int o = 0; o < smallTableRetainValueColumnNumsLength; o++) {
+            outputObjects[bigTableRetainColumnNumsLength + o] =
+                valueRow.getRow()[testDesc.smallTableRetainValueColumnNums[o]];
+          }
+
+          addToOutput(testDesc, expectedTestRowMultiSet, outputObjects);
+        }
+      }
+    }
+
     return expectedTestRowMultiSet;
   }
 
@@ -492,6 +522,15 @@ private void executeTest(MapJoinTestDescription testDesc, MapJoinTestData testDa
     System.out.println("*BENCHMARK* expectedTestRowMultiSet rowCount " + expectedTestRowMultiSet.getRowCount() +
         " totalCount " + expectedTestRowMultiSet.getTotalCount());
 
+    if (testDesc.vectorMapJoinVariation == VectorMapJoinVariation.FULL_OUTER) {
+
+      // Only the native vector map join with the fast hash table supports FULL OUTER.
+      assertTrue(
+          executeTestImplementation(MapJoinTestImplementation.NATIVE_VECTOR_FAST, testDesc,
+              testData, expectedTestRowMultiSet));
+      return;
+    }
+
     // Execute all implementation variations.
     for (MapJoinTestImplementation mapJoinImplementation : MapJoinTestImplementation.values()) {
       executeTestImplementation(mapJoinImplementation, testDesc, testData,
@@ -505,7 +544,7 @@ private boolean isVectorOutput(MapJoinTestImplementation mapJoinImplementation)
          mapJoinImplementation != MapJoinTestImplementation.ROW_MODE_OPTIMIZED);
   }
 
-  private void executeTestImplementation(
+  private boolean executeTestImplementation(
       MapJoinTestImplementation mapJoinImplementation,
       MapJoinTestDescription testDesc, MapJoinTestData testData, RowTestObjectsMultiSet expectedTestRowMultiSet)
           throws Exception {
@@ -540,10 +579,12 @@ private void executeTestImplementation(
         ((CountCollectorTestOperator) testCollectorOperator).getRowCount());
 
     // Verify the output!
-    if (!expectedTestRowMultiSet.verify(outputTestRowMultiSet)) {
+    boolean isVerified = expectedTestRowMultiSet.verify(outputTestRowMultiSet);
+    if (!isVerified) {
       System.out.println("*BENCHMARK* verify failed for " + mapJoinImplementation);
     } else {
       System.out.println("*BENCHMARK* verify succeeded for " + mapJoinImplementation);
     }
+    return isVerified;
   }
 }
\ No newline at end of file
@@ -18,16 +18,25 @@
 
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
 import org.apache.hadoop.hive.ql.exec.mapjoin.MapJoinMemoryExhaustionError;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.CheckFastHashTable.VerifyFastBytesHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedBytesIterator;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.WriteBuffers.ByteSegmentRef;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hive.common.util.HashCodeUtil;
 import org.junit.Test;
 
 /*
@@ -136,6 +145,63 @@ public void testGetNonExistent() throws Exception {
     assertTrue(!hashMapResult.hasRows());
   }
 
+  @Test
+  public void testBloomFilter() throws Exception {
+    random = new Random(7210);
+
+    VectorMapJoinFastMultiKeyHashMap map =
+        new VectorMapJoinFastMultiKeyHashMap(
+            false, CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+
+    VerifyFastBytesHashMap verifyTable = new VerifyFastBytesHashMap();
+
+    int keyCount = 1000 + random.nextInt(1000);
+    for (int i = 0; i < keyCount; i++) {
+      byte[] key = new byte[1 + random.nextInt(MAX_KEY_LENGTH)];
+      random.nextBytes(key);
+      byte[] value = new byte[random.nextInt(MAX_VALUE_LENGTH)];
+      random.nextBytes(value);
+
+      map.testPutRow(key, value);
+      verifyTable.add(key, value);
+    }
+    map.buildBloomFilter();
+
+    // Every key is still found.
+    verifyTable.verify(map);
+
+    // Absent keys are not, and the filter rules most of them out.
+    VectorMapJoinHashMapResult hashMapResult = map.createHashMapResult();
+    byte[] filteredKey = null;
+    int filteredCount = 0;
+    for (int i = 0; i < keyCount; i++) {
+      byte[] key = new byte[1 + random.nextInt(MAX_KEY_LENGTH)];
+      random.nextBytes(key);
+      if (verifyTable.contains(key)) {
+        continue;
+      }
+      JoinUtil.JoinResult joinResult = map.lookup(key, 0, key.length, hashMapResult);
+      assertTrue(joinResult == JoinUtil.JoinResult.NOMATCH);
+      assertTrue(!hashMapResult.hasRows());
+      if (!map.bloomFilter.mightContain(HashCodeUtil.murmurHash(key, 0, key.length))) {
+        filteredKey = key;
+        filteredCount++;
+      }
+    }
+    assertTrue(filteredCount > keyCount / 2);
+
+    // A key the filter rules out is rejected without reading the slots.
+    long[] slotTriples = map.slotTriples;
+    map.slotTriples = new long[0];
+    try {
+      JoinUtil.JoinResult joinResult =
+          map.lookup(filteredKey, 0, filteredKey.length, hashMapResult);
+      assertTrue(joinResult == JoinUtil.JoinResult.NOMATCH);
+    } finally {
+      map.slotTriples = slotTriples;
+    }
+  }
+
   @Test
   public void testFullMap() throws Exception {
     random = new Random(200001);
@@ -338,4 +404,66 @@ public void testKeyCountLimit() throws Exception {
     }
   }
   */
+  @Test
+  public void testFullOuterNonMatched() throws Exception {
+    random = new Random(4403);
+
+    VectorMapJoinFastMultiKeyHashMap map =
+        new VectorMapJoinFastMultiKeyHashMap(
+            false, CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+    map.setSaveNullKeyValues(true);
+
+    // Distinct keys: a 4 byte big endian prefix plus random bytes.
+    int keyCount = 100 + random.nextInt(100);
+    List<byte[]> keys = new ArrayList<byte[]>();
+    for (int i = 0; i < keyCount; i++) {
+      byte[] key = new byte[4 + random.nextInt(MAX_KEY_LENGTH)];
+      random.nextBytes(key);
+      key[0] = (byte) (i >>> 24);
+      key[1] = (byte) (i >>> 16);
+      key[2] = (byte) (i >>> 8);
+      key[3] = (byte) i;
+      keys.add(key);
+      byte[] value = new byte[random.nextInt(MAX_VALUE_LENGTH)];
+      random.nextBytes(value);
+      map.testPutRow(key, value);
+    }
+    map.addNullKeyValue(new BytesWritable(new byte[] { 1, 2, 3 }));
+
+    // Match the even keys.
+    MatchTracker matchTracker = map.createMatchTracker();
+    VectorMapJoinHashMapResult hashMapResult = map.createHashMapResult();
+    for (int i = 0; i < keyCount; i += 2) {
+      byte[] key = keys.get(i);
+      assertTrue(
+          map.lookup(key, 0, key.length, hashMapResult, matchTracker) ==
+              JoinUtil.JoinResult.MATCH);
+    }
+
+    int nonMatchedCount = 0;
+    int nullKeyCount = 0;
+    VectorMapJoinNonMatchedBytesIterator nonMatchedIterator =
+        (VectorMapJoinNonMatchedBytesIterator) map.createNonMatchedIterator(matchTracker);
+    nonMatchedIterator.init();
+    while (nonMatchedIterator.findNextNonMatched()) {
+      assertTrue(nonMatchedIterator.getNonMatchedHashMapResult().hasRows());
+      if (nonMatchedIterator.isNonMatchedKeyNull()) {
+        nullKeyCount++;
+        continue;
+      }
+      ByteSegmentRef keyRef = nonMatchedIterator.readNonMatchedBytesKey();
+      byte[] keyBytes = keyRef.getBytes();
+      int keyStart = (int) keyRef.getOffset();
+      int i =
+          ((keyBytes[keyStart] & 0xff) << 24) | ((keyBytes[keyStart + 1] & 0xff) << 16) |
+          ((keyBytes[keyStart + 2] & 0xff) << 8) | (keyBytes[keyStart + 3] & 0xff);
+      assertTrue(i % 2 == 1);
+      assertTrue(Arrays.equals(keys.get(i),
+          Arrays.copyOfRange(keyBytes, keyStart, keyStart + keyRef.getLength())));
+      nonMatchedCount++;
+    }
+    assertEquals(keyCount / 2, nonMatchedCount);
+    assertEquals(1, nullKeyCount);
+  }
+
 }
@@ -19,15 +19,21 @@
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.hadoop.hive.ql.exec.JoinUtil;
 import org.apache.hadoop.hive.ql.exec.mapjoin.MapJoinMemoryExhaustionError;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.MatchTracker;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinNonMatchedLongIterator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.CheckFastHashTable.VerifyFastLongHashMap;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastLongHashMap;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hive.common.util.HashCodeUtil;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -132,6 +138,48 @@ public void testGetNonExistent() throws Exception {
     assertTrue(!hashMapResult.hasRows());
   }
 
+  @Test
+  public void testBloomFilter() throws Exception {
+    random = new Random(6609);
+
+    VectorMapJoinFastLongHashMap map =
+        new VectorMapJoinFastLongHashMap(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+
+    VerifyFastLongHashMap verifyTable = new VerifyFastLongHashMap();
+
+    int keyCount = 1000 + random.nextInt(1000);
+    for (int i = 0; i < keyCount; i++) {
+      long key = random.nextLong();
+      byte[] value = new byte[random.nextInt(MAX_VALUE_LENGTH)];
+      random.nextBytes(value);
+
+      map.testPutRow(key, value);
+      verifyTable.add(key, value);
+    }
+    map.buildBloomFilter();
+
+    // Every key is still found.
+    verifyTable.verify(map);
+
+    // Absent keys are not, and the filter rules most of them out.
+    VectorMapJoinHashMapResult hashMapResult = map.createHashMapResult();
+    int filteredCount = 0;
+    for (int i = 0; i < keyCount; i++) {
+      long key = random.nextLong();
+      if (verifyTable.contains(key)) {
+        continue;
+      }
+      JoinUtil.JoinResult joinResult = map.lookup(key, hashMapResult);
+      assertTrue(joinResult == JoinUtil.JoinResult.NOMATCH);
+      assertTrue(!hashMapResult.hasRows());
+      if (!map.bloomFilter.mightContain(HashCodeUtil.calculateLongHashCode(key))) {
+        filteredCount++;
+      }
+    }
+    assertTrue(filteredCount > keyCount / 2);
+  }
+
   @Test
   public void testFullMap() throws Exception {
     random = new Random(93440);
@@ -276,6 +324,51 @@ public void testLargeAndExpand() throws Exception {
     addAndVerifyMultipleKeyMultipleValue(keyCount, map, verifyTable);
   }
 
+  @Test
+  public void testFullOuterNonMatched() throws Exception {
+    random = new Random(7717);
+
+    VectorMapJoinFastLongHashMap map =
+        new VectorMapJoinFastLongHashMap(
+            false, false, HashTableKeyType.LONG, CAPACITY, LOAD_FACTOR, WB_SIZE, -1);
+    map.setSaveNullKeyValues(true);
+
+    int keyCount = 100 + random.nextInt(100);
+    for (long key = 0; key < keyCount; key++) {
+      byte[] value = new byte[random.nextInt(MAX_VALUE_LENGTH)];
+      random.nextBytes(value);
+      map.testPutRow(key, value);
+    }
+    BytesWritable nullKeyValue = new BytesWritable(new byte[] { 1, 2, 3 });
+    map.addNullKeyValue(nullKeyValue);
+
+    // Match the even keys and look for a key that is not in the table.
+    MatchTracker matchTracker = map.createMatchTracker();
+    VectorMapJoinHashMapResult hashMapResult = map.createHashMapResult();
+    for (long key = 0; key < keyCount; key += 2) {
+      assertTrue(map.lookup(key, hashMapResult, matchTracker) == JoinUtil.JoinResult.MATCH);
+    }
+    assertTrue(map.lookup(keyCount, hashMapResult, matchTracker) == JoinUtil.JoinResult.NOMATCH);
+
+    Set<Long> nonMatchedKeys = new HashSet<Long>();
+    int nullKeyCount = 0;
+    VectorMapJoinNonMatchedLongIterator nonMatchedIterator =
+        (VectorMapJoinNonMatchedLongIterator) map.createNonMatchedIterator(matchTracker);
+    nonMatchedIterator.init();
+    while (nonMatchedIterator.findNextNonMatched()) {
+      assertTrue(nonMatchedIterator.getNonMatchedHashMapResult().hasRows());
+      if (nonMatchedIterator.isNonMatchedKeyNull()) {
+        nullKeyCount++;
+        continue;
+      }
+      long key = nonMatchedIterator.readNonMatchedLongKey();
+      assertTrue(key % 2 == 1);
+      assertTrue(nonMatchedKeys.add(key));
+    }
+    assertEquals(keyCount / 2, nonMatchedKeys.size());
+    assertEquals(1, nullKeyCount);
+  }
+
   @Test
   public void testOutOfBounds() throws Exception {
     random = new Random(42662);
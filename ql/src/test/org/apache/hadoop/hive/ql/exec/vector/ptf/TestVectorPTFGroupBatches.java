@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.VectorPTFDesc;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for buffering whole PTF partitions in VectorPTFGroupBatches with the lead, lag and
+ * ntile evaluators.  The batches are driven the way VectorPTFOperator does for a PARTITION BY
+ * with ORDER BY, and the forwarded rows are checked against the row mode definitions.
+ */
+public class TestVectorPTFGroupBatches {
+
+  // Batch columns: partition key, value, lag output, lead output, ntile output.
+  private static final int KEY_COLUMN_NUM = 0;
+  private static final int VALUE_COLUMN_NUM = 1;
+  private static final int LAG_COLUMN_NUM = 2;
+  private static final int LEAD_COLUMN_NUM = 3;
+  private static final int NTILE_COLUMN_NUM = 4;
+  private static final int COLUMN_COUNT = 5;
+
+  private static final long DEFAULT_VALUE = -1;
+
+  /*
+   * Collects the forwarded rows.  The forwarded batches are reused, so the values are copied.
+   */
+  private static class CollectorPTFOperator extends VectorPTFOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Long[]> rows = new ArrayList<Long[]>();
+
+    CollectorPTFOperator() {
+      super(new CompilationOpContext());
+    }
+
+    @Override
+    public void forward(Object row, ObjectInspector rowInspector) throws HiveException {
+      VectorizedRowBatch batch = (VectorizedRowBatch) row;
+      for (int logical = 0; logical < batch.size; logical++) {
+        final int batchIndex = (batch.selectedInUse ? batch.selected[logical] : logical);
+        Long[] values = new Long[COLUMN_COUNT];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+          LongColumnVector colVector = (LongColumnVector) batch.cols[c];
+          final int index = (colVector.isRepeating ? 0 : batchIndex);
+          if (colVector.noNulls || !colVector.isNull[index]) {
+            values[c] = colVector.vector[index];
+          }
+        }
+        rows.add(values);
+      }
+    }
+
+    List<Long[]> getRows() {
+      return rows;
+    }
+  }
+
+  private static VectorizedRowBatch createBatch() {
+    VectorizedRowBatch batch = new VectorizedRowBatch(COLUMN_COUNT);
+    for (int c = 0; c < COLUMN_COUNT; c++) {
+      batch.cols[c] = new LongColumnVector();
+    }
+    return batch;
+  }
+
+  private static VectorPTFEvaluatorBase[] createEvaluators(int lagAmount, int leadAmount,
+      int buckets) {
+    ArrayList<VectorPTFEvaluatorBase> evaluators = new ArrayList<VectorPTFEvaluatorBase>();
+    if (lagAmount >= 0) {
+      evaluators.add(new VectorPTFEvaluatorLongLag(
+          null, new IdentityExpression(VALUE_COLUMN_NUM), LAG_COLUMN_NUM, lagAmount,
+          DEFAULT_VALUE));
+    }
+    if (leadAmount >= 0) {
+      evaluators.add(new VectorPTFEvaluatorLongLead(
+          null, new IdentityExpression(VALUE_COLUMN_NUM), LEAD_COLUMN_NUM, leadAmount, null));
+    }
+    if (buckets > 0) {
+      evaluators.add(new VectorPTFEvaluatorNTile(null, null, NTILE_COLUMN_NUM, buckets));
+    }
+    return evaluators.toArray(new VectorPTFEvaluatorBase[0]);
+  }
+
+  private static VectorPTFGroupBatches createGroupBatches(VectorPTFEvaluatorBase[] evaluators,
+      int maxBufferedBatchCount) {
+
+    final int evaluatorCount = evaluators.length;
+    int[] outputProjectionColumnMap = new int[evaluatorCount + 2];
+    TypeInfo[] outputTypeInfos = new TypeInfo[evaluatorCount + 2];
+    for (int i = 0; i < evaluatorCount; i++) {
+      outputProjectionColumnMap[i] = evaluators[i].getOutputColumnNum();
+      outputTypeInfos[i] = TypeInfoFactory.longTypeInfo;
+    }
+    outputProjectionColumnMap[evaluatorCount] = KEY_COLUMN_NUM;
+    outputTypeInfos[evaluatorCount] = TypeInfoFactory.longTypeInfo;
+    outputProjectionColumnMap[evaluatorCount + 1] = VALUE_COLUMN_NUM;
+    outputTypeInfos[evaluatorCount + 1] = TypeInfoFactory.longTypeInfo;
+
+    TypeInfo[] reducerBatchTypeInfos =
+        new TypeInfo[] { TypeInfoFactory.longTypeInfo, TypeInfoFactory.longTypeInfo };
+
+    VectorPTFGroupBatches groupBatches =
+        new VectorPTFGroupBatches(new HiveConf(), maxBufferedBatchCount);
+    groupBatches.init(
+        reducerBatchTypeInfos, evaluators,
+        outputProjectionColumnMap, outputTypeInfos,
+        new int[] { KEY_COLUMN_NUM }, new int[] { VALUE_COLUMN_NUM },
+        VectorPTFDesc.getStreamingEvaluatorNums(evaluators),
+        createBatch());
+    return groupBatches;
+  }
+
+  /*
+   * Generate partition values with some NULLs.
+   */
+  private static Long[][] generatePartitions(Random random, int[] partitionRowCounts) {
+    Long[][] partitions = new Long[partitionRowCounts.length][];
+    for (int p = 0; p < partitionRowCounts.length; p++) {
+      Long[] values = new Long[partitionRowCounts[p]];
+      for (int r = 0; r < values.length; r++) {
+        values[r] = (random.nextInt(10) == 0 ? null : Long.valueOf(random.nextInt(1000)));
+      }
+      partitions[p] = values;
+    }
+    return partitions;
+  }
+
+  /*
+   * Feed the partitions in batches of batchSize rows, the way VectorPTFOperator.process does when
+   * it buffers whole partitions, and return the forwarded rows.
+   */
+  private static List<Long[]> processPartitions(VectorPTFEvaluatorBase[] evaluators,
+      int maxBufferedBatchCount, Long[][] partitions, int batchSize, boolean repeatValues)
+      throws HiveException {
+
+    VectorPTFGroupBatches groupBatches = createGroupBatches(evaluators, maxBufferedBatchCount);
+    CollectorPTFOperator collector = new CollectorPTFOperator();
+    VectorizedRowBatch batch = createBatch();
+
+    boolean isFirstPartition = true;
+    for (int p = 0; p < partitions.length; p++) {
+      Long[] values = partitions[p];
+      for (int start = 0; start < values.length; start += batchSize) {
+        final int size = Math.min(batchSize, values.length - start);
+        batch.reset();
+
+        LongColumnVector keyColVector = (LongColumnVector) batch.cols[KEY_COLUMN_NUM];
+        keyColVector.isRepeating = true;
+        keyColVector.vector[0] = p;
+
+        LongColumnVector valueColVector = (LongColumnVector) batch.cols[VALUE_COLUMN_NUM];
+        if (repeatValues) {
+          valueColVector.isRepeating = true;
+          setValue(valueColVector, 0, values[start]);
+        } else {
+          for (int i = 0; i < size; i++) {
+            setValue(valueColVector, i, values[start + i]);
+          }
+        }
+        batch.size = size;
+
+        if (isFirstPartition) {
+          isFirstPartition = false;
+          groupBatches.savePartitionKeyColumns(batch);
+        } else if (start == 0) {
+          groupBatches.forwardPartition(collector);
+          groupBatches.savePartitionKeyColumns(batch);
+          groupBatches.resetEvaluators();
+        }
+        groupBatches.evaluateGroupBatch(batch, true);
+        groupBatches.bufferGroupBatch(batch);
+      }
+    }
+    if (groupBatches.hasBufferedPartition()) {
+      groupBatches.forwardPartition(collector);
+    }
+    return collector.getRows();
+  }
+
+  private static void setValue(LongColumnVector colVector, int index, Long value) {
+    if (value == null) {
+      colVector.noNulls = false;
+      colVector.isNull[index] = true;
+    } else {
+      colVector.vector[index] = value;
+    }
+  }
+
+  private static Long[][] repeatFirstValues(Long[][] partitions, int batchSize) {
+    Long[][] result = new Long[partitions.length][];
+    for (int p = 0; p < partitions.length; p++) {
+      Long[] values = partitions[p].clone();
+      for (int r = 0; r < values.length; r++) {
+        values[r] = partitions[p][r - r % batchSize];
+      }
+      result[p] = values;
+    }
+    return result;
+  }
+
+  /*
+   * Check the forwarded rows against the row mode lag(value, lagAmount, DEFAULT_VALUE),
+   * lead(value, leadAmount) and ntile(buckets) definitions.
+   */
+  private static void verifyRows(Long[][] partitions, List<Long[]> rows, int lagAmount,
+      int leadAmount, int buckets) {
+
+    int rowIndex = 0;
+    for (int p = 0; p < partitions.length; p++) {
+      Long[] values = partitions[p];
+      final int rowCount = values.length;
+      for (int r = 0; r < rowCount; r++) {
+        Long[] row = rows.get(rowIndex++);
+        final String where = "partition " + p + " row " + r;
+        assertEquals(where, Long.valueOf(p), row[KEY_COLUMN_NUM]);
+        assertEquals(where, values[r], row[VALUE_COLUMN_NUM]);
+        if (lagAmount >= 0) {
+          Long expected = (r >= lagAmount ? values[r - lagAmount] : Long.valueOf(DEFAULT_VALUE));
+          assertEquals(where + " lag", expected, row[LAG_COLUMN_NUM]);
+        }
+        if (leadAmount >= 0) {
+          Long expected = (r + leadAmount < rowCount ? values[r + leadAmount] : null);
+          assertEquals(where + " lead", expected, row[LEAD_COLUMN_NUM]);
+        }
+        if (buckets > 0) {
+          assertEquals(where + " ntile", Long.valueOf(expectedNTile(r, rowCount, buckets)),
+              row[NTILE_COLUMN_NUM]);
+        }
+      }
+    }
+    assertEquals(rowIndex, rows.size());
+  }
+
+  private static long expectedNTile(int rowNum, int rowCount, int buckets) {
+    int bucketStart = 0;
+    for (int bucket = 1; bucket <= buckets; bucket++) {
+      final int bucketRowCount = rowCount / buckets + (bucket <= rowCount % buckets ? 1 : 0);
+      if (rowNum < bucketStart + bucketRowCount) {
+        return bucket;
+      }
+      bucketStart += bucketRowCount;
+    }
+    throw new RuntimeException("Row " + rowNum + " is past the last bucket");
+  }
+
+  private void doTest(Random random, int[] partitionRowCounts, int batchSize,
+      int maxBufferedBatchCount, int lagAmount, int leadAmount, int buckets)
+      throws HiveException {
+    Long[][] partitions = generatePartitions(random, partitionRowCounts);
+    List<Long[]> rows = processPartitions(
+        createEvaluators(lagAmount, leadAmount, buckets), maxBufferedBatchCount, partitions,
+        batchSize, false);
+    verifyRows(partitions, rows, lagAmount, leadAmount, buckets);
+  }
+
+  @Test
+  public void testLeadLagWithinBatch() throws HiveException {
+    Random random = new Random(2323);
+    doTest(random, new int[] { 10 }, 100, 25, 1, 1, 3);
+    doTest(random, new int[] { 10 }, 100, 25, 3, 4, 0);
+    doTest(random, new int[] { 3 }, 100, 25, 5, 5, 5);
+    doTest(random, new int[] { 1 }, 100, 25, 0, 0, 1);
+  }
+
+  @Test
+  public void testLeadLagAcrossBatches() throws HiveException {
+    Random random = new Random(7721);
+
+    // Input batches smaller than the lead and lag amounts.
+    doTest(random, new int[] { 100 }, 7, 25, 1, 1, 4);
+    doTest(random, new int[] { 100 }, 7, 25, 10, 10, 0);
+    doTest(random, new int[] { 100 }, 3, 25, 20, 50, 7);
+
+    // Partitions of more than one buffered batch.
+    doTest(random, new int[] { 3000 }, VectorizedRowBatch.DEFAULT_SIZE, 25, 1, 1, 10);
+    doTest(random, new int[] { 3000 }, 1000, 25, 2, 1500, 0);
+    doTest(random, new int[] { 2500 }, 500, 25, 1100, 1100, 0);
+  }
+
+  @Test
+  public void testLeadLagPartitionChange() throws HiveException {
+    Random random = new Random(18803);
+    doTest(random, new int[] { 5, 1, 20, 2, 9 }, 4, 25, 1, 2, 3);
+    doTest(random, new int[] { 1030, 1, 1024, 17, 2049 }, 100, 25, 3, 3, 5);
+    doTest(random, new int[] { 2, 2, 2, 2 }, 1, 25, 3, 3, 4);
+  }
+
+  @Test
+  public void testLeadLagSpill() throws HiveException {
+    Random random = new Random(41147);
+
+    // A maximum of one buffered batch is raised for lead, so the partitions still spill.
+    doTest(random, new int[] { 5000 }, VectorizedRowBatch.DEFAULT_SIZE, 1, 1, 1, 3);
+    doTest(random, new int[] { 4100 }, 333, 1, 2, 5, 0);
+    doTest(random, new int[] { 4100, 3, 5000, 1025 }, 500, 1, 3, 2, 6);
+
+    // Lead amounts of more than one batch keep more batches in memory.
+    doTest(random, new int[] { 6000 }, 700, 1, 1200, 1200, 0);
+  }
+
+  @Test
+  public void testWithoutLookAheadSpill() throws HiveException {
+    Random random = new Random(9191);
+
+    // Without lead, buffered batches are not packed.
+    doTest(random, new int[] { 100 }, 7, 25, 3, -1, 4);
+    doTest(random, new int[] { 5000, 3, 1500 }, 300, 2, 1, -1, 7);
+    doTest(random, new int[] { 4000 }, 123, 1, -1, -1, 9);
+  }
+
+  @Test
+  public void testRepeatingValues() throws HiveException {
+    Random random = new Random(5555);
+    final int batchSize = 50;
+    Long[][] partitions =
+        repeatFirstValues(generatePartitions(random, new int[] { 420, 3, 2100 }), batchSize);
+    List<Long[]> rows = processPartitions(
+        createEvaluators(2, 60, 5), 1, partitions, batchSize, true);
+    verifyRows(partitions, rows, 2, 60, 5);
+  }
+}
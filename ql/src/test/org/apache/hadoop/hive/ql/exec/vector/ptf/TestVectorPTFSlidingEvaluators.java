@@ -0,0 +1,595 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.BoundarySpec;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.Direction;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.WindowType;
+import org.apache.hadoop.hive.ql.plan.VectorPTFDesc;
+import org.apache.hadoop.hive.ql.plan.VectorPTFDesc.SupportedFunctionType;
+import org.apache.hadoop.hive.ql.plan.ptf.BoundaryDef;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFAverage;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCount;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMax;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMin;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFResolver2;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum;
+import org.apache.hadoop.hive.ql.udf.generic.SimpleGenericUDAFParameterInfo;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.DecimalTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the sum, avg, min, max and count evaluators over ROWS sliding window frames.
+ *
+ * The batches are driven the way VectorPTFOperator does for a PARTITION BY with ORDER BY: frames
+ * that end at CURRENT ROW are streamed, and frames that end n FOLLOWING buffer the whole partition
+ * in VectorPTFGroupBatches.  Each result is checked against the row mode GenericUDAF evaluator
+ * over the rows of the frame.
+ */
+public class TestVectorPTFSlidingEvaluators {
+
+  // Batch columns: partition key, value, result.
+  private static final int KEY_COLUMN_NUM = 0;
+  private static final int VALUE_COLUMN_NUM = 1;
+  private static final int RESULT_COLUMN_NUM = 2;
+  private static final int COLUMN_COUNT = 3;
+
+  private static final DecimalTypeInfo DECIMAL_TYPE_INFO =
+      TypeInfoFactory.getDecimalTypeInfo(10, 2);
+
+  private static final int UNBOUNDED = BoundarySpec.UNBOUNDED_AMOUNT;
+
+  // How the partition values are generated.
+  private static enum ValueOrder {
+    RANDOM,
+    ASCENDING,
+    DESCENDING
+  }
+
+  /*
+   * Collects the forwarded partition keys and results.  The forwarded batches are reused, so the
+   * values are copied.
+   */
+  private static class CollectorPTFOperator extends VectorPTFOperator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+
+    CollectorPTFOperator() {
+      super(new CompilationOpContext());
+    }
+
+    @Override
+    public void forward(Object row, ObjectInspector rowInspector) throws HiveException {
+      VectorizedRowBatch batch = (VectorizedRowBatch) row;
+      for (int logical = 0; logical < batch.size; logical++) {
+        final int batchIndex = (batch.selectedInUse ? batch.selected[logical] : logical);
+        rows.add(new Object[] {
+            getValue(batch.cols[KEY_COLUMN_NUM], batchIndex),
+            getValue(batch.cols[RESULT_COLUMN_NUM], batchIndex) });
+      }
+    }
+
+    List<Object[]> getRows() {
+      return rows;
+    }
+  }
+
+  private static Object getValue(ColumnVector colVector, int batchIndex) {
+    final int index = (colVector.isRepeating ? 0 : batchIndex);
+    if (!colVector.noNulls && colVector.isNull[index]) {
+      return null;
+    }
+    switch (colVector.type) {
+    case LONG:
+      return ((LongColumnVector) colVector).vector[index];
+    case DOUBLE:
+      return ((DoubleColumnVector) colVector).vector[index];
+    case DECIMAL:
+      return ((DecimalColumnVector) colVector).vector[index].getHiveDecimal();
+    default:
+      throw new RuntimeException("Unexpected column vector type " + colVector.type);
+    }
+  }
+
+  private static void setValue(ColumnVector colVector, int index, Object value) {
+    if (value == null) {
+      colVector.noNulls = false;
+      colVector.isNull[index] = true;
+      return;
+    }
+    switch (colVector.type) {
+    case LONG:
+      ((LongColumnVector) colVector).vector[index] = (Long) value;
+      break;
+    case DOUBLE:
+      ((DoubleColumnVector) colVector).vector[index] = (Double) value;
+      break;
+    case DECIMAL:
+      ((DecimalColumnVector) colVector).set(index, (HiveDecimal) value);
+      break;
+    default:
+      throw new RuntimeException("Unexpected column vector type " + colVector.type);
+    }
+  }
+
+  private static Object toWritable(TypeInfo typeInfo, Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory()) {
+    case LONG:
+      return new LongWritable((Long) value);
+    case DOUBLE:
+      return new DoubleWritable((Double) value);
+    case DECIMAL:
+      return new HiveDecimalWritable((HiveDecimal) value);
+    default:
+      throw new RuntimeException("Unexpected type " + typeInfo);
+    }
+  }
+
+  private static Object generateValue(Random random, TypeInfo typeInfo, ValueOrder valueOrder,
+      int rowNum) {
+    if (random.nextInt(8) == 0) {
+      return null;
+    }
+    final long longValue;
+    switch (valueOrder) {
+    case ASCENDING:
+      longValue = rowNum;
+      break;
+    case DESCENDING:
+      longValue = -rowNum;
+      break;
+    default:
+      longValue = random.nextInt(20000) - 10000;
+    }
+    switch (((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory()) {
+    case LONG:
+      return longValue;
+    case DOUBLE:
+
+      // Quarters are exact, so adding and subtracting them does not round.
+      return longValue / 4.0;
+    case DECIMAL:
+      return HiveDecimal.create(longValue, 2);
+    default:
+      throw new RuntimeException("Unexpected type " + typeInfo);
+    }
+  }
+
+  private static Object[][] generatePartitions(Random random, TypeInfo typeInfo,
+      ValueOrder valueOrder, int[] partitionRowCounts) {
+    Object[][] partitions = new Object[partitionRowCounts.length][];
+    for (int p = 0; p < partitionRowCounts.length; p++) {
+      Object[] values = new Object[partitionRowCounts[p]];
+      for (int r = 0; r < values.length; r++) {
+        values[r] = generateValue(random, typeInfo, valueOrder, r);
+      }
+      partitions[p] = values;
+    }
+    return partitions;
+  }
+
+  private static WindowFrameDef createFrame(int preceding, int following) {
+    BoundaryDef start =
+        (preceding == 0 ?
+            new BoundaryDef(Direction.CURRENT, 0) :
+            new BoundaryDef(Direction.PRECEDING, preceding));
+    BoundaryDef end =
+        (following == 0 ?
+            new BoundaryDef(Direction.CURRENT, 0) :
+            new BoundaryDef(Direction.FOLLOWING, following));
+    return new WindowFrameDef(WindowType.ROWS, start, end);
+  }
+
+  /*
+   * The row mode evaluator in COMPLETE mode.  A null inputTypeInfo is count(*).
+   */
+  private static GenericUDAFEvaluator createRowEvaluator(SupportedFunctionType functionType,
+      TypeInfo inputTypeInfo, ObjectInspector[] resultObjectInspector) throws HiveException {
+    GenericUDAFResolver2 resolver;
+    switch (functionType) {
+    case SUM:
+      resolver = new GenericUDAFSum();
+      break;
+    case AVG:
+      resolver = new GenericUDAFAverage();
+      break;
+    case MIN:
+      resolver = new GenericUDAFMin();
+      break;
+    case MAX:
+      resolver = new GenericUDAFMax();
+      break;
+    case COUNT:
+      resolver = new GenericUDAFCount();
+      break;
+    default:
+      throw new RuntimeException("Unexpected function type " + functionType);
+    }
+    ObjectInspector[] parameterObjectInspectors =
+        (inputTypeInfo == null ?
+            new ObjectInspector[0] :
+            new ObjectInspector[] {
+                PrimitiveObjectInspectorFactory.getPrimitiveWritableObjectInspector(
+                    (PrimitiveTypeInfo) inputTypeInfo) });
+    GenericUDAFEvaluator evaluator = resolver.getEvaluator(
+        new SimpleGenericUDAFParameterInfo(
+            parameterObjectInspectors, false, false, inputTypeInfo == null));
+    resultObjectInspector[0] =
+        evaluator.init(GenericUDAFEvaluator.Mode.COMPLETE, parameterObjectInspectors);
+    return evaluator;
+  }
+
+  /*
+   * The row mode results of each partition row over its frame.
+   */
+  private static Object[][] computeRowResults(GenericUDAFEvaluator rowEvaluator,
+      PrimitiveObjectInspector resultObjectInspector, TypeInfo inputTypeInfo,
+      Object[][] partitions, int preceding, int following) throws HiveException {
+    Object[][] results = new Object[partitions.length][];
+    for (int p = 0; p < partitions.length; p++) {
+      Object[] values = partitions[p];
+      final int rowCount = values.length;
+      results[p] = new Object[rowCount];
+      for (int r = 0; r < rowCount; r++) {
+        final int frameStart = (preceding == UNBOUNDED ? 0 : Math.max(0, r - preceding));
+        final int frameEnd = (int) Math.min(rowCount - 1, (long) r + following);
+        AggregationBuffer aggregationBuffer = rowEvaluator.getNewAggregationBuffer();
+        for (int f = frameStart; f <= frameEnd; f++) {
+          rowEvaluator.iterate(
+              aggregationBuffer,
+              (inputTypeInfo == null ?
+                  new Object[0] : new Object[] { toWritable(inputTypeInfo, values[f]) }));
+        }
+        results[p][r] =
+            resultObjectInspector.getPrimitiveJavaObject(rowEvaluator.terminate(aggregationBuffer));
+      }
+    }
+    return results;
+  }
+
+  private static VectorizedRowBatch createBatch(TypeInfo inputTypeInfo,
+      TypeInfo resultTypeInfo) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(COLUMN_COUNT);
+    batch.cols[KEY_COLUMN_NUM] = new LongColumnVector();
+    batch.cols[VALUE_COLUMN_NUM] = VectorizedBatchUtil.createColumnVector(inputTypeInfo);
+    batch.cols[RESULT_COLUMN_NUM] = VectorizedBatchUtil.createColumnVector(resultTypeInfo);
+    return batch;
+  }
+
+  /*
+   * Feed the partitions in batches of batchSize rows, the way VectorPTFOperator.process does, and
+   * return the forwarded rows.
+   */
+  private static List<Object[]> processPartitions(VectorPTFEvaluatorBase evaluator,
+      TypeInfo inputTypeInfo, TypeInfo resultTypeInfo, Object[][] partitions, int batchSize,
+      int maxBufferedBatchCount) throws HiveException {
+
+    VectorPTFEvaluatorBase[] evaluators = new VectorPTFEvaluatorBase[] { evaluator };
+    VectorPTFGroupBatches groupBatches =
+        new VectorPTFGroupBatches(new HiveConf(), maxBufferedBatchCount);
+    groupBatches.init(
+        new TypeInfo[] { TypeInfoFactory.longTypeInfo, inputTypeInfo },
+        evaluators,
+        new int[] { RESULT_COLUMN_NUM, KEY_COLUMN_NUM, VALUE_COLUMN_NUM },
+        new TypeInfo[] { resultTypeInfo, TypeInfoFactory.longTypeInfo, inputTypeInfo },
+        new int[] { KEY_COLUMN_NUM }, new int[] { VALUE_COLUMN_NUM },
+        VectorPTFDesc.getStreamingEvaluatorNums(evaluators),
+        createBatch(inputTypeInfo, resultTypeInfo));
+    final boolean isBufferingPartition = groupBatches.hasPartitionEvaluators();
+
+    CollectorPTFOperator collector = new CollectorPTFOperator();
+    VectorizedRowBatch batch = createBatch(inputTypeInfo, resultTypeInfo);
+
+    boolean isFirstPartition = true;
+    for (int p = 0; p < partitions.length; p++) {
+      Object[] values = partitions[p];
+      for (int start = 0; start < values.length; start += batchSize) {
+        final int size = Math.min(batchSize, values.length - start);
+        batch.reset();
+
+        LongColumnVector keyColVector = (LongColumnVector) batch.cols[KEY_COLUMN_NUM];
+        keyColVector.isRepeating = true;
+        keyColVector.vector[0] = p;
+        for (int i = 0; i < size; i++) {
+          setValue(batch.cols[VALUE_COLUMN_NUM], i, values[start + i]);
+        }
+        batch.size = size;
+
+        if (isFirstPartition) {
+          isFirstPartition = false;
+          if (isBufferingPartition) {
+            groupBatches.savePartitionKeyColumns(batch);
+          }
+        } else if (start == 0) {
+          if (isBufferingPartition) {
+            groupBatches.forwardPartition(collector);
+            groupBatches.savePartitionKeyColumns(batch);
+          }
+          groupBatches.resetEvaluators();
+        }
+        if (isBufferingPartition) {
+          groupBatches.evaluateGroupBatch(batch, true);
+          groupBatches.bufferGroupBatch(batch);
+        } else {
+          groupBatches.evaluateStreamingGroupBatch(batch, true);
+          collector.forward(batch, null);
+        }
+      }
+    }
+    if (isBufferingPartition && groupBatches.hasBufferedPartition()) {
+      groupBatches.forwardPartition(collector);
+    }
+    return collector.getRows();
+  }
+
+  private static void verifyResults(String description, Object[][] expectedResults,
+      TypeInfo resultTypeInfo, List<Object[]> rows) {
+    int rowIndex = 0;
+    for (int p = 0; p < expectedResults.length; p++) {
+      for (int r = 0; r < expectedResults[p].length; r++) {
+        final String where = description + " partition " + p + " row " + r;
+        Object[] row = rows.get(rowIndex++);
+        assertEquals(where, Long.valueOf(p), row[0]);
+        Object expected = expectedResults[p][r];
+        Object actual = row[1];
+        if (expected == null) {
+          assertNull(where, actual);
+          continue;
+        }
+        assertNotNull(where + " expected " + expected, actual);
+        if (expected instanceof Double) {
+          assertEquals(where, (Double) expected, (Double) actual, 1e-9);
+        } else if (expected instanceof HiveDecimal) {
+          DecimalTypeInfo decimalTypeInfo = (DecimalTypeInfo) resultTypeInfo;
+          HiveDecimal expectedDecimal =
+              HiveDecimal.enforcePrecisionScale(
+                  (HiveDecimal) expected,
+                  decimalTypeInfo.getPrecision(), decimalTypeInfo.getScale());
+          assertTrue(where + " expected " + expectedDecimal + " actual " + actual,
+              expectedDecimal.compareTo((HiveDecimal) actual) == 0);
+        } else {
+          assertEquals(where, ((Number) expected).longValue(), ((Number) actual).longValue());
+        }
+      }
+    }
+    assertEquals(description, rowIndex, rows.size());
+  }
+
+  /*
+   * A null inputTypeInfo is count(*).
+   */
+  private void doTest(Random random, SupportedFunctionType functionType, TypeInfo inputTypeInfo,
+      ValueOrder valueOrder, int[] partitionRowCounts, int preceding, int following,
+      int batchSize, int maxBufferedBatchCount) throws HiveException {
+
+    final String description =
+        functionType + "(" + (inputTypeInfo == null ? "*" : inputTypeInfo.getTypeName()) +
+        ") " + valueOrder + " ROWS BETWEEN " +
+        (preceding == UNBOUNDED ? "UNBOUNDED" : Integer.toString(preceding)) +
+        " PRECEDING AND " + following + " FOLLOWING batch size " + batchSize;
+
+    ObjectInspector[] resultObjectInspector = new ObjectInspector[1];
+    GenericUDAFEvaluator rowEvaluator =
+        createRowEvaluator(functionType, inputTypeInfo, resultObjectInspector);
+    TypeInfo resultTypeInfo =
+        TypeInfoUtils.getTypeInfoFromObjectInspector(resultObjectInspector[0]);
+
+    // count(*) still needs an input column to generate the partition rows.
+    TypeInfo valueTypeInfo = (inputTypeInfo == null ? TypeInfoFactory.longTypeInfo : inputTypeInfo);
+    Object[][] partitions =
+        generatePartitions(random, valueTypeInfo, valueOrder, partitionRowCounts);
+    Object[][] expectedResults = computeRowResults(
+        rowEvaluator, (PrimitiveObjectInspector) resultObjectInspector[0], inputTypeInfo,
+        partitions, preceding, following);
+
+    WindowFrameDef windowFrameDef = createFrame(preceding, following);
+    VectorPTFEvaluatorBase evaluator = VectorPTFDesc.getEvaluator(
+        functionType, windowFrameDef,
+        (inputTypeInfo == null ?
+            Type.LONG : VectorizedBatchUtil.createColumnVector(inputTypeInfo).type),
+        (inputTypeInfo == null ? null : new IdentityExpression(VALUE_COLUMN_NUM)),
+        null, RESULT_COLUMN_NUM);
+    assertTrue(description, evaluator instanceof VectorPTFEvaluatorSlidingBase);
+
+    List<Object[]> rows = processPartitions(
+        evaluator, valueTypeInfo, resultTypeInfo, partitions, batchSize, maxBufferedBatchCount);
+    verifyResults(description, expectedResults, resultTypeInfo, rows);
+  }
+
+  private static final SupportedFunctionType[] VALUE_FUNCTION_TYPES =
+      new SupportedFunctionType[] {
+          SupportedFunctionType.SUM,
+          SupportedFunctionType.AVG,
+          SupportedFunctionType.MIN,
+          SupportedFunctionType.MAX,
+          SupportedFunctionType.COUNT
+      };
+
+  private static final TypeInfo[] INPUT_TYPE_INFOS =
+      new TypeInfo[] {
+          TypeInfoFactory.longTypeInfo,
+          TypeInfoFactory.doubleTypeInfo,
+          DECIMAL_TYPE_INFO
+      };
+
+  /*
+   * Every function and input type, and count(*), over one frame.
+   */
+  private void doTestAllFunctions(Random random, ValueOrder valueOrder,
+      int[] partitionRowCounts, int preceding, int following, int batchSize,
+      int maxBufferedBatchCount) throws HiveException {
+    for (SupportedFunctionType functionType : VALUE_FUNCTION_TYPES) {
+      for (TypeInfo inputTypeInfo : INPUT_TYPE_INFOS) {
+        doTest(random, functionType, inputTypeInfo, valueOrder, partitionRowCounts,
+            preceding, following, batchSize, maxBufferedBatchCount);
+      }
+    }
+    doTest(random, SupportedFunctionType.COUNT, null, valueOrder, partitionRowCounts,
+        preceding, following, batchSize, maxBufferedBatchCount);
+  }
+
+  @Test
+  public void testPrecedingToCurrentRow() throws HiveException {
+    Random random = new Random(3111);
+    final int[] partitionRowCounts = new int[] { 50, 1, 7, 1100 };
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 3, 0, 16, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, UNBOUNDED, 0, 16, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 0, 0, 16, 25);
+  }
+
+  @Test
+  public void testFrameCrossesBatches() throws HiveException {
+    Random random = new Random(8723);
+
+    // Frames several times the batch size, and ones longer than a default size batch.
+    final int[] partitionRowCounts = new int[] { 300, 2, 2500 };
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 2, 3, 10, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 40, 25, 7, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 1500, 0,
+        VectorizedRowBatch.DEFAULT_SIZE, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 10,
+        VectorizedRowBatch.DEFAULT_SIZE, 500, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, UNBOUNDED, 5, 100, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 0, 4, 3, 25);
+  }
+
+  @Test
+  public void testFrameLargerThanPartition() throws HiveException {
+    Random random = new Random(40023);
+    final int[] partitionRowCounts = new int[] { 1, 5, 20, 3 };
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 100, 100, 4, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 30, 0, 4, 25);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 0, 50, 8, 25);
+  }
+
+  @Test
+  public void testNullInputs() throws HiveException {
+    Random random = new Random(1919);
+
+    // Frames smaller than the runs of NULLs of an all NULL partition.
+    for (SupportedFunctionType functionType : VALUE_FUNCTION_TYPES) {
+      for (TypeInfo inputTypeInfo : INPUT_TYPE_INFOS) {
+        Object[][] partitions = new Object[][] {
+            new Object[30],
+            generatePartitions(random, inputTypeInfo, ValueOrder.RANDOM, new int[] { 30 })[0] };
+        for (int r = 10; r < 20; r++) {
+          partitions[1][r] = null;
+        }
+        doTestPartitions(functionType, inputTypeInfo, partitions, 2, 2, 8);
+        doTestPartitions(functionType, inputTypeInfo, partitions, 3, 0, 8);
+      }
+    }
+  }
+
+  private void doTestPartitions(SupportedFunctionType functionType, TypeInfo inputTypeInfo,
+      Object[][] partitions, int preceding, int following, int batchSize) throws HiveException {
+    final String description =
+        functionType + "(" + inputTypeInfo.getTypeName() + ") NULLS ROWS BETWEEN " + preceding +
+        " PRECEDING AND " + following + " FOLLOWING";
+    ObjectInspector[] resultObjectInspector = new ObjectInspector[1];
+    GenericUDAFEvaluator rowEvaluator =
+        createRowEvaluator(functionType, inputTypeInfo, resultObjectInspector);
+    TypeInfo resultTypeInfo =
+        TypeInfoUtils.getTypeInfoFromObjectInspector(resultObjectInspector[0]);
+    Object[][] expectedResults = computeRowResults(
+        rowEvaluator, (PrimitiveObjectInspector) resultObjectInspector[0], inputTypeInfo,
+        partitions, preceding, following);
+    VectorPTFEvaluatorBase evaluator = VectorPTFDesc.getEvaluator(
+        functionType, createFrame(preceding, following),
+        VectorizedBatchUtil.createColumnVector(inputTypeInfo).type,
+        new IdentityExpression(VALUE_COLUMN_NUM), null, RESULT_COLUMN_NUM);
+    List<Object[]> rows = processPartitions(
+        evaluator, inputTypeInfo, resultTypeInfo, partitions, batchSize, 25);
+    verifyResults(description, expectedResults, resultTypeInfo, rows);
+  }
+
+  @Test
+  public void testMinMaxEviction() throws HiveException {
+    Random random = new Random(66011);
+
+    // Ascending values evict every min candidate and keep every max candidate, and descending
+    // values the opposite, so the candidate window both empties and grows past its capacity.
+    for (ValueOrder valueOrder : new ValueOrder[] { ValueOrder.ASCENDING, ValueOrder.DESCENDING }) {
+      for (SupportedFunctionType functionType :
+          new SupportedFunctionType[] { SupportedFunctionType.MIN, SupportedFunctionType.MAX }) {
+        for (TypeInfo inputTypeInfo : INPUT_TYPE_INFOS) {
+          final int[] partitionRowCounts = new int[] { 2500, 40 };
+          doTest(random, functionType, inputTypeInfo, valueOrder, partitionRowCounts,
+              5, 0, 64, 25);
+          doTest(random, functionType, inputTypeInfo, valueOrder, partitionRowCounts,
+              1200, 0, VectorizedRowBatch.DEFAULT_SIZE, 25);
+          doTest(random, functionType, inputTypeInfo, valueOrder, partitionRowCounts,
+              7, 9, 100, 25);
+          doTest(random, functionType, inputTypeInfo, valueOrder, partitionRowCounts,
+              1100, 300, 300, 25);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFollowingSpill() throws HiveException {
+    Random random = new Random(27101);
+
+    // Partitions of several buffered batches with a single in memory batch spill.
+    final int[] partitionRowCounts = new int[] { 4500, 10, 3100 };
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, 3, 2, 250, 1);
+    doTestAllFunctions(random, ValueOrder.RANDOM, partitionRowCounts, UNBOUNDED, 700,
+        VectorizedRowBatch.DEFAULT_SIZE, 1);
+  }
+}
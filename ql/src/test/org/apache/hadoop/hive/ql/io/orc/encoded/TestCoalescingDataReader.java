@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.io.orc.encoded;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.orc.DataReader;
+import org.apache.orc.impl.BufferChunk;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestCoalescingDataReader {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static DiskRangeList ranges(long... offsets) {
+    DiskRangeList head = null, tail = null;
+    for (int i = 0; i < offsets.length; i += 2) {
+      DiskRangeList range = new DiskRangeList(offsets[i], offsets[i + 1]);
+      if (head == null) {
+        head = tail = range;
+      } else {
+        tail = tail.insertAfter(range);
+      }
+    }
+    return head;
+  }
+
+  @Test
+  public void testPlanReads() {
+    DiskRangeList list = ranges(0, 10, 15, 20, 100, 110, 111, 200, 50, 60);
+    List<CoalescingDataReader.ReadGroup> groups = CoalescingDataReader.planReads(list, 5, 100);
+    assertEquals(4, groups.size());
+    assertEquals(0, groups.get(0).offset);
+    assertEquals(20, groups.get(0).end);
+    assertEquals(2, groups.get(0).ranges.size());
+    assertEquals(100, groups.get(1).offset);
+    assertEquals(110, groups.get(1).end);
+    // Merging [111, 200) would make the read larger than 100 bytes.
+    assertEquals(111, groups.get(2).offset);
+    // Ranges out of order are not merged with the previous group.
+    assertEquals(50, groups.get(3).offset);
+
+    // Ranges that already have data are not read.
+    list = ranges(0, 10);
+    list.insertAfter(new BufferChunk(ByteBuffer.allocate(10), 10))
+        .insertAfter(new DiskRangeList(20, 30));
+    groups = CoalescingDataReader.planReads(list, 10, 100);
+    assertEquals(1, groups.size());
+    assertEquals(2, groups.get(0).ranges.size());
+    assertEquals(30, groups.get(0).end);
+  }
+
+  @Test
+  public void testReadFileData() throws IOException {
+    testReadFileData(1, false);
+    testReadFileData(3, true);
+  }
+
+  private void testReadFileData(int parallelism, boolean doForceDirect) throws IOException {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Path path = new Path(new File(folder.getRoot(), "data" + parallelism).getAbsolutePath());
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    try (FSDataOutputStream out = fs.create(path)) {
+      out.write(data);
+    }
+    CoalescingDataReader reader = new CoalescingDataReader(
+        mock(DataReader.class), fs, path, 10, 1000, parallelism, 2);
+    try {
+      long baseOffset = 100;
+      DiskRangeList result = reader.readFileData(
+          ranges(0, 10, 15, 20, 300, 310, 600, 650), baseOffset, doForceDirect);
+      long[] expected = new long[] { 0, 10, 15, 20, 300, 310, 600, 650 };
+      int ix = 0;
+      for (DiskRangeList r = result; r != null; r = r.next, ix += 2) {
+        assertTrue(r.hasData());
+        assertEquals(expected[ix], r.getOffset());
+        assertEquals(expected[ix + 1], r.getEnd());
+        ByteBuffer bb = r.getData();
+        assertEquals(doForceDirect, bb.isDirect());
+        assertEquals(r.getLength(), bb.remaining());
+        for (int i = 0; i < r.getLength(); ++i) {
+          assertEquals(data[(int) (baseOffset + r.getOffset()) + i], bb.get(bb.position() + i));
+        }
+      }
+      assertEquals(expected.length, ix);
+      assertEquals(4, reader.getRangesRead());
+      assertEquals(3, reader.getRequestsIssued());
+
+      // Prefetched ranges are served without issuing any requests.
+      reader.prefetch(ranges(700, 800));
+      result = reader.readFileData(ranges(20, 30, 40, 50), 700, false);
+      assertEquals(3, reader.getRequestsIssued());
+      assertEquals(30, reader.getPrefetchHitBytes());
+      assertEquals(data[740], result.next.getData().get(result.next.getData().position()));
+    } finally {
+      reader.close();
+    }
+  }
+}
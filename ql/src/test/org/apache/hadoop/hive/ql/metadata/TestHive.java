@@ -23,9 +23,11 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.fs.FileStatus;
@@ -40,12 +42,20 @@
 import org.apache.hadoop.hive.metastore.api.MetaException;
 import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat;
+import org.apache.hadoop.hive.ql.optimizer.ppr.PartitionPruner;
+import org.apache.hadoop.hive.ql.parse.PrunedPartitionList;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hadoop.hive.ql.stats.StatsUtils;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
 import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 import org.apache.hadoop.hive.serde2.thrift.ThriftDeserializer;
 import org.apache.hadoop.hive.serde2.thrift.test.Complex;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 import org.apache.hadoop.hive.shims.ShimLoader;
 import org.apache.hadoop.mapred.SequenceFileInputFormat;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
@@ -637,6 +647,104 @@ public void testAutoPurgeTablesAndPartitions() throws Throwable {
     }
   }
 
+  /**
+   * Test that with hive.optimize.partition.fetch.compact, partition pruning returns the same
+   * partitions, fetched in batches, and that they share one unmodifiable column list.
+   */
+  public void testPartitionPruningWithCompactFetch() throws Throwable {
+    String dbName = Warehouse.DEFAULT_DATABASE_NAME;
+    String tableName = "table_for_testPartitionPruningWithCompactFetch";
+    try {
+      Table table = createPartitionedTable(dbName, tableName);
+      for (String ds : Arrays.asList("20141216", "20141217")) {
+        for (String hr : Arrays.asList("11", "12")) {
+          hm.createPartition(table, ImmutableMap.of("ds", ds, "hr", hr));
+        }
+      }
+
+      // ds = '20141216'
+      ExprNodeDesc expr = new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+          new GenericUDFOPEqual(), Arrays.<ExprNodeDesc>asList(
+              new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "ds", tableName, true),
+              new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "20141216")));
+      HiveConf conf = new HiveConf(hiveConf);
+      Set<String> expected = new HashSet<String>();
+      for (Partition partition : PartitionPruner.prune(table, expr, conf, tableName,
+          new HashMap<String, PrunedPartitionList>()).getPartitions()) {
+        expected.add(partition.getName());
+      }
+      assertEquals(2, expected.size());
+
+      conf.setBoolVar(ConfVars.HIVE_PARTITION_FETCH_COMPACT, true);
+      // Fetch the partitions one at a time
+      hm.getConf().setIntVar(ConfVars.METASTORE_BATCH_RETRIEVE_MAX, 1);
+      Set<String> names = new HashSet<String>();
+      List<FieldSchema> cols = null;
+      for (Partition partition : PartitionPruner.prune(table, expr, conf, tableName,
+          new HashMap<String, PrunedPartitionList>()).getPartitions()) {
+        names.add(partition.getName());
+        if (cols == null) {
+          cols = partition.getTPartition().getSd().getCols();
+        } else {
+          assertSame(cols, partition.getTPartition().getSd().getCols());
+        }
+      }
+      assertEquals(expected, names);
+      try {
+        cols.add(new FieldSchema("col", serdeConstants.STRING_TYPE_NAME, null));
+        fail("The shared column list should not be modifiable");
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+    }
+    catch (Exception e) {
+      fail("Unexpected failure: " + StringUtils.stringifyException(e));
+    }
+    finally {
+      cleanUpTableQuietly(dbName, tableName);
+    }
+  }
+
+  /**
+   * Test that with the query metadata cache, partitions fetched by name come back in the order
+   * of the names, whether they were cached or not.
+   */
+  public void testPartitionsByNamesOrderWithMetadataCache() throws Throwable {
+    String dbName = Warehouse.DEFAULT_DATABASE_NAME;
+    String tableName = "table_for_testPartitionsByNamesOrderWithMetadataCache";
+    try {
+      Table table = createPartitionedTable(dbName, tableName);
+      for (String ds : Arrays.asList("20141216", "20141217")) {
+        for (String hr : Arrays.asList("11", "12")) {
+          hm.createPartition(table, ImmutableMap.of("ds", ds, "hr", hr));
+        }
+      }
+
+      hm.startQueryMetadataCache();
+      try {
+        // Cache two of the partitions
+        hm.getPartitionsByNames(table,
+            Arrays.asList("ds=20141217/hr=12", "ds=20141216/hr=11"));
+
+        List<String> partNames = Arrays.asList("ds=20141217/hr=11", "ds=20141216/hr=11",
+            "ds=20141216/hr=12", "ds=20141217/hr=12");
+        List<String> names = new ArrayList<String>();
+        for (Partition partition : hm.getPartitionsByNames(table, partNames)) {
+          names.add(partition.getName());
+        }
+        assertEquals(partNames, names);
+      } finally {
+        hm.endQueryMetadataCache();
+      }
+    }
+    catch (Exception e) {
+      fail("Unexpected failure: " + StringUtils.stringifyException(e));
+    }
+    finally {
+      cleanUpTableQuietly(dbName, tableName);
+    }
+  }
+
   public void testPartition() throws Throwable {
     try {
       String tableName = "table_for_testpartition";
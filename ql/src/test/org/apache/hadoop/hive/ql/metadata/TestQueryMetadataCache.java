@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.metadata;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hive.common.ValidTxnList;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.AggrStats;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
+import org.apache.hadoop.hive.metastore.api.TableValidWriteIds;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QueryMetadataCache}, and its use by {@link Hive}.
+ */
+public class TestQueryMetadataCache {
+  private static final String DB_NAME = "default";
+  private static final String TABLE_NAME = "acid_tbl";
+
+  private HiveConf conf;
+  private IMetaStoreClient msc;
+  private org.apache.hadoop.hive.metastore.api.Table tTable;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = new HiveConf();
+    conf.setBoolVar(ConfVars.HIVE_QUERY_METADATA_CACHE_ENABLED, true);
+    conf.set(ValidTxnList.VALID_TXNS_KEY, "10:" + Long.MAX_VALUE + "::");
+    Table table = new Table(DB_NAME, TABLE_NAME);
+    table.setProperty(hive_metastoreConstants.TABLE_IS_TRANSACTIONAL, "true");
+    tTable = table.getTTable();
+    msc = mock(IMetaStoreClient.class);
+    when(msc.getTable(DB_NAME, TABLE_NAME)).thenReturn(tTable);
+    when(msc.getValidWriteIds(anyListOf(String.class), anyString()))
+        .thenReturn(makeValidWriteIds(5));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Hive.closeCurrent();
+  }
+
+  private Hive createHive(boolean isSessionScope) throws Exception {
+    conf.setBoolVar(ConfVars.HIVE_QUERY_METADATA_CACHE_SESSION_SCOPE, isSessionScope);
+    Hive db = spy(Hive.get(conf, true));
+    doReturn(msc).when(db).getMSC();
+    return db;
+  }
+
+  private static List<TableValidWriteIds> makeValidWriteIds(long highWaterMark) {
+    return Collections.singletonList(new TableValidWriteIds(DB_NAME + "." + TABLE_NAME,
+        highWaterMark, new ArrayList<Long>(), ByteBuffer.allocate(0)));
+  }
+
+  @Test
+  public void testQueryScope() throws Exception {
+    Hive db = createHive(false);
+    db.startQueryMetadataCache();
+    Assert.assertEquals(TABLE_NAME, db.getTable(DB_NAME, TABLE_NAME).getTableName());
+    Assert.assertEquals(TABLE_NAME, db.getTable(DB_NAME, TABLE_NAME).getTableName());
+    verify(msc, times(1)).getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+
+    // The next query fetches the table again
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(2)).getTable(DB_NAME, TABLE_NAME);
+    verify(msc, never()).getValidWriteIds(anyListOf(String.class), anyString());
+  }
+
+  @Test
+  public void testSessionScopeHit() throws Exception {
+    Hive db = createHive(true);
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(1)).getValidWriteIds(anyListOf(String.class), anyString());
+
+    // The write ids are unchanged, so the table is not fetched again
+    db.startQueryMetadataCache();
+    Assert.assertEquals(TABLE_NAME, db.getTable(DB_NAME, TABLE_NAME).getTableName());
+    Assert.assertEquals(TABLE_NAME, db.getTable(DB_NAME, TABLE_NAME).getTableName());
+    db.endQueryMetadataCache();
+    verify(msc, times(1)).getTable(DB_NAME, TABLE_NAME);
+    verify(msc, times(2)).getValidWriteIds(anyListOf(String.class), anyString());
+  }
+
+  @Test
+  public void testSessionScopeMiss() throws Exception {
+    Hive db = createHive(true);
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+
+    // The table was written to; the miss costs one extra call for the write ids
+    when(msc.getValidWriteIds(anyListOf(String.class), anyString()))
+        .thenReturn(makeValidWriteIds(6));
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(2)).getTable(DB_NAME, TABLE_NAME);
+    verify(msc, times(2)).getValidWriteIds(anyListOf(String.class), anyString());
+
+    // The table is kept with the new write ids
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(2)).getTable(DB_NAME, TABLE_NAME);
+    verify(msc, times(3)).getValidWriteIds(anyListOf(String.class), anyString());
+  }
+
+  @Test
+  public void testNonTransactionalTableNotKept() throws Exception {
+    tTable.getParameters().remove(hive_metastoreConstants.TABLE_IS_TRANSACTIONAL);
+    Hive db = createHive(true);
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(2)).getTable(DB_NAME, TABLE_NAME);
+    verify(msc, never()).getValidWriteIds(anyListOf(String.class), anyString());
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    Hive db = createHive(true);
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.dropTable(DB_NAME, TABLE_NAME, false, true, false);
+    db.getTable(DB_NAME, TABLE_NAME);
+    verify(msc, times(2)).getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+
+    // A table dropped in an earlier query is not kept either
+    db.startQueryMetadataCache();
+    db.dropTable(DB_NAME, TABLE_NAME, false, true, false);
+    db.endQueryMetadataCache();
+    db.startQueryMetadataCache();
+    db.getTable(DB_NAME, TABLE_NAME);
+    db.endQueryMetadataCache();
+    verify(msc, times(3)).getTable(DB_NAME, TABLE_NAME);
+  }
+
+  @Test
+  public void testOnlyTableKept() {
+    QueryMetadataCache cache = new QueryMetadataCache(true);
+    List<String> colNames = Arrays.asList("col1");
+    List<String> partNames = Arrays.asList("ds=1");
+    cache.startQuery();
+    cache.putTable(DB_NAME, TABLE_NAME, tTable, "writeIds");
+    cache.putPartition(DB_NAME, TABLE_NAME, "ds=1",
+        new org.apache.hadoop.hive.metastore.api.Partition());
+    cache.putTableColumnStatistics(DB_NAME, TABLE_NAME, colNames,
+        new ArrayList<ColumnStatisticsObj>());
+    cache.putAggrColStats(DB_NAME, TABLE_NAME, colNames, partNames,
+        new AggrStats(new ArrayList<ColumnStatisticsObj>(), 0));
+    // Everything is cached for the rest of the query
+    Assert.assertEquals(tTable, cache.getTable(DB_NAME, TABLE_NAME));
+    Assert.assertEquals(1, cache.getPartitions(DB_NAME, TABLE_NAME, partNames).size());
+    Assert.assertNotNull(cache.getTableColumnStatistics(DB_NAME, TABLE_NAME, colNames));
+    Assert.assertNotNull(cache.getAggrColStats(DB_NAME, TABLE_NAME, colNames, partNames));
+    cache.endQuery();
+
+    // The next query has to revalidate the table, and fetch everything else again
+    cache.startQuery();
+    Assert.assertNull(cache.getTable(DB_NAME, TABLE_NAME));
+    Assert.assertTrue(cache.isTableKept(DB_NAME, TABLE_NAME));
+    Assert.assertEquals(tTable, cache.revalidateTable(DB_NAME, TABLE_NAME, "writeIds"));
+    Assert.assertEquals(tTable, cache.getTable(DB_NAME, TABLE_NAME));
+    Assert.assertTrue(cache.getPartitions(DB_NAME, TABLE_NAME, partNames).isEmpty());
+    Assert.assertNull(cache.getTableColumnStatistics(DB_NAME, TABLE_NAME, colNames));
+    Assert.assertNull(cache.getAggrColStats(DB_NAME, TABLE_NAME, colNames, partNames));
+    cache.endQuery();
+
+    // Different write ids drop the table
+    cache.startQuery();
+    Assert.assertNull(cache.revalidateTable(DB_NAME, TABLE_NAME, "newWriteIds"));
+    Assert.assertFalse(cache.isTableKept(DB_NAME, TABLE_NAME));
+    cache.endQuery();
+  }
+}
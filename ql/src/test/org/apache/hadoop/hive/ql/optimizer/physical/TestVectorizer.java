@@ -35,6 +35,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.VectorGroupByOperator;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFCountStar;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFPercentileApprox;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.gen.VectorUDAFSumLong;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.gen.FuncAbsLongToLong;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -139,6 +140,64 @@ public void testAggregateOnUDF() throws HiveException, VectorizerCannotVectorize
     Assert.assertEquals(VectorUDAFSumLong.class, vectorDesc.getVecAggrDescs()[0].getVecAggrClass());
   }
 
+  @Test
+  public void testAggregateWithConstantParameters()
+      throws HiveException, VectorizerCannotVectorizeException {
+    ExprNodeColumnDesc colExprA = new ExprNodeColumnDesc(Double.class, "col1", "T", false);
+    ExprNodeColumnDesc colExprB = new ExprNodeColumnDesc(Integer.class, "col2", "T", false);
+    ExprNodeConstantDesc percentileExpr = new ExprNodeConstantDesc(0.5);
+    ExprNodeConstantDesc numBinsExpr = new ExprNodeConstantDesc(100);
+
+    ArrayList<ExprNodeDesc> params = new ArrayList<ExprNodeDesc>();
+    params.add(colExprA);
+    params.add(percentileExpr);
+    params.add(numBinsExpr);
+
+    List<ObjectInspector> paramOIs = new ArrayList<ObjectInspector>();
+    for (ExprNodeDesc param : params) {
+      paramOIs.add(param.getWritableObjectInspector());
+    }
+
+    // The percentile and the number of bins are constants, only col1 is an input column.
+    AggregationDesc aggDesc = new AggregationDesc("percentile_approx",
+        FunctionRegistry.getGenericUDAFEvaluator("percentile_approx", paramOIs, false, false),
+        params,
+        false,
+        GenericUDAFEvaluator.Mode.PARTIAL1);
+
+    ArrayList<String> outputColumnNames = new ArrayList<String>();
+    outputColumnNames.add("_col0");
+
+    GroupByDesc desc = new GroupByDesc();
+    VectorGroupByDesc vectorDesc = new VectorGroupByDesc();
+    vectorDesc.setProcessingMode(ProcessingMode.HASH);
+
+    desc.setOutputColumnNames(outputColumnNames);
+    ArrayList<AggregationDesc> aggDescList = new ArrayList<AggregationDesc>();
+    aggDescList.add(aggDesc);
+
+    desc.setAggregators(aggDescList);
+
+    ArrayList<ExprNodeDesc> grpByKeys = new ArrayList<ExprNodeDesc>();
+    grpByKeys.add(colExprB);
+    desc.setKeys(grpByKeys);
+
+    Operator<? extends OperatorDesc> gbyOp = OperatorFactory.get(new CompilationOpContext(), desc);
+
+    desc.setMode(GroupByDesc.Mode.HASH);
+
+    VectorizationContext ctx = new VectorizationContext("name", Arrays.asList(new String[] {"col1", "col2"}));
+
+    Vectorizer v = new Vectorizer();
+    v.testSetCurrentBaseWork(new MapWork());
+    Vectorizer.vectorizeGroupByOperator(gbyOp, ctx, vectorDesc);
+
+    VectorAggregationDesc vecAggrDesc = vectorDesc.getVecAggrDescs()[0];
+    Assert.assertEquals(VectorUDAFPercentileApprox.class, vecAggrDesc.getVecAggrClass());
+    Assert.assertEquals(ColumnVector.Type.DOUBLE, vecAggrDesc.getInputColVectorType());
+    Assert.assertEquals(ColumnVector.Type.LIST, vecAggrDesc.getOutputColVectorType());
+  }
+
   @Test
   public void testValidateNestedExpressions() {
     ExprNodeColumnDesc col1Expr = new ExprNodeColumnDesc(Integer.class, "col1", "table", false);
@@ -172,6 +231,32 @@ public void testValidateNestedExpressions() {
     Assert.assertTrue(v.validateExprNodeDesc(andExprDesc, "test", VectorExpressionDescriptor.Mode.FILTER, false));
   }
 
+  @Test
+  public void testValidatePTFLeadAmount() {
+    Vectorizer v = new Vectorizer();
+    MapWork mapWork = new MapWork();
+    v.testSetCurrentBaseWork(mapWork);
+
+    ExprNodeColumnDesc colExpr = new ExprNodeColumnDesc(Integer.class, "col1", "T", false);
+    Assert.assertTrue(v.validatePTFFunctionArguments("lead",
+        VectorPTFDesc.SupportedFunctionType.LEAD, Arrays.<ExprNodeDesc>asList(colExpr)));
+    Assert.assertTrue(v.validatePTFFunctionArguments("lead",
+        VectorPTFDesc.SupportedFunctionType.LEAD,
+        Arrays.<ExprNodeDesc>asList(colExpr, new ExprNodeConstantDesc(1024))));
+    Assert.assertNull(mapWork.getNotVectorizedReason());
+
+    // Larger lead amounts look ahead more than one batch, so they stay in row mode.
+    Assert.assertFalse(v.validatePTFFunctionArguments("lead",
+        VectorPTFDesc.SupportedFunctionType.LEAD,
+        Arrays.<ExprNodeDesc>asList(colExpr, new ExprNodeConstantDesc(1025))));
+    Assert.assertNotNull(mapWork.getNotVectorizedReason());
+
+    // Lag only looks back.
+    Assert.assertTrue(v.validatePTFFunctionArguments("lag",
+        VectorPTFDesc.SupportedFunctionType.LAG,
+        Arrays.<ExprNodeDesc>asList(colExpr, new ExprNodeConstantDesc(1025))));
+  }
+
   /**
   * prepareAbstractMapJoin prepares a join operator descriptor, used as helper by SMB and Map join tests.
   */
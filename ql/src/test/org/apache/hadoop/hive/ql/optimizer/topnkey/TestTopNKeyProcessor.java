@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.optimizer.topnkey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.ColumnInfo;
+import org.apache.hadoop.hive.ql.exec.GroupByOperator;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorFactory;
+import org.apache.hadoop.hive.ql.exec.ReduceSinkOperator;
+import org.apache.hadoop.hive.ql.exec.RowSchema;
+import org.apache.hadoop.hive.ql.exec.TopNKeyOperator;
+import org.apache.hadoop.hive.ql.lib.DefaultRuleDispatcher;
+import org.apache.hadoop.hive.ql.lib.Dispatcher;
+import org.apache.hadoop.hive.ql.lib.ForwardWalker;
+import org.apache.hadoop.hive.ql.lib.GraphWalker;
+import org.apache.hadoop.hive.ql.lib.Node;
+import org.apache.hadoop.hive.ql.lib.NodeProcessor;
+import org.apache.hadoop.hive.ql.lib.Rule;
+import org.apache.hadoop.hive.ql.lib.RuleRegExp;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.GroupByDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.PlanUtils;
+import org.apache.hadoop.hive.ql.plan.ReduceSinkDesc;
+import org.apache.hadoop.hive.ql.plan.SelectDesc;
+import org.apache.hadoop.hive.ql.plan.TopNKeyDesc;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Test;
+
+/**
+ * Unit tests for TopNKeyProcessor.
+ */
+public class TestTopNKeyProcessor {
+
+  private final CompilationOpContext cCtx = new CompilationOpContext();
+
+  private static ExprNodeColumnDesc column(String name) {
+    return new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, name, "t", false);
+  }
+
+  private static RowSchema rowSchema(String... names) {
+    ArrayList<ColumnInfo> signature = new ArrayList<>();
+    for (String name : names) {
+      signature.add(new ColumnInfo(name, TypeInfoFactory.intTypeInfo, "t", false));
+    }
+    return new RowSchema(signature);
+  }
+
+  private Operator<? extends OperatorDesc> createSource() {
+    List<ExprNodeDesc> columns = Arrays.<ExprNodeDesc>asList(column("c0"), column("c1"));
+    Operator<? extends OperatorDesc> source =
+        OperatorFactory.get(cCtx, new SelectDesc(columns, Arrays.asList("c0", "c1")));
+    source.setSchema(rowSchema("c0", "c1"));
+    return source;
+  }
+
+  private static GroupByOperator createGroupBy(Operator<? extends OperatorDesc> parent,
+      GroupByDesc.Mode mode) {
+    GroupByDesc groupByDesc = new GroupByDesc();
+    groupByDesc.setMode(mode);
+    groupByDesc.setKeys(new ArrayList<ExprNodeDesc>(Collections.singletonList(column("c0"))));
+    groupByDesc.setOutputColumnNames(new ArrayList<>(Collections.singletonList("_col0")));
+    Map<String, ExprNodeDesc> columnExprMap = new HashMap<>();
+    columnExprMap.put("_col0", column("c0"));
+    return (GroupByOperator) OperatorFactory.getAndMakeChild(
+        groupByDesc, rowSchema("_col0"), columnExprMap, parent);
+  }
+
+  private static ReduceSinkOperator createReduceSink(Operator<? extends OperatorDesc> parent,
+      List<ExprNodeDesc> keyColumns, int topN, String order, String nullOrder) {
+    ReduceSinkDesc reduceSinkDesc = new ReduceSinkDesc();
+    reduceSinkDesc.setKeyCols(new ArrayList<>(keyColumns));
+    reduceSinkDesc.setKeySerializeInfo(PlanUtils.getReduceKeyTableDesc(
+        PlanUtils.getFieldSchemasFromColumnList(keyColumns, "reducesinkkey"), order, nullOrder));
+    reduceSinkDesc.setTopN(topN);
+    return (ReduceSinkOperator) OperatorFactory.getAndMakeChild(
+        reduceSinkDesc, new RowSchema(parent.getSchema()), parent);
+  }
+
+  private static void process(ReduceSinkOperator reduceSinkOperator) throws Exception {
+    new TopNKeyProcessor().process(reduceSinkOperator, new Stack<Node>(), null);
+  }
+
+  private static TopNKeyDesc assertTopNKeyBetween(Operator<? extends OperatorDesc> parent,
+      Operator<? extends OperatorDesc> child) {
+    assertEquals(1, parent.getChildOperators().size());
+    Operator<? extends OperatorDesc> topNKeyOperator = parent.getChildOperators().get(0);
+    assertTrue(topNKeyOperator instanceof TopNKeyOperator);
+    assertEquals(Collections.singletonList(parent), topNKeyOperator.getParentOperators());
+    assertEquals(Collections.singletonList(child), topNKeyOperator.getChildOperators());
+    assertEquals(Collections.singletonList(topNKeyOperator), child.getParentOperators());
+    return (TopNKeyDesc) topNKeyOperator.getConf();
+  }
+
+  private static void assertSameKeys(List<ExprNodeDesc> expected, List<ExprNodeDesc> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertTrue(actual.get(i).getExprString(), expected.get(i).isSame(actual.get(i)));
+    }
+  }
+
+  @Test
+  public void testAboveReduceSink() throws Exception {
+    Operator<? extends OperatorDesc> source = createSource();
+    List<ExprNodeDesc> keyColumns = Arrays.<ExprNodeDesc>asList(column("c0"), column("c1"));
+    ReduceSinkOperator reduceSink = createReduceSink(source, keyColumns, 5, "+-", "az");
+
+    process(reduceSink);
+
+    TopNKeyDesc topNKeyDesc = assertTopNKeyBetween(source, reduceSink);
+    assertEquals(5, topNKeyDesc.getTopN());
+    assertEquals("+-", topNKeyDesc.getColumnSortOrder());
+    assertEquals("az", topNKeyDesc.getNullOrder());
+    assertSameKeys(keyColumns, topNKeyDesc.getKeyColumns());
+  }
+
+  @Test
+  public void testBelowHashGroupBy() throws Exception {
+    Operator<? extends OperatorDesc> source = createSource();
+    GroupByOperator groupBy = createGroupBy(source, GroupByDesc.Mode.HASH);
+    ReduceSinkOperator reduceSink = createReduceSink(
+        groupBy, Collections.<ExprNodeDesc>singletonList(column("_col0")), 3, "-", "z");
+
+    process(reduceSink);
+
+    // The rows are dropped before they are aggregated, on the grouping key.
+    TopNKeyDesc topNKeyDesc = assertTopNKeyBetween(source, groupBy);
+    assertEquals(3, topNKeyDesc.getTopN());
+    assertEquals("-", topNKeyDesc.getColumnSortOrder());
+    assertSameKeys(Collections.<ExprNodeDesc>singletonList(column("c0")),
+        topNKeyDesc.getKeyColumns());
+    assertEquals(Collections.singletonList(reduceSink), groupBy.getChildOperators());
+  }
+
+  @Test
+  public void testAboveMergeGroupBy() throws Exception {
+    Operator<? extends OperatorDesc> source = createSource();
+    GroupByOperator groupBy = createGroupBy(source, GroupByDesc.Mode.MERGEPARTIAL);
+    ReduceSinkOperator reduceSink = createReduceSink(
+        groupBy, Collections.<ExprNodeDesc>singletonList(column("_col0")), 3, "+", "a");
+
+    process(reduceSink);
+
+    // Only the map side aggregation can be skipped.
+    TopNKeyDesc topNKeyDesc = assertTopNKeyBetween(groupBy, reduceSink);
+    assertSameKeys(Collections.<ExprNodeDesc>singletonList(column("_col0")),
+        topNKeyDesc.getKeyColumns());
+  }
+
+  @Test
+  public void testNotPushed() throws Exception {
+    Operator<? extends OperatorDesc> source = createSource();
+    List<ExprNodeDesc> keyColumns = Collections.<ExprNodeDesc>singletonList(column("c0"));
+
+    // No LIMIT.
+    ReduceSinkOperator reduceSink = createReduceSink(source, keyColumns, -1, "+", "a");
+    process(reduceSink);
+    assertSame(source, reduceSink.getParentOperators().get(0));
+
+    // Windowing.
+    reduceSink.getConf().setTopN(5);
+    reduceSink.getConf().setPTFReduceSink(true);
+    process(reduceSink);
+    assertSame(source, reduceSink.getParentOperators().get(0));
+
+    // DISTINCT keys.
+    reduceSink.getConf().setPTFReduceSink(false);
+    reduceSink.getConf().setDistinctColumnIndices(
+        Collections.singletonList(Collections.singletonList(0)));
+    process(reduceSink);
+    assertSame(source, reduceSink.getParentOperators().get(0));
+  }
+
+  @Test
+  public void testPushedOnce() throws Exception {
+    Operator<? extends OperatorDesc> source = createSource();
+    ReduceSinkOperator reduceSink = createReduceSink(
+        source, Collections.<ExprNodeDesc>singletonList(column("c0")), 5, "+", "a");
+
+    process(reduceSink);
+    process(reduceSink);
+
+    assertTopNKeyBetween(source, reduceSink);
+  }
+
+  @Test
+  public void testWalk() throws Exception {
+
+    // Walk the plan with the rule TezCompiler uses, for a source with two ordered reduce sinks.
+    Operator<? extends OperatorDesc> source = createSource();
+    ReduceSinkOperator reduceSink1 = createReduceSink(
+        source, Collections.<ExprNodeDesc>singletonList(column("c0")), 5, "+", "a");
+    GroupByOperator groupBy = createGroupBy(source, GroupByDesc.Mode.HASH);
+    ReduceSinkOperator reduceSink2 = createReduceSink(
+        groupBy, Collections.<ExprNodeDesc>singletonList(column("_col0")), 7, "+", "a");
+
+    Map<Rule, NodeProcessor> opRules = new LinkedHashMap<Rule, NodeProcessor>();
+    opRules.put(
+        new RuleRegExp("Top n key optimization", ReduceSinkOperator.getOperatorName() + "%"),
+        new TopNKeyProcessor());
+    Dispatcher disp = new DefaultRuleDispatcher(null, opRules, null);
+    GraphWalker ogw = new ForwardWalker(disp);
+    ogw.startWalking(new ArrayList<Node>(Collections.singletonList(source)), null);
+
+    assertEquals(2, source.getChildOperators().size());
+    for (Operator<? extends OperatorDesc> child : source.getChildOperators()) {
+      assertTrue(child instanceof TopNKeyOperator);
+    }
+    assertTrue(reduceSink1.getParentOperators().get(0) instanceof TopNKeyOperator);
+    assertEquals(5, ((TopNKeyDesc) reduceSink1.getParentOperators().get(0).getConf()).getTopN());
+    assertTrue(groupBy.getParentOperators().get(0) instanceof TopNKeyOperator);
+    assertEquals(7, ((TopNKeyDesc) groupBy.getParentOperators().get(0).getConf()).getTopN());
+    assertSame(groupBy, reduceSink2.getParentOperators().get(0));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.udf.generic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.DoubleObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.junit.Test;
+
+public class TestNumericHistogram {
+
+  private static NumericHistogram createHistogram(int numBins, Random random, int count) {
+    NumericHistogram histogram = new NumericHistogram();
+    histogram.allocate(numBins);
+    for (int i = 0; i < count; i++) {
+      histogram.add(random.nextInt(1000));
+    }
+    return histogram;
+  }
+
+  private static double[] toArray(ArrayList<DoubleWritable> serialized) {
+    double[] result = new double[serialized.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = serialized.get(i).get();
+    }
+    return result;
+  }
+
+  @Test
+  public void testSerializeToArray() {
+    NumericHistogram histogram = createHistogram(20, new Random(17), 5000);
+    double[] expected = toArray(histogram.serialize());
+    assertEquals(expected.length, histogram.getSerializedLength());
+
+    double[] serialized = new double[expected.length + 3];
+    histogram.serialize(serialized, 3);
+    double[] actual = new double[expected.length];
+    System.arraycopy(serialized, 3, actual, 0, actual.length);
+    assertArrayEquals(expected, actual, 0.0);
+
+    NumericHistogram empty = new NumericHistogram();
+    assertEquals(1, empty.getSerializedLength());
+  }
+
+  @Test
+  public void testMergeFromArray() {
+    Random random = new Random(23);
+    NumericHistogram first = createHistogram(30, random, 3000);
+    NumericHistogram second = createHistogram(30, random, 4000);
+    ArrayList<DoubleWritable> secondSerialized = second.serialize();
+    double[] secondArray = new double[secondSerialized.size() + 1];
+    second.serialize(secondArray, 1);
+
+    // Merging from a List and from a double array gives the same histogram.
+    NumericHistogram listMerged = new NumericHistogram();
+    DoubleObjectInspector doi = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+    listMerged.merge(first.serialize(), doi);
+    listMerged.merge(secondSerialized, doi);
+
+    NumericHistogram arrayMerged = new NumericHistogram();
+    double[] firstArray = toArray(first.serialize());
+    arrayMerged.merge(firstArray, 0, firstArray.length);
+    arrayMerged.merge(secondArray, 1, secondArray.length - 1);
+
+    assertEquals(30, arrayMerged.getUsedBins());
+    assertArrayEquals(toArray(listMerged.serialize()), toArray(arrayMerged.serialize()), 0.0);
+    for (int i = 0; i < arrayMerged.getUsedBins(); i++) {
+      assertEquals(listMerged.getBinX(i), arrayMerged.getBinX(i), 0.0);
+      assertEquals(listMerged.getBinY(i), arrayMerged.getBinY(i), 0.0);
+    }
+
+    // Uniform values in [0, 1000).
+    assertEquals(500.0, arrayMerged.quantile(0.5), 50.0);
+  }
+}
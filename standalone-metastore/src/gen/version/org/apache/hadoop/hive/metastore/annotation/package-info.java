@@ -0,0 +1,8 @@
+/*
+ * Generated by saveVersion.sh
+ */
+@MetastoreVersionAnnotation(version="3.1.3", shortVersion="3.1.0",
+                         revision="15a0cfd8c63dff983b58dd260487f6c716258237", branch="master",
+                         user="root", date="Sun Oct 18 20:17:52 UTC 2026", url="git://vm/root/project",
+                         srcChecksum="f8d46dd31762d64f8b8aba584c969a9a")
+package org.apache.hadoop.hive.metastore.annotation;
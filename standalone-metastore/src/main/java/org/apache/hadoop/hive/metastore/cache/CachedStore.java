@@ -24,9 +24,11 @@
 import java.util.Collection;
 import java.util.EmptyStackException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -111,6 +113,11 @@
 import org.apache.hadoop.hive.metastore.api.WMPool;
 import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
 import org.apache.hadoop.hive.metastore.conf.MetastoreConf.ConfVars;
+import org.apache.hadoop.hive.metastore.messaging.AlterPartitionMessage;
+import org.apache.hadoop.hive.metastore.messaging.AlterTableMessage;
+import org.apache.hadoop.hive.metastore.messaging.DropPartitionMessage;
+import org.apache.hadoop.hive.metastore.messaging.MessageDeserializer;
+import org.apache.hadoop.hive.metastore.messaging.MessageFactory;
 import org.apache.hadoop.hive.metastore.partition.spec.PartitionSpecProxy;
 import org.apache.hadoop.hive.metastore.utils.FileUtils;
 import org.apache.hadoop.hive.metastore.utils.JavaUtils;
@@ -491,9 +498,22 @@ static void setCacheRefreshPeriod(long time) {
   static class CacheUpdateMasterWork implements Runnable {
     private boolean shouldRunPrewarm = true;
     private final RawStore rawStore;
+    private final boolean useEvents;
+    private final int eventBatchSize;
+    private final long statsUpdateFrequencyMs;
+    // The last notification event reflected in the cache; -1 if not known yet.
+    private long lastEventId = -1;
+    // When the column stats were last re-read, when updating using events.
+    private long lastStatsUpdateMs;
 
     CacheUpdateMasterWork(Configuration conf, boolean shouldRunPrewarm) {
       this.shouldRunPrewarm = shouldRunPrewarm;
+      this.useEvents =
+          MetastoreConf.getBoolVar(conf, ConfVars.CACHED_RAW_STORE_UPDATE_USING_EVENTS);
+      this.eventBatchSize =
+          MetastoreConf.getIntVar(conf, ConfVars.CACHED_RAW_STORE_EVENT_BATCH_SIZE);
+      this.statsUpdateFrequencyMs = MetastoreConf.getTimeVar(conf,
+          ConfVars.CACHED_RAW_STORE_STATS_UPDATE_FREQUENCY, TimeUnit.MILLISECONDS);
       String rawStoreClassName =
           MetastoreConf.getVar(conf, ConfVars.CACHED_RAW_STORE_IMPL, ObjectStore.class.getName());
       try {
@@ -510,28 +530,284 @@ static class CacheUpdateMasterWork implements Runnable {
     public void run() {
       if (!shouldRunPrewarm) {
         // TODO: prewarm and update can probably be merged.
-        update();
+        if (useEvents) {
+          updateUsingEvents();
+        } else {
+          update();
+        }
       } else {
         try {
+          if (useEvents && lastEventId < 0) {
+            // Changes made during prewarm are applied again afterwards, which is harmless.
+            lastEventId = rawStore.getCurrentNotificationEventId().getEventId();
+          }
           prewarm(rawStore);
+          lastStatsUpdateMs = System.currentTimeMillis();
         } catch (Exception e) {
           LOG.error("Prewarm failure", e);
           return;
         }
+        if (useEvents) {
+          // From now on, only apply the changes recorded in the notification log.
+          shouldRunPrewarm = false;
+        }
+      }
+    }
+
+    /**
+     * Applies the notification events since the last update to the cache, and then re-reads
+     * the column stats of the tables and partitions they touched. Falls back to re-reading
+     * everything if the events since the last update are not all available. Column stats can
+     * change without an event, so all of them are also re-read every
+     * {@link ConfVars#CACHED_RAW_STORE_STATS_UPDATE_FREQUENCY}.
+     */
+    void updateUsingEvents() {
+      Deadline.registerIfNot(1000000);
+      if (lastEventId < 0) {
+        updateAll("the last applied event is not known");
+        return;
+      }
+      MessageDeserializer deserializer = MessageFactory.getInstance().getDeserializer();
+      Map<String, StaleColStats> staleColStats = new HashMap<>();
+      int eventCount = 0;
+      while (true) {
+        NotificationEventRequest rqst = new NotificationEventRequest(lastEventId);
+        rqst.setMaxEvents(eventBatchSize);
+        List<NotificationEvent> events = rawStore.getNextNotification(rqst).getEvents();
+        if (events == null || events.isEmpty()) {
+          long currentEventId = rawStore.getCurrentNotificationEventId().getEventId();
+          if (currentEventId > lastEventId) {
+            updateAll("events up to " + currentEventId + " are no longer in the log");
+            return;
+          }
+          break;
+        }
+        for (NotificationEvent event : events) {
+          if (event.getEventId() != lastEventId + 1) {
+            updateAll("expected event " + (lastEventId + 1) + " but got " + event.getEventId());
+            return;
+          }
+          try {
+            applyEvent(event, deserializer, staleColStats);
+          } catch (Exception e) {
+            LOG.warn("Updating CachedStore: unable to apply event " + event.getEventId(), e);
+            updateAll("event " + event.getEventId() + " could not be applied");
+            return;
+          }
+          lastEventId = event.getEventId();
+          ++eventCount;
+        }
+        if (events.size() < eventBatchSize) {
+          break;
+        }
+      }
+      if (statsUpdateFrequencyMs > 0
+          && System.currentTimeMillis() - lastStatsUpdateMs >= statsUpdateFrequencyMs) {
+        lastStatsUpdateMs = System.currentTimeMillis();
+        update(true);
+      } else {
+        for (StaleColStats stale : staleColStats.values()) {
+          refreshColStats(stale);
+        }
+        sharedCache.incrementUpdateCount();
+      }
+      LOG.debug("CachedStore: applied {} events, last event is {}", eventCount, lastEventId);
+    }
+
+    private void updateAll(String reason) {
+      LOG.info("CachedStore: re-reading all the cached objects; " + reason);
+      lastEventId = rawStore.getCurrentNotificationEventId().getEventId();
+      lastStatsUpdateMs = System.currentTimeMillis();
+      update();
+    }
+
+    private void applyEvent(NotificationEvent event, MessageDeserializer deserializer,
+        Map<String, StaleColStats> staleColStats) throws Exception {
+      String catName = normalizeIdentifier(event.isSetCatName() ? event.getCatName()
+          : getDefaultCatalog(rawStore.getConf()));
+      String dbName = event.getDbName() == null ? null : normalizeIdentifier(event.getDbName());
+      String tblName =
+          event.getTableName() == null ? null : normalizeIdentifier(event.getTableName());
+      String message = event.getMessage();
+      switch (event.getEventType()) {
+      case MessageFactory.CREATE_DATABASE_EVENT:
+        sharedCache.addDatabaseToCache(
+            deserializer.getCreateDatabaseMessage(message).getDatabaseObject());
+        break;
+      case MessageFactory.ALTER_DATABASE_EVENT:
+        sharedCache.alterDatabaseInCache(catName, dbName,
+            deserializer.getAlterDatabaseMessage(message).getDbObjAfter());
+        break;
+      case MessageFactory.DROP_DATABASE_EVENT:
+        sharedCache.removeDatabaseFromCache(catName, dbName);
+        break;
+      case MessageFactory.CREATE_TABLE_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          Table table = deserializer.getCreateTableMessage(message).getTableObj();
+          sharedCache.addTableToCache(catName, dbName, tblName, table);
+        }
+        break;
+      case MessageFactory.ALTER_TABLE_EVENT: {
+        AlterTableMessage msg = deserializer.getAlterTableMessage(message);
+        String oldTblName = normalizeIdentifier(msg.getTableObjBefore().getTableName());
+        Table newTable = msg.getTableObjAfter();
+        String newTblName = normalizeIdentifier(newTable.getTableName());
+        boolean isOldCached = shouldCacheTable(catName, dbName, oldTblName);
+        boolean isNewCached = shouldCacheTable(catName, dbName, newTblName);
+        if (isOldCached && sharedCache.getTableFromCache(catName, dbName, oldTblName) == null) {
+          // The table was not loaded into the cache.
+          break;
+        }
+        if (isOldCached && isNewCached) {
+          sharedCache.alterTableInCache(catName, dbName, oldTblName, newTable);
+        } else if (isNewCached) {
+          sharedCache.addTableToCache(catName, dbName, newTblName, newTable);
+        } else if (isOldCached) {
+          sharedCache.removeTableFromCache(catName, dbName, oldTblName);
+        }
+        if (isNewCached) {
+          markColStatsStale(staleColStats, catName, dbName, newTblName, null);
+        }
+        break;
+      }
+      case MessageFactory.DROP_TABLE_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          sharedCache.removeTableFromCache(catName, dbName, tblName);
+          staleColStats.remove(Warehouse.getCatalogQualifiedTableName(catName, dbName, tblName));
+        }
+        break;
+      case MessageFactory.ADD_PARTITION_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          List<Partition> parts = new ArrayList<>();
+          for (Partition part : deserializer.getAddPartitionMessage(message).getPartitionObjs()) {
+            parts.add(part);
+            markColStatsStale(staleColStats, catName, dbName, tblName, part.getValues());
+          }
+          sharedCache.addPartitionsToCache(catName, dbName, tblName, parts);
+        }
+        break;
+      case MessageFactory.ALTER_PARTITION_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          AlterPartitionMessage msg = deserializer.getAlterPartitionMessage(message);
+          Partition newPart = msg.getPtnObjAfter();
+          sharedCache.alterPartitionInCache(catName, dbName, tblName,
+              msg.getPtnObjBefore().getValues(), newPart);
+          markColStatsStale(staleColStats, catName, dbName, tblName, newPart.getValues());
+        }
+        break;
+      case MessageFactory.DROP_PARTITION_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          DropPartitionMessage msg = deserializer.getDropPartitionMessage(message);
+          List<FieldSchema> partKeys = msg.getTableObj().getPartitionKeys();
+          for (Map<String, String> partSpec : msg.getPartitions()) {
+            List<String> partVals = new ArrayList<>(partKeys.size());
+            for (FieldSchema partKey : partKeys) {
+              partVals.add(partSpec.get(partKey.getName()));
+            }
+            sharedCache.removePartitionFromCache(catName, dbName, tblName, partVals);
+          }
+          // Only the aggregate stats need refreshing.
+          markColStatsStale(staleColStats, catName, dbName, tblName, null);
+        }
+        break;
+      case MessageFactory.INSERT_EVENT:
+        if (shouldCacheTable(catName, dbName, tblName)) {
+          Partition part = deserializer.getInsertMessage(message).getPtnObj();
+          markColStatsStale(staleColStats, catName, dbName, tblName,
+              part == null ? null : part.getValues());
+        }
+        break;
+      default:
+        // The other objects are not cached.
+        break;
+      }
+    }
+
+    private static void markColStatsStale(Map<String, StaleColStats> staleColStats,
+        String catName, String dbName, String tblName, List<String> partVals) {
+      String key = Warehouse.getCatalogQualifiedTableName(catName, dbName, tblName);
+      StaleColStats stale = staleColStats.get(key);
+      if (stale == null) {
+        stale = new StaleColStats(catName, dbName, tblName);
+        staleColStats.put(key, stale);
+      }
+      if (partVals != null) {
+        stale.partVals.add(partVals);
+      }
+    }
+
+    private void refreshColStats(StaleColStats stale) {
+      Table table = sharedCache.getTableFromCache(stale.catName, stale.dbName, stale.tblName);
+      if (table == null) {
+        return;
+      }
+      sharedCache.startTableRefresh(stale.catName, stale.dbName, stale.tblName);
+      if (!table.isSetPartitionKeys()) {
+        updateTableColStats(rawStore, stale.catName, stale.dbName, stale.tblName);
+        return;
+      }
+      if (!stale.partVals.isEmpty()) {
+        try {
+          List<String> partNames = new ArrayList<>(stale.partVals.size());
+          for (List<String> partVals : stale.partVals) {
+            partNames.add(Warehouse.makePartName(table.getPartitionKeys(), partVals));
+          }
+          Deadline.startTimer("getPartitionColumnStatistics");
+          List<ColumnStatistics> partitionColStats = rawStore.getPartitionColumnStatistics(
+              stale.catName, stale.dbName, stale.tblName, partNames,
+              MetaStoreUtils.getColumnNamesForTable(table));
+          Deadline.stopTimer();
+          for (ColumnStatistics colStats : partitionColStats) {
+            sharedCache.updatePartitionColStatsInCache(stale.catName, stale.dbName,
+                stale.tblName, Warehouse.getPartValuesFromPartName(
+                    colStats.getStatsDesc().getPartName()), colStats.getStatsObj());
+          }
+        } catch (MetaException | NoSuchObjectException e) {
+          LOG.info("Updating CachedStore: unable to read partition column stats of table: "
+              + stale.tblName, e);
+        }
+      }
+      updateTableAggregatePartitionColStats(rawStore, stale.catName, stale.dbName, stale.tblName);
+    }
+
+    /** The column stats of a table, and some of its partitions, that need to be re-read. */
+    private static final class StaleColStats {
+      private final String catName, dbName, tblName;
+      private final Set<List<String>> partVals = new HashSet<>();
+
+      private StaleColStats(String catName, String dbName, String tblName) {
+        this.catName = catName;
+        this.dbName = dbName;
+        this.tblName = tblName;
       }
     }
 
     void update() {
+      update(false);
+    }
+
+    /**
+     * Re-reads the cached objects from the metastore DB; if statsOnly is set, only the column
+     * stats of the cached tables.
+     */
+    private void update(boolean statsOnly) {
       Deadline.registerIfNot(1000000);
-      LOG.debug("CachedStore: updating cached objects");
+      LOG.debug("CachedStore: updating cached " + (statsOnly ? "column stats" : "objects"));
       try {
         for (String catName : catalogsToCache(rawStore)) {
+          if (!statsOnly) {
+            sharedCache.startDatabasesRefresh();
+          }
           List<String> dbNames = rawStore.getAllDatabases(catName);
-          // Update the database in cache
-          updateDatabases(rawStore, catName, dbNames);
+          if (!statsOnly) {
+            // Update the database in cache
+            updateDatabases(rawStore, catName, dbNames);
+          }
           for (String dbName : dbNames) {
-            // Update the tables in cache
-            updateTables(rawStore, catName, dbName);
+            if (!statsOnly) {
+              // Update the tables in cache
+              updateTables(rawStore, catName, dbName);
+            }
             List<String> tblNames;
             try {
               tblNames = rawStore.getAllTables(catName, dbName);
@@ -543,10 +819,15 @@ void update() {
               if (!shouldCacheTable(catName, dbName, tblName)) {
                 continue;
               }
+              sharedCache.startTableRefresh(StringUtils.normalizeIdentifier(catName),
+                  StringUtils.normalizeIdentifier(dbName),
+                  StringUtils.normalizeIdentifier(tblName));
               // Update the table column stats for a table in cache
               updateTableColStats(rawStore, catName, dbName, tblName);
-              // Update the partitions for a table in cache
-              updateTablePartitions(rawStore, catName, dbName, tblName);
+              if (!statsOnly) {
+                // Update the partitions for a table in cache
+                updateTablePartitions(rawStore, catName, dbName, tblName);
+              }
               // Update the partition col stats for a table in cache
               updateTablePartitionColStats(rawStore, catName, dbName, tblName);
               // Update aggregate partition column stats for a table in cache
@@ -580,6 +861,7 @@ private void updateDatabases(RawStore rawStore, String catName, List<String> dbN
     private void updateTables(RawStore rawStore, String catName, String dbName) {
       List<Table> tables = new ArrayList<>();
       try {
+        sharedCache.startTablesRefresh();
         List<String> tblNames = rawStore.getAllTables(catName, dbName);
         for (String tblName : tblNames) {
           if (!shouldCacheTable(catName, dbName, tblName)) {
@@ -27,11 +27,15 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.TreeMap;
 
 import org.apache.hadoop.hive.metastore.StatObjectConverter;
 import org.apache.hadoop.hive.metastore.TableType;
@@ -47,6 +51,8 @@
 import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
 import org.apache.hadoop.hive.metastore.api.Table;
 import org.apache.hadoop.hive.metastore.api.TableMeta;
+import org.apache.hadoop.hive.metastore.metrics.Metrics;
+import org.apache.hadoop.hive.metastore.metrics.MetricsConstants;
 import org.apache.hadoop.hive.metastore.utils.MetaStoreUtils;
 import org.apache.hadoop.hive.metastore.utils.StringUtils;
 import org.apache.hadoop.hive.ql.util.IncrementalObjectSizeEstimator;
@@ -54,27 +60,40 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 
 import static org.apache.hadoop.hive.metastore.utils.StringUtils.normalizeIdentifier;
 
+/**
+ * In-memory copy of the catalog used by {@link CachedStore}.
+ * Readers take no cache-wide lock: the catalog, database and table maps are concurrent, and each
+ * table's partitions and stats are guarded by that table's own lock. Writers that touch a single
+ * database serialize on a lock stripe picked by the database name, so writes (and refreshes) of
+ * different databases don't block each other. Operations that span the whole cache, such as
+ * catalog changes, prewarm bookkeeping and the periodic database refresh, take cacheLock
+ * exclusively, which keeps the single-database writers (holding it shared) out.
+ * The time spent waiting on contended locks is reported through the metastore metrics.
+ */
 public class SharedCache {
-  private static ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock(true);
-  private boolean isCatalogCachePrewarmed = false;
-  private Map<String, Catalog> catalogCache = new TreeMap<>();
-  private HashSet<String> catalogsDeletedDuringPrewarm = new HashSet<>();
+  private static final int NUM_DB_LOCK_STRIPES = 64;
+  private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock(true);
+  private final ReentrantLock[] dbLocks = new ReentrantLock[NUM_DB_LOCK_STRIPES];
+  private volatile boolean isCatalogCachePrewarmed = false;
+  private final Map<String, Catalog> catalogCache = new ConcurrentSkipListMap<>();
+  private final Set<String> catalogsDeletedDuringPrewarm = ConcurrentHashMap.newKeySet();
   private AtomicBoolean isCatalogCacheDirty = new AtomicBoolean(false);
 
   // For caching Database objects. Key is database name
-  private Map<String, Database> databaseCache = new TreeMap<>();
-  private boolean isDatabaseCachePrewarmed = false;
-  private HashSet<String> databasesDeletedDuringPrewarm = new HashSet<>();
+  private final Map<String, Database> databaseCache = new ConcurrentSkipListMap<>();
+  private volatile boolean isDatabaseCachePrewarmed = false;
+  private final Set<String> databasesDeletedDuringPrewarm = ConcurrentHashMap.newKeySet();
   private AtomicBoolean isDatabaseCacheDirty = new AtomicBoolean(false);
 
   // For caching TableWrapper objects. Key is aggregate of database name and table name
-  private Map<String, TableWrapper> tableCache = new TreeMap<>();
-  private boolean isTableCachePrewarmed = false;
-  private HashSet<String> tablesDeletedDuringPrewarm = new HashSet<>();
+  private final Map<String, TableWrapper> tableCache = new ConcurrentSkipListMap<>();
+  private volatile boolean isTableCachePrewarmed = false;
+  private final Set<String> tablesDeletedDuringPrewarm = ConcurrentHashMap.newKeySet();
   private AtomicBoolean isTableCacheDirty = new AtomicBoolean(false);
   private Map<ByteArrayWrapper, StorageDescriptorWrapper> sdCache = new HashMap<>();
   private static MessageDigest md;
@@ -106,6 +125,61 @@ public int getPosition() {
     }
   }
 
+  public SharedCache() {
+    for (int i = 0; i < dbLocks.length; i++) {
+      dbLocks[i] = new ReentrantLock(true);
+    }
+  }
+
+  /**
+   * Acquires the lock, recording how long we waited for it in the given metric if it was
+   * contended. Uncontended acquisitions are not recorded, to keep the fast path cheap.
+   */
+  private static void lock(Lock lock, String waitMetric) {
+    try {
+      // Unlike tryLock(), a timed tryLock honors the fairness of the lock.
+      if (lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long start = System.nanoTime();
+    lock.lock();
+    Timer waitTimer = Metrics.getOrCreateTimer(waitMetric);
+    if (waitTimer != null) {
+      waitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private int getDbLockIndex(String catName, String dbName) {
+    return Math.floorMod(CacheUtils.buildDbKey(catName, dbName).hashCode(), dbLocks.length);
+  }
+
+  /**
+   * Locks the entries of a single database for writing. Must be released with
+   * {@link #unlockDatabase(int)}.
+   */
+  private int lockDatabase(String catName, String dbName) {
+    int lockIx = getDbLockIndex(catName, dbName);
+    lockDatabase(lockIx);
+    return lockIx;
+  }
+
+  private void lockDatabase(int lockIx) {
+    lock(cacheLock.readLock(), MetricsConstants.CACHED_STORE_LOCK_WAIT);
+    lock(dbLocks[lockIx], MetricsConstants.CACHED_STORE_LOCK_WAIT);
+  }
+
+  private void unlockDatabase(int lockIx) {
+    dbLocks[lockIx].unlock();
+    cacheLock.readLock().unlock();
+  }
+
+  private void lockCache() {
+    lock(cacheLock.writeLock(), MetricsConstants.CACHED_STORE_LOCK_WAIT);
+  }
+
 
   public void initialize(long maxSharedCacheSizeInBytes) {
     maxCacheSizeInBytes = maxSharedCacheSizeInBytes;
@@ -125,7 +199,8 @@ private static ObjectEstimator getMemorySizeEstimator(Class<?> clazz) {
   }
 
   static class TableWrapper {
-    Table t;
+    // Read without the table lock by the table listing methods
+    volatile Table t;
     String location;
     Map<String, String> parameters;
     byte[] sdHash;
@@ -195,11 +270,21 @@ boolean sameDatabase(String catName, String dbName) {
       return catName.equals(t.getCatName()) && dbName.equals(t.getDbName());
     }
 
+    Table assemble(SharedCache sharedCache) {
+      try {
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        return CacheUtils.assemble(this, sharedCache);
+      } finally {
+        tableLock.readLock().unlock();
+      }
+    }
+
     void cachePartition(Partition part, SharedCache sharedCache) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         PartitionWrapper wrapper = makePartitionWrapper(part, sharedCache);
-        partitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()), wrapper);
+        releaseSd(partitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()), wrapper),
+            sharedCache);
         isPartitionCacheDirty.set(true);
         // Invalidate cached aggregate stats
         if (!aggrColStatsCache.isEmpty()) {
@@ -212,7 +297,7 @@ void cachePartition(Partition part, SharedCache sharedCache) {
 
     boolean cachePartitions(List<Partition> parts, SharedCache sharedCache) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (Partition part : parts) {
           PartitionWrapper ptnWrapper = makePartitionWrapper(part, sharedCache);
           if (maxCacheSizeInBytes > 0) {
@@ -224,13 +309,16 @@ boolean cachePartitions(List<Partition> parts, SharedCache sharedCache) {
               LOG.debug(
                   "Cannot cache Partition: {}. Memory needed is {} bytes, whereas the memory remaining is: {} bytes.",
                   part, estimatedMemUsage, (0.8 * maxCacheSizeInBytes - currentCacheSizeInBytes));
+              releaseSd(ptnWrapper, sharedCache);
               return false;
             } else {
               currentCacheSizeInBytes += estimatedMemUsage;
             }
             LOG.trace("Current cache size: {} bytes", currentCacheSizeInBytes);
           }
-          partitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()), ptnWrapper);
+          releaseSd(
+              partitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()), ptnWrapper),
+              sharedCache);
           isPartitionCacheDirty.set(true);
         }
         // Invalidate cached aggregate stats
@@ -246,7 +334,7 @@ boolean cachePartitions(List<Partition> parts, SharedCache sharedCache) {
     public Partition getPartition(List<String> partVals, SharedCache sharedCache) {
       Partition part = null;
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         PartitionWrapper wrapper = partitionCache.get(CacheUtils.buildPartitionCacheKey(partVals));
         if (wrapper == null) {
           return null;
@@ -262,7 +350,7 @@ public List<Partition> listPartitions(int max, SharedCache sharedCache) {
       List<Partition> parts = new ArrayList<>();
       int count = 0;
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (PartitionWrapper wrapper : partitionCache.values()) {
           if (max == -1 || count < max) {
             parts.add(CacheUtils.assemble(wrapper, sharedCache));
@@ -278,7 +366,7 @@ public List<Partition> listPartitions(int max, SharedCache sharedCache) {
     public boolean containsPartition(List<String> partVals) {
       boolean containsPart = false;
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         containsPart = partitionCache.containsKey(CacheUtils.buildPartitionCacheKey(partVals));
       } finally {
         tableLock.readLock().unlock();
@@ -289,13 +377,14 @@ public boolean containsPartition(List<String> partVals) {
     public Partition removePartition(List<String> partVal, SharedCache sharedCache) {
       Partition part = null;
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         PartitionWrapper wrapper =
             partitionCache.remove(CacheUtils.buildPartitionCacheKey(partVal));
-        isPartitionCacheDirty.set(true);
-        if (wrapper.getSdHash() != null) {
-          sharedCache.decrSd(wrapper.getSdHash());
+        if (wrapper == null) {
+          return null;
         }
+        isPartitionCacheDirty.set(true);
+        releaseSd(wrapper, sharedCache);
         part = CacheUtils.assemble(wrapper, sharedCache);
         // Remove col stats
         String partialKey = CacheUtils.buildPartitionCacheKey(partVal);
@@ -320,7 +409,7 @@ public Partition removePartition(List<String> partVal, SharedCache sharedCache)
 
     public void removePartitions(List<List<String>> partVals, SharedCache sharedCache) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (List<String> partVal : partVals) {
           removePartition(partVal, sharedCache);
         }
@@ -331,7 +420,7 @@ public void removePartitions(List<List<String>> partVals, SharedCache sharedCach
 
     public void alterPartition(List<String> partVals, Partition newPart, SharedCache sharedCache) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         removePartition(partVals, sharedCache);
         cachePartition(newPart, sharedCache);
       } finally {
@@ -342,7 +431,7 @@ public void alterPartition(List<String> partVals, Partition newPart, SharedCache
     public void alterPartitions(List<List<String>> partValsList, List<Partition> newParts,
         SharedCache sharedCache) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (int i = 0; i < partValsList.size(); i++) {
           List<String> partVals = partValsList.get(i);
           Partition newPart = newParts.get(i);
@@ -354,34 +443,37 @@ public void alterPartitions(List<List<String>> partValsList, List<Partition> new
     }
 
     public void refreshPartitions(List<Partition> partitions, SharedCache sharedCache) {
+      // Build the new partitions before taking the table lock; readers only wait for the swap.
       Map<String, PartitionWrapper> newPartitionCache = new HashMap<String, PartitionWrapper>();
+      for (Partition part : partitions) {
+        newPartitionCache.put(CacheUtils.buildPartitionCacheKey(part.getValues()),
+            makePartitionWrapper(part, sharedCache));
+      }
+      Map<String, PartitionWrapper> oldPartitionCache;
       try {
-        tableLock.writeLock().lock();
-        for (Partition part : partitions) {
-          if (isPartitionCacheDirty.compareAndSet(true, false)) {
-            LOG.debug("Skipping partition cache update for table: " + getTable().getTableName()
-                + "; the partition list we have is dirty.");
-            return;
-          }
-          String key = CacheUtils.buildPartitionCacheKey(part.getValues());
-          PartitionWrapper wrapper = partitionCache.get(key);
-          if (wrapper != null) {
-            if (wrapper.getSdHash() != null) {
-              sharedCache.decrSd(wrapper.getSdHash());
-            }
-          }
-          wrapper = makePartitionWrapper(part, sharedCache);
-          newPartitionCache.put(key, wrapper);
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        if (isPartitionCacheDirty.compareAndSet(true, false)) {
+          LOG.debug("Skipping partition cache update for table: " + getTable().getTableName()
+              + "; the partition list we have is dirty.");
+          oldPartitionCache = newPartitionCache;
+        } else {
+          oldPartitionCache = partitionCache;
+          partitionCache = newPartitionCache;
         }
-        partitionCache = newPartitionCache;
       } finally {
         tableLock.writeLock().unlock();
       }
+      // Release the storage descriptors of whichever partitions are not in the cache
+      for (PartitionWrapper wrapper : oldPartitionCache.values()) {
+        if (wrapper.getSdHash() != null) {
+          sharedCache.decrSd(wrapper.getSdHash());
+        }
+      }
     }
 
     public boolean updateTableColStats(List<ColumnStatisticsObj> colStatsForTable) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (ColumnStatisticsObj colStatObj : colStatsForTable) {
           // Get old stats object if present
           String key = colStatObj.getColName();
@@ -424,17 +516,17 @@ public boolean updateTableColStats(List<ColumnStatisticsObj> colStatsForTable) {
     public void refreshTableColStats(List<ColumnStatisticsObj> colStatsForTable) {
       Map<String, ColumnStatisticsObj> newTableColStatsCache =
           new HashMap<String, ColumnStatisticsObj>();
+      for (ColumnStatisticsObj colStatObj : colStatsForTable) {
+        String key = colStatObj.getColName();
+        // TODO: get rid of deepCopy after making sure callers don't use references
+        newTableColStatsCache.put(key, colStatObj.deepCopy());
+      }
       try {
-        tableLock.writeLock().lock();
-        for (ColumnStatisticsObj colStatObj : colStatsForTable) {
-          if (isTableColStatsCacheDirty.compareAndSet(true, false)) {
-            LOG.debug("Skipping table col stats cache update for table: "
-                + getTable().getTableName() + "; the table col stats list we have is dirty.");
-            return;
-          }
-          String key = colStatObj.getColName();
-          // TODO: get rid of deepCopy after making sure callers don't use references
-          newTableColStatsCache.put(key, colStatObj.deepCopy());
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        if (isTableColStatsCacheDirty.compareAndSet(true, false)) {
+          LOG.debug("Skipping table col stats cache update for table: "
+              + getTable().getTableName() + "; the table col stats list we have is dirty.");
+          return;
         }
         tableColStatsCache = newTableColStatsCache;
       } finally {
@@ -445,7 +537,7 @@ public void refreshTableColStats(List<ColumnStatisticsObj> colStatsForTable) {
     public List<ColumnStatisticsObj> getCachedTableColStats(List<String> colNames) {
       List<ColumnStatisticsObj> colStatObjs = new ArrayList<ColumnStatisticsObj>();
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (String colName : colNames) {
           ColumnStatisticsObj colStatObj = tableColStatsCache.get(colName);
           if (colStatObj != null) {
@@ -460,7 +552,7 @@ public List<ColumnStatisticsObj> getCachedTableColStats(List<String> colNames) {
 
     public void removeTableColStats(String colName) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         tableColStatsCache.remove(colName);
         isTableColStatsCacheDirty.set(true);
       } finally {
@@ -470,7 +562,7 @@ public void removeTableColStats(String colName) {
 
     public ColumnStatisticsObj getPartitionColStats(List<String> partVal, String colName) {
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         return partitionColStatsCache
             .get(CacheUtils.buildPartitonColStatsCacheKey(partVal, colName));
       } finally {
@@ -481,7 +573,7 @@ public ColumnStatisticsObj getPartitionColStats(List<String> partVal, String col
     public boolean updatePartitionColStats(List<String> partVal,
         List<ColumnStatisticsObj> colStatsObjs) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (ColumnStatisticsObj colStatObj : colStatsObjs) {
           // Get old stats object if present
           String key = CacheUtils.buildPartitonColStatsCacheKey(partVal, colStatObj.getColName());
@@ -527,7 +619,7 @@ public boolean updatePartitionColStats(List<String> partVal,
 
     public void removePartitionColStats(List<String> partVals, String colName) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         partitionColStatsCache.remove(CacheUtils.buildPartitonColStatsCacheKey(partVals, colName));
         isPartitionColStatsCacheDirty.set(true);
         // Invalidate cached aggregate stats
@@ -542,32 +634,27 @@ public void removePartitionColStats(List<String> partVals, String colName) {
     public void refreshPartitionColStats(List<ColumnStatistics> partitionColStats) {
       Map<String, ColumnStatisticsObj> newPartitionColStatsCache =
           new HashMap<String, ColumnStatisticsObj>();
-      try {
-        tableLock.writeLock().lock();
-        String tableName = StringUtils.normalizeIdentifier(getTable().getTableName());
-        for (ColumnStatistics cs : partitionColStats) {
-          if (isPartitionColStatsCacheDirty.compareAndSet(true, false)) {
-            LOG.debug("Skipping partition column stats cache update for table: "
-                + getTable().getTableName() + "; the partition column stats list we have is dirty");
-            return;
-          }
-          List<String> partVal;
-          try {
-            partVal = Warehouse.makeValsFromName(cs.getStatsDesc().getPartName(), null);
-            List<ColumnStatisticsObj> colStatsObjs = cs.getStatsObj();
-            for (ColumnStatisticsObj colStatObj : colStatsObjs) {
-              if (isPartitionColStatsCacheDirty.compareAndSet(true, false)) {
-                LOG.debug("Skipping partition column stats cache update for table: "
-                    + getTable().getTableName() + "; the partition column list we have is dirty");
-                return;
-              }
-              String key =
-                  CacheUtils.buildPartitonColStatsCacheKey(partVal, colStatObj.getColName());
-              newPartitionColStatsCache.put(key, colStatObj.deepCopy());
-            }
-          } catch (MetaException e) {
-            LOG.debug("Unable to cache partition column stats for table: " + tableName, e);
+      String tableName = StringUtils.normalizeIdentifier(getTable().getTableName());
+      for (ColumnStatistics cs : partitionColStats) {
+        List<String> partVal;
+        try {
+          partVal = Warehouse.makeValsFromName(cs.getStatsDesc().getPartName(), null);
+          List<ColumnStatisticsObj> colStatsObjs = cs.getStatsObj();
+          for (ColumnStatisticsObj colStatObj : colStatsObjs) {
+            String key =
+                CacheUtils.buildPartitonColStatsCacheKey(partVal, colStatObj.getColName());
+            newPartitionColStatsCache.put(key, colStatObj.deepCopy());
           }
+        } catch (MetaException e) {
+          LOG.debug("Unable to cache partition column stats for table: " + tableName, e);
+        }
+      }
+      try {
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        if (isPartitionColStatsCacheDirty.compareAndSet(true, false)) {
+          LOG.debug("Skipping partition column stats cache update for table: "
+              + getTable().getTableName() + "; the partition column stats list we have is dirty");
+          return;
         }
         partitionColStatsCache = newPartitionColStatsCache;
       } finally {
@@ -579,7 +666,7 @@ public List<ColumnStatisticsObj> getAggrPartitionColStats(List<String> colNames,
         StatsType statsType) {
       List<ColumnStatisticsObj> colStats = new ArrayList<ColumnStatisticsObj>();
       try {
-        tableLock.readLock().lock();
+        lock(tableLock.readLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         for (String colName : colNames) {
           List<ColumnStatisticsObj> colStatList = aggrColStatsCache.get(colName);
           // If unable to find stats for a column, return null so we can build stats
@@ -602,7 +689,7 @@ public List<ColumnStatisticsObj> getAggrPartitionColStats(List<String> colNames,
     public void cacheAggrPartitionColStats(AggrStats aggrStatsAllPartitions,
         AggrStats aggrStatsAllButDefaultPartition) {
       try {
-        tableLock.writeLock().lock();
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
         if (aggrStatsAllPartitions != null) {
           for (ColumnStatisticsObj statObj : aggrStatsAllPartitions.getColStats()) {
             if (statObj != null) {
@@ -633,69 +720,108 @@ public void refreshAggrPartitionColStats(AggrStats aggrStatsAllPartitions,
         AggrStats aggrStatsAllButDefaultPartition) {
       Map<String, List<ColumnStatisticsObj>> newAggrColStatsCache =
           new HashMap<String, List<ColumnStatisticsObj>>();
-      try {
-        tableLock.writeLock().lock();
-        if (aggrStatsAllPartitions != null) {
-          for (ColumnStatisticsObj statObj : aggrStatsAllPartitions.getColStats()) {
-            if (isAggrPartitionColStatsCacheDirty.compareAndSet(true, false)) {
-              LOG.debug("Skipping aggregate stats cache update for table: "
-                  + getTable().getTableName() + "; the aggregate stats list we have is dirty");
-              return;
-            }
-            if (statObj != null) {
-              List<ColumnStatisticsObj> aggrStats = new ArrayList<ColumnStatisticsObj>();
-              aggrStats.add(StatsType.ALL.ordinal(), statObj.deepCopy());
-              newAggrColStatsCache.put(statObj.getColName(), aggrStats);
-            }
+      if (aggrStatsAllPartitions != null) {
+        for (ColumnStatisticsObj statObj : aggrStatsAllPartitions.getColStats()) {
+          if (statObj != null) {
+            List<ColumnStatisticsObj> aggrStats = new ArrayList<ColumnStatisticsObj>();
+            aggrStats.add(StatsType.ALL.ordinal(), statObj.deepCopy());
+            newAggrColStatsCache.put(statObj.getColName(), aggrStats);
           }
         }
-        if (aggrStatsAllButDefaultPartition != null) {
-          for (ColumnStatisticsObj statObj : aggrStatsAllButDefaultPartition.getColStats()) {
-            if (isAggrPartitionColStatsCacheDirty.compareAndSet(true, false)) {
-              LOG.debug("Skipping aggregate stats cache update for table: "
-                  + getTable().getTableName() + "; the aggregate stats list we have is dirty");
-              return;
-            }
-            if (statObj != null) {
-              List<ColumnStatisticsObj> aggrStats = newAggrColStatsCache.get(statObj.getColName());
-              if (aggrStats == null) {
-                aggrStats = new ArrayList<ColumnStatisticsObj>();
-              }
-              aggrStats.add(StatsType.ALLBUTDEFAULT.ordinal(), statObj.deepCopy());
+      }
+      if (aggrStatsAllButDefaultPartition != null) {
+        for (ColumnStatisticsObj statObj : aggrStatsAllButDefaultPartition.getColStats()) {
+          if (statObj != null) {
+            List<ColumnStatisticsObj> aggrStats = newAggrColStatsCache.get(statObj.getColName());
+            if (aggrStats == null) {
+              aggrStats = new ArrayList<ColumnStatisticsObj>();
             }
+            aggrStats.add(StatsType.ALLBUTDEFAULT.ordinal(), statObj.deepCopy());
           }
         }
+      }
+      try {
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        if (isAggrPartitionColStatsCacheDirty.compareAndSet(true, false)) {
+          LOG.debug("Skipping aggregate stats cache update for table: "
+              + getTable().getTableName() + "; the aggregate stats list we have is dirty");
+          return;
+        }
         aggrColStatsCache = newAggrColStatsCache;
       } finally {
         tableLock.writeLock().unlock();
       }
     }
 
+    /**
+     * Called before the partitions and stats of this table are read for a refresh; the refresh
+     * is then skipped only if they are modified after this call.
+     */
+    private void clearDirtyFlags() {
+      isTableColStatsCacheDirty.set(false);
+      isPartitionCacheDirty.set(false);
+      isPartitionColStatsCacheDirty.set(false);
+      isAggrPartitionColStatsCacheDirty.set(false);
+    }
+
+    /**
+     * Releases the storage descriptors of the table and its cached partitions, once the table
+     * has been removed from the cache.
+     */
+    private void releaseSds(SharedCache sharedCache) {
+      try {
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        if (sdHash != null) {
+          sharedCache.decrSd(sdHash);
+          sdHash = null;
+        }
+        for (PartitionWrapper wrapper : partitionCache.values()) {
+          if (wrapper.getSdHash() != null) {
+            sharedCache.decrSd(wrapper.getSdHash());
+          }
+        }
+        partitionCache.clear();
+      } finally {
+        tableLock.writeLock().unlock();
+      }
+    }
+
     private void updateTableObj(Table newTable, SharedCache sharedCache) {
-      byte[] sdHash = getSdHash();
-      // Remove old table object's sd hash
-      if (sdHash != null) {
-        sharedCache.decrSd(sdHash);
-      }
-      Table tblCopy = newTable.deepCopy();
-      if (tblCopy.getPartitionKeys() != null) {
-        for (FieldSchema fs : tblCopy.getPartitionKeys()) {
-          fs.setName(StringUtils.normalizeIdentifier(fs.getName()));
+      try {
+        lock(tableLock.writeLock(), MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT);
+        byte[] sdHash = getSdHash();
+        // Remove old table object's sd hash
+        if (sdHash != null) {
+          sharedCache.decrSd(sdHash);
         }
+        Table tblCopy = newTable.deepCopy();
+        if (tblCopy.getPartitionKeys() != null) {
+          for (FieldSchema fs : tblCopy.getPartitionKeys()) {
+            fs.setName(StringUtils.normalizeIdentifier(fs.getName()));
+          }
+        }
+        setTable(tblCopy);
+        if (tblCopy.getSd() != null) {
+          sdHash = MetaStoreUtils.hashStorageDescriptor(tblCopy.getSd(), md);
+          StorageDescriptor sd = tblCopy.getSd();
+          sharedCache.increSd(sd, sdHash);
+          tblCopy.setSd(null);
+          setSdHash(sdHash);
+          setLocation(sd.getLocation());
+          setParameters(sd.getParameters());
+        } else {
+          setSdHash(null);
+          setLocation(null);
+          setParameters(null);
+        }
+      } finally {
+        tableLock.writeLock().unlock();
       }
-      setTable(tblCopy);
-      if (tblCopy.getSd() != null) {
-        sdHash = MetaStoreUtils.hashStorageDescriptor(tblCopy.getSd(), md);
-        StorageDescriptor sd = tblCopy.getSd();
-        sharedCache.increSd(sd, sdHash);
-        tblCopy.setSd(null);
-        setSdHash(sdHash);
-        setLocation(sd.getLocation());
-        setParameters(sd.getParameters());
-      } else {
-        setSdHash(null);
-        setLocation(null);
-        setParameters(null);
+    }
+
+    private void releaseSd(PartitionWrapper wrapper, SharedCache sharedCache) {
+      if (wrapper != null && wrapper.getSdHash() != null) {
+        sharedCache.decrSd(wrapper.getSdHash());
       }
     }
 
@@ -769,7 +895,7 @@ public void populateCatalogsInCache(Collection<Catalog> catalogs) {
       // ObjectStore also stores db name in lowercase
       catCopy.setName(catCopy.getName().toLowerCase());
       try {
-        cacheLock.writeLock().lock();
+        lockCache();
         // Since we allow write operations on cache while prewarm is happening:
         // 1. Don't add databases that were deleted while we were preparing list for prewarm
         // 2. Skip overwriting exisiting db object
@@ -788,20 +914,15 @@ public void populateCatalogsInCache(Collection<Catalog> catalogs) {
 
   public Catalog getCatalogFromCache(String name) {
     Catalog cat = null;
-    try {
-      cacheLock.readLock().lock();
-      if (catalogCache.get(name) != null) {
-        cat = catalogCache.get(name).deepCopy();
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    if (catalogCache.get(name) != null) {
+      cat = catalogCache.get(name).deepCopy();
     }
     return cat;
   }
 
   public void addCatalogToCache(Catalog cat) {
     try {
-      cacheLock.writeLock().lock();
+      lockCache();
       Catalog catCopy = cat.deepCopy();
       // ObjectStore also stores db name in lowercase
       catCopy.setName(catCopy.getName().toLowerCase());
@@ -814,7 +935,7 @@ public void addCatalogToCache(Catalog cat) {
 
   public void alterCatalogInCache(String catName, Catalog newCat) {
     try {
-      cacheLock.writeLock().lock();
+      lockCache();
       removeCatalogFromCache(catName);
       addCatalogToCache(newCat.deepCopy());
     } finally {
@@ -825,7 +946,7 @@ public void alterCatalogInCache(String catName, Catalog newCat) {
   public void removeCatalogFromCache(String name) {
     name = normalizeIdentifier(name);
     try {
-      cacheLock.writeLock().lock();
+      lockCache();
       // If db cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       if (!isCatalogCachePrewarmed) {
@@ -840,12 +961,7 @@ public void removeCatalogFromCache(String name) {
   }
 
   public List<String> listCachedCatalogs() {
-    try {
-      cacheLock.readLock().lock();
-      return new ArrayList<>(catalogCache.keySet());
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return new ArrayList<>(catalogCache.keySet());
   }
 
   public boolean isCatalogCachePrewarmed() {
@@ -854,14 +970,9 @@ public boolean isCatalogCachePrewarmed() {
 
   public Database getDatabaseFromCache(String catName, String name) {
     Database db = null;
-    try {
-      cacheLock.readLock().lock();
-      String key = CacheUtils.buildDbKey(catName, name);
-      if (databaseCache.get(key) != null) {
-        db = databaseCache.get(key).deepCopy();
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    String key = CacheUtils.buildDbKey(catName, name);
+    if (databaseCache.get(key) != null) {
+      db = databaseCache.get(key).deepCopy();
     }
     return db;
   }
@@ -872,7 +983,7 @@ public void populateDatabasesInCache(List<Database> databases) {
       // ObjectStore also stores db name in lowercase
       dbCopy.setName(dbCopy.getName().toLowerCase());
       try {
-        cacheLock.writeLock().lock();
+        lockCache();
         // Since we allow write operations on cache while prewarm is happening:
         // 1. Don't add databases that were deleted while we were preparing list for prewarm
         // 2. Skip overwriting exisiting db object
@@ -896,22 +1007,27 @@ public boolean isDatabaseCachePrewarmed() {
   }
 
   public void addDatabaseToCache(Database db) {
+    Database dbCopy = copyDatabaseForCache(db);
+    int lockIx = lockDatabase(dbCopy.getCatalogName(), dbCopy.getName());
     try {
-      cacheLock.writeLock().lock();
-      Database dbCopy = db.deepCopy();
-      // ObjectStore also stores db name in lowercase
-      dbCopy.setName(dbCopy.getName().toLowerCase());
-      dbCopy.setCatalogName(dbCopy.getCatalogName().toLowerCase());
       databaseCache.put(CacheUtils.buildDbKey(dbCopy.getCatalogName(), dbCopy.getName()), dbCopy);
       isDatabaseCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
+  private static Database copyDatabaseForCache(Database db) {
+    Database dbCopy = db.deepCopy();
+    // ObjectStore also stores db name in lowercase
+    dbCopy.setName(dbCopy.getName().toLowerCase());
+    dbCopy.setCatalogName(dbCopy.getCatalogName().toLowerCase());
+    return dbCopy;
+  }
+
   public void removeDatabaseFromCache(String catName, String dbName) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
       // If db cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       String key = CacheUtils.buildDbKey(catName, dbName);
@@ -922,40 +1038,30 @@ public void removeDatabaseFromCache(String catName, String dbName) {
         isDatabaseCacheDirty.set(true);
       }
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public List<String> listCachedDatabases(String catName) {
     List<String> results = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String pair : databaseCache.keySet()) {
-        String[] n = CacheUtils.splitDbName(pair);
-        if (catName.equals(n[0]))
-          results.add(n[1]);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    for (String pair : databaseCache.keySet()) {
+      String[] n = CacheUtils.splitDbName(pair);
+      if (catName.equals(n[0]))
+        results.add(n[1]);
     }
     return results;
   }
 
   public List<String> listCachedDatabases(String catName, String pattern) {
     List<String> results = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String pair : databaseCache.keySet()) {
-        String[] n = CacheUtils.splitDbName(pair);
-        if (catName.equals(n[0])) {
-          n[1] = StringUtils.normalizeIdentifier(n[1]);
-          if (CacheUtils.matches(n[1], pattern)) {
-            results.add(n[1]);
-          }
+    for (String pair : databaseCache.keySet()) {
+      String[] n = CacheUtils.splitDbName(pair);
+      if (catName.equals(n[0])) {
+        n[1] = StringUtils.normalizeIdentifier(n[1]);
+        if (CacheUtils.matches(n[1], pattern)) {
+          results.add(n[1]);
         }
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return results;
   }
@@ -965,39 +1071,48 @@ public List<String> listCachedDatabases(String catName, String pattern) {
    * not exist.
    */
   public void alterDatabaseInCache(String catName, String dbName, Database newDb) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
       removeDatabaseFromCache(catName, dbName);
       addDatabaseToCache(newDb.deepCopy());
       isDatabaseCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
+  /**
+   * Called before the databases are read for {@link #refreshDatabasesInCache}, which then skips
+   * the refresh only if the cached databases are modified after this call.
+   */
+  public void startDatabasesRefresh() {
+    isDatabaseCacheDirty.set(false);
+  }
+
   public void refreshDatabasesInCache(List<Database> databases) {
+    // Copy the new objects before locking; readers keep seeing the old entries until they are
+    // replaced, rather than an empty cache.
+    Map<String, Database> newDatabaseCache = new HashMap<>();
+    for (Database db : databases) {
+      Database dbCopy = copyDatabaseForCache(db);
+      newDatabaseCache.put(CacheUtils.buildDbKey(dbCopy.getCatalogName(), dbCopy.getName()),
+          dbCopy);
+    }
     try {
-      cacheLock.writeLock().lock();
+      lockCache();
       if (isDatabaseCacheDirty.compareAndSet(true, false)) {
         LOG.debug("Skipping database cache update; the database list we have is dirty.");
         return;
       }
-      databaseCache.clear();
-      for (Database db : databases) {
-        addDatabaseToCache(db);
-      }
+      databaseCache.keySet().retainAll(newDatabaseCache.keySet());
+      databaseCache.putAll(newDatabaseCache);
     } finally {
       cacheLock.writeLock().unlock();
     }
   }
 
   public int getCachedDatabaseCount() {
-    try {
-      cacheLock.readLock().lock();
-      return databaseCache.size();
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return databaseCache.size();
   }
 
   public boolean populateTableInCache(Table table, ColumnStatistics tableColStats,
@@ -1057,14 +1172,19 @@ public boolean populateTableInCache(Table table, ColumnStatistics tableColStats,
       tblWrapper.cacheAggrPartitionColStats(aggrStatsAllPartitions,
           aggrStatsAllButDefaultPartition);
     }
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
+      String key = CacheUtils.buildTableKey(catName, dbName, tableName);
+      // Check again, the table may have been dropped while we were building the wrapper
+      if (tablesDeletedDuringPrewarm.contains(key)) {
+        return false;
+      }
       // 2. Skip overwriting exisiting table object
       // (which is present because it was added after prewarm started)
-      tableCache.putIfAbsent(CacheUtils.buildTableKey(catName, dbName, tableName), tblWrapper);
+      tableCache.putIfAbsent(key, tblWrapper);
       return true;
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
@@ -1074,7 +1194,7 @@ private static boolean isCacheMemoryFull(long estimatedMemUsage) {
 
   public void completeTableCachePrewarm() {
     try {
-      cacheLock.writeLock().lock();
+      lockCache();
       tablesDeletedDuringPrewarm.clear();
       isTableCachePrewarmed = true;
     } finally {
@@ -1084,28 +1204,27 @@ public void completeTableCachePrewarm() {
 
   public Table getTableFromCache(String catName, String dbName, String tableName) {
     Table t = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper =
-          tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
-      if (tblWrapper != null) {
-        t = CacheUtils.assemble(tblWrapper, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper =
+        tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
+    if (tblWrapper != null) {
+      t = tblWrapper.assemble(this);
     }
     return t;
   }
 
   public TableWrapper addTableToCache(String catName, String dbName, String tblName, Table tbl) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
       TableWrapper wrapper = createTableWrapper(catName, dbName, tblName, tbl);
-      tableCache.put(CacheUtils.buildTableKey(catName, dbName, tblName), wrapper);
+      TableWrapper oldWrapper =
+          tableCache.put(CacheUtils.buildTableKey(catName, dbName, tblName), wrapper);
+      if (oldWrapper != null) {
+        oldWrapper.releaseSds(this);
+      }
       isTableCacheDirty.set(true);
       return wrapper;
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
@@ -1134,8 +1253,8 @@ private TableWrapper createTableWrapper(String catName, String dbName, String tb
   }
 
   public void removeTableFromCache(String catName, String dbName, String tblName) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
       // If table cache is not yet prewarmed, add this to a set which the prewarm thread can check
       // so that the prewarm thread does not add it back
       if (!isTableCachePrewarmed) {
@@ -1143,59 +1262,64 @@ public void removeTableFromCache(String catName, String dbName, String tblName)
       }
       TableWrapper tblWrapper =
           tableCache.remove(CacheUtils.buildTableKey(catName, dbName, tblName));
-      byte[] sdHash = tblWrapper.getSdHash();
-      if (sdHash != null) {
-        decrSd(sdHash);
+      if (tblWrapper != null) {
+        tblWrapper.releaseSds(this);
       }
       isTableCacheDirty.set(true);
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void alterTableInCache(String catName, String dbName, String tblName, Table newTable) {
+    String newDbName = StringUtils.normalizeIdentifier(newTable.getDbName());
+    String newTblName = StringUtils.normalizeIdentifier(newTable.getTableName());
+    // A rename can move the table to another database; take both stripes in a fixed order.
+    int oldLockIx = getDbLockIndex(catName, dbName);
+    int newLockIx = getDbLockIndex(catName, newDbName);
+    int firstLockIx = Math.min(oldLockIx, newLockIx);
+    int secondLockIx = Math.max(oldLockIx, newLockIx);
+    lockDatabase(firstLockIx);
     try {
-      cacheLock.writeLock().lock();
-      TableWrapper tblWrapper =
-          tableCache.remove(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        tblWrapper.updateTableObj(newTable, this);
-        String newDbName = StringUtils.normalizeIdentifier(newTable.getDbName());
-        String newTblName = StringUtils.normalizeIdentifier(newTable.getTableName());
-        tableCache.put(CacheUtils.buildTableKey(catName, newDbName, newTblName), tblWrapper);
-        isTableCacheDirty.set(true);
+      lock(dbLocks[secondLockIx], MetricsConstants.CACHED_STORE_LOCK_WAIT);
+      try {
+        String oldKey = CacheUtils.buildTableKey(catName, dbName, tblName);
+        String newKey = CacheUtils.buildTableKey(catName, newDbName, newTblName);
+        TableWrapper tblWrapper = tableCache.get(oldKey);
+        if (tblWrapper != null) {
+          tblWrapper.updateTableObj(newTable, this);
+          // Add the new key before removing the old one, so lock-free readers always find the
+          // table under one of its names.
+          tableCache.put(newKey, tblWrapper);
+          if (!oldKey.equals(newKey)) {
+            tableCache.remove(oldKey);
+          }
+          isTableCacheDirty.set(true);
+        }
+      } finally {
+        dbLocks[secondLockIx].unlock();
       }
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(firstLockIx);
     }
   }
 
   public List<Table> listCachedTables(String catName, String dbName) {
     List<Table> tables = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (TableWrapper wrapper : tableCache.values()) {
-        if (wrapper.sameDatabase(catName, dbName)) {
-          tables.add(CacheUtils.assemble(wrapper, this));
-        }
+    for (TableWrapper wrapper : tableCache.values()) {
+      if (wrapper.sameDatabase(catName, dbName)) {
+        tables.add(wrapper.assemble(this));
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tables;
   }
 
   public List<String> listCachedTableNames(String catName, String dbName) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (TableWrapper wrapper : tableCache.values()) {
-        if (wrapper.sameDatabase(catName, dbName)) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-        }
+    for (TableWrapper wrapper : tableCache.values()) {
+      if (wrapper.sameDatabase(catName, dbName)) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
@@ -1203,19 +1327,14 @@ public List<String> listCachedTableNames(String catName, String dbName) {
   public List<String> listCachedTableNames(String catName, String dbName, String pattern,
       short maxTables) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      int count = 0;
-      for (TableWrapper wrapper : tableCache.values()) {
-        if (wrapper.sameDatabase(catName, dbName)
-            && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
-            && (maxTables == -1 || count < maxTables)) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-          count++;
-        }
+    int count = 0;
+    for (TableWrapper wrapper : tableCache.values()) {
+      if (wrapper.sameDatabase(catName, dbName)
+          && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
+          && (maxTables == -1 || count < maxTables)) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
+        count++;
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
@@ -1223,174 +1342,184 @@ public List<String> listCachedTableNames(String catName, String dbName, String p
   public List<String> listCachedTableNames(String catName, String dbName, String pattern,
       TableType tableType) {
     List<String> tableNames = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (TableWrapper wrapper : tableCache.values()) {
-        if (wrapper.sameDatabase(catName, dbName)
-            && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
-            && wrapper.getTable().getTableType().equals(tableType.toString())) {
-          tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
-        }
+    for (TableWrapper wrapper : tableCache.values()) {
+      if (wrapper.sameDatabase(catName, dbName)
+          && CacheUtils.matches(wrapper.getTable().getTableName(), pattern)
+          && wrapper.getTable().getTableType().equals(tableType.toString())) {
+        tableNames.add(StringUtils.normalizeIdentifier(wrapper.getTable().getTableName()));
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableNames;
   }
 
+  /**
+   * Called before the tables are read for {@link #refreshTablesInCache}, which then skips the
+   * refresh only if the cached tables are modified after this call.
+   */
+  public void startTablesRefresh() {
+    isTableCacheDirty.set(false);
+  }
+
   public void refreshTablesInCache(String catName, String dbName, List<Table> tables) {
+    // Only writers of this database wait for the refresh; readers see either the old or the new
+    // version of each table.
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.writeLock().lock();
       if (isTableCacheDirty.compareAndSet(true, false)) {
         LOG.debug("Skipping table cache update; the table list we have is dirty.");
         return;
       }
-      Map<String, TableWrapper> newTableCache = new HashMap<>();
+      Set<String> refreshedKeys = new HashSet<>();
       for (Table tbl : tables) {
         String tblName = StringUtils.normalizeIdentifier(tbl.getTableName());
-        TableWrapper tblWrapper =
-            tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+        String key = CacheUtils.buildTableKey(catName, dbName, tblName);
+        TableWrapper tblWrapper = tableCache.get(key);
         if (tblWrapper != null) {
           tblWrapper.updateTableObj(tbl, this);
         } else {
-          tblWrapper = createTableWrapper(catName, dbName, tblName, tbl);
+          tableCache.put(key, createTableWrapper(catName, dbName, tblName, tbl));
+        }
+        refreshedKeys.add(key);
+      }
+      // Drop the tables of this database that no longer exist
+      Iterator<Entry<String, TableWrapper>> iterator = tableCache.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Entry<String, TableWrapper> entry = iterator.next();
+        if (entry.getValue().sameDatabase(catName, dbName)
+            && !refreshedKeys.contains(entry.getKey())) {
+          iterator.remove();
+          entry.getValue().releaseSds(this);
         }
-        newTableCache.put(CacheUtils.buildTableKey(catName, dbName, tblName), tblWrapper);
       }
-      tableCache.clear();
-      tableCache = newTableCache;
     } finally {
-      cacheLock.writeLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public List<ColumnStatisticsObj> getTableColStatsFromCache(String catName, String dbName,
       String tblName, List<String> colNames) {
     List<ColumnStatisticsObj> colStatObjs = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        colStatObjs = tblWrapper.getCachedTableColStats(colNames);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      colStatObjs = tblWrapper.getCachedTableColStats(colNames);
     }
     return colStatObjs;
   }
 
   public void removeTableColStatsFromCache(String catName, String dbName, String tblName,
       String colName) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.removeTableColStats(colName);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void updateTableColStatsInCache(String catName, String dbName, String tableName,
       List<ColumnStatisticsObj> colStatsForTable) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper =
           tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
       if (tblWrapper != null) {
         tblWrapper.updateTableColStats(colStatsForTable);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
+    }
+  }
+
+  /**
+   * Called before the column stats, partitions and partition column stats of a table are read
+   * for a refresh; the refresh is then skipped only if they are modified after this call.
+   */
+  public void startTableRefresh(String catName, String dbName, String tableName) {
+    int lockIx = lockDatabase(catName, dbName);
+    try {
+      TableWrapper tblWrapper =
+          tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
+      if (tblWrapper != null) {
+        tblWrapper.clearDirtyFlags();
+      }
+    } finally {
+      unlockDatabase(lockIx);
     }
   }
 
   public void refreshTableColStatsInCache(String catName, String dbName, String tableName,
       List<ColumnStatisticsObj> colStatsForTable) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper =
           tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
       if (tblWrapper != null) {
         tblWrapper.refreshTableColStats(colStatsForTable);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public int getCachedTableCount() {
-    try {
-      cacheLock.readLock().lock();
-      return tableCache.size();
-    } finally {
-      cacheLock.readLock().unlock();
-    }
+    return tableCache.size();
   }
 
   public List<TableMeta> getTableMeta(String catName, String dbNames, String tableNames,
       List<String> tableTypes) {
     List<TableMeta> tableMetas = new ArrayList<>();
-    try {
-      cacheLock.readLock().lock();
-      for (String dbName : listCachedDatabases(catName)) {
-        if (CacheUtils.matches(dbName, dbNames)) {
-          for (Table table : listCachedTables(catName, dbName)) {
-            if (CacheUtils.matches(table.getTableName(), tableNames)) {
-              if (tableTypes == null || tableTypes.contains(table.getTableType())) {
-                TableMeta metaData =
-                    new TableMeta(dbName, table.getTableName(), table.getTableType());
-                metaData.setCatName(catName);
-                metaData.setComments(table.getParameters().get("comment"));
-                tableMetas.add(metaData);
-              }
+    for (String dbName : listCachedDatabases(catName)) {
+      if (CacheUtils.matches(dbName, dbNames)) {
+        for (Table table : listCachedTables(catName, dbName)) {
+          if (CacheUtils.matches(table.getTableName(), tableNames)) {
+            if (tableTypes == null || tableTypes.contains(table.getTableType())) {
+              TableMeta metaData =
+                  new TableMeta(dbName, table.getTableName(), table.getTableType());
+              metaData.setCatName(catName);
+              metaData.setComments(table.getParameters().get("comment"));
+              tableMetas.add(metaData);
             }
           }
         }
       }
-    } finally {
-      cacheLock.readLock().unlock();
     }
     return tableMetas;
   }
 
   public void addPartitionToCache(String catName, String dbName, String tblName, Partition part) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.cachePartition(part, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void addPartitionsToCache(String catName, String dbName, String tblName,
       List<Partition> parts) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.cachePartitions(parts, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public Partition getPartitionFromCache(String catName, String dbName, String tblName,
       List<String> partVals) {
     Partition part = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        part = tblWrapper.getPartition(partVals, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      part = tblWrapper.getPartition(partVals, this);
     }
     return part;
   }
@@ -1398,194 +1527,174 @@ public Partition getPartitionFromCache(String catName, String dbName, String tbl
   public boolean existPartitionFromCache(String catName, String dbName, String tblName,
       List<String> partVals) {
     boolean existsPart = false;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        existsPart = tblWrapper.containsPartition(partVals);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      existsPart = tblWrapper.containsPartition(partVals);
     }
     return existsPart;
   }
 
   public Partition removePartitionFromCache(String catName, String dbName, String tblName,
       List<String> partVals) {
-    Partition part = null;
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
+      Partition part = null;
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         part = tblWrapper.removePartition(partVals, this);
       }
+      return part;
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
-    return part;
   }
 
   public void removePartitionsFromCache(String catName, String dbName, String tblName,
       List<List<String>> partVals) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.removePartitions(partVals, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public List<Partition> listCachedPartitions(String catName, String dbName, String tblName,
       int max) {
     List<Partition> parts = new ArrayList<Partition>();
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        parts = tblWrapper.listPartitions(max, this);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      parts = tblWrapper.listPartitions(max, this);
     }
     return parts;
   }
 
   public void alterPartitionInCache(String catName, String dbName, String tblName,
       List<String> partVals, Partition newPart) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.alterPartition(partVals, newPart, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void alterPartitionsInCache(String catName, String dbName, String tblName,
       List<List<String>> partValsList, List<Partition> newParts) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.alterPartitions(partValsList, newParts, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void refreshPartitionsInCache(String catName, String dbName, String tblName,
       List<Partition> partitions) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.refreshPartitions(partitions, this);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void removePartitionColStatsFromCache(String catName, String dbName, String tblName,
       List<String> partVals, String colName) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.removePartitionColStats(partVals, colName);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void updatePartitionColStatsInCache(String catName, String dbName, String tableName,
       List<String> partVals, List<ColumnStatisticsObj> colStatsObjs) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper =
           tableCache.get(CacheUtils.buildTableKey(catName, dbName, tableName));
       if (tblWrapper != null) {
         tblWrapper.updatePartitionColStats(partVals, colStatsObjs);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public ColumnStatisticsObj getPartitionColStatsFromCache(String catName, String dbName,
       String tblName, List<String> partVal, String colName) {
     ColumnStatisticsObj colStatObj = null;
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        colStatObj = tblWrapper.getPartitionColStats(partVal, colName);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      colStatObj = tblWrapper.getPartitionColStats(partVal, colName);
     }
     return colStatObj;
   }
 
   public void refreshPartitionColStatsInCache(String catName, String dbName, String tblName,
       List<ColumnStatistics> partitionColStats) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.refreshPartitionColStats(partitionColStats);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public List<ColumnStatisticsObj> getAggrStatsFromCache(String catName, String dbName,
       String tblName, List<String> colNames, StatsType statsType) {
-    try {
-      cacheLock.readLock().lock();
-      TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
-      if (tblWrapper != null) {
-        return tblWrapper.getAggrPartitionColStats(colNames, statsType);
-      }
-    } finally {
-      cacheLock.readLock().unlock();
+    TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
+    if (tblWrapper != null) {
+      return tblWrapper.getAggrPartitionColStats(colNames, statsType);
     }
     return null;
   }
 
   public void addAggregateStatsToCache(String catName, String dbName, String tblName,
       AggrStats aggrStatsAllPartitions, AggrStats aggrStatsAllButDefaultPartition) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.cacheAggrPartitionColStats(aggrStatsAllPartitions,
             aggrStatsAllButDefaultPartition);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
   public void refreshAggregateStatsInCache(String catName, String dbName, String tblName,
       AggrStats aggrStatsAllPartitions, AggrStats aggrStatsAllButDefaultPartition) {
+    int lockIx = lockDatabase(catName, dbName);
     try {
-      cacheLock.readLock().lock();
       TableWrapper tblWrapper = tableCache.get(CacheUtils.buildTableKey(catName, dbName, tblName));
       if (tblWrapper != null) {
         tblWrapper.refreshAggrPartitionColStats(aggrStatsAllPartitions,
             aggrStatsAllButDefaultPartition);
       }
     } finally {
-      cacheLock.readLock().unlock();
+      unlockDatabase(lockIx);
     }
   }
 
@@ -294,6 +294,23 @@ public enum ConfVars {
     CACHED_RAW_STORE_CACHE_UPDATE_FREQUENCY("metastore.cached.rawstore.cache.update.frequency",
         "hive.metastore.cached.rawstore.cache.update.frequency", 60, TimeUnit.SECONDS,
         "The time after which metastore cache is updated from metastore DB."),
+    CACHED_RAW_STORE_UPDATE_USING_EVENTS("metastore.cached.rawstore.update.using.events",
+        "hive.metastore.cached.rawstore.update.using.events", false,
+        "Whether, after the initial prewarm, the metastore cache should be updated by applying the\n" +
+        "changes recorded in the notification log, instead of periodically re-reading all the\n" +
+        "cached objects from the metastore DB. Requires DbNotificationListener to be configured\n" +
+        "as a transactional listener. If events are missing from the log (e.g. they have been\n" +
+        "cleaned up before they were applied), all the cached objects are re-read once."),
+    CACHED_RAW_STORE_EVENT_BATCH_SIZE("metastore.cached.rawstore.event.batch.size",
+        "hive.metastore.cached.rawstore.event.batch.size", 1000,
+        "The maximum number of notification events read at once when the metastore cache is\n" +
+        "updated using events."),
+    CACHED_RAW_STORE_STATS_UPDATE_FREQUENCY("metastore.cached.rawstore.stats.update.frequency",
+        "hive.metastore.cached.rawstore.stats.update.frequency", 600, TimeUnit.SECONDS,
+        "When the metastore cache is updated using events, the time after which all the cached\n" +
+        "column stats are re-read from metastore DB. Column stats can be changed without a\n" +
+        "notification event, e.g. by ANALYZE TABLE ... COMPUTE STATISTICS FOR COLUMNS. Set to 0\n" +
+        "to only re-read the stats of the tables and partitions changed by events."),
     CACHED_RAW_STORE_CACHED_OBJECTS_WHITELIST("metastore.cached.rawstore.cached.object.whitelist",
         "hive.metastore.cached.rawstore.cached.object.whitelist", ".*", "Comma separated list of regular expressions \n " +
         "to select the tables (and its partitions, stats etc) that will be cached by CachedStore. \n" +
@@ -39,8 +39,6 @@
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -257,6 +255,8 @@ public static OpertaionType fromDataOperationType(DataOperationType dop) {
   private long retryInterval;
   private int retryLimit;
   private int retryNum;
+  // Max number of partitions checkLock() lists in its query before it reads the whole table
+  private int maxElementsInClause;
   // Current number of open txns
   private AtomicInteger numOpenTxns;
 
@@ -331,6 +331,7 @@ public void setConf(Configuration conf) {
     retryLimit = MetastoreConf.getIntVar(conf, ConfVars.HMS_HANDLER_ATTEMPTS);
     deadlockRetryInterval = retryInterval / 10;
     maxOpenTxns = MetastoreConf.getIntVar(conf, ConfVars.MAX_OPEN_TXNS);
+    maxElementsInClause = MetastoreConf.getIntVar(conf, ConfVars.DIRECT_SQL_MAX_ELEMENTS_IN_CLAUSE);
 
     try {
       transactionalListeners = MetaStoreUtils.getMetaStoreListeners(
@@ -3436,6 +3437,94 @@ private boolean isPartitionLock() {
     }
   }
 
+  /**
+   * The locks read by {@link #checkLock(Connection, long)}, indexed by database, table and
+   * partition.  Each lock being acquired is then only compared with the locks on objects it
+   * overlaps with, so the check scales with the number of objects being locked rather than
+   * with the number of locks in HIVE_LOCKS.  Locks with a null table cover the whole database
+   * and locks with a null partition cover the whole table.
+   */
+  private static final class LockIndex {
+    private static final LockInfoComparator lockInfoComparator = new LockInfoComparator();
+    private final Map<String, DbLocks> dbs = new HashMap<>();
+
+    private static final class DbLocks {
+      private final List<LockInfo> dbLocks = new ArrayList<>();
+      private final Map<String, TableLocks> tables = new HashMap<>();
+    }
+
+    private static final class TableLocks {
+      private final List<LockInfo> tableLocks = new ArrayList<>();
+      private final Map<String, List<LockInfo>> partitions = new HashMap<>();
+    }
+
+    void add(LockInfo info) {
+      DbLocks dbLocks = dbs.get(info.db);
+      if (dbLocks == null) {
+        dbLocks = new DbLocks();
+        dbs.put(info.db, dbLocks);
+      }
+      if (info.table == null) {
+        dbLocks.dbLocks.add(info);
+        return;
+      }
+      TableLocks tableLocks = dbLocks.tables.get(info.table);
+      if (tableLocks == null) {
+        tableLocks = new TableLocks();
+        dbLocks.tables.put(info.table, tableLocks);
+      }
+      if (info.partition == null) {
+        tableLocks.tableLocks.add(info);
+        return;
+      }
+      List<LockInfo> partLocks = tableLocks.partitions.get(info.partition);
+      if (partLocks == null) {
+        partLocks = new ArrayList<>();
+        tableLocks.partitions.put(info.partition, partLocks);
+      }
+      partLocks.add(info);
+    }
+
+    /**
+     * @return the locks that overlap with the given one, in {@link LockInfoComparator} order
+     */
+    LockInfo[] getOverlappingLocks(LockInfo info) {
+      DbLocks dbLocks = dbs.get(info.db);
+      if (dbLocks == null) {
+        return new LockInfo[0];
+      }
+      List<LockInfo> result = new ArrayList<>(dbLocks.dbLocks);
+      if (info.table == null) {
+        for (TableLocks tableLocks : dbLocks.tables.values()) {
+          addAll(tableLocks, result);
+        }
+      } else {
+        TableLocks tableLocks = dbLocks.tables.get(info.table);
+        if (tableLocks != null) {
+          if (info.partition == null) {
+            addAll(tableLocks, result);
+          } else {
+            result.addAll(tableLocks.tableLocks);
+            List<LockInfo> partLocks = tableLocks.partitions.get(info.partition);
+            if (partLocks != null) {
+              result.addAll(partLocks);
+            }
+          }
+        }
+      }
+      LockInfo[] locks = result.toArray(new LockInfo[result.size()]);
+      Arrays.sort(locks, lockInfoComparator);
+      return locks;
+    }
+
+    private static void addAll(TableLocks tableLocks, List<LockInfo> result) {
+      result.addAll(tableLocks.tableLocks);
+      for (List<LockInfo> partLocks : tableLocks.partitions.values()) {
+        result.addAll(partLocks);
+      }
+    }
+  }
+
   private static class LockInfoComparator implements Comparator<LockInfo> {
     private static final LockTypeComparator lockTypeComparator = new LockTypeComparator();
     public boolean equals(Object other) {
@@ -3794,7 +3883,8 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
         query.append("))");
 
         // If any of the partition requests are null, then I need to pull all
-        // partition locks for this table.
+        // partition locks for this table.  Do the same if there are too many partitions to
+        // list in the query; the index below only looks at the ones we are locking anyway.
         sawNull = false;
         strings.clear();
         for (LockInfo info : locksBeingChecked) {
@@ -3805,7 +3895,7 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
             strings.add(info.partition);
           }
         }
-        if (!sawNull) {
+        if (!sawNull && strings.size() <= maxElementsInClause) {
           query.append(" and (hl_partition is null or hl_partition in(");
           first = true;
           for (String s : strings) {
@@ -3823,17 +3913,12 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
       LOG.debug("Going to execute query <" + query.toString() + ">");
       stmt = dbConn.createStatement();
       rs = stmt.executeQuery(query.toString());
-      SortedSet<LockInfo> lockSet = new TreeSet<LockInfo>(new LockInfoComparator());
+      LockIndex lockIndex = new LockIndex();
       while (rs.next()) {
-        lockSet.add(new LockInfo(rs));
-      }
-      // Turn the tree set into an array so we can move back and forth easily
-      // in it.
-      LockInfo[] locks = lockSet.toArray(new LockInfo[lockSet.size()]);
-      if(LOG.isTraceEnabled()) {
-        LOG.trace("Locks to check(full): ");
-        for(LockInfo info : locks) {
-          LOG.trace("  " + info);
+        LockInfo info = new LockInfo(rs);
+        lockIndex.add(info);
+        if(LOG.isTraceEnabled()) {
+          LOG.trace("Lock to check: " + info);
         }
       }
 
@@ -3845,33 +3930,14 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
           continue;
         }
 
-        // Look at everything in front of this lock to see if it should block
-        // it or not.
+        // Look at everything in front of this lock that it overlaps with to see if it should
+        // block it or not.  The index only returns locks on the same database, on the same
+        // table or the whole database, and on the same partition or the whole table.
+        // If here, we may be checking a DB level lock against a Table level lock.  Alternatively,
+        // we could have used Intention locks (for example a request for S lock on table would
+        // cause an IS lock DB that contains the table).  Similarly, at partition level.
+        LockInfo[] locks = lockIndex.getOverlappingLocks(info);
         for (int i = locks.length - 1; i >= 0; i--) {
-          // Check if we're operating on the same database, if not, move on
-          if (!info.db.equals(locks[i].db)) {
-            continue;
-          }
-
-          // If table is null on either of these, then they are claiming to
-          // lock the whole database and we need to check it.  Otherwise,
-          // check if they are operating on the same table, if not, move on.
-          if (info.table != null && locks[i].table != null
-            && !info.table.equals(locks[i].table)) {
-            continue;
-          }
-          // if here, we may be checking a DB level lock against a Table level lock.  Alternatively,
-          // we could have used Intention locks (for example a request for S lock on table would
-          // cause an IS lock DB that contains the table).  Similarly, at partition level.
-
-          // If partition is null on either of these, then they are claiming to
-          // lock the whole table and we need to check it.  Otherwise,
-          // check if they are operating on the same partition, if not, move on.
-          if (info.partition != null && locks[i].partition != null
-            && !info.partition.equals(locks[i].partition)) {
-            continue;
-          }
-
           // We've found something that matches what we're trying to lock,
           // so figure out if we can lock it too.
           LockAction lockAction = jumpTable.get(info.type).get(locks[i].type).get(locks[i].state);
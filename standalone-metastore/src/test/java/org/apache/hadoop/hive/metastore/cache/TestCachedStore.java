@@ -19,13 +19,16 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.ndv.hll.HyperLogLog;
 import org.apache.hadoop.hive.metastore.HiveMetaStore;
@@ -43,6 +46,7 @@
 import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
 import org.apache.hadoop.hive.metastore.api.Partition;
 import org.apache.hadoop.hive.metastore.api.PrincipalType;
 import org.apache.hadoop.hive.metastore.api.SerDeInfo;
@@ -53,6 +57,10 @@
 import org.apache.hadoop.hive.metastore.columnstats.cache.StringColumnStatsDataInspector;
 import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
 import org.apache.hadoop.hive.metastore.conf.MetastoreConf.ConfVars;
+import org.apache.hadoop.hive.metastore.messaging.MessageFactory;
+import org.apache.hadoop.hive.metastore.messaging.PartitionFiles;
+import org.apache.hadoop.hive.metastore.metrics.Metrics;
+import org.apache.hadoop.hive.metastore.metrics.MetricsConstants;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -374,6 +382,152 @@ public void testPartitionOps() throws Exception {
     sharedCache.getSdCache().clear();
   }
 
+  @Test
+  public void testUpdateUsingEvents() throws Exception {
+    Configuration eventConf = new Configuration(conf);
+    MetastoreConf.setBoolVar(eventConf, ConfVars.CACHED_RAW_STORE_UPDATE_USING_EVENTS, true);
+    MessageFactory messageFactory = MessageFactory.getInstance();
+
+    // Add a db, a partitioned table and a partition via ObjectStore
+    String dbName = "testUpdateUsingEvents";
+    String dbOwner = "user1";
+    objectStore.createDatabase(createTestDb(dbName, dbOwner));
+    String tblName = "tbl";
+    List<FieldSchema> cols = new ArrayList<FieldSchema>();
+    cols.add(new FieldSchema("col1", "int", "integer column"));
+    List<FieldSchema> ptnCols = new ArrayList<FieldSchema>();
+    ptnCols.add(new FieldSchema("part1", "string", "string partition column"));
+    Table tbl = createTestTbl(dbName, tblName, "user1", cols, ptnCols);
+    objectStore.createTable(tbl);
+    tbl = objectStore.getTable(DEFAULT_CATALOG_NAME, dbName, tblName);
+    Map<String, String> partParams = new HashMap<String, String>();
+    Partition ptn1 =
+        new Partition(Arrays.asList("aaa"), dbName, tblName, 0, 0, tbl.getSd(), partParams);
+    ptn1.setCatName(DEFAULT_CATALOG_NAME);
+    objectStore.addPartition(ptn1);
+
+    // Prewarm; this also records the last event in the notification log
+    CachedStore.setCachePrewarmedState(false);
+    CachedStore.CacheUpdateMasterWork work = new CachedStore.CacheUpdateMasterWork(eventConf, true);
+    work.run();
+    Assert.assertNotNull(
+        cachedStore.getPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("aaa")));
+
+    // Change the objects via ObjectStore, and add the events for the changes
+    Partition ptn2 =
+        new Partition(Arrays.asList("bbb"), dbName, tblName, 0, 0, tbl.getSd(), partParams);
+    ptn2.setCatName(DEFAULT_CATALOG_NAME);
+    objectStore.addPartition(ptn2);
+    ptn2 = objectStore.getPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("bbb"));
+    addEvent(MessageFactory.ADD_PARTITION_EVENT, dbName, tblName, messageFactory
+        .buildAddPartitionMessage(tbl, Collections.singletonList(ptn2).iterator(),
+            Collections.<PartitionFiles>emptyIterator()).toString(), true);
+    objectStore.dropPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("aaa"));
+    addEvent(MessageFactory.DROP_PARTITION_EVENT, dbName, tblName, messageFactory
+        .buildDropPartitionMessage(tbl, Collections.singletonList(ptn1).iterator())
+        .toString(), true);
+    Table tblAlt = new Table(tbl);
+    tblAlt.setOwner("role1");
+    tblAlt.setOwnerType(PrincipalType.ROLE);
+    objectStore.alterTable(DEFAULT_CATALOG_NAME, dbName, tblName, tblAlt);
+    tblAlt = objectStore.getTable(DEFAULT_CATALOG_NAME, dbName, tblName);
+    addEvent(MessageFactory.ALTER_TABLE_EVENT, dbName, tblName, messageFactory
+        .buildAlterTableMessage(tbl, tblAlt, false).toString(), true);
+
+    // Apply the events
+    work.run();
+    Assert.assertEquals(ptn2,
+        cachedStore.getPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("bbb")));
+    try {
+      cachedStore.getPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("aaa"));
+      Assert.fail("The partition should have been removed from the cache by the event");
+    } catch (NoSuchObjectException e) {
+      // Expected
+    }
+    Assert.assertEquals("role1",
+        cachedStore.getTable(DEFAULT_CATALOG_NAME, dbName, tblName).getOwner());
+
+    // Create a db and lose its event; the gap in the log triggers a full update
+    String dbName1 = "testUpdateUsingEvents1";
+    Database db1 = createTestDb(dbName1, dbOwner);
+    objectStore.createDatabase(db1);
+    addEvent(MessageFactory.CREATE_DATABASE_EVENT, dbName1, null,
+        messageFactory.buildCreateDatabaseMessage(db1).toString(), false);
+    objectStore.cleanNotificationEvents(0);
+    work.run();
+    Assert.assertNotNull(cachedStore.getDatabase(DEFAULT_CATALOG_NAME, dbName1));
+
+    // Clean up
+    objectStore.dropPartition(DEFAULT_CATALOG_NAME, dbName, tblName, Arrays.asList("bbb"));
+    objectStore.dropTable(DEFAULT_CATALOG_NAME, dbName, tblName);
+    objectStore.dropDatabase(DEFAULT_CATALOG_NAME, dbName);
+    objectStore.dropDatabase(DEFAULT_CATALOG_NAME, dbName1);
+    objectStore.cleanNotificationEvents(-1000);
+    sharedCache.getDatabaseCache().clear();
+    sharedCache.getTableCache().clear();
+    sharedCache.getSdCache().clear();
+  }
+
+  @Test
+  public void testUpdateStatsUsingEvents() throws Exception {
+    Configuration eventConf = new Configuration(conf);
+    MetastoreConf.setBoolVar(eventConf, ConfVars.CACHED_RAW_STORE_UPDATE_USING_EVENTS, true);
+    MetastoreConf.setTimeVar(eventConf, ConfVars.CACHED_RAW_STORE_STATS_UPDATE_FREQUENCY, 1,
+        TimeUnit.MILLISECONDS);
+
+    // Add a db, and a table with column stats via ObjectStore
+    String dbName = "testUpdateStatsUsingEvents";
+    objectStore.createDatabase(createTestDb(dbName, "user1"));
+    String tblName = "tbl";
+    FieldSchema col1 = new FieldSchema("col1", "int", "integer column");
+    Table tbl = createTestTbl(dbName, tblName, "user1", Arrays.asList(col1),
+        new ArrayList<FieldSchema>());
+    objectStore.createTable(tbl);
+    objectStore.updateTableColumnStatistics(createLongColStats(dbName, tblName, col1, 500));
+
+    // Prewarm
+    CachedStore.setCachePrewarmedState(false);
+    CachedStore.CacheUpdateMasterWork work = new CachedStore.CacheUpdateMasterWork(eventConf, true);
+    work.run();
+    ColumnStatistics cachedStats = cachedStore.getTableColumnStatistics(DEFAULT_CATALOG_NAME,
+        dbName, tblName, Arrays.asList(col1.getName()));
+    Assert.assertEquals(500,
+        cachedStats.getStatsObj().get(0).getStatsData().getLongStats().getHighValue());
+
+    // Change the stats via ObjectStore; there is no event for the change
+    objectStore.updateTableColumnStatistics(createLongColStats(dbName, tblName, col1, 1000));
+    Thread.sleep(10);
+
+    // The periodic stats update picks up the change
+    work.run();
+    cachedStats = cachedStore.getTableColumnStatistics(DEFAULT_CATALOG_NAME, dbName, tblName,
+        Arrays.asList(col1.getName()));
+    Assert.assertEquals(1000,
+        cachedStats.getStatsObj().get(0).getStatsData().getLongStats().getHighValue());
+
+    // Clean up
+    objectStore.dropTable(DEFAULT_CATALOG_NAME, dbName, tblName);
+    objectStore.dropDatabase(DEFAULT_CATALOG_NAME, dbName);
+    sharedCache.getDatabaseCache().clear();
+    sharedCache.getTableCache().clear();
+    sharedCache.getSdCache().clear();
+  }
+
+  private ColumnStatistics createLongColStats(String dbName, String tblName, FieldSchema col,
+      long highValue) {
+    LongColumnStatsDataInspector longStats = new LongColumnStatsDataInspector();
+    longStats.setLowValue(0);
+    longStats.setHighValue(highValue);
+    longStats.setNumNulls(0);
+    longStats.setNumDVs(10);
+    ColumnStatisticsData data = new ColumnStatisticsData();
+    data.setLongStats(longStats);
+    ColumnStatisticsDesc statsDesc = new ColumnStatisticsDesc(true, dbName, tblName);
+    statsDesc.setCatName(DEFAULT_CATALOG_NAME);
+    return new ColumnStatistics(statsDesc,
+        Arrays.asList(new ColumnStatisticsObj(col.getName(), col.getType(), data)));
+  }
+
   //@Test
   public void testTableColStatsOps() throws Exception {
     // Add a db via ObjectStore
@@ -575,6 +729,37 @@ public void testSharedStoreTable() {
     Assert.assertEquals(sharedCache.getSdCache().size(), 2);
   }
 
+  @Test
+  public void testSharedStoreRefreshTables() {
+    Table tbl1 = new Table();
+    tbl1.setTableName("tbl1");
+    tbl1.setPartitionKeys(new ArrayList<>());
+    Table tbl2 = new Table();
+    tbl2.setTableName("tbl2");
+    tbl2.setPartitionKeys(new ArrayList<>());
+    Table tbl3 = new Table();
+    tbl3.setTableName("tbl3");
+    tbl3.setPartitionKeys(new ArrayList<>());
+
+    sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, "db1", "tbl1", tbl1);
+    sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, "db1", "tbl2", tbl2);
+    sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, "db2", "tbl1", tbl1);
+    sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, "db2", "tbl2", tbl2);
+
+    // The first refresh is skipped, since the table list was changed after it was read
+    sharedCache.refreshTablesInCache(DEFAULT_CATALOG_NAME, "db1", Arrays.asList(tbl1, tbl3));
+    Assert.assertEquals(Arrays.asList("tbl1", "tbl2"),
+        sharedCache.listCachedTableNames(DEFAULT_CATALOG_NAME, "db1"));
+
+    // Refreshing one database leaves the tables of the others alone
+    sharedCache.refreshTablesInCache(DEFAULT_CATALOG_NAME, "db1", Arrays.asList(tbl1, tbl3));
+    Assert.assertEquals(Arrays.asList("tbl1", "tbl3"),
+        sharedCache.listCachedTableNames(DEFAULT_CATALOG_NAME, "db1"));
+    Assert.assertEquals(Arrays.asList("tbl1", "tbl2"),
+        sharedCache.listCachedTableNames(DEFAULT_CATALOG_NAME, "db2"));
+    Assert.assertEquals(4, sharedCache.getCachedTableCount());
+  }
+
 
   @Test
   public void testSharedStorePartition() {
@@ -1035,6 +1220,145 @@ public Object call() {
     sharedCache.getSdCache().clear();
   }
 
+  @Test
+  public void testMultiThreadedSharedCacheTableAndPartitionOps() throws Exception {
+    String dbName = "db1";
+    String tblName = "tbl1";
+    List<FieldSchema> cols = Arrays.asList(new FieldSchema("col1", "int", ""));
+    List<FieldSchema> ptnCols = Arrays.asList(new FieldSchema("part1", "string", ""));
+    Table tbl = createTestTbl(dbName, tblName, "user1", cols, ptnCols);
+    ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = Executors.defaultThreadFactory().newThread(r);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    // Add and drop the table
+    tasks.add(new Callable<Object>() {
+      public Object call() {
+        for (int i = 0; i < 500; i++) {
+          sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, dbName, tblName, tbl);
+          sharedCache.removeTableFromCache(DEFAULT_CATALOG_NAME, dbName, tblName);
+        }
+        return null;
+      }
+    });
+    // Refresh the tables of the database, alternately with and without the table
+    tasks.add(new Callable<Object>() {
+      public Object call() {
+        for (int i = 0; i < 500; i++) {
+          sharedCache.startTablesRefresh();
+          sharedCache.refreshTablesInCache(DEFAULT_CATALOG_NAME, dbName,
+              i % 2 == 0 ? Arrays.asList(tbl) : new ArrayList<Table>());
+        }
+        return null;
+      }
+    });
+    // Add partitions, one at a time and in batches
+    for (int t = 0; t < 2; t++) {
+      final int thread = t;
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          for (int i = 0; i < 500; i++) {
+            Partition ptn = createTestPtn(tbl, "p" + thread + "_" + (i % 10));
+            if (i % 2 == 0) {
+              sharedCache.addPartitionToCache(DEFAULT_CATALOG_NAME, dbName, tblName, ptn);
+            } else {
+              sharedCache.addPartitionsToCache(DEFAULT_CATALOG_NAME, dbName, tblName,
+                  Arrays.asList(ptn));
+            }
+          }
+          return null;
+        }
+      });
+    }
+    for (Future<Object> future : executor.invokeAll(tasks)) {
+      // Rethrows any failure of the task
+      future.get();
+    }
+    executor.shutdown();
+
+    // Once the table is gone, nothing may still hold a reference to a storage descriptor
+    sharedCache.removeTableFromCache(DEFAULT_CATALOG_NAME, dbName, tblName);
+    Assert.assertEquals(0, sharedCache.getCachedTableCount());
+    Assert.assertTrue(sharedCache.getSdCache().isEmpty());
+  }
+
+  @Test
+  public void testSharedCacheLockWaitMetrics() throws Exception {
+    Metrics.shutdown();
+    Configuration metricsConf = MetastoreConf.newMetastoreConf();
+    MetastoreConf.setVar(metricsConf, ConfVars.METRICS_REPORTERS, "jmx");
+    Metrics.initialize(metricsConf);
+    try {
+      String dbName = "db1";
+      List<FieldSchema> cols = Arrays.asList(new FieldSchema("col1", "int", ""));
+      List<FieldSchema> ptnCols = Arrays.asList(new FieldSchema("part1", "string", ""));
+      Table tbl1 = createTestTbl(dbName, "tbl1", "user1", cols, ptnCols);
+      Table tbl2 = createTestTbl(dbName, "tbl2", "user1", cols, ptnCols);
+      Partition ptn = createTestPtn(tbl1, "p1");
+      SharedCache.TableWrapper wrapper =
+          sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, dbName, "tbl1", tbl1);
+      // Uncontended locking is not recorded
+      Assert.assertEquals(0,
+          Metrics.getOrCreateTimer(MetricsConstants.CACHED_STORE_LOCK_WAIT).getCount());
+
+      Thread ptnWriter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          sharedCache.addPartitionToCache(DEFAULT_CATALOG_NAME, dbName, "tbl1", ptn);
+        }
+      });
+      Thread tblWriter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          sharedCache.addTableToCache(DEFAULT_CATALOG_NAME, dbName, "tbl2", tbl2);
+        }
+      });
+      wrapper.tableLock.writeLock().lock();
+      try {
+        // The partition writer takes the database lock, then waits for the table lock
+        ptnWriter.start();
+        waitUntilBlocked(ptnWriter);
+        // The table writer waits for the database lock held by the partition writer
+        tblWriter.start();
+        waitUntilBlocked(tblWriter);
+      } finally {
+        wrapper.tableLock.writeLock().unlock();
+      }
+      ptnWriter.join();
+      tblWriter.join();
+
+      Assert.assertEquals(1,
+          Metrics.getOrCreateTimer(MetricsConstants.CACHED_STORE_TABLE_LOCK_WAIT).getCount());
+      Assert.assertEquals(1,
+          Metrics.getOrCreateTimer(MetricsConstants.CACHED_STORE_LOCK_WAIT).getCount());
+      Assert.assertNotNull(
+          sharedCache.getPartitionFromCache(DEFAULT_CATALOG_NAME, dbName, "tbl1", ptn.getValues()));
+      Assert.assertNotNull(sharedCache.getTableFromCache(DEFAULT_CATALOG_NAME, dbName, "tbl2"));
+    } finally {
+      Metrics.shutdown();
+    }
+  }
+
+  private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Assert.assertTrue(thread.isAlive() || thread.getState() == Thread.State.NEW);
+      Thread.sleep(10);
+    }
+  }
+
+  private Partition createTestPtn(Table tbl, String ptnVal) {
+    Partition ptn = new Partition(Arrays.asList(ptnVal), tbl.getDbName(), tbl.getTableName(), 0,
+        0, tbl.getSd().deepCopy(), new HashMap<>());
+    ptn.getSd().setLocation(tbl.getSd().getLocation() + "/part1=" + ptnVal);
+    ptn.setCatName(DEFAULT_CATALOG_NAME);
+    return ptn;
+  }
+
   private Database createTestDb(String dbName, String dbOwner) {
     String dbDescription = dbName;
     String dbLocation = "file:/tmp";
@@ -1061,6 +1385,17 @@ private Table createTestTbl(String dbName, String tblName, String tblOwner,
     return tbl;
   }
 
+  private void addEvent(String eventType, String dbName, String tblName, String message,
+      boolean isCurrent) {
+    // Events with a zero event time are removed by any cleanup of the notification log.
+    int eventTime = isCurrent ? (int) (System.currentTimeMillis() / 1000) : 0;
+    NotificationEvent event = new NotificationEvent(0, eventTime, eventType, message);
+    event.setCatName(DEFAULT_CATALOG_NAME);
+    event.setDbName(dbName);
+    event.setTableName(tblName);
+    objectStore.addNotificationEvent(event);
+  }
+
   // This method will return only after the cache has updated once
   private void updateCache(CachedStore cachedStore) throws InterruptedException {
     int maxTries = 100000;